@@ -23,40 +23,98 @@
  *              practice weren't used
  * 05-Jul-2006: jobollin performed minor cleanup
  * 04-Jan-2008: ekoperda fixed bug #1860 in prune()
+ * 18-Oct-2026: agent rewrote the implementation atop concurrent maps so that
+ *              lookups no longer contend for a single monitor; replaced the
+ *              sort-based prune() with constant-time second-chance eviction
+ *              and creation-order expiry; added hit/miss/eviction counters
+ * 18-Oct-2026: agent added optional weight-bounded operation via the new
+ *              Weigher interface
+ * 18-Oct-2026: agent added replace()
+ * 18-Oct-2026: agent made replace() keep the replaced item's creation time
+ *              and queue positions
  */
 
 package org.recipnet.common;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This is a simple utility class that manages a cache of java Objects. It
  * might be particularly useful when implementing look-aside caching for
  * database reads in one of the core modules. This class is thread-safe.
+ * <p>
+ * Lookups are served from concurrent maps and never block one another. Items
+ * are tracked on two intrusive queues that are guarded by a single internal
+ * lock taken only by mutating operations: one in creation order, which makes
+ * expiry of aged items a constant-time operation since all items share the
+ * same maximum age, and one that implements a "second chance" (CLOCK)
+ * approximation of least-recently-used eviction. A lookup merely marks the
+ * item it finds as referenced; an eviction pass recycles referenced items to
+ * the tail of the queue once and removes the first unreferenced one it meets,
+ * so the amortized cost of an eviction is constant regardless of the cache
+ * size.
+ * <p>
+ * A cache may optionally be bounded by the total weight of its objects, as
+ * measured by a {@link Weigher}, in addition to their number. This is useful
+ * for caching objects whose memory footprints vary widely.
  */
 public class ObjectCache<T> {
 
     /**
-     * Main cache - maps ObjectCacheKey's to Objects
+     * Implemented by classes that can measure the weight, typically the
+     * approximate retained size in bytes, of objects to be cached in a
+     * weight-bounded {@code ObjectCache}
      */
-    private final Map<ObjectCacheKey, ObjectCacheItem<T>> map;
+    public interface Weigher<T> {
+
+        /**
+         * Returns the weight of the specified object. The weight of a given
+         * object must not change while it is cached.
+         * 
+         * @param value the object to weigh; never null
+         * @return a non-negative weight
+         */
+        long weigh(T value);
+    }
+
+    /**
+     * Main cache - maps primary keys to items
+     */
+    private final ConcurrentMap<Integer, ObjectCacheItem<T>> map;
+
+    /**
+     * Secondary cache - maps String's to items. Contains all the items from
+     * the first map for which the secondary key is not null. This value is
+     * always null if secondaryKeyEnabled is false.
+     */
+    private final ConcurrentMap<String, ObjectCacheItem<T>> map2;
+
+    /**
+     * Guards the structure of {@code ageQueue} and {@code clockQueue}, and
+     * serializes all modifications to {@code map} and {@code map2}. Never
+     * acquired by lookups that hit a live item.
+     */
+    private final Lock evictionLock;
+
+    /**
+     * All current items in order of creation, oldest first; used for expiry
+     */
+    private final ItemQueue<T> ageQueue;
 
     /**
-     * Secondary cache - maps String's to Objects. Contains all the objects 
-     * from the first map for which the secondary key is not null. This value
-     * is always null if secondaryKeyEnabled is false.
+     * All current items in eviction order, best eviction candidate first,
+     * subject to each item's referenced flag
      */
-    private final Map<String, ObjectCacheItem<T>> map2;
+    private final ItemQueue<T> clockQueue;
 
     /**
      * The maximum number of items to cache at once
@@ -78,11 +136,35 @@ public class ObjectCache<T> {
     /** Configuration parameter set at creation time */
     private final boolean secondaryKeyEnabled;
 
+    /**
+     * The maximum total weight of the cached items, or 0 if this cache is not
+     * bounded by weight
+     */
+    private final long maxWeight;
+
+    /** Measures items' weights; null if this cache is not weight-bounded */
+    private final Weigher<? super T> weigher;
+
+    /** The total weight of all current items; guarded by evictionLock */
+    private long totalWeight;
+
     /**
      * Status flag used to support the hasEverLostItem() feature. Set to true
      * if any method within this object has removed an item from the cache.
      */
-    private boolean everDeleted;
+    private volatile boolean everDeleted;
+
+    /** The number of lookups that returned a cached object */
+    private final AtomicLong hitCount;
+
+    /** The number of lookups that did not return a cached object */
+    private final AtomicLong missCount;
+
+    /** The number of items removed to make room for others */
+    private final AtomicLong evictionCount;
+
+    /** The number of items removed because they exceeded the maximum age */
+    private final AtomicLong expirationCount;
 
     /**
      * Initializes a new {@code ObjectCache} with the specified parameters
@@ -121,14 +203,51 @@ public class ObjectCache<T> {
             @SuppressWarnings("unused") long logDecayInterval,
             @SuppressWarnings("unused") double randomFactorWeight,
             boolean secondaryKeyEnabled) {
+        this(maxSize, chunkSizeHint, maxAge, secondaryKeyEnabled, 0, null);
+    }
+
+    /**
+     * Initializes a new {@code ObjectCache} that is bounded both by the number
+     * of objects it holds and by their total weight
+     * 
+     * @param maxSize is the maximum number of Objects the cache will hold.
+     * @param chunkSizeHint the suggested number of free cache slots that
+     *        should be available at the completion of each pruning cycle.
+     * @param maxAge is the maximum number of milliseconds an item may reside
+     *        in this cache, or 0 to disable aging.
+     * @param secondaryKeyEnabled is set to true if the cache should be
+     *        searchable by a String-type secondary key.
+     * @param maxWeight the maximum total weight of the objects in the cache,
+     *        or 0 to disable the weight bound; objects heavier than this are
+     *        never cached
+     * @param weigher the {@code Weigher} with which to measure objects'
+     *        weights; may be null only if {@code maxWeight} is 0
+     */
+    public ObjectCache(int maxSize, int chunkSizeHint, long maxAge,
+            boolean secondaryKeyEnabled, long maxWeight,
+            Weigher<? super T> weigher) {
+        if ((maxWeight < 0) || ((maxWeight > 0) && (weigher == null))) {
+            throw new IllegalArgumentException();
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = ((maxWeight > 0) ? weigher : null);
+        totalWeight = 0;
         this.maxSize = maxSize;
         this.chunkSizeHint = chunkSizeHint;
         this.maxAge = maxAge;
         this.secondaryKeyEnabled = secondaryKeyEnabled;
         everDeleted = false;
-        map = new HashMap<ObjectCacheKey, ObjectCacheItem<T>>(maxSize);
+        map = new ConcurrentHashMap<Integer, ObjectCacheItem<T>>(maxSize);
         map2 = (secondaryKeyEnabled
-                ? new HashMap<String, ObjectCacheItem<T>>(maxSize) : null);
+                ? new ConcurrentHashMap<String, ObjectCacheItem<T>>(maxSize)
+                : null);
+        evictionLock = new ReentrantLock();
+        ageQueue = new ItemQueue<T>(ItemQueue.AGE);
+        clockQueue = new ItemQueue<T>(ItemQueue.CLOCK);
+        hitCount = new AtomicLong();
+        missCount = new AtomicLong();
+        evictionCount = new AtomicLong();
+        expirationCount = new AtomicLong();
     }
 
     /**
@@ -144,16 +263,40 @@ public class ObjectCache<T> {
      *         to the described format
      */
     public static <S> ObjectCache<S> newInstance(String params) {
+        return newInstance(params, 0, null);
+    }
+
+    /**
+     * Creates a cache whose parameters are specified by a comma-separated
+     * string, as for {@link #newInstance(String)}, and that is additionally
+     * bounded by the total weight of its objects.
+     * 
+     * @param <S> the type of the items to be cached in the requested cache
+     * @param params the cache parameters as a comma-delemited string
+     * @param maxWeight the maximum total weight of the cached objects, or 0
+     *        to disable the weight bound
+     * @param weigher the {@code Weigher} with which to measure objects'
+     *        weights; may be null only if {@code maxWeight} is 0
+     * @return an ObjectCache corresponding to the specified parameters
+     * @throws IllegalArgumentException if the string is not parsable according
+     *         to the described format
+     */
+    public static <S> ObjectCache<S> newInstance(String params,
+            long maxWeight, Weigher<? super S> weigher) {
         try {
             StringTokenizer t = new StringTokenizer(params, ",");
+            int maxSize = Integer.parseInt(t.nextToken());
+            
+            Integer.parseInt(t.nextToken());  // logSize, unused
+            
+            int chunkSizeHint = Integer.parseInt(t.nextToken());
+            long maxAge = Long.parseLong(t.nextToken());
+            
+            Long.parseLong(t.nextToken());  // logDecayInterval, unused
+            Double.parseDouble(t.nextToken());  // randomFactorWeight, unused
 
-            return new ObjectCache<S>(Integer.parseInt(t.nextToken()),
-                    Integer.parseInt(t.nextToken()),
-                    Integer.parseInt(t.nextToken()),
-                    Long.parseLong(t.nextToken()),
-                    Long.parseLong(t.nextToken()),
-                    Double.parseDouble(t.nextToken()),
-                    Boolean.parseBoolean(t.nextToken()));
+            return new ObjectCache<S>(maxSize, chunkSizeHint, maxAge,
+                    Boolean.parseBoolean(t.nextToken()), maxWeight, weigher);
         } catch (NoSuchElementException ex) {
             throw new IllegalArgumentException("Too few cache parameters");
         } catch (NumberFormatException ex) {
@@ -166,7 +309,7 @@ public class ObjectCache<T> {
      * necessary to make room. Efficient searching on the secondary key (a
      * string) will not be possible for this object.
      */
-    synchronized public void put(int key, T value) {
+    public void put(int key, T value) {
         put(key, null, value);
     }
 
@@ -174,41 +317,132 @@ public class ObjectCache<T> {
      * Store the specified Object in the cache, removing other objects if
      * necessary to make room.
      */
-    synchronized public void put(int key, String key2, T value) {
-        ObjectCacheKey cacheKey;
-        
+    public void put(int key, String key2, T value) {
         if (!secondaryKeyEnabled && (key2 != null)) {
             throw new IllegalStateException("Secondary key mode not enabled");
         }
 
+        long weight = ((weigher == null) ? 0 : weigher.weigh(value));
+
+        evictionLock.lock();
+        try {
+            putRaw(key, key2, value, weight);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Stores the specified Object in the cache in place of another, but only
+     * if that other object is still the one stored under the specified key;
+     * the secondary key, if any, is retained. This allows a caller to publish
+     * a modified copy of a cached object without overwriting any newer object
+     * stored by another thread in the meantime. The new object inherits the
+     * old one's creation time, and so expires when it would have, and its
+     * place in the eviction order.
+     *
+     * @param key the primary key of the object to be replaced
+     * @param expected the object expected to be stored under {@code key}
+     * @param value the object to be stored in its place
+     * @return {@code true} if the object was replaced, {@code false} if
+     *         {@code expected} was no longer stored under {@code key}
+     */
+    public boolean replace(int key, T expected, T value) {
+        long weight = ((weigher == null) ? 0 : weigher.weigh(value));
+
+        evictionLock.lock();
+        try {
+            ObjectCacheItem<T> item = map.get(key);
+
+            if ((item == null) || (item.getObject() != expected)) {
+                return false;
+            }
+            if ((maxWeight > 0) && (weight > maxWeight)) {
+
+                // Too heavy ever to fit; drop the old object all the same
+                removeItem(item);
+                everDeleted = true;
+
+                return true;
+            }
+
+            ObjectCacheItem<T> replacement = new ObjectCacheItem<T>(key,
+                    item.getKey2(), value, weight, item.getCreationTime());
+
+            if (item.clearHit()) {
+                replacement.recordHit();
+            }
+            map.put(key, replacement);
+            if (item.getKey2() != null) {
+                map2.put(item.getKey2(), replacement);
+            }
+            ageQueue.replace(item, replacement);
+            clockQueue.replace(item, replacement);
+            totalWeight += weight - item.getWeight();
+            while ((maxWeight > 0) && (totalWeight > maxWeight)) {
+                evictOne();
+            }
+
+            return true;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Stores the specified Object in the cache, removing other objects if
+     * necessary to make room; the caller must hold {@code evictionLock}
+     */
+    private void putRaw(int key, String key2, T value, long weight) {
+        invalidateRaw(key);
+        if ((maxWeight > 0) && (weight > maxWeight)) {
+
+            // Too heavy ever to fit; don't disturb the other items
+            return;
+        }
         if (map.size() >= maxSize) {
             prune();
         }
-        
-        cacheKey = new ObjectCacheKey(key); 
-        if (get(key) != null) {
-            invalidateRaw(cacheKey);
+        while ((maxWeight > 0) && (totalWeight + weight > maxWeight)) {
+            evictOne();
         }
-        ObjectCacheItem<T> item = new ObjectCacheItem<T>(key, key2, value);
-        map.put(cacheKey, item);
+
+        ObjectCacheItem<T> item
+                = new ObjectCacheItem<T>(key, key2, value, weight);
+
         if (key2 != null) {
+            ObjectCacheItem<T> previous = map2.get(key2);
+
+            /*
+             * Another primary key might currently be associated with the
+             * same secondary key; the new item displaces it entirely so
+             * that the two maps remain consistent
+             */
+            if (previous != null) {
+                removeItem(previous);
+                everDeleted = true;
+            }
             map2.put(key2, item);
         }
+        map.put(key, item);
+        totalWeight += weight;
+        ageQueue.addLast(item);
+        clockQueue.addLast(item);
     }
 
     /**
      * Retrieves the object from the cache that has the specified key. If no
      * matching object is found, return null.
      */
-    synchronized public T get(int key) {
-        return extractValue(map.get(new ObjectCacheKey(key)));
+    public T get(int key) {
+        return extractValue(map.get(key));
     }
 
     /**
      * Retrieves the object from the cache that has the specified secondary key
      * (a string). If no matching object is found, return null.
      */
-    synchronized public T get(String key2) {
+    public T get(String key2) {
         if (!secondaryKeyEnabled) {
             throw new IllegalStateException("Secondary key mode not enabled");
         } else {
@@ -218,25 +452,33 @@ public class ObjectCache<T> {
 
     private T extractValue(ObjectCacheItem<T> item) {
         if (item == null) {
-            return null;
-        } else {
-            long currentTime = System.currentTimeMillis();
+            missCount.incrementAndGet();
 
-            if ((maxAge > 0)
-                    && ((currentTime - item.getCreationTime()) > maxAge)) {
+            return null;
+        } else if (isExpired(item, System.currentTimeMillis())) {
                 
-                // The retrieved object is too old; invalidate it
-                invalidate(item.getKey());
+            // The retrieved object is too old; invalidate it
+            evictionLock.lock();
+            try {
+                if (map.get(item.getKey()) == item) {
+                    removeItem(item);
+                    expirationCount.incrementAndGet();
+                    everDeleted = true;
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+            missCount.incrementAndGet();
 
-                return null;
-            } else {
+            return null;
+        } else {
 
-                // Update this item's hit counter
-                item.recordHit(currentTime);
+            // Give this item a second chance at the next eviction pass
+            item.recordHit();
+            hitCount.incrementAndGet();
 
-                // return the item's associated object
-                return item.getObject();
-            }
+            // return the item's associated object
+            return item.getObject();
         }
     }
 
@@ -247,12 +489,10 @@ public class ObjectCache<T> {
      * @return an {@code Object[]} containing every valid item currently in
      *         this cache
      */
-    synchronized public Object[] getAll() {
-        Object[] items = new Object[map.size()];
-
-        loadItemArray(items);
+    public Object[] getAll() {
+        List<T> items = snapshotObjects();
 
-        return items;
+        return items.toArray(new Object[items.size()]);
     }
 
     /**
@@ -265,27 +505,26 @@ public class ObjectCache<T> {
      *         containing every valid item currently in this cache
      */
     @SuppressWarnings("unchecked")
-    synchronized public T[] getAll(Class<T> clazz) {
-        T[] items = (T[]) Array.newInstance(clazz, map.size());
+    public T[] getAll(Class<T> clazz) {
+        List<T> items = snapshotObjects();
 
-        loadItemArray(items);
-
-        return items;
+        return items.toArray((T[]) Array.newInstance(clazz, items.size()));
     }
 
     /**
-     * Loads an array with every (valid) object currently in the cache.
+     * Collects every (valid) object currently in the cache into a new list.
+     * The map's weakly-consistent iterator makes locking unnecessary here.
      * 
-     * @param items the array to load; must be long enough to hold all the
-     *        current items, and must have a runtime component type the with
-     *        which this cache's item type is assignment compatible.
+     * @return a {@code List} of the cached objects
      */
-    private void loadItemArray(Object[] items) {
-        int i = 0;
+    private List<T> snapshotObjects() {
+        List<T> items = new ArrayList<T>(map.size());
 
         for (ObjectCacheItem<T> cacheItem : map.values()) {
-            items[i++] = cacheItem.getObject();
+            items.add(cacheItem.getObject());
         }
+
+        return items;
     }
 
     /**
@@ -293,66 +532,58 @@ public class ObjectCache<T> {
      * desirable to call this function periodically, during periods of 
      * otherwise low CPU usage, in order to improve performance in subsequent
      * calls to put(). There will be at most maxSize-chunkSizeHint entries in
-     * the cache when this method exits.
+     * the cache when this method exits. Each removal costs amortized constant
+     * time.
      */
     public void prune() {
-
-        /*
-         * if we're enforcing a maximum age then scan the map and remove all
-         * items that have expired
-         */ 
-        int toRemove;
-
-        if (maxAge > 0) {
-            long bound = System.currentTimeMillis() - maxAge;
+        evictionLock.lock();
+        try {
             
-            for (Iterator<Entry<ObjectCacheKey, ObjectCacheItem<T>>> it
-                    = map.entrySet().iterator(); it.hasNext();) {
-                ObjectCacheItem<?> item = it.next().getValue();
-                
-                if (bound > item.getCreationTime()) {
-                    it.remove();
-                    if (secondaryKeyEnabled && item.getKey2() != null) {
-                        map2.remove(item.getKey2());
-                    }
+            /*
+             * if we're enforcing a maximum age then remove all items that
+             * have expired; they are all at the head of the age queue
+             */ 
+            if (maxAge > 0) {
+                long now = System.currentTimeMillis();
+
+                for (ObjectCacheItem<T> item = ageQueue.peekFirst();
+                        (item != null) && isExpired(item, now);
+                        item = ageQueue.peekFirst()) {
+                    removeItem(item);
+                    expirationCount.incrementAndGet();
                     everDeleted = true;
                 }
             }
-        }
 
-        toRemove = chunkSizeHint - (maxSize - map.size());
-
-        // No need to prune further if we now have adequate unused space
-        if (toRemove <= 0) {
-            return;
+            // Remove an appropriate number of the items
+            for (int toRemove = chunkSizeHint - (maxSize - map.size());
+                    (toRemove > 0) && !clockQueue.isEmpty(); toRemove--) {
+                evictOne();
+            }
+        } finally {
+            evictionLock.unlock();
         }
+    }
 
-        // Create an ordered list to hold all the cache items
-        List<ObjectCacheItem<T>> list = new ArrayList<ObjectCacheItem<T>>(
-                map.values());
-
-        // Sort the item list into order by decreasing removal priority
-        Collections.sort(list, new LastAccessItemComparator());
+    /**
+     * Evicts the best eviction candidate, granting each recently-referenced
+     * item one reprieve. The caller must hold {@code evictionLock} and must
+     * ensure that the cache is not empty.
+     */
+    private void evictOne() {
+        ObjectCacheItem<T> victim = clockQueue.peekFirst();
 
         /*
-         * Remove an appropriate number of the items prioritized highest for
-         * removal
+         * Concurrent lookups may set flags again behind us, so give up on
+         * reprieves after one full pass over the queue
          */
-        for (ObjectCacheItem<?> item : list.subList(0, toRemove)) {
-            ObjectCacheItem<?> removed
-                    = map.remove(new ObjectCacheKey(item.getKey()));
-
-            assert (removed == item);
-            if (secondaryKeyEnabled && item.getKey2() != null) {
-                removed = map2.remove(item.getKey2());
-                assert (removed == item);
-            }
+        for (int reprieves = map.size();
+                (reprieves > 0) && victim.clearHit(); reprieves--) {
+            clockQueue.moveToLast(victim);
+            victim = clockQueue.peekFirst();
         }
-
-        /*
-         * We wouldn't have gotten to this point if there weren't any items to
-         * delete
-         */
+        removeItem(victim);
+        evictionCount.incrementAndGet();
         everDeleted = true;
     }
 
@@ -360,21 +591,36 @@ public class ObjectCache<T> {
      * Removes from the cache the object, if any, associated with the specified
      * key
      */
-    synchronized public void invalidate(int key) {
-        invalidateRaw(new ObjectCacheKey(key));
+    public void invalidate(int key) {
+        evictionLock.lock();
+        try {
+            invalidateRaw(key);
+        } finally {
+            evictionLock.unlock();
+        }
     }
 
     /** Remove all entries from the cache. */
-    synchronized public void flush() {
-        if (!map.isEmpty()) {
-            everDeleted = true;
+    public void flush() {
+        evictionLock.lock();
+        try {
+            if (!map.isEmpty()) {
+                everDeleted = true;
+            }
+            map.clear();
+            if (secondaryKeyEnabled) {
+                map2.clear();
+            }
+            ageQueue.clear();
+            clockQueue.clear();
+            totalWeight = 0;
+        } finally {
+            evictionLock.unlock();
         }
-        map.clear();
-        map2.clear();
     }
 
     /** Returns the number of entries currently in the cache. */
-    synchronized public int size() {
+    public int size() {
         return map.size();
     }
 
@@ -382,7 +628,7 @@ public class ObjectCache<T> {
      * Returns the maximum number of milliseconds items may live in this cache,
      * as specified at creation time.
      */
-    synchronized public long getMaxAge() {
+    public long getMaxAge() {
         return maxAge;
     }
 
@@ -390,36 +636,126 @@ public class ObjectCache<T> {
      * Returns the maximum number of items that may be cached in this cache, as
      * specified at creation time.
      */
-    synchronized public int getMaxSize() {
+    public int getMaxSize() {
         return maxSize;
     }
 
+    /**
+     * Returns the maximum total weight of the items in this cache, as
+     * specified at creation time, or 0 if the cache is not weight-bounded.
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Returns the current total weight of the items in this cache; always 0
+     * if the cache is not weight-bounded.
+     */
+    public long getTotalWeight() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
     /**
      * Returns true if this cache has ever lost an item due to old-age
      * expiration, insufficient space pruning, or explicit invalidation.
      */
-    synchronized public boolean hasEverLostItem() {
+    public boolean hasEverLostItem() {
         return everDeleted;
     }
 
-    /** Removes the item with the specified key from both maps, if it exists */
-    synchronized private void invalidateRaw(ObjectCacheKey key) {
-        ObjectCacheItem<?> item = map.remove(key);
+    /**
+     * Returns the number of lookups, by either key, that have returned a
+     * cached object since this cache was created or its statistics were last
+     * reset.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
 
-        if (item != null) {
-            String key2 = item.getKey2();
+    /**
+     * Returns the number of lookups, by either key, that have found no valid
+     * cached object since this cache was created or its statistics were last
+     * reset. Lookups that encounter an expired object count as misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
 
-            if (key2 != null) {
-                map2.remove(key2);
-            }
+    /**
+     * Returns the number of items that have been removed from this cache in
+     * order to make room for others since it was created or its statistics
+     * were last reset.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the number of items that have been removed from this cache
+     * because they exceeded the maximum age since it was created or its
+     * statistics were last reset.
+     */
+    public long getExpirationCount() {
+        return expirationCount.get();
+    }
+
+    /**
+     * Zeroes this cache's hit, miss, eviction, and expiration counters
+     */
+    public void resetStatistics() {
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+        expirationCount.set(0);
+    }
+
+    /**
+     * Determines whether the specified item has outlived this cache's maximum
+     * age as of the specified time
+     */
+    private boolean isExpired(ObjectCacheItem<T> item, long currentTime) {
+        return (maxAge > 0)
+                && ((currentTime - item.getCreationTime()) > maxAge);
+    }
+
+    /**
+     * Removes the item with the specified key from both maps, if it exists.
+     * The caller must hold {@code evictionLock}.
+     */
+    private void invalidateRaw(int key) {
+        ObjectCacheItem<T> item = map.get(key);
+
+        if (item != null) {
+            removeItem(item);
             everDeleted = true;
         }
     }
+
+    /**
+     * Removes the specified current item from both maps and both queues. The
+     * caller must hold {@code evictionLock}.
+     */
+    private void removeItem(ObjectCacheItem<T> item) {
+        map.remove(item.getKey(), item);
+        if (item.getKey2() != null) {
+            map2.remove(item.getKey2(), item);
+        }
+        ageQueue.remove(item);
+        clockQueue.remove(item);
+        totalWeight -= item.getWeight();
+    }
 }
 
 /**
  * This class is internal to the ObjectCache; it's the datatype that is stored
- * in the underlying map.
+ * in the underlying maps. It carries the links for both of the cache's item
+ * queues; those links are accessed only under the cache's eviction lock.
  */
 class ObjectCacheItem<T> {
     private final int key;
@@ -430,21 +766,34 @@ class ObjectCacheItem<T> {
 
     private final long creationTime;
 
-    private long accessTime;
+    private final long weight;
+
+    /**
+     * Set by lookups, cleared by eviction passes; volatile so that lookups
+     * need not acquire any lock
+     */
+    private volatile boolean hit;
 
-    private int hits;
+    /** Queue links, indexed by {@code ItemQueue.AGE} and {@code CLOCK} */
+    final ObjectCacheItem<T>[] prev;
 
-    ObjectCacheItem(int key, T obj) {
-        this(key, null, obj);
+    final ObjectCacheItem<T>[] next;
+
+    ObjectCacheItem(int key, String key2, T obj, long weight) {
+        this(key, key2, obj, weight, System.currentTimeMillis());
     }
 
-    ObjectCacheItem(int key, String key2, T obj) {
+    @SuppressWarnings("unchecked")
+    ObjectCacheItem(int key, String key2, T obj, long weight,
+            long creationTime) {
         this.key = key;
+        this.weight = weight;
         this.key2 = key2;
         this.obj = obj;
-        creationTime = System.currentTimeMillis();
-        accessTime = creationTime;
-        hits = 1;
+        this.creationTime = creationTime;
+        hit = false;
+        prev = new ObjectCacheItem[2];
+        next = new ObjectCacheItem[2];
     }
 
     public int getKey() {
@@ -459,81 +808,139 @@ class ObjectCacheItem<T> {
         return obj;
     }
 
-    public void recordHit(long timeOfHit) {
-        hits++;
-        accessTime = timeOfHit;
+    public void recordHit() {
+        if (!hit) {
+            hit = true;
+        }
+    }
+
+    /**
+     * Clears this item's referenced flag
+     * 
+     * @return {@code true} if the flag was set before this invocation
+     */
+    public boolean clearHit() {
+        if (hit) {
+            hit = false;
+            
+            return true;
+        } else {
+            return false;
+        }
     }
 
     public long getCreationTime() {
         return creationTime;
     }
 
-    public long getLastAccessTime() {
-        return accessTime;
+    public long getWeight() {
+        return weight;
     }
 }
 
 /**
- * This class is internal to the ObjectCache; it's the datatype that is stored
- * as the key for Objects in the underlying map. Immutable once created.
+ * This class is internal to the ObjectCache; it's a doubly-linked list of
+ * {@code ObjectCacheItem}s threaded through one pair of each item's link
+ * slots, so that insertion, removal, and repositioning are constant-time. Not
+ * thread-safe; the owning cache serializes access.
  */
-class ObjectCacheKey {
-    private final int key;
+class ItemQueue<T> {
+    
+    /** The link slot used by the creation-order queue */
+    static final int AGE = 0;
 
-    private final int hashValue;
+    /** The link slot used by the eviction-order queue */
+    static final int CLOCK = 1;
 
-    ObjectCacheKey(int key) {
-        this.key = key;
-        hashValue = String.valueOf(key).hashCode();
+    private final int slot;
+
+    private ObjectCacheItem<T> head;
+
+    private ObjectCacheItem<T> tail;
+
+    ItemQueue(int slot) {
+        this.slot = slot;
+        head = null;
+        tail = null;
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (o == this) {
-            return true;
-        } else if (o instanceof ObjectCacheKey) {
-            ObjectCacheKey x = (ObjectCacheKey) o;
-            
-            return (this.key == x.key);
+    boolean isEmpty() {
+        return head == null;
+    }
+
+    ObjectCacheItem<T> peekFirst() {
+        return head;
+    }
+
+    void addLast(ObjectCacheItem<T> item) {
+        item.prev[slot] = tail;
+        item.next[slot] = null;
+        if (tail == null) {
+            head = item;
         } else {
-            return false;
+            tail.next[slot] = item;
         }
+        tail = item;
     }
 
-    @Override
-    public int hashCode() {
-        return hashValue;
-    }
-}
+    /**
+     * Unlinks the specified item; has no effect if the item is not currently
+     * a member of this queue
+     */
+    void remove(ObjectCacheItem<T> item) {
+        ObjectCacheItem<T> p = item.prev[slot];
+        ObjectCacheItem<T> n = item.next[slot];
 
-/**
- * A {@code Comparator} for {@code ObjectCacheItem}s that makes use of last
- * access times for the specified items to determine their relative ranking.
- * Items that are more preferred for deletion compare less than items that are
- * less preferred for deletion.
- */
-class LastAccessItemComparator implements Comparator<ObjectCacheItem<?>> {
+        if ((p == null) && (head != item)) {
+            return;
+        }
+        if (p == null) {
+            head = n;
+        } else {
+            p.next[slot] = n;
+        }
+        if (n == null) {
+            tail = p;
+        } else {
+            n.prev[slot] = p;
+        }
+        item.prev[slot] = null;
+        item.next[slot] = null;
+    }
 
     /**
-     * Compares the two items to evaluate which is more preferred for deletion
-     * from its cache
-     * 
-     * @param a the first item to compare
-     * @param b the second item to compare
-     * @return an integer less than, equal to, or greater than zero, depending
-     *         on whether item {@code a} is more, equally, or less preferred
-     *         for deletion (respectively) than {@code b}
-     */
-    public int compare(ObjectCacheItem<?> a, ObjectCacheItem<?> b) {
-        long aScore = a.getLastAccessTime();
-        long bScore = b.getLastAccessTime();
-
-        if (aScore < bScore) {
-            return -1;
-        } else if (aScore > bScore) {
-            return 1;
+     * Links the specified replacement in the place of the specified item,
+     * which must be a member of this queue, and unlinks that item
+     */
+    void replace(ObjectCacheItem<T> item, ObjectCacheItem<T> replacement) {
+        ObjectCacheItem<T> p = item.prev[slot];
+        ObjectCacheItem<T> n = item.next[slot];
+
+        replacement.prev[slot] = p;
+        replacement.next[slot] = n;
+        if (p == null) {
+            head = replacement;
         } else {
-            return 0;
+            p.next[slot] = replacement;
         }
+        if (n == null) {
+            tail = replacement;
+        } else {
+            n.prev[slot] = replacement;
+        }
+        item.prev[slot] = null;
+        item.next[slot] = null;
+    }
+
+    void moveToLast(ObjectCacheItem<T> item) {
+        if (tail != item) {
+            remove(item);
+            addLast(item);
+        }
+    }
+
+    void clear() {
+        head = null;
+        tail = null;
     }
 }
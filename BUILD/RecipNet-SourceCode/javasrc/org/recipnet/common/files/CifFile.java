@@ -9,6 +9,8 @@
  *              assertions were enabled) behavior with assertions disabled is
  *              not affected
  * 06-Jun-2006: jobollin fixed various compiler warnings  
+ * 18-Oct-2026: agent changed DataLoop to store its values by column, in
+ *              LoopColumns, and added bulk column accessors to it
  */
 
 package org.recipnet.common.files;
@@ -777,6 +779,17 @@ public class CifFile {
      * exception to be thrown.  If a program has intentionally emptied the loop
      * and wishes to repopulate it then it can lower the "emptied" flag by
      * invoking the loop's reset() method.  
+     * </p><p>
+     * <em>Storage.</em>  Loop values are stored by column rather than by
+     * record: numbers as primitive values and uncertainties, and strings
+     * dictionary-encoded, so that the values retrieved from a loop are
+     * equivalent to, but not necessarily the same objects as, those that were
+     * added (except for {@code CifValue} implementations other than those of
+     * the {@code org.recipnet.common.files.cif} package, which are kept as
+     * given).  Whole columns can be extracted in bulk via
+     * {@link #getNumericValues(String, double)},
+     * {@link #getStandardUncertainties(String, double)}, and
+     * {@link #getColumnValues(String)}.
      * </p>
      * 
      * @author  John C. Bollinger
@@ -797,10 +810,16 @@ public class CifFile {
         private final List<String> lcaseNames;
 
         /**
-         * A {@code List} of the data values of this loop; values for all
-         * loop records are concatenated into a single list
+         * A {@code List} of the {@code LoopColumn}s holding the data values of
+         * this loop, one for each data name, in the same order as the names
+         */
+        private final List<LoopColumn> columns;
+
+        /**
+         * The number of records in this loop, meaningful only while the loop
+         * has at least one data name
          */
-        private final List<CifValue> values;
+        private int recordCount;
 
         /**
          * A {@code ConcurrentCollection} of the {@code LoopListener}s
@@ -831,7 +850,8 @@ public class CifFile {
         public DataLoop() {
             names = new ArrayList<String>();
             lcaseNames = new ArrayList<String>();
-            values = new ArrayList<CifValue>();
+            columns = new ArrayList<LoopColumn>();
+            recordCount = 0;
             versionCounter = 0;
             emptied = false;
             listeners = new ConcurrentCollection<LoopListener>();
@@ -865,6 +885,7 @@ public class CifFile {
                     } else if (isValidDataName(name)) {
                         names.add(name);
                         lcaseNames.add(lcaseName);
+                        columns.add(LoopColumn.newColumn());
                     } else {
                         throw new IllegalArgumentException(
                                 "Illegal data name: '" + name + "'");
@@ -872,8 +893,15 @@ public class CifFile {
                 }
 
                 // add values with data type enforcement
+                int column = 0;
+
                 for (CifValue value : data) {
-                    values.add(value);
+                    columns.set(column, columns.get(column).add(recordCount,
+                            value));
+                    if (++column == columns.size()) {
+                        column = 0;
+                        recordCount++;
+                    }
                 }
             }
         }
@@ -963,15 +991,17 @@ public class CifFile {
                     }
                 }
                 
-                int newRecordSize = getRecordSize() + 1;
                 int recordCount = getRecordCount();
+                LoopColumn column = LoopColumn.newColumn();
 
                 markChanged();
                 names.add(position, name); // may throw IndexOutOfBoundsException
                 lcaseNames.add(position, name.toLowerCase());
                 for (int record = 0; record < recordCount; record++) {
-                    values.add(record * newRecordSize + position, defaultValue);
+                    column = column.add(record, defaultValue);
                 }
+                columns.add(position, column);
+                this.recordCount = recordCount;
 
                 fireLoopEvent(new LoopEvent(LoopEvent.EventCode.NAME_ADDED,
                                             this, name));
@@ -1006,21 +1036,15 @@ public class CifFile {
             int column = lcaseNames.indexOf(name.toLowerCase());
 
             if (column >= 0) {
-                int recordSize = getRecordSize();
-
                 markChanged();
-
-                /*
-                 * Remove values from back to front to avoid messy indexing
-                 * issues
-                 */
-                for (int i = ((getRecordCount() - 1) * recordSize) + column;
-                     i >= 0; i -= recordSize) {
-                    values.remove(i);
-                }
+                columns.remove(column);
                 names.remove(column);
                 lcaseNames.remove(column);
-                recordSize--;
+                if (names.isEmpty()) {
+                    
+                    // the values of all the records are now gone
+                    recordCount = 0;
+                }
                 fireLoopEvent(new LoopEvent(LoopEvent.EventCode.NAME_REMOVED,
                                             this, name));
                 checkEmptied();                                            
@@ -1097,10 +1121,18 @@ public class CifFile {
             } else if (recordSize == 0) {
                 throw new IllegalStateException("Loop has no data names");
             } else {
-                int start = index * recordSize;
+                int recordCount = getRecordCount();
                 
                 markChanged();
-                values.subList(start, start).addAll(newValues);
+                if ((index < 0) || (index > recordCount)) {
+                    throw new IndexOutOfBoundsException(
+                            "Illegal record number: " + index);
+                }
+                for (int column = 0; column < recordSize; column++) {
+                    columns.set(column, columns.get(column).add(index,
+                            newValues.get(column)));
+                }
+                this.recordCount = recordCount + 1;
                 fireLoopEvent(new LoopEvent(LoopEvent.EventCode.RECORD_ADDED,
                                             this, index));
             }
@@ -1122,13 +1154,16 @@ public class CifFile {
         public List<CifValue> getRecordValues(int index) {
             int recordSize = getRecordSize();
             
-            if (recordSize == 0) {
+            if ((index < 0) || (index >= getRecordCount())) {
                 throw new IndexOutOfBoundsException("No loop record #" + index);
             } else {
-                int start = index * recordSize;
+                List<CifValue> record = new ArrayList<CifValue>(recordSize);
+                
+                for (LoopColumn column : columns) {
+                    record.add(column.get(index));
+                }
                 
-                return new ArrayList<CifValue>(
-                        values.subList(start, start + recordSize));
+                return record;
             }
         }
         
@@ -1146,18 +1181,13 @@ public class CifFile {
          *         zero or greater than or equal to the number of loop records
          */
         public List<CifValue> removeRecord(int index) {
-            int recordSize = getRecordSize();
-            
-            if (recordSize == 0) {
+            if ((index < 0) || (index >= getRecordCount())) {
                 throw new IndexOutOfBoundsException("No loop record #" + index);
             } else {
-                int start = index * recordSize;
-                List<CifValue> record
-                        = values.subList(start, start + recordSize);
-                List<CifValue> rval = new ArrayList<CifValue>(record);
+                List<CifValue> rval = getRecordValues(index);
 
                 markChanged();
-                record.clear();
+                deleteRecord(index);
                 fireLoopEvent(new LoopEvent(LoopEvent.EventCode.RECORD_REMOVED,
                                             this, index));
                 checkEmptied();
@@ -1184,7 +1214,6 @@ public class CifFile {
          *         while the specified name is not in the loop 
          */
         public List<CifValue> getValuesForName(final String name) {
-            final List<CifValue> loopValues = this.values;
             final List<String> loopLcNames = this.lcaseNames;
             final String dataName = name.toLowerCase();
 
@@ -1198,7 +1227,7 @@ public class CifFile {
                     
                 @Override
                 public CifValue get(int index) {
-                    return loopValues.get(getValueIndex(index));
+                    return getValue(getOffset(), index);
                 }
                     
                 @Override
@@ -1207,10 +1236,6 @@ public class CifFile {
                     return super.iterator();
                 }
                     
-                private int getValueIndex(int recordIndex) {
-                    return ((recordIndex * getRecordSize()) + getOffset());
-                }
-                    
                 private int getOffset() {
                     int offset = loopLcNames.indexOf(dataName);
                         
@@ -1278,7 +1303,7 @@ public class CifFile {
                 throw new IndexOutOfBoundsException("Illegal record number: "
                         + record);
             } else {
-                return values.get((record * getRecordSize()) + column);
+                return columns.get(column).get(record);
             }
         }
 
@@ -1338,7 +1363,7 @@ public class CifFile {
                 throw new NullPointerException("The value may not be null");
             } else {
                 markChanged();
-                values.set((record * getRecordSize()) + column, value);
+                columns.set(column, columns.get(column).set(record, value));
                 fireLoopEvent(new LoopEvent(LoopEvent.EventCode.DATUM_MODIFIED,
                                             this, names.get(column), record));
             }
@@ -1360,9 +1385,131 @@ public class CifFile {
          * @return the number of records in this loop
          */
         public int getRecordCount() {
-            int rsize = getRecordSize();
+            return (getRecordSize() == 0) ? 0 : recordCount;
+        }
+
+        /**
+         * Returns the numeric values associated with the specified (case
+         * insensitive) data name in this loop, in record order.  This is
+         * equivalent to, but much faster than, examining each value of
+         * {@link #getValuesForName(String)} in turn.
+         * 
+         * @param  dataName a {@code String} containing the data name of
+         *         interest; should not be {@code null}
+         * @param  defaultValue the {@code double} to report for values that
+         *         are not numbers, such as placeholders
+         * 
+         * @return a new {@code double} array containing, for each loop record,
+         *         the value of the {@code NumberValue} for the specified name
+         *         or {@code defaultValue} if that value is not a
+         *         {@code NumberValue}
+         * 
+         * @throws IllegalArgumentException if the data name is not present
+         *         in this loop
+         */
+        public double[] getNumericValues(String dataName,
+                double defaultValue) {
+            LoopColumn column = getColumn(dataName);
+            double[] rval = new double[getRecordCount()];
             
-            return (rsize == 0) ? 0 : (values.size() / rsize);
+            for (int record = 0; record < rval.length; record++) {
+                rval[record] = column.getNumber(record, defaultValue);
+            }
+            
+            return rval;
+        }
+
+        /**
+         * Returns the standard uncertainties of the numeric values associated
+         * with the specified (case insensitive) data name in this loop, in
+         * record order; numbers without a standard uncertainty are reported
+         * with an uncertainty of zero
+         * 
+         * @param  dataName a {@code String} containing the data name of
+         *         interest; should not be {@code null}
+         * @param  defaultValue the {@code double} to report for values that
+         *         are not numbers, such as placeholders
+         * 
+         * @return a new {@code double} array containing, for each loop record,
+         *         the standard uncertainty of the {@code NumberValue} for the
+         *         specified name or {@code defaultValue} if that value is not
+         *         a {@code NumberValue}
+         * 
+         * @throws IllegalArgumentException if the data name is not present
+         *         in this loop
+         */
+        public double[] getStandardUncertainties(String dataName,
+                double defaultValue) {
+            LoopColumn column = getColumn(dataName);
+            double[] rval = new double[getRecordCount()];
+            
+            for (int record = 0; record < rval.length; record++) {
+                rval[record] = column.getSU(record, defaultValue);
+            }
+            
+            return rval;
+        }
+
+        /**
+         * Returns the values associated with the specified (case insensitive)
+         * data name in this loop, in record order, as an array that can be
+         * modified without effect on this loop
+         * 
+         * @param  dataName a {@code String} containing the data name of
+         *         interest; should not be {@code null}
+         * 
+         * @return a new array of the {@code CifFile.CifValue}s for the
+         *         specified name, one per loop record
+         * 
+         * @throws IllegalArgumentException if the data name is not present
+         *         in this loop
+         */
+        public CifValue[] getColumnValues(String dataName) {
+            LoopColumn column = getColumn(dataName);
+            CifValue[] rval = new CifValue[getRecordCount()];
+            
+            for (int record = 0; record < rval.length; record++) {
+                rval[record] = column.get(record);
+            }
+            
+            return rval;
+        }
+
+        /**
+         * Returns the {@code LoopColumn} holding the values for the specified
+         * (case insensitive) data name
+         * 
+         * @param  dataName a {@code String} containing the data name of
+         *         interest; should not be {@code null}
+         * 
+         * @return the {@code LoopColumn} for {@code dataName}
+         * 
+         * @throws IllegalArgumentException if the data name is not present
+         *         in this loop
+         */
+        private LoopColumn getColumn(String dataName) {
+            int column = lcaseNames.indexOf(dataName.toLowerCase());
+            
+            if (column < 0) {
+                throw new IllegalArgumentException("name '" + dataName
+                                                   + "' is not in this loop");
+            } else {
+                return columns.get(column);
+            }
+        }
+
+        /**
+         * Removes the record at the specified index from every column of this
+         * loop, without any of the checks, version tracking, or event firing
+         * that the public methods perform
+         * 
+         * @param  index the zero-based index of the record to remove
+         */
+        private void deleteRecord(int index) {
+            for (LoopColumn column : columns) {
+                column.remove(index);
+            }
+            recordCount--;
         }
 
         /**
@@ -1380,24 +1527,16 @@ public class CifFile {
          */
         public Iterator<List<CifValue>> recordIterator() {
             
-            // a local reference to the values list
-            final List<CifValue> loopValues = this.values;
-            
             return new Iterator<List<CifValue>>() {
                 
-                // the index of the first value of the next record 
-                private int nextPos = 0;
-                
-                /*
-                 * the record size; may be safely cached because it can't be
-                 * changed without invalidating this iterator
-                 */
-                private int recordSize = getRecordSize();
+                // the index of the next record 
+                private int nextRecord = 0;
                 
                 /*
-                 * The most recent record returned by this iterator
+                 * The index of the most recent record returned by this
+                 * iterator, or -1 if there is none or it has been removed
                  */
-                private List<CifValue> lastRecord = null;
+                private int lastRecord = -1;
                 
                 /*
                  * The value that the containing DataLoop's version counter
@@ -1419,7 +1558,7 @@ public class CifFile {
                 // see Iterator.hasNext()
                 public boolean hasNext() {
                     assertLoopNotModified();
-                    return (nextPos < loopValues.size());
+                    return (nextRecord < getRecordCount());
                 }
 
                 // see Iterator.next()
@@ -1427,33 +1566,24 @@ public class CifFile {
                     if (!hasNext()) {  // check for modification happens here
                         throw new NoSuchElementException("No more records");
                     } else {
-                        int first = nextPos;
-                        int afterLast = first + recordSize;
-
-                        nextPos = afterLast;
-                        lastRecord = loopValues.subList(first, afterLast);
-
-                        /*
-                         * need a new List in case the record is later
-                         * remove()ed
-                         */
-                        return new ArrayList<CifValue>(lastRecord);
+                        lastRecord = nextRecord++;
+                        
+                        return getRecordValues(lastRecord);
                     }
                 }
 
                 // see Iterator.remove()
                 public void remove() {
                     assertLoopNotModified();
-                    if (lastRecord != null) {
+                    if (lastRecord >= 0) {
                         markChanged();
                         dataVersion = DataLoop.this.versionCounter;
-                        lastRecord.clear();
-                        lastRecord = null;
-                        nextPos -= recordSize;
+                        deleteRecord(lastRecord);
+                        lastRecord = -1;
+                        nextRecord--;
                         fireLoopEvent(
                                 new LoopEvent(LoopEvent.EventCode.RECORD_REMOVED,
-                                              DataLoop.this,
-                                              nextPos / recordSize));
+                                              DataLoop.this, nextRecord));
                         checkEmptied();
                     } else {
                         throw new IllegalStateException(
@@ -1479,7 +1609,7 @@ public class CifFile {
          * this method is invoked at any other time. 
          */
         void checkEmptied() {
-            if (values.size() == 0) {
+            if (getRecordCount() == 0) {
                 emptied = true;
                 fireLoopEvent(new LoopEvent(LoopEvent.EventCode.LOOP_EMPTIED,
                                             DataLoop.this));
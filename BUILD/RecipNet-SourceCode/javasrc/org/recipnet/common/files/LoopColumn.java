@@ -0,0 +1,737 @@
+/*
+ * Reciprocal Net Project
+ *
+ * LoopColumn.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.common.files;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.recipnet.common.files.CifFile.CifValue;
+import org.recipnet.common.files.cif.NAValue;
+import org.recipnet.common.files.cif.NumberValue;
+import org.recipnet.common.files.cif.StringValue;
+import org.recipnet.common.files.cif.UnknownValue;
+
+/**
+ * <p>
+ * The storage for the values associated with one data name of a
+ * {@code CifFile.DataLoop}, in record order.  Loops in reflection-rich CIFs
+ * hold tens or hundreds of thousands of values, nearly all of them numbers in
+ * columns of numbers or strings drawn from a small set, so three
+ * representations are used:
+ * </p>
+ * <ul>
+ * <li>{@link NumberColumn}, which holds numbers as primitive {@code double}
+ * values and standard uncertainties plus a one-byte format code from which
+ * each {@code NumberValue} is recreated on demand, together with the unknown
+ * and not-applicable placeholders;</li>
+ * <li>{@link StringColumn}, which dictionary-encodes string values and
+ * placeholders; and</li>
+ * <li>{@link ObjectColumn}, which holds arbitrary {@code CifValue}s.</li>
+ * </ul>
+ * <p>
+ * Every column starts out as a {@code NumberColumn}.  A column that is asked
+ * to hold a value it cannot represent exactly converts itself to a more
+ * general representation, so the mutators return the column that should be
+ * used from then on.  Values obtained from a column are equivalent to those
+ * stored, but are not necessarily the same objects unless the column has had
+ * to fall back to an {@code ObjectColumn}.
+ * </p><p>
+ * Columns perform no bounds checking beyond that inherent in array access;
+ * {@code DataLoop} validates indices before it uses them.
+ * </p>
+ *
+ * @see CifFile.DataLoop
+ */
+abstract class LoopColumn {
+
+    /** The smallest array length allocated for a column's storage */
+    private final static int MIN_CAPACITY = 8;
+
+    /** The number of values in this column */
+    protected int size;
+
+    /**
+     * Creates a new, empty column suitable for holding any sequence of values
+     *
+     * @return an empty {@code LoopColumn}
+     */
+    static LoopColumn newColumn() {
+        return new NumberColumn();
+    }
+
+    /**
+     * Returns the number of values in this column
+     *
+     * @return the number of values in this column
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value at the specified index in this column
+     *
+     * @param  index the index of the value to return
+     *
+     * @return the value at {@code index}
+     */
+    abstract CifValue get(int index);
+
+    /**
+     * Inserts a value into this column at the specified index, shifting the
+     * values at that and subsequent indices up by one
+     *
+     * @param  index the index at which to insert {@code value}
+     * @param  value the {@code CifValue} to insert
+     *
+     * @return the column holding the result, which is either this column or a
+     *         more general one replacing it
+     */
+    abstract LoopColumn add(int index, CifValue value);
+
+    /**
+     * Replaces the value at the specified index in this column
+     *
+     * @param  index the index of the value to replace
+     * @param  value the replacement {@code CifValue}
+     *
+     * @return the column holding the result, which is either this column or a
+     *         more general one replacing it
+     */
+    abstract LoopColumn set(int index, CifValue value);
+
+    /**
+     * Removes the value at the specified index from this column, shifting the
+     * values at subsequent indices down by one
+     *
+     * @param  index the index of the value to remove
+     */
+    abstract void remove(int index);
+
+    /**
+     * Returns the numeric value at the specified index in this column, if
+     * that value is a {@code NumberValue}
+     *
+     * @param  index the index of the value of interest
+     * @param  defaultValue the value to return if the value at {@code index}
+     *         is not a number
+     *
+     * @return the numeric value at {@code index}, or {@code defaultValue}
+     */
+    double getNumber(int index, double defaultValue) {
+        CifValue value = get(index);
+
+        return ((value instanceof NumberValue)
+                ? ((NumberValue) value).getValue() : defaultValue);
+    }
+
+    /**
+     * Returns the standard uncertainty of the value at the specified index in
+     * this column, if that value is a {@code NumberValue}
+     *
+     * @param  index the index of the value of interest
+     * @param  defaultValue the value to return if the value at {@code index}
+     *         is not a number
+     *
+     * @return the standard uncertainty of the value at {@code index}, or
+     *         {@code defaultValue}
+     */
+    double getSU(int index, double defaultValue) {
+        CifValue value = get(index);
+
+        return ((value instanceof NumberValue)
+                ? ((NumberValue) value).getSU() : defaultValue);
+    }
+
+    /**
+     * Copies the values of this column into a new {@code ObjectColumn}
+     *
+     * @return an {@code ObjectColumn} holding the values of this column
+     */
+    ObjectColumn toObjectColumn() {
+        ObjectColumn column = new ObjectColumn(size);
+
+        for (int i = 0; i < size; i++) {
+            column.values[i] = get(i);
+        }
+        column.size = size;
+
+        return column;
+    }
+
+    /**
+     * Computes the array length to which storage should grow to accommodate
+     * one more value
+     *
+     * @param  length the current array length
+     *
+     * @return the new array length
+     */
+    static int grow(int length) {
+        return Math.max(MIN_CAPACITY, length + (length >> 1));
+    }
+
+    /**
+     * <p>
+     * A column of numbers and placeholders.  Each number is stored as its
+     * {@code double} value and standard uncertainty together with a format
+     * code recording the number of digits after the decimal point and whether
+     * an uncertainty was given, which is enough to recreate the number's text,
+     * for instance "0.2345(6)", and from it an equivalent {@code NumberValue}.
+     * Only numbers whose value, uncertainty, and text are exactly those that
+     * {@code NumberValue.parse()} would produce from such a recreated text are
+     * accepted, which covers the plain fixed-point notation of practically all
+     * CIF numbers.  The uncertainty array is not allocated until a number with
+     * an uncertainty is added.
+     * </p>
+     */
+    static final class NumberColumn extends LoopColumn {
+
+        /** The format code for a value that cannot be held by this column */
+        private final static int UNSUPPORTED = Integer.MIN_VALUE;
+
+        /** The format code for the unknown-value placeholder */
+        private final static byte UNKNOWN = -1;
+
+        /** The format code for the not-applicable placeholder */
+        private final static byte NOT_APPLICABLE = -2;
+
+        /** The bits of a number's format code giving its decimal places */
+        private final static int DECIMALS_MASK = 0x0f;
+
+        /** The bit of a number's format code set when it has an uncertainty */
+        private final static int HAS_SU = 0x10;
+
+        /** The most digits a number may have to be held by this column */
+        private final static int MAX_DIGITS = 15;
+
+        /** The most digits a number's uncertainty may have */
+        private final static int MAX_SU_DIGITS = 9;
+
+        /** Powers of ten, all exactly representable as {@code double}s */
+        private final static double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3,
+                1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14,
+                1e15 };
+
+        /** The format codes of the values */
+        private byte[] formats;
+
+        /** The numeric values of the numbers; undefined for placeholders */
+        private double[] values;
+
+        /**
+         * The standard uncertainties of the numbers, or {@code null} if no
+         * number in this column has had one
+         */
+        private double[] sus;
+
+        /** The number of numbers, as opposed to placeholders, in the column */
+        private int numberCount;
+
+        /**
+         * Initializes a new, empty {@code NumberColumn}
+         */
+        NumberColumn() {
+            formats = new byte[MIN_CAPACITY];
+            values = new double[MIN_CAPACITY];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        CifValue get(int index) {
+            int format = formats[index];
+
+            if (format == UNKNOWN) {
+                return UnknownValue.instance;
+            } else if (format == NOT_APPLICABLE) {
+                return NAValue.instance;
+            } else {
+                return decode(index);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        LoopColumn add(int index, CifValue value) {
+            int format = encode(value);
+
+            if (format == UNSUPPORTED) {
+                return convert(value).add(index, value);
+            }
+            if (size == formats.length) {
+                int capacity = grow(size);
+                byte[] newFormats = new byte[capacity];
+                double[] newValues = new double[capacity];
+
+                System.arraycopy(formats, 0, newFormats, 0, size);
+                System.arraycopy(values, 0, newValues, 0, size);
+                formats = newFormats;
+                values = newValues;
+                if (sus != null) {
+                    double[] newSus = new double[capacity];
+
+                    System.arraycopy(sus, 0, newSus, 0, size);
+                    sus = newSus;
+                }
+            }
+            System.arraycopy(formats, index, formats, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            if (sus != null) {
+                System.arraycopy(sus, index, sus, index + 1, size - index);
+            }
+            size++;
+            store(index, format, value);
+
+            return this;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        LoopColumn set(int index, CifValue value) {
+            int format = encode(value);
+
+            if (format == UNSUPPORTED) {
+                return convert(value).set(index, value);
+            }
+            if (formats[index] >= 0) {
+                numberCount--;
+            }
+            store(index, format, value);
+
+            return this;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        void remove(int index) {
+            int tail = size - index - 1;
+
+            if (formats[index] >= 0) {
+                numberCount--;
+            }
+            System.arraycopy(formats, index + 1, formats, index, tail);
+            System.arraycopy(values, index + 1, values, index, tail);
+            if (sus != null) {
+                System.arraycopy(sus, index + 1, sus, index, tail);
+            }
+            size--;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        double getNumber(int index, double defaultValue) {
+            return ((formats[index] >= 0) ? values[index] : defaultValue);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        double getSU(int index, double defaultValue) {
+            return ((formats[index] < 0) ? defaultValue
+                    : ((sus == null) ? 0.0 : sus[index]));
+        }
+
+        /**
+         * Records the specified value and its format code at the specified
+         * index, which must already be within this column
+         *
+         * @param  index the index at which to store the value
+         * @param  format the format code of {@code value}
+         * @param  value the {@code CifValue} to store
+         */
+        private void store(int index, int format, CifValue value) {
+            formats[index] = (byte) format;
+            if (format >= 0) {
+                NumberValue number = (NumberValue) value;
+
+                values[index] = number.getValue();
+                if ((format & HAS_SU) != 0) {
+                    if (sus == null) {
+                        sus = new double[formats.length];
+                    }
+                    sus[index] = number.getSU();
+                } else if (sus != null) {
+                    sus[index] = 0.0;
+                }
+                numberCount++;
+            }
+        }
+
+        /**
+         * Copies this column's values into the most compact column that can
+         * also hold the specified value
+         *
+         * @param  value the {@code CifValue} that this column cannot hold
+         *
+         * @return a new column holding this column's values
+         */
+        private LoopColumn convert(CifValue value) {
+            if ((numberCount == 0) && (StringColumn.keyFor(value) != null)) {
+                StringColumn column = new StringColumn(formats.length);
+
+                for (int i = 0; i < size; i++) {
+                    column.add(i, get(i));
+                }
+
+                return column;
+            } else {
+                return toObjectColumn();
+            }
+        }
+
+        /**
+         * Determines the format code with which the specified value can be
+         * stored in a {@code NumberColumn}
+         *
+         * @param  value the {@code CifValue} to encode
+         *
+         * @return the format code for {@code value}, or {@code UNSUPPORTED}
+         *         if this column cannot hold it
+         */
+        private static int encode(CifValue value) {
+            if (value == UnknownValue.instance) {
+                return UNKNOWN;
+            } else if (value == NAValue.instance) {
+                return NOT_APPLICABLE;
+            } else if (value instanceof NumberValue) {
+                return encodeNumber((NumberValue) value);
+            } else {
+                return UNSUPPORTED;
+            }
+        }
+
+        /**
+         * Determines the format code with which the specified number can be
+         * stored in a {@code NumberColumn}.  The number's text must consist of
+         * an optional minus sign, an integer part without superfluous leading
+         * zeroes, an optional fraction part of at least one digit, and an
+         * optional uncertainty without superfluous leading zeroes, with no
+         * more than {@code MAX_DIGITS} digits in all before the uncertainty;
+         * and its value and uncertainty must be exactly those computed from
+         * that text by {@code NumberValue.parse()}.
+         *
+         * @param  number the {@code NumberValue} to encode
+         *
+         * @return the format code for {@code number}, or {@code UNSUPPORTED}
+         *         if this column cannot hold it
+         */
+        private static int encodeNumber(NumberValue number) {
+            String text = number.toString();
+            int length = text.length();
+            boolean negative = (length > 0) && (text.charAt(0) == '-');
+            int start = (negative ? 1 : 0);
+            int i = start;
+            long significand = 0;
+            int decimals = 0;
+            int format;
+            double value;
+
+            for (; (i < length) && isDigit(text.charAt(i)); i++) {
+                significand = (significand * 10) + (text.charAt(i) - '0');
+            }
+            if ((i == start) || ((i - start) > MAX_DIGITS)
+                    || ((text.charAt(start) == '0') && (i > start + 1))) {
+                return UNSUPPORTED;
+            }
+            if ((i < length) && (text.charAt(i) == '.')) {
+                for (i++; (i < length) && isDigit(text.charAt(i)); i++) {
+                    significand = (significand * 10) + (text.charAt(i) - '0');
+                    decimals++;
+                }
+                if ((decimals == 0) || ((i - start - 1) > MAX_DIGITS)) {
+                    return UNSUPPORTED;
+                }
+            }
+            format = decimals;
+
+            // the value must be the correctly rounded quotient
+            value = significand / POWERS_OF_TEN[decimals];
+            if (Double.doubleToLongBits(negative ? -value : value)
+                    != Double.doubleToLongBits(number.getValue())) {
+                return UNSUPPORTED;
+            }
+
+            if ((i < length) && (text.charAt(i) == '(')) {
+                int suStart = ++i;
+                long su = 0;
+
+                for (; (i < length) && isDigit(text.charAt(i)); i++) {
+                    su = (su * 10) + (text.charAt(i) - '0');
+                }
+                if ((i == suStart) || ((i - suStart) > MAX_SU_DIGITS)
+                        || ((text.charAt(suStart) == '0') && (i > suStart + 1))
+                        || (i != length - 1) || (text.charAt(i) != ')')
+                        || (number.getSU() != su * Math.pow(10, -decimals))) {
+                    return UNSUPPORTED;
+                }
+                format |= HAS_SU;
+                i++;
+            } else if (number.getSU() != 0.0) {
+                return UNSUPPORTED;
+            }
+
+            return ((i == length) ? format : UNSUPPORTED);
+        }
+
+        /**
+         * Recreates the {@code NumberValue} stored at the specified index
+         *
+         * @param  index the index of a number in this column
+         *
+         * @return the {@code NumberValue}
+         */
+        private NumberValue decode(int index) {
+            int format = formats[index];
+            double value = values[index];
+            int decimals = format & DECIMALS_MASK;
+            StringBuilder text = new StringBuilder(24);
+            int point;
+
+            if (Double.doubleToLongBits(value) < 0) {
+                text.append('-');
+            }
+            point = text.length();
+            text.append(Math.round(Math.abs(value) * POWERS_OF_TEN[decimals]));
+            if (decimals > 0) {
+                while ((text.length() - point) <= decimals) {
+                    text.insert(point, '0');
+                }
+                text.insert(text.length() - decimals, '.');
+            }
+            if ((format & HAS_SU) != 0) {
+                text.append('(');
+                text.append(Math.round(sus[index] * POWERS_OF_TEN[decimals]));
+                text.append(')');
+            }
+
+            return NumberValue.parse(text);
+        }
+
+        /**
+         * Determines whether the specified character is an ASCII decimal digit
+         *
+         * @param  c the character to test
+         *
+         * @return {@code true} if {@code c} is between '0' and '9' inclusive
+         */
+        private static boolean isDigit(char c) {
+            return ((c >= '0') && (c <= '9'));
+        }
+    }
+
+    /**
+     * A column of string values and placeholders in which each distinct value
+     * is stored once, in a dictionary, and the column itself holds only
+     * dictionary codes.  Dictionary entries are not removed when the values
+     * that use them are.  A column whose values are mostly distinct, such as
+     * one of atom site labels, gains nothing from the dictionary, so once the
+     * dictionary has more than {@code MAX_UNSHARED_ENTRIES} entries and holds
+     * more than half as many entries as the column has values, the column
+     * converts itself to an {@code ObjectColumn}.
+     */
+    static final class StringColumn extends LoopColumn {
+
+        /**
+         * The number of dictionary entries allowed regardless of how few of
+         * them are shared among values
+         */
+        private final static int MAX_UNSHARED_ENTRIES = 256;
+
+        /** The dictionary codes of the values */
+        private int[] codes;
+
+        /** The distinct values in this column, indexed by dictionary code */
+        private final List<CifValue> dictionary;
+
+        /** The dictionary codes of the values, keyed by {@code keyFor()} */
+        private final Map<Object, Integer> codeMap;
+
+        /**
+         * Initializes a new, empty {@code StringColumn}
+         *
+         * @param  capacity the number of values for which to allocate space
+         */
+        StringColumn(int capacity) {
+            codes = new int[Math.max(MIN_CAPACITY, capacity)];
+            dictionary = new ArrayList<CifValue>();
+            codeMap = new HashMap<Object, Integer>();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        CifValue get(int index) {
+            return dictionary.get(codes[index]);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        LoopColumn add(int index, CifValue value) {
+            Object key = keyFor(value);
+
+            if (key == null) {
+                return toObjectColumn().add(index, value);
+            }
+            if (size == codes.length) {
+                int[] newCodes = new int[grow(size)];
+
+                System.arraycopy(codes, 0, newCodes, 0, size);
+                codes = newCodes;
+            }
+            System.arraycopy(codes, index, codes, index + 1, size - index);
+            codes[index] = codeFor(key, value);
+            size++;
+
+            return (isDictionaryUseful() ? this : toObjectColumn());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        LoopColumn set(int index, CifValue value) {
+            Object key = keyFor(value);
+
+            if (key == null) {
+                return toObjectColumn().set(index, value);
+            }
+            codes[index] = codeFor(key, value);
+
+            return (isDictionaryUseful() ? this : toObjectColumn());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        void remove(int index) {
+            System.arraycopy(codes, index + 1, codes, index, size - index - 1);
+            size--;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        double getNumber(int index, double defaultValue) {
+            return defaultValue;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        double getSU(int index, double defaultValue) {
+            return defaultValue;
+        }
+
+        /**
+         * Determines whether enough of this column's values share dictionary
+         * entries for the dictionary to save space
+         *
+         * @return {@code false} if this column should be converted to an
+         *         {@code ObjectColumn}, otherwise {@code true}
+         */
+        private boolean isDictionaryUseful() {
+            int entries = dictionary.size();
+
+            return ((entries <= MAX_UNSHARED_ENTRIES) || (entries * 2 <= size));
+        }
+
+        /**
+         * Returns the dictionary code for the specified value, adding the
+         * value to the dictionary if necessary
+         *
+         * @param  key the dictionary key for {@code value}
+         * @param  value the {@code CifValue} to look up
+         *
+         * @return the dictionary code for {@code value}
+         */
+        private int codeFor(Object key, CifValue value) {
+            Integer code = codeMap.get(key);
+
+            if (code == null) {
+                code = Integer.valueOf(dictionary.size());
+                dictionary.add(value);
+                codeMap.put(key, code);
+            }
+
+            return code.intValue();
+        }
+
+        /**
+         * Determines the key under which the specified value is stored in a
+         * {@code StringColumn}'s dictionary: the underlying {@code String} of
+         * a {@code StringValue}, or the placeholder object itself
+         *
+         * @param  value the {@code CifValue} for which a key is requested
+         *
+         * @return the dictionary key for {@code value}, or {@code null} if a
+         *         {@code StringColumn} cannot hold it
+         */
+        static Object keyFor(CifValue value) {
+            if (value instanceof StringValue) {
+                return ((StringValue) value).getValue();
+            } else if ((value == UnknownValue.instance)
+                    || (value == NAValue.instance)) {
+                return value;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A column of arbitrary {@code CifValue}s, which it holds as given
+     */
+    static final class ObjectColumn extends LoopColumn {
+
+        /** The values */
+        private CifValue[] values;
+
+        /**
+         * Initializes a new, empty {@code ObjectColumn}
+         *
+         * @param  capacity the number of values for which to allocate space
+         */
+        ObjectColumn(int capacity) {
+            values = new CifValue[Math.max(MIN_CAPACITY, capacity)];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        CifValue get(int index) {
+            return values[index];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        LoopColumn add(int index, CifValue value) {
+            if (size == values.length) {
+                CifValue[] newValues = new CifValue[grow(size)];
+
+                System.arraycopy(values, 0, newValues, 0, size);
+                values = newValues;
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+
+            return this;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        LoopColumn set(int index, CifValue value) {
+            values[index] = value;
+
+            return this;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        void remove(int index) {
+            size--;
+            System.arraycopy(values, index + 1, values, index, size - index);
+            values[size] = null;
+        }
+    }
+}
@@ -4,11 +4,12 @@
  * AtomSiteAnisoIterator.java
  *
  * 02-Nov-2006: jobollin wrote first draft
+ * 18-Oct-2026: agent changed this iterator to extract whole loop columns at
+ *              construction instead of iterating over loop records
  */
 
 package org.recipnet.common.files.cif;
 
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -20,7 +21,9 @@ import org.recipnet.common.files.CifFile.DataLoop;
 /**
  * An iterator over the atom site anisotropic displacement records represented
  * in a CIF data block; adapts the underlying atom site loop's record structure
- * (or lack thereof) to producing {@code AtomSiteAnisoRecord} items.
+ * (or lack thereof) to producing {@code AtomSiteAnisoRecord} items.  The
+ * needed columns of the loop are extracted in bulk when the iterator is
+ * created, so the iteration reflects the loop as it was at that time.
  * 
  * @author jobollin
  * @version 0.9.0
@@ -28,15 +31,21 @@ import org.recipnet.common.files.CifFile.DataLoop;
 public class AtomSiteAnisoIterator implements Iterator<AtomSiteAnisoRecord> {
 
     /**
-     * The underlying iterator of the atom site {@code CifFile.DataLoop} that is
-     * being iterated
+     * The values of the label column of the atom site loop
      */
-    private final Iterator<List<CifValue>> loopIterator;
+    private final CifValue[] labels;
 
     /**
-     * The index of the label column in the loop structure
+     * The number of loop records to be iterated; zero if neither U nor B
+     * parameters are fully available
      */
-    private final int labelIndex;
+    private final int recordCount;
+
+    /**
+     * The index of the loop record from which the next element will be
+     * produced
+     */
+    private int nextRecord;
     
     private final DisplacementParameterExtractor uExtractor;
     private final DisplacementParameterExtractor bExtractor;
@@ -51,15 +60,17 @@ public class AtomSiteAnisoIterator implements Iterator<AtomSiteAnisoRecord> {
         }
         
         names = loop.getDataNames();
-        labelIndex = names.indexOf("_atom_site_aniso_label");
+        labels = loop.getColumnValues(
+                names.get(names.indexOf("_atom_site_aniso_label")));
         uExtractor = new DisplacementParameterExtractor('U', loop);
         bExtractor = new DisplacementParameterExtractor('B', loop);
         
         if (uExtractor.isFullyConfigured() || bExtractor.isFullyConfigured()) {
-            loopIterator = loop.recordIterator();
+            recordCount = labels.length;
         } else {
-            loopIterator = Collections.<List<CifValue>>emptyList().iterator();
+            recordCount = 0;
         }
+        nextRecord = 0;
     }
     
     /**
@@ -69,7 +80,7 @@ public class AtomSiteAnisoIterator implements Iterator<AtomSiteAnisoRecord> {
      * @see java.util.Iterator#hasNext()
      */
     public boolean hasNext() {
-        return loopIterator.hasNext();
+        return (nextRecord < recordCount);
     }
 
     /**
@@ -84,12 +95,17 @@ public class AtomSiteAnisoIterator implements Iterator<AtomSiteAnisoRecord> {
      * @see java.util.Iterator#next()
      */
     public AtomSiteAnisoRecord next() {
-        List<CifValue> values = loopIterator.next();
+        int record;
+        
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more records");
+        }
+        record = nextRecord++;
         
         return new AtomSiteAnisoRecord(
-                CifFileUtil.getCifString(values.get(labelIndex), null, false),
-                uExtractor.getDisplacementParameters(values),
-                bExtractor.getDisplacementParameters(values));
+                CifFileUtil.getCifString(labels[record], null, false),
+                uExtractor.getDisplacementParameters(record),
+                bExtractor.getDisplacementParameters(record));
     }
 
     /**
@@ -106,7 +122,7 @@ public class AtomSiteAnisoIterator implements Iterator<AtomSiteAnisoRecord> {
     
     /**
      * A helper class that extracts the anisotropic displacement parameters of
-     * a particular type from a CIF loop record and organizes then into an
+     * a particular type from a CIF loop's records and organizes then into an
      * array of {@code double}s in the order mandated by
      * {@link AtomSiteAnisoRecord} 
      *
@@ -116,31 +132,30 @@ public class AtomSiteAnisoIterator implements Iterator<AtomSiteAnisoRecord> {
     private static class DisplacementParameterExtractor {
         
         /**
-         * A cross-reference table between the expected indices of the elements
-         * of the arrays returned by this extractor, and the indices of the
-         * corresponding elements in the CIF loop records that will be processed
+         * The loop columns holding the parameters, indexed by the expected
+         * indices of the elements of the arrays returned by this extractor, or
+         * {@code null} if not all the parameters are present in the loop
          */
-        private final int[] indexTable;
+        private final double[][] columnTable;
         
         /**
          * Initializes a new {@code DisplacementParameterExtractor} to extract
-         * displacement parameters of the specified type from a CIF data loop
-         * arranged in the same manner as the one provided
+         * displacement parameters of the specified type from the provided CIF
+         * data loop
          *
          * @param displacementType the type of displacement parameter to
          *        extract, case-insensitive; the only values likely to be useful
          *        in practice are 'U' and 'B' (and their lower-case
          *        counterparts)
-         * @param sourceLoop a CIF {@code DataLoop} defining the data names
-         *        and data name order for the loop records to be processed by
-         *        this extractor 
+         * @param sourceLoop the CIF {@code DataLoop} from which to extract
+         *        the parameters
          */
         public DisplacementParameterExtractor(char displacementType,
                 DataLoop sourceLoop) {
             String baseName
                     = ("_atom_site_aniso_" + displacementType + "_").toLowerCase();
             List<String> names = sourceLoop.getLowerCaseNames(); 
-            int[] tempTable = new int[6];
+            double[][] tempTable = new double[6][];
             
             for (int i = 1; i < 4; i++) {
                 for (int j = i; j < 4; j++) {
@@ -150,41 +165,38 @@ public class AtomSiteAnisoIterator implements Iterator<AtomSiteAnisoRecord> {
                     int sourceIndex = names.indexOf(dataName);
 
                     if (sourceIndex < 0) {
-                        indexTable = null;
+                        columnTable = null;
                         return;
                     } else {
-                        tempTable[targetIndex] = sourceIndex;
+                        tempTable[targetIndex] = sourceLoop.getNumericValues(
+                                dataName, Double.NaN);
                     }
                 }
             }
             
-            indexTable = tempTable;
+            columnTable = tempTable;
         }
         
         /**
          * Extracts the anisotropic displacement parameters for which this
-         * class is configured from among the specified CIF data values
+         * class is configured from the specified record of its CIF loop
          *
-         * @param values a {@code List} of the CIF data values from which to
-         *        extract the parameters; expected to be in the sequence
-         *        defined when this object was initialized
+         * @param record the index of the loop record from which to extract
+         *        the parameters
          *        
          * @return the displacement parameters in the form of a
          *        {@code double[]}, in the sequence expected by
          *        {@code AtomSiteAnisoRecord}, or {@code null} if none are
          *        available
          */
-        public double[] getDisplacementParameters(List<CifValue> values) {
-            if (indexTable == null) {
+        public double[] getDisplacementParameters(int record) {
+            if (columnTable == null) {
                 return null;
             } else {
-                double[] rval = new double[indexTable.length];
+                double[] rval = new double[columnTable.length];
                 
-                for (int i = 0; i < indexTable.length; i++) {
-                    int index = indexTable[i];
-                    
-                    rval[i] = CifFileUtil.getCifDouble(
-                            values.get(index), Double.NaN);
+                for (int i = 0; i < columnTable.length; i++) {
+                    rval[i] = columnTable[i][record];
                 }
                 
                 return rval;
@@ -194,7 +206,7 @@ public class AtomSiteAnisoIterator implements Iterator<AtomSiteAnisoRecord> {
         /**
          * Indicates whether this object is 'fully configured', in which case
          * it can be expected to return non-{@code null} values from its
-         * {@link #getDisplacementParameters(List)} method.  This object would
+         * {@link #getDisplacementParameters(int)} method.  This object would
          * fail to be fully configured if it was unable to find all the
          * necessary CIF data items in the loop with which it was configured.
          *
@@ -202,7 +214,7 @@ public class AtomSiteAnisoIterator implements Iterator<AtomSiteAnisoRecord> {
          *         {@code false} if not
          */
         public boolean isFullyConfigured() {
-            return (indexTable != null);
+            return (columnTable != null);
         }
     }
 }
@@ -4,6 +4,8 @@
  * SymmetryContext.java
  *
  * 29-Nov-2005: jobollin extracted this class from ModelBuilder
+ * 18-Oct-2026: agent changed this iterator to extract whole loop columns at
+ *              construction instead of iterating over loop records
  */
 
 package org.recipnet.common.files.cif;
@@ -19,7 +21,9 @@ import org.recipnet.common.files.CifFile.DataLoop;
 /**
  * An iterator over the atom site records represented in a CIF data block;
  * adapts the structure of the underlying atom site loop's record structure
- * (or lack thereof) to producing {@code AtomSiteRecord} items.
+ * (or lack thereof) to producing {@code AtomSiteRecord} items.  The needed
+ * columns of the loop are extracted in bulk when the iterator is created, so
+ * the iteration reflects the loop as it was at that time.
  * 
  * @author jobollin
  * @version 0.9.0
@@ -27,45 +31,48 @@ import org.recipnet.common.files.CifFile.DataLoop;
 public class AtomSiteIterator implements Iterator<AtomSiteRecord> {
 
     /**
-     * The underlying iterator of the atom site {@code CifFile.DataLoop} that is
-     * being iterated
+     * The values of the label column of the atom site loop
      */
-    private final Iterator<List<CifValue>> loopIterator;
+    private final CifValue[] labels;
     
     /**
-     * The index of the label column in the loop structure
+     * The values of the type column of the atom site loop, or {@code null} if
+     * there is no such column
      */
-    private final int labelIndex;
+    private final CifValue[] types;
     
     /**
-     * The index of the type column in the loop structure
+     * The fractional x coordinates, with {@code NaN} for missing values
      */
-    private final int typeIndex;
+    private final double[] xs;
     
     /**
-     * The index of the fractional x coordinate column in the loop structure
+     * The fractional y coordinates, with {@code NaN} for missing values
      */
-    private final int xIndex;
+    private final double[] ys;
     
     /**
-     * The index of the fractional y coordinate column in the loop structure
+     * The fractional z coordinates, with {@code NaN} for missing values
      */
-    private final int yIndex;
+    private final double[] zs;
     
     /**
-     * The index of the fractional z coordinate column in the loop structure
+     * The isotropic U values, with {@code NaN} for missing values, or
+     * {@code null} if there is no such column
      */
-    private final int zIndex;
+    private final double[] us;
     
     /**
-     * The index of the isotropic U column in the loop structure
+     * The isotropic B values, with {@code NaN} for missing values, or
+     * {@code null} if there is no such column
      */
-    private final int uIndex;
+    private final double[] bs;
     
     /**
-     * The index of the isotropic B column in the loop structure
+     * The index of the loop record from which the next element will be
+     * produced
      */
-    private final int bIndex;
+    private int nextRecord;
     
     /**
      * Initializes an {@code AtomSiteIterator} based on the specified CIF data
@@ -82,6 +89,13 @@ public class AtomSiteIterator implements Iterator<AtomSiteRecord> {
     public AtomSiteIterator(DataBlock block) {
         DataLoop loop = CifFileUtil.findCifLoop(block, "_atom_site_label");
         List<String> names;
+        int labelIndex;
+        int typeIndex;
+        int xIndex;
+        int yIndex;
+        int zIndex;
+        int uIndex;
+        int bIndex;
         int temp;
         
         if (loop == null) {
@@ -110,7 +124,17 @@ public class AtomSiteIterator implements Iterator<AtomSiteRecord> {
         uIndex = names.indexOf("_atom_site_U_iso_or_equiv");
         bIndex = names.indexOf("_atom_site_B_iso_or_equiv");
         
-        loopIterator = loop.recordIterator();
+        labels = loop.getColumnValues(names.get(labelIndex));
+        types = ((typeIndex < 0) ? null
+                : loop.getColumnValues(names.get(typeIndex)));
+        xs = loop.getNumericValues(names.get(xIndex), Double.NaN);
+        ys = loop.getNumericValues(names.get(yIndex), Double.NaN);
+        zs = loop.getNumericValues(names.get(zIndex), Double.NaN);
+        us = ((uIndex < 0) ? null
+                : loop.getNumericValues(names.get(uIndex), Double.NaN));
+        bs = ((bIndex < 0) ? null
+                : loop.getNumericValues(names.get(bIndex), Double.NaN));
+        nextRecord = 0;
     }
     
     /**
@@ -120,7 +144,7 @@ public class AtomSiteIterator implements Iterator<AtomSiteRecord> {
      * @see java.util.Iterator#hasNext()
      */
     public boolean hasNext() {
-        return loopIterator.hasNext();
+        return (nextRecord < labels.length);
     }
 
     /**
@@ -135,21 +159,20 @@ public class AtomSiteIterator implements Iterator<AtomSiteRecord> {
      * @see java.util.Iterator#next()
      */
     public AtomSiteRecord next() {
-        List<CifValue> values = loopIterator.next();
-        CifValue uValue
-                = ((uIndex < 0) ? UnknownValue.instance : values.get(uIndex));
-        CifValue bValue
-                = ((bIndex < 0) ? UnknownValue.instance : values.get(bIndex));
+        int record;
+        
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more records");
+        }
+        record = nextRecord++;
         
         return new AtomSiteRecord(
-                CifFileUtil.getCifString(values.get(labelIndex), null, false),
-                ((typeIndex < 0) ? null
-                : CifFileUtil.getCifString(values.get(typeIndex), null, false)),
-                CifFileUtil.getCifDouble(values.get(xIndex), Double.NaN),
-                CifFileUtil.getCifDouble(values.get(yIndex), Double.NaN),
-                CifFileUtil.getCifDouble(values.get(zIndex), Double.NaN),
-                CifFileUtil.getCifDouble(uValue, Double.NaN),
-                CifFileUtil.getCifDouble(bValue, Double.NaN));
+                CifFileUtil.getCifString(labels[record], null, false),
+                ((types == null) ? null
+                : CifFileUtil.getCifString(types[record], null, false)),
+                xs[record], ys[record], zs[record],
+                ((us == null) ? Double.NaN : us[record]),
+                ((bs == null) ? Double.NaN : bs[record]));
     }
 
     /**
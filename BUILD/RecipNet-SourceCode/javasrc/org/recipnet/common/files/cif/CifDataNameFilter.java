@@ -0,0 +1,376 @@
+/*
+ * Reciprocal Net Project
+ *
+ * CifDataNameFilter.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.common.files.cif;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * A {@code CifTokenHandler} that passes to another handler only the data
+ * items of a CIF that are of interest to it, so that a program needing, say,
+ * the unit cell and atom sites from a CIF with a 50 MB reflection loop does
+ * not pay to build values for the reflections.  Items are selected by data
+ * name or by category: a selection string matches the data name equal to it
+ * and every data name that begins with it followed by an underscore, without
+ * regard to case, so that "_cell" selects "_cell_length_a" and
+ * "_cell_measurement_temperature", among others.
+ * </p><p>
+ * An unlooped data name and its value are passed on if the name is selected.
+ * A loop is passed on in its entirety, with all its data names and values, if
+ * any of its data names is selected, and is otherwise dropped.  Block headers
+ * and save frame delimiters are always passed on.  Because a loop header can
+ * be judged only once it is complete, the loop start and data names of a
+ * selected loop are passed on when its first value is scanned, with the
+ * {@code ScanState} current at that time.
+ * </p><p>
+ * This filter implements {@link CifValueViewHandler}, so the scanner reports
+ * values to it as views of its buffer and the values of dropped items are
+ * never made into objects at all; values passed on are reported as views or
+ * as {@code String}s according to what the target handler supports.  The
+ * scanner still reads all of the input, so lexical errors anywhere in it are
+ * reported, but grammatical errors confined to dropped items, such as a
+ * partial record in a dropped loop, are not detected by the target handler.
+ * After the scan, {@link #handleEndOfInput(ScanState)} should be invoked to
+ * pass on any loop header that is still pending.
+ * </p>
+ *
+ * @see CifParser#setSelectedDataNames(String[])
+ */
+public class CifDataNameFilter implements CifValueViewHandler {
+
+    /**
+     * An {@code enum} of the parsing states a {@code CifDataNameFilter} may
+     * have
+     */
+    private enum FilterState {
+
+        /** No data name is awaiting a value and no loop is in progress */
+        NO_ITEM,
+
+        /** A loop header is being scanned */
+        LOOP_HEADER,
+
+        /** The values of a loop being passed on are being scanned */
+        PASSING_LOOP,
+
+        /** The values of a loop being dropped are being scanned */
+        DROPPING_LOOP,
+
+        /** The value for an unlooped data name being passed on is expected */
+        PASSING_VALUE,
+
+        /** The value for an unlooped data name being dropped is expected */
+        DROPPING_VALUE
+    }
+
+    /** The handler to which selected tokens are passed */
+    private final CifTokenHandler target;
+
+    /**
+     * {@code target}, if it accepts values as views, otherwise {@code null}
+     */
+    private final CifValueViewHandler viewTarget;
+
+    /** The selected data names and categories, in lower case */
+    private final Set<String> selection;
+
+    /** The current parsing state */
+    private FilterState state;
+
+    /** The data names of the loop header being scanned */
+    private final List<String> pendingNames;
+
+    /** Whether any of {@code pendingNames} is selected */
+    private boolean pendingLoopSelected;
+
+    /**
+     * Whether the last token passed to the target handler was a loop value,
+     * in which case the target would take any further value for part of that
+     * loop
+     */
+    private boolean targetInLoop;
+
+    /**
+     * Initializes a new {@code CifDataNameFilter} that passes the specified
+     * data names and categories to the specified handler
+     *
+     * @param  target the {@code CifTokenHandler} to which to pass the tokens
+     *         for selected items
+     * @param  selections the data names and categories to select, as
+     *         described in the class documentation
+     */
+    public CifDataNameFilter(CifTokenHandler target, String... selections) {
+        if (target == null) {
+            throw new NullPointerException("target may not be null");
+        }
+        this.target = target;
+        this.viewTarget = ((target instanceof CifValueViewHandler)
+                ? (CifValueViewHandler) target : null);
+        this.selection = new HashSet<String>();
+        for (String selected : selections) {
+            selection.add(selected.toLowerCase());
+        }
+        this.state = FilterState.NO_ITEM;
+        this.pendingNames = new ArrayList<String>();
+        this.pendingLoopSelected = false;
+        this.targetInLoop = false;
+    }
+
+    /**
+     * Determines whether the specified data name is selected by this filter
+     *
+     * @param  name the data name to test
+     *
+     * @return {@code true} if {@code name} or one of the categories to which
+     *         it may belong is selected, otherwise {@code false}
+     */
+    public boolean isSelected(String name) {
+        String lcaseName = name.toLowerCase();
+
+        if (selection.contains(lcaseName)) {
+            return true;
+        }
+        for (int index = lcaseName.indexOf('_', 1); index > 0;
+                index = lcaseName.indexOf('_', index + 1)) {
+            if (selection.contains(lcaseName.substring(0, index))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}.  This version passes on the header after finishing any
+     * item in progress.
+     */
+    public void handleBlockHeader(String blockName, ScanState scanState)
+            throws CifParseException {
+        endItem(scanState);
+        targetInLoop = false;
+        target.handleBlockHeader(blockName, scanState);
+    }
+
+    /**
+     * {@inheritDoc}.  This version passes on the header after finishing any
+     * item in progress.
+     */
+    public void handleSaveFrameHeader(String frameName, ScanState scanState)
+            throws CifParseException {
+        endItem(scanState);
+        targetInLoop = false;
+        target.handleSaveFrameHeader(frameName, scanState);
+    }
+
+    /**
+     * {@inheritDoc}.  This version passes on the frame end after finishing
+     * any item in progress.
+     */
+    public void handleSaveFrameEnd(ScanState scanState)
+            throws CifParseException {
+        endItem(scanState);
+        targetInLoop = false;
+        target.handleSaveFrameEnd(scanState);
+    }
+
+    /**
+     * {@inheritDoc}.  This version holds back the loop start until it can be
+     * determined whether the loop is selected.
+     */
+    public void handleLoopStart(ScanState scanState) throws CifParseException {
+        endItem(scanState);
+        state = FilterState.LOOP_HEADER;
+    }
+
+    /**
+     * {@inheritDoc}.  This version collects the names of loop headers, and
+     * passes on unlooped names only if they are selected.
+     */
+    public void handleDataName(String name, ScanState scanState)
+            throws CifParseException {
+        if (state == FilterState.LOOP_HEADER) {
+            pendingNames.add(name);
+            pendingLoopSelected = pendingLoopSelected || isSelected(name);
+        } else {
+            endItem(scanState);
+            if (isSelected(name)) {
+                targetInLoop = false;
+                target.handleDataName(name, scanState);
+                state = FilterState.PASSING_VALUE;
+            } else {
+                state = FilterState.DROPPING_VALUE;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}.  This version passes on the value if it belongs to a
+     * selected item.
+     */
+    public void handleQuotedValue(String value, char delimiter,
+            ScanState scanState) throws CifParseException {
+        if (acceptValue(scanState)) {
+            target.handleQuotedValue(value, delimiter, scanState);
+        }
+    }
+
+    /**
+     * {@inheritDoc}.  This version passes on the value if it belongs to a
+     * selected item.
+     */
+    public void handleUnquotedValue(String value, ScanState scanState)
+            throws CifParseException {
+        if (acceptValue(scanState)) {
+            target.handleUnquotedValue(value, scanState);
+        }
+    }
+
+    /**
+     * {@inheritDoc}.  This version passes on the value if it belongs to a
+     * selected item.
+     */
+    public void handleQuotedValueView(CharSequence value, char delimiter,
+            ScanState scanState) throws CifParseException {
+        if (acceptValue(scanState)) {
+            if (viewTarget != null) {
+                viewTarget.handleQuotedValueView(value, delimiter, scanState);
+            } else {
+                target.handleQuotedValue(value.toString(), delimiter,
+                        scanState);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}.  This version passes on the value if it belongs to a
+     * selected item.
+     */
+    public void handleUnquotedValueView(CharSequence value,
+            ScanState scanState) throws CifParseException {
+        if (acceptValue(scanState)) {
+            if (viewTarget != null) {
+                viewTarget.handleUnquotedValueView(value, scanState);
+            } else {
+                target.handleUnquotedValue(value.toString(), scanState);
+            }
+        }
+    }
+
+    /**
+     * Finishes the filtering of a scan by passing on any loop header still
+     * pending, so that the target handler can detect that its loop has no
+     * values; should be invoked after the scanner returns and before any
+     * end-of-input processing by the target handler.  This filter is then
+     * ready to filter another scan.
+     *
+     * @param  scanState the {@code ScanState} returned by the scanner
+     *
+     * @throws CifParseException if the target handler throws it
+     */
+    public void handleEndOfInput(ScanState scanState)
+            throws CifParseException {
+        endItem(scanState);
+    }
+
+    /**
+     * Updates the filter state for a data value and determines whether the
+     * value should be passed on.  The first value after a loop header
+     * completes the header, which is passed on first if it is selected or (so
+     * that the target handler can report it) has no data names.
+     *
+     * @param  scanState the current {@code ScanState}
+     *
+     * @return {@code true} if the value should be passed on, {@code false} if
+     *         it should be dropped
+     *
+     * @throws CifParseException if the target handler throws it
+     */
+    private boolean acceptValue(ScanState scanState) throws CifParseException {
+        switch (state) {
+            case LOOP_HEADER:
+                if (pendingLoopSelected || pendingNames.isEmpty()) {
+                    passPendingLoopHeader(scanState);
+                    state = FilterState.PASSING_LOOP;
+                    targetInLoop = true;
+                    return true;
+                } else {
+                    clearPendingLoopHeader();
+                    state = FilterState.DROPPING_LOOP;
+                    return false;
+                }
+            case DROPPING_LOOP:
+                return false;
+            case DROPPING_VALUE:
+                state = FilterState.NO_ITEM;
+                return false;
+            case PASSING_VALUE:
+                state = FilterState.NO_ITEM;
+                return true;
+            case NO_ITEM:
+
+                /*
+                 * A value without a name, which the target handler should
+                 * treat as an error unless it would take the value for part of
+                 * a loop that this filter has since seen end
+                 */
+                return !targetInLoop;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Ends the item in progress, if any, because a token that cannot be part
+     * of it has been scanned.  A loop header that never received a value is
+     * passed on if selected so that the target handler can treat it as the
+     * error it is.
+     *
+     * @param  scanState the current {@code ScanState}
+     *
+     * @throws CifParseException if the target handler throws it
+     */
+    private void endItem(ScanState scanState) throws CifParseException {
+        if (state == FilterState.LOOP_HEADER) {
+            if (pendingLoopSelected || pendingNames.isEmpty()) {
+                passPendingLoopHeader(scanState);
+            } else {
+                clearPendingLoopHeader();
+            }
+        }
+        state = FilterState.NO_ITEM;
+    }
+
+    /**
+     * Passes the pending loop header to the target handler and clears it
+     *
+     * @param  scanState the current {@code ScanState}
+     *
+     * @throws CifParseException if the target handler throws it
+     */
+    private void passPendingLoopHeader(ScanState scanState)
+            throws CifParseException {
+        targetInLoop = false;
+        target.handleLoopStart(scanState);
+        for (String name : pendingNames) {
+            target.handleDataName(name, scanState);
+        }
+        clearPendingLoopHeader();
+    }
+
+    /**
+     * Discards the pending loop header
+     */
+    private void clearPendingLoopHeader() {
+        pendingNames.clear();
+        pendingLoopSelected = false;
+    }
+}
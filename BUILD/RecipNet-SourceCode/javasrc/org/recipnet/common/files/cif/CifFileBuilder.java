@@ -9,6 +9,8 @@
  *              CifFile and its associated classes.  Instead CifErrors are
  *              generated and dispatched, or (rarely) CifParseExceptions are
  *              thrown directly
+ * 18-Oct-2026: agent made this class a CifValueViewHandler and replaced the
+ *              number pattern with NumberValue.parse()
  */
 package org.recipnet.common.files.cif;
 
@@ -21,7 +23,7 @@ import org.recipnet.common.files.CifFile;
 
 /**
  * <p>
- * A {@code CifTokenHandler} implementation that provides a full-fledged,
+ * A {@code CifValueViewHandler} implementation that provides a full-fledged,
  * non-validating CIF parser.  Instances are intended to parse entire CIFs (not
  * CIF fragments).  Multiple input CIFs may be parsed into a combined
  * {@code CifFile} object, with the caveat that data block names must in that
@@ -38,7 +40,7 @@ import org.recipnet.common.files.CifFile;
  * @author John C. Bollinger
  * @version 0.9.0
  */    
-public class CifFileBuilder implements CifTokenHandler {
+public class CifFileBuilder implements CifValueViewHandler {
 
     /**
      * An {@code enum} of the possible parsing states a {@code CifFileBuilder}
@@ -75,25 +77,6 @@ public class CifFileBuilder implements CifTokenHandler {
         LOOP_VALUE_STATE
     }
 
-    /**
-     * A Pattern that matches numbers in the family of formats recognized by
-     * CIF: an integer or floating point number, with optional initial sign,
-     * optional exponent, and optional parenthesized standard uncertainty 
-     */
-    private final Pattern NUMBER_PATTERN =
-            Pattern.compile(
-                    // optional sign; start of first capturing group
-                    "([-+]?"
-                    // optional digits (posessive)
-                    + "\\d*+"
-                    // fraction part, optional if digits have already
-                    // been matched; end of the first group
-                    + "(?:(?:\\.\\d+)|(?:(?<=\\d)\\.?)))"
-                    // optional exponent; second capturing group
-                    + "(?:[eE]([-+]?\\d+))?"
-                    // optional standard uncertainty; has a third group
-                    + "(?:\\((\\d+)\\))?");
-    
     /**
      * A {@code Pattern} describing the character sequence splitting the two
      * or more parts of a folded text block line (c.f. section 26 of the
@@ -572,6 +555,25 @@ public class CifFileBuilder implements CifTokenHandler {
      */
     public void handleQuotedValue(String value, char delim, ScanState state)
             throws CifParseException {
+        handleQuotedValueView(value, delim, state);
+    }
+
+    /**
+     * Handles a quoted data value presented as a view in a manner appropriate
+     * for the current internal parsing state
+     * 
+     * @param  value the scanned value (without the delimiting quote
+     *         characters); not retained
+     * @param  delim the delimiter character observed by the scanner
+     * @param  state a {@code ScanState} representing current scanner
+     *         state
+     * 
+     * @throws CifParseException if a syntax, grammar, or semantic error is
+     *         detected and the configured error handler chooses to abort
+     *         the parse
+     */
+    public void handleQuotedValueView(CharSequence value, char delim,
+            ScanState state) throws CifParseException {
         StringValue sv;
         
         if (isUnfoldingLines() && (delim == ';')) {
@@ -584,10 +586,10 @@ public class CifFileBuilder implements CifTokenHandler {
                         " (un)folding convention in text block at line "
                         + state.getLineNumber()));
             } else {
-                sv = new StringValue(value);
+                sv = new StringValue(value.toString());
             }
         } else {
-            sv = new StringValue(value);
+            sv = new StringValue(value.toString());
         }
         handleValue(sv, state);
     }
@@ -606,21 +608,34 @@ public class CifFileBuilder implements CifTokenHandler {
      */
     public void handleUnquotedValue(String value, ScanState state)
             throws CifParseException {
+        handleUnquotedValueView(value, state);
+    }
+
+    /**
+     * Handles an unquoted data value presented as a view in a manner
+     * appropriate for the current internal parsing state
+     * 
+     * @param  value the unquoted value scanned from the input; not retained
+     * @param  state a {@code ScanState} representing current scanner
+     *         state
+     * 
+     * @throws CifParseException if a syntax, grammar, or semantic error is
+     *         detected and the configured error handler chooses to abort
+     *         the parse
+     */
+    public void handleUnquotedValueView(CharSequence value, ScanState state)
+            throws CifParseException {
         CifFile.CifValue cifValue;
             
         // Construct the appropriate value
-        if (value.equals(".")) {
+        if ((value.length() == 1) && (value.charAt(0) == '.')) {
             cifValue = NAValue.instance;
-        } else if (value.equals("?")) {
+        } else if ((value.length() == 1) && (value.charAt(0) == '?')) {
             cifValue = UnknownValue.instance;
         } else {
-            Matcher numberMatcher = NUMBER_PATTERN.matcher(value);
-        
-            if (numberMatcher.matches()) {
-                cifValue = new NumberValue(numberMatcher.group(1),
-                        numberMatcher.group(2), numberMatcher.group(3));
-            } else {
-                cifValue = new StringValue(value);
+            cifValue = NumberValue.parse(value);
+            if (cifValue == null) {
+                cifValue = new StringValue(value.toString());
             }
         }
 
@@ -4,6 +4,10 @@
  * CifParser.java
  *
  * 31-Jan-2005: jobollin wrote first draft
+ * 18-Oct-2026: agent switched to read-ahead scanning, added
+ *              parseCif(ByteBuffer), and taught NonDecodingReader to read
+ *              blocks of bytes
+ * 18-Oct-2026: agent added setSelectedDataNames()
  */
 
 package org.recipnet.common.files.cif;
@@ -11,16 +15,18 @@ package org.recipnet.common.files.cif;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 
 import org.recipnet.common.files.CifFile;
 
 /**
  * <p>
  * {@code CifParser} is a class that knows how to create {@code CifFile} objects
- * from data obtained via an {@link java.io.InputStream InputStream} or a
- * {@link java.io.Reader Reader}.  This parser by default attempts to continue
- * to parse to the end of the data under any circumstances.  This behavior can
- * be modified by setting a {@code CifErrorHandler}; the supplied handler will
+ * from data obtained via an {@link java.io.InputStream InputStream}, a
+ * {@link java.io.Reader Reader}, or a {@link java.nio.ByteBuffer ByteBuffer}.
+ * This parser by default attempts to continue to parse to the end of the data
+ * under any circumstances.  This behavior can be modified by setting a
+ * {@code CifErrorHandler}; the supplied handler will
  * be notified of all error conditions detected by the parser and underlying
  * scanner, and will have the option to abort the scan in response to any such
  * event by throwing a {@code CifParseException}.  This class automatically
@@ -32,6 +38,12 @@ import org.recipnet.common.files.CifFile;
  * these fairly benign and easy to interpret cases from true syntax errors.
  * Most of this class' actual parsing is delegated to a {@link CifFileBuilder}.
  * </p><p>
+ * A program that needs only some of the data in the CIFs it parses can
+ * {@link #setSelectedDataNames(String[]) select} the data names and categories
+ * it needs, whereupon the parser builds {@code CifFile}s containing only the
+ * items so selected and spends little effort on the rest, such as a large
+ * reflection loop.
+ * </p><p>
  * This class is thread-safe inasmuch as one instance can simultaneously parse
  * multiple distinct inputs into different CifFile objects, though the same
  * error handler (if any is set) will be advised of errors on all files.  The
@@ -51,6 +63,12 @@ public class CifParser {
      * the parse is delegated
      */ 
     private CifErrorHandler errorDelegate = new CifErrorIgnorer();
+
+    /**
+     * The data names and categories to which parsed {@code CifFile}s are
+     * limited, or {@code null} if they are not limited
+     */
+    private String[] selectedDataNames = null;
     
     /**
      * Parses CIF format data from the supplied input and returns the result
@@ -59,10 +77,11 @@ public class CifParser {
      * the first 256 Unicode code points.  If the stream contains non-ASCII
      * characters then whether or not the resulting lexical errors report the
      * "correct" illegal character depends on the real encoding of the stream.
-     * For best performance, the stream should be buffered. 
+     * The stream is read in large blocks, so it need not be buffered. 
      * 
      * @param  input the {@code InputStream} from which to obtain the data;
-     *         will be read to its logical end if the parse comletes normally
+     *         will be read at least to its logical end if the parse completes
+     *         normally, and possibly further
      * 
      * @return a {@code CifFile} representing the parsed CIF data
      * 
@@ -78,8 +97,8 @@ public class CifParser {
     /**
      * <p>
      * Parses CIF format data from the supplied input and returns the result
-     * in the form of a {@code CifFile}.  For best performance the input
-     * should be buffered.
+     * in the form of a {@code CifFile}.  The input is read in large blocks,
+     * so it need not be buffered.
      * </p><p>
      * <strong>Note:</strong> default {@code Reader} behavior upon encountering
      * non-decodable byte sequences is to translate them into the '?' character.
@@ -89,7 +108,8 @@ public class CifParser {
      * </p>
      * 
      * @param  input the {@code Reader} from which to obtain the data;
-     *         will be read to its end if the parse comletes normally
+     *         will be read at least to its logical end if the parse completes
+     *         normally, and possibly further
      * 
      * @return a {@code CifFile} representing the parsed CIF data
      * 
@@ -99,10 +119,100 @@ public class CifParser {
      */
     public CifFile parseCif(Reader input) throws CifParseException, IOException {
         ErrorHandler errorHandler = new ErrorHandler();
-        CifFileBuilder handler = new CifFileBuilder(errorHandler);
+        CifFileBuilder builder = new CifFileBuilder(errorHandler);
+        CifDataNameFilter filter = createFilter(builder);
+        
+        return finishParse(builder, filter,
+                createScanner(builder, filter, errorHandler).scanBuffered(
+                        input));
+    }
+
+    /**
+     * Parses CIF format data from the bytes remaining in the supplied buffer,
+     * which may for instance be a memory-mapped CIF file, and returns the
+     * result in the form of a {@code CifFile}.  The bytes are interpreted as
+     * {@link #parseCif(InputStream)} interprets the bytes of a stream.
+     * 
+     * @param  input the {@code ByteBuffer} from which to obtain the data;
+     *         its position will be advanced at least to the logical end of the
+     *         data if the parse completes normally, and possibly further
+     * 
+     * @return a {@code CifFile} representing the parsed CIF data
+     * 
+     * @throws CifParseException if the configured error handler chooses to
+     *         abort the parse in response to a lexical or grammatical error
+     */
+    public CifFile parseCif(ByteBuffer input) throws CifParseException {
+        ErrorHandler errorHandler = new ErrorHandler();
+        CifFileBuilder builder = new CifFileBuilder(errorHandler);
+        CifDataNameFilter filter = createFilter(builder);
+        
+        return finishParse(builder, filter,
+                createScanner(builder, filter, errorHandler).scan(input));
+    }
+
+    /**
+     * Creates a {@code CifDataNameFilter} passing the currently selected data
+     * names and categories to the specified {@code CifFileBuilder}
+     * 
+     * @param  builder the {@code CifFileBuilder} that will build the parsed
+     *         {@code CifFile}
+     * 
+     * @return the filter, or {@code null} if no selection is in effect
+     */
+    private CifDataNameFilter createFilter(CifFileBuilder builder) {
+        String[] selection = selectedDataNames;
+
+        return (selection == null) ? null
+                : new CifDataNameFilter(builder, selection);
+    }
+
+    /**
+     * Completes a parse after the scanner has read all of the input
+     * 
+     * @param  builder the {@code CifFileBuilder} building the parsed
+     *         {@code CifFile}
+     * @param  filter the {@code CifDataNameFilter} through which the
+     *         scanner's tokens were passed to {@code builder}, or {@code null}
+     *         if they were delivered directly
+     * @param  scanState the {@code ScanState} returned by the scanner
+     * 
+     * @return the parsed {@code CifFile}
+     * 
+     * @throws CifParseException if the configured error handler chooses to
+     *         abort the parse in response to a grammatical error
+     */
+    private CifFile finishParse(CifFileBuilder builder,
+            CifDataNameFilter filter, ScanState scanState)
+            throws CifParseException {
+        if (filter != null) {
+            filter.handleEndOfInput(scanState);
+        }
+
+        return builder.handleEndOfFile(scanState);
+    }
+
+    /**
+     * Creates a {@code CifScanner} configured to deliver tokens to the
+     * specified {@code CifFileBuilder}, directly or through the specified
+     * filter, and errors to the specified handler, and configures both for
+     * this parser's rules
+     * 
+     * @param  builder the {@code CifFileBuilder} that will build the parsed
+     *         {@code CifFile}
+     * @param  filter the {@code CifDataNameFilter} through which to pass
+     *         tokens to {@code builder}, or {@code null} to deliver them
+     *         directly
+     * @param  errorHandler the {@code ErrorHandler} to which the scanner
+     *         should report errors
+     * 
+     * @return the configured {@code CifScanner}
+     */
+    private CifScanner createScanner(CifFileBuilder builder,
+            CifDataNameFilter filter, ErrorHandler errorHandler) {
         CifScanner scanner = new CifScanner();
         
-        scanner.setTokenHandler(handler);
+        scanner.setTokenHandler((filter == null) ? builder : filter);
         scanner.setErrorHandler(errorHandler);
         
         /*
@@ -116,10 +226,9 @@ public class CifParser {
                 CifScanner.CIF_1_0_MAX_BLOCK_NAME_LENGTH);
         
         // Support the CIF 1.1 line folding convention
-        handler.setUnfoldingLines(true);
+        builder.setUnfoldingLines(true);
 
-        // Perform the scan / parse
-        return handler.handleEndOfFile(scanner.scan(input));
+        return scanner;
     }
 
     /**
@@ -138,6 +247,29 @@ public class CifParser {
     public void setErrorHandler(CifErrorHandler handler) {
         errorDelegate = handler;
     }
+
+    /**
+     * Limits the {@code CifFile}s produced by subsequent parses to the
+     * specified data names and categories.  Unlooped items are retained if
+     * their names are selected, and loops are retained whole if any of their
+     * names is selected; all other items are skipped without their values
+     * being built, and grammatical errors within them go unreported.  Data
+     * blocks and save frames are retained regardless, so that a selection
+     * that matches nothing in a block yields an empty block.  A selection
+     * string matches the data name equal to it and every data name beginning
+     * with it followed by an underscore, without regard to case.
+     * 
+     * @param  namesAndCategories the data names and categories to retain,
+     *         such as "_cell" or "_symmetry_equiv_pos_as_xyz"; if {@code null}
+     *         or empty then subsequent parses retain all items
+     * 
+     * @see CifDataNameFilter
+     */
+    public void setSelectedDataNames(String... namesAndCategories) {
+        selectedDataNames = (((namesAndCategories == null)
+                || (namesAndCategories.length == 0)) ? null
+                        : namesAndCategories.clone());
+    }
     
     /**
      * Handles a {@code code CifError} by delegating to the externally
@@ -252,6 +384,9 @@ public class CifParser {
          */
         private final InputStream stream;
         
+        /** A buffer for bytes read in blocks; replaced as needed */
+        private byte[] bytes = new byte[0];
+        
         /**
          * Initializes a new {@code NonDecodingReader} to wrap the specified
          * {@code InputStream}
@@ -278,30 +413,28 @@ public class CifParser {
         }
         
         /**
-         * {@inheritDoc}  This version obtains its characters as individual
-         * bytes from the underlying {@code InputStream}, and simply casts them
-         * as {@code char}s
+         * {@inheritDoc}  This version reads a block of bytes from the
+         * underlying {@code InputStream}, and simply casts them as
+         * {@code char}s
          * 
          * @see java.io.Reader#read(char[], int, int)
          */
         @Override
         public int read(char[] cbuf, int off, int len) throws IOException {
-            int counter;
+            int count;
             
             if (len == 0) {
                 return 0;
             } else {
-                for (counter = 0; counter < len; counter++) {
-                    int c = stream.read();
-                    
-                    if (c >= 0) {
-                        cbuf[off + counter] = (char) c;
-                    } else {
-                        break;
-                    }
+                if (bytes.length < len) {
+                    bytes = new byte[len];
+                }
+                count = stream.read(bytes, 0, len);
+                for (int i = 0; i < count; i++) {
+                    cbuf[off + i] = (char) (bytes[i] & 0xff);
                 }
                 
-                return (counter == 0) ? -1 : counter;
+                return count;
             }
         }
 
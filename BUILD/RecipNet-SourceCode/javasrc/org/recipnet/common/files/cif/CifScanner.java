@@ -5,12 +5,18 @@
  *
  * 24-Jan-2005: jobollin wrote first draft
  * 06-Jun-2006: jobollin added warning-suppression annotations
+ * 18-Oct-2026: agent moved the scan state onto a reusable character buffer,
+ *              added read-ahead Reader and ByteBuffer scan modes, and added
+ *              support for CifValueViewHandler
+ * 18-Oct-2026: agent fixed scanBlockQuote() to report an unterminated text
+ *              field only once
  */
 
 package org.recipnet.common.files.cif;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.EnumSet;
 
@@ -85,6 +91,15 @@ import java.util.EnumSet;
  * also <FF> under CIF 1.0 rules), it does not normalize them.  It also does not
  * introduce synthetic line termination characters at end of file.
  * </p><p>
+ * Input may be scanned from a {@code Reader} one character at a time
+ * ({@link #scan(Reader)}), from a {@code Reader} in large blocks
+ * ({@link #scanBuffered(Reader)}), or from the bytes of a {@code ByteBuffer}
+ * such as a memory-mapped file ({@link #scan(ByteBuffer)}).  The same rules,
+ * events, and error handling apply in every case.  A token handler that
+ * implements {@link CifValueViewHandler} receives data values as views of the
+ * scanner's buffer instead of as new {@code String}s, which spares a great
+ * deal of garbage when scanning large CIFs.
+ * </p><p>
  * Scanner instances may be reused for additional input files, in one or many
  * threads, but they have mutable configuration including exactly one set of
  * event handlers, so they are not safe for concurrent use by multiple threads.
@@ -188,6 +203,19 @@ public class CifScanner {
     /** size of the default character attribute table*/
     private final static int ATTR_TABLE_SIZE = 127;
 
+    /** The attribute mask bit corresponding to {@code LEGAL} */
+    private final static int LEGAL_MASK =
+            (1 << CharacterAttribute.LEGAL.ordinal());
+
+    /**
+     * The initial size of the character buffer used when reading one
+     * character at a time; it grows as needed to hold the longest token
+     */
+    private final static int TOKEN_BUFFER_SIZE = 256;
+
+    /** The initial size of the character buffer used when reading ahead */
+    private final static int READ_AHEAD_BUFFER_SIZE = 64 * 1024;
+
     /*
      * Note: character 0x7f is a control character, not a printable one
      */
@@ -320,6 +348,13 @@ public class CifScanner {
     /** The character attribute table used by this scanner instance */
     private EnumSet<CharacterAttribute>[] charAttributes;
 
+    /**
+     * The contents of {@code charAttributes} as bit masks, one per character,
+     * with the bit for each attribute selected by its ordinal; this is the
+     * form consulted for every character scanned
+     */
+    private int[] attributeMasks;
+
     /** The line length limit used by this scanner instance */
     int lineLimit;
 
@@ -335,6 +370,12 @@ public class CifScanner {
     /** The token handler for this scanner instance */
     private CifTokenHandler tokenHandler;
 
+    /**
+     * The token handler for this scanner instance if it accepts values as
+     * views, otherwise {@code null}
+     */
+    private CifValueViewHandler valueViewHandler;
+
     /** The whitespace handler for this scanner instance */
     private CifWhitespaceHandler wsHandler;
 
@@ -349,8 +390,10 @@ public class CifScanner {
     @SuppressWarnings("unchecked")
     public CifScanner() {
         charAttributes = new EnumSet[CIF_1_1_CHAR_ATTRIBUTES.length];
+        attributeMasks = new int[CIF_1_1_CHAR_ATTRIBUTES.length];
         for (int i = 0; i < CIF_1_1_CHAR_ATTRIBUTES.length; i++) {
             charAttributes[i] = EnumSet.copyOf(CIF_1_1_CHAR_ATTRIBUTES[i]);
+            updateAttributeMask(i);
         }
         lineLimit = CIF_1_1_MAX_LINE_LENGTH;
         blockNameLimit = CIF_1_1_MAX_BLOCK_NAME_LENGTH;
@@ -364,7 +407,8 @@ public class CifScanner {
     /**
      * Sets the token handler to be used by this scanner.  Most clients will
      * want to set a non-default handler so as to be able to parse the token
-     * stream
+     * stream.  If the handler is a {@code CifValueViewHandler} then data
+     * values are reported to it as views
      *
      * @param  handler the {@code CifTokenHandler} that should be advised
      *         of tokens scanned by this scanner; {@code null} for the
@@ -372,6 +416,8 @@ public class CifScanner {
      */
     public void setTokenHandler(CifTokenHandler handler) {
         tokenHandler = ((handler == null) ? DEFAULT_TOKEN_HANDLER : handler);
+        valueViewHandler = ((tokenHandler instanceof CifValueViewHandler)
+                ? (CifValueViewHandler) tokenHandler : null);
     }
 
     /**
@@ -599,8 +645,76 @@ public class CifScanner {
      */
     public ScanState scan(Reader charSource)
             throws CifParseException, IOException {
-        InternalScanState state = new InternalScanState(charSource);
+        return scanInput(new InternalScanState(charSource, null, false));
+    }
+
+    /**
+     * Performs a lexical scan of the characters from the provided
+     * {@code Reader} in the same manner as {@link #scan(Reader)}, except that
+     * this scanner reads the input in large blocks into a buffer of its own.
+     * It may therefore consume characters beyond logical end of file (ASCII
+     * character 4 or 26 decimal), though it does not scan them; this method is
+     * appropriate when all the remaining input belongs to the CIF.
+     *
+     * @param  charSource the {@code Reader} from which to obtain the CIF
+     *         data to scan; should not be {@code null}, and need not be
+     *         buffered
+     *
+     * @return a {@code ScanState} representing the scanner state at the end
+     *         of the scan
+     *
+     * @throws CifParseException if one of the configured handlers interrupts
+     *         the scan by throwing it
+     * @throws IOException if one is encountered while reading the input
+     */
+    public ScanState scanBuffered(Reader charSource)
+            throws CifParseException, IOException {
+        return scanInput(new InternalScanState(charSource, null, true));
+    }
 
+    /**
+     * Performs a lexical scan of the bytes remaining in the provided
+     * {@code ByteBuffer}, such as one obtained by memory-mapping a CIF file,
+     * in the same manner as {@link #scan(Reader)}.  Each byte is taken as the
+     * character having the same code among the first 256 Unicode code
+     * points, which is correct for ASCII CIFs.  The buffer's position is
+     * advanced past the bytes consumed, which may include some beyond logical
+     * end of file.
+     *
+     * @param  bytes the {@code ByteBuffer} from which to obtain the CIF
+     *         data to scan; should not be {@code null}
+     *
+     * @return a {@code ScanState} representing the scanner state at the end
+     *         of the scan
+     *
+     * @throws CifParseException if one of the configured handlers interrupts
+     *         the scan by throwing it
+     */
+    public ScanState scan(ByteBuffer bytes) throws CifParseException {
+        try {
+            return scanInput(new InternalScanState(null, bytes, true));
+        } catch (IOException ioe) {
+            // cannot happen: no Reader is involved
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    /**
+     * Performs a lexical scan of the input underlying the provided scan state,
+     * notifying the configured handlers of relevant events until either
+     * logical end of file or one of the handlers interrupts the scan by
+     * throwing an exception
+     *
+     * @param  state the {@code InternalScanState} from which to read
+     *
+     * @return {@code state}, in its condition at the end of the scan
+     *
+     * @throws CifParseException if one of the configured handlers interrupts
+     *         the scan by throwing it
+     * @throws IOException if one is encountered while reading the input
+     */
+    private ScanState scanInput(InternalScanState state)
+            throws CifParseException, IOException {
         for (boolean wasWhitespace = true; !state.isOnEOF(); ) {
             if (state.isOnWhitespace()) {
                 wasWhitespace = true;
@@ -676,7 +790,10 @@ public class CifScanner {
             state.readNextChar();
         } while (state.isOnWhitespace() && !state.isOnEOF());
 
-        wsHandler.handleWhitespace(state.getCurrentToken(), state);
+        // Spare building a string for the default handler to ignore
+        if (wsHandler != DEFAULT_WHITESPACE_HANDLER) {
+            wsHandler.handleWhitespace(state.getCurrentToken(), state);
+        }
     }
 
     /**
@@ -697,7 +814,10 @@ public class CifScanner {
             state.readNextChar();
         } while (!state.isOnEOL());
 
-        wsHandler.handleComment(state.getCurrentToken().substring(1), state);
+        if (wsHandler != DEFAULT_WHITESPACE_HANDLER) {
+            wsHandler.handleComment(
+                    state.getTokenString(1, state.getTokenLength()), state);
+        }
     }
 
     /**
@@ -727,11 +847,8 @@ public class CifScanner {
             state.readNextChar();  // previous char is provisionally accepted
             if (sawDelimiter) {
                 if (state.isOnWhitespace()) {
-                    String token = state.getCurrentToken();
-
-                    tokenHandler.handleQuotedValue(
-                            token.substring(0, token.length() - 1),
-                            (char) delimiter, state);
+                    reportQuotedValue(state, state.getTokenLength() - 1,
+                            delimiter);
                     return;
                 }
             } else if (state.isOnEOL()) {
@@ -739,8 +856,7 @@ public class CifScanner {
                         new CifError(CifError.UNTERMINATED_QSTRING, state));
 
                 // recover by assuming the missing delimiter
-                tokenHandler.handleQuotedValue(state.getCurrentToken(),
-                                               (char) delimiter, state);
+                reportQuotedValue(state, state.getTokenLength(), delimiter);
                 return;
             }
         }
@@ -761,7 +877,7 @@ public class CifScanner {
     private void scanBlockQuote(InternalScanState state)
             throws CifParseException, IOException {
         int delimiter = state.getCurrentChar();
-        String token;
+        int length;
 
         state.readNextChar();  // advance to the first data character
         state.startNewToken();
@@ -773,21 +889,18 @@ public class CifScanner {
                         new CifError(CifError.UNTERMINATED_TEXT, state));
 
                 // recover by assuming the missing delimiter
-                tokenHandler.handleQuotedValue(state.getCurrentToken(),
-                                               (char) delimiter, state);
-                break;
+                reportQuotedValue(state, state.getTokenLength(), delimiter);
+                return;
             }
         } while ((state.getCurrentChar() != delimiter)
                  || (state.getCharacterNumber() > 1));
         state.readNextChar();  // advance past the closing delimiter
 
-        token = state.getCurrentToken();
-        
         // Remove trailing delimiter, including line terminator
-        token = token.substring(0,
-                token.length() - (token.endsWith("\r\n;") ? 3 : 2));
+        length = state.getTokenLength()
+                - (state.tokenEndsWith("\r\n;") ? 3 : 2);
 
-        tokenHandler.handleQuotedValue(token, (char) delimiter, state);
+        reportQuotedValue(state, length, delimiter);
     }
 
     /**
@@ -804,8 +917,7 @@ public class CifScanner {
      */
     private void scanUnquotedToken(InternalScanState state)
             throws CifParseException, IOException {
-        String token;
-        String ltoken;
+        int length;
 
         // scan in the token
         state.startNewToken();
@@ -813,58 +925,92 @@ public class CifScanner {
             state.readNextChar();
         } while (!state.isOnWhitespace());
 
-        // determine what to do with the token
+        /*
+         * determine what to do with the token; keywords are recognized without
+         * regard to case
+         */
 
-        token = state.getCurrentToken();
-        ltoken = token.toLowerCase();
+        length = state.getTokenLength();
 
-        if (checkAttribute(CharacterAttribute.NAME_BEGIN, ltoken.charAt(0))) {
-            if (ltoken.length() > dataNameLimit) {
+        if (checkAttribute(CharacterAttribute.NAME_BEGIN,
+                Character.toLowerCase(state.getTokenChar(0)))) {
+            if (state.getLowerCaseTokenLength() > dataNameLimit) {
                 errorHandler.handleError(
                         new CifError(CifError.DATA_NAME_LENGTH, state));
                 // recover by accepting it anyway
             }
-            tokenHandler.handleDataName(token, state);
-        } else if (ltoken.startsWith("data_")) {
-            String blockName = token.substring("data_".length());
+            tokenHandler.handleDataName(state.getCurrentToken(), state);
+        } else if (state.tokenStartsWith("data_")) {
+            int nameStart = "data_".length();
 
-            if (blockName.length() > 0) {
-                if (blockName.length() > blockNameLimit) {
+            if (length > nameStart) {
+                if ((length - nameStart) > blockNameLimit) {
                     errorHandler.handleError(
                             new CifError(CifError.BLOCK_NAME_LENGTH, state));
                     // recover by accepting it anyway
                 }
-                tokenHandler.handleBlockHeader(blockName, state);
+                tokenHandler.handleBlockHeader(
+                        state.getTokenString(nameStart, length), state);
             } else {
                 errorHandler.handleError(
                         new CifError(CifError.RESERVED_WORD, state));
                 // recover by ignoring it
             }
-        } else if (ltoken.equals("loop_")) {
+        } else if (state.tokenEquals("loop_")) {
             tokenHandler.handleLoopStart(state);
-        } else if (ltoken.equals("global_")) {
+        } else if (state.tokenEquals("global_")) {
             errorHandler.handleError(
                     new CifError(CifError.RESERVED_WORD, state));
             // recover by ignoring it
-        } else if (ltoken.startsWith("save_")) {
-            String frameName = token.substring("save_".length());
+        } else if (state.tokenStartsWith("save_")) {
+            int nameStart = "save_".length();
 
-            if (frameName.length() > 0) {
-                if (frameName.length() > frameNameLimit) {
+            if (length > nameStart) {
+                if ((length - nameStart) > frameNameLimit) {
                     errorHandler.handleError(
                             new CifError(CifError.FRAME_NAME_LENGTH, state));
                     // recover by accepting it anyway
                 }
-                tokenHandler.handleSaveFrameHeader(frameName, state);
+                tokenHandler.handleSaveFrameHeader(
+                        state.getTokenString(nameStart, length), state);
             } else {
                 tokenHandler.handleSaveFrameEnd(state);
             }
-        } else if (ltoken.equals("stop_")) {
+        } else if (state.tokenEquals("stop_")) {
             errorHandler.handleError(
                     new CifError(CifError.RESERVED_WORD, state));
             // recover by ignoring it
+        } else if (valueViewHandler != null) {
+            valueViewHandler.handleUnquotedValueView(
+                    state.getTokenView(0, length), state);
         } else {
-            tokenHandler.handleUnquotedValue(token, state);
+            tokenHandler.handleUnquotedValue(state.getCurrentToken(), state);
+        }
+    }
+
+    /**
+     * Notifies the configured token handler of a quoted value consisting of
+     * the leading characters of the current token; the value is reported as a
+     * view if the handler accepts views, or otherwise as a {@code String}
+     *
+     * @param  state the {@code InternalScanState} encapsulating the
+     *         details of the current point in the scan
+     * @param  length the number of characters of the current token that
+     *         make up the value
+     * @param  delimiter the delimiter character observed for the value
+     *
+     * @throws CifParseException if the configured token handler rejects the
+     *         quoted value's content
+     * @throws StringIndexOutOfBoundsException if {@code length} is negative
+     */
+    private void reportQuotedValue(InternalScanState state, int length,
+            int delimiter) throws CifParseException {
+        if (valueViewHandler != null) {
+            valueViewHandler.handleQuotedValueView(
+                    state.getTokenView(0, length), (char) delimiter, state);
+        } else {
+            tokenHandler.handleQuotedValue(state.getTokenString(0, length),
+                    (char) delimiter, state);
         }
     }
 
@@ -882,12 +1028,10 @@ public class CifScanner {
      *         attribute; otherwise {@code false}
      */
     boolean checkAttribute(CharacterAttribute attribute, int c) {
-        try {
-            return (charAttributes[c].contains(attribute)
-                    && charAttributes[c].contains(CharacterAttribute.LEGAL));
-        } catch (IndexOutOfBoundsException ioobe) {
-            return false;
-        }
+        int mask = ((1 << attribute.ordinal()) | LEGAL_MASK);
+
+        return ((c >= 0) && (c < attributeMasks.length)
+                && ((attributeMasks[c] & mask) == mask));
     }
 
     /**
@@ -906,6 +1050,7 @@ public class CifScanner {
     private void clearAttributes(EnumSet<CharacterAttribute> attributes, int c) {
         try {
             charAttributes[c].removeAll(attributes);
+            updateAttributeMask(c);
         } catch (IndexOutOfBoundsException ioobe) {
             throw new IllegalArgumentException(
                     "Cannot clear attributes for character #" + c);
@@ -928,12 +1073,28 @@ public class CifScanner {
     private void setAttributes(EnumSet<CharacterAttribute> attributes, int c) {
         try {
             charAttributes[c].addAll(attributes);
+            updateAttributeMask(c);
         } catch (IndexOutOfBoundsException ioobe) {
             throw new IllegalArgumentException(
                     "Cannot set attributes for character #" + c);
         }
     }
 
+    /**
+     * Recomputes the attribute mask for the specified character from its
+     * entry in the attribute table
+     *
+     * @param  c the character whose mask should be recomputed (as an int)
+     */
+    private void updateAttributeMask(int c) {
+        int mask = 0;
+
+        for (CharacterAttribute attribute : charAttributes[c]) {
+            mask |= (1 << attribute.ordinal());
+        }
+        attributeMasks[c] = mask;
+    }
+
     /**
      * A ScanState implementation used by this scanner to maintain, query, and
      * expose its current scanning state for a particular scan.
@@ -943,8 +1104,39 @@ public class CifScanner {
      */
     private class InternalScanState implements ScanState {
         
-        /** The {@code Reader} from which to obtain input characters */
-        private Reader charSource;
+        /**
+         * The {@code Reader} from which to obtain input characters, or
+         * {@code null} if they come from {@code byteSource}
+         */
+        private final Reader charSource;
+
+        /**
+         * The {@code ByteBuffer} from which to obtain input characters, or
+         * {@code null} if they come from {@code charSource}
+         */
+        private final ByteBuffer byteSource;
+
+        /**
+         * Whether {@code charSource} is read in blocks rather than one
+         * character at a time
+         */
+        private final boolean readingAhead;
+
+        /**
+         * The characters of the current token, as accepted (including any
+         * replacements made by the error handler), followed by the current
+         * character and any characters read ahead of it
+         */
+        private char[] buffer;
+
+        /** The index in {@code buffer} of the start of the current token */
+        private int tokenStart;
+
+        /** The index in {@code buffer} of the current character */
+        private int position;
+
+        /** The number of characters in {@code buffer} that have been read */
+        private int limit;
 
         /** The current line on which the scanner is reading */
         private int lineCount;
@@ -958,15 +1150,22 @@ public class CifScanner {
         /** The current character being considered by the scanner */
         private int currentChar;
 
-        /** The token currently under construction */
-        private StringBuffer currentToken;
+        /** The view through which this object exposes token content */
+        private final TokenView view;
 
         /**
          * Initializes a new {@code InternalScanState} to read from the
-         * specified {@code Reader}
+         * specified {@code Reader} or {@code ByteBuffer}
          *
          * @param  r the {@code Reader} from which this
-         *         {@code InternalScanState} will obtain input characters
+         *         {@code InternalScanState} will obtain input characters, or
+         *         {@code null} if they are to come from {@code bytes}
+         * @param  bytes the {@code ByteBuffer} from which this
+         *         {@code InternalScanState} will obtain input characters, or
+         *         {@code null} if they are to come from {@code r}
+         * @param  readAhead {@code true} if the input should be read in blocks,
+         *         {@code false} if a {@code Reader} should be read one
+         *         character at a time
          *
          * @throws IOException if reading the first character causes such an
          *         exception
@@ -974,8 +1173,19 @@ public class CifScanner {
          *         according to the scanner's rules, and the error handler
          *         decides to interrupt the scan as a result
          */
-        InternalScanState(Reader r) throws IOException, CifParseException {
+        InternalScanState(Reader r, ByteBuffer bytes, boolean readAhead)
+                throws IOException, CifParseException {
             charSource = r;
+            byteSource = bytes;
+            readingAhead = readAhead;
+            buffer = new char[readAhead ? READ_AHEAD_BUFFER_SIZE
+                                        : TOKEN_BUFFER_SIZE];
+            view = new TokenView();
+
+            // The scan starts on a virtual line terminator
+            buffer[0] = LF;
+            limit = 1;
+            position = 0;
             currentChar = LF;
             lineCount = 0;
             charCount = 0;
@@ -991,7 +1201,7 @@ public class CifScanner {
          * the principal method for changing the scan state of the enclosing
          * {@code CifScanner}
          * </p><p>
-         * This method will not read past logical end-of-file (ASCII character
+         * This method will not scan past logical end-of-file (ASCII character
          * 4 or 26 decimal), nor will it attempt to read past physical
          * end-of-file.  After it encounters either condition, subsequent
          * invocations of this method have no effect beyond setting
@@ -1009,8 +1219,9 @@ public class CifScanner {
             lastChar = currentChar;
 
             if (!isOnEOF()) {
-                currentToken.append((char) currentChar);
-                currentChar = charSource.read();
+                buffer[position++] = (char) currentChar;
+                currentChar = (((position < limit) || fillBuffer())
+                        ? buffer[position] : -1);
 
                 if (isOnEOF()) {
                     return;
@@ -1035,7 +1246,7 @@ public class CifScanner {
 
                     // If this happens, it means that a CR LF pair was broken
                     // across a token boundary:
-                    assert (currentToken.length() > 1);
+                    assert (getTokenLength() > 1);
 
                 } else if (checkAttribute(CharacterAttribute.LINE_TERMINATOR,
                                           lastChar)) {
@@ -1061,19 +1272,231 @@ public class CifScanner {
             }
         }
 
+        /**
+         * Reads more input into the buffer, first discarding the characters
+         * before the current token and, if the token occupies much of the
+         * buffer, enlarging it
+         *
+         * @return {@code true} if at least one character was read, or
+         *         {@code false} if the input is exhausted
+         *
+         * @throws IOException if reading from the input causes one
+         */
+        private boolean fillBuffer() throws IOException {
+            if (limit == buffer.length) {
+                int tokenLength = limit - tokenStart;
+                char[] target = ((tokenLength > (buffer.length / 2))
+                        ? new char[buffer.length * 2] : buffer);
+
+                System.arraycopy(buffer, tokenStart, target, 0, tokenLength);
+                buffer = target;
+                position -= tokenStart;
+                limit = tokenLength;
+                tokenStart = 0;
+            }
+
+            if (byteSource != null) {
+                int count = Math.min(byteSource.remaining(),
+                        buffer.length - limit);
+
+                for (int i = 0; i < count; i++) {
+                    buffer[limit++] = (char) (byteSource.get() & 0xff);
+                }
+
+                return (count > 0);
+            } else if (readingAhead) {
+                int count;
+
+                do {
+                    count = charSource.read(buffer, limit,
+                            buffer.length - limit);
+                } while (count == 0);
+                if (count < 0) {
+                    return false;
+                } else {
+                    limit += count;
+                    return true;
+                }
+            } else {
+                int c = charSource.read();
+
+                if (c < 0) {
+                    return false;
+                } else {
+                    buffer[limit++] = (char) c;
+                    return true;
+                }
+            }
+        }
+
         /**
          * Causes this {@code InternalScanState} to start a new token with
          * the current character; the previous token is forgotten
          */
         final void startNewToken() {
-            currentToken = new StringBuffer();
+            tokenStart = position;
         }
 
         /**
          * {@inheritDoc}
          */
         public String getCurrentToken() {
-            return currentToken.toString();
+            return new String(buffer, tokenStart, position - tokenStart);
+        }
+
+        /**
+         * Returns the number of characters in the current token
+         *
+         * @return the length of the current token
+         */
+        int getTokenLength() {
+            return (position - tokenStart);
+        }
+
+        /**
+         * Returns the specified character of the current token
+         *
+         * @param  index the index of the character within the token; should be
+         *         less than the token length
+         *
+         * @return the character at {@code index}
+         */
+        char getTokenChar(int index) {
+            return buffer[tokenStart + index];
+        }
+
+        /**
+         * Returns the specified part of the current token as a new
+         * {@code String}
+         *
+         * @param  start the index of the first character, inclusive
+         * @param  end the index of the last character, exclusive
+         *
+         * @return a {@code String} containing the characters from
+         *         {@code start} to {@code end}
+         *
+         * @throws StringIndexOutOfBoundsException if {@code start} and
+         *         {@code end} do not describe a part of the current token
+         */
+        String getTokenString(int start, int end) {
+            checkTokenRange(start, end);
+
+            return new String(buffer, tokenStart + start, end - start);
+        }
+
+        /**
+         * Returns a view of the specified part of the current token, which is
+         * valid only until the scan advances; the same view object is returned
+         * by every invocation
+         *
+         * @param  start the index of the first character, inclusive
+         * @param  end the index of the last character, exclusive
+         *
+         * @return a {@code CharSequence} presenting the characters from
+         *         {@code start} to {@code end}
+         *
+         * @throws StringIndexOutOfBoundsException if {@code start} and
+         *         {@code end} do not describe a part of the current token
+         */
+        CharSequence getTokenView(int start, int end) {
+            checkTokenRange(start, end);
+            view.start = tokenStart + start;
+            view.end = tokenStart + end;
+
+            return view;
+        }
+
+        /**
+         * Returns the length that the current token would have after
+         * conversion to lower case by {@code String.toLowerCase()}; this
+         * differs from its plain length only for some non-ASCII characters
+         *
+         * @return the length of the lower-case form of the current token
+         */
+        int getLowerCaseTokenLength() {
+            for (int i = tokenStart; i < position; i++) {
+                if (buffer[i] > 0x7f) {
+                    return getCurrentToken().toLowerCase().length();
+                }
+            }
+
+            return getTokenLength();
+        }
+
+        /**
+         * Determines whether the current token begins with the specified
+         * prefix, without regard to case
+         *
+         * @param  prefix the prefix to test for, in lower case
+         *
+         * @return {@code true} if the token starts with {@code prefix};
+         *         {@code false} otherwise
+         */
+        boolean tokenStartsWith(String prefix) {
+            if (getTokenLength() < prefix.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (Character.toLowerCase(buffer[tokenStart + i])
+                        != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Determines whether the current token is the specified keyword,
+         * without regard to case
+         *
+         * @param  keyword the keyword to test for, in lower case
+         *
+         * @return {@code true} if the token is {@code keyword};
+         *         {@code false} otherwise
+         */
+        boolean tokenEquals(String keyword) {
+            return ((getTokenLength() == keyword.length())
+                    && tokenStartsWith(keyword));
+        }
+
+        /**
+         * Determines whether the current token ends with the specified suffix
+         *
+         * @param  suffix the suffix to test for
+         *
+         * @return {@code true} if the token ends with {@code suffix};
+         *         {@code false} otherwise
+         */
+        boolean tokenEndsWith(String suffix) {
+            int offset = position - suffix.length();
+
+            if (offset < tokenStart) {
+                return false;
+            }
+            for (int i = 0; i < suffix.length(); i++) {
+                if (buffer[offset + i] != suffix.charAt(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Verifies that the specified indices describe a part of the current
+         * token
+         *
+         * @param  start the index of the first character, inclusive
+         * @param  end the index of the last character, exclusive
+         *
+         * @throws StringIndexOutOfBoundsException if they do not
+         */
+        private void checkTokenRange(int start, int end) {
+            if ((start < 0) || (end > getTokenLength()) || (start > end)) {
+                throw new StringIndexOutOfBoundsException("Range [" + start
+                        + ", " + end + ") is outside the current token");
+            }
         }
 
         /**
@@ -1207,6 +1630,59 @@ public class CifScanner {
             return (checkAttribute(CharacterAttribute.VALUE_BEGIN, currentChar)
                     || checkAttribute(CharacterAttribute.NAME_BEGIN, currentChar));
         }
+
+        /**
+         * A {@code CharSequence} presenting part of the enclosing state's
+         * buffer; its content changes whenever the buffer does.  Derived
+         * sequences and string forms are independent copies.
+         */
+        private class TokenView implements CharSequence {
+
+            /** The index in the buffer of the first character presented */
+            int start;
+
+            /** The index in the buffer after the last character presented */
+            int end;
+
+            /**
+             * {@inheritDoc}
+             */
+            public int length() {
+                return (end - start);
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            public char charAt(int index) {
+                if ((index < 0) || (index >= (end - start))) {
+                    throw new IndexOutOfBoundsException(
+                            "Index " + index + " is outside the sequence");
+                }
+
+                return buffer[start + index];
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            public CharSequence subSequence(int from, int to) {
+                if ((from < 0) || (to > (end - start)) || (from > to)) {
+                    throw new IndexOutOfBoundsException("Range [" + from
+                            + ", " + to + ") is outside the sequence");
+                }
+
+                return new String(buffer, start + from, to - from);
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public String toString() {
+                return new String(buffer, start, end - start);
+            }
+        }
     }
 }
 
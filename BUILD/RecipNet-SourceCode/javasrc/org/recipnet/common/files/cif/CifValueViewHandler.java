@@ -0,0 +1,64 @@
+/*
+ * Reciprocal Net Project
+ *
+ * CifValueViewHandler.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.common.files.cif;
+
+/**
+ * <p>
+ * A {@code CifTokenHandler} that can accept data values as
+ * {@code CharSequence} views of the scanner's input buffer instead of as
+ * {@code String}s.  When the token handler registered with a
+ * {@link CifScanner} implements this interface, the scanner reports every data
+ * value through the {@code handleXXXView()} methods below rather than through
+ * {@code handleQuotedValue()} and {@code handleUnquotedValue()}, and so avoids
+ * creating a {@code String} for each value; data names, block names, and
+ * frame names are still reported as {@code String}s.
+ * </p><p>
+ * A view is valid only for the duration of the method invocation to which it
+ * is passed: the scanner reuses both the view object and the buffer behind it
+ * as the scan proceeds.  Implementations that need the value afterward must
+ * copy it, for instance via {@code toString()}, before returning.
+ * </p>
+ *
+ * @see CifScanner
+ */
+public interface CifValueViewHandler extends CifTokenHandler {
+
+    /**
+     * The handler method for quoted CIF data values when they are reported as
+     * views; otherwise equivalent to
+     * {@link CifTokenHandler#handleQuotedValue(String, char, ScanState)}
+     *
+     * @param  value a view of the data value (the quoted content, not
+     *         including the delimiters); may be empty but not null, and is
+     *         valid only until this method returns
+     * @param  delimiter the delimiter character observed for this quoted value
+     * @param  state a {@code ScanState} describing the current state of
+     *         the scanner invoking this method
+     *
+     * @throws CifParseException if the scan and parse should be interrupted
+     */
+    void handleQuotedValueView(CharSequence value, char delimiter,
+                               ScanState state) throws CifParseException;
+
+    /**
+     * The handler method for unquoted CIF data values when they are reported
+     * as views; otherwise equivalent to
+     * {@link CifTokenHandler#handleUnquotedValue(String, ScanState)}
+     *
+     * @param  value a view of the data value (the entire token scanned); will
+     *         not be empty or {@code null}, will not contain whitespace, and
+     *         is valid only until this method returns
+     * @param  state a {@code ScanState} describing the current state of
+     *         the scanner invoking this method
+     *
+     * @throws CifParseException if the scan and parse should be interrupted
+     */
+    void handleUnquotedValueView(CharSequence value,
+                                 ScanState state) throws CifParseException;
+}
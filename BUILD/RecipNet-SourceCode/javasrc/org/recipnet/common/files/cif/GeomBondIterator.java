@@ -4,12 +4,15 @@
  * SymmetryContext.java
  *
  * 29-Nov-2005: jobollin extracted this class from ModelBuilder
+ * 18-Oct-2026: agent changed this iterator to extract whole loop columns at
+ *              construction instead of iterating over loop records
  */
 
 package org.recipnet.common.files.cif;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.recipnet.common.files.CifFile.CifValue;
 import org.recipnet.common.files.CifFile.DataBlock;
@@ -18,7 +21,9 @@ import org.recipnet.common.files.CifFile.DataLoop;
 /**
  * An iterator over the bond records represented in a CIF data block;
  * adapts the structure of the underlying atom site loop's record structure
- * (or lack thereof) to producing {@code GeomBondRecord} items.
+ * (or lack thereof) to producing {@code GeomBondRecord} items.  The needed
+ * columns of the loop are extracted in bulk when the iterator is created, so
+ * the iteration reflects the loop as it was at that time.
  * 
  * @author jobollin
  * @version 0.9.0
@@ -26,30 +31,32 @@ import org.recipnet.common.files.CifFile.DataLoop;
 public class GeomBondIterator implements Iterator<GeomBondRecord> {
     
     /**
-     * The index of the label1 column in the loop structure
+     * The values of the label1 column of the bond loop
      */
-    private final int label1Index;
+    private final CifValue[] labels1;
     
     /**
-     * The index of the label2 column in the loop structure
+     * The values of the label2 column of the bond loop
      */
-    private final int label2Index;
+    private final CifValue[] labels2;
     
     /**
-     * The index of the symmetry1 column in the loop structure
+     * The values of the symmetry1 column of the bond loop, or {@code null} if
+     * there is no such column
      */
-    private final int symm1Index;
+    private final CifValue[] symms1;
     
     /**
-     * The index of the symmetry2 column in the loop structure
+     * The values of the symmetry2 column of the bond loop, or {@code null} if
+     * there is no such column
      */
-    private final int symm2Index;
+    private final CifValue[] symms2;
     
     /**
-     * The underlying iterator over {@code List<CifValue>} records representing
-     * the bonds in this iteration 
+     * The index of the loop record from which the next element will be
+     * produced
      */
-    private final Iterator<List<CifValue>> loopIterator;
+    private int nextRecord;
     
     /**
      * Initializes a {@code GeomBondIterator} based on the specified CIF data
@@ -63,6 +70,10 @@ public class GeomBondIterator implements Iterator<GeomBondRecord> {
      */
     public GeomBondIterator(DataBlock block) {
         List<String> names;
+        int label1Index;
+        int label2Index;
+        int symm1Index;
+        int symm2Index;
         DataLoop loop = CifFileUtil.findCifLoop(block,
                 "_geom_bond_atom_site_label_1");
         
@@ -84,7 +95,13 @@ public class GeomBondIterator implements Iterator<GeomBondRecord> {
         symm1Index = names.indexOf("_geom_bond_site_symmetry_1");
         symm2Index = names.indexOf("_geom_bond_site_symmetry_2");
         
-        loopIterator = loop.recordIterator();
+        labels1 = loop.getColumnValues(names.get(label1Index));
+        labels2 = loop.getColumnValues(names.get(label2Index));
+        symms1 = ((symm1Index < 0) ? null
+                : loop.getColumnValues(names.get(symm1Index)));
+        symms2 = ((symm2Index < 0) ? null
+                : loop.getColumnValues(names.get(symm2Index)));
+        nextRecord = 0;
     }
 
     /**
@@ -97,7 +114,7 @@ public class GeomBondIterator implements Iterator<GeomBondRecord> {
      * @see Iterator#hasNext()
      */
     public boolean hasNext() {
-        return loopIterator.hasNext();
+        return (nextRecord < labels1.length);
     }
 
     /**
@@ -109,15 +126,20 @@ public class GeomBondIterator implements Iterator<GeomBondRecord> {
      * @see Iterator#next()
      */
     public GeomBondRecord next() {
-        List<CifValue> values = loopIterator.next();
+        int record;
+        
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more records");
+        }
+        record = nextRecord++;
         
         return new GeomBondRecord(
-                CifFileUtil.getCifString(values.get(label1Index), null, false),
-                CifFileUtil.getCifString(values.get(label2Index), null, false),
-                ((symm1Index < 0) ? null : CifFileUtil.getCifString(
-                        values.get(symm1Index), null, false)),
-                ((symm2Index < 0) ? null : CifFileUtil.getCifString(
-                        values.get(symm2Index), null, false)));
+                CifFileUtil.getCifString(labels1[record], null, false),
+                CifFileUtil.getCifString(labels2[record], null, false),
+                ((symms1 == null) ? null : CifFileUtil.getCifString(
+                        symms1[record], null, false)),
+                ((symms2 == null) ? null : CifFileUtil.getCifString(
+                        symms2[record], null, false)));
     }
 
     /**
@@ -4,6 +4,7 @@
  * NumberValue.java
  * 
  * 02-02-2005: jobollin wrote first draft
+ * 18-Oct-2026: agent added parse()
  */
  
 package org.recipnet.common.files.cif;
@@ -29,6 +30,10 @@ import org.recipnet.common.files.CifFile;
  * return a corresponding {@code String}, even if the components have excess
  * precision or are otherwise not formatted conventionally.</li>
  * </ul><p>
+ * Instances may also be obtained from CIF numeric tokens via
+ * {@link #parse(CharSequence)}, which is equivalent to splitting the token and
+ * invoking the {@code String} constructor, but quicker.
+ * </p><p>
  * In the case of numeric initialization, the precision of the value displayed
  * by {@code toString()} is controlled by the specified standard uncertainty
  * (if any), a convention for standard uncertainty precision reflected by
@@ -86,6 +91,29 @@ public final class NumberValue implements CifFile.CifValue {
      */
     private final static Pattern DECIMAL_CHARACTERS =
         Pattern.compile("[-+.0-9]+");
+
+    /**
+     * The greatest integer significand that {@code parse()} converts directly;
+     * every integer up to this one is exactly representable as a
+     * {@code double}
+     */
+    private final static long MAX_EXACT_SIGNIFICAND = (1L << 53);
+
+    /**
+     * The powers of ten that are exactly representable as {@code double}s,
+     * indexed by exponent
+     */
+    private final static double[] EXACT_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+        1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * The greatest number of digits that {@code parse()} converts directly in
+     * an exponent or standard uncertainty; any such number fits in an
+     * {@code int}
+     */
+    private final static int MAX_INT_DIGITS = 9;
     
     /**
      * A {@code String} representation of the value and standard uncertainty, in
@@ -175,6 +203,20 @@ public final class NumberValue implements CifFile.CifValue {
         this.string = sb.toString();
     }
 
+    /**
+     * Initializes a new {@code NumberValue} with the specified members; used
+     * by {@code parse()}
+     *
+     * @param  string the {@code String} representation of the number
+     * @param  value the value of the number
+     * @param  su the standard uncertainty of the number
+     */
+    private NumberValue(String string, double value, double su) {
+        this.string = string;
+        this.doubleValue = value;
+        this.doubleSU = su;
+    }
+
     /**
      * Initializes a new {@code NumberValue} with the specified value and no
      * standard uncertainty
@@ -346,6 +388,195 @@ public final class NumberValue implements CifFile.CifValue {
         return string;
     }
 
+    /**
+     * <p>
+     * Parses a CIF numeric token: an integer or decimal significand with
+     * optional sign, an optional exponent introduced by 'e' or 'E', and an
+     * optional standard uncertainty in parentheses, with no other characters.
+     * The result is the same as if the token's significand, exponent digits,
+     * and uncertainty digits were passed to
+     * {@link #NumberValue(String, String, String)}, including any
+     * {@code NumberFormatException} that constructor would throw.
+     * </p><p>
+     * Typical tokens are converted without creating intermediate
+     * {@code String}s: when the significand has no more significant digits
+     * than a {@code double} represents exactly and the decimal exponent is
+     * small, the value is computed with a single exactly rounded
+     * multiplication or division.  Other tokens are handed to the
+     * constructor.
+     * </p>
+     *
+     * @param  token the {@code CharSequence} to parse, which is not retained
+     *
+     * @return a {@code NumberValue} for {@code token}, or {@code null} if
+     *         {@code token} is not a CIF number
+     *
+     * @throws NumberFormatException if {@code token} has the form of a CIF
+     *         number but its standard uncertainty does not fit in an
+     *         {@code int}, or (if it has a standard uncertainty) its exponent
+     *         does not
+     */
+    public static NumberValue parse(CharSequence token) {
+        int length = token.length();
+        int i = 0;
+        boolean negative = false;
+        long significand = 0;
+        boolean exact = true;
+        int integerDigits;
+        int fractionDigits = 0;
+        int significandEnd;
+        int exponentIndex = -1;
+        int exponentDigitsStart = -1;
+        int exponentEnd = -1;
+        int suStart = -1;
+        int suEnd = -1;
+        
+        // optional sign
+        if ((i < length)
+                && ((token.charAt(i) == '-') || (token.charAt(i) == '+'))) {
+            negative = (token.charAt(i) == '-');
+            i++;
+        }
+        
+        // integer and fraction digits, at least one of them in all
+        for (integerDigits = 0; (i < length) && isDigit(token.charAt(i));
+                i++, integerDigits++) {
+            if (exact) {
+                significand = (significand * 10) + (token.charAt(i) - '0');
+                exact = (significand <= MAX_EXACT_SIGNIFICAND);
+            }
+        }
+        if ((i < length) && (token.charAt(i) == '.')) {
+            for (i++; (i < length) && isDigit(token.charAt(i));
+                    i++, fractionDigits++) {
+                if (exact) {
+                    significand = (significand * 10)
+                            + (token.charAt(i) - '0');
+                    exact = (significand <= MAX_EXACT_SIGNIFICAND);
+                }
+            }
+        }
+        if ((integerDigits + fractionDigits) == 0) {
+            return null;
+        }
+        significandEnd = i;
+        
+        // optional exponent
+        if ((i < length)
+                && ((token.charAt(i) == 'e') || (token.charAt(i) == 'E'))) {
+            exponentIndex = i;
+            i++;
+            if ((i < length)
+                    && ((token.charAt(i) == '-') || (token.charAt(i) == '+'))) {
+                i++;
+            }
+            for (exponentDigitsStart = i;
+                    (i < length) && isDigit(token.charAt(i)); i++) {
+                // nothing else to do
+            }
+            if (i == exponentDigitsStart) {
+                return null;
+            }
+            exponentEnd = i;
+        }
+        
+        // optional standard uncertainty
+        if ((i < length) && (token.charAt(i) == '(')) {
+            for (suStart = ++i; (i < length) && isDigit(token.charAt(i)); i++) {
+                // nothing else to do
+            }
+            if ((i == suStart) || (i == length) || (token.charAt(i) != ')')) {
+                return null;
+            }
+            suEnd = i;
+            i++;
+        }
+        
+        if (i != length) {
+            return null;
+        } else if (exact
+                && ((exponentIndex < 0) || ((exponentEnd - exponentDigitsStart)
+                        <= MAX_INT_DIGITS))
+                && ((suStart < 0) || ((suEnd - suStart) <= MAX_INT_DIGITS))) {
+            int exponent = ((exponentIndex < 0) ? 0
+                    : parseInt(token, exponentIndex + 1, exponentEnd))
+                    - fractionDigits;
+            
+            if (Math.abs(exponent) < EXACT_POWERS_OF_TEN.length) {
+                double value = ((exponent < 0)
+                        ? (significand / EXACT_POWERS_OF_TEN[-exponent])
+                        : (significand * EXACT_POWERS_OF_TEN[exponent]));
+                double su = ((suStart < 0) ? 0.0
+                        : scale(parseInt(token, suStart, suEnd), exponent));
+                
+                return new NumberValue(canonicalString(token, exponentIndex),
+                        (negative ? -value : value), su);
+            }
+        }
+
+        // The general case
+        return new NumberValue(
+                token.subSequence(0, significandEnd).toString(),
+                ((exponentIndex < 0) ? null : token.subSequence(
+                        exponentIndex + 1, exponentEnd).toString()),
+                ((suStart < 0) ? null
+                        : token.subSequence(suStart, suEnd).toString()));
+    }
+
+    /**
+     * Determines whether the specified character is an ASCII decimal digit
+     *
+     * @param  c the character to test
+     *
+     * @return {@code true} if {@code c} is between '0' and '9' inclusive
+     */
+    private static boolean isDigit(char c) {
+        return ((c >= '0') && (c <= '9'));
+    }
+
+    /**
+     * Parses an optionally signed decimal integer known to fit in an
+     * {@code int} from part of a {@code CharSequence}
+     *
+     * @param  s the {@code CharSequence} containing the integer
+     * @param  start the index of the first character (possibly a sign)
+     * @param  end the index after the last digit
+     *
+     * @return the integer value
+     */
+    private static int parseInt(CharSequence s, int start, int end) {
+        boolean negative = (s.charAt(start) == '-');
+        int value = 0;
+
+        if (negative || (s.charAt(start) == '+')) {
+            start++;
+        }
+        for (int i = start; i < end; i++) {
+            value = (value * 10) + (s.charAt(i) - '0');
+        }
+
+        return (negative ? -value : value);
+    }
+
+    /**
+     * Returns the {@code String} representation of a number parsed from the
+     * specified token, which is the token itself with any 'E' exponent marker
+     * in lower case, as the {@code String} constructor would produce it
+     *
+     * @param  token the parsed token
+     * @param  exponentIndex the index of the exponent marker in
+     *         {@code token}, or -1 if there is none
+     *
+     * @return the representation of the parsed number
+     */
+    private static String canonicalString(CharSequence token,
+            int exponentIndex) {
+        String string = token.toString();
+
+        return (((exponentIndex >= 0) && (string.charAt(exponentIndex) == 'E'))
+                ? string.replace('E', 'e') : string);
+    }
+
     /**
      * Determines the index of the most significant digit of the argument,
      * defined as the greatest integer {@code i} such that
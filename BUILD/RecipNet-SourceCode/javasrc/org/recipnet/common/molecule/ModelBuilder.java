@@ -10,6 +10,7 @@
  * 20-Apr-2006: jobollin fixed the default atom comparator
  * 02-Nov-2006: jobollin added support for associating atomic displacement
  *              information with the models created by this builder
+ * 18-Oct-2026: agent added CIF_DATA_NAMES
  */
 
 package org.recipnet.common.molecule;
@@ -58,6 +59,16 @@ import org.recipnet.common.geometry.CoordinateSystem;
  * @see MolecularModel
  */
 public class ModelBuilder {
+
+    /**
+     * The CIF data names and categories from which a {@code ModelBuilder}
+     * reads its data, suitable for passing to
+     * {@code CifParser.setSelectedDataNames()} when parsing a CIF only to
+     * build models from it; callers should not modify the array
+     */
+    public final static String[] CIF_DATA_NAMES = { "_cell",
+            "_symmetry_equiv_pos_as_xyz", "_space_group_symop_operation_xyz",
+            "_atom_site", "_geom_bond" };
     
     /**
      * A {@code Pattern} used in parsing CIF-style symmetry operation
@@ -5,14 +5,14 @@
  *
  * 11-Jan-2005: jobollin wrote first draft
  * 24-May-2006: jobollin updated docs
+ * 18-Oct-2026: agent modified doFilter() to queue its log events through
+ *              CoreConnector.recordLogEvent(), outside the session lock
  */
 
 package org.recipnet.site.content.filter;
 
 import java.io.IOException;
 
-import java.rmi.RemoteException;
-
 import java.util.HashSet;
 import java.util.Set;
 
@@ -93,9 +93,9 @@ public class ClientAccessFilter implements Filter {
      * implementation keeps a record in the request's session of the client IP
      * numbers that have made requests in the session, and records a log event
      * each time a new one does (including for the first request in the
-     * session).  Notifies the application's {@code CoreConnector} if
-     * logging attempts fail with a {@code RemoteException}, but does not
-     * propogate such exceptions
+     * session).  Log events are queued with the application's
+     * {@code CoreConnector} and delivered to core asynchronously, so that
+     * neither this request nor others in the same session wait on core
      *
      * @param  request the {@code ServletRequest} (assumed an
      *         {@code HttpServletRequest}) representing the request to
@@ -114,26 +114,23 @@ public class ClientAccessFilter implements Filter {
     public void doFilter(ServletRequest request, ServletResponse response,
                          FilterChain chain) throws IOException, ServletException {
         HttpSession session = ((HttpServletRequest) request).getSession();
+        String address = request.getRemoteAddr();
+        boolean newAddress;
 
         synchronized(session) {
             Set<String> clientIps = (Set<String>) session.getAttribute(
                     CLIENT_ACCESS_ATTRIBUTE);
-            String address = request.getRemoteAddr();
 
             if (clientIps == null) {
                 clientIps = new HashSet<String>(2);
                 session.setAttribute(CLIENT_ACCESS_ATTRIBUTE, clientIps);
             }
+            newAddress = clientIps.add(address);
+        }
 
-            if (clientIps.add(address)) {
-                try {
-                    connector.getSiteManager().recordLogEvent(
-                            new ClientAccessLogEvent(session.getId(),
-                                    context.getServletContextName(), address));
-                } catch (RemoteException re) {
-                    connector.reportRemoteException(re);
-                }
-            }
+        if (newAddress) {
+            connector.recordLogEvent(new ClientAccessLogEvent(session.getId(),
+                    context.getServletContextName(), address));
         }
 
         chain.doFilter(request, response);
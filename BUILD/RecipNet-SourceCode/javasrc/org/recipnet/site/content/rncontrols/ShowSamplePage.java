@@ -11,6 +11,8 @@
  * 28-Oct-2005: midurbin updated doBeforePageBody() to respect the
  *              ALLOW_IMPLICIT_PREF_CHANGES preference
  * 05-Jul-2006: jobollin performed minor cleanup
+ * 18-Oct-2026: agent modified doBeforePageBody() to queue its log event
+ *              through CoreConnector.recordLogEvent()
  */
 
 package org.recipnet.site.content.rncontrols;
@@ -373,15 +375,12 @@ public class ShowSamplePage extends SamplePage {
                 }
 
                 // report sample view log event
-                cc.getSiteManager().recordLogEvent(
+                cc.recordLogEvent(
                         new SampleViewLogEvent(getSampleInfo().id,
                                 getLabInfo().shortName, getLabInfo().id,
                                 getSampleInfo().localLabId, this.pageContext
                                         .getSession().getId(), request
                                         .getServerName(), false));
-            } catch (RemoteException ex) {
-                cc.reportRemoteException(ex);
-                throw new JspException(ex);
             } catch (IOException ex) {
                 throw new JspException(ex);
             }
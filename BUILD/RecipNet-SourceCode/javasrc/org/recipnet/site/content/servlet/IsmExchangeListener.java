@@ -7,6 +7,12 @@
  *              IsmPushListener
  * 24-May-2006: jobollin formatted the source
  * 02-Jul-2008: ekoperda modified doPost() to work-around a bug in Tomcat
+ * 18-Oct-2026: agent modified doPost() to parse the request one message at a
+ *              time through a SoapFragmentReader
+ * 18-Oct-2026: agent modified doPost() to accept and reply with compressed
+ *              and framed bodies when the client negotiates them
+ * 18-Oct-2026: agent modified doPost() to reject a corrupt compressed body
+ *              with status 400, reserving 415 for unsupported codings
  */
 
 package org.recipnet.site.content.servlet;
@@ -16,9 +22,14 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -27,10 +38,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.recipnet.site.OperationFailedException;
-import org.recipnet.site.shared.DomUtil;
+import org.recipnet.site.shared.IsmFrameCodec;
+import org.recipnet.site.shared.SoapFragmentReader;
 import org.recipnet.site.shared.SoapUtil;
 import org.recipnet.site.wrapper.CoreConnector;
-import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 /**
@@ -52,6 +63,13 @@ import org.xml.sax.SAXException;
  * <li>This servlet constructs a SOAP response containing the response ISMs
  * and transmits it to the remote site as the HTTP response.</li>
  * </ol>
+ * </p><p>
+ * Either body may instead be in the framed encoding implemented by
+ * {@code IsmFrameCodec}, and either may be compressed. The request is decoded
+ * according to its {@code Content-Type} and {@code Content-Encoding} headers;
+ * the response is framed and compressed only if the client's {@code Accept}
+ * and {@code Accept-Encoding} headers allow it, so clients that predate the
+ * framed encoding still receive plain SOAP.
  * </p>
  */
 public class IsmExchangeListener extends HttpServlet {
@@ -75,18 +93,44 @@ public class IsmExchangeListener extends HttpServlet {
     public void doPost(HttpServletRequest request,
             HttpServletResponse response) throws IOException {
         try {
-            // Verify that the post contains XML in UTF-8.
+            String contentType = request.getContentType();
+            boolean framedRequest = IsmFrameCodec.isFramed(contentType);
+            String requestEncoding = request.getHeader("Content-Encoding");
+            InputStream is;
+
+            /*
+             * Only an unsupported coding earns a 415 response, which clients
+             * take to mean that frames are not understood here either; a
+             * corrupt body is merely a bad request.
+             */
+            if (!IsmFrameCodec.isSupportedContentEncoding(requestEncoding)) {
+                response.sendError(
+                        HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+                        "Unsupported Content-Encoding '" + requestEncoding
+                                + "'");
+                return;
+            }
+            try {
+                is = IsmFrameCodec.decodeContent(request.getInputStream(),
+                        requestEncoding);
+            } catch (IOException ex) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "Corrupt request body: " + ex.toString());
+                return;
+            }
+
+            // Verify that an unframed post contains XML in UTF-8.
             String characterEncoding = request.getCharacterEncoding();
             
-            if ((characterEncoding == null)
+            if (framedRequest) {
+                // The framing itself fixes the encoding as UTF-8.
+            } else if ((characterEncoding == null)
                     || !characterEncoding.trim().equalsIgnoreCase("UTF-8")) {
                 response.sendError(HttpServletResponse.SC_BAD_REQUEST,
                         "Expected character encoding UTF-8 but got '"
                                 + characterEncoding + "'");
                 return;
-            }
-            String contentType = request.getContentType();
-            if ((contentType == null)
+            } else if ((contentType == null)
                     || (!contentType.trim().equals("text/xml")
                             && !contentType.trim().equals(
                             "text/xml; charset=UTF-8"))) {
@@ -96,47 +140,66 @@ public class IsmExchangeListener extends HttpServlet {
                 return;
             }
 
-	    /*
-	     * Read the posted data into a string.
-	     *
-	     * BUG ALERT!  As of Tomcat 5.5.26-3, there seems to be a bug in
-	     * the Reader that is obtained from request.getReader().  For some
-	     * reason that Reader seems unable to read more than 32 KB from the
-	     * client -- it reports end-of-stream prematurely.  So, to work
-	     * around this bug, we invoke request.getInputStream() and then
-	     * construct for ourselves a Reader than actually works.
-	     */
-	    String encoding = request.getCharacterEncoding();
-            InputStream is = request.getInputStream();
-	    Reader reader;
-	    if (encoding != null && Charset.isSupported(encoding)) {
-		reader = new BufferedReader(
-                        new InputStreamReader(is, encoding));
-	    } else {
-		reader = new BufferedReader(new InputStreamReader(is));
-	    }
-	    String docAsXml = null;
-            try {
-                docAsXml = SoapUtil.readEntireInputStream(reader);
-            } finally {
-                reader.close();
-            }
+            List<String> incomingList = new ArrayList<String>();
+            if (framedRequest) {
+                // Each frame holds exactly the bytes of one message.
+                try {
+                    incomingList.addAll(Arrays.asList(
+                            IsmFrameCodec.readMessages(is)));
+                } catch (IOException ex) {
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                            ex.toString());
+                    return;
+                } finally {
+                    is.close();
+                }
+            } else {
+                /*
+                 * Prepare to read the posted data.
+                 *
+                 * BUG ALERT!  As of Tomcat 5.5.26-3, there seems to be a bug
+                 * in the Reader that is obtained from request.getReader().
+                 * For some reason that Reader seems unable to read more than
+                 * 32 KB from the client -- it reports end-of-stream
+                 * prematurely.  So, to work around this bug, we invoke
+                 * request.getInputStream() and then construct for ourselves
+                 * a Reader than actually works.
+                 */
+                String encoding = request.getCharacterEncoding();
+                Reader reader;
+                if (encoding != null && Charset.isSupported(encoding)) {
+                    reader = new BufferedReader(
+                            new InputStreamReader(is, encoding));
+                } else {
+                    reader = new BufferedReader(new InputStreamReader(is));
+                }
 
-            /*
-             * Parse the XML document into a DOM tree, then validate the SOAP
-             * headers contained within it.
-             */
-            Document doc = DomUtil.xmlToDomTree(docAsXml);
-            SoapUtil.decodeSoapDocument(doc, "IsmExchange", "recipnet",
-                    "http://www.reciprocalnet.org/master/");
+                /*
+                 * Parse the XML document as it arrives, validating the SOAP
+                 * headers contained within it. It should contain zero or more
+                 * <message> elements. We will extract those as strings.
+                 */
+                try {
+                    SoapFragmentReader fragmentReader = new SoapFragmentReader(
+                            reader, "IsmExchange", "recipnet",
+                            "http://www.reciprocalnet.org/master/", "message");
 
-            /*
-             * Now discard the DOM tree and return to the XML string. It should
-             * contain zero or more <message> elements. We will extract those
-	     * as strings.
-             */
-            String incoming[] = SoapUtil.extractFragmentsFromXmlDocument(
-                    docAsXml, "message");
+                    for (String message = fragmentReader.nextFragment();
+                            message != null;
+                            message = fragmentReader.nextFragment()) {
+                        incomingList.add(message);
+                    }
+                } catch (IOException ex) {
+                    // The body was truncated or not validly compressed.
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                            "Corrupt request body: " + ex.toString());
+                    return;
+                } finally {
+                    reader.close();
+                }
+            }
+            String incoming[]
+                    = incomingList.toArray(new String[incomingList.size()]);
 
             // Pass these ISM's down to core and receive the replies.
             String outgoingRaw[] = this.coreConnector.getSiteManager().exchangeInterSiteMessages(
@@ -153,15 +216,34 @@ public class IsmExchangeListener extends HttpServlet {
                         "message");
             }
 
-            // Write the response to the client.
-            response.setContentType("text/xml");
-            response.setCharacterEncoding("UTF-8");
+            /*
+             * Write the response to the client, framed and compressed if the
+             * client has said that it understands those encodings.
+             */
+            String contentEncoding = IsmFrameCodec.chooseContentEncoding(
+                    request.getHeader("Accept-Encoding"));
+            if (contentEncoding != null) {
+                response.setHeader("Content-Encoding", contentEncoding);
+            }
             response.setStatus(HttpServletResponse.SC_OK);
-            Writer writer = response.getWriter();
-            SoapUtil.writeSoapDocument(writer, outgoing, "IsmExchange",
-                    "recipnet", "http://www.reciprocalnet.org/master/");
-            writer.flush();
-            writer.close();
+            if (IsmFrameCodec.acceptsFrames(request.getHeader("Accept"))) {
+                response.setContentType(IsmFrameCodec.CONTENT_TYPE);
+                OutputStream os = IsmFrameCodec.encodeContent(
+                        response.getOutputStream(), contentEncoding);
+                IsmFrameCodec.writeMessages(os, outgoing);
+                os.close();
+            } else {
+                response.setContentType("text/xml");
+                response.setCharacterEncoding("UTF-8");
+                Writer writer = new OutputStreamWriter(
+                        IsmFrameCodec.encodeContent(
+                                response.getOutputStream(), contentEncoding),
+                        "UTF-8");
+                SoapUtil.writeSoapDocument(writer, outgoing, "IsmExchange",
+                        "recipnet", "http://www.reciprocalnet.org/master/");
+                writer.flush();
+                writer.close();
+            }
         } catch (SAXException ex) {
             // The request XML was not parsable.
             response.sendError(HttpServletResponse.SC_BAD_REQUEST,
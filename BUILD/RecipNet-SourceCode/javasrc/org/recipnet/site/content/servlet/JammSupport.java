@@ -59,6 +59,8 @@
  *              more easily accommodate addition of a new way for generating
  *              ORTEP input; accommodated API changes to the ImageParameters
  *              class; removed unused imports 
+ * 18-Oct-2026: agent made doOrtepFromCif() skip CIF items that ModelBuilder
+ *              does not use
  */
 
 package org.recipnet.site.content.servlet;
@@ -100,6 +102,7 @@ import org.recipnet.common.files.cif.CifParseException;
 import org.recipnet.common.files.cif.CifParser;
 import org.recipnet.common.molecule.Atom;
 import org.recipnet.common.molecule.FractionalAtom;
+import org.recipnet.common.molecule.ModelBuilder;
 import org.recipnet.site.RecipnetException;
 import org.recipnet.site.UnexpectedExceptionException;
 import org.recipnet.site.core.RepositoryManagerRemote;
@@ -1037,6 +1040,7 @@ public class JammSupport extends HttpServlet {
         File ortinFile;
         Writer ortinWriter;
 
+        parser.setSelectedDataNames(ModelBuilder.CIF_DATA_NAMES);
         try {
             int t = repositoryManager.beginReadingDataFile(
                     parameters.getSampleId(), parameters.getSampleHistoryId(),
@@ -4,6 +4,8 @@
  * OrtepInstructionGenerator.java
  *
  * 23-Jan-2006: jobollin wrote first draft
+ * 18-Oct-2026: agent made the CIF parse skip items that ModelBuilder does not
+ *              use
  */
 
 package org.recipnet.site.content.servlet;
@@ -30,6 +32,7 @@ import org.recipnet.common.files.CifFile.DataBlock;
 import org.recipnet.common.files.cif.CifParseException;
 import org.recipnet.common.files.cif.CifParser;
 import org.recipnet.common.molecule.Atom;
+import org.recipnet.common.molecule.ModelBuilder;
 import org.recipnet.site.RecipnetException;
 import org.recipnet.site.core.RepositoryManagerRemote;
 import org.recipnet.site.core.ResourceException;
@@ -312,8 +315,10 @@ public class OrtepInstructionGenerator extends HttpServlet {
             }
             try {
                 Iterator<DataBlock> blockIterator;
+                CifParser parser = new CifParser();
 
-                cifFile = new CifParser().parseCif(cifReader);
+                parser.setSelectedDataNames(ModelBuilder.CIF_DATA_NAMES);
+                cifFile = parser.parseCif(cifReader);
                 blockIterator = cifFile.blockIterator();
 
                 if (blockIterator.hasNext()) {
@@ -112,11 +112,16 @@
  * 02-Jan-2009: ekoperda improved handling of SampleStatusCM's, including new
  *              functions elevate- and decreaseLocalHoldingLevel() and a new
  *              version of createDataDirectory()
+ * 18-Oct-2026: agent replaced CvsInvoker with FileVersionStore, importing the
+ *              old CVS repository at first startup via createVersionStore()
+ * 18-Oct-2026: agent added getDataFileLocation(); readFromDataFile() now reads
+ *              directly into the returned array
+ * 18-Oct-2026: agent changed notifyFileUploadsFinished() to accept content
+ *              digests and to version and fix all the files in one pass
  */
 
 package org.recipnet.site.core;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.rmi.AlreadyBoundException;
 import java.rmi.ConnectException;
@@ -129,6 +134,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -164,8 +170,8 @@ import org.recipnet.site.core.msg.UnusedSecondaryDirectoryHintCM;
 import org.recipnet.site.core.util.CoreMessageQueue;
 import org.recipnet.site.core.util.CoreProcessWrapper;
 import org.recipnet.site.core.util.CoreScheduledTask;
-import org.recipnet.site.core.util.CvsInvoker;
 import org.recipnet.site.core.util.EventSignal;
+import org.recipnet.site.core.util.FileVersionStore;
 import org.recipnet.site.core.util.LogRecordGenerator;
 import org.recipnet.site.core.util.MutexLock;
 import org.recipnet.site.core.util.PrimaryDirectory;
@@ -342,17 +348,15 @@ public class RepositoryManager extends UnicastRemoteObject implements
         try {
             SiteInfo localSiteInfo
                     = siteManager.getSiteInfo(siteManager.localSiteId);
-            CvsInvoker cvsInvoker = new CvsInvoker(new File(
-                    properties.getProperty("RepCvsCommand")), new File(
-                    properties.getProperty("RepCvsDirectory")),
-                    siteManager.logger);
+            FileVersionStore versionStore = createVersionStore();
+
             primaryDirectoryAgent = new PrimaryDirectoryAgent(
                     localSiteInfo.repositoryUrl, new File(
                             properties.getProperty("RepBaseDirectory")),
                     properties.getProperty("RepScriptCreateDir"),
                     properties.getProperty("RepScriptLabDirSize"),
                     properties.getProperty("RepUploadedFilePrefix"),
-                    cvsInvoker, siteManager);
+                    versionStore, siteManager);
             secondaryDirectoryAgent = new SecondaryDirectoryAgent(
                     localSiteInfo.repositoryUrl,
                     new File(properties.getProperty("RepBaseDirectory")),
@@ -362,7 +366,7 @@ public class RepositoryManager extends UnicastRemoteObject implements
                             "RepPriorVersionFileSizeLimit")),
                     Long.parseLong(properties.getProperty(
                             "RepPriorVersionTotalSizeLimit")),
-                    cvsInvoker, lockAgent, siteManager, this);
+                    versionStore, lockAgent, siteManager, this);
         } catch (Exception ex) {
             siteManager.recordLogRecord(
                     LogRecordGenerator.repositoryAgentStartupException(ex));
@@ -1492,23 +1496,60 @@ public class RepositoryManager extends UnicastRemoteObject implements
             }
             RepositoryTicket ticket = (RepositoryTicket) lock;
 
-            // Fetch bytes from the filesystem in 16K chunks.
-            ByteArrayOutputStream baos
-                    = new ByteArrayOutputStream(maxBytesToRead);
+            /*
+             * Fetch bytes from the filesystem straight into the array that
+             * will be returned; it need only be trimmed at end-of-file.
+             */
+            byte[] buf = new byte[maxBytesToRead];
             int totalBytesRead = 0;
-            byte[] buf = new byte[16384];
             int bytesRead;
             do {
-                int bytesToRead
-                        = Math.min(maxBytesToRead - totalBytesRead, 16384);
-                bytesRead = ticket.read(buf, 0, bytesToRead);
+                bytesRead = ticket.read(buf, totalBytesRead,
+                        maxBytesToRead - totalBytesRead);
                 if (bytesRead > 0) {
-                    baos.write(buf, 0, bytesRead);
                     totalBytesRead += bytesRead;
                 }
             } while ((bytesRead != -1) && (totalBytesRead < maxBytesToRead));
 
-            return baos.toByteArray();
+            return (totalBytesRead == maxBytesToRead) ? buf
+                    : Arrays.copyOf(buf, totalBytesRead);
+        } catch (DeadlockDetectedException ex) {
+            throw new OperationFailedException(ex);
+        }
+    }
+
+    /**
+     * For an open file session that has been cleared for reading, returns the
+     * absolute path of the file being read. A caller running on the same host
+     * as core may read the file at this path directly, for instance with
+     * {@code FileChannel.transferTo()}, instead of fetching its contents in
+     * chunks via {@code readFromDataFile()}. The file is protected from
+     * modification only until the session is closed or aborted, or its ticket
+     * expires; the caller remains responsible for eventually invoking
+     * {@code closeDataFile()} or {@code abortDataFile()}. This method renews
+     * the ticket.
+     * 
+     * @return the absolute path of the file that the session reads
+     * @param ticketId identifies a previously-opened ticket session.
+     * @throws OperationFailedException on low-level error.
+     * @throws OperationNotPermittedException if the specified ticket is not
+     *         authorized to read.
+     * @throws ResourceNotFoundException if the specified {@code ticketId}
+     *         is not valid.
+     */
+    public String getDataFileLocation(int ticketId)
+            throws OperationFailedException, OperationNotPermittedException,
+            ResourceNotFoundException {
+        try {
+            // Look up the existing lock indicated by the caller.
+            AbstractLock lock = lockAgent.getLock(ticketId);
+
+            if (!(lock instanceof RepositoryTicket)) {
+                throw new ResourceNotFoundException();
+            }
+
+            return ((RepositoryTicket) lock).getReadableFile()
+                    .getAbsolutePath();
         } catch (DeadlockDetectedException ex) {
             throw new OperationFailedException(ex);
         }
@@ -2629,12 +2670,16 @@ public class RepositoryManager extends UnicastRemoteObject implements
      *        to real sample data files by this method. There is a one-to-one
      *        correspondence between elements of {@code tempFiles} and
      *        elements of {@code fileNames}.
+     * @param digests the digests of the contents of the {@code tempFiles}, as
+     *        computed by the caller while writing them, in the form accepted
+     *        by {@code FileVersionStore.commitFiles()}; parallel to
+     *        {@code fileNames}. Elements may be {@code null}.
      * @param descriptions an array of one or more desired descriptions that
      *        this method should use when creating real sample data files within
      *        the specified primary repository directory
      * @throws IllegalArgumentException if the length of the
      *         {@code fileNames} array does not match the length of the
-     *         {@code tempFiles} array.
+     *         {@code tempFiles} or {@code digests} array.
      * @throws OperationFailedException on low-level error.
      * @throws ResourceNotAccessibleException if there was a permissions problem
      *         while attempting to manipulate one of the specified
@@ -2643,9 +2688,10 @@ public class RepositoryManager extends UnicastRemoteObject implements
     public void notifyFileUploadsFinished(
             PrimaryDirectory primaryDirectoryInfo, SampleInfo sample,
             int userId, String comments, int actionCode, String fileNames[],
-            File tempFiles[], String descriptions[])
+            File tempFiles[], String digests[], String descriptions[])
             throws OperationFailedException, ResourceNotAccessibleException {
-        if (fileNames.length != tempFiles.length) {
+        if ((fileNames.length != tempFiles.length)
+                || (fileNames.length != digests.length)) {
             throw new IllegalArgumentException();
         }
 
@@ -2663,31 +2709,32 @@ public class RepositoryManager extends UnicastRemoteObject implements
             lockAgent.acquireLock(lock, true);
             try {
 
-                // Manipulate the filesystem for each finished file.
+                /*
+                 * Promote the temp files to real files and commit them to the
+                 * version store, all in one pass.
+                 */
                 RepositoryFileInfo fileInfos[]
-                        = new RepositoryFileInfo[fileNames.length];
-                
-                for (int i = 0; i < fileNames.length; i++) {
-                    // Promote the temp file to a real file and commit it to CVS
-                    File realFile = primaryDirectoryAgent.getFile(
-                            primaryDirectoryInfo, fileNames[i]);
+                        = primaryDirectoryAgent.promoteTempFiles(
+                                primaryDirectoryInfo, fileNames, tempFiles,
+                                digests, descriptions);
 
-                    fileInfos[i] = primaryDirectoryAgent.promoteTempFile(
-                            primaryDirectoryInfo, fileNames[i], tempFiles[i],
-                            descriptions[i]);
+                /*
+                 * Fix permissions on the new files. It's necessary to invoke
+                 * a shell script to do the dirty work for us; one invocation
+                 * handles all the files.
+                 */
+                String command[] = new String[fileNames.length + 2];
 
-                    /*
-                     * Fix permissions on the new file. It's necessary to invoke
-                     * a shell script to do the dirty work for us.
-                     */
-                    CoreProcessWrapper proc = new CoreProcessWrapper(
-                            new String[] {
-                                    properties.getProperty("RepScriptFixFile"),
-                                    realFile.getParent() + File.separator,
-                                    fileNames[i] });
-                    siteManager.recordLogRecord(proc.getLogRecord());
-                    proc.waitFor(true);
-                }
+                command[0] = properties.getProperty("RepScriptFixFile");
+                command[1] = primaryDirectoryAgent.getFile(
+                        primaryDirectoryInfo, fileNames[0]).getParent()
+                        + File.separator;
+                System.arraycopy(fileNames, 0, command, 2, fileNames.length);
+
+                CoreProcessWrapper proc = new CoreProcessWrapper(command);
+
+                siteManager.recordLogRecord(proc.getLogRecord());
+                proc.waitFor(true);
 
                 /*
                  * Append an entry to the sample's history log to describe the
@@ -2734,8 +2781,8 @@ public class RepositoryManager extends UnicastRemoteObject implements
     /**
      * Update task called during upgrade from recipnet-0.6.0 to recipnet-0.6.1.
      * Registers all existing repository directories as primary repository
-     * directories. Initializes the CVS repository also and secondary directory
-     * area also.
+     * directories. Initializes the file version store also and secondary
+     * directory area also.
      */
     public void registerExistingDirectories() throws DeadlockDetectedException,
             DuplicateDataException, InconsistentDbException,
@@ -2748,9 +2795,8 @@ public class RepositoryManager extends UnicastRemoteObject implements
         lock.acquire();
 
         try {
-            CvsInvoker cvsInvoker = new CvsInvoker(new File(
-                    properties.getProperty("RepCvsCommand")), new File(
-                    properties.getProperty("RepCvsDirectory")),
+            FileVersionStore versionStore = new FileVersionStore(new File(
+                    properties.getProperty("RepVersionStoreDirectory")),
                     siteManager.logger);
 
             primaryDirectoryAgent = new PrimaryDirectoryAgent(
@@ -2759,10 +2805,10 @@ public class RepositoryManager extends UnicastRemoteObject implements
                     properties.getProperty("RepScriptCreateDir"),
                     properties.getProperty("RepScriptDirSize"),
                     properties.getProperty("RepUploadedFilePrefix"),
-                    cvsInvoker, siteManager);
+                    versionStore, siteManager);
 
-            // Initialize the CVS repository.
-            cvsInvoker.initRepository(true);
+            // Initialize the file version store.
+            versionStore.initRepository();
 
             // Initialize the secondary directory area
             SecondaryDirectoryAgent.createArea(new File(
@@ -2843,6 +2889,40 @@ public class RepositoryManager extends UnicastRemoteObject implements
 
 
 
+    /**
+     * Creates the {@code FileVersionStore} in which the repository's sample
+     * data files are versioned, as configured by the directive
+     * 'RepVersionStoreDirectory'. At the first startup after an upgrade from a
+     * version of the site software that versioned files with CVS, the store is
+     * uninitialized; the CVS repository named by 'RepCvsDirectory', if present,
+     * is imported into it then, so that revision numbers recorded in the
+     * database remain valid. Otherwise an uninitialized store is simply
+     * initialized.
+     * 
+     * @return the ready-to-use {@code FileVersionStore}
+     * @throws OperationFailedException if the store could not be initialized
+     *         or the CVS repository could not be imported.
+     */
+    private FileVersionStore createVersionStore()
+            throws OperationFailedException {
+        FileVersionStore versionStore = new FileVersionStore(new File(
+                properties.getProperty("RepVersionStoreDirectory")),
+                siteManager.logger);
+
+        if (!versionStore.isInitialized()) {
+            String cvsDirectoryName = properties.getProperty("RepCvsDirectory");
+
+            if ((cvsDirectoryName != null)
+                    && new File(cvsDirectoryName).isDirectory()) {
+                versionStore.migrateFromCvs(new File(cvsDirectoryName));
+            } else {
+                versionStore.initRepository();
+            }
+        }
+
+        return versionStore;
+    }
+
     /**
      * Accepts a {@code CoreMessage} that is addressed to Repository
      * Manager, processes it, and possibly updates Repository Manager's internal
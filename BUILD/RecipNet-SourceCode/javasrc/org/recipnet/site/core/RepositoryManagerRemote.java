@@ -34,6 +34,7 @@
  * 21-Oct-2005: midurbin added  modifyDataFileDescription() and updated various
  *              method specifications to include file descriptions
  * 07-Apr-2006: jobollin removed isAlive() (but not isAlive(int))
+ * 18-Oct-2026: agent added getDataFileLocation()
  */
 
 package org.recipnet.site.core;
@@ -103,6 +104,10 @@ public interface RepositoryManagerRemote extends Remote {
 	    throws OperationFailedException, OperationNotPermittedException, 
             RemoteException, ResourceNotFoundException;
 
+    public String getDataFileLocation(int ticketId)
+            throws OperationFailedException, OperationNotPermittedException,
+            RemoteException, ResourceNotFoundException;
+
     public void writeToDataFile(int ticketId, byte[] dataToWrite)
 	    throws OperationFailedException, OperationNotPermittedException, 
             RemoteException, ResourceNotFoundException;
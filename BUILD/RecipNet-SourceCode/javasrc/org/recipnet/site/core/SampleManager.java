@@ -177,6 +177,49 @@
  *              countUnusedSampleIds() to enhance new-site synchronization
  * 31-Dec-2008: ekoperda relaxed ISM validation in eventSampleActivation()
  * 02-Jan-2009: ekoperda added readvertiseSample()
+ * 18-Oct-2026: agent made getStats() and resetStats() cover the object
+ *              caches' counters
+ * 18-Oct-2026: agent modified getSearchResults() and dbDoSearch() to use the
+ *              array-based CachedSearchResults; bounded cachedSearchResults
+ *              by retained size per the new SamSearchResultsCacheMaxBytes
+ *              directive
+ * 18-Oct-2026: agent added maintainCachedSearches() and invoked it from
+ *              putSampleInfo(), eventSampleActivation(), eventSampleUpdate(),
+ *              and eventSampleDeactivation() per the new
+ *              SamIncrementalSearchMaintenance directive
+ * 18-Oct-2026: agent made maintainCachedSearches() skip searches whose
+ *              constraints getMatches() cannot evaluate exactly, and publish
+ *              its copies with ObjectCache.replace()
+ * 18-Oct-2026: agent added unitCellIndex, loadUnitCellIndex(), and
+ *              updateUnitCellIndex(), and modified start() and dbDoSearch() to
+ *              use them per the new SamUnitCellIndexMaxCandidates directive
+ * 18-Oct-2026: agent replaced dbFetchMultipleSamplesWithOr(),
+ *              dbFetchMultipleSamplesWithTempTable(), and both
+ *              generateWhereClause() methods with a batched, parameterized
+ *              dbFetchMultipleSamples(); modified getMultipleSampleInfo() to
+ *              use it per the new SamBulkFetchBatchSize directive, which
+ *              replaces SamBulkFetchThreshold
+ * 18-Oct-2026: agent modified start() to give LockAgent a ConnectionPool
+ *              configured by SamDbConnectionCount and the new
+ *              SamDbConnectionValidationInterval and SamDbConnectionReserves
+ *              directives, instead of a fixed set of connections; getStats()
+ *              now includes the pool's counters
+ * 18-Oct-2026: agent made start() log malformed SamDbConnectionReserves
+ *              entries as configuration errors
+ * 18-Oct-2026: agent added beginBulkImport(), flushBulkImport(),
+ *              endBulkImport(), dbWriteSamplesInBulk(), dbEraseSamples(),
+ *              computeSearchAtoms(), computeCanonicalSpaceGroup() and the
+ *              nested StagedSampleIsm class; eventSampleActivation() and
+ *              eventSampleUpdate() stage ISM's while a bulk import is active
+ * 18-Oct-2026: agent added putSampleInfoBatch()
+ * 18-Oct-2026: agent made putSampleInfoBatch() record RuntimeExceptions per
+ *              sample
+ * 18-Oct-2026: agent made flushBulkImport() unstage ISM's only once they are
+ *              written, made dbWriteSamplesInBulk() write copies of the
+ *              staged samples, and added abortBulkImport()
+ * 18-Oct-2026: agent made maintainCachedSearches() invalidate matching
+ *              searches sorted by local lab id rather than leave the sample
+ *              where it was
  */
 
 package org.recipnet.site.core;
@@ -189,7 +232,6 @@ import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.security.SecureRandom;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -203,6 +245,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -218,9 +261,12 @@ import org.recipnet.common.Validator;
 import org.recipnet.site.InconsistentDbException;
 import org.recipnet.site.InvalidDataException;
 import org.recipnet.site.OperationFailedException;
+import org.recipnet.site.RecipnetException;
 import org.recipnet.site.UnexpectedExceptionException;
 import org.recipnet.site.core.agent.SampleIdAgent;
 import org.recipnet.site.core.lock.AbstractLock;
+import org.recipnet.site.core.lock.ConnectionClass;
+import org.recipnet.site.core.lock.ConnectionPool;
 import org.recipnet.site.core.lock.LockAgent;
 import org.recipnet.site.core.msg.CoreMessage;
 import org.recipnet.site.core.msg.InterSiteMessage;
@@ -241,9 +287,12 @@ import org.recipnet.site.core.util.CoreMessageQueue;
 import org.recipnet.site.core.util.CoreScheduledTask;
 import org.recipnet.site.core.util.EventSignal;
 import org.recipnet.site.core.util.LogRecordGenerator;
+import org.recipnet.site.core.util.MultiRowInserter;
 import org.recipnet.site.core.util.MutexLock;
 import org.recipnet.site.core.util.SampleLocks;
+import org.recipnet.site.core.util.UnitCellIndex;
 import org.recipnet.site.shared.SampleStats;
+import org.recipnet.site.shared.SampleWriteBatch;
 import org.recipnet.site.shared.SearchParams;
 import org.recipnet.site.shared.bl.ChemicalFormulaBL;
 import org.recipnet.site.shared.bl.SampleMathBL;
@@ -263,6 +312,7 @@ import org.recipnet.site.shared.db.SampleInfo;
 import org.recipnet.site.shared.db.SampleTextInfo;
 import org.recipnet.site.shared.db.SearchUnitCellsInfo;
 import org.recipnet.site.shared.db.UserInfo;
+import org.recipnet.site.shared.search.FieldMatchInfo;
 import org.recipnet.site.shared.search.RequireAuthoritativeSC;
 import org.recipnet.site.shared.search.SearchConstraint;
 import org.recipnet.site.shared.search.SearchConstraintExtraInfo;
@@ -306,6 +356,12 @@ public class SampleManager extends UnicastRemoteObject implements
     // stores SampleInfo objects by sample id:
     private final ObjectCache<SampleInfo> cachedSamples;
 
+    // serializes incremental updates to cachedSearchResults
+    private final Object searchMaintenanceMutex;
+
+    // an in-memory copy of the searchUnitCells table, or null if disabled
+    private UnitCellIndex unitCellIndex;
+
     // a random number generator used for assigning id's to new db records
     private final Random randomIdGenerator;
 
@@ -317,6 +373,9 @@ public class SampleManager extends UnicastRemoteObject implements
     // shared with RepositoryManager.
     LockAgent lockAgent;
 
+    // the pool from which lockAgent loans database connections
+    private ConnectionPool connectionPool;
+
     // stores our configuration properties
     private final Properties properties;
 
@@ -336,6 +395,17 @@ public class SampleManager extends UnicastRemoteObject implements
     // Validates data strings as container strings
     private final Validator sampleStringFieldValidator;
 
+    // the number of sample ISM's staged before they are written together, or
+    // zero if no bulk import is active; see beginBulkImport()
+    private int bulkImportBatchSize;
+
+    // sample ISM's staged by a bulk import, by sample id; a later ISM for the
+    // same sample replaces an earlier one
+    private final Map<Integer, StagedSampleIsm> bulkImportSamples;
+
+    // every sample ISM staged by a bulk import, in the order received
+    private final List<StagedSampleIsm> bulkImportIsms;
+
 
 
     /**************************************************************************
@@ -363,14 +433,21 @@ public class SampleManager extends UnicastRemoteObject implements
         stats = new SampleStats();
         localLabIdValidator = new FilenameValidator();
         sampleStringFieldValidator = new ContainerStringValidator();
+        bulkImportBatchSize = 0;
+        bulkImportSamples = new LinkedHashMap<Integer, StagedSampleIsm>();
+        bulkImportIsms = new ArrayList<StagedSampleIsm>();
 
         // create our object caches according to configuration properties
         storedSearchParams = ObjectCache.newInstance(
                 properties.getProperty("SamSearchParamsCache"));
         cachedSearchResults = ObjectCache.newInstance(
-                properties.getProperty("SamSearchResultsCache"));
+                properties.getProperty("SamSearchResultsCache"),
+                Long.parseLong(properties.getProperty(
+                        "SamSearchResultsCacheMaxBytes")),
+                CachedSearchResults.WEIGHER);
         cachedSamples = ObjectCache.newInstance(
                 properties.getProperty("SamSampleCache"));
+        searchMaintenanceMutex = new Object();
     }
 
     /**
@@ -391,10 +468,14 @@ public class SampleManager extends UnicastRemoteObject implements
                 Integer.parseInt(properties.getProperty("SamLockTimeout")));
 
         /*
-         * Next task: establish potentially many database connections and hand
-         * them all over to LockAgent for safekeeping. The driver class name,
-         * database URI, username, and password are all user-configurable. The
-         * number of parallel connections to create is also user-configurable.
+         * Next task: create a pool of database connections and hand it over
+         * to LockAgent for safekeeping. The driver class name, database URI,
+         * username, and password are all user-configurable, as are the
+         * maximum number of parallel connections, the interval after which
+         * an idle connection is tested before reuse, and the number of
+         * connections reserved for each class of lock. One connection is
+         * opened now so that configuration errors are detected at startup;
+         * the rest are opened as they are needed.
          */
         try {
             Class.forName(properties.getProperty("DbDriverClassName"));
@@ -404,18 +485,40 @@ public class SampleManager extends UnicastRemoteObject implements
             stop();
             return false;
         }
-        int connectionPoolSize = Integer.parseInt(
-                properties.getProperty("SamDbConnectionCount"));
         String dbUrl = this.bootstrapMode
                 ? properties.getProperty("DbUrlForBootstrap")
                 : properties.getProperty("DbUrl");
+        connectionPool = new ConnectionPool(dbUrl,
+                properties.getProperty("SamDbUsername"),
+                properties.getProperty("SamDbPassword"),
+                Integer.parseInt(properties.getProperty("SamDbConnectionCount")),
+                Long.parseLong(properties.getProperty(
+                        "SamDbConnectionValidationInterval")), stats);
         try {
-            for (int i = 0; i < connectionPoolSize; i++) {
-                Connection conn = DriverManager.getConnection(dbUrl,
-                        properties.getProperty("SamDbUsername"),
-                        properties.getProperty("SamDbPassword"));
-                lockAgent.addConnection(conn);
+            for (String reserve : properties.getProperty(
+                    "SamDbConnectionReserves").split(",")) {
+                if (reserve.trim().length() > 0) {
+                    String[] parts = reserve.split(":");
+
+                    if (parts.length != 2) {
+                        throw new IllegalArgumentException("Expected an entry"
+                                + " of the form class:count but found '"
+                                + reserve.trim() + "'");
+                    }
+                    connectionPool.setReserve(ConnectionClass.parse(parts[0]),
+                            Integer.parseInt(parts[1].trim()));
+                }
             }
+        } catch (IllegalArgumentException ex) {
+            // Includes NumberFormatException
+            siteManager.recordLogRecord(LogRecordGenerator.configParseException(
+                    "SamDbConnectionReserves", ex));
+            stop();
+            return false;
+        }
+        lockAgent.setConnectionPool(connectionPool);
+        try {
+            connectionPool.open(1);
         } catch (SQLException ex) {
             siteManager.recordLogRecord(LogRecordGenerator.dbFailedToConnect(
                     this, dbUrl, properties.getProperty("SamDbUsername"), ex));
@@ -475,6 +578,23 @@ public class SampleManager extends UnicastRemoteObject implements
             return true;
         }
 
+        /*
+         * Next task: load our in-memory index of the searchUnitCells table,
+         * if it is enabled.
+         */
+        int unitCellIndexMaxCandidates = Integer.parseInt(
+                properties.getProperty("SamUnitCellIndexMaxCandidates"));
+        if (unitCellIndexMaxCandidates > 0) {
+            try {
+                loadUnitCellIndex(unitCellIndexMaxCandidates);
+            } catch (Exception ex) {
+                siteManager.recordLogRecord(
+                        LogRecordGenerator.unitCellIndexLoadException(ex));
+                stop();
+                return false;
+            }
+        }
+
         /*
          * Next task: spawn the worker thread and wait for it to start. The
          * thread name and maximum wait time are user-configurable.
@@ -614,6 +734,9 @@ public class SampleManager extends UnicastRemoteObject implements
             if (this.lockAgent != null) {
                 this.lockAgent.releaseAllLocks();
             }
+            if (this.connectionPool != null) {
+                this.connectionPool.close();
+            }
 
             // Tell every other thread that Site Manager's worker thread has
             // terminated gracefully
@@ -1796,8 +1919,10 @@ public class SampleManager extends UnicastRemoteObject implements
                 }
                 dbWriteSampleVersion(lock.getConnection(), oldsample, sample);
 
-                // Invalidate the cache.
+                // Invalidate the cache and bring cached searches up to date.
                 cachedSamples.invalidate(sample.id);
+                updateUnitCellIndex(sample.id, sample);
+                maintainCachedSearches(sample.id, sample);
 
                 // Possibly generate an ISM to announce the change if this is a
                 // public sample.
@@ -1867,6 +1992,58 @@ public class SampleManager extends UnicastRemoteObject implements
         }
     }
 
+    /**
+     * Creates each of the new samples in the specified batch, taking each
+     * through the batch's series of workflow actions exactly as a series of
+     * calls to {@code putSampleInfo()} would, so that a caller with many
+     * samples to create needs only one remote call for several of them. Each
+     * sample is written under its own lock, as usual; the batch is not
+     * atomic. Any exception that stops a sample is recorded in the batch
+     * along with the action that raised it (a {@code RuntimeException} being
+     * wrapped in an {@code OperationFailedException}), and processing
+     * continues with the next sample.
+     * 
+     * @param batch a {@code SampleWriteBatch} describing the samples to be
+     *        created; the {@code id}, {@code historyId}, and
+     *        {@code localLabId} of each sample version after the first are
+     *        replaced by those of the version written before it.
+     * @return the batch, with a result or a failure recorded for every sample
+     */
+    public SampleWriteBatch putSampleInfoBatch(SampleWriteBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            SampleInfo written = null;
+            int action = 0;
+
+            try {
+                for (; action < batch.getActionCount(); action++) {
+                    SampleInfo sample = batch.getSampleVersion(i, action);
+
+                    if (written != null) {
+                        sample.id = written.id;
+                        sample.historyId = written.historyId;
+                        sample.localLabId = written.localLabId;
+                    }
+                    written = putSampleInfo(sample,
+                            batch.getActionCode(action), new Date(),
+                            batch.getUserId(), batch.getComments(action),
+                            SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID, null);
+                }
+                batch.recordResult(i, written);
+            } catch (RecipnetException ex) {
+                batch.recordFailure(i, action, ex);
+            } catch (RuntimeException ex) {
+                /*
+                 * Don't let one sample's unexpected failure abort the remote
+                 * call and lose the outcomes of the samples already written
+                 */
+                batch.recordFailure(i, action,
+                        new OperationFailedException(ex));
+            }
+        }
+
+        return batch;
+    }
+
     /**
      * Changes data for the specified sample back to the data that was
      * associated with a particular (previous) version of the sample. No data is
@@ -2205,11 +2382,13 @@ public class SampleManager extends UnicastRemoteObject implements
                 // Filter the list of samples to be returned
                 if ((startIndex == 0) && (maxSamples == 0)) {
                     // Fetch all samples
-                    return getMultipleSampleInfo(results.sampleIdList,
-                            results.sampleHistoryList, lock, true, true);
+                    return getMultipleSampleInfo(
+                            results.getSampleIds(0, results.size()),
+                            results.getSampleHistoryIds(0, results.size()),
+                            lock, true, true);
                 } else {
                     // Early exit if there are no samples to return
-                    if (results.sampleIdList.isEmpty()) {
+                    if (results.isEmpty()) {
                         return new SampleInfo[0];
                     }
 
@@ -2217,22 +2396,21 @@ public class SampleManager extends UnicastRemoteObject implements
                     // startIndex is higher than the number of samples
                     // available.
                     if ((startIndex < 0)
-                            || (startIndex >= results.sampleIdList.size())) {
+                            || (startIndex >= results.size())) {
                         throw new IllegalArgumentException();
                     }
 
                     // Fetch some subset of samples. Our lock will be promoted
                     // along the way.
                     int endIndex = startIndex + maxSamples;
-                    if (endIndex > results.sampleIdList.size()) {
-                        endIndex = results.sampleIdList.size();
+                    if (endIndex > results.size()) {
+                        endIndex = results.size();
                     }
                     SampleInfo[] samplesSubset = getMultipleSampleInfo(
-                            results.sampleIdList.subList(startIndex, endIndex),
-                            results.sampleHistoryList.subList(startIndex,
-                                    endIndex), lock, true, true);
-                    SampleInfo[] samples
-                            = new SampleInfo[results.sampleIdList.size()];
+                            results.getSampleIds(startIndex, endIndex),
+                            results.getSampleHistoryIds(startIndex, endIndex),
+                            lock, true, true);
+                    SampleInfo[] samples = new SampleInfo[results.size()];
                     for (int i = 0; i < samplesSubset.length; i++) {
                         samples[i + startIndex] = samplesSubset[i];
                     }
@@ -2248,17 +2426,32 @@ public class SampleManager extends UnicastRemoteObject implements
 
     /**
      * Returns the SampleStats container that represents the current status of
-     * Sample Manager's performance counters.
+     * Sample Manager's performance counters, including those of its object
+     * caches and its database connection pool.
      */
     public SampleStats getStats() {
-        return stats.clone();
+        SampleStats snapshot = stats.clone();
+
+        snapshot.recordCache("cachedSamples", cachedSamples);
+        snapshot.recordCache("cachedSearchResults", cachedSearchResults);
+        snapshot.recordCache("storedSearchParams", storedSearchParams);
+        if (connectionPool != null) {
+            snapshot.recordCounters("dbConnectionPool",
+                    connectionPool.getCounters());
+        }
+
+        return snapshot;
     }
 
     /**
-     * Resets the SampleStats container and all the counters within it.
+     * Resets the SampleStats container and all the counters within it, along
+     * with the counters kept by Sample Manager's object caches.
      */
     public void resetStats() {
         stats.reset();
+        cachedSamples.resetStatistics();
+        cachedSearchResults.resetStatistics();
+        storedSearchParams.resetStatistics();
     }
 
     /**
@@ -2435,6 +2628,132 @@ public class SampleManager extends UnicastRemoteObject implements
         }
     }
 
+    /**
+     * Called during bootstrap mode, before a long run of ISM's is replayed,
+     * to begin a bulk import. Until {@code endBulkImport()} is called,
+     * {@code SampleActivationISM}'s and {@code SampleUpdateISM}'s are
+     * validated as usual but are then staged in memory rather than written;
+     * each time the number staged reaches the value of the
+     * {@code SamBulkImportBatchSize} directive they are written together by
+     * {@code flushBulkImport()}, which saves a database round-trip or more per
+     * row. Staged ISM's are reported to {@code ReceivedMessageAgent} with
+     * {@code ProcessedIsmCM.staged()}, and with
+     * {@code ProcessedIsmCM.committed()} once written, so the recorded
+     * sequence numbers never run ahead of the database. A directive value of
+     * zero disables bulk imports, in which case this method does nothing.
+     * 
+     * @throws IllegalStateException if bootstrap mode was not enabled at
+     *         construction time.
+     */
+    public void beginBulkImport() {
+        if (!bootstrapMode) {
+            throw new IllegalStateException("not in bootstrap mode");
+        }
+        bulkImportBatchSize = Integer.parseInt(
+                properties.getProperty("SamBulkImportBatchSize"));
+    }
+
+    /**
+     * Writes any sample ISM's staged by a bulk import, in a handful of
+     * multi-row statements per table, and then reports them as processed.
+     * Besides being invoked as batches fill, this method is called before any
+     * other kind of message is processed, so that messages are always applied
+     * in their original order. It does nothing if no ISM's are staged. If the
+     * write fails, the ISM's remain staged, unchanged, and are written by the
+     * next flush.
+     * 
+     * @return the number of sample records written.
+     * @throws OperationFailedException if the operation could not be completed
+     *         because of a low-level error.
+     */
+    public int flushBulkImport() throws OperationFailedException {
+        if (bulkImportIsms.isEmpty()) {
+            return 0;
+        }
+
+        List<StagedSampleIsm> samples
+                = new ArrayList<StagedSampleIsm>(bulkImportSamples.values());
+        List<StagedSampleIsm> isms
+                = new ArrayList<StagedSampleIsm>(bulkImportIsms);
+        List<SampleInfo> written;
+
+        try {
+            AbstractLock lock = SampleLocks.managerBulkImportSamples();
+
+            this.lockAgent.registerLock(lock);
+            lock.acquire();
+            try {
+                written = dbWriteSamplesInBulk(lock.getConnection(), samples);
+            } catch (SQLException ex) {
+                throw new OperationFailedException(ex);
+            } finally {
+                lock.release();
+            }
+        } catch (DeadlockDetectedException ex) {
+            throw new OperationFailedException(ex);
+        }
+        bulkImportSamples.clear();
+        bulkImportIsms.clear();
+        for (SampleInfo sample : written) {
+            cachedSamples.invalidate(sample.id);
+            updateUnitCellIndex(sample.id, sample);
+            maintainCachedSearches(sample.id, sample);
+        }
+
+        /*
+         * Report the ISM's in their original order. Only the last from each
+         * of a site's two sequences need record its sequence number in the
+         * database.
+         */
+        Set<String> sequencesSeen = new HashSet<String>();
+        boolean shouldUpdateDb[] = new boolean[isms.size()];
+
+        for (int i = isms.size() - 1; i >= 0; i--) {
+            InterSiteMessage ism = isms.get(i).ism;
+
+            shouldUpdateDb[i] = sequencesSeen.add(ism.sourceSiteId
+                    + (ism.isPublic() ? "public" : "private"));
+        }
+        for (int i = 0; i < isms.size(); i++) {
+            siteManager.passCoreMessage(ProcessedIsmCM.committed(
+                    isms.get(i).ism, isms.get(i).message, shouldUpdateDb[i]));
+        }
+
+        return samples.size();
+    }
+
+    /**
+     * Ends a bulk import begun by {@code beginBulkImport()}, first writing any
+     * ISM's still staged. Sample ISM's are processed one at a time again
+     * afterward.
+     * 
+     * @return the number of sample records written.
+     * @throws OperationFailedException if the operation could not be completed
+     *         because of a low-level error.
+     */
+    public int endBulkImport() throws OperationFailedException {
+        int count = flushBulkImport();
+
+        bulkImportBatchSize = 0;
+
+        return count;
+    }
+
+    /**
+     * Abandons a bulk import begun by {@code beginBulkImport()}, discarding
+     * any ISM's still staged. Because their sequence numbers have not been
+     * recorded in the database, they will be received and processed again
+     * by the next synchronization. Callers should invoke this method in a
+     * {@code finally} block after {@code beginBulkImport()}, so that a failed
+     * import does not leave Sample Manager staging ISM's; it does nothing if
+     * {@code endBulkImport()} has already been called.
+     */
+    public void abortBulkImport() {
+        bulkImportSamples.clear();
+        bulkImportIsms.clear();
+        bulkImportBatchSize = 0;
+    }
+
     /**
      * Called by CoreLoader during a 'dbupdate' operation to rebuild the
      * contents of the searchAtoms table based upon existing sample metadata
@@ -2881,6 +3200,12 @@ public class SampleManager extends UnicastRemoteObject implements
     private void processCoreMessage(CoreMessage msg)
             throws OperationFailedException {
         try {
+            // Staged sample ISM's must take effect before anything else does.
+            if (!(msg instanceof SampleActivationISM)
+                    && !(msg instanceof SampleUpdateISM)) {
+                flushBulkImport();
+            }
+
             // Decode the message and branch accordingly. If an inter-site
             // message gets passed to us here, we can assume that the message
             // was addressed to Sample Manager at the local site and its
@@ -3052,6 +3377,13 @@ public class SampleManager extends UnicastRemoteObject implements
             throw new IsmProcessingException(msg,
                     IsmProcessingException.SENDER_NOT_AUTHORIZED);
         }
+        if (bulkImportBatchSize > 0) {
+            stageBulkImport(new StagedSampleIsm(msg, msg.newSample,
+                    msg.getSuggestedFileName(),
+                    "Recorded sample activation for " + msg.newSample.id
+                            + " from lab " + msg.newSample.labId));
+            return;
+        }
 
         // Obtain a lock.
         AbstractLock lock
@@ -3070,6 +3402,8 @@ public class SampleManager extends UnicastRemoteObject implements
             // because this sample was previously unknown.
             dbWriteSampleVersion(lock.getConnection(), null, msg.newSample);
             cachedSamples.invalidate(msg.newSample.id);
+            updateUnitCellIndex(msg.newSample.id, msg.newSample);
+            maintainCachedSearches(msg.newSample.id, msg.newSample);
             // Release the lock.
         } catch (SQLException ex) {
             throw new OperationFailedException(ex);
@@ -3111,7 +3445,9 @@ public class SampleManager extends UnicastRemoteObject implements
         // Validate the incoming ISM.
         LabInfo lab;
         try {
-            getSampleInfo(msg.updatedSample.id); // ignore the result
+            if (!bulkImportSamples.containsKey(msg.updatedSample.id)) {
+                getSampleInfo(msg.updatedSample.id); // ignore the result
+            }
         } catch (ResourceNotFoundException ex) {
             // FIXME: shouldn't use exceptions for flow control
             
@@ -3125,6 +3461,13 @@ public class SampleManager extends UnicastRemoteObject implements
             throw new IsmProcessingException(msg,
                     IsmProcessingException.SENDER_NOT_AUTHORIZED);
         }
+        if (bulkImportBatchSize > 0) {
+            stageBulkImport(new StagedSampleIsm(msg, msg.updatedSample,
+                    msg.getSuggestedFileName(),
+                    "Recorded sample update for " + msg.updatedSample.id
+                            + " from lab " + msg.updatedSample.labId));
+            return;
+        }
 
         // Obtain a lock.
         AbstractLock lock
@@ -3144,6 +3487,8 @@ public class SampleManager extends UnicastRemoteObject implements
             // because this sample was just erased.
             dbWriteSampleVersion(lock.getConnection(), null, msg.updatedSample);
             cachedSamples.invalidate(msg.updatedSample.id);
+            updateUnitCellIndex(msg.updatedSample.id, msg.updatedSample);
+            maintainCachedSearches(msg.updatedSample.id, msg.updatedSample);
 
             // Release the lock.
         } catch (SQLException ex) {
@@ -3158,6 +3503,25 @@ public class SampleManager extends UnicastRemoteObject implements
                         + " from lab " + msg.updatedSample.labId));
     }
 
+    /**
+     * Helper function for eventSampleActivation() and eventSampleUpdate() that
+     * stages a validated ISM during a bulk import, reports it as staged, and
+     * writes the batch once it is full.
+     * 
+     * @throws OperationFailedException if the operation could not be completed
+     *         because of a low-level error.
+     */
+    private void stageBulkImport(StagedSampleIsm staged)
+            throws OperationFailedException {
+        bulkImportSamples.remove(staged.sample.id);
+        bulkImportSamples.put(staged.sample.id, staged);
+        bulkImportIsms.add(staged);
+        siteManager.passCoreMessage(ProcessedIsmCM.staged(staged.ism));
+        if (bulkImportIsms.size() >= bulkImportBatchSize) {
+            flushBulkImport();
+        }
+    }
+
     /**
      * Executed when a SampleDeactivationISM arrives from another site and needs
      * to be processed. The sample identified by the ISM is removed from the
@@ -3222,6 +3586,8 @@ public class SampleManager extends UnicastRemoteObject implements
             // Proceed with the update.
             dbEraseSample(lock.getConnection(), msg.oldSampleId);
             cachedSamples.invalidate(msg.oldSampleId);
+            updateUnitCellIndex(msg.oldSampleId, null);
+            maintainCachedSearches(msg.oldSampleId, null);
 
             // Release the lock.
         } catch (SQLException ex) {
@@ -3320,8 +3686,8 @@ public class SampleManager extends UnicastRemoteObject implements
              * Store the resulting object in the cache for easy access next
              * time.
              */
-            results = dbDoSearch(
-                    lock.getConnection(), searchId, params, stats, localLabs);
+            results = dbDoSearch(lock.getConnection(), searchId, params,
+                    stats, localLabs, unitCellIndex);
             cachedSearchResults.put(searchId, results);
             
             return results;
@@ -3334,6 +3700,190 @@ public class SampleManager extends UnicastRemoteObject implements
         }
     }
 
+    /**
+     * Internal function that reads the entire {@code searchUnitCells} table
+     * into a new {@code UnitCellIndex}, which is then installed as
+     * {@code unitCellIndex}. Called once, during startup.
+     * 
+     * @param maxCandidates the maximum number of sample ids the index should
+     *        contribute to a single search
+     * @throws DeadlockDetectedException on deadlock.
+     * @throws OperationFailedException if the operation could not be completed
+     *         because of a low-level error.
+     */
+    private void loadUnitCellIndex(int maxCandidates)
+            throws DeadlockDetectedException, OperationFailedException {
+        AbstractLock lock = SampleLocks.managerLoadUnitCellIndex();
+        this.lockAgent.registerLock(lock);
+        lock.acquire();
+
+        try {
+            List<SearchUnitCellsInfo> rows
+                    = new ArrayList<SearchUnitCellsInfo>();
+            Statement cmd = lock.getConnection().createStatement();
+
+            try {
+                ResultSet rs = cmd.executeQuery(
+                        "SELECT * FROM searchUnitCells;");
+
+                while (rs.next()) {
+                    rows.add(new SearchUnitCellsInfo(rs));
+                }
+                rs.close();
+            } finally {
+                cmd.close();
+            }
+
+            UnitCellIndex index = new UnitCellIndex(maxCandidates);
+
+            index.load(rows);
+            unitCellIndex = index;
+        } catch (SQLException ex) {
+            throw new OperationFailedException(ex);
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Internal function that should be called immediately following a change
+     * to a sample record, alongside {@code updateSearchUnitCells()}, or
+     * following the erasure of a sample. It brings {@code unitCellIndex}, if
+     * enabled, up to date with the {@code searchUnitCells} table. The caller
+     * must still hold the lock under which the table was modified.
+     * 
+     * @param sampleId the id of the sample that changed
+     * @param sample the sample's current version, or null if the sample has
+     *        been erased
+     */
+    private void updateUnitCellIndex(int sampleId, SampleInfo sample) {
+        if (unitCellIndex == null) {
+            return;
+        }
+
+        SearchUnitCellsInfo suci = ((sample == null) ? null
+                : SampleMathBL.generateSearchUnitCellsInfo(sample));
+
+        if (suci == null) {
+            unitCellIndex.remove(sampleId);
+        } else {
+            unitCellIndex.put(suci);
+        }
+    }
+
+    /**
+     * Internal function that brings every cached search up to date with
+     * respect to a single sample that has just been written to (or erased
+     * from) the database, so that popular searches need not be re-executed
+     * after every sample update. The sample is evaluated in memory against
+     * each search's {@code SearchConstraint} tree; its id is then added to,
+     * removed from, or refreshed within that search's results as
+     * appropriate. A search whose constraints cannot be evaluated in memory
+     * exactly as the database would evaluate them (see
+     * {@link SearchConstraint#isExactInMemory()}),
+     * is left as it is (and so may be stale until it expires, as before). A
+     * search sorted by local lab id is invalidated whenever the sample matches
+     * it, because the cached results do not record the sort keys needed to
+     * position the sample correctly. Nothing is done unless the
+     * {@code SamIncrementalSearchMaintenance} directive is {@code true}.
+     * <p>
+     * {@code CachedSearchResults} objects are never modified once published;
+     * this method instead publishes a modified copy in place of each affected
+     * one, but only if the original is still cached. Should another thread
+     * have stored new results for the same search in the meantime, those are
+     * invalidated instead, since they may not reflect this sample.
+     * 
+     * @param sampleId the id of the sample that changed
+     * @param sample the sample's current version, fully populated, or null if
+     *        the sample has been erased
+     */
+    private void maintainCachedSearches(int sampleId, SampleInfo sample) {
+        if (!properties.getProperty(
+                "SamIncrementalSearchMaintenance").equals("true")) {
+            return;
+        }
+
+        PerfTimer perfTimer = new PerfTimer("maintainCachedSearches()");
+
+        synchronized (searchMaintenanceMutex) {
+            for (CachedSearchResults results
+                    : cachedSearchResults.getAll(CachedSearchResults.class)) {
+                SearchParams params = storedSearchParams.get(results.searchId);
+                boolean matches;
+
+                if (params == null) {
+                    // Nothing will be able to re-execute this search anyway
+                    continue;
+                } else if (!params.getHead().isExactInMemory()) {
+                    // This search can only be evaluated by the database
+                    continue;
+                } else if (sample == null) {
+                    matches = false;
+                } else {
+                    matches = params.getHead().getMatches(sample,
+                            new ArrayList<FieldMatchInfo>(),
+                            new ArrayList<FieldMatchInfo>());
+                }
+
+                int index = results.indexOf(sampleId);
+                CachedSearchResults newResults;
+
+                if (!matches) {
+                    if (index < 0) {
+                        continue;
+                    }
+                    newResults = results.copy();
+                    newResults.remove(index);
+                } else {
+                    switch (params.getSortOrder()) {
+                        case SearchParams.DEFAULT_SORT_ORDER:
+                        case SearchParams.SORTBY_CURRENT_SAMPLEHISTORY_ID:
+                            // The new version is the most recent of all
+                            newResults = results.copy();
+                            if (index < 0) {
+                                newResults.add(sampleId, sample.historyId);
+                            } else if (params.getSortOrder()
+                                    == SearchParams.DEFAULT_SORT_ORDER) {
+                                newResults.setSampleHistoryId(index,
+                                        sample.historyId);
+                            } else {
+                                newResults.remove(index);
+                                newResults.add(sampleId, sample.historyId);
+                            }
+                            break;
+                        case SearchParams.SORTBY_CURRENT_SAMPLEHISTORY_ID_REV:
+                            newResults = results.copy();
+                            if (index >= 0) {
+                                newResults.remove(index);
+                            }
+                            newResults.insert(0, sampleId, sample.historyId);
+                            break;
+                        default:
+                            /*
+                             * The sample's position depends on sort keys that
+                             * the cached results don't record, and which this
+                             * version may have changed; let the search be
+                             * re-executed when next needed.
+                             */
+                            cachedSearchResults.invalidate(results.searchId);
+                            continue;
+                    }
+                }
+                newResults.trimToSize();
+                if (!cachedSearchResults.replace(results.searchId, results,
+                        newResults)) {
+                    /*
+                     * executeSearch() stored other results meanwhile, which
+                     * may or may not reflect this sample; discard them
+                     */
+                    cachedSearchResults.invalidate(results.searchId);
+                }
+            }
+        }
+
+        stats.record(perfTimer);
+    }
+
     /**
      * Internal function that writes portions of a new sample, or the first
      * version of a new sample, to the database. Inserts new rows into the
@@ -3517,6 +4067,158 @@ public class SampleManager extends UnicastRemoteObject implements
         updateSearchSpaceGroups(conn, newSample);
     }
 
+    /**
+     * Internal function that writes the first version of each of several
+     * replicated samples, as {@code dbEraseSample()}, {@code dbWriteSample()}
+     * and {@code dbWriteSampleVersion()} together do for one, but with a few
+     * multi-row statements per table rather than several statements per row.
+     * Any existing record of each sample is erased first. The search tables'
+     * rows are computed and written in the same way, so that each batch leaves
+     * the samples it writes fully indexed.
+     * 
+     * @param conn a valid database connection. The caller must have acquired
+     *        the appropriate kind of lock previously.
+     * @param staged the samples to be written, each with a distinct id. They
+     *        are not modified, so that a failed write may be retried; copies
+     *        are written instead.
+     * @return the copies written, in the same order as {@code staged}, with
+     *         their history ids and related fields populated.
+     * @throws SQLException on database error.
+     */
+    private static List<SampleInfo> dbWriteSamplesInBulk(Connection conn,
+            List<StagedSampleIsm> staged) throws SQLException {
+        List<SampleInfo> written = new ArrayList<SampleInfo>(staged.size());
+        int sampleIds[] = new int[staged.size()];
+
+        for (int i = 0; i < sampleIds.length; i++) {
+            sampleIds[i] = staged.get(i).sample.id;
+        }
+        dbEraseSamples(conn, sampleIds);
+
+        // Write the history rows first to obtain their new ids.
+        MultiRowInserter historyRows
+                = new MultiRowInserter(conn, "sampleHistory", true);
+
+        for (StagedSampleIsm s : staged) {
+            SampleHistoryInfo history = new SampleHistoryInfo();
+
+            history.sampleId = s.sample.id;
+            history.action = SampleWorkflowBL.REPLICATED_FROM_ELSEWHERE;
+            history.newStatus = s.sample.status;
+            history.userId = UserInfo.INVALID_USER_ID;
+            history.comments = s.comments;
+            history.revertedToSampleHistoryId
+                    = SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID;
+            history.date = s.actionDate;
+            history.dbStore(historyRows.newRow());
+        }
+
+        int historyIds[] = historyRows.flush();
+        MultiRowInserter sampleRows
+                = new MultiRowInserter(conn, "samples", false);
+        MultiRowInserter dataRows
+                = new MultiRowInserter(conn, "sampleData", false);
+        MultiRowInserter attributeRows
+                = new MultiRowInserter(conn, "sampleAttributes", false);
+        MultiRowInserter annotationRows
+                = new MultiRowInserter(conn, "sampleAnnotations", false);
+        MultiRowInserter accessRows
+                = new MultiRowInserter(conn, "sampleAcls", false);
+        MultiRowInserter atomRows
+                = new MultiRowInserter(conn, "searchAtoms", false);
+        MultiRowInserter unitCellRows
+                = new MultiRowInserter(conn, "searchUnitCells", false);
+        MultiRowInserter spaceGroupRows
+                = new MultiRowInserter(conn, "searchSpaceGroups", false);
+
+        for (int i = 0; i < historyIds.length; i++) {
+            SampleInfo sample = staged.get(i).sample.clone();
+
+            written.add(sample);
+
+            sample.historyId = historyIds[i];
+            sample.mostRecentHistoryId = historyIds[i];
+            sample.mostRecentStatus = sample.status;
+            sample.mostRecentProviderId = sample.dataInfo.providerId;
+            sample.dbStore(sampleRows.newRow());
+
+            sample.dataInfo.firstSampleHistoryId = sample.historyId;
+            sample.dataInfo.lastSampleHistoryId
+                    = SampleHistoryInfo.STILL_ACTIVE;
+            sample.dataInfo.originalSampleHistoryId = sample.historyId;
+            sample.dataInfo.sampleId = sample.id;
+            sample.dataInfo.dbStore(dataRows.newRow());
+
+            for (SampleAttributeInfo attribute : sample.attributeInfo) {
+                attribute.id = SampleTextInfo.INVALID_SAMPLE_TEXT_ID;
+                attribute.firstSampleHistoryId = sample.historyId;
+                attribute.lastSampleHistoryId = SampleHistoryInfo.STILL_ACTIVE;
+                if (attribute.originalSampleHistoryId
+                        == SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID) {
+                    attribute.originalSampleHistoryId = sample.historyId;
+                }
+                attribute.sampleId = sample.id;
+                attribute.dbStore(attributeRows.newRow());
+            }
+            for (SampleAnnotationInfo annotation : sample.annotationInfo) {
+                annotation.id = SampleTextInfo.INVALID_SAMPLE_TEXT_ID;
+                annotation.firstSampleHistoryId = sample.historyId;
+                annotation.lastSampleHistoryId
+                        = SampleHistoryInfo.STILL_ACTIVE;
+                if (annotation.originalSampleHistoryId
+                        == SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID) {
+                    annotation.originalSampleHistoryId = sample.historyId;
+                }
+                annotation.sampleId = sample.id;
+                annotation.dbStore(annotationRows.newRow());
+            }
+            for (SampleAccessInfo access : sample.accessInfo) {
+                access.id = SampleAccessInfo.INVALID_SAMPLE_ACCESS_ID;
+                access.sampleId = sample.id;
+                access.dbStore(accessRows.newRow());
+            }
+
+            // Index the sample.
+            for (int type : SEARCH_ATOMS_FORMULA_TYPES) {
+                for (Map.Entry<Element, BigDecimal> e
+                        : computeSearchAtoms(sample, type).entrySet()) {
+                    ResultSet rs = atomRows.newRow();
+
+                    rs.updateInt("sample_id", sample.id);
+                    rs.updateString("element", e.getKey().getSymbol());
+                    rs.updateInt("type", type);
+                    rs.updateBigDecimal("count", e.getValue());
+                }
+            }
+
+            SearchUnitCellsInfo suci
+                    = SampleMathBL.generateSearchUnitCellsInfo(sample);
+
+            if (suci != null) {
+                suci.dbStore(unitCellRows.newRow());
+            }
+
+            String canonicalSymbol = computeCanonicalSpaceGroup(sample);
+
+            if (canonicalSymbol != null) {
+                ResultSet rs = spaceGroupRows.newRow();
+
+                rs.updateInt("sample_id", sample.id);
+                rs.updateString("canonicalsymbol", canonicalSymbol);
+            }
+        }
+        sampleRows.flush();
+        dataRows.flush();
+        attributeRows.flush();
+        annotationRows.flush();
+        accessRows.flush();
+        atomRows.flush();
+        unitCellRows.flush();
+        spaceGroupRows.flush();
+
+        return written;
+    }
+
     /**
      * Internal function that deactivates portions of an existing sample,
      * usually performed just before new sample metadata is written. Deactivates
@@ -3585,29 +4287,39 @@ public class SampleManager extends UnicastRemoteObject implements
      */
     private static void dbEraseSample(Connection conn, int sampleId)
             throws SQLException {
+        dbEraseSamples(conn, new int[] { sampleId });
+    }
+
+    /**
+     * Internal function that deletes all rows that pertain to each of several
+     * samples, as {@code dbEraseSample()} does for one, using a single
+     * statement per table.
+     * 
+     * @throws SQLException on database error.
+     */
+    private static void dbEraseSamples(Connection conn, int sampleIds[])
+            throws SQLException {
+        StringBuilder ids = new StringBuilder("(");
+
+        for (int i = 0; i < sampleIds.length; i++) {
+            if (i > 0) {
+                ids.append(", ");
+            }
+            ids.append(sampleIds[i]);
+        }
+        ids.append(");");
+
         Statement cmd = conn.createStatement();
 
         try {
-            cmd.executeUpdate("DELETE FROM samples WHERE id="
-		    + sampleId + ";");
-            cmd.executeUpdate("DELETE FROM sampleHistory WHERE sample_id="
-                    + sampleId + ";");
-            cmd.executeUpdate("DELETE FROM sampleData WHERE sample_id="
-                    + sampleId + ";");
-            cmd.executeUpdate("DELETE FROM sampleAttributes WHERE sample_id="
-                    + sampleId + ";");
-            cmd.executeUpdate("DELETE FROM sampleAnnotations WHERE sample_id="
-                    + sampleId + ";");
-            cmd.executeUpdate("DELETE FROM sampleAcls WHERE sample_id="
-                    + sampleId + ";");
-            cmd.executeUpdate("DELETE FROM searchAtoms WHERE sample_id="
-                    + sampleId + ";");
-            cmd.executeUpdate("DELETE FROM searchLocalHoldings"
-		    + " WHERE sample_id=" + sampleId + ";");
-            cmd.executeUpdate("DELETE FROM searchSpaceGroups WHERE sample_id="
-                    + sampleId + ";");
-            cmd.executeUpdate("DELETE FROM searchUnitCells WHERE sample_id="
-                    + sampleId + ";");
+            cmd.executeUpdate("DELETE FROM samples WHERE id IN " + ids);
+            for (String table : new String[] { "sampleHistory", "sampleData",
+                    "sampleAttributes", "sampleAnnotations", "sampleAcls",
+                    "searchAtoms", "searchLocalHoldings", "searchSpaceGroups",
+                    "searchUnitCells" }) {
+                cmd.executeUpdate("DELETE FROM " + table
+                        + " WHERE sample_id IN " + ids);
+            }
         } finally {
             cmd.close();
         }
@@ -3766,7 +4478,8 @@ public class SampleManager extends UnicastRemoteObject implements
      */
     private static CachedSearchResults dbDoSearch(Connection conn,
             int searchId, SearchParams search, SampleStats stats,
-            Collection<Integer> localLabs) throws SQLException {
+            Collection<Integer> localLabs, UnitCellIndex unitCellIndex)
+            throws SQLException {
         CachedSearchResults results = new CachedSearchResults();
 
         PerfTimer perfTimer = new PerfTimer("dbDoSearch()");
@@ -3787,7 +4500,7 @@ public class SampleManager extends UnicastRemoteObject implements
          * SearchConstraints
          */
         SearchConstraintExtraInfo scei = new SearchConstraintExtraInfo(
-                localLabs);
+                localLabs, unitCellIndex);
 
         /*
          * Generate the WHERE clause and populate the parameters collection.
@@ -3860,13 +4573,12 @@ public class SampleManager extends UnicastRemoteObject implements
 
             // Build our results object
             while (rs.next()) {
-                results.sampleIdList.add(Integer.valueOf(rs.getInt("id")));
-                results.sampleHistoryList.add(
-                        Integer.valueOf(rs.getInt("current_sampleHistory_id")));
+                results.add(rs.getInt(1), rs.getInt(2));
             }
         } finally {
             cmd.close();
         }
+        results.trimToSize();
 
         results.searchId = searchId;
         return results;
@@ -4190,14 +4902,15 @@ public class SampleManager extends UnicastRemoteObject implements
     }
 
     /**
-     * Helper function for updateSearchAtoms that does the actual updating given
-     * a empirical formula type to do the update for.
+     * Helper function for updateSearchAtomsByType() and dbWriteSamplesInBulk()
+     * that determines the rows the searchAtoms table should hold for a sample
+     * and empirical formula type.
      * 
-     * @throws SQLException on database error.
+     * @return a map from each element to its count, possibly empty and
+     *         possibly immutable.
      */
-    private static void updateSearchAtomsByType(Connection conn,
-            SampleInfo sample, int type) throws SQLException {
-        List<Integer> searchAtomsIdsToDelete = new ArrayList<Integer>();
+    private static Map<Element, BigDecimal> computeSearchAtoms(
+            SampleInfo sample, int type) {
         Map<Element, BigDecimal> desiredSearchAtoms;
         SampleAttributeInfo formulaAttribute
                 = sample.getFirstAttributeOfType(type);
@@ -4232,6 +4945,21 @@ public class SampleManager extends UnicastRemoteObject implements
             desiredSearchAtoms = Collections.<Element, BigDecimal> emptyMap();
         }
 
+        return desiredSearchAtoms;
+    }
+
+    /**
+     * Helper function for updateSearchAtoms that does the actual updating given
+     * a empirical formula type to do the update for.
+     * 
+     * @throws SQLException on database error.
+     */
+    private static void updateSearchAtomsByType(Connection conn,
+            SampleInfo sample, int type) throws SQLException {
+        List<Integer> searchAtomsIdsToDelete = new ArrayList<Integer>();
+        Map<Element, BigDecimal> desiredSearchAtoms
+                = computeSearchAtoms(sample, type);
+
         // Read all the existing rows in searchAtoms associated with this
         // sample.
         String sql = "SELECT * FROM searchAtoms WHERE sample_id=? AND type=?;";
@@ -4325,13 +5053,9 @@ public class SampleManager extends UnicastRemoteObject implements
      */
     private static void updateSearchAtoms(Connection conn, SampleInfo sample)
             throws SQLException {
-        updateSearchAtomsByType(conn, sample, SampleTextBL.EMPIRICAL_FORMULA);
-        updateSearchAtomsByType(conn, sample,
-                SampleTextBL.EMPIRICAL_FORMULA_DERIVED);
-        updateSearchAtomsByType(conn, sample,
-                SampleTextBL.EMPIRICAL_FORMULA_SINGLE_ION);
-        updateSearchAtomsByType(conn, sample,
-                SampleTextBL.EMPIRICAL_FORMULA_LESS_SOLVENT);
+        for (int type : SEARCH_ATOMS_FORMULA_TYPES) {
+            updateSearchAtomsByType(conn, sample, type);
+        }
     }
 
     /**
@@ -4409,18 +5133,7 @@ public class SampleManager extends UnicastRemoteObject implements
             SampleInfo sample) throws SQLException {
         // Do some mathematical calculations on the sample now in order to make
         // searching faster later.
-        String canonicalSymbol = null;
-
-        if (sample.dataInfo.spgp != null) {
-            try {
-                canonicalSymbol = SpaceGroupSymbolBL.createCanonicalSymbol(
-                        SpaceGroupSymbolBL.createFormattedSymbol(
-                                sample.dataInfo.spgp));
-            } catch (InvalidDataException ex) {
-                // The sample's space group is not valid. We cannot index it.
-                // Drop through...
-            }
-        }
+        String canonicalSymbol = computeCanonicalSpaceGroup(sample);
 
         // Access the existing database row for this sample if one exists.
         String sql = "SELECT * FROM searchSpaceGroups WHERE sample_id="
@@ -4462,6 +5175,31 @@ public class SampleManager extends UnicastRemoteObject implements
         }
     }
 
+    /**
+     * Helper function for updateSearchSpaceGroups() and dbWriteSamplesInBulk()
+     * that determines the canonical space group symbol under which a sample
+     * is indexed in the {@code searchSpaceGroups} table.
+     * 
+     * @return the canonical symbol, or null if the sample has no valid space
+     *         group.
+     */
+    private static String computeCanonicalSpaceGroup(SampleInfo sample) {
+        String canonicalSymbol = null;
+
+        if (sample.dataInfo.spgp != null) {
+            try {
+                canonicalSymbol = SpaceGroupSymbolBL.createCanonicalSymbol(
+                        SpaceGroupSymbolBL.createFormattedSymbol(
+                                sample.dataInfo.spgp));
+            } catch (InvalidDataException ex) {
+                // The sample's space group is not valid. We cannot index it.
+                // Drop through...
+            }
+        }
+
+        return canonicalSymbol;
+    }
+
     /**
      * Fetches potentially many SampleInfo's into a single array. The
      * SampleInfo's are read from the cache where possible, then the cache
@@ -4575,23 +5313,14 @@ public class SampleManager extends UnicastRemoteObject implements
             this.lockAgent.registerLock(lock);
             lock.promoteFrom(oldLock);
 
-            // Do the database fetch. Select the best (fastest) algorithm for
-            // the fetch based on a configured threshold sample count.
+            // Do the database fetch, in batches of a configured size.
             SampleInfo samplesFromDb[];
             try {
-                int threshold = Integer.parseInt(
-                        properties.getProperty("SamBulkFetchThreshold"));
-                if (sampleIdsFromDb.length < threshold) {
-                    // This algorithm is faster for small numbers of samples.
-                    samplesFromDb = dbFetchMultipleSamplesWithOr(
-                            lock.getConnection(), stats, sampleIdsFromDb,
-                            sampleHistoryIdsFromDb, alwaysGetMostCurrent);
-                } else {
-                    // This algorithm is faster for large numbers of samples.
-                    samplesFromDb = dbFetchMultipleSamplesWithTempTable(
-                            lock.getConnection(), stats, sampleIdsFromDb,
-                            sampleHistoryIdsFromDb, alwaysGetMostCurrent);
-                }
+                int batchSize = Integer.parseInt(
+                        properties.getProperty("SamBulkFetchBatchSize"));
+                samplesFromDb = dbFetchMultipleSamples(lock.getConnection(),
+                        stats, sampleIdsFromDb, sampleHistoryIdsFromDb,
+                        alwaysGetMostCurrent, batchSize);
             } catch (SQLException ex) {
                 throw new OperationFailedException(ex);
             }
@@ -4632,39 +5361,23 @@ public class SampleManager extends UnicastRemoteObject implements
     }
 
     /**
-     * Similar to the function above, but translates the supplied collections
-     * for {@code sampleIds} and {@code sampleHistoryIds} to
-     * arrays prior to invoking it. Both collections should contain Integer
-     * objects.
-     * 
-     * @throws DeadlockDetectedException
-     * @throws InconsistentDbException
-     * @throws OperationFailedException
+     * The sample metadata tables, other than {@code samples} and
+     * {@code sampleAcls}, whose rows are versioned by means of
+     * {@code first_sampleHistory_id} and {@code last_sampleHistory_id}
+     * columns.
      */
-    private SampleInfo[] getMultipleSampleInfo(Collection<Integer> sampleIds,
-            Collection<Integer> sampleHistoryIds, AbstractLock existingLock,
-            boolean preserveOrder, boolean alwaysGetMostCurrent)
-            throws DeadlockDetectedException, InconsistentDbException,
-            OperationFailedException {
-        int sampleIdsArray[] = new int[sampleIds.size()];
-        int sampleHistoryIdsArray[] = null;
-        int i = 0;
-        
-        for (Integer id : sampleIds) {
-            sampleIdsArray[i++] = id.intValue();
-        }
-
-        if (sampleHistoryIds != null) {
-            sampleHistoryIdsArray = new int[sampleHistoryIds.size()];
-            i = 0;
-            for (Integer histId : sampleHistoryIds) {
-                sampleHistoryIdsArray[i++] = histId.intValue();
-            }
-        }
+    private static final String VERSIONED_SAMPLE_TABLES[] = { "sampleData",
+            "sampleAttributes", "sampleAnnotations" };
 
-        return getMultipleSampleInfo(sampleIdsArray, sampleHistoryIdsArray,
-                existingLock, preserveOrder, alwaysGetMostCurrent);
-    }
+    /**
+     * The types of empirical formula attribute by which samples are indexed in
+     * the {@code searchAtoms} table.
+     */
+    private static final int SEARCH_ATOMS_FORMULA_TYPES[] = {
+            SampleTextBL.EMPIRICAL_FORMULA,
+            SampleTextBL.EMPIRICAL_FORMULA_DERIVED,
+            SampleTextBL.EMPIRICAL_FORMULA_SINGLE_ION,
+            SampleTextBL.EMPIRICAL_FORMULA_LESS_SOLVENT };
 
     /**
      * Internal function used to fetch and populate multiple SampleInfo objects
@@ -4673,11 +5386,17 @@ public class SampleManager extends UnicastRemoteObject implements
      * obtained a lock that permits full read access to sample metadata tables
      * for the samples specified by {@code origSampleId}.
      * <p>
-     * The current implementation fetches samples from the database using a big
-     * WHERE clause that enumerates the sampleId's and sampleHistoryId's to be
-     * fetched. It is efficient for only small numbers of samples because as
-     * query size increases, MySQL's response time tends to grow quadratically.
-     * 
+     * The current implementation works through the requested samples in
+     * order of sample id, in batches of at most {@code batchSize}. For each
+     * batch it runs one query per sample metadata table, each of which selects
+     * the batch's rows by means of an {@code IN} list of statement
+     * parameters. Because every batch but the last has the same size (and the
+     * last is padded to that size), the same {@code PreparedStatement}s serve
+     * every batch. Each query returns its rows in order of sample id, and
+     * those rows are attached to the batch's {@code SampleInfo}s by a single
+     * merging pass. Where old versions of samples are requested, rows that
+     * belong to other versions are filtered out in that same pass.
+     *
      * @return an array of {@code SampleInfo} objects fetched from the
      *         database. The number of samples in the array is the same as the
      *         number of sample id's specified in {@code origSampleId};
@@ -4705,6 +5424,8 @@ public class SampleManager extends UnicastRemoteObject implements
      *        behaves normally and the {@code isMoreRecentThanSearch}
      *        flag on {@code SampleInfo}'s in the returned array is
      *        never set.
+     * @param batchSize the maximum number of samples to be fetched by each
+     *        query; must be positive.
      * @throws IllegalArgumentException if the lengths of
      *         {@code origSampleId} and {@code origSampleHistoryId}
      *         are not equal.
@@ -4716,11 +5437,12 @@ public class SampleManager extends UnicastRemoteObject implements
      *         found in the database.
      * @throws SQLException on database error.
      */
-    private static SampleInfo[] dbFetchMultipleSamplesWithOr(Connection conn,
+    private static SampleInfo[] dbFetchMultipleSamples(Connection conn,
             SampleStats stats, int[] origSampleId, int origSampleHistoryId[],
-            boolean getMostCurrent) throws InconsistentDbException,
-            ResourceNotFoundException, SQLException {
-        PerfTimer perfTimer = new PerfTimer("dbFetchMultipleSamplesWithOr()");
+            boolean getMostCurrent, int batchSize)
+            throws InconsistentDbException, ResourceNotFoundException,
+            SQLException {
+        PerfTimer perfTimer = new PerfTimer("dbFetchMultipleSamples()");
 
         // Basic validation
         if (origSampleId.length != origSampleHistoryId.length) {
@@ -4743,349 +5465,174 @@ public class SampleManager extends UnicastRemoteObject implements
             sampleHistoryId[pos] = origSampleHistoryId[i];
         }
 
-        // Fetch rows from the 'samples' table and use them to create some
-        // SampleInfo objects.
-        Statement cmd = conn.createStatement();
+        /*
+         * Prepare the statements that every batch will need. Statements that
+         * only some batches need are prepared when first needed.
+         */
+        int paramCount = Math.min(batchSize, sampleId.length);
+        String inList = generateParameterList(paramCount);
+        SampleInfo samples[] = new SampleInfo[sampleId.length];
+        PreparedStatement samplesCmd = null;
+        PreparedStatement historyCmd = null;
+        PreparedStatement aclsCmd = null;
+        PreparedStatement currentCmds[]
+                = new PreparedStatement[VERSIONED_SAMPLE_TABLES.length];
+        PreparedStatement versionCmds[]
+                = new PreparedStatement[VERSIONED_SAMPLE_TABLES.length];
 
         try {
-            SampleInfo samples[] = dbFetchMultipleSamplesHelperSamples(
-                    sampleId, sampleHistoryId, getMostCurrent, perfTimer, cmd,
-                    "SELECT * FROM samples WHERE "
-                            + generateWhereClause("id", sampleId)
-                            + " ORDER BY id;");
-
-            // Build a list of absolute sampleHistoryId's to be fetched,
-            // resolving
-            // any indefinite history id's to definite ones at this time. Also
-            // discover simultaneously whether we should expect to fetch
-            // non-current (i.e. old) versions of any sample.
-            boolean fetchingOldVersionOfAnySample = false;
-            int sampleHistoryIdToFetch[] = new int[origSampleId.length];
-            for (int i = 0; i < sampleHistoryId.length; i++) {
-                if (getMostCurrent || (sampleHistoryId[i]
-                        == SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID)) {
-                    sampleHistoryIdToFetch[i] = samples[i].mostRecentHistoryId;
-                } else {
-                    sampleHistoryIdToFetch[i] = sampleHistoryId[i];
-                    if (sampleHistoryIdToFetch[i]
-                            != samples[i].mostRecentHistoryId) {
-                        fetchingOldVersionOfAnySample = true;
+            samplesCmd = conn.prepareStatement("SELECT * FROM samples"
+                    + " WHERE id IN " + inList + " ORDER BY id;");
+            aclsCmd = conn.prepareStatement("SELECT * FROM sampleAcls"
+                    + " WHERE sample_id IN " + inList + " ORDER BY sample_id;");
+
+            for (int from = 0; from < sampleId.length; from += paramCount) {
+                int to = Math.min(from + paramCount, sampleId.length);
+
+                // Fetch rows from the 'samples' table and use them to create
+                // this batch's SampleInfo objects.
+                setParameters(samplesCmd, 1, sampleId, from, to, paramCount);
+                dbFetchMultipleSamplesHelperSamples(samples, from, to,
+                        sampleId, sampleHistoryId, getMostCurrent, perfTimer,
+                        samplesCmd);
+
+                // Resolve any indefinite history id's to definite ones and
+                // discover whether we should expect to fetch non-current (i.e.
+                // old) versions of any sample in this batch.
+                boolean fetchingOldVersionOfAnySample = false;
+                int minHistoryId = Integer.MAX_VALUE;
+                int maxHistoryId = Integer.MIN_VALUE;
+                int sampleHistoryIdToFetch[] = new int[to - from];
+
+                for (int i = from; i < to; i++) {
+                    int historyId;
+
+                    if (getMostCurrent || (sampleHistoryId[i]
+                            == SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID)) {
+                        historyId = samples[i].mostRecentHistoryId;
+                    } else {
+                        historyId = sampleHistoryId[i];
+                        if (historyId != samples[i].mostRecentHistoryId) {
+                            fetchingOldVersionOfAnySample = true;
+                        }
                     }
+                    sampleHistoryIdToFetch[i - from] = historyId;
+                    minHistoryId = Math.min(minHistoryId, historyId);
+                    maxHistoryId = Math.max(maxHistoryId, historyId);
                 }
-            }
-
-            /*
-             * Fetch rows from the 'sampleHistory' table and use them to update
-             * history-related fields in our SampleInfo's. Possibly skip this
-             * step if there are no non-current (i.e. old) versions of samples
-             * being fetched.
-             */
-            if (fetchingOldVersionOfAnySample) {
-                dbFetchMultipleSamplesHelperSampleHistory(samples, perfTimer,
-                        cmd, "SELECT id, sample_id, newStatus, date"
-                                + " FROM sampleHistory WHERE "
-                                + generateWhereClause("id",
-                                        sampleHistoryIdToFetch)
-                                + " ORDER BY sample_id;");
-            }
-
-            /*
-             * Fetch rows from the other four sample metadata tables. Use the
-             * rows returned to append various records to our SampleInfos.
-             */
-            dbFetchMultipleSamplesHelperGeneral("sampleAcls", samples,
-                    perfTimer, cmd, "SELECT * FROM sampleAcls WHERE "
-                            + generateWhereClause("sample_id", sampleId)
-                            + " ORDER BY sample_id;");
-            String bigWhereClause = getMostCurrent
-                    ? (" WHERE last_sampleHistory_id IS NULL AND ("
-                            + generateWhereClause("sample_id", sampleId) + ")")
-                    : (" WHERE " + generateWhereClause("sample_id", sampleId,
-                            "first_sampleHistory_id", "last_sampleHistory_id",
-                            sampleHistoryId));
-            dbFetchMultipleSamplesHelperGeneral("sampleData", samples,
-                    perfTimer, cmd, "SELECT * from sampleData "
-                            + bigWhereClause + " ORDER BY sample_id;");
-            dbFetchMultipleSamplesHelperGeneral("sampleAttributes", samples,
-                    perfTimer, cmd, "SELECT * from sampleAttributes "
-                            + bigWhereClause + " ORDER BY sample_id;");
-            dbFetchMultipleSamplesHelperGeneral("sampleAnnotations", samples,
-                    perfTimer, cmd, "SELECT * from sampleAnnotations "
-                            + bigWhereClause + " ORDER BY sample_id;");
-
-            return samples;
-        } finally {
-            // Clean up.
-            cmd.close();
-            stats.record(perfTimer);
-        }
-    }
-
-    /**
-     * <p>
-     * Internal function used to fetch and populate multiple SampleInfo objects
-     * from the database. This method does not interface with the cache, but
-     * should be called in case of a cache miss. The caller must already have
-     * obtained a lock that permits full read access to sample metadata tables
-     * for the samples specified by {@code origSampleId}.
-     * </p><p>
-     * The current implementation creates a temporary database table called
-     * 'tmp' that holds the sampleId and sampleHistoryId values of samples to be
-     * fetched. It is efficient only for large numbers of samples due to the
-     * overhead of creating the temporary table.
-     * </p>
-     * 
-     * @return an array of {@code SampleInfo} objects fetched from the
-     *         database. The number of samples in the array is the same as the
-     *         number of sample id's specified in {@code origSampleId};
-     *         however, the returned samples are sorted in order of sample id.
-     * @param conn a database {@code Connection} to use.
-     * @param stats a {@code SampleStats} object to which performance
-     *        data from this method will be logged.
-     * @param origSampleId an array of sample id's describing which samples out
-     *        to be fetched. This array need not be sorted.
-     * @param origSampleHistoryId an array of sample history id's, corresponding
-     *        to {@code origSampleId}, that describes which version of
-     *        each sample is to be fetched. The special value
-     *        {@code SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID}
-     *        indicates that the most recent version of the sample available
-     *        should be fetched.
-     * @param getMostCurrent if true, then the most recent version of each
-     *        sample is retured regardless of the corresponding value specified
-     *        in {@code origSampleHistoryId}. Then, if the fetched
-     *        sample's version number differes from the one specified by the
-     *        caller (and the caller specified some version other than
-     *        {@code INVALID_SAMPLE_HISTORY_ID}, the flag
-     *        {@code isMoreRecentThanSearch} inside the corresponding
-     *        {@code SampleInfo} in the returned array is set to
-     *        {@code true}. If this argument is false, the function
-     *        behaves normally and the {@code isMoreRecentThanSearch}
-     *        flag on {@code SampleInfo}'s in the returned array is
-     *        never set.
-     * @throws IllegalArgumentException if the lengths of
-     *         {@code origSampleId} and {@code origSampleHistoryId}
-     *         are not equal.
-     * @throws InconsistentDbException if an inconsistency within the samples'
-     *         metadata is detected.
-     * @throws ResourceNotFoundException with a nested {@code SampleInfo}
-     *         object if a sample identified by a pair of {@code sampleIds}
-     *         and {@code sampleHistoryIds} element values could not be
-     *         found in the database.
-     * @throws SQLException on database error.
-     */
-    private static SampleInfo[] dbFetchMultipleSamplesWithTempTable(
-            Connection conn, SampleStats stats, int[] origSampleId,
-            int origSampleHistoryId[], boolean getMostCurrent)
-            throws InconsistentDbException, ResourceNotFoundException,
-            SQLException {
-        PerfTimer perfTimer = new PerfTimer(
-                "dbFetchMultipleSamplesWithTempTable");
 
-        // Sanity check.
-        if (origSampleId.length != origSampleHistoryId.length) {
-            // The arrays don't have equal size
-            throw new IllegalArgumentException();
-        }
-
-        // Return early if there's nothing to fetch.
-        if (origSampleId.length == 0) {
-            return new SampleInfo[0];
-        }
-
-        // Build a sorted table of sampleIds and sampleHistoryIds.
-        int sampleId[] = new int[origSampleId.length];
-        int sampleHistoryId[] = new int[origSampleId.length];
-        
-        System.arraycopy(origSampleId, 0, sampleId, 0, origSampleId.length);
-        Arrays.sort(sampleId);
-        for (int i = 0; i < origSampleId.length; i++) {
-            int pos = Arrays.binarySearch(sampleId, origSampleId[i]);
-            
-            sampleHistoryId[pos] = origSampleHistoryId[i];
-        }
-
-        // Create a temporary table that has the sampleIds we want to fetch
-        // and the most recent sampleHistoryId's available for those samples.
-        Statement cmd = conn.createStatement();
-
-        try {
-            String sql = "CREATE TEMPORARY TABLE tmp"
-                    + " (PRIMARY KEY(fetchSampleId))"
-                    + " SELECT id AS fetchSampleId,"
-                    + "   current_sampleHistory_id AS fetchSampleHistoryId"
-                    + " FROM samples" + " WHERE "
-                    + generateWhereClause("id", sampleId) + " ORDER BY id;";
-            perfTimer.newChild("create temporary table");
-            cmd.execute(sql);
-            perfTimer.stopChild();
+                /*
+                 * Fetch rows from the 'sampleHistory' table and use them to
+                 * update history-related fields in our SampleInfo's. Skip this
+                 * step if there are no non-current (i.e. old) versions of
+                 * samples being fetched.
+                 */
+                if (fetchingOldVersionOfAnySample) {
+                    if (historyCmd == null) {
+                        historyCmd = conn.prepareStatement(
+                                "SELECT id, sample_id, newStatus"
+                                        + " FROM sampleHistory WHERE id IN "
+                                        + inList + " ORDER BY sample_id;");
+                    }
+                    setParameters(historyCmd, 1, sampleHistoryIdToFetch, 0,
+                            to - from, paramCount);
+                    dbFetchMultipleSamplesHelperSampleHistory(samples, from,
+                            to, perfTimer, historyCmd);
+                }
 
-            /*
-             * Possibly alter some sampleHistoryId values in the temporary
-             * table, depending on exactly which sample versions the caller
-             * asked us to fetch.
-             */
-            boolean fetchingOldVersionOfAnySample = false;
-            if (!getMostCurrent) {
-                Statement cmd2 = conn.createStatement(
-                        ResultSet.TYPE_SCROLL_INSENSITIVE,
-                        ResultSet.CONCUR_UPDATABLE);
-                try {
-                    String sql2 = "SELECT * FROM tmp;";
-                    perfTimer.newChild("fixup temporary table");
-                    ResultSet rs2 = cmd2.executeQuery(sql2);
-                    perfTimer.stopChild();
-                    int arrayPos = 0;
-
-                    while (rs2.next()) {
-                        if (sampleId[arrayPos] != rs2.getInt("fetchSampleId")) {
-                            // Expected to be on a different sample.
-                            throw new InconsistentDbException();
+                // Fetch rows from the four other sample metadata tables. Use
+                // the rows returned to append various records to our
+                // SampleInfos.
+                setParameters(aclsCmd, 1, sampleId, from, to, paramCount);
+                dbFetchMultipleSamplesHelperGeneral("sampleAcls", samples,
+                        from, to, false, perfTimer, aclsCmd);
+                for (int t = 0; t < VERSIONED_SAMPLE_TABLES.length; t++) {
+                    String tableName = VERSIONED_SAMPLE_TABLES[t];
+                    PreparedStatement cmd;
+
+                    if (!fetchingOldVersionOfAnySample) {
+                        if (currentCmds[t] == null) {
+                            currentCmds[t] = conn.prepareStatement("SELECT *"
+                                    + " FROM " + tableName
+                                    + " WHERE sample_id IN " + inList
+                                    + " AND last_sampleHistory_id IS NULL"
+                                    + " ORDER BY sample_id;");
                         }
-                        if ((sampleHistoryId[arrayPos]
-                                != SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID)
-                                && (rs2.getInt("fetchSampleHistoryId")
-                                        != sampleHistoryId[arrayPos])) {
-                            /*
-                             * Caller specifically asked for an older version of
-                             * this sample; not the most current. Update the
-                             * temporary table to indicate the requested
-                             * version.
-                             */
-                            rs2.updateInt("fetchSampleHistoryId",
-                                    sampleHistoryId[arrayPos]);
-                            rs2.updateRow();
-                            fetchingOldVersionOfAnySample = true;
+                        cmd = currentCmds[t];
+                        setParameters(cmd, 1, sampleId, from, to, paramCount);
+                    } else {
+                        /*
+                         * Select the rows of every version within the range
+                         * of those requested; the helper discards rows of
+                         * versions other than the one requested for each
+                         * sample.
+                         */
+                        if (versionCmds[t] == null) {
+                            versionCmds[t] = conn.prepareStatement("SELECT *"
+                                    + " FROM " + tableName
+                                    + " WHERE sample_id IN " + inList
+                                    + " AND first_sampleHistory_id <= ?"
+                                    + " AND (last_sampleHistory_id > ?"
+                                    + "   OR last_sampleHistory_id IS NULL)"
+                                    + " ORDER BY sample_id;");
                         }
-                        arrayPos++;
+                        cmd = versionCmds[t];
+                        setParameters(cmd, 1, sampleId, from, to, paramCount);
+                        cmd.setInt(paramCount + 1, maxHistoryId);
+                        cmd.setInt(paramCount + 2, minHistoryId);
                     }
-                    rs2.close();
-                } finally {
-                    cmd2.close();
+                    dbFetchMultipleSamplesHelperGeneral(tableName, samples,
+                            from, to, fetchingOldVersionOfAnySample,
+                            perfTimer, cmd);
                 }
-                
-                /*
-                 * The temporary table now describes precisely the
-                 * sample/versions we intend to fetch rows and create SampleInfo
-                 * objects for.
-                 */
-            }
-
-            // Fetch rows from the 'samples' table and use them to construct
-            // SampleInfo objects.
-            SampleInfo samples[] = dbFetchMultipleSamplesHelperSamples(
-                    sampleId,
-                    sampleHistoryId,
-                    getMostCurrent,
-                    perfTimer,
-                    cmd,
-                    "SELECT samples.* FROM tmp"
-                            + " INNER JOIN samples ON tmp.fetchSampleId=samples.id;");
-
-            // Fetch rows from the 'sampleHistory' table and use them to
-            // overwrite
-            // values on our SampleInfo objects. We can skip this step if no
-            // old version of any sample is being fetched.
-            if (fetchingOldVersionOfAnySample) {
-                dbFetchMultipleSamplesHelperSampleHistory(
-                        samples,
-                        perfTimer,
-                        cmd,
-                        "SELECT id, sample_id, newStatus"
-                                + " FROM tmp INNER JOIN sampleHistory"
-                                + "   ON tmp.fetchSampleHistoryId=sampleHistory.id"
-                                + " ORDER BY sample_id;");
             }
 
-            // Fetch rows from the other four sample metadata tables. Use the
-            // rows
-            // returned to append various records to our SampleInfo's.
-            dbFetchMultipleSamplesHelperGeneral("sampleAcls", samples,
-                    perfTimer, cmd, "SELECT sampleAcls.*"
-                            + " FROM tmp INNER JOIN sampleAcls"
-                            + "   ON tmp.fetchSampleId=sampleAcls.sample_id"
-                            + " ORDER BY sample_id;");
-            dbFetchMultipleSamplesHelperGeneral(
-                    "sampleData",
-                    samples,
-                    perfTimer,
-                    cmd,
-                    "SELECT sampleData.*"
-                            + " FROM tmp"
-                            + " INNER JOIN sampleData"
-                            + "   ON fetchSampleId=sample_id"
-                            + "       AND fetchSampleHistoryId >= first_sampleHistory_id"
-                            + "       AND (fetchSampleHistoryId < last_sampleHistory_id"
-                            + "            OR last_sampleHistory_id IS NULL)"
-                            + " ORDER BY sample_id;");
-            dbFetchMultipleSamplesHelperGeneral(
-                    "sampleAttributes",
-                    samples,
-                    perfTimer,
-                    cmd,
-                    "SELECT sampleAttributes.*"
-                            + " FROM tmp"
-                            + " INNER JOIN sampleAttributes"
-                            + "   ON fetchSampleId=sample_id"
-                            + "       AND fetchSampleHistoryId >= first_sampleHistory_id"
-                            + "       AND (fetchSampleHistoryId < last_sampleHistory_id"
-                            + "            OR last_sampleHistory_id IS NULL)"
-                            + " ORDER BY sample_id;");
-            dbFetchMultipleSamplesHelperGeneral(
-                    "sampleAnnotations",
-                    samples,
-                    perfTimer,
-                    cmd,
-                    "SELECT sampleAnnotations.*"
-                            + " FROM tmp"
-                            + " INNER JOIN sampleAnnotations"
-                            + "   ON fetchSampleId=sample_id"
-                            + "       AND fetchSampleHistoryId >= first_sampleHistory_id"
-                            + "       AND (fetchSampleHistoryId < last_sampleHistory_id"
-                            + "            OR last_sampleHistory_id IS NULL)"
-                            + " ORDER BY sample_id;");
-
-            // Delete the temporary table
-            perfTimer.newChild("drop table");
-            cmd.execute("DROP TABLE tmp;");
-            perfTimer.stopChild();
-
             return samples;
         } finally {
             // Clean up.
-            cmd.close();
+            closeStatement(samplesCmd);
+            closeStatement(historyCmd);
+            closeStatement(aclsCmd);
+            for (int t = 0; t < VERSIONED_SAMPLE_TABLES.length; t++) {
+                closeStatement(currentCmds[t]);
+                closeStatement(versionCmds[t]);
+            }
             stats.record(perfTimer);
         }
     }
 
     /**
      * Helper function useful when doing a bulk-fetch of samples. Executes a
-     * caller-specified database query on the 'samples' table, transforms the
-     * matching rows into {@code SampleInfo} objects, and returns them.
-     * The caller specifies the sample id's that he expects the query to fetch;
-     * an exception is thrown if any of them could not be. The caller also
-     * specifies the sample history id's of the samples he intends to fetch
-     * subsequently; this knowledge can optionally be used to set the
-     * {@code isMoreRecentThanSearch} flag on returned
+     * caller-prepared database query on the 'samples' table, transforms the
+     * matching rows into {@code SampleInfo} objects, and stores them in a
+     * range of the caller's array. The caller specifies the sample id's that
+     * he expects the query to fetch; an exception is thrown if any of them
+     * could not be. The caller also specifies the sample history id's of the
+     * samples he intends to fetch subsequently; this knowledge can optionally
+     * be used to set the {@code isMoreRecentThanSearch} flag on the new
      * {@code SampleInfo}'s.
-     * 
-     * @return an array of {@code SampleInfo} objects representing data
-     *         fetched from the database. Note that these
-     *         {@code SampleInfo}'s are "incomplete" in the sense that
-     *         only the 'samples' table has been fetched, but several other
-     *         database tables contain sample-related metadata also. Callers are
-     *         expected to invoke other "helper" functions that will modify the
-     *         {@code SampleInfo}'s returned by this method in-place in
-     *         order to achieve a "complete" SampleInfo. The
-     *         {@code isMoreRecentThanSearch} field on returned
-     *         {@code SampleInfo's} may be set to true for some samples
-     *         if {@code setIsMoreRecentThanSearch} is true. The
-     *         {@code historyId} and {@code status} fields on
-     *         returned {@code SampleInfo's} are set also, but their
-     *         values are "correct" only if the caller intended to fetch the
-     *         most recent version of that particular sample. If the caller
-     *         intended to fetch a non-current (i.e. old) version of the sample,
-     *         he should overwrite these two fields with values read from the
-     *         'sampleHistory' table.
+     * <p>
+     * Note that these {@code SampleInfo}'s are "incomplete" in the sense that
+     * only the 'samples' table has been fetched, but several other database
+     * tables contain sample-related metadata also. Callers are expected to
+     * invoke other "helper" functions that will modify the
+     * {@code SampleInfo}'s in-place in order to achieve a "complete"
+     * SampleInfo. The {@code historyId} and {@code status} fields on the new
+     * {@code SampleInfo's} are set also, but their values are "correct" only
+     * if the caller intended to fetch the most recent version of that
+     * particular sample. If the caller intended to fetch a non-current (i.e.
+     * old) version of the sample, he should overwrite these two fields with
+     * values read from the 'sampleHistory' table.
+     *
+     * @param samples an array to receive the new {@code SampleInfo} objects,
+     *        at positions {@code from} (inclusive) through {@code to}
+     *        (exclusive).
+     * @param from the first position of {@code samples},
+     *        {@code sampleIds}, and {@code sampleHistoryIds} to be
+     *        considered.
+     * @param to the position after the last position of {@code samples},
+     *        {@code sampleIds}, and {@code sampleHistoryIds} to be
+     *        considered.
      * @param sampleIds an array containing the id's of samples expected to be
      *        returned by the database query, in ascending numeric order.
      * @param sampleHistoryIds ignored unless
@@ -5097,25 +5644,23 @@ public class SampleManager extends UnicastRemoteObject implements
      *        caller plans simply to fetch the most recent version of the sample
      *        available.
      * @param setIsMoreRecentThanSearch if true, the
-     *        {@code isMoreRecentThanSearch} flag on
-     *        {@code SampleInfo}'s in the returned array may be set if
-     *        the expected sample history id for a fetched sample (as specified
-     *        by the corresponding element of {@code sampleHistoryIds})
-     *        differs from the most recent history id for that sample.
+     *        {@code isMoreRecentThanSearch} flag on the new
+     *        {@code SampleInfo}'s may be set if the expected sample history id
+     *        for a fetched sample (as specified by the corresponding element of
+     *        {@code sampleHistoryIds}) differs from the most recent history id
+     *        for that sample.
      * @param perfTimer a {@code PerfTimer} object used by the caller to
      *        track the entire bulk-fetch operation. On this timer object a
      *        child timer object will be created and then stopped, marking the
      *        period this method was blocked waiting for the database engine to
      *        execute its query.
-     * @param cmd a {@code Statement} object already bound to an
-     *        appropriate database connection. This object may be persisted
-     *        across multiple calls to this method.
-     * @param sql a SQL query in string form that this method will execute. The
-     *        query must return all the columns of the 'samples' table. The rows
-     *        returned by the query must be in order of ascending sample id. The
-     *        rows returned by the query must be filtered in such a way as to
-     *        exclude information about any sample that is not represented in
-     *        {@code samples}.
+     * @param cmd a {@code PreparedStatement} whose parameters have been set
+     *        by the caller. The query must return all the columns of the
+     *        'samples' table. The rows returned by the query must be in order
+     *        of ascending sample id. The rows returned by the query must be
+     *        filtered in such a way as to exclude information about any sample
+     *        that is not identified in the specified range of
+     *        {@code sampleIds}.
      * @throws ResourceNotFoundException with a nested {@code SampleInfo}
      *         object if a sample identified by a pair of {@code sampleIds}
      *         and {@code sampleHistoryIds} element values could not be
@@ -5123,119 +5668,131 @@ public class SampleManager extends UnicastRemoteObject implements
      * @throws SQLException if an error occurred while executing the database
      *         query.
      */
-    private static SampleInfo[] dbFetchMultipleSamplesHelperSamples(
-            int sampleIds[], int sampleHistoryIds[],
-            boolean setIsMoreRecentThanSearch, PerfTimer perfTimer,
-            Statement cmd, String sql) throws ResourceNotFoundException,
-            SQLException {
-        // Execute the caller-specified db query.
+    private static void dbFetchMultipleSamplesHelperSamples(
+            SampleInfo samples[], int from, int to, int sampleIds[],
+            int sampleHistoryIds[], boolean setIsMoreRecentThanSearch,
+            PerfTimer perfTimer, PreparedStatement cmd)
+            throws ResourceNotFoundException, SQLException {
+        // Execute the caller-prepared db query.
         perfTimer.newChild("samples query");
-        ResultSet rs = cmd.executeQuery(sql);
+        ResultSet rs = cmd.executeQuery();
         perfTimer.stopChild();
 
         // Iterate throw the resulting rows, creating SampleInfo objects as we
         // go.
-        int arrayPos = 0;
-        SampleInfo samples[] = new SampleInfo[sampleIds.length];
-        
-        while (rs.next()) {
-            SampleInfo sample = new SampleInfo(rs);
-            if (sample.id != sampleIds[arrayPos]) {
-                // Expected to be on a different sample. This probably means
-                // the sample we wanted isn't in the database.
-                throw new ResourceNotFoundException(new SampleInfo(
-                        sampleIds[arrayPos], sampleHistoryIds[arrayPos]));
-            }
-            if (setIsMoreRecentThanSearch
-                    && (sampleHistoryIds[arrayPos] != sample.mostRecentHistoryId)
-                    && (sampleHistoryIds[arrayPos]
-                            != SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID)) {
-                // The criteria are met: set a flag on this SampleInfo as a
-                // convenience to the caller.
-                sample.isMoreRecentThanSearch = true;
-            }
+        int arrayPos = from;
+
+        try {
+            while (rs.next()) {
+                SampleInfo sample = new SampleInfo(rs);
+
+                if ((arrayPos == to) || (sample.id != sampleIds[arrayPos])) {
+                    // Expected to be on a different sample. This probably
+                    // means the sample we wanted isn't in the database.
+                    break;
+                }
+                if (setIsMoreRecentThanSearch
+                        && (sampleHistoryIds[arrayPos]
+                                != sample.mostRecentHistoryId)
+                        && (sampleHistoryIds[arrayPos]
+                                != SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID)) {
+                    // The criteria are met: set a flag on this SampleInfo as
+                    // a convenience to the caller.
+                    sample.isMoreRecentThanSearch = true;
+                }
 
-            // Set the sample's historyId and status values assuming that we're
-            // meaning to fetch the most recent version of the sample. These
-            // values might be overwritten by the caller later if that's not
-            // the case.
-            sample.historyId = sample.mostRecentHistoryId;
-            sample.status = sample.mostRecentStatus;
+                // Set the sample's historyId and status values assuming that
+                // we're meaning to fetch the most recent version of the
+                // sample. These values might be overwritten by the caller
+                // later if that's not the case.
+                sample.historyId = sample.mostRecentHistoryId;
+                sample.status = sample.mostRecentStatus;
 
-            samples[arrayPos] = sample;
-            arrayPos++;
+                samples[arrayPos] = sample;
+                arrayPos++;
+            }
+        } finally {
+            rs.close();
         }
 
-        // Clean up and return.
-        rs.close();
-        
-        return samples;
+        if (arrayPos != to) {
+            throw new ResourceNotFoundException(new SampleInfo(
+                    sampleIds[arrayPos], sampleHistoryIds[arrayPos]));
+        }
     }
 
     /**
      * Helper function useful when doing a bulk-fetch of samples. Executes a
-     * caller-specified database query of the 'sampleHistory' table and uses the
-     * resulting table to alter the {@code status} and
-     * {@code historyId} fields in the caller-supplied
-     * {@code SampleInfo} objects appropriately. Calling this method is
-     * generally only necessary if non-current (i.e. old) versions of samples
-     * are being fetched, because the {@code SampleInfo} objects returned
-     * by {@code dbFetchMultipleSamplesHelperSamples()} would already
-     * contain correct values otherwise.
-     * 
+     * caller-prepared database query of the 'sampleHistory' table and uses the
+     * resulting rows to alter the {@code status} and {@code historyId} fields
+     * in the caller-supplied {@code SampleInfo} objects appropriately. Calling
+     * this method is generally only necessary if non-current (i.e. old)
+     * versions of samples are being fetched, because the {@code SampleInfo}
+     * objects created by {@code dbFetchMultipleSamplesHelperSamples()} would
+     * already contain correct values otherwise.
+     *
      * @param samples an array of incomplete {@code SampleInfo} objects.
      *        As rows are read from the database, the {@code status} and
      *        {@code historyId} fields of these {@code SampleInfo}'s
      *        are overwritten. Samples within the array must be ordered by their
      *        {@code id} field.
+     * @param from the first position of {@code samples} to be considered.
+     * @param to the position after the last position of {@code samples} to
+     *        be considered.
      * @param perfTimer a {@code PerfTimer} object used by the caller to
      *        track the entire bulk-fetch operation. On this timer object a
      *        child timer object will be created and then stopped, marking the
      *        period this method was blocked waiting for the database engine to
      *        execute its query.
-     * @param cmd a {@code Statement} object already bound to an
-     *        appropriate database connection. This object may be persisted
-     *        across multiple calls to this method.
-     * @param sql a SQL query in string form that this method will execute. The
-     *        query must return all the columns of the 'sampleHistory' table.
-     *        The rows returned by the query must be in order of ascending
-     *        sample id. The rows returned by the query must be filtered in such
-     *        a way as to exclude information about any sample that is not
-     *        represented in {@code samples}.
+     * @param cmd a {@code PreparedStatement} whose parameters have been set
+     *        by the caller. The query must return the {@code id},
+     *        {@code sample_id}, and {@code newStatus} columns of the
+     *        'sampleHistory' table. The rows returned by the query must be in
+     *        order of ascending sample id. The rows returned by the query must
+     *        be filtered in such a way as to exclude information about any
+     *        sample version that is not represented in the specified range of
+     *        {@code samples}.
      * @throws InconsistentDbException if an inconsistency within the samples'
      *         metadata is detected.
      * @throws SQLException if an error occurred while executing the database
      *         query.
      */
     private static void dbFetchMultipleSamplesHelperSampleHistory(
-            SampleInfo samples[], PerfTimer perfTimer, Statement cmd,
-            String sql) throws InconsistentDbException, SQLException {
-        // Execute the caller-specific db query.
+            SampleInfo samples[], int from, int to, PerfTimer perfTimer,
+            PreparedStatement cmd) throws InconsistentDbException,
+            SQLException {
+        // Execute the caller-prepared db query.
         perfTimer.newChild("sampleHistory query");
-        ResultSet rs = cmd.executeQuery(sql);
+        ResultSet rs = cmd.executeQuery();
         perfTimer.stopChild();
 
-        for (int arrayPos = 0; rs.next(); arrayPos++) {
-            if (samples[arrayPos].id != rs.getInt("sample_id")) {
-                // Expected one sample, but fetched another.
-                throw new InconsistentDbException();
-            }
+        try {
+            for (int arrayPos = from; rs.next(); arrayPos++) {
+                if ((arrayPos == to)
+                        || (samples[arrayPos].id != rs.getInt("sample_id"))) {
+                    // Expected one sample, but fetched another.
+                    throw new InconsistentDbException();
+                }
 
-            // Overwrite any status or historyId that may have been set
-            // previously; these correct values refer to the requested (old)
-            // version of the sample.
-            samples[arrayPos].status = rs.getInt("newStatus");
-            samples[arrayPos].historyId = rs.getInt("id");
+                // Overwrite any status or historyId that may have been set
+                // previously; these correct values refer to the requested
+                // (old) version of the sample.
+                samples[arrayPos].status = rs.getInt("newStatus");
+                samples[arrayPos].historyId = rs.getInt("id");
+            }
+        } finally {
+            rs.close();
         }
-        rs.close();
     }
 
     /**
      * Helper function useful when doing a bulk-fetch of samples. Executes a
-     * caller-specified database query of a single table, transforms the
-     * matching rows into container objects of an appropriate type, and attaches
-     * those container objects to the SampleInfo's provided by the caller.
-     * 
+     * caller-prepared database query of a single table, transforms the
+     * matching rows into container objects of an appropriate type, and
+     * attaches those container objects to the SampleInfo's provided by the
+     * caller. The rows and the SampleInfo's are matched up by a single merging
+     * pass over both.
+     *
      * @param tableName the name of the database table to be read. Valid values
      *        are {@code sampleAcls}, {@code sampleData},
      *        {@code sampleAnnotations}, and
@@ -5244,20 +5801,27 @@ public class SampleManager extends UnicastRemoteObject implements
      *        As rows are read from the database, appropriate records will be
      *        added to the {@code SampleInfo}'s. Samples within the
      *        array must be ordered by their {@code id} field.
+     * @param from the first position of {@code samples} to be considered.
+     * @param to the position after the last position of {@code samples} to
+     *        be considered.
+     * @param filterByVersion if true, rows whose
+     *        {@code first_sampleHistory_id} and
+     *        {@code last_sampleHistory_id} columns show that they do not
+     *        belong to the version identified by the corresponding
+     *        {@code SampleInfo}'s {@code historyId} field are ignored. This
+     *        option is not meaningful for the {@code sampleAcls} table.
      * @param perfTimer a {@code PerfTimer} object used by the caller to
      *        track the entire bulk-fetch operation. On this timer object a
      *        child timer object will be created and then stopped, marking the
      *        period this method was blocked waiting for the database engine to
      *        execute its query.
-     * @param cmd a {@code Statement} object already bound to an
-     *        appropriate database connection. This object may be persisted
-     *        across multiple calls to this method.
-     * @param sql a SQL query in string form that this method will execute. The
-     *        query must return all the columns of the table named by
-     *        {@code tableName}. The rows returned by the query must be
+     * @param cmd a {@code PreparedStatement} whose parameters have been set
+     *        by the caller. The query must return all the columns of the table
+     *        named by {@code tableName}. The rows returned by the query must be
      *        in order of ascending sample id. The rows returned by the query
      *        must be filtered in such a way as to exclude information about any
-     *        sample that is not represented in {@code samples}.
+     *        sample that is not represented in the specified range of
+     *        {@code samples}.
      * @throws IllegalArgumentException if {@code tableName} is not
      *         recognized.
      * @throws InconsistentDbException if a database inconsistency was detected.
@@ -5265,130 +5829,152 @@ public class SampleManager extends UnicastRemoteObject implements
      *         query.
      */
     private static void dbFetchMultipleSamplesHelperGeneral(String tableName,
-            SampleInfo samples[], PerfTimer perfTimer, Statement cmd, String sql)
+            SampleInfo samples[], int from, int to, boolean filterByVersion,
+            PerfTimer perfTimer, PreparedStatement cmd)
             throws InconsistentDbException, SQLException {
-        // Execute the caller-provided SQL query.
+        boolean isData = tableName.equals("sampleData");
+
+        if (!isData && !tableName.equals("sampleAcls")
+                && !tableName.equals("sampleAttributes")
+                && !tableName.equals("sampleAnnotations")) {
+            // Unrecognized table name.
+            throw new IllegalArgumentException();
+        }
+
+        // Execute the caller-prepared SQL query.
         perfTimer.newChild(tableName + " query");
-        ResultSet rs = cmd.executeQuery(sql);
+        ResultSet rs = cmd.executeQuery();
         perfTimer.stopChild();
 
         // Iterate through the results, matching each SampleInfo to zero or
         // more database rows.
-        int arrayPos = 0;
-        while (rs.next()) {
-            int thisRowSampleId = rs.getInt("sample_id");
+        int arrayPos = from;
+        int lastDataSampleId = SampleInfo.INVALID_SAMPLE_ID;
+        int countDataRows = 0;
 
-            if (tableName.equals("sampleData")) {
-                // Every SampleInfo should match exactly one row.
-                if (thisRowSampleId != samples[arrayPos].id) {
-                    throw new InconsistentDbException();
-                }
-                samples[arrayPos].dataInfo = new SampleDataInfo(rs);
-                arrayPos++;
-            } else if (tableName.equals("sampleAcls")) {
-                // Every SampleInfo can match zero or more rows.
-                while (thisRowSampleId != samples[arrayPos].id) {
+        try {
+            while (rs.next()) {
+                int thisRowSampleId = rs.getInt("sample_id");
+
+                while ((arrayPos < to)
+                        && (samples[arrayPos].id < thisRowSampleId)) {
                     arrayPos++;
                 }
-                samples[arrayPos].accessInfo.add(new SampleAccessInfo(rs));
-            } else if (tableName.equals("sampleAttributes")) {
-                // Every SampleInfo can match zero or more rows.
-                while (thisRowSampleId != samples[arrayPos].id) {
-                    arrayPos++;
+                if ((arrayPos == to)
+                        || (samples[arrayPos].id != thisRowSampleId)) {
+                    // The row belongs to no sample we're fetching.
+                    throw new InconsistentDbException();
                 }
-                samples[arrayPos].attributeInfo.add(
-                        new SampleAttributeInfo(rs));
-            } else if (tableName.equals("sampleAnnotations")) {
-                // Every SampleInfo can match zero or more rows.
-                while (thisRowSampleId != samples[arrayPos].id) {
-                    arrayPos++;
+
+                SampleInfo sample = samples[arrayPos];
+
+                if (filterByVersion) {
+                    int first = rs.getInt("first_sampleHistory_id");
+                    int last = rs.getInt("last_sampleHistory_id");
+
+                    if ((first > sample.historyId)
+                            || (!rs.wasNull() && (last <= sample.historyId))) {
+                        // The row belongs to some other version.
+                        continue;
+                    }
+                }
+
+                if (isData) {
+                    // Every SampleInfo should match exactly one row.
+                    if (thisRowSampleId == lastDataSampleId) {
+                        throw new InconsistentDbException();
+                    }
+                    sample.dataInfo = new SampleDataInfo(rs);
+                    lastDataSampleId = thisRowSampleId;
+                    countDataRows++;
+                } else if (tableName.equals("sampleAcls")) {
+                    // Every SampleInfo can match zero or more rows.
+                    sample.accessInfo.add(new SampleAccessInfo(rs));
+                } else if (tableName.equals("sampleAttributes")) {
+                    // Every SampleInfo can match zero or more rows.
+                    sample.attributeInfo.add(new SampleAttributeInfo(rs));
+                } else {
+                    // Every SampleInfo can match zero or more rows.
+                    sample.annotationInfo.add(new SampleAnnotationInfo(rs));
                 }
-                samples[arrayPos].annotationInfo.add(
-                        new SampleAnnotationInfo(rs));
-            } else {
-                // Unrecognized table name.
-                throw new IllegalArgumentException();
             }
+        } finally {
+            rs.close();
+        }
+
+        if (isData && (countDataRows != to - from)) {
+            // Some sample lacked a row.
+            throw new InconsistentDbException();
         }
-        rs.close();
     }
 
     /**
-     * Returns a SQL "WHERE" clause fragment of the form: fieldName IN
-     * (intValues[0], intValues[1], ...) for each {@code intValue}
-     * specified. This syntax is equivalent to: fieldName=intValues[0] OR
-     * fieldName=intValues[1] ... but more compact. The WHERE clause fragment
-     * returned by this method should be encapsulated in parentheses if the
-     * caller plans to combine it with other SQL fragments to form a larger
-     * WHERE clause.
+     * Returns a parenthesized SQL list of {@code count} statement parameter
+     * markers, suitable for use with the {@code IN} operator.
      */
-    private static String generateWhereClause(String fieldName, int intValues[]) {
-        StringBuilder sql = new StringBuilder();
-        boolean firstElement = true;
-        
-        sql.append(fieldName);
-        sql.append(" ");
-        sql.append("IN (");
-        for (int i = 0; i < intValues.length; i++) {
-            if (!firstElement) {
+    private static String generateParameterList(int count) {
+        StringBuilder sql = new StringBuilder(3 * count + 2);
+
+        sql.append("(");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
                 sql.append(", ");
             }
-            firstElement = false;
-            sql.append(intValues[i]);
+            sql.append("?");
         }
         sql.append(")");
-        
+
         return sql.toString();
     }
 
     /**
-     * Like the first version of generateWhereClause() but more complicated. The
-     * two arrays mst have equal size; each pair of array entries results in one
-     * SQL fragment being generated. If intValues2[0] has the special value -1
-     * then the fragment looks like: (fieldName1=intValues1[0] AND fieldName3 IS
-     * NULL) . If intValues2[0] is not -1 then the fragment looks like:
-     * (fieldName1=intValues1[0] AND fieldName2 <= intValues2[0] AND (fieldName3 >
-     * intValues2[0] OR fieldName3 IS NULL)) . The fragments are linked by OR's.
+     * Sets {@code count} consecutive parameters of a prepared statement, the
+     * first being number {@code firstParam}, to the values found in the
+     * specified range of an array. If the range holds fewer than
+     * {@code count} values, the remaining parameters are set to the last
+     * value in the range; this is harmless for the parameters of an
+     * {@code IN} list and allows a statement to be reused for a final, short
+     * batch.
      */
-    private static String generateWhereClause(String fieldName1,
-            int intValues1[], String fieldName2, String fieldName3,
-            int intValues2[]) {
-        StringBuilder sql = new StringBuilder();
-        boolean firstElement = true;
-        
-        for (int i = 0; i < intValues1.length; i++) {
-            if (!firstElement) {
-                sql.append(" OR ");
-            }
-            firstElement = false;
+    private static void setParameters(PreparedStatement cmd, int firstParam,
+            int values[], int from, int to, int count) throws SQLException {
+        for (int i = 0; i < count; i++) {
+            cmd.setInt(firstParam + i, values[Math.min(from + i, to - 1)]);
+        }
+    }
 
-            if (intValues2[i] == -1) {
-                sql.append("(");
-                sql.append(fieldName1);
-                sql.append("=");
-                sql.append(intValues1[i]);
-                sql.append(" AND ");
-                sql.append(fieldName3);
-                sql.append(" IS NULL)");
-            } else {
-                sql.append("(");
-                sql.append(fieldName1);
-                sql.append("=");
-                sql.append(intValues1[i]);
-                sql.append(" AND ");
-                sql.append(fieldName2);
-                sql.append(" <= ");
-                sql.append(intValues2[i]);
-                sql.append(" AND (");
-                sql.append(fieldName3);
-                sql.append(" > ");
-                sql.append(intValues2[i]);
-                sql.append(" OR ");
-                sql.append(fieldName3);
-                sql.append(" IS NULL))");
-            }
+    /**
+     * Closes a statement if it is not null, for use in {@code finally}
+     * blocks.
+     */
+    private static void closeStatement(Statement cmd) throws SQLException {
+        if (cmd != null) {
+            cmd.close();
+        }
+    }
+
+    /**
+     * A sample ISM staged by a bulk import, together with what is needed to
+     * write it and to report it once written.
+     */
+    private static class StagedSampleIsm {
+        final InterSiteMessage ism;
+
+        final SampleInfo sample;
+
+        final String comments;
+
+        final Date actionDate;
+
+        final String message;
+
+        StagedSampleIsm(InterSiteMessage ism, SampleInfo sample,
+                String comments, String message) {
+            this.ism = ism;
+            this.sample = sample;
+            this.comments = comments;
+            this.actionDate = new Date();
+            this.message = message;
         }
-        
-        return sql.toString();
     }
 }
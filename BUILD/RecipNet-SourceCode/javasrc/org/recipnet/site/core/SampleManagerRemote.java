@@ -27,6 +27,7 @@
  *              reorganizations
  * 27-Sep-2005: midurbin added getNextUnusedLocalLabId()
  * 07-Apr-2006: jobollin removed isAlive() (but not isAlive(int))
+ * 18-Oct-2026: agent added putSampleInfoBatch()
  */
 
 package org.recipnet.site.core;
@@ -40,6 +41,7 @@ import org.recipnet.site.InconsistentDbException;
 import org.recipnet.site.InvalidDataException;
 import org.recipnet.site.OperationFailedException;
 import org.recipnet.site.shared.SampleStats;
+import org.recipnet.site.shared.SampleWriteBatch;
 import org.recipnet.site.shared.SearchParams;
 import org.recipnet.site.shared.db.FullSampleInfo;
 import org.recipnet.site.shared.db.SampleInfo;
@@ -84,6 +86,9 @@ public interface SampleManagerRemote extends Remote {
             OperationFailedException, OptimisticLockingException, 
             RemoteException, ResourceNotFoundException, WrongSiteException;
 
+    public SampleWriteBatch putSampleInfoBatch(SampleWriteBatch batch)
+            throws RemoteException;
+
     public void revertSampleToVersion(int sampleId, int currentHistoryId,
             int desiredHistoryId, int userId, String comments) 
             throws InconsistentDbException, InvalidDataException, 
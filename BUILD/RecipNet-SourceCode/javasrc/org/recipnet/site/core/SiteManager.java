@@ -127,6 +127,18 @@
  * 02-Jan-2009: ekoperda added connections to a LabTransferAgent and handling
  *              for its associated ISM's
  * 02-Jan-2009: ekoperda clarified ISM validation in eventLabUpdate()
+ * 18-Oct-2026: agent passed the new SitMsgsPushMaxCount and SitMsgsPushMaxBytes
+ *              directives to IsmPushAgent
+ * 18-Oct-2026: agent passed the new SitIsmDecodingThreads directive to
+ *              ReceivedMessageAgent and stopped it during stop()
+ * 18-Oct-2026: agent passed the new SitIsmProcessingLimit directive to
+ *              ReceivedMessageAgent
+ * 18-Oct-2026: agent modified performBootstrapTasks() to stream the site
+ *              grant file's messages, replay them as a Sample Manager bulk
+ *              import, and report progress and throughput
+ * 18-Oct-2026: agent added recordLogEvents()
+ * 18-Oct-2026: agent made performBootstrapTasks() end the bulk import even
+ *              if processing the site grant file fails
  */
 
 package org.recipnet.site.core;
@@ -154,6 +166,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -213,6 +226,7 @@ import org.recipnet.site.core.util.EventSignal;
 import org.recipnet.site.core.util.IsmExchanger;
 import org.recipnet.site.core.util.LogRecordGenerator;
 import org.recipnet.site.core.util.MsgpakUtil;
+import org.recipnet.site.core.util.MsgpakUtil.MessageReader;
 import org.recipnet.site.core.util.MutexLock;
 import org.recipnet.site.core.util.SerialNumber;
 import org.recipnet.site.core.util.SiteNetworkSynchronizer;
@@ -579,7 +593,11 @@ public class SiteManager extends UnicastRemoteObject implements
                         properties.getProperty("SitIsmProcessingTimeout")),
                 Integer.parseInt(
                         properties.getProperty("SitReceivedIsmReplayLimit")),
-                this.bootstrapMode);
+                this.bootstrapMode,
+                Integer.parseInt(
+                        properties.getProperty("SitIsmDecodingThreads")),
+                Integer.parseInt(
+                        properties.getProperty("SitIsmProcessingLimit")));
         try {
             receivedMessageAgent.initializeSites();
             if (!bootstrapMode) {
@@ -614,6 +632,10 @@ public class SiteManager extends UnicastRemoteObject implements
         if (Boolean.parseBoolean(properties.getProperty("SitMsgsPush"))) {
             ismPushAgent = new IsmPushAgent(
                     Long.parseLong(properties.getProperty("SitMsgsPushPredelay")),
+                    Integer.parseInt(properties.getProperty(
+                            "SitMsgsPushMaxCount")),
+                    Long.parseLong(properties.getProperty(
+                            "SitMsgsPushMaxBytes")),
                     this,
                     this.topologyAgent,
                     new IsmExchanger(
@@ -693,6 +715,11 @@ public class SiteManager extends UnicastRemoteObject implements
             ismPushAgent.stop();
         }
 
+        // Stop the ReceivedMessageAgent's decoding threads.
+        if (receivedMessageAgent != null) {
+            receivedMessageAgent.stop();
+        }
+
         // Signal the worker thread to stop
         Thread temp = workerThread.getAndSet(null);
         
@@ -1874,6 +1901,22 @@ public class SiteManager extends UnicastRemoteObject implements
         }
     }
 
+    /**
+     * Used by the wrapper modules to write a batch of log events to syslog, as
+     * though by calling {@code recordLogEvent()} on each in turn, but at the
+     * cost of a single RMI call. The webapp's {@code CoreConnector} delivers
+     * events this way from a background thread so that page rendering never
+     * waits on statistics or syslog.
+     */
+    public void recordLogEvents(LogEvent evs[]) {
+        statisticsAgent.notifyLogEvents(evs);
+        for (LogEvent ev : evs) {
+            for (LogRecord record : ev.getLogRecords()) {
+                recordLogRecord(record);
+            }
+        }
+    }
+
     /**
      * Used by the {@code IsmListener} servlet to pass potentially many ISM's
      * received from a remote site to the core and to receive potentially many
@@ -2038,7 +2081,10 @@ public class SiteManager extends UnicastRemoteObject implements
     /**
      * Called by VersionUpdater during a bootstrap operation. This method
      * iterates through every message included in this site's site grant file
-     * and causes it to be processed by the usual mechanisms.
+     * and causes it to be processed by the usual mechanisms. Messages are read
+     * from the file one at a time, so that even a very large file need not fit
+     * in memory, and sample messages among them are written by Sample Manager
+     * as a bulk import. Progress and throughput are reported on stdout.
      * 
      * @throws IllegalStateException if bootstrap mode was not enabled at
      *         construction time.
@@ -2054,8 +2100,7 @@ public class SiteManager extends UnicastRemoteObject implements
      */
     void performBootstrapTasks() throws IsmProcessingException,
             OperationFailedException, OperationNotPermittedException {
-        InterSiteMessage bundle[];
-        int i;
+        MessageReader reader;
 
         // quick sanity check
         if (!bootstrapMode) {
@@ -2078,11 +2123,11 @@ public class SiteManager extends UnicastRemoteObject implements
         receivedMessageAgent.notifySiteActivation(new SiteInfo(
                 InterSiteMessage.RECIPROCAL_NET_COORDINATOR));
 
-        // read all the messages from the Coordinator that are embedded in
-        // our site grant file
+        // open the messages from the Coordinator that are embedded in our
+        // site grant file
         File siteGrantFile = new File(properties.getProperty("SitGrantFile"));
         try {
-            bundle = MsgpakUtil.readAndDecodeAllMessages(siteGrantFile);
+            reader = MsgpakUtil.openMessages(siteGrantFile);
         } catch (Exception ex) {
             // It is desirable to write to stderr here since the user is
             // running us as a console app.
@@ -2091,21 +2136,79 @@ public class SiteManager extends UnicastRemoteObject implements
             throw new OperationFailedException(ex);
         }
 
-        // process the messages one by one
+        // process the messages one by one as they are read
         // It is desirable to write to stdout here since the user is running
         // us as a console app.
-        System.out.print("    processing " + bundle.length + " messages... ");
-        for (i = 0; i < bundle.length; i++) {
+        DecimalFormat percentFormat = new DecimalFormat("0.0");
+        DecimalFormat countFormat = new DecimalFormat("#,##0");
+        long startTime = System.currentTimeMillis();
+        String lastProgressDisplayed = null;
+
+        sampleManager.beginBulkImport();
+        try {
+            while (true) {
+                InterSiteMessage ism;
+
+                try {
+                    String ismAsXml = reader.nextMessage();
+
+                    if (ismAsXml == null) {
+                        break;
+                    }
+                    ism = InterSiteMessage.fromXml(ismAsXml);
+                } catch (Exception ex) {
+                    // It is desirable to write to stderr here since the user
+                    // is running us as a console app.
+                    System.err.println("Error while reading the site grant"
+                            + " file:" + ex.toString());
+                    throw new OperationFailedException(ex);
+                }
+                try {
+                    receivedMessageAgent.acceptBootstrapIsm(ism);
+                } catch (OperationFailedException ex) {
+                    // It is desirable to write to stderr here since the user
+                    // is running us as a console app.
+                    System.err.println("Error while processing the site grant"
+                            + " file: " + ex.toString());
+                    throw ex;
+                }
+
+                // Display a progress message at each tenth of a percent, or
+                // every thousand messages if the file's size is unknown.
+                double fraction = reader.getFractionRead();
+                String progress = (fraction >= 0)
+                        ? percentFormat.format(fraction * 100) + "%"
+                        : String.valueOf(reader.getMessageCount() / 1000);
+
+                if (!progress.equals(lastProgressDisplayed)) {
+                    long elapsed = Math.max(
+                            System.currentTimeMillis() - startTime, 1);
+
+                    System.out.println("    progress "
+                            + ((fraction >= 0) ? progress + ", " : "")
+                            + countFormat.format(reader.getMessageCount())
+                            + " messages, " + countFormat.format(
+                                    reader.getMessageCount() * 1000 / elapsed)
+                            + " per second");
+                    lastProgressDisplayed = progress;
+                }
+            }
+            sampleManager.endBulkImport();
+        } finally {
+            sampleManager.abortBulkImport();
             try {
-                receivedMessageAgent.acceptBootstrapIsm(bundle[i]);
-            } catch (OperationFailedException ex) {
-                // It is desirable to write to stderr here since the user is
-                // running us as a console app.
-                System.err.println("Error while processing the site grant"
-                        + " file: " + ex.toString());
-                throw ex;
+                reader.close();
+            } catch (ResourceException ex) {
+                // Nothing more to be done; all messages have been read.
             }
         }
+
+        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+
+        System.out.print("    processed "
+                + countFormat.format(reader.getMessageCount()) + " messages ("
+                + countFormat.format(reader.getMessageCount() * 1000 / elapsed)
+                + " per second)... ");
     }
 
     /**
@@ -21,6 +21,7 @@
  *              and removed pullIsmBundle()
  * 07-Apr-2006: jobollin removed isAlive() (but not isAlive(int))
  * 11-May-2006: jobollin switched from getLocalLabs2() to getLocalLabs()
+ * 18-Oct-2026: agent added recordLogEvents()
  */
 
 package org.recipnet.site.core;
@@ -120,6 +121,8 @@ public interface SiteManagerRemote extends Remote {
 
     public void recordLogEvent(LogEvent ev) throws RemoteException;
 
+    public void recordLogEvents(LogEvent evs[]) throws RemoteException;
+
     public String[] exchangeInterSiteMessages(String messageStrings[], 
             String ipAddr) throws OperationFailedException, RemoteException;
 }
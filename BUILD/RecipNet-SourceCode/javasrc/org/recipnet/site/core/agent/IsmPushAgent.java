@@ -12,18 +12,24 @@
  * 28-Apr-2006: updated this class to use an AtomicBoolean in place of an
  *              EventSignal for its termination flag, formatted the code,
  *              updated docs
+ * 18-Oct-2026: agent replaced the single worker thread with one worker per
+ *              destination site that keeps its HTTP connection alive, caps
+ *              each push by message count and size, and backs off after
+ *              failed pushes
  */
 
 package org.recipnet.site.core.agent;
 
+import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.recipnet.site.OperationFailedException;
+import org.recipnet.site.UnexpectedExceptionException;
 import org.recipnet.site.core.SiteManager;
 import org.recipnet.site.core.msg.InterSiteMessage;
 import org.recipnet.site.core.util.CoreUncaughtExceptionHandler;
@@ -34,52 +40,73 @@ import org.recipnet.site.shared.SoapUtil;
 import org.recipnet.site.shared.db.SiteInfo;
 
 /**
+ * <p>
  * A core-level agent owned by Site Manager that pushes locally-generated ISM's
- * to other sites in the site network. The agent maintains its own worker thread
- * for improved performance; thus pushing ISMs asynchronously with respect to
- * threads that generate them for dispatch. Multiple ISMs intended for the same
- * destination site are transparently batched together in the same push
- * operation. Decisions about which ISMs should be pushed to which destination
- * site are delegated to {@code TopologyAgent}.
+ * to other sites in the site network. The agent maintains one worker thread
+ * per destination site, thus pushing ISMs asynchronously with respect to
+ * threads that generate them for dispatch, and without a slow or unreachable
+ * destination delaying pushes to any other. Multiple ISMs intended for the
+ * same destination site are transparently batched together in the same push
+ * operation, up to a configurable number of messages and bytes; any excess is
+ * pushed in further batches immediately afterwards, over the same kept-alive
+ * HTTP connection. Decisions about which ISMs should be pushed to which
+ * destination site are delegated to {@code TopologyAgent}.
+ * </p><p>
+ * When a push to a destination fails, {@code TopologyAgent} is notified (and
+ * typically stops suggesting that site for a while) and that destination's
+ * worker waits before attempting its next push, doubling the wait after each
+ * consecutive failure up to {@code MAX_BACKOFF}.
+ * </p>
  */
 public class IsmPushAgent {
 
     /**
-     * Signals the worker thread when this object is notified of a new ISM to be
-     * pushed. The signal is sent by
-     * {@link #notifyNewIsm(InterSiteMessage, String) notifyNewIsm()} and
-     * received/reset by {@link #run()}.
+     * The number of milliseconds a destination's worker waits before its next
+     * push after a single failed push; the wait doubles with each further
+     * consecutive failure.
+     */
+    private static final long MIN_BACKOFF = 10000;
+
+    /**
+     * The maximum number of milliseconds a destination's worker waits before
+     * its next push after failed pushes.
      */
-    private final EventSignal messagesPending;
+    private static final long MAX_BACKOFF = 15 * 60 * 1000;
 
     /**
-     * Signals the worker thread that it should exit. The signal is sent by
-     * {@code stop()} and received/reset by {@code run()}.
+     * Signals the worker threads that they should exit. The signal is sent by
+     * {@code stop()} and received by each {@code DestinationSiteWorker}.
      */
     private final AtomicBoolean shouldTerminate;
 
     /**
-     * A {@code Map} from some sort of key (as defined by
-     * {@code DestinationSiteRecord}) to {@code DestinationSiteRecord}s. There
-     * is one entry in this map for each destination site that has at least one
-     * queued ISM. Entries are added to the map by
+     * A {@code Map} from some sort of key (as defined by {@code getKey()}) to
+     * {@code DestinationSiteWorker}s. There
+     * is one entry in this map for each destination site to which at least
+     * one ISM has been queued. Entries are added to the map by
      * {@link #notifyNewIsm(InterSiteMessage, String) notifyNewIsm()} and
-     * removed from the map by {@link #run()} as part of each push cycle.
+     * remain there, along with their worker threads, until {@code stop()}.
      */
     /*
      * All access to this Map should be synchronized (on the Map itself)
      */
-    private final Map<Object, DestinationSiteRecord> destinationSites;
+    private final Map<Object, DestinationSiteWorker> destinationSites;
 
     /**
-     * A reference to the worker thread; set by {@code start()} and cleared by
-     * {@code stop()}.
+     * Set by {@code start()}; worker threads are started only while this is
+     * true. Guarded by {@code destinationSites}.
      */
-    private Thread workerThread;
+    private boolean started;
 
     /** Configuration parameter set at construction time. */
     private final long predelay;
 
+    /** Configuration parameter set at construction time. */
+    private final int maxBatchCount;
+
+    /** Configuration parameter set at construction time. */
+    private final long maxBatchBytes;
+
     /** Reference to {@code SiteManager} set at construction time. */
     private final SiteManager siteManager;
 
@@ -93,10 +120,17 @@ public class IsmPushAgent {
      * Initializes a new {@code IsmPushAgent} with the specified parameters.
      * 
      * @param predelay the approximate number of milliseconds
-     *        {@code IsmPushAgent} should wait before initiating a push cycle,
-     *        after being informed of a newly-generated ISM. Use of a predelay
-     *        might improve efficiency for callers that often generate multiple
-     *        ISM's to the same destination in quick succession.
+     *        {@code IsmPushAgent} should wait before initiating a push to a
+     *        destination, after being informed of a newly-generated ISM for
+     *        it. Use of a predelay might improve efficiency for callers that
+     *        often generate multiple ISM's to the same destination in quick
+     *        succession.
+     * @param maxBatchCount the maximum number of ISM's to be pushed to a
+     *        destination site in a single exchange.
+     * @param maxBatchBytes the maximum total size, in bytes of UTF-8 encoded
+     *        XML, of the ISM's to be pushed to a destination site in a single
+     *        exchange. A batch always includes at least one ISM, however
+     *        large.
      * @param siteManager reference to the {@code SiteManager} object. Only
      *        {@code recordLogEvent()} is invoked via this reference.
      * @param topologyAgent reference to an existing {@code TopologyAgent} with
@@ -105,52 +139,65 @@ public class IsmPushAgent {
      *        changes.
      * @param ismExchanger reference to an existing {@code IsmExchanger} object
      *        that is dedicated for the exclusive use of this
-     *        {@code IsmPushAgent}.
+     *        {@code IsmPushAgent}. It is shared by all the destinations'
+     *        worker threads.
      */
-    public IsmPushAgent(long predelay, SiteManager siteManager,
-            TopologyAgent topologyAgent, IsmExchanger ismExchanger) {
-        this.messagesPending = new EventSignal();
+    public IsmPushAgent(long predelay, int maxBatchCount, long maxBatchBytes,
+            SiteManager siteManager, TopologyAgent topologyAgent,
+            IsmExchanger ismExchanger) {
         this.shouldTerminate = new AtomicBoolean(false);
-        this.destinationSites = new HashMap<Object, DestinationSiteRecord>();
-        this.workerThread = null;
+        this.destinationSites = new HashMap<Object, DestinationSiteWorker>();
+        this.started = false;
         this.predelay = predelay;
+        this.maxBatchCount = maxBatchCount;
+        this.maxBatchBytes = maxBatchBytes;
         this.siteManager = siteManager;
         this.topologyAgent = topologyAgent;
         this.ismExchanger = ismExchanger;
     }
 
     /**
-     * Start the worker thread. This must be invoked by the caller in order to
+     * Start the worker threads. This must be invoked by the caller in order to
      * enable ISM pushing.
      */
     public void start() {
-        if (this.workerThread != null) {
-            throw new IllegalStateException();
-        }
-        this.workerThread = new Thread(new Runnable() {
-            public void run() {
-                IsmPushAgent.this.run();
+        synchronized (this.destinationSites) {
+            if (this.started) {
+                throw new IllegalStateException();
+            }
+            this.started = true;
+            for (DestinationSiteWorker worker
+                    : this.destinationSites.values()) {
+                worker.start();
             }
-        });
-        this.workerThread.start();
+        }
     }
 
     /**
-     * Stops the worker thread, aborting the current push cycle if there is one.
-     * Blocks until the worker thread has terminated, or until the calling
-     * thread is interrupted.
+     * Stops the worker threads, abandoning any ISMs still queued. Blocks until
+     * the worker threads have terminated, or until the calling thread is
+     * interrupted.
      */
     public void stop() {
-        if (this.workerThread == null) {
-            throw new IllegalStateException();
+        Collection<DestinationSiteWorker> workers;
+
+        synchronized (this.destinationSites) {
+            if (!this.started) {
+                throw new IllegalStateException();
+            }
+            this.started = false;
+            workers = new ArrayList<DestinationSiteWorker>(
+                    this.destinationSites.values());
         }
 
         shouldTerminate.set(true);
-        Thread dummy = this.workerThread;
-        this.workerThread = null;
-        dummy.interrupt();
+        for (DestinationSiteWorker worker : workers) {
+            worker.interrupt();
+        }
         try {
-            dummy.join();
+            for (DestinationSiteWorker worker : workers) {
+                worker.join();
+            }
         } catch (InterruptedException ex) {
             // Do nothing; just return.
         }
@@ -158,8 +205,8 @@ public class IsmPushAgent {
 
     /**
      * May be called once for each new ISM that the local site generates. This
-     * method signals the worker thread (asynchronously) to push the specified
-     * ISM to its target sites. This method invokes
+     * method signals the appropriate worker threads (asynchronously) to push
+     * the specified ISM to its target sites. This method invokes
      * {@link TopologyAgent#suggestSitesToPushTo(InterSiteMessage)
      * suggestSitesToPushTo()} internally to discover the appropriate
      * destinations for the specified ISM.
@@ -175,92 +222,27 @@ public class IsmPushAgent {
         // a SOAP envelope.
         String goodIsmAsXml = SoapUtil.dropXmlDocumentHeader(ismAsXml,
                 "message");
+        long size = countUtf8Bytes(goodIsmAsXml);
 
         // Discover which sites this ISM should be pushed to.
         Collection<SiteInfo> destinations
                 = this.topologyAgent.suggestSitesToPushTo(ism);
 
         // Place the ISM in each destination site's queue, creating destination
-        // site records as needed.
+        // site workers as needed.
         synchronized (this.destinationSites) {
             for (SiteInfo site : destinations) {
-                DestinationSiteRecord rec = this.destinationSites.get(
-                        DestinationSiteRecord.getKey(site));
-                if (rec == null) {
-                    // No record exists yet for this site; create one.
-                    rec = new DestinationSiteRecord(site);
-                    this.destinationSites.put(rec.getKey(), rec);
-                }
-                rec.queueMessage(ism, goodIsmAsXml);
-            }
-        }
-
-        // Notify the worker thread that a new ISM is pending.
-        this.messagesPending.send();
-    }
-
-    /** Defines the worker thread's behavior */
-    private void run() {
-        Thread.currentThread().setUncaughtExceptionHandler(
-                new CoreUncaughtExceptionHandler(this, this.siteManager));
-        while (!shouldTerminate.get()) {
-            this.messagesPending.receive();
-            if (shouldTerminate.get()) {
-                break;
-            }
-
-            // Wait a short while to see if any other messages show up.
-            try {
-                Thread.sleep(this.predelay);
-            } catch (InterruptedException ex) {
-                // don't do anything; just drop through.
-            }
-
-            // Take a snapshot of the destination sites.
-            Collection<DestinationSiteRecord> destinationSitesSnapshot;
-            synchronized (this.destinationSites) {
-                destinationSitesSnapshot = new ArrayList<DestinationSiteRecord>(
-                        this.destinationSites.values());
-            }
-
-            // Iterate through all the destination sites.
-            for (DestinationSiteRecord rec : destinationSitesSnapshot) {
-                if (shouldTerminate.get()) {
-                    break;
-                }
-
-                // Obtain the queue of pending ISM's for the current
-                // destination site.
-                String queuedIsmsAsXml[];
-                synchronized (this.destinationSites) {
-                    queuedIsmsAsXml = rec.getQueuedMessages();
-                    this.destinationSites.remove(rec.getKey());
-                }
-                assert queuedIsmsAsXml.length != 0;
-
-                // Push all queued ISM's to the current destination site.
-                // Recover gracefully from any network errors that might
-                // occur.
-                try {
-                    String replies[] = this.ismExchanger.exchange(
-                            queuedIsmsAsXml, rec.getBaseUrl(), true);
-                    // FIXME: if the remote site sent any ISMs in reply then
-                    // maybe we should do something with them. For now,
-                    // just discard them because we have no idea what
-                    // purpose they might serve.
-                    this.siteManager.recordLogRecord(
-                            LogRecordGenerator.ismPushed(
-                                    rec.getIsms(), rec.getSiteInfo(),
-                                    replies.length));
-                    topologyAgent.notifyPush(rec.getSiteId(), true);
-                } catch (OperationFailedException ex) {
-                    this.siteManager.recordLogRecord(
-                            LogRecordGenerator.ismPushFailed(
-                                    rec.getIsms(), rec.getSiteInfo(),
-                                    ismExchanger.getLastServerErrorMessage(),
-                                    ex));
-                    topologyAgent.notifyPush(rec.getSiteId(), false);
+                DestinationSiteWorker worker
+                        = this.destinationSites.get(getKey(site));
+                if (worker == null) {
+                    // No worker exists yet for this site; create one.
+                    worker = new DestinationSiteWorker(site);
+                    this.destinationSites.put(getKey(site), worker);
+                    if (this.started) {
+                        worker.start();
+                    }
                 }
+                worker.queueMessage(site, ism, goodIsmAsXml, size);
             }
         }
     }
@@ -278,107 +260,263 @@ public class IsmPushAgent {
 
         buf.append("IsmPushAgent queue:").append(term);
         synchronized (this.destinationSites) {
-            for (DestinationSiteRecord rec : this.destinationSites.values()) {
-                buf.append(rec.toString()).append(term);
+            for (DestinationSiteWorker worker
+                    : this.destinationSites.values()) {
+                buf.append(worker.toString()).append(term);
             }
         }
         return buf.toString();
     }
 
     /**
-     * Internal container class
+     * Provides the recommended key with which to associate any
+     * {@code DestinationSiteWorker} referring to the specified site
+     * 
+     * @param site a {@code SiteInfo} representing the site for which
+     *        {@code DestinationSiteWorker} objects' keys are requested
+     * @return the key {@code Object}
      */
-    private static class DestinationSiteRecord {
-        private final SiteInfo site;
+    private static Object getKey(SiteInfo site) {
+        return site.id;
+    }
 
-        private final Collection<InterSiteMessage> isms;
+    /**
+     * Returns the number of bytes {@code s} occupies when encoded as UTF-8.
+     */
+    private static long countUtf8Bytes(String s) {
+        try {
+            return s.getBytes("UTF-8").length;
+        } catch (UnsupportedEncodingException ex) {
+            // Every JVM supports UTF-8
+            throw new UnexpectedExceptionException(ex);
+        }
+    }
+
+    /**
+     * Internal container class: one ISM awaiting a push to one destination
+     */
+    private static class QueuedIsm {
+        public final InterSiteMessage ism;
+
+        public final String ismAsXml;
 
-        private final Collection<String> ismsAsXml;
+        public final long size;
+
+        public QueuedIsm(InterSiteMessage ism, String ismAsXml, long size) {
+            this.ism = ism;
+            this.ismAsXml = ismAsXml;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Queues the ISMs bound for one destination site and owns the worker
+     * thread that pushes them there. All access to the queue is synchronized
+     * on the {@code DestinationSiteWorker} object.
+     */
+    private class DestinationSiteWorker implements Runnable {
 
         /**
-         * Initializes a new {@code DestinationSiteRecord} for ISMs directed to
-         * the specified site
+         * The most recent {@code SiteInfo} for the destination site, whose
+         * base URL is used for each push
+         */
+        private SiteInfo site;
+
+        /** The ISMs awaiting a push, in the order they were queued */
+        private final LinkedList<QueuedIsm> queue;
+
+        /**
+         * Signals the worker thread when a new ISM is queued. The signal is
+         * sent by {@code queueMessage()} and received/reset by {@code run()}.
+         */
+        private final EventSignal messagesPending;
+
+        /** The worker thread; created at construction time */
+        private final Thread thread;
+
+        /**
+         * The number of pushes to this destination that have failed since
+         * the last one that succeeded; used only by the worker thread.
+         */
+        private int consecutiveFailures;
+
+        /**
+         * Initializes a new {@code DestinationSiteWorker} for ISMs directed to
+         * the specified site. The worker thread is not started.
          * 
          * @param site a {@code SiteInfo} representing the site with which this
-         *        {@code DestinationSiteRecord} is associated
+         *        {@code DestinationSiteWorker} is associated
          */
-        public DestinationSiteRecord(SiteInfo site) {
+        public DestinationSiteWorker(SiteInfo site) {
             this.site = site;
-            this.isms = new ArrayList<InterSiteMessage>();
-            this.ismsAsXml = new ArrayList<String>();
+            this.queue = new LinkedList<QueuedIsm>();
+            this.messagesPending = new EventSignal();
+            this.thread = new Thread(this, "IsmPushAgent-" + site.id);
+            this.consecutiveFailures = 0;
+        }
+
+        /** Starts the worker thread */
+        public void start() {
+            this.thread.start();
+        }
+
+        /** Interrupts the worker thread */
+        public void interrupt() {
+            this.thread.interrupt();
+        }
+
+        /** Waits for the worker thread, if it was started, to terminate */
+        public void join() throws InterruptedException {
+            if (this.thread.isAlive()) {
+                this.thread.join();
+            }
         }
 
         /**
          * Queues a message for delivery to the site associated with this
-         * {@code DestinationSiteRecord}
+         * {@code DestinationSiteWorker} and signals the worker thread
          * 
+         * @param currentSite the current {@code SiteInfo} for this worker's
+         *        site
          * @param ism the {@code InterSiteMessage} to deliver
          * @param ismAsXml a {@code String} representation of the ISM
+         * @param size the number of bytes in the UTF-8 encoding of
+         *        {@code ismAsXml}
          */
-        public void queueMessage(InterSiteMessage ism, String ismAsXml) {
-            this.isms.add(ism);
-            this.ismsAsXml.add(ismAsXml);
+        public void queueMessage(SiteInfo currentSite, InterSiteMessage ism,
+                String ismAsXml, long size) {
+            synchronized (this) {
+                this.site = currentSite;
+                this.queue.add(new QueuedIsm(ism, ismAsXml, size));
+            }
+            this.messagesPending.send();
         }
 
         /**
-         * Retrieves the XML String forms of the currently queued messages
+         * Removes from the queue the next batch of messages to be pushed:
+         * as many as fit within the configured message count and byte size
+         * limits, but at least one.
          * 
-         * @return a {@code String[]} containing the as elements the XML
-         *         {@code String}s corresponding to this
-         *         {@code DestinationSiteRecord}'s queued messages
+         * @return the messages to push, or an empty collection if none are
+         *         queued
          */
-        public String[] getQueuedMessages() {
-            return this.ismsAsXml.toArray(new String[ismsAsXml.size()]);
-        }
+        private synchronized Collection<QueuedIsm> takeBatch() {
+            Collection<QueuedIsm> batch = new ArrayList<QueuedIsm>();
+            long bytes = 0;
+
+            while (!this.queue.isEmpty()
+                    && (batch.size() < IsmPushAgent.this.maxBatchCount)
+                    && (batch.isEmpty() || (bytes + this.queue.getFirst().size
+                            <= IsmPushAgent.this.maxBatchBytes))) {
+                QueuedIsm queued = this.queue.removeFirst();
+
+                bytes += queued.size;
+                batch.add(queued);
+            }
 
-        /**
-         * Retrieves the ID of the site with which this site record is
-         * associated
-         * 
-         * @return the site ID of the associated site
-         */
-        public int getSiteId() {
-            return this.site.id;
+            return batch;
         }
 
-        /**
-         * Retrieves the {@code SiteInfo} of the site with which this site
-         * record is associated
-         * 
-         * @return the {@code SiteInfo} for the associated site
-         */
-        public SiteInfo getSiteInfo() {
+        /** Retrieves the current {@code SiteInfo} for this worker's site */
+        private synchronized SiteInfo getSiteInfo() {
             return this.site;
         }
 
+        /** Defines the worker thread's behavior */
+        public void run() {
+            Thread.currentThread().setUncaughtExceptionHandler(
+                    new CoreUncaughtExceptionHandler(IsmPushAgent.this,
+                            IsmPushAgent.this.siteManager));
+            while (!shouldTerminate.get()) {
+                this.messagesPending.receive();
+                if (shouldTerminate.get()) {
+                    break;
+                }
+
+                // Wait a short while to see if any other messages show up.
+                pause(IsmPushAgent.this.predelay);
+
+                // Push batches until the queue has been emptied.
+                for (Collection<QueuedIsm> batch = takeBatch();
+                        !batch.isEmpty() && !shouldTerminate.get();
+                        batch = takeBatch()) {
+                    if (!push(batch)) {
+                        pause(Math.min(MAX_BACKOFF, MIN_BACKOFF
+                                << Math.min(this.consecutiveFailures - 1,
+                                        16)));
+                    }
+                }
+            }
+        }
+
         /**
-         * Retrieves the base URL of the site associated with this record
-         * 
-         * @return the associated site's base URL
+         * Sleeps for the specified number of milliseconds or until the thread
+         * is interrupted
          */
-        public String getBaseUrl() {
-            return this.site.baseUrl;
+        private void pause(long milliseconds) {
+            try {
+                Thread.sleep(milliseconds);
+            } catch (InterruptedException ex) {
+                // don't do anything; just drop through.
+            }
         }
 
         /**
-         * Retrieves the ISMs currently queued for delivery to the site
-         * associated with this record
+         * Pushes one batch of ISMs to this worker's site, recovering
+         * gracefully from any network errors that might occur. The HTTP
+         * connection is left open for the next batch.
          * 
-         * @return the ISMs queued for delivery, in {@code Collection} form
+         * @param batch the queued ISMs to be pushed
+         * @return true if the push succeeded, false otherwise
          */
-        public Collection<InterSiteMessage> getIsms() {
-            return Collections.unmodifiableCollection(this.isms);
+        private boolean push(Collection<QueuedIsm> batch) {
+            SiteInfo currentSite = getSiteInfo();
+            Collection<InterSiteMessage> isms
+                    = new ArrayList<InterSiteMessage>(batch.size());
+            String ismsAsXml[] = new String[batch.size()];
+            int i = 0;
+
+            for (QueuedIsm queued : batch) {
+                isms.add(queued.ism);
+                ismsAsXml[i++] = queued.ismAsXml;
+            }
+            try {
+                String replies[] = IsmPushAgent.this.ismExchanger.exchange(
+                        ismsAsXml, currentSite.baseUrl, false);
+                // FIXME: if the remote site sent any ISMs in reply then
+                // maybe we should do something with them. For now,
+                // just discard them because we have no idea what
+                // purpose they might serve.
+                IsmPushAgent.this.siteManager.recordLogRecord(
+                        LogRecordGenerator.ismPushed(isms, currentSite,
+                                replies.length));
+                IsmPushAgent.this.topologyAgent.notifyPush(currentSite.id,
+                        true);
+                this.consecutiveFailures = 0;
+
+                return true;
+            } catch (OperationFailedException ex) {
+                IsmPushAgent.this.siteManager.recordLogRecord(
+                        LogRecordGenerator.ismPushFailed(isms, currentSite,
+                                IsmPushAgent.this.ismExchanger
+                                        .getLastServerErrorMessage(), ex));
+                IsmPushAgent.this.topologyAgent.notifyPush(currentSite.id,
+                        false);
+                this.consecutiveFailures++;
+
+                return false;
+            }
         }
 
         /**
          * Creates and returns a {@code String} representation of this
-         * {@code DestinationSiteRecord}. Intended only for debugging.
+         * {@code DestinationSiteWorker}. Intended only for debugging.
          * 
-         * @return a {@code String} representing this record and describing the
-         *         messages it contains
+         * @return a {@code String} representing this worker and describing the
+         *         messages it has queued
          */
         @Override
-        public String toString() {
+        public synchronized String toString() {
             StringBuilder buf = new StringBuilder();
 
             buf.append("  target site id ");
@@ -387,34 +525,12 @@ public class IsmPushAgent {
             buf.append(this.site.shortName);
             buf.append("):");
 
-            for (InterSiteMessage ism : this.isms) {
+            for (QueuedIsm queued : this.queue) {
                 buf.append(" ");
-                buf.append(ism.getSuggestedFileName());
+                buf.append(queued.ism.getSuggestedFileName());
             }
 
             return buf.toString();
         }
-
-        /**
-         * Provides the recommended key with which to reference this
-         * {@code DestinationSiteRecord}
-         * 
-         * @return the key {@code Object} recommended for use with this record
-         */
-        public Object getKey() {
-            return getKey(this.site);
-        }
-
-        /**
-         * Provides the recommended key with which to associate any
-         * {@code DestinationSiteRecord} referring to the specified site
-         * 
-         * @param site a {@code SiteInfo} representing the site for which
-         *        {@code DestinationSiteRecord} objects' keys are requested
-         * @return the key {@code Object}
-         */
-        public static Object getKey(SiteInfo site) {
-            return site.id;
-        }
     }
 }
@@ -34,6 +34,14 @@
  * 16-Dec-2005: ekoperda rewrote file to to accommodate changes to 
  *              ReceivedMessageAgent, using modern coding conventions
  * 26-May-2006: reformatted the source; updated docs
+ * 18-Oct-2026: agent moved sent and received messages into a MessageLog in
+ *              each directory, migrating existing message files at
+ *              construction time
+ * 18-Oct-2026: agent added the nested ReplayCursor class and a version of
+ *              readMessagesSuitableForRemoteSite() that resumes from one;
+ *              dbSearchAndFetch() now reads public and private ISM's as two
+ *              index ranges; replaced dbSearchAndCount() with
+ *              dbAdvanceCursor(), dbCountInRanges() and dbGetHighestSeqNum()
  */
 
 package org.recipnet.site.core.agent;
@@ -43,12 +51,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -56,6 +66,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 import org.recipnet.site.OperationFailedException;
 import org.recipnet.site.core.MessageDecodingException;
@@ -63,6 +74,7 @@ import org.recipnet.site.core.ResourceException;
 import org.recipnet.site.core.ResourceNotAccessibleException;
 import org.recipnet.site.core.ResourceNotFoundException;
 import org.recipnet.site.core.msg.InterSiteMessage;
+import org.recipnet.site.core.util.MessageLog;
 import org.recipnet.site.shared.SoapUtil;
 import org.recipnet.site.shared.db.SiteInfo;
 import org.xml.sax.SAXException;
@@ -73,31 +85,37 @@ import org.xml.sax.SAXException;
  * subset of this agent's functionality is utilized by the Coordinator software,
  * which also stores inter-site messages on the filesystem.
  * <p>
- * ISM's are stored on the filesystem in XML format, one file per message. Any
- * digital signatures that may be present on the messages are written to these
- * files verbatim. Files are named according to the suggestions of
- * {@code InterSiteMessage.getSuggestedFileName()}. Stored ISM's are grouped
- * into one of three directories depending upon their heritage. ISM's that were
- * generated by the local site are stored in the "sent messages directory".
- * ISM's that were generated by other sites and that have been processed by the
- * local site are stored in the "received messages directory". ISM's that were
- * generated by other sites and that have not yet been processed by the local
- * site are stored in the "held messages" directory. It is possible for this
- * agent to operate in a limited fashion without a received messages directory
- * or a held messages directory.
+ * ISM's are stored on the filesystem in XML format. Any digital signatures
+ * that may be present on the messages are stored verbatim. Stored ISM's are
+ * grouped into one of three directories depending upon their heritage. ISM's
+ * that were generated by the local site are stored in the "sent messages
+ * directory". ISM's that were generated by other sites and that have been
+ * processed by the local site are stored in the "received messages directory".
+ * ISM's that were generated by other sites and that have not yet been
+ * processed by the local site are stored in the "held messages" directory. It
+ * is possible for this agent to operate in a limited fashion without a
+ * received messages directory or a held messages directory.
  * <p>
- * To facilitate the efficient searching and retrieving of ISM files, this agent
+ * Sent and received messages are kept in a {@code MessageLog} within their
+ * directory: an append-only log per originating site, from which runs of
+ * messages can be read sequentially. Held messages are transient and are
+ * stored one file per message, named according to the suggestions of
+ * {@code InterSiteMessage.getSuggestedFileName()}. Earlier versions of this
+ * agent stored sent and received messages that way too; any such message files
+ * found at construction time are moved into the appropriate log.
+ * <p>
+ * To facilitate the efficient searching and retrieving of ISM's, this agent
  * optionally stores message index information in a database table named
- * {@code storedIsms}. Each row of the table corresponds either to a message
- * file in the sent messages directory or a message file in the received
- * messages directory. Message files in the held messages directory are not
- * indexed. Access to the database is via a {@code Connection} object supplied
- * at construction time. To facilitate the sharing of this connection, this
- * agent always {@code synchronize}s on the connection before performing
- * database operations. If the caller chooses not to supply a database
- * connection at construction time, then no message file index is employed,
- * certain methods on this agent may perform slowly, and other methods may fail.
- * Such impaired methods are identified by appropriate source code comments.
+ * {@code storedIsms}. Each row of the table corresponds either to a message in
+ * the sent messages log or a message in the received messages log. Message
+ * files in the held messages directory are not indexed. Access to the database
+ * is via a {@code Connection} object supplied at construction time. To
+ * facilitate the sharing of this connection, this agent always
+ * {@code synchronize}s on the connection before performing database
+ * operations. If the caller chooses not to supply a database connection at
+ * construction time, then no message file index is employed, certain methods
+ * on this agent may perform slowly, and other methods may fail. Such impaired
+ * methods are identified by appropriate source code comments.
  * <p>
  * Some methods on this class search through the stored messages and fetch a
  * subset of them that are suitable for delivery to a remote site. Decisions
@@ -134,14 +152,25 @@ public class MessageFileAgent {
      */
     private Connection conn;
 
-    /** The filesystem directory where sent messages are stored. */
-    private File sentMessagesDirectory;
+    /**
+     * Accepts the names of message files stored by earlier versions of this
+     * agent.
+     */
+    private static final FilenameFilter MESSAGE_FILE_FILTER
+            = new FilenameFilter() {
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(".xml");
+                }
+            };
+
+    /** The log in the sent messages directory. */
+    private MessageLog sentMessageLog;
 
     /**
-     * The filesystem directory where received messages are stored, or null if
-     * storage of received messages has not been enabled.
+     * The log in the received messages directory, or null if storage of
+     * received messages has not been enabled.
      */
-    private File receivedMessagesDirectory;
+    private MessageLog receivedMessageLog;
 
     /**
      * The filesystem directory where held messages are stored, or null if
@@ -160,23 +189,31 @@ public class MessageFileAgent {
      *        for some reason; however, in this case certain methods on this
      *        class may be nonfunctional.
      * @param sentMessagesDirectory identifies the sent-messages directory on
-     *        the local filesystem. The directory must contain nothing but valid
-     *        ISM files. This argument must not be null.
+     *        the local filesystem. Any {@code .xml} files in the directory
+     *        must be valid ISM files; they are moved into the directory's
+     *        message log. This argument must not be null.
      * @param receivedMessagesDirectory identifies the received-messages
-     *        directory on the local filesystem. The directory must contain
-     *        nothing but valid ISM files. This may be null if storage of
+     *        directory on the local filesystem. Any {@code .xml} files in the
+     *        directory must be valid ISM files; they are moved into the
+     *        directory's message log. This may be null if storage of
      *        received messages is not desired.
      * @param heldMessagesDirectory identifies the held-messages directory on
      *        the local filesystem. This may be null if storage of held messages
      *        is not desired.
+     * @throws MessageDecodingException if a message file to be moved into a
+     *         message log could not be parsed.
      * @throws ResourceNotAccessibleException with a nested {@code File} object
      *         if any of the three specified directories is unreadable,
      *         unwritable, or otherwise unusable.
+     * @throws ResourceException if a message log could not be opened, or a
+     *         message file could not be moved into it.
+     * @throws OperationFailedException if {@code DomUtil}'s transformation
+     *         engine failed to parse a message file.
      */
     public MessageFileAgent(int localSiteId, TopologyAgent topologyAgent,
             Connection conn, File sentMessagesDirectory,
             File receivedMessagesDirectory, File heldMessagesDirectory)
-            throws ResourceNotAccessibleException {
+            throws OperationFailedException {
         this.localSiteId = localSiteId;
         this.topologyAgent = topologyAgent;
         this.conn = conn;
@@ -185,14 +222,15 @@ public class MessageFileAgent {
                 || !sentMessagesDirectory.canWrite()) {
             throw new ResourceNotAccessibleException(sentMessagesDirectory);
         }
-        this.sentMessagesDirectory = sentMessagesDirectory;
+        this.sentMessageLog = openMessageLog(sentMessagesDirectory);
         if ((receivedMessagesDirectory != null)
                 && (!receivedMessagesDirectory.isDirectory()
                         || !receivedMessagesDirectory.canRead()
                         || !receivedMessagesDirectory.canWrite())) {
             throw new ResourceNotAccessibleException(receivedMessagesDirectory);
         }
-        this.receivedMessagesDirectory = receivedMessagesDirectory;
+        this.receivedMessageLog = (receivedMessagesDirectory == null) ? null
+                : openMessageLog(receivedMessagesDirectory);
         if ((heldMessagesDirectory != null)
                 && (!heldMessagesDirectory.isDirectory()
                         || !heldMessagesDirectory.canRead()
@@ -249,7 +287,7 @@ public class MessageFileAgent {
      * Takes a caller-supplied {@code InterSiteMessage} object and causes the
      * local site to "generate" it by archiving it on the local filesystem for
      * posterity. The ISM is converted to XML, is digitally signed, and then is
-     * written to the filesystem in the sent-messages directory. If a database
+     * appended to the log in the sent-messages directory. If a database
      * connection was supplied to this object at construction time, the database
      * index table is updated to reflect the new ISM as well.
      * <p>
@@ -264,8 +302,8 @@ public class MessageFileAgent {
      * is not useful for link-local ISM's.
      * 
      * @return a String containing the XML representation of the newly-generated
-     *         ISM. This string is identical to the contents of the sent-message
-     *         file and is returned to the caller as a convenience only.
+     *         ISM. This string is identical to the message as stored and is
+     *         returned to the caller as a convenience only.
      * @param ism the {@code InterSiteMessage} object representing the message
      *        to be generated. Its fields are not altered by this method.
      * @param sigEngine a {@code Signature} engine that the caller has already
@@ -286,15 +324,14 @@ public class MessageFileAgent {
             throw new IllegalArgumentException();
         }
 
-        File file = null;
         try {
             // Sign the message and convert it to XML
             String ismAsXml = ism.toXmlAddSignature(sigEngine);
 
-            // Write the XML to file.
+            // Append the XML to the log.
             IsmIdentifier identifier = new IsmIdentifier(ism);
-            file = calculateFileLocation(identifier);
-            fileWrite(ismAsXml, file);
+            this.sentMessageLog.append(ism.sourceSiteId, ism.sourceSeqNum,
+                    ism.destSiteId, ismAsXml);
 
             // Update the database if one is accessible to us.
             if (this.conn != null) {
@@ -328,10 +365,10 @@ public class MessageFileAgent {
      * @param sigEngine a {@code Signature} engine that the caller has already
      *        initialized in verification mode with the local site's public key.
      * @param deleteFileOnError if this argument is true, and the sent-message
-     *        file was successfully read from the filesystem but its contents
-     *        could not be parsed as an ISM or the ISM could not be verified,
-     *        the sent-message file is deleted. No files are deleted if this
-     *        argument is false.
+     *        was successfully read from the log but its contents could not be
+     *        parsed as an ISM or the ISM could not be verified, the
+     *        sent-message is deleted. No messages are deleted if this argument
+     *        is false.
      * @throws IllegalStateException if no database connection was supplied to
      *         this class at construction time.
      * @throws MessageDecodingException with a nested
@@ -343,27 +380,30 @@ public class MessageFileAgent {
      *         engine failed to execute the translation from XML to DOM tree.
      * @throws ResourceException with a nested {@code java.io.IOException} and
      *         an {@code identifier} of type {@code File} if the message XML
-     *         could not be read from the specified message file.
-     * @throws ResourceNotFoundException with a nested
-     *         {@code java.io.FileNotFoundException} and an {@code identifier}
-     *         of type {@code File} if the specified message file could not be
-     *         found.
+     *         could not be read from the log.
+     * @throws ResourceNotFoundException with an {@code identifier} that's the
+     *         suggested name of the message file if the specified message
+     *         could not be found.
      */
     public void assertSentMessageIsReadable(int localSiteId, long seqNum,
             Signature sigEngine, boolean deleteFileOnError)
             throws MessageDecodingException, OperationFailedException,
             ResourceException, ResourceNotFoundException {
         MessageDecodingException exceptionEncountered = null;
-        String xmlDoc = null;
         IsmIdentifier identifier = new IsmIdentifier(localSiteId, seqNum,
                 InterSiteMessage.ALL_SITES);
-        File file = calculateFileLocation(identifier);
+        MessageLog log = getMessageLog(identifier);
+        String xmlDoc = log.read(localSiteId, seqNum);
+        if (xmlDoc == null) {
+            throw new ResourceNotFoundException(
+                    identifier.getSuggestedFileName());
+        }
         try {
-            xmlDoc = fileRead(file);
             InterSiteMessage.fromXmlCheckSignature(xmlDoc, sigEngine);
         } catch (SAXException ex) {
             exceptionEncountered = new MessageDecodingException(
-                    SiteInfo.INVALID_SITE_ID, file.getName(), xmlDoc, ex);
+                    SiteInfo.INVALID_SITE_ID,
+                    identifier.getSuggestedFileName(), xmlDoc, ex);
         } catch (SignatureException ex) {
             exceptionEncountered = new MessageDecodingException(
                     SiteInfo.INVALID_SITE_ID,
@@ -375,9 +415,9 @@ public class MessageFileAgent {
         if (exceptionEncountered != null) {
             // The ISM could not be read back. This is an error.
             if (deleteFileOnError) {
-                // Delete the message file from the filesystem and, if
-                // possible, the associated row in the database index.
-                file.delete();
+                // Delete the message from the log and, if possible, the
+                // associated row in the database index.
+                log.delete(localSiteId, seqNum);
                 if (this.conn != null) {
                     synchronized (this.conn) {
                         try {
@@ -395,10 +435,10 @@ public class MessageFileAgent {
     /**
      * Returns an array of InterSiteMessage's that represent every message
      * previously sent from the local site (that were stored in the sent
-     * messages directory. The signatures on the messages (if present) are not
+     * messages log). The signatures on the messages (if present) are not
      * verified. The array of messages returned are in order by sequence number.
-     * Throws an exception if the directory could not be listed, any message
-     * file could not be parsed, or an I/O error occurred. This function is
+     * Throws an exception if any message could not be parsed or an I/O error
+     * occurred. This function is
      * present here only to support the special needs of the Coordinator
      * software.
      * 
@@ -412,24 +452,24 @@ public class MessageFileAgent {
      *         engine failed to execute the translation from XML to DOM tree.
      * @throws ResourceException with a nested {@code java.io.IOException} and
      *         an {@code identifier} of type {@code File} if the message XML
-     *         could not be read from one of the message files.
+     *         could not be read from the log.
      */
     public InterSiteMessage[] readAndDecodeAllSentMessages()
             throws MessageDecodingException, OperationFailedException,
             ResourceException {
-        File[] files = sentMessagesDirectory.listFiles();
-        Arrays.sort(files);
-        InterSiteMessage isms[] = new InterSiteMessage[files.length];
+        List<MessageLog.Entry> entries
+                = this.sentMessageLog.readEntries(this.localSiteId, true);
+        InterSiteMessage isms[] = new InterSiteMessage[entries.size()];
         int i = 0;
-        String ismAsXml = null;
-        for (File file : files) {
+        for (MessageLog.Entry entry : entries) {
             try {
-                ismAsXml = fileRead(file);
-                isms[i++] = InterSiteMessage.fromXml(ismAsXml);
+                isms[i++] = InterSiteMessage.fromXml(entry.message);
             } catch (SAXException ex) {
                 // Error parsing this XML into an InterSiteMessage
                 throw new MessageDecodingException(SiteInfo.INVALID_SITE_ID,
-                        file.getName(), ismAsXml, ex);
+                        InterSiteMessage.getSuggestedFileName(
+                                this.localSiteId, entry.seqNum),
+                        entry.message, ex);
             }
         }
         return isms;
@@ -444,7 +484,9 @@ public class MessageFileAgent {
      * <p>
      * This function works properly even if no database connection was supplied
      * at construction time. In that case, because no index table is available,
-     * this function may execute very slowly.
+     * this function may execute very slowly. Otherwise the matching ISM's are
+     * found in the index table and then read from the message log in a single
+     * sequential pass, after the database connection has been released.
      * 
      * @return a count of the number of ISM's that matched the caller-specified
      *         criteria and were suitable for delivery to {@code destSiteId}.
@@ -502,46 +544,97 @@ public class MessageFileAgent {
      *         {@code SQLException} if a database error was encountered.
      * @throws ResourceException with a nested {@code java.io.IOException} and
      *         an {@code identifier} of type {@code File} if the message XML
-     *         could not be read from one of the message files.
+     *         could not be read from the log.
+     * @throws ResourceNotFoundException if the index table identified an ISM
+     *         that is not present in the log.
      */
     public long readMessagesSuitableForRemoteSite(int destSiteId,
             int requestedSiteId, long excludePublicSeqNumsUpTo,
             long excludePrivateSeqNumsUpTo, long maxMessages,
             Collection<String> messagesAsXml) throws MessageDecodingException,
             OperationFailedException, ResourceException {
+        return readMessagesSuitableForRemoteSite(destSiteId, requestedSiteId,
+                excludePublicSeqNumsUpTo, excludePrivateSeqNumsUpTo,
+                maxMessages, null, messagesAsXml).countMatchingIsms;
+    }
+
+    /**
+     * Behaves like the six-argument version of
+     * {@code readMessagesSuitableForRemoteSite()}, but resumes a catch-up
+     * that a remote site is performing in several exchanges. The cursor
+     * returned by one call may be supplied to the next call for the same
+     * destination and requested sites; the count of matching ISM's is then
+     * derived from the cursor's by counting only the ISM's consumed or stored
+     * in between, so that a long catch-up costs time in proportion to the
+     * number of ISM's sent rather than to the number remaining at each
+     * exchange. A cursor that does not describe an earlier position of the
+     * same catch-up is ignored, and the matching ISM's are counted afresh.
+     * 
+     * @return a cursor whose {@code countMatchingIsms} is the number of ISM's
+     *         that matched the caller-specified criteria, as the six-argument
+     *         version would return, and which may be supplied to a later call.
+     * @param cursor a cursor returned by an earlier call, or null.
+     * @throws IllegalStateException as for the six-argument version.
+     * @throws MessageDecodingException as for the six-argument version.
+     * @throws OperationFailedException as for the six-argument version.
+     * @throws ResourceException as for the six-argument version.
+     * @throws ResourceNotFoundException as for the six-argument version.
+     */
+    public ReplayCursor readMessagesSuitableForRemoteSite(int destSiteId,
+            int requestedSiteId, long excludePublicSeqNumsUpTo,
+            long excludePrivateSeqNumsUpTo, long maxMessages,
+            ReplayCursor cursor, Collection<String> messagesAsXml)
+            throws MessageDecodingException, OperationFailedException,
+            ResourceException {
         if ((requestedSiteId != this.localSiteId)
-                && (this.receivedMessagesDirectory == null)) {
+                && (this.receivedMessageLog == null)) {
             throw new IllegalStateException();
         }
         if (this.conn != null) {
             // Do a database lookup. This should be relatively fast.
+            Collection<IsmIdentifier> matchingIdentifiers;
+            ReplayCursor newCursor;
             try {
                 synchronized (this.conn) {
-                    Collection<IsmIdentifier> matchingIdentifiers
-                            = dbSearchAndFetch(
-                                    destSiteId, requestedSiteId,
-                                    excludePublicSeqNumsUpTo,
-                                    excludePrivateSeqNumsUpTo,
-                                    maxMessages, this.conn, this.topologyAgent);
-                    for (IsmIdentifier matchingIdentifier
-                            : matchingIdentifiers) {
-                        File file = calculateFileLocation(matchingIdentifier);
-
-                        messagesAsXml.add(fileRead(file));
-                    }
-                    return dbSearchAndCount(destSiteId, requestedSiteId,
-                            excludePublicSeqNumsUpTo,
+                    matchingIdentifiers = dbSearchAndFetch(destSiteId,
+                            requestedSiteId, excludePublicSeqNumsUpTo,
+                            excludePrivateSeqNumsUpTo, maxMessages,
+                            this.conn, this.topologyAgent);
+                    newCursor = dbAdvanceCursor(cursor, destSiteId,
+                            requestedSiteId, excludePublicSeqNumsUpTo,
                             excludePrivateSeqNumsUpTo, this.conn,
                             this.topologyAgent);
                 }
             } catch (SQLException ex) {
                 throw new OperationFailedException(ex);
             }
+
+            // Read the matching messages from the log in one pass.
+            long seqNums[] = new long[matchingIdentifiers.size()];
+            int i = 0;
+            for (IsmIdentifier matchingIdentifier : matchingIdentifiers) {
+                seqNums[i++] = matchingIdentifier.sourceSeqNum;
+            }
+            String isms[] = getMessageLog(requestedSiteId).read(
+                    requestedSiteId, seqNums);
+            for (i = 0; i < isms.length; i++) {
+                if (isms[i] == null) {
+                    throw new ResourceNotFoundException(
+                            InterSiteMessage.getSuggestedFileName(
+                                    requestedSiteId, seqNums[i]));
+                }
+                messagesAsXml.add(isms[i]);
+            }
+            return newCursor;
         } else {
             // Scan and parse each sent-message file. This can be very slow.
-            return readMessagesSuitableForRemoteSiteByParsingFiles(destSiteId,
-                    requestedSiteId, excludePublicSeqNumsUpTo,
+            // Without an index table there is nothing for a cursor to save.
+            long count = readMessagesSuitableForRemoteSiteByParsingFiles(
+                    destSiteId, requestedSiteId, excludePublicSeqNumsUpTo,
                     excludePrivateSeqNumsUpTo, maxMessages, messagesAsXml);
+            return new ReplayCursor(destSiteId, requestedSiteId,
+                    excludePublicSeqNumsUpTo, excludePrivateSeqNumsUpTo,
+                    count, ReplayCursor.NOT_RESUMABLE);
         }
     }
 
@@ -594,10 +687,10 @@ public class MessageFileAgent {
      * 
      * @param ism the inter-site message whose held-message file is to be
      *        cleared.
-     * @param copyToRecvDir if true, the message file is copied to the received
-     *        messages directory prior to being deleted from the held messages
+     * @param copyToRecvDir if true, the message is appended to the received
+     *        messages log prior to being deleted from the held messages
      *        directory. The copy is aborted silently if a corresponding message
-     *        file already exists in the received messages directory.
+     *        already exists in the received messages log.
      * @throws IllegalStateException if no held messages directory or no
      *         received messages directory was supplied to this agent at
      *         construction time.
@@ -609,16 +702,16 @@ public class MessageFileAgent {
      */
     public void clearHeldMessage(InterSiteMessage ism, boolean copyToRecvDir)
             throws OperationFailedException, ResourceException {
-        if ((heldMessagesDirectory == null) || (receivedMessagesDirectory == null)) {
+        if ((heldMessagesDirectory == null) || (receivedMessageLog == null)) {
             throw new IllegalStateException();
         }
         File heldMsgFile = new File(heldMessagesDirectory,
                 ism.getSuggestedFileName());
         if (copyToRecvDir) {
-            File recvMsgFile = new File(receivedMessagesDirectory,
-                    ism.getSuggestedFileName());
-            if (!recvMsgFile.exists() && heldMsgFile.exists()) {
-                fileCopy(heldMsgFile, recvMsgFile);
+            if (heldMsgFile.exists() && (receivedMessageLog.read(
+                    ism.sourceSiteId, ism.sourceSeqNum) == null)) {
+                receivedMessageLog.append(ism.sourceSiteId, ism.sourceSeqNum,
+                        ism.destSiteId, fileRead(heldMsgFile));
                 if (this.conn != null) {
                     // Update the database summary table.
                     try {
@@ -671,31 +764,27 @@ public class MessageFileAgent {
     }
 
     /**
-     * Deletes every stored message file in the sent messages directory, the
-     * received messages directory (if any), and the held messages directory (if
-     * any). Also deletes the message files index, if a database connection was
-     * supplied to this agent at construction time. This function should be used
-     * with care, as it renders the existing site permanently inoperable and has
+     * Deletes every stored message in the sent messages log, the received
+     * messages log (if any), and the held messages directory (if any). Also
+     * deletes the message files index, if a database connection was supplied
+     * to this agent at construction time. This function should be used with
+     * care, as it renders the existing site permanently inoperable and has
      * <b><i>irrevocable consequences</i></b>.
      * 
      * @throws OperationFailedException with a nested {@code SQLException} if a
      *         low-level error was encountered while accessing the database.
      */
     public void deleteAll() throws OperationFailedException {
-        // Clear all files from the message directories.
-        if (this.receivedMessagesDirectory != null) {
-            for (File file : this.receivedMessagesDirectory.listFiles()) {
-                file.delete();
-            }
+        // Clear the message logs and the held messages directory.
+        if (this.receivedMessageLog != null) {
+            this.receivedMessageLog.deleteAll();
         }
         if (this.heldMessagesDirectory != null) {
             for (File file : this.heldMessagesDirectory.listFiles()) {
                 file.delete();
             }
         }
-        for (File file : this.sentMessagesDirectory.listFiles()) {
-            file.delete();
-        }
+        this.sentMessageLog.deleteAll();
 
         // Clear the database index, if database access is available.
         if (this.conn != null) {
@@ -710,15 +799,18 @@ public class MessageFileAgent {
     }
 
     /**
-     * Rebuilds the message files index by scanning, reading, and parsing all
-     * stored message files. It would be necessary to invoke this method during
-     * a version upgrade or if the index was suspected of being corrupt, for
-     * instance. This method can be quite long-running.
+     * Rebuilds the message files index by scanning the message logs. The
+     * sequence numbers and destinations of the stored messages are recorded in
+     * the logs alongside them, so the messages themselves need not be parsed.
+     * It would be necessary to invoke this method during a version upgrade or
+     * if the index was suspected of being corrupt, for instance. This method
+     * can be long-running.
      * 
      * @throws IllegalStateException if a database connection was not supplied
      *         to this agent at construction time.
      * @throws OperationFailedException with a nested {@code SQLException} if a
      *         low-level error was encountered while accessing the database.
+     * @throws ResourceException if a message log could not be read.
      */
     public void rebuildIsmIndex() throws OperationFailedException {
         if (this.conn == null) {
@@ -728,15 +820,19 @@ public class MessageFileAgent {
             try {
                 dbDeleteAll(this.conn);
 
-                if (this.receivedMessagesDirectory != null) {
-                    for (File file : this.receivedMessagesDirectory.listFiles()) {
-                        InterSiteMessage ism = fileReadAndDecode(file);
-                        dbAddUpdate(new IsmIdentifier(ism), this.conn);
+                for (MessageLog log : new MessageLog[] {
+                        this.receivedMessageLog, this.sentMessageLog }) {
+                    if (log == null) {
+                        continue;
+                    }
+                    for (int siteId : log.getSiteIds()) {
+                        for (MessageLog.Entry entry
+                                : log.readEntries(siteId, false)) {
+                            dbAddUpdate(new IsmIdentifier(siteId,
+                                    entry.seqNum, entry.destSiteId),
+                                    this.conn);
+                        }
                     }
-                }
-                for (File file : this.sentMessagesDirectory.listFiles()) {
-                    InterSiteMessage ism = fileReadAndDecode(file);
-                    dbAddUpdate(new IsmIdentifier(ism), this.conn);
                 }
             } catch (SQLException ex) {
                 throw new OperationFailedException(ex);
@@ -747,8 +843,9 @@ public class MessageFileAgent {
     /**
      * Helper function that mimicks the specification of
      * {@code readMessagesSuitableForRemoteSite()} but does not require access
-     * to a message files index in a database. Because this function scans,
-     * reads, and parses all stored message files, it may execute quite slowly.
+     * to a message files index in a database. Because this function reads and
+     * parses every message in the requested site's log, it may execute quite
+     * slowly.
      * 
      * @return a count of the number of ISM's that matched the caller-specified
      *         criteria and were suitable for delivery to {@code destSiteId}.
@@ -803,7 +900,7 @@ public class MessageFileAgent {
      *         database error was encountered.
      * @throws ResourceException with a nested {@code java.io.IOException} and
      *         an {@code identifier} of type {@code File} if the message XML
-     *         could not be read from one of the message files.
+     *         could not be read from the log.
      */
     private long readMessagesSuitableForRemoteSiteByParsingFiles(
             int destSiteId, int requestedSiteId, long excludePublicSeqNumsUpTo,
@@ -812,14 +909,10 @@ public class MessageFileAgent {
             OperationFailedException, ResourceException {
         long messagesFound = 0;
         long messagesReturned = 0;
-        File[] files = requestedSiteId == this.localSiteId
-                ? this.sentMessagesDirectory.listFiles()
-                : this.receivedMessagesDirectory.listFiles();
-        Arrays.sort(files);
-        for (File file : files) {
-            String ismAsXml = null;
+        for (MessageLog.Entry entry : getMessageLog(requestedSiteId)
+                .readEntries(requestedSiteId, true)) {
+            String ismAsXml = entry.message;
             try {
-                ismAsXml = fileRead(file);
                 InterSiteMessage ism = InterSiteMessage.fromXml(ismAsXml);
                 if (this.topologyAgent.isIsmEligibleForTransmissionTo(ism,
                         destSiteId, excludePublicSeqNumsUpTo,
@@ -834,26 +927,76 @@ public class MessageFileAgent {
             } catch (SAXException ex) {
                 // Error parsing this XML into an InterSiteMessage
                 throw new MessageDecodingException(SiteInfo.INVALID_SITE_ID,
-                        file.getName(), ismAsXml, ex);
+                        InterSiteMessage.getSuggestedFileName(
+                                requestedSiteId, entry.seqNum), ismAsXml, ex);
             }
         }
         return messagesReturned;
     }
 
     /**
-     * Helper function that calculates the filesystem location at which a
-     * specified stored message file would exist.
+     * Helper function that determines the message log in which a specified
+     * stored message would exist.
      * 
-     * @return a {@code File} object that identifies the stored message file's
-     *         location. There is no guarantee that such a file actually exists.
+     * @return the sent messages log or the received messages log. There is no
+     *         guarantee that the message actually exists in it.
      * @param identifier identifies the desired stored message.
      */
-    private File calculateFileLocation(IsmIdentifier identifier) {
-        return new File(
-                identifier.isReceivedMessage(this.localSiteId)
-                        ? this.receivedMessagesDirectory
-                        : this.sentMessagesDirectory,
-                identifier.getSuggestedFileName());
+    private MessageLog getMessageLog(IsmIdentifier identifier) {
+        return identifier.isReceivedMessage(this.localSiteId)
+                ? this.receivedMessageLog : this.sentMessageLog;
+    }
+
+    /**
+     * Helper function that determines the message log in which messages
+     * originated by a specified site would exist.
+     * 
+     * @return the sent messages log or the received messages log.
+     * @param sourceSiteId identifies the originating site.
+     */
+    private MessageLog getMessageLog(int sourceSiteId) {
+        return (sourceSiteId != this.localSiteId) ? this.receivedMessageLog
+                : this.sentMessageLog;
+    }
+
+    /**
+     * Helper function that opens the message log in a specified directory and
+     * moves into it any message files stored in the directory by earlier
+     * versions of this agent. The files are appended in order of name, and
+     * thus in order of ascending sequence number for each originating site,
+     * and are deleted only once the log has been forced to disk.
+     * 
+     * @return the directory's message log.
+     * @param directory the sent messages directory or the received messages
+     *        directory.
+     * @throws MessageDecodingException with a nested
+     *         {@code org.xml.sax.SAXException} and an {@code address} that's
+     *         the name of the message file if one of the message files could
+     *         not be parsed.
+     * @throws OperationFailedException if {@code DomUtil}'s transformation
+     *         engine failed to execute the translation from XML to DOM tree.
+     * @throws ResourceException if the log could not be opened or written, or
+     *         a message file could not be read.
+     */
+    private static MessageLog openMessageLog(File directory)
+            throws MessageDecodingException, OperationFailedException,
+            ResourceException {
+        MessageLog log = new MessageLog(directory);
+        File[] files = directory.listFiles(MESSAGE_FILE_FILTER);
+        if (files.length > 0) {
+            Arrays.sort(files);
+            for (File file : files) {
+                String ismAsXml = fileRead(file);
+                InterSiteMessage ism = decode(ismAsXml, file.getName());
+                log.append(ism.sourceSiteId, ism.sourceSeqNum, ism.destSiteId,
+                        ismAsXml);
+            }
+            log.sync();
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        return log;
     }
 
     /**
@@ -881,38 +1024,30 @@ public class MessageFileAgent {
     }
 
     /**
-     * Helper function that reads a specified stored message file and decodes it
-     * into an {@code InterSiteMessage} object. It is similar in concept to
-     * {@code fileRead()} but goes one step further. Any digital signature that
-     * might be present on the file is not verified.
+     * Helper function that decodes the XML representation of a stored message
+     * into an {@code InterSiteMessage} object. Any digital signature that might
+     * be present on the message is not verified.
      * 
-     * @return an {@code InterSiteMessage} object, as constructed from the
-     *         contents of {@code file}.
-     * @param file identifies the stored message file to be read.
+     * @return an {@code InterSiteMessage} object, as constructed from
+     *         {@code ismAsXml}.
+     * @param ismAsXml the XML representation of the message.
+     * @param name the name by which the message is to be identified in any
+     *        exception.
      * @throws MessageDecodingException with a nested
      *         {@code org.xml.sax.SAXException} and an {@code address} that's
-     *         the name of the message file if the XML read from the message
-     *         file could not be parsed or did not represent an
-     *         {@code InterSiteMessage}.
+     *         {@code name} if the XML could not be parsed or did not represent
+     *         an {@code InterSiteMessage}.
      * @throws OperationFailedException if {@code DomUtil}'s transformation
      *         engine failed to execute the translation from XML to DOM tree.
-     * @throws ResourceException with a nested {@code IOException} if an error
-     *         was encountered while reading the file.
-     * @throws ResourceNotFoundException with a nested
-     *         {@code FileNotFoundException} if the specified {@code file} was
-     *         not found.
      */
-    private static InterSiteMessage fileReadAndDecode(File file)
-            throws MessageDecodingException, OperationFailedException,
-            ResourceException {
-        String ismAsXml = null;
+    private static InterSiteMessage decode(String ismAsXml, String name)
+            throws MessageDecodingException, OperationFailedException {
         try {
-            ismAsXml = fileRead(file);
             return InterSiteMessage.fromXml(ismAsXml);
         } catch (SAXException ex) {
             // Error parsing this XML into an InterSiteMessage
             throw new MessageDecodingException(SiteInfo.INVALID_SITE_ID,
-                    file.getName(), ismAsXml, ex);
+                    name, ismAsXml, ex);
         }
     }
 
@@ -947,47 +1082,6 @@ public class MessageFileAgent {
         }
     }
 
-    /**
-     * Helper function that copies the contents of one file to another.
-     * 
-     * @param source identifies the file that will be read from.
-     * @param dest identifies the file that will be written to.
-     * @throws ResourceException with a nested {@code IOException} and an
-     *         {@code identifier} of type {@code File} if a low-level I/O error
-     *         occurred.
-     */
-    private static void fileCopy(File source, File dest)
-            throws ResourceException {
-        FileInputStream is = null;
-        FileOutputStream os = null;
-        try {
-            is = new FileInputStream(source);
-            os = new FileOutputStream(dest);
-            byte data[] = new byte[4096];
-            int bytesThisOp;
-            do {
-                bytesThisOp = is.read(data, 0, 4096);
-                if (bytesThisOp > 0) {
-                    os.write(data, 0, bytesThisOp);
-                }
-            } while (bytesThisOp > 0);
-            os.flush();
-        } catch (IOException ex) {
-            throw new ResourceException(dest, ex);
-        } finally {
-            try {
-                if (os != null) {
-                    os.close();
-                }
-                if (is != null) {
-                    is.close();
-                }
-            } catch (IOException ex2) {
-                throw new ResourceException(dest, ex2);
-            }
-        }
-    }
-
     /**
      * Utility function that consults the database index and determines the next
      * unused sequence number for an ISM being generated by the local site.
@@ -1107,91 +1201,203 @@ public class MessageFileAgent {
             long excludePrivateSeqNumsUpTo, long maxLimit, Connection conn,
             TopologyAgent topologyAgent) throws SQLException {
         Collection<IsmIdentifier> matches = new ArrayList<IsmIdentifier>();
-        Statement cmd = conn.createStatement();
-        String sql = "SELECT * FROM storedIsms"
-                + " WHERE sourceSiteId="
-                + requestedSiteId
-                + " AND "
-                + topologyAgent.sqlForIsIsmEligibleForTransmissionTo(
+        if (maxLimit <= 0) {
+            return matches;
+        }
+
+        /*
+         * Read the public and the private ISM's as two separate ranges of the
+         * index, each already in sequence number order, and merge them. Each
+         * range need supply no more than maxLimit rows.
+         */
+        String ranges[]
+                = topologyAgent.sqlForIsmRangesEligibleForTransmissionTo(
                         destSiteId, excludePublicSeqNumsUpTo,
-                        excludePrivateSeqNumsUpTo)
-                + " ORDER BY sourceSiteId, sourceSeqNum"
-                + (maxLimit != NO_LIMIT ? " LIMIT " + maxLimit : "") + ";";
-        ResultSet rs = cmd.executeQuery(sql);
-        int matchesAdded = 0;
-        while (rs.next() && (matchesAdded < maxLimit)) {
-            IsmIdentifier ismIdentifier = new IsmIdentifier(rs);
-            matches.add(ismIdentifier);
-
-            // The match-count limiting mechanism below deliberately is
-            // redundant with the "LIMIT" term in the SQL string above.
-            // Not all database engines support "LIMIT" as well as we might
-            // hope. This counting mechanism guarantees that this function
-            // never returns more matches than the caller desired.
-            matchesAdded++;
+                        excludePrivateSeqNumsUpTo);
+        List<List<IsmIdentifier>> rangeMatches
+                = new ArrayList<List<IsmIdentifier>>();
+        Statement cmd = conn.createStatement();
+        try {
+            for (String range : ranges) {
+                List<IsmIdentifier> list = new ArrayList<IsmIdentifier>();
+                ResultSet rs = cmd.executeQuery("SELECT * FROM storedIsms"
+                        + " WHERE sourceSiteId=" + requestedSiteId
+                        + " AND " + range + " ORDER BY sourceSeqNum"
+                        + (maxLimit != NO_LIMIT ? " LIMIT " + maxLimit : "")
+                        + ";");
+                // The count limiting below deliberately is redundant with the
+                // "LIMIT" term above, which not all engines honor.
+                while (rs.next() && (list.size() < maxLimit)) {
+                    list.add(new IsmIdentifier(rs));
+                }
+                rs.close();
+                rangeMatches.add(list);
+            }
+        } finally {
+            cmd.close();
+        }
+
+        List<IsmIdentifier> publicMatches = rangeMatches.get(0);
+        List<IsmIdentifier> privateMatches = rangeMatches.get(1);
+        int i = 0;
+        int j = 0;
+        while ((matches.size() < maxLimit) && ((i < publicMatches.size())
+                || (j < privateMatches.size()))) {
+            if ((j >= privateMatches.size()) || ((i < publicMatches.size())
+                    && (publicMatches.get(i).sourceSeqNum
+                            < privateMatches.get(j).sourceSeqNum))) {
+                matches.add(publicMatches.get(i++));
+            } else {
+                matches.add(privateMatches.get(j++));
+            }
         }
-        cmd.close();
         return matches;
     }
 
     /**
-     * Utility function similar in conception to {@code dbSearchAndFetch()} that
-     * returns a count of matching ISM's rather than identifying the matches
-     * individually. For some database engines, this operation might be
-     * substantially quicker than fetching all the rows from the message files
-     * index.
+     * Utility function that derives a {@code ReplayCursor} for a replay
+     * request from a cursor returned for an earlier request of the same
+     * catch-up, if {@code previous} is such a cursor, or otherwise by
+     * counting the matching ISM's afresh. In the former case the count is
+     * adjusted by the ISM's the requester has consumed since, which lie
+     * between the two requests' sequence numbers, and by the matching ISM's
+     * stored since, which lie above the earlier cursor's highest sequence
+     * number; both are bounded ranges of the index.
      * 
-     * @return the number of stored messages that match the caller-specified
-     *         search criteria.
-     * @param destSiteId identifies the remote site to which the ISM's
-     *        identified by this function might eventually be sent. This
-     *        argument acts as a search criterion.
-     * @param requestedSiteId identifies the site whose originated ISM's are
-     *        desired. This argument acts as a search criterion.
-     * @param excludePublicSeqNumsUpTo identifies the sequence number of the
-     *        last public ISM originated by {@code requestedSiteId} that should
-     *        not be found. Thus, public ISM's originated by
-     *        {@code requestedSiteId} with sequence numbers greater than this
-     *        argument will be found by the search. This argument acts as a
-     *        search criterion unless it has the special value
-     *        {@code InterSiteMessage.INVALID_SEQ_NUM}, in which case no
-     *        sequence number filtering is performed for public ISM's.
-     * @param excludePrivateSeqNumsUpTo identifies the sequence number of the
-     *        last private ISM originated by {@code requestedSiteId} and
-     *        addressed to {@code destSiteId} that should not be found. Thus,
-     *        private ISM's originated by {@code requestedSiteId} and addressed
-     *        to {@code destSiteId} with sequence numbers greater than this
-     *        argument will be found by the search. This argument acts as a
-     *        search criterion unless it has the special value
-     *        {@code InterSiteMessage.INVALID_SEQ_NUM}, in which case no
-     *        sequence number filtering is performed for private ISM's.
+     * @return a cursor describing the request, never null.
+     * @param previous a cursor supplied by the requester, or null.
+     * @param destSiteId as for {@code dbSearchAndFetch()}.
+     * @param requestedSiteId as for {@code dbSearchAndFetch()}.
+     * @param excludePublicSeqNumsUpTo as for {@code dbSearchAndFetch()}.
+     * @param excludePrivateSeqNumsUpTo as for {@code dbSearchAndFetch()}.
      * @param conn the database connection to be used.
-     * @param topologyAgent a reference to the {@code TopologyAgent}. Decisions
-     *        about which ISM's are allowed to be transmitted to which other
-     *        sites are delegated to this object.
+     * @param topologyAgent as for {@code dbSearchAndFetch()}.
      * @throws SQLException if a database error was encountered.
      */
-    private static long dbSearchAndCount(int destSiteId, int requestedSiteId,
+    private static ReplayCursor dbAdvanceCursor(ReplayCursor previous,
+            int destSiteId, int requestedSiteId,
             long excludePublicSeqNumsUpTo, long excludePrivateSeqNumsUpTo,
             Connection conn, TopologyAgent topologyAgent) throws SQLException {
-        Statement cmd = conn.createStatement();
-        String sql = "SELECT COUNT(*) AS count FROM storedIsms"
-                + " WHERE sourceSiteId="
-                + requestedSiteId
-                + " AND "
-                + topologyAgent.sqlForIsIsmEligibleForTransmissionTo(
-                        destSiteId, excludePublicSeqNumsUpTo,
-                        excludePrivateSeqNumsUpTo) + ";";
-        ResultSet rs = cmd.executeQuery(sql);
-        if (!rs.next()) {
-            // The db query didn't work for some reason.
-            throw new SQLException();
+        long highestSeqNum = dbGetHighestSeqNum(requestedSiteId, conn);
+        long count;
+
+        if ((previous == null) || !previous.precedes(destSiteId,
+                requestedSiteId, excludePublicSeqNumsUpTo,
+                excludePrivateSeqNumsUpTo)) {
+            count = dbCountInRanges(requestedSiteId,
+                    topologyAgent.sqlForIsmRangesEligibleForTransmissionTo(
+                            destSiteId, excludePublicSeqNumsUpTo,
+                            excludePrivateSeqNumsUpTo),
+                    InterSiteMessage.INVALID_SEQ_NUM, highestSeqNum, conn);
+        } else {
+            String previousRanges[]
+                    = topologyAgent.sqlForIsmRangesEligibleForTransmissionTo(
+                            destSiteId, previous.excludePublicSeqNumsUpTo,
+                            previous.excludePrivateSeqNumsUpTo);
+
+            count = previous.countMatchingIsms;
+            count -= dbCountInRanges(requestedSiteId,
+                    new String[] { previousRanges[0] },
+                    InterSiteMessage.INVALID_SEQ_NUM,
+                    Math.min(excludePublicSeqNumsUpTo,
+                            previous.highestSeqNumCounted), conn);
+            count -= dbCountInRanges(requestedSiteId,
+                    new String[] { previousRanges[1] },
+                    InterSiteMessage.INVALID_SEQ_NUM,
+                    Math.min(excludePrivateSeqNumsUpTo,
+                            previous.highestSeqNumCounted), conn);
+            count += dbCountInRanges(requestedSiteId,
+                    topologyAgent.sqlForIsmRangesEligibleForTransmissionTo(
+                            destSiteId, excludePublicSeqNumsUpTo,
+                            excludePrivateSeqNumsUpTo),
+                    previous.highestSeqNumCounted, highestSeqNum, conn);
+        }
+
+        return new ReplayCursor(destSiteId, requestedSiteId,
+                excludePublicSeqNumsUpTo, excludePrivateSeqNumsUpTo, count,
+                highestSeqNum);
+    }
+
+    /**
+     * Utility function that counts the stored ISM's originated by a specified
+     * site that match any of several SQL fragments and whose sequence numbers
+     * lie within specified bounds.
+     * 
+     * @return the number of matching ISM's; zero without consulting the
+     *         database if the bounds admit no sequence number.
+     * @param requestedSiteId identifies the site whose originated ISM's are
+     *        to be counted.
+     * @param ranges SQL fragments as generated by
+     *        {@code TopologyAgent.sqlForIsmRangesEligibleForTransmissionTo()}.
+     * @param aboveSeqNum only ISM's with greater sequence numbers are
+     *        counted; {@code InterSiteMessage.INVALID_SEQ_NUM} sets no lower
+     *        bound.
+     * @param upToSeqNum only ISM's with sequence numbers less than or equal to
+     *        this one are counted.
+     * @param conn the database connection to be used.
+     * @throws SQLException if a database error was encountered.
+     */
+    private static long dbCountInRanges(int requestedSiteId, String ranges[],
+            long aboveSeqNum, long upToSeqNum, Connection conn)
+            throws SQLException {
+        if (upToSeqNum <= aboveSeqNum) {
+            return 0;
+        }
+
+        long count = 0;
+        PreparedStatement cmd = null;
+        try {
+            for (String range : ranges) {
+                cmd = conn.prepareStatement("SELECT COUNT(*) AS count"
+                        + " FROM storedIsms WHERE sourceSiteId=? AND " + range
+                        + " AND sourceSeqNum > ? AND sourceSeqNum <= ?;");
+                cmd.setInt(1, requestedSiteId);
+                cmd.setLong(2, aboveSeqNum);
+                cmd.setLong(3, upToSeqNum);
+                ResultSet rs = cmd.executeQuery();
+                if (!rs.next()) {
+                    // The db query didn't work for some reason.
+                    throw new SQLException();
+                }
+                count += rs.getLong("count");
+                cmd.close();
+                cmd = null;
+            }
+        } finally {
+            if (cmd != null) {
+                cmd.close();
+            }
         }
-        long count = rs.getLong("count");
-        cmd.close();
         return count;
     }
 
+    /**
+     * Utility function that returns the highest sequence number among the
+     * stored ISM's originated by a specified site, or
+     * {@code InterSiteMessage.INVALID_SEQ_NUM} if there are none.
+     * 
+     * @param sourceSiteId identifies the originating site.
+     * @param conn the database connection to be used.
+     * @throws SQLException if a database error was encountered.
+     */
+    private static long dbGetHighestSeqNum(int sourceSiteId, Connection conn)
+            throws SQLException {
+        Statement cmd = conn.createStatement();
+        try {
+            ResultSet rs = cmd.executeQuery("SELECT MAX(sourceSeqNum)"
+                    + " AS sourceSeqNum FROM storedIsms WHERE sourceSiteId="
+                    + sourceSiteId + ";");
+            if (!rs.next()) {
+                // The db query didn't work for some reason.
+                throw new SQLException();
+            }
+            long seqNum = rs.getLong("sourceSeqNum");
+            return rs.wasNull() ? InterSiteMessage.INVALID_SEQ_NUM : seqNum;
+        } finally {
+            cmd.close();
+        }
+    }
+
     /**
      * Utility function that adds a row to the message files index in the
      * database to represent a newly-stored message file. In the event a
@@ -1368,4 +1574,109 @@ public class MessageFileAgent {
             }
         }
     }
+
+    /**
+     * Describes how far a remote site's catch-up from the local site has
+     * progressed for one originating site, so that the next exchange of the
+     * catch-up need not count the matching ISM's afresh. A cursor is handed
+     * to the remote site in textual form, by way of {@code toString()}, and
+     * is parsed back by {@code parse()} when the remote site returns it; the
+     * remote site treats it as opaque. Because a cursor only ever saves the
+     * local site work, a cursor that is stale, foreign, or forged at worst
+     * yields an inaccurate count, which requesters use merely as a hint.
+     */
+    public static class ReplayCursor {
+        /**
+         * The value of {@code highestSeqNumCounted} for a cursor from which
+         * no later request may resume.
+         */
+        static final long NOT_RESUMABLE = Long.MIN_VALUE;
+
+        /** Identifies the site to which the ISM's are being replayed. */
+        public final int destSiteId;
+
+        /** Identifies the site that originated the ISM's being replayed. */
+        public final int requestedSiteId;
+
+        /** The request's {@code excludePublicSeqNumsUpTo}. */
+        public final long excludePublicSeqNumsUpTo;
+
+        /** The request's {@code excludePrivateSeqNumsUpTo}. */
+        public final long excludePrivateSeqNumsUpTo;
+
+        /** The number of stored ISM's that matched the request. */
+        public final long countMatchingIsms;
+
+        /**
+         * The highest sequence number of any stored ISM originated by
+         * {@code requestedSiteId} at the time the matches were counted.
+         */
+        final long highestSeqNumCounted;
+
+        /** Constructor that completely populates this object from arguments. */
+        ReplayCursor(int destSiteId, int requestedSiteId,
+                long excludePublicSeqNumsUpTo, long excludePrivateSeqNumsUpTo,
+                long countMatchingIsms, long highestSeqNumCounted) {
+            this.destSiteId = destSiteId;
+            this.requestedSiteId = requestedSiteId;
+            this.excludePublicSeqNumsUpTo = excludePublicSeqNumsUpTo;
+            this.excludePrivateSeqNumsUpTo = excludePrivateSeqNumsUpTo;
+            this.countMatchingIsms = countMatchingIsms;
+            this.highestSeqNumCounted = highestSeqNumCounted;
+        }
+
+        /**
+         * @return true if a request with the specified parameters continues
+         *         the catch-up this cursor describes, without having moved
+         *         backward, so that its count may be derived from this one's.
+         */
+        boolean precedes(int destSiteId, int requestedSiteId,
+                long excludePublicSeqNumsUpTo, long excludePrivateSeqNumsUpTo) {
+            return (this.highestSeqNumCounted != NOT_RESUMABLE)
+                    && (this.destSiteId == destSiteId)
+                    && (this.requestedSiteId == requestedSiteId)
+                    && (this.excludePublicSeqNumsUpTo
+                            <= excludePublicSeqNumsUpTo)
+                    && (this.excludePrivateSeqNumsUpTo
+                            <= excludePrivateSeqNumsUpTo);
+        }
+
+        /**
+         * Returns the textual form of this cursor, which {@code parse()}
+         * accepts.
+         */
+        @Override
+        public String toString() {
+            return "1:" + this.destSiteId + ":" + this.requestedSiteId + ":"
+                    + this.excludePublicSeqNumsUpTo + ":"
+                    + this.excludePrivateSeqNumsUpTo + ":"
+                    + this.countMatchingIsms + ":"
+                    + this.highestSeqNumCounted;
+        }
+
+        /**
+         * Reconstructs a cursor from the textual form returned by
+         * {@code toString()}.
+         * 
+         * @return the cursor, or null if {@code s} is null or is not the
+         *         textual form of a cursor.
+         */
+        public static ReplayCursor parse(String s) {
+            if (s == null) {
+                return null;
+            }
+            String fields[] = s.trim().split(":");
+            if ((fields.length != 7) || !fields[0].equals("1")) {
+                return null;
+            }
+            try {
+                return new ReplayCursor(Integer.parseInt(fields[1]),
+                        Integer.parseInt(fields[2]),
+                        Long.parseLong(fields[3]), Long.parseLong(fields[4]),
+                        Long.parseLong(fields[5]), Long.parseLong(fields[6]));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+    }
 }
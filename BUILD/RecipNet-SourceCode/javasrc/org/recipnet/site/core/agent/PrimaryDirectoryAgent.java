@@ -22,6 +22,8 @@
  *              and handle them more appropriately
  * 06-Nov-2006: jobollin modified source comments
  * 07-Jan-2008: ekoperda added filename trim()-ing throughout to fix bug #1870
+ * 18-Oct-2026: agent replaced CvsInvoker with FileVersionStore
+ * 18-Oct-2026: agent replaced promoteTempFile() with promoteTempFiles()
  */
 
 package org.recipnet.site.core.agent;
@@ -39,7 +41,7 @@ import org.recipnet.site.core.ResourceNotAccessibleException;
 import org.recipnet.site.core.ResourceNotFoundException;
 import org.recipnet.site.core.SiteManager;
 import org.recipnet.site.core.util.CoreProcessWrapper;
-import org.recipnet.site.core.util.CvsInvoker;
+import org.recipnet.site.core.util.FileVersionStore;
 import org.recipnet.site.core.util.LogRecordGenerator;
 import org.recipnet.site.core.util.PrimaryDirectory;
 import org.recipnet.site.core.util.SecondaryDirectory;
@@ -62,17 +64,17 @@ import org.recipnet.site.shared.db.SampleHistoryInfo;
  * be the most current set of data files available for the associated sample.
  * It is assumed that users are free to "muck with" the files inside primary
  * directories at will, via means external to the application. Such changes
- * must be detected and echoed in the local site's database and CVS repository
- * for consistency's sake. To this end, the caller must periodically scan the
- * contents of each registered primary directory and update database state as
- * appropriate; the {@code scanDirectory()} method assists with this.
+ * must be detected and echoed in the local site's database and file version
+ * store for consistency's sake. To this end, the caller must periodically
+ * scan the contents of each registered primary directory and update database
+ * state as appropriate; the {@code scanDirectory()} method assists with this.
  * </p><p>
- * Sample data files are versioned with the help of the CVS program. As new
- * files are added to a primary directory, existing files are overwritten, and
- * old files are removed, CVS is notified of the change and stores a detailed
- * record of the change in the CVS repository. {@code SecondaryDirectoryAgent}
- * may access the same CVS repository subsequently as it recreates the set of
- * data files associated with a particular sample/version.
+ * Sample data files are versioned with the help of a {@code FileVersionStore}.
+ * As new files are added to a primary directory, existing files are
+ * overwritten, and old files are removed, the store is notified of the change
+ * and records a new revision of the file. {@code SecondaryDirectoryAgent} may
+ * access the same store subsequently as it recreates the set of data files
+ * associated with a particular sample/version.
  * </p><p>
  * Note that in every case when changes are made to the files in a primary
  * directory, or prior changes have been detected, the caller is responsible
@@ -99,8 +101,8 @@ public class PrimaryDirectoryAgent {
 
     private final String uploadedFilePrefix;
 
-    /** Reference to a CvsInvoker object provided at construction time */
-    private final CvsInvoker cvsInvoker;
+    /** Reference to a FileVersionStore object provided at construction time */
+    private final FileVersionStore versionStore;
 
     /** Reference to a SiteManager object provided at construction time */
     private final SiteManager siteManager;
@@ -129,9 +131,10 @@ public class PrimaryDirectoryAgent {
      *        particular lab directory.
      * @param uploadedFilePrefix a string that should be prepended to the name
      *        of each temporary file created during this object's operation.
-     * @param cvsInvoker reference to an already-initialized CvsInvoker object
-     *        that this object should use. (The same CvsInvoker object should be
-     *        used by {@code SecondaryDirectoryAgent} also.)
+     * @param versionStore reference to an already-initialized
+     *        FileVersionStore object that this object should use. (The same
+     *        FileVersionStore object should be used by
+     *        {@code SecondaryDirectoryAgent} also.)
      * @param siteManager reference to an already-initialized SiteManager object
      *        that this object should use. Only one method,
      *        {@code SiteManager.recordLogRecord()}, is called.
@@ -139,7 +142,7 @@ public class PrimaryDirectoryAgent {
     public PrimaryDirectoryAgent(String repositoryBaseUrl,
             File repositoryBaseDirectory, String createDirScriptFilespec,
             String labDirSizeScriptFilespec, String uploadedFilePrefix,
-            CvsInvoker cvsInvoker, SiteManager siteManager) {
+            FileVersionStore versionStore, SiteManager siteManager) {
         /*
          * Note: parameter labDirSizeScriptFilespec is no longer used, and will
          * be removed in some future version
@@ -149,7 +152,7 @@ public class PrimaryDirectoryAgent {
         this.repositoryBaseDirectory = repositoryBaseDirectory;
         this.createDirScriptFilespec = createDirScriptFilespec;
         this.uploadedFilePrefix = uploadedFilePrefix;
-        this.cvsInvoker = cvsInvoker;
+        this.versionStore = versionStore;
         this.siteManager = siteManager;
     }
 
@@ -170,8 +173,10 @@ public class PrimaryDirectoryAgent {
      *         directory to be created in an illegal filesystem location, one
      *         not beneath the associated lab's base directory.
      * @throws OperationFailedException on low-level error.
-     * @throws ProcessAbnormalExitException if CVS terminated abnormally.
-     * @throws ProcessIncompleteException if CVS was interrupted unexpectedly.
+     * @throws ProcessAbnormalExitException if the directory creation script
+     *         terminated abnormally.
+     * @throws ProcessIncompleteException if the directory creation script was
+     *         interrupted unexpectedly.
      */
     public Collection<RepositoryFileInfo> createDirectory(
             PrimaryDirectory primDir) throws InvalidDataException,
@@ -208,12 +213,12 @@ public class PrimaryDirectoryAgent {
             siteManager.recordLogRecord(proc.getLogRecord());
             proc.waitFor(true);
 
-            // Tell CVS about the new primary directory.
-            this.cvsInvoker.registerDirectory(primDir.getCvsTreeName(),
+            // Tell the version store about the new primary directory.
+            this.versionStore.registerDirectory(primDir.getCvsTreeName(),
                     primDir.getFile(this.repositoryBaseDirectory));
 
             /*
-             * Register with CVS all existing files inside the new primary
+             * Version all existing files inside the new primary
              * directory.
              */
             File existingFiles[]
@@ -233,7 +238,7 @@ public class PrimaryDirectoryAgent {
                 if (existingFile.isFile() && !existingFile.isHidden()) {
                     filesForCaller.add(new RepositoryFileInfo(primDir.sampleId,
 			    existingFile.getName().trim(),
-                            this.cvsInvoker.commitAddedFile(existingFile),
+                            this.versionStore.commitAddedFile(existingFile),
                             existingFile.length(), null));
                 }
             }
@@ -343,81 +348,79 @@ public class PrimaryDirectoryAgent {
     }
 
     /**
-     * For an existing temporary file within a primary repository directory,
-     * "promotes" that file to sample data file status by registering it with
-     * the CVS repository and returning information that the caller should
-     * perist in the database. If the target file (identified by
-     * {@code fileName}) already exists, it is overwritten.
+     * For existing temporary files within a primary repository directory,
+     * "promotes" those files to sample data file status by registering them
+     * with the file version store and returning information that the caller
+     * should perist in the database. Any target file (identified by an
+     * element of {@code fileNames}) that already exists is overwritten. All
+     * the files are committed to the version store together.
      * 
      * @param primaryDirectoryInfo identifies the primary directory in which the
-     *        existing temporary file resides.
-     * @param fileName the desired name for the sample data file to be created
-     *        as a result of promotion.
-     * @param tempFile the existing temporary file to be promoted, presumably
-     *        lying within the specified primary repository directory. This
-     *        reference should have been obtained from a prior call to
-     *        {@code createTempFile()} for the same primary repository
-     *        directory.
-     * @param description a [@code String} containing the description for the
-     *        newly-promoted repository file; used only in initializing the
-     *        {@code RepositoryFileInfo} to be returned
-     * @return an incomplete {@code RepositoryFileInfo} object that describes
-     *         the newly-created sample data file. A typical caller would
-     *         persist this knowledge in the database for future use by
-     *         {@code SecondaryDirectoryAgent}.
+     *        existing temporary files reside.
+     * @param fileNames the desired names for the sample data files to be
+     *        created as a result of promotion.
+     * @param tempFiles the existing temporary files to be promoted, parallel to
+     *        {@code fileNames} and presumably lying within the specified
+     *        primary repository directory. These references should have been
+     *        obtained from prior calls to {@code createTempFile()} for the same
+     *        primary repository directory.
+     * @param digests the digests of the temporary files' contents as accepted
+     *        by {@link FileVersionStore#commitFiles(File[], String[])},
+     *        parallel to {@code fileNames}; elements may be {@code null}.
+     * @param descriptions {@code String}s containing the descriptions for the
+     *        newly-promoted repository files, parallel to {@code fileNames};
+     *        used only in initializing the {@code RepositoryFileInfo}s to be
+     *        returned
+     * @return incomplete {@code RepositoryFileInfo} objects that describe the
+     *         newly-created sample data files, parallel to {@code fileNames}.
+     *         A typical caller would persist this knowledge in the database
+     *         for future use by {@code SecondaryDirectoryAgent}.
      * @throws OperationFailedException on low-level error.
      * @throws ResourceNotAccessibleException if file promotion failed due to a
      *         permissions problem.
      */
-    public RepositoryFileInfo promoteTempFile(
-            PrimaryDirectory primaryDirectoryInfo, String fileName,
-            File tempFile, String description) throws OperationFailedException,
-            ResourceNotAccessibleException {
-        File realFile = new File(
-                primaryDirectoryInfo.getFile(this.repositoryBaseDirectory),
-                fileName);
-        boolean realFileExisted = realFile.exists();
+    public RepositoryFileInfo[] promoteTempFiles(
+            PrimaryDirectory primaryDirectoryInfo, String fileNames[],
+            File tempFiles[], String digests[], String descriptions[])
+            throws OperationFailedException, ResourceNotAccessibleException {
+        File directory
+                = primaryDirectoryInfo.getFile(this.repositoryBaseDirectory);
+        File realFiles[] = new File[fileNames.length];
 
         // Manipulate files on the filesystem.
-        if (realFileExisted) {
-            if (!realFile.delete()) {
+        for (int i = 0; i < fileNames.length; i++) {
+            realFiles[i] = new File(directory, fileNames[i]);
+            if (realFiles[i].exists() && !realFiles[i].delete()) {
                 // Couldn't delete the existing real file for some reason.
-                throw new ResourceNotAccessibleException(realFile);
+                throw new ResourceNotAccessibleException(realFiles[i]);
+            }
+            if (!tempFiles[i].renameTo(realFiles[i])) {
+                // Couldn't move the file for some reason.
+                throw new ResourceNotAccessibleException(realFiles[i]);
             }
-        }
-        if (!tempFile.renameTo(realFile)) {
-            // Couldn't move the file for some reason.
-            throw new ResourceNotAccessibleException(realFile);
         }
 
-        // Inform CVS about the new/updated file.
-        try {
-            String cvsRevision = realFileExisted
-                    ? this.cvsInvoker.commitModifiedFile(realFile)
-                    : this.cvsInvoker.commitAddedFile(realFile);
-                    
-            if (cvsRevision == null) {
-                /*
-                 * The file wasn't committed, probably because its contents
-                 * haven't changed. Obtain the existing CVS revision number for
-                 * the file.
-                 */
-                cvsRevision = this.cvsInvoker.getFileRevision(realFile);
-            }
+        // Inform the version store about the new/updated files.
+        String cvsRevisions[]
+                = this.versionStore.commitFiles(realFiles, digests);
+        RepositoryFileInfo fileInfos[]
+                = new RepositoryFileInfo[fileNames.length];
 
-            return new RepositoryFileInfo(primaryDirectoryInfo.sampleId,
-                    fileName, cvsRevision, realFile.length(), description);
-        } catch (ProcessAbnormalExitException ex) {
-            throw new OperationFailedException(ex);
+        for (int i = 0; i < fileNames.length; i++) {
+            fileInfos[i] = new RepositoryFileInfo(
+                    primaryDirectoryInfo.sampleId, fileNames[i],
+                    cvsRevisions[i], realFiles[i].length(), descriptions[i]);
         }
+
+        return fileInfos;
     }
 
     /**
      * Eradicates an existing sample data file from its primary repository
      * directory by removing the file from the filesystem, and removing all
-     * traces of the file from the CVS repository. Because such an operation
-     * defeats the file-versioning mechanism, its use should be restricted to
-     * special cases. Callers are encouraged to call
+     * traces of the file from the file version store. Because such an
+     * operation defeats the file-versioning mechanism, its use should be
+     * restricted to special cases. Callers are encouraged to call
      * {@code getFileAggregateSize()} and obtain a two-step, informed
      * confirmation from the user before invoking this method.
      * 
@@ -439,7 +442,8 @@ public class PrimaryDirectoryAgent {
         if (!fileToRemove.exists()) {
             throw new ResourceNotFoundException(fileToRemove);
         } else {
-            this.cvsInvoker.eradicateFile(primaryDirectoryInfo.getCvsTreeName(),
+            this.versionStore.eradicateFile(
+                    primaryDirectoryInfo.getCvsTreeName(),
                     primaryDirectoryInfo.getFile(this.repositoryBaseDirectory),
                     fileName);
         }
@@ -448,9 +452,10 @@ public class PrimaryDirectoryAgent {
     /**
      * Calculates the total number of bytes presently used to store all versions
      * of a specified sample data file. The total includes storage within the
-     * CVS repository and storage of the most recent version within the primary
-     * repository directory. This number is for informational purposes only, and
-     * often is invoked in preparation for a call to {@code eradicateFile()}.
+     * file version store and storage of the most recent version within the
+     * primary repository directory. This number is for informational purposes
+     * only, and often is invoked in preparation for a call to
+     * {@code eradicateFile()}.
      * 
      * @param primaryDirectoryInfo identifies the primary repository directory
      *        within which the file whose size should be calculated resides.
@@ -472,7 +477,7 @@ public class PrimaryDirectoryAgent {
         if (!file.exists()) {
             throw new ResourceNotFoundException(file);
         } else {
-            return this.cvsInvoker.getVersionedFileSize(
+            return this.versionStore.getVersionedFileSize(
                     primaryDirectoryInfo.getCvsTreeName(), fileName)
                     + file.length();
         }
@@ -480,9 +485,9 @@ public class PrimaryDirectoryAgent {
 
     /**
      * Removes an existing sample data file from its primary repository
-     * directory and records the removal in the CVS repository. A typical caller
-     * would subsequently alter the corresponding row in the 'repositoryFiles'
-     * database table to record the removal.
+     * directory and records the removal in the file version store. A typical
+     * caller would subsequently alter the corresponding row in the
+     * 'repositoryFiles' database table to record the removal.
      * 
      * @param primaryDirectoryInfo identifies the primary repository directory
      *        within which the file to be removed lies.
@@ -506,7 +511,7 @@ public class PrimaryDirectoryAgent {
         } else if (!fileToRemove.delete()) {
             throw new ResourceNotAccessibleException(fileToRemove);
         } else {
-            this.cvsInvoker.commitRemovedFile(fileToRemove);
+            this.versionStore.commitRemovedFile(fileToRemove);
         }
     }
 
@@ -550,9 +555,9 @@ public class PrimaryDirectoryAgent {
         } else if (!oldFile.renameTo(newFile)) {
             throw new ResourceNotAccessibleException(oldFile);
         } else {
-            this.cvsInvoker.commitRemovedFile(oldFile);
+            this.versionStore.commitRemovedFile(oldFile);
             return new RepositoryFileInfo(primaryDirectoryInfo.sampleId,
-                    newFileName, this.cvsInvoker.commitAddedFile(newFile),
+                    newFileName, this.versionStore.commitAddedFile(newFile),
                     newFile.length(), oldFileInfo.description);
         }
     }
@@ -561,11 +566,11 @@ public class PrimaryDirectoryAgent {
      * Scans a particular primary repository directory and detects any
      * differences since the last scan. New files, modified files, and removed
      * files all are detected by comparing actual files on the filesystem
-     * against records stored in CVS (by previous calls to this class). For
-     * each detected difference, CVS is notified of the new/modified/removed
-     * file and appropriate entries are added to {@code changesToAdd} and/or
-     * {@code changesToDeactivate}. The caller is responsible for recording the
-     * scan's results in the database.
+     * against records kept in the file version store (by previous calls to
+     * this class). For each detected difference, the store is notified of the
+     * new/modified/removed file and appropriate entries are added to
+     * {@code changesToAdd} and/or {@code changesToDeactivate}. The caller is
+     * responsible for recording the scan's results in the database.
      * 
      * @param dirToScan the {@code PrimaryDirectory} object that identifies the
      *        directory in the repository filesystem that should be scanned.
@@ -621,14 +626,14 @@ public class PrimaryDirectoryAgent {
                     && !dirAsExpected.containsFile(actualFile)) {
                 /*
                  * Detected a file that Repository Manager doesn't know about.
-                 * Commit the new file to CVS and generate a new
+                 * Commit the new file to the store and generate a new
                  * RepositoryFileInfo record to inform the caller about what
                  * happened.
                  */
                 try {
                     filesToAdd.add(new RepositoryFileInfo(dirToScan.sampleId,
 			    actualFile.getName().trim(),
-                            this.cvsInvoker.commitAddedFile(actualFile),
+                            this.versionStore.commitAddedFile(actualFile),
                             actualFile.length(), null));
                 } catch (OperationFailedException ex) {
                     this.siteManager.recordLogRecord(
@@ -654,28 +659,28 @@ public class PrimaryDirectoryAgent {
             try {
                 if (matchingActualFile == null) {
                     /*
-                     * Detected a missing file that CVS used to know about (per
-                     * our records). Tell CVS to remove the file and commit the
-                     * removal. Instruct the caller to deactivate the old
+                     * Detected a missing file that the store used to know about
+                     * (per our records). Commit the removal to the store.
+                     * Instruct the caller to deactivate the old
                      * RepositoryFileInfo record.
                      */
                     missingFile = new File(
                             dirToScan.getFile(this.repositoryBaseDirectory),
                             expectedFile.fileName);
-                    this.cvsInvoker.commitRemovedFile(missingFile);
+                    this.versionStore.commitRemovedFile(missingFile);
                     filesToDeactivate.add(expectedFile);
-                } else if (this.cvsInvoker.checkFileModified(
+                } else if (this.versionStore.checkFileModified(
                         matchingActualFile)) {
                     /*
-                     * Detected an existing file that CVS says has been
-                     * modified. Commit the new version to CVS. Instruct the
-                     * caller to deactivate the old RepositoryChangeInfo record
-                     * and create a new one in its place.
+                     * Detected an existing file that the store says has been
+                     * modified. Commit the new version to the store. Instruct
+                     * the caller to deactivate the old RepositoryChangeInfo
+                     * record and create a new one in its place.
                      */
                     filesToAdd.add(new RepositoryFileInfo(
                             dirToScan.sampleId,
                             matchingActualFile.getName().trim(),
-                            this.cvsInvoker.commitModifiedFile(
+                            this.versionStore.commitModifiedFile(
                                     matchingActualFile),
                             matchingActualFile.length(),
                             expectedFile.description));
@@ -767,13 +772,13 @@ public class PrimaryDirectoryAgent {
      * files that are to populate the primary directory, possibly by querying an
      * existing {@code SecondaryDirectory} object.
      * </p><p>
-     * This method makes changes to the primary directory filesystem and CVS
-     * repository that the caller is reponsible for recording into the database;
-     * upon return, {@code filesToDeactivate} and {@code filesToAdd} will convey
-     * the neccessary details to the caller. The {@code RepositoryFileInfo}
-     * objects in {@code filesToAdd} after this call is made will have had their
-     * {@code originalSampleHistoryId} updated to reflect that of the target
-     * file.
+     * This method makes changes to the primary directory filesystem and file
+     * version store that the caller is reponsible for recording into the
+     * database; upon return, {@code filesToDeactivate} and {@code filesToAdd}
+     * will convey the neccessary details to the caller. The
+     * {@code RepositoryFileInfo} objects in {@code filesToAdd} after this call
+     * is made will have had their {@code originalSampleHistoryId} updated to
+     * reflect that of the target file.
      * </p>
      * 
      * @param targetFiles a collection of {@code RepositoryFileInfo} objects
@@ -841,24 +846,24 @@ public class PrimaryDirectoryAgent {
                      */
                     filesToDeactivate.add(rfi.fileName);
                 }
-                cvsInvoker.replaceFileWithRevision(
+                versionStore.replaceFileWithRevision(
                         primaryDirectoryInfo.getFile(
                                 this.repositoryBaseDirectory),
                         rfi.fileName, rfi.cvsRevision);
                 /*
-                 * The file doesn't need to be CVS 'added' even if there isn't a
+                 * The file doesn't need to be 'added' even if there isn't a
                  * copy of it present in the filesystem because replace with
                  * version is always treated as a modification.
                  */
-                String cvsRevision = cvsInvoker.commitModifiedFile(file);
+                String cvsRevision = versionStore.commitModifiedFile(file);
                 if (cvsRevision == null) {
                     /*
                      * The file wasn't committed, probably because its contents
                      * of the revert-to version were identical to the current
                      * version. (this can happen with multiple reversions)
-                     * Obtain the existing CVS revision number for the file.
+                     * Obtain the existing revision number for the file.
                      */
-                    cvsRevision = this.cvsInvoker.getFileRevision(file);
+                    cvsRevision = this.versionStore.getFileRevision(file);
                 }
                 RepositoryFileInfo rfiToAdd = new RepositoryFileInfo(
                         rfi.sampleId, rfi.fileName, cvsRevision, file.length(),
@@ -34,6 +34,20 @@
  * 02-Jan-2009: ekoperda enhanced RemoteSiteState.notifyOtherSitesIsmProcessed
  *              with special logic for JoinISM's for increased efficiency
  * 02-Jan-2009: ekoperda relaxed arguments to generatePullRequests()
+ * 18-Oct-2026: agent moved decoding and signature verification in
+ *              exchangeInterSiteMessages() onto a pool of decoding threads,
+ *              outside this object's lock; added stop()
+ * 18-Oct-2026: agent allowed several ISM's from different sites that affect
+ *              disjoint entities to be in processing at once, and added
+ *              reporting of the parallelism achieved to periodicCheck()
+ * 18-Oct-2026: agent modified hintDispatchNext() to have Sample Manager
+ *              write any sample ISM's staged by a bulk import before another
+ *              core module is dispatched an ISM in bootstrap mode
+ * 18-Oct-2026: agent passed replay cursors between ReplayResponseISM's and
+ *              later ReplayRequestISM's in both directions
+ * 18-Oct-2026: agent modified RemoteSiteState so that a head ISM that fails
+ *              after another site's ISM was processed concurrently with it
+ *              remains eligible for dispatch
  */
 
 package org.recipnet.site.core.agent;
@@ -46,9 +60,21 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.LogRecord;
 import org.recipnet.site.InvalidDataException;
 import org.recipnet.site.OperationFailedException;
@@ -72,14 +98,37 @@ import org.xml.sax.SAXException;
 /**
  * Helper class used by Site Manager to keep track of received inter-site
  * messages as they are decoded, held, processed, and finally cleared. It
- * synchronizes ISM processing across the three core modules so that only one
- * ISM is processed at a time. It handles all ProcessedIsmCM messages that Site
+ * synchronizes ISM processing across the three core modules so that ISM's
+ * are processed one at a time from each site and in sequence-number order,
+ * and so that two ISM's that may affect a common record are never in
+ * processing at once. It handles all ProcessedIsmCM messages that Site
  * Manager's worker thread receives and uses these notices to mark completion
  * of an ISM that was formerly being processed. It maintains a queue of pending
  * messages in memory and manages the corresponding message files in the
  * 'msgs-held' directory of the filesystem. It uses methods on Site Manager to
  * keep the 'publicSeqNum' and 'privateSeqNum' columns of the 'sites' table
  * consistent with current ISM state.
+ * <p>
+ * Decoding an incoming ISM and verifying its signature are by far the most
+ * expensive steps of an exchange, and depend on nothing but the message and
+ * its originating site's public key. They are therefore performed on a pool
+ * of decoding threads, without holding this object's lock, and several
+ * exchanges may decode concurrently. Each exchange keeps only a bounded
+ * number of messages in flight and hands decoded messages back, one at a
+ * time and in the order they were received, to the steps that update the
+ * state table. Because each site's queue is ordered by sequence number,
+ * processing order remains per-site sequential however the decoding
+ * threads are scheduled.
+ * <p>
+ * Up to a configured number of ISM's may be in processing at once, which
+ * lets the three core modules work concurrently and spares each of them a
+ * round-trip through Site Manager between consecutive messages. ISM's are
+ * dispatched concurrently only if they originated at different sites and the
+ * entities reported by {@code InterSiteMessage.getAffectedEntities()} are
+ * disjoint; an ISM that does not report its entities is processed alone.
+ * ISM's from different sites that do not affect a common entity commute in
+ * the sense described by {@code InterSiteMessage}, and those that must wait
+ * for another site's ISM still fail and are replayed as before.
  */
 public class ReceivedMessageAgent {
     /**
@@ -144,16 +193,41 @@ public class ReceivedMessageAgent {
     private Map<Integer, RemoteSiteState> remoteSites;
 
     /**
-     * Pointer to the ISM currently "in processing", or null if no ISM is
-     * currently being processed. One component of the state table.
+     * Maps each ISM currently "in processing" to the timestamp at which it
+     * was dispatched. ISM's are compared by identity. One component of the
+     * state table.
      */
-    private InterSiteMessage currentMessage;
+    private final Map<InterSiteMessage, Long> messagesInProcessing;
 
     /**
-     * The timestamp at which the current ISM started to be processed. Value is
-     * undefined if there is no current ISM. One component of the state table.
+     * Configuration directive set by the constructor that limits the number
+     * of ISM's that may be in processing at once.
      */
-    private long currentMessageDispatchTimestamp;
+    private final int maxMessagesInProcessing;
+
+    /**
+     * The {@code System.nanoTime()} at which the size of
+     * {@code messagesInProcessing} last changed or was last accounted for.
+     */
+    private long parallelismTimestamp;
+
+    /**
+     * The number of nanoseconds since the last report of parallelism during
+     * which at least one ISM was in processing
+     */
+    private long busyNanos;
+
+    /**
+     * The sum, over the time since the last report of parallelism, of the
+     * number of ISM's in processing; in message-nanoseconds
+     */
+    private long messageNanos;
+
+    /**
+     * The largest number of ISM's in processing at once since the last report
+     * of parallelism
+     */
+    private int peakMessagesInProcessing;
 
     /**
      * The siteId taken from the *previous* message that was processed, or
@@ -163,6 +237,19 @@ public class ReceivedMessageAgent {
 
     private boolean bootstrapMode;
 
+    /**
+     * The pool of threads that decode incoming ISM's and verify their
+     * signatures, or null if decoding is to be performed by the exchanging
+     * thread itself; set by the constructor.
+     */
+    private final ExecutorService decodingExecutor;
+
+    /**
+     * The maximum number of messages any one exchange may have waiting to be
+     * decoded or handed back at once; set by the constructor.
+     */
+    private final int decodingWindow;
+
     /**
      * Constructor.
      * 
@@ -203,13 +290,23 @@ public class ReceivedMessageAgent {
      *        the local site will replay at the request of a remote site, per
      *        exchange.
      * @param bootstrapMode
+     * @param decodingThreads decoded value of the configuration directive
+     *        'SitIsmDecodingThreads'; the number of threads that decode
+     *        incoming ISM's and verify their signatures, or 0 for one per
+     *        available processor. If the resulting number is 1, ISM's are
+     *        decoded by the thread that performs the exchange.
+     * @param maxMessagesInProcessing decoded value of the configuration
+     *        directive 'SitIsmProcessingLimit'; the number of received ISM's
+     *        that may be in processing at once. Ignored in bootstrap mode,
+     *        where ISM's are processed one at a time.
      */
     public ReceivedMessageAgent(SiteManager siteManager,
             SampleManager sampleManager, RepositoryManager repositoryManager,
             MessageFileAgent messageFileAgent, TopologyAgent topologyAgent,
             boolean alwaysDumpMessages, long messageHoldTime,
             long messageProcessingTimeout, int maxReplayedIsmsPerExchange,
-            boolean bootstrapMode) {
+            boolean bootstrapMode, int decodingThreads,
+            int maxMessagesInProcessing) {
         this.siteManager = siteManager;
         this.sampleManager = sampleManager;
         this.repositoryManager = repositoryManager;
@@ -220,10 +317,47 @@ public class ReceivedMessageAgent {
         this.messageProcessingTimeout = messageProcessingTimeout;
         this.maxReplayedIsmsPerExchange = maxReplayedIsmsPerExchange;
         this.remoteSites = new HashMap<Integer, RemoteSiteState>();
-        this.currentMessage = null;
-        this.currentMessageDispatchTimestamp = 0;
+        this.messagesInProcessing
+                = new IdentityHashMap<InterSiteMessage, Long>();
+        this.maxMessagesInProcessing = Math.max(maxMessagesInProcessing, 1);
+        this.parallelismTimestamp = System.nanoTime();
+        this.busyNanos = 0;
+        this.messageNanos = 0;
+        this.peakMessagesInProcessing = 0;
         this.originatingSiteForLastMessage = SiteInfo.INVALID_SITE_ID;
         this.bootstrapMode = bootstrapMode;
+        if (decodingThreads == 0) {
+            decodingThreads = Runtime.getRuntime().availableProcessors();
+        }
+        if (decodingThreads > 1) {
+            final AtomicInteger threadCount = new AtomicInteger();
+
+            this.decodingExecutor = Executors.newFixedThreadPool(
+                    decodingThreads, new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "IsmDecoder-"
+                                    + threadCount.incrementAndGet());
+
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        } else {
+            this.decodingExecutor = null;
+        }
+        this.decodingWindow = 2 * Math.max(decodingThreads, 1);
+    }
+
+    /**
+     * Should be called during Site Manager's shutdown phase. Stops the
+     * decoding threads once the messages already submitted to them have been
+     * decoded; any exchange that begins afterwards decodes its messages on
+     * the exchanging thread.
+     */
+    public void stop() {
+        if (this.decodingExecutor != null) {
+            this.decodingExecutor.shutdown();
+        }
     }
 
     /**
@@ -296,9 +430,18 @@ public class ReceivedMessageAgent {
                 long excludePrivateSeqNumsUpTo = (destSiteId == targetSiteId)
                         ? remoteSite.getSeqnumForLastQueuedPrivateIsm()
                         : InterSiteMessage.INVALID_SEQ_NUM;
-                isms.add(new ReplayRequestISM(this.siteManager.localSiteId,
-                        destSiteId, targetSiteId, excludePublicSeqNumsUpTo,
-                        excludePrivateSeqNumsUpTo, maxIsmsToReplay));
+                ReplayRequestISM request = new ReplayRequestISM(
+                        this.siteManager.localSiteId, destSiteId,
+                        targetSiteId, excludePublicSeqNumsUpTo,
+                        excludePrivateSeqNumsUpTo, maxIsmsToReplay);
+                RemoteSiteState replayingSite
+                        = this.remoteSites.get(destSiteId);
+
+                if (replayingSite != null) {
+                    request.replayCursor
+                            = replayingSite.getReplayCursor(targetSiteId);
+                }
+                isms.add(request);
 	    }
         }
         return isms;
@@ -319,9 +462,11 @@ public class ReceivedMessageAgent {
      */
     public synchronized void processProcessedIsmCM(ProcessedIsmCM msg)
             throws IsmProcessingException, OperationFailedException {
-        if (msg.shouldCheckIfCurrent && (msg.ism != this.currentMessage)) {
+        Long dispatchTimestamp = this.messagesInProcessing.get(msg.ism);
+
+        if (msg.shouldCheckIfCurrent && (dispatchTimestamp == null)) {
             throw new IsmProcessingException("Processing state error: ISM just"
-                    + " processed is not the current one", msg.ism);
+                    + " processed is not a current one", msg.ism);
         }
         if (msg.shouldUpdateDb) {
             // Update Site Manager's state in the database
@@ -343,7 +488,7 @@ public class ReceivedMessageAgent {
         }
         if (msg.shouldUpdateState) {
             // Update all RemoteSiteState objects.
-            this.currentMessage = null;
+            removeMessageInProcessing(msg.ism);
             for (RemoteSiteState remoteSite : this.remoteSites.values()) {
                 if (msg.ism.isFrom(remoteSite.getSiteId())) {
                     remoteSite.notifyIsmProcessed(msg.ism,
@@ -365,7 +510,7 @@ public class ReceivedMessageAgent {
 	    }
         }
         if (msg.shouldRevertState) {
-            this.currentMessage = null;
+            removeMessageInProcessing(msg.ism);
             // Put this ISM back into the pending list.
             RemoteSiteState remoteSite
                     = this.remoteSites.get(msg.ism.sourceSiteId);
@@ -374,8 +519,8 @@ public class ReceivedMessageAgent {
 
         // Log a completion message.
         if (msg.shouldLogMessage) {
-            long processingTime = System.currentTimeMillis()
-                    - currentMessageDispatchTimestamp;
+            long processingTime = (dispatchTimestamp == null) ? 0
+                    : System.currentTimeMillis() - dispatchTimestamp;
             siteManager.recordLogRecord(LogRecordGenerator.ismProcessed(msg,
                     processingTime));
 
@@ -458,10 +603,12 @@ public class ReceivedMessageAgent {
 
     /**
      * Should be called every now and then as a periodic task by Site Manager's
-     * task scheduler. Checks to see if the current message has taken an
+     * task scheduler. Checks to see if any current message has taken an
      * excessively long time to process and logs a message if this is the case.
-     * Also reads all message files from the 'msgs-held' directory, deleting
-     * those that are extremely old, and redelivers all of them to the queue.
+     * Logs the degree of parallelism achieved in ISM processing since the
+     * previous call. Also reads all message files from the 'msgs-held'
+     * directory, deleting those that are extremely old, and redelivers all of
+     * them to the queue.
      * TODO: most of these tasks are probably unnecessary, and are here just as
      * a failsafe. Remove them once we're sure the ISM-passing implementation
      * is sufficiently stable.
@@ -469,18 +616,33 @@ public class ReceivedMessageAgent {
      * @throws OperationFailedException
      */
     public synchronized void periodicCheck() throws OperationFailedException {
-        // Make sure the current ISM hasn't been in processing for an obscenely
+        // Make sure no current ISM has been in processing for an obscenely
         // long time.
         long now = System.currentTimeMillis();
         
-        if ((currentMessage != null)
-                && ((now - currentMessageDispatchTimestamp)
-                        > this.messageProcessingTimeout)) {
+        for (Map.Entry<InterSiteMessage, Long> entry
+                : this.messagesInProcessing.entrySet()) {
+            if ((now - entry.getValue()) > this.messageProcessingTimeout) {
+                this.siteManager.recordLogRecord(
+                        LogRecordGenerator.ismProcessingStalled(
+                                entry.getKey().getSuggestedFileName(),
+                                now - entry.getValue()));
+            }
+        }
+
+        // Report how many ISM's were in processing at once, on average.
+        accountForParallelism();
+        if (this.busyNanos > 0) {
             this.siteManager.recordLogRecord(
-                    LogRecordGenerator.ismProcessingStalled(
-                            currentMessage.getSuggestedFileName(),
-                            now - currentMessageDispatchTimestamp));
+                    LogRecordGenerator.ismProcessingParallelism(
+                            (double) this.messageNanos / this.busyNanos,
+                            this.peakMessagesInProcessing,
+                            this.busyNanos / 1000000,
+                            this.maxMessagesInProcessing));
         }
+        this.busyNanos = 0;
+        this.messageNanos = 0;
+        this.peakMessagesInProcessing = this.messagesInProcessing.size();
 
         /*
          * Dredge up all the held-messages and redeliver them. This probably
@@ -533,6 +695,10 @@ public class ReceivedMessageAgent {
      * the log at the conclusion of each exchange. Error codes and statistics
      * are not available to the caller because they generally are not conveyed
      * back to the remote site that initiated the exchange.
+     * <p>
+     * Messages are decoded on the decoding threads while this method waits;
+     * this object's lock is held only while each decoded message is examined
+     * and queued, so other threads may use this object in the meantime.
      * 
      * @return an array of zero or more {@code String}'s, each of which is an
      *         XML document that contains a signed signed representation of an
@@ -567,47 +733,33 @@ public class ReceivedMessageAgent {
      *         message are not propagated to the caller but instead are caught
      *         and logged by this method
      */
-    public synchronized String[] exchangeInterSiteMessages(
+    public String[] exchangeInterSiteMessages(
             String messageStrings[], String remoteSite,
             boolean responseChannelAvailable, boolean allowLinkLocalProcessing)
             throws OperationFailedException {
         IsmExchangeStats stats = new IsmExchangeStats(remoteSite,
                 messageStrings.length);
         Collection<String> replies = new ArrayList<String>();
+        Queue<Future<DecodedIsm>> decodings
+                = new LinkedList<Future<DecodedIsm>>();
+        int submitted = 0;
 
         for (String ismAsXml : messageStrings) {
-            InterSiteMessage ism = decodeIsmFromString(ismAsXml, stats);
-            
-            if (ism == null) {
-                /*
-                 * Nothing to do; the ISM was not decoded. An appropriate
-                 * statistics counter has already been incremented.
-                 */
-            } else if (ism.linkLocal) {
-                // We have a special ISM that requires link-local processing.
-                if (allowLinkLocalProcessing) {
-                    processLinkLocalIsm(ism, replies, stats);
-                }
-                stats.linkLocal++;
-            } else if (verifyIsmSuitability(ism, stats)) {
-                /*
-                 * We have a regular ISM that should be delivered to the
-                 * incoming message queue.
-                 */
-                synchronized (this.messageFileAgent) {
-                    this.messageFileAgent.writeHeldMessage(ismAsXml,
-                            ism.sourceSiteId, ism.sourceSeqNum);
-                }
-                this.remoteSites.get(ism.sourceSiteId).queueMessage(ism);
-                stats.acceptedAndQueued++;
-            } else {
-                /*
-                 * The ISM is being dropped for some reason. At least one of 
-		 * the statistics counters would have been incremented in this
-		 * case.  We can clear any held-file that may exist.
-                 */
-                this.siteManager.passCoreMessage(
-                        ProcessedIsmCM.clearOldFile(ism));
+            /*
+             * Keep the decoding threads busy, but with no more than
+             * decodingWindow of our messages in flight at once.
+             */
+            while ((submitted < messageStrings.length)
+                    && (decodings.size() < this.decodingWindow)) {
+                decodings.add(submitDecoding(messageStrings[submitted]));
+                submitted++;
+            }
+            InterSiteMessage ism = decodeIsmFromString(decodings.remove(),
+                    stats);
+
+            synchronized (this) {
+                queueDecodedIsm(ism, ismAsXml, replies, stats,
+                        allowLinkLocalProcessing);
             }
         }
 
@@ -619,6 +771,60 @@ public class ReceivedMessageAgent {
         return replies.toArray(new String[replies.size()]);
     }
 
+    /**
+     * A helper function utilized during an ISM exchange that performs the
+     * steps that follow the decoding of an incoming message: link-local
+     * processing, or checking its suitability and then queuing it for
+     * processing by a core module. The caller must hold this object's lock.
+     * 
+     * @param ism the decoded message, or null if the message could not be
+     *        decoded.
+     * @param ismAsXml the XML representation of the message, as received from
+     *        the remote site.
+     * @param replies the collection to which replies to link-local messages
+     *        are added.
+     * @param stats a reference to the {@code IsmExchangeStats} object that is
+     *        tracking statistics for the present ISM exchange.
+     * @param allowLinkLocalProcessing as for
+     *        {@code exchangeInterSiteMessages()}.
+     * @throws OperationFailedException on low-level error.
+     */
+    private void queueDecodedIsm(InterSiteMessage ism, String ismAsXml,
+            Collection<String> replies, IsmExchangeStats stats,
+            boolean allowLinkLocalProcessing) throws OperationFailedException {
+        if (ism == null) {
+            /*
+             * Nothing to do; the ISM was not decoded. An appropriate
+             * statistics counter has already been incremented.
+             */
+        } else if (ism.linkLocal) {
+            // We have a special ISM that requires link-local processing.
+            if (allowLinkLocalProcessing) {
+                processLinkLocalIsm(ism, replies, stats);
+            }
+            stats.linkLocal++;
+        } else if (verifyIsmSuitability(ism, stats)) {
+            /*
+             * We have a regular ISM that should be delivered to the
+             * incoming message queue.
+             */
+            synchronized (this.messageFileAgent) {
+                this.messageFileAgent.writeHeldMessage(ismAsXml,
+                        ism.sourceSiteId, ism.sourceSeqNum);
+            }
+            this.remoteSites.get(ism.sourceSiteId).queueMessage(ism);
+            stats.acceptedAndQueued++;
+        } else {
+            /*
+             * The ISM is being dropped for some reason. At least one of 
+             * the statistics counters would have been incremented in this
+             * case.  We can clear any held-file that may exist.
+             */
+            this.siteManager.passCoreMessage(
+                    ProcessedIsmCM.clearOldFile(ism));
+        }
+    }
+
     /**
      * To be used only during Site Manager's "bootstrap" operation, this method
      * accepts for processing an ISM that was read from the site grant file.
@@ -739,21 +945,27 @@ public class ReceivedMessageAgent {
     }
 
     /**
-     * Examines the current ISM state and possibly dispatches a pending ISM to
-     * one of the core modules' worker threads. No ISM is dispatched if one is
-     * currently being processed. When there are ISM's pending from several
-     * sites, the various sites' queues are serviced in the order defined by 
-     * the {@code RemoteSiteComparator}.
+     * Examines the current ISM state and possibly dispatches pending ISM's to
+     * the core modules' worker threads. No ISM is dispatched while as many
+     * ISM's as allowed are already in processing, and no ISM is dispatched
+     * while it conflicts with one in processing, as determined by
+     * {@code conflictsWithMessagesInProcessing()}. When there are ISM's
+     * pending from several sites, the various sites' queues are serviced in
+     * the order defined by the {@code RemoteSiteComparator}. In bootstrap
+     * mode, at most one ISM is dispatched.
      * 
      * @return true if a message was dispatched as a result of this method
      *         invocation, or false otherwise.
      */
     private synchronized boolean hintDispatchNext()
             throws OperationFailedException {
-        if (this.currentMessage != null) {
+        int limit = this.bootstrapMode ? 1 : this.maxMessagesInProcessing;
+        boolean dispatched = false;
+
+        if (this.messagesInProcessing.size() >= limit) {
             /*
-             * An ISM is currently being processed; we can't dispatch another
-             * ISM until the current one's processing has finished.
+             * As many ISM's as allowed are currently being processed; we can't
+             * dispatch another ISM until one's processing has finished.
              */
             return false;
         }
@@ -768,38 +980,63 @@ public class ReceivedMessageAgent {
                 this.originatingSiteForLastMessage));
 
         /*
-         * Choose the first message in the queue from the first site that has a
-         * message queued.
+         * If any site's next message must be processed alone, dispatch
+         * nothing more until those in processing have finished, so that it
+         * is not starved.
+         */
+        if (!this.messagesInProcessing.isEmpty()) {
+            for (RemoteSiteState remoteSite : sortedRemoteSites) {
+                InterSiteMessage ism
+                        = remoteSite.peekAtNextMessageForProcessing();
+
+                if ((ism != null) && (ism.getAffectedEntities() == null)) {
+                    return false;
+                }
+            }
+        }
+
+        /*
+         * Choose the first message in the queue from each site that has a
+         * message queued, until no more may be dispatched.
          */
-        InterSiteMessage ism = null;
         for (RemoteSiteState remoteSite : sortedRemoteSites) {
-            ism = remoteSite.getNextMessageForProcessing();
+            InterSiteMessage ism = remoteSite.peekAtNextMessageForProcessing();
 	    if (ism == null) {
 		continue;
 	    }
-	    if (this.bootstrapMode) {
-		// Process this ISM.
-		break;
-	    }
-	    // Verify again that the ISM is suitable for processing.  We should
-	    // have checked before enqueueing this ISM, but there's a slight
-	    // chance the ISM's suitability might have changed since then.
-	    if (this.verifyIsmSuitability(ism, null)) {
-		// Process this ISM.
-		break;
-	    } else {
-		// This ISM failed verification.  Return it to the queue.
+            if (conflictsWithMessagesInProcessing(ism)) {
+                if (ism.getAffectedEntities() == null) {
+                    // As above; this ISM must be processed alone.
+                    break;
+                }
+                continue;
+            }
+            if (this.bootstrapMode && !ism.deliverToSampleManager) {
+                /*
+                 * Sample ISM's staged by a bulk import must take effect
+                 * before another core module sees this one.
+                 */
+                this.sampleManager.flushBulkImport();
+            }
+            ism = remoteSite.getNextMessageForProcessing();
+	    if (!this.bootstrapMode && !this.verifyIsmSuitability(ism, null)) {
+		// Verify again that the ISM is suitable for processing.  We
+		// should have checked before enqueueing this ISM, but there's a
+		// slight chance the ISM's suitability might have changed since
+		// then.  This ISM failed verification.  Return it to the queue.
 		remoteSite.notifyIsmProcessed(ism, false);
-		ism = null;
 		continue;
 	    }
-        }
-        if (ism != null) {
+
             // Dispatch a message to the appropriate core module's worker
             // thread.
-            this.currentMessage = ism;
+            dispatched = true;
+            accountForParallelism();
+            this.messagesInProcessing.put(ism, System.currentTimeMillis());
+            this.peakMessagesInProcessing = Math.max(
+                    this.peakMessagesInProcessing,
+                    this.messagesInProcessing.size());
             this.originatingSiteForLastMessage = ism.sourceSiteId;
-            this.currentMessageDispatchTimestamp = System.currentTimeMillis();
             if (ism.deliverToSiteManager) {
                 this.siteManager.passCoreMessage(ism);
             } else if (ism.deliverToSampleManager) {
@@ -809,11 +1046,76 @@ public class ReceivedMessageAgent {
             } else {
                 this.siteManager.passCoreMessage(ProcessedIsmCM.success(ism));
             }
+            if (this.bootstrapMode
+                    || (this.messagesInProcessing.size() >= limit)
+                    || (ism.getAffectedEntities() == null)) {
+                break;
+            }
+        }
+
+        return dispatched;
+    }
+
+    /**
+     * Determines whether the specified ISM may not be dispatched at present
+     * because of the ISM's in processing. An ISM conflicts with the ISM's in
+     * processing if any of them affects an entity that it affects, or if it
+     * or any of them does not report its entities.
+     */
+    private boolean conflictsWithMessagesInProcessing(InterSiteMessage ism) {
+        if (this.messagesInProcessing.isEmpty()) {
+            return false;
+        }
+
+        String entities[] = ism.getAffectedEntities();
+
+        if (entities == null) {
             return true;
         }
+        for (InterSiteMessage other : this.messagesInProcessing.keySet()) {
+            String otherEntities[] = other.getAffectedEntities();
+
+            if (otherEntities == null) {
+                return true;
+            }
+            for (String entity : entities) {
+                for (String otherEntity : otherEntities) {
+                    if (entity.equals(otherEntity)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
         return false;
     }
 
+    /**
+     * Removes the specified ISM from the set of those in processing, if it is
+     * present.
+     */
+    private void removeMessageInProcessing(InterSiteMessage ism) {
+        accountForParallelism();
+        this.messagesInProcessing.remove(ism);
+    }
+
+    /**
+     * Adds the time elapsed since the last call to the parallelism counters,
+     * weighted by the number of ISM's that have been in processing over that
+     * time. Must be called before every change to
+     * {@code messagesInProcessing}.
+     */
+    private void accountForParallelism() {
+        long now = System.nanoTime();
+        int count = this.messagesInProcessing.size();
+
+        if (count > 0) {
+            this.busyNanos += now - this.parallelismTimestamp;
+            this.messageNanos += count * (now - this.parallelismTimestamp);
+        }
+        this.parallelismTimestamp = now;
+    }
+
     /**
      * Internal function that decides whether a message recently received from
      * the Internet (and which has a message file currently sitting in the
@@ -832,71 +1134,140 @@ public class ReceivedMessageAgent {
     }
 
     /**
-     * A helper function utilized during an ISM exchange that decodes an XML
-     * representation of an incoming {@code InterSiteMessage} and returns an 
-     * ISM object that contains corresponding information. As part of the
-     * decoding process, the remote site id is verified against local state, 
-     * the digital signature on the ISM is verified to assure authenticity and
-     * integrity, and the XML is checked for parse errors. If the message could
-     * not be decoded for any reason, this function writes an appropriate log
-     * message and increments appropriate statistics counters.
+     * A helper function utilized during an ISM exchange that starts decoding
+     * an XML representation of an incoming {@code InterSiteMessage} on one of
+     * the decoding threads, or decodes it immediately if there are none. As
+     * part of the decoding process, the remote site id is verified against
+     * local state, the digital signature on the ISM is verified to assure
+     * authenticity and integrity, and the XML is checked for parse errors.
      * 
-     * @return the decoded {@code InterSiteMessage} object, or null if the
-     *         message could not be decoded for some reason.
+     * @return a {@code Future} from which {@code decodeIsmFromString()} will
+     *         obtain the outcome.
      * @param ismAsXml an XML representation of the message to be decoded, as
      *        received from the remote site.
+     */
+    private Future<DecodedIsm> submitDecoding(final String ismAsXml) {
+        FutureTask<DecodedIsm> task = new FutureTask<DecodedIsm>(
+                new Callable<DecodedIsm>() {
+                    public DecodedIsm call() {
+                        return decodeIsm(ismAsXml);
+                    }
+                });
+
+        if (this.decodingExecutor != null) {
+            try {
+                this.decodingExecutor.execute(task);
+                return task;
+            } catch (RejectedExecutionException ex) {
+                // The decoding threads have been stopped; decode it here.
+            }
+        }
+        task.run();
+        return task;
+    }
+
+    /**
+     * Performs the work of {@code submitDecoding()}; may be invoked on any
+     * thread, and does not require this object's lock.
+     * 
+     * @return the outcome of decoding {@code ismAsXml}; never null.
+     * @param ismAsXml an XML representation of the message to be decoded, as
+     *        received from the remote site.
+     */
+    private DecodedIsm decodeIsm(String ismAsXml) {
+        DecodedIsm decoded = new DecodedIsm();
+
+        try {
+            decoded.sourceSiteId
+                    = InterSiteMessage.extractSourceSiteId(ismAsXml);
+            SiteInfo sourceSite
+                    = this.siteManager.getSiteInfo(decoded.sourceSiteId);
+
+            // Verify the signature and parse the message.
+            // TODO: make the choice of algorithm configurable.
+            Signature sig = Signature.getInstance("SHA1withDSA");
+            sig.initVerify(sourceSite.publicKey);
+            decoded.ism = InterSiteMessage.fromXmlCheckSignature(ismAsXml,
+                    sig);
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            decoded.failure = ex;
+        }
+
+        return decoded;
+    }
+
+    /**
+     * A helper function utilized during an ISM exchange that obtains the
+     * outcome of decoding an incoming {@code InterSiteMessage}, as started by
+     * {@code submitDecoding()}, waiting for it if necessary. If the message
+     * could not be decoded for any reason, this function writes an
+     * appropriate log message and increments appropriate statistics counters.
+     * 
+     * @return the decoded {@code InterSiteMessage} object, or null if the
+     *         message could not be decoded for some reason.
+     * @param decoding the {@code Future} returned by
+     *        {@code submitDecoding()}.
      * @param stats a reference to the {@code IsmExchangeStats} object that is
      *        tracking statistics for the present ISM exchange. This function
      *        increments counters within {@code stats} in the event that the
      *        ISM could not be decoded. The counters are not modified if the
      *        function returns successfully (i.e. returns something other than
      *        null).
-     * @throws OperationFailedException on low-level error.
+     * @throws OperationFailedException on low-level error, or if the thread
+     *         was interrupted while waiting.
      */
-    private InterSiteMessage decodeIsmFromString(String ismAsXml,
+    private InterSiteMessage decodeIsmFromString(Future<DecodedIsm> decoding,
             IsmExchangeStats stats) throws OperationFailedException {
-        int sourceSiteId = SiteInfo.INVALID_SITE_ID;
-        
+        DecodedIsm decoded;
+
         try {
-            sourceSiteId = InterSiteMessage.extractSourceSiteId(ismAsXml);
-            SiteInfo sourceSite = this.siteManager.getSiteInfo(sourceSiteId);
+            decoded = decoding.get();
+        } catch (InterruptedException ex) {
+            throw new OperationFailedException(ex);
+        } catch (ExecutionException ex) {
+            // decodeIsm() throws only unchecked exceptions; pass them on.
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            } else if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new UnexpectedExceptionException(ex);
+        }
 
-            // Verify the signature and parse the message.
-            // TODO: make the choice of algorithm configurable.
-            Signature sig = Signature.getInstance("SHA1withDSA");
-            sig.initVerify(sourceSite.publicKey);
-            return InterSiteMessage.fromXmlCheckSignature(ismAsXml, sig);
-        } catch (ResourceNotFoundException ex) {
+        int sourceSiteId = decoded.sourceSiteId;
+        Exception failure = decoded.failure;
+
+        if (failure == null) {
+            return decoded.ism;
+        } else if (failure instanceof ResourceNotFoundException) {
             /*
              * The sourceSiteId on the message is not a recognized site.
 	     * There's no way for us to verify the signature so we need to drop
 	     * this message.
              */
             stats.unknownSender++;
-            this.siteManager.recordLogRecord(
-                    LogRecordGenerator.ismReceiveException(sourceSiteId, ex));
-        } catch (NoSuchAlgorithmException ex) {
-            // Can't happen because SHA1withDSA is guaranteed to be supported.
-            stats.miscError++;
-            this.siteManager.recordLogRecord(
-                    LogRecordGenerator.ismReceiveException(sourceSiteId, ex));
-        } catch (SignatureException ex) {
+        } else if (failure instanceof OperationFailedException) {
+            throw (OperationFailedException) failure;
+        } else if (failure instanceof SignatureException) {
             // The message has been tampered with or is not authentic --
             // the digital signature does not match the message content.
             stats.badSignature++;
-            this.siteManager.recordLogRecord(
-                    LogRecordGenerator.ismReceiveException(sourceSiteId, ex));
-        } catch (SAXException ex) {
+        } else if (failure instanceof SAXException) {
             // The message could not be parsed for some reason, maybe it
             // didn't look like an ISM.
             stats.parseError++;
-            this.siteManager.recordLogRecord(
-                    LogRecordGenerator.ismReceiveException(sourceSiteId, ex));
-        } catch (InvalidKeyException ex) {
+        } else if ((failure instanceof NoSuchAlgorithmException)
+                || (failure instanceof InvalidKeyException)) {
+            // NoSuchAlgorithmException can't happen because SHA1withDSA is
+            // guaranteed to be supported.
             stats.miscError++;
-            this.siteManager.recordLogRecord(
-                    LogRecordGenerator.ismReceiveException(sourceSiteId, ex));
+        } else {
+            throw new UnexpectedExceptionException(failure);
         }
+        this.siteManager.recordLogRecord(
+                LogRecordGenerator.ismReceiveException(sourceSiteId, failure));
 
         // If control reaches this point then we were unable to decode the ISM.
         return null;
@@ -1021,13 +1392,16 @@ public class ReceivedMessageAgent {
                     msg.maxIsmsToReplay)
                     - stats.messagesReplayed;
 
-            // Find matching ISM's to replay and add them to our reply.
-            long countMatchingIsms
+            // Find matching ISM's to replay and add them to our reply,
+            // resuming from the requester's cursor if it supplied one.
+            MessageFileAgent.ReplayCursor cursor
                     = messageFileAgent.readMessagesSuitableForRemoteSite(
                             msg.sourceSiteId, msg.requestedSiteId,
                             msg.excludePublicSeqNumsUpTo,
                             msg.excludePrivateSeqNumsUpTo, maxIsmsToReplay,
-                            replies);
+                            MessageFileAgent.ReplayCursor.parse(
+                                    msg.replayCursor), replies);
+            long countMatchingIsms = cursor.countMatchingIsms;
             long countReplayedIsms = replies.size() - repliesOldSize;
 
             // Formulate a response that summarizes all the ISM's that we are
@@ -1037,6 +1411,7 @@ public class ReceivedMessageAgent {
                     msg.requestedSiteId, msg.excludePublicSeqNumsUpTo,
                     msg.excludePrivateSeqNumsUpTo, countMatchingIsms,
                     countReplayedIsms);
+            response.replayCursor = cursor.toString();
             
             replies.add(
                     this.siteManager.signLinkLocalInterSiteMessage(response));
@@ -1048,9 +1423,13 @@ public class ReceivedMessageAgent {
             
             stats.sumMatchingIsms += msg.countMatchingIsms;
             stats.linkLocalAccepted++;
-            this.remoteSites.get(msg.sourceSiteId).setAvailableMessagesHint(
-                    msg.requestedSiteId,
+            RemoteSiteState replayingSite
+                    = this.remoteSites.get(msg.sourceSiteId);
+
+            replayingSite.setAvailableMessagesHint(msg.requestedSiteId,
                     msg.countMatchingIsms - msg.countReplayedIsms);
+            replayingSite.setReplayCursor(msg.requestedSiteId,
+                    msg.replayCursor);
         } else {
             // Unrecognized message type.
             this.siteManager.recordLogRecord(LogRecordGenerator.cmUnknownType(
@@ -1103,6 +1482,16 @@ public class ReceivedMessageAgent {
          */
         private boolean hasHeadMessageFailedProcessing;
 
+        /**
+         * A flag that is true when an ISM originated by another site has been
+         * processed since {@code messageBeingProcessed} was dispatched. Such
+         * an ISM is processed concurrently with ours, and may finish before
+         * ours fails for want of the state it establishes; its completion
+         * then cannot clear {@code hasHeadMessageFailedProcessing}, which is
+         * not yet set, so the failure must not set it.
+         */
+        private boolean hasOtherSitesIsmBeenProcessedMeanwhile;
+
         /**
          * A reference to the {@code InterSiteMessage} most recently returned
 	 * by {@code getNextMessage()}, if the message presently is being
@@ -1123,6 +1512,15 @@ public class ReceivedMessageAgent {
          */
         private Map<Integer, Long> availableMessagesHints;
 
+        /**
+         * A map from site id's to the replay cursors most recently received
+         * from the remote site described by this {@code RemoteSiteState}
+         * object, for ISM's originated by the site identified by the map
+         * entry's key. Each is returned to the remote site with the next
+         * replay request for that originating site.
+         */
+        private Map<Integer, String> replayCursors;
+
         /** Constructor. */
         public RemoteSiteState(SiteInfo site) {
             this.siteId = site.id;
@@ -1130,8 +1528,10 @@ public class ReceivedMessageAgent {
             this.highestProcessedPrivateSeqNum = site.privateSeqNum;
             this.pendingMessages = new PriorityQueue<InterSiteMessage>();
             this.hasHeadMessageFailedProcessing = false;
+            this.hasOtherSitesIsmBeenProcessedMeanwhile = false;
             this.messageBeingProcessed = null;
             this.availableMessagesHints = new HashMap<Integer, Long>();
+            this.replayCursors = new HashMap<Integer, String>();
         }
 
         /** Simple getter */
@@ -1176,6 +1576,7 @@ public class ReceivedMessageAgent {
             InterSiteMessage ism = peekAtNextMessageForProcessing();
             this.pendingMessages.remove(ism);
             this.messageBeingProcessed = ism;
+            this.hasOtherSitesIsmBeenProcessedMeanwhile = false;
             return ism;
         }
 
@@ -1227,8 +1628,11 @@ public class ReceivedMessageAgent {
                 queueMessage(ism);
                 assert ism.equals(this.pendingMessages.peek());
                 // The ISM should have gone straight to the head of the queue
-                // since we plucked it from the head a short while ago.
-                this.hasHeadMessageFailedProcessing = true;
+                // since we plucked it from the head a short while ago. If
+                // another site's ISM was processed meanwhile, the state that
+                // ours lacked may have arrived since; let it be tried again.
+                this.hasHeadMessageFailedProcessing
+                        = !this.hasOtherSitesIsmBeenProcessedMeanwhile;
             }
         }
 
@@ -1249,11 +1653,19 @@ public class ReceivedMessageAgent {
 	 * SiteManager.eventJoin().  It is quicker to evaluate the join
 	 * condition here than to repeatedly dispatch the JoinISM to
 	 * SiteManager for evaluation.
+	 *
+	 * If one of our ISM's is being processed, the event is also
+	 * remembered, in case that ISM fails and returns to the head of the
+	 * queue.
          */
         public void notifyOtherSitesIsmProcessed(
                 InterSiteMessage otherSitesIsm) {
             assert this.siteId != otherSitesIsm.sourceSiteId;
 
+            if (this.messageBeingProcessed != null) {
+                this.hasOtherSitesIsmBeenProcessedMeanwhile = true;
+            }
+
             InterSiteMessage ourNextIsm = this.pendingMessages.peek();
 	    if (ourNextIsm != null && (ourNextIsm instanceof JoinISM)) {
 		// Special handling for JoinISM's.
@@ -1377,6 +1789,27 @@ public class ReceivedMessageAgent {
             }
         }
 
+        /**
+         * Records the replay cursor the remote site returned for ISM's
+         * originated by the specified site, or forgets any if
+         * {@code cursor} is null.
+         */
+        public void setReplayCursor(int siteId, String cursor) {
+            if (cursor == null) {
+                this.replayCursors.remove(siteId);
+            } else {
+                this.replayCursors.put(siteId, cursor);
+            }
+        }
+
+        /**
+         * @return the replay cursor last recorded for ISM's originated by the
+         *         specified site, or null if none.
+         */
+        public String getReplayCursor(int siteId) {
+            return this.replayCursors.get(siteId);
+        }
+
         /**
          * @return a sum of message count hints across all originating sites.
          */
@@ -1409,12 +1842,13 @@ public class ReceivedMessageAgent {
 	}
 
         /**
-         * Helper function that returns the next ISM in the queue, if it is
-         * eligible for processing at the present moment, or null otherwise.
+         * Returns the next ISM in the queue, if it is eligible for processing
+         * at the present moment, or null otherwise. No ISM is eligible while
+         * another from the same site is being processed.
          */
-        private InterSiteMessage peekAtNextMessageForProcessing() {
+        public InterSiteMessage peekAtNextMessageForProcessing() {
             InterSiteMessage ism = this.pendingMessages.peek();
-            if ((ism == null)
+            if ((ism == null) || (this.messageBeingProcessed != null)
                     || this.hasHeadMessageFailedProcessing
                     || (ism.isPublic() && (ism.sourcePrevSeqNum
                             != this.highestProcessedPublicSeqNum))
@@ -1449,6 +1883,24 @@ public class ReceivedMessageAgent {
         }
     }
 
+    /**
+     * Internal class that carries the outcome of decoding one incoming ISM
+     * from a decoding thread back to the exchanging thread.
+     */
+    private static class DecodedIsm {
+        /**
+         * The source site id extracted from the message, or INVALID_SITE_ID
+         * if none could be extracted.
+         */
+        int sourceSiteId = SiteInfo.INVALID_SITE_ID;
+
+        /** The decoded message, or null if decoding failed */
+        InterSiteMessage ism = null;
+
+        /** The exception that caused decoding to fail, or null */
+        Exception failure = null;
+    }
+
     /**
      * Internal class that tracks ISM statistics information associated with a
      * single ISM exchange with a remote site. It is used by
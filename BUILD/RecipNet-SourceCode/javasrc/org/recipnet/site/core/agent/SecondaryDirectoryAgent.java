@@ -19,6 +19,7 @@
  *              imports
  * 20-Jun-2006: jobollin updated docs, modified exception handling to
  *              accommodate changes to PrimaryDirectoryAgent
+ * 18-Oct-2026: agent replaced CvsInvoker with FileVersionStore
  */
 
 package org.recipnet.site.core.agent;
@@ -43,7 +44,7 @@ import org.recipnet.site.core.lock.OutOfBandReadTicket;
 import org.recipnet.site.core.lock.SecondaryDirectoryDummyTicket;
 import org.recipnet.site.core.lock.SecondaryFileReadTicket;
 import org.recipnet.site.core.msg.UnusedSecondaryDirectoryHintCM;
-import org.recipnet.site.core.util.CvsInvoker;
+import org.recipnet.site.core.util.FileVersionStore;
 import org.recipnet.site.core.util.LogRecordGenerator;
 import org.recipnet.site.core.util.SecondaryDirectory;
 import org.recipnet.site.shared.RepositoryFiles;
@@ -59,9 +60,9 @@ import org.recipnet.site.shared.db.SampleInfo;
  * directories are created on an as-needed basis and destroyed when they're no
  * longer needed. Recall that data files associated with samples are
  * <i>versioned</i> by {@code PrimaryDirectoryAgent} with the help of
- * the CVS program. {@code SecondaryDirectoryAgent} taps in to the same
- * CVS repository used by {@code PrimaryDirectoryAgent} to populate
- * secondary directories: CVS provides a facility for extracting a particular
+ * a {@code FileVersionStore}. {@code SecondaryDirectoryAgent} taps in to the
+ * same store used by {@code PrimaryDirectoryAgent} to populate secondary
+ * directories: the store provides a facility for extracting a particular
  * version of a particular data file (associated with a particular version of a
  * particular sample) to a secondary directory on demand.
  * </p><p>
@@ -99,8 +100,8 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
     /** Config option set at construction time */
     private final long maxTotalSizeUsed;
 
-    /** Reference to a CvsInvoker object provided at construction time. */
-    private final CvsInvoker cvsInvoker;
+    /** Reference to a FileVersionStore object provided at construction time. */
+    private final FileVersionStore versionStore;
 
     /**
      * Reference to a RepositoryTicketAgent object provided at construction
@@ -165,16 +166,17 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
      *        secondary directory becomes eligible for deletion if no tickets
      *        have been bound to it.
      * @param fileSizeLimit the maximum size, in bytes, of any single file that
-     *        is extracted from CVS into a temporary directory. Files larger
-     *        than this limit are not extracted (unless the caller opts to
-     *        ignore limits). Set this to 0 to disable limits.
+     *        is extracted from the version store into a temporary directory.
+     *        Files larger than this limit are not extracted (unless the caller
+     *        opts to ignore limits). Set this to 0 to disable limits.
      * @param maxTotalSizeUsed the maximum number of filesystem storage space in
      *        bytes that should be consumed by secondary directories. This class
      *        may delete secondary directories prematurely in order to remain
      *        below this limit. Set this to 0 to disable limits.
-     * @param cvsInvoker reference to an already-initialized CvsInvoker object
-     *        that this object should use. (The same CvsInvoker object should be
-     *        used by {@code PrimaryDirectoryAgent} also.)
+     * @param versionStore reference to an already-initialized
+     *        FileVersionStore object that this object should use. (The same
+     *        FileVersionStore object should be used by
+     *        {@code PrimaryDirectoryAgent} also.)
      * @param lockAgent reference to an already-initialized LockAgent that this
      *        object should use.
      * @param siteManager reference to the {@code SiteManager}; used
@@ -183,14 +185,15 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
      */
     public SecondaryDirectoryAgent(String repositoryBaseUrl,
             File repositoryBaseDirectory, long gracePeriod, long fileSizeLimit,
-            long maxTotalSizeUsed, CvsInvoker cvsInvoker, LockAgent lockAgent,
-            SiteManager siteManager, RepositoryManager repositoryManager) {
+            long maxTotalSizeUsed, FileVersionStore versionStore,
+            LockAgent lockAgent, SiteManager siteManager,
+            RepositoryManager repositoryManager) {
         this.repositoryBaseUrl = repositoryBaseUrl;
         this.repositoryBaseDirectory = repositoryBaseDirectory;
         this.gracePeriod = gracePeriod;
         this.fileSizeLimit = fileSizeLimit;
         this.maxTotalSizeUsed = maxTotalSizeUsed;
-        this.cvsInvoker = cvsInvoker;
+        this.versionStore = versionStore;
         this.lockAgent = lockAgent;
         this.siteManager = siteManager;
         this.repositoryManager = repositoryManager;
@@ -225,14 +228,15 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
      * The main entry point for this class: creates a secondary directory
      * (within the repository filesystem) and populates it with some or all
      * files available for a particular version of a particular sample by
-     * extracting them from CVS. The caller should have queried the database
-     * previously and obtained a {@code SecondaryDirectory} object that
-     * describes the files available for extraction from CVS.
+     * extracting them from the version store. The caller should have queried
+     * the database previously and obtained a {@code SecondaryDirectory}
+     * object that describes the files available for extraction from the
+     * version store.
      * </p><p>
      * Not all files available for a sample/version are necessarily extracted
-     * from CVS and placed in the secondary directory. Files available from the
-     * sample/version's associated primary directory (as indicated by
-     * {@code filesFromPrimaryDirectory}) are not extracted. Files
+     * from the version store and placed in the secondary directory. Files
+     * available from the sample/version's associated primary directory (as
+     * indicated by {@code filesFromPrimaryDirectory}) are not extracted. Files
      * larger than a configurable limit are not extracted, unless the caller
      * specifies that limits should be ignored. Other secondary directories may
      * be deleted prematurely in order to keep the total space consumed by
@@ -248,7 +252,7 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
      *         {@code FILE_AVAILABLE_UPON_REQUEST}.
      * @param secondaryDirectoryInfo identifies the sample/version for which
      *        files are being queried and describes the files that are available
-     *        for extraction from CVS.
+     *        for extraction from the version store.
      *        {@code RepositoryManager.getSecondaryDirectoryInfo()} knows
      *        how to consult the database and return such information.
      * @param filesFromPrimaryDirectory the result from a prior call to
@@ -262,8 +266,8 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
      *        feature is not desired, in which case all files will be served
      *        from the secondary directory.
      * @param shouldIgnoreFileSizeLimit if false (the default), files are not
-     *        extracted from CVS to a secondary directory if they are larger
-     *        than {@code fileSizeLimit} bytes (as configured at
+     *        extracted from the version store to a secondary directory if
+     *        they are larger than {@code fileSizeLimit} bytes (as configured at
      *        construction time). Such functionality might be useful in limiting
      *        DoS-attack potentional from unauthenticated users. If true, no
      *        individual file size limit is enforced.
@@ -365,7 +369,7 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
                     continue;
                 }
 
-                // Extract desiredFile from CVS into the secondary directory.
+                // Extract desiredFile into the secondary directory.
                 extractFile(desiredFile,
                         secondaryDirectoryInfo.getCvsTreeName(), record);
                 filesToReturn.addFile(new RepositoryFiles.Record(
@@ -381,9 +385,9 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
     /**
      * Creates a secondary directory (within the repository filesystem) and
      * populates it with the single file/version specified by extracting it from
-     * CVS. The caller should have queried the database previously and obtained
-     * a {@code SecondaryDirectory} object that describes the files
-     * available for extraction from CVS.
+     * the version store. The caller should have queried the database
+     * previously and obtained a {@code SecondaryDirectory} object that
+     * describes the files available for extraction from the version store.
      * <p>
      * A typical caller would use the return value from this function to acquire
      * a lock (or ticket) before reading the file's contents.
@@ -393,10 +397,10 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
      * limit.
      * 
      * @return a {@code File} object that identifies the location of the
-     *         requested file, after extraction from CVS.
+     *         requested file, after extraction from the version store.
      * @param secondaryDirectoryInfo identifies the sample/version for which a
      *        file is being requested and describes the files that are available
-     *        for extraction from CVS.
+     *        for extraction from the version store.
      *        {@code RepositoryManager.getSecondaryDirectoryInfo()} knows
      *        how to consult the database and return such information.
      * @param repositoryFile a reference to one of the
@@ -435,7 +439,7 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
                 return extractedFile;
             }
 
-            // Extract the desired file from CVS into the secondary directory.
+            // Extract the desired file into the secondary directory.
             extractFile(repositoryFile, secondaryDirectoryInfo.getCvsTreeName(),
                     record);
 
@@ -455,7 +459,7 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
         if (files != null) {
             for (File file : files) {
                 try {
-                    CvsInvoker.deleteFileRecursively(file);
+                    FileVersionStore.deleteFileRecursively(file);
                 } catch (OperationFailedException ex) {
                     this.siteManager.recordLogRecord(
                             LogRecordGenerator.secondaryDirectoryDeletionException(
@@ -643,17 +647,18 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
                 this.directories.remove(dirRecord.getKey());
             }
             this.totalSpaceUsed -= dirRecord.bytesUsed;
-            CvsInvoker.deleteFileRecursively(dirRecord.directory);
+            FileVersionStore.deleteFileRecursively(dirRecord.directory);
         }
     }
 
     /**
-     * Internal function that extracts a specified file from CVS to an existing
-     * secondary directory and updates all state variables.
+     * Internal function that extracts a specified file from the file version
+     * store to an existing secondary directory and updates all state
+     * variables.
      * 
      * @param fileToExtract identifies the particular file/version that should
      *        be extracted.
-     * @param cvsTreeName the CVS tree name for the requested sample/version, as
+     * @param cvsTreeName the tree name for the requested sample/version, as
      *        returned by {@code SecondaryDirectory.getCvsTreeName()}.
      * @param destinationDirectory identifies the existing secondary directory
      *        to which the file should be extracted.
@@ -672,7 +677,7 @@ public class SecondaryDirectoryAgent implements LockAgent.LockListener {
             clearSomeSpace(this.totalSpaceUsed + fileToExtract.fileBytes
                     - this.maxTotalSizeUsed);
         }
-        cvsInvoker.exportFile(cvsTreeName, fileToExtract.fileName,
+        versionStore.exportFile(cvsTreeName, fileToExtract.fileName,
                 fileToExtract.cvsRevision, destinationDirectory.directory);
         synchronized (this.directories) {
             destinationDirectory.notifyFileExtracted(fileToExtract);
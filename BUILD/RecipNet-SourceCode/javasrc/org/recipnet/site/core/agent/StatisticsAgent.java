@@ -10,6 +10,7 @@
  * 08-Aug-2004: cwestnea modified processSiteStatisticsRequestISM() to use
  *              SampleWorkflowBL
  * 11-Apr-2006: jobollin removed inaccessible catch blocks and organized imports
+ * 18-Oct-2026: agent added notifyLogEvents()
  */
 
 package org.recipnet.site.core.agent;
@@ -358,6 +359,18 @@ public class StatisticsAgent {
         }
     }
 
+    /**
+     * Equivalent to invoking {@code notifyLogEvent()} on each of the specified
+     * events in turn, but acquires this object's monitor only once.
+     * 
+     * @param events {@code LogEvent}s that may contain relevant information.
+     */
+    public synchronized void notifyLogEvents(LogEvent events[]) {
+        for (LogEvent event : events) {
+            notifyLogEvent(event);
+        }
+    }
+
     /**
      * Extracts statistical information from the log event and updates counters
      * in {@code siteStatisticsInfo}.
@@ -13,6 +13,10 @@
  * 26-May-2006: jobollin reformatted the source
  * 06-Jan-2008: ekoperda added tracking for offline sites
  * 26-Nov-2008: ekoperda clarified comments on notifySiteDeactivation()
+ * 18-Oct-2026: agent synchronized notifyPull() and notifyPush(), which may
+ *              now be invoked by several push threads at once
+ * 18-Oct-2026: agent added sqlForIsmRangesEligibleForTransmissionTo() and
+ *              rebased sqlForIsIsmEligibleForTransmissionTo() upon it
  */
 
 package org.recipnet.site.core.agent;
@@ -372,22 +376,51 @@ public class TopologyAgent {
      */
     public String sqlForIsIsmEligibleForTransmissionTo(int remoteSiteId,
             long seqNumLimitForPublic, long seqNumLimitForPrivate) {
-        StringBuilder sql = new StringBuilder();
+        String ranges[] = sqlForIsmRangesEligibleForTransmissionTo(
+                remoteSiteId, seqNumLimitForPublic, seqNumLimitForPrivate);
+        
+        return "(" + ranges[0] + " OR " + ranges[1] + ")";
+    }
+
+    /**
+     * Generates the same logic as
+     * {@code sqlForIsIsmEligibleForTransmissionTo()}, but as two separate SQL
+     * fragments, one for public and one for private ISM's, whose disjunction
+     * is equivalent to that method's fragment. Each fragment selects a single
+     * contiguous range of an index on {@code destSiteId} and
+     * {@code sourceSeqNum}, so a caller that queries each separately can read
+     * matching rows in sequence number order without the database engine
+     * having to merge or sort them.
+     * 
+     * @return a two-element array holding the fragment for public ISM's and
+     *         then the fragment for private ISM's. Each is enclosed within a
+     *         pair of parentheses.
+     * @param remoteSiteId identifies the remote site to which the ISM would be
+     *        transmitted.
+     * @param seqNumLimitForPublic as for
+     *        {@code sqlForIsIsmEligibleForTransmissionTo()}.
+     * @param seqNumLimitForPrivate as for
+     *        {@code sqlForIsIsmEligibleForTransmissionTo()}.
+     */
+    public String[] sqlForIsmRangesEligibleForTransmissionTo(
+            int remoteSiteId, long seqNumLimitForPublic,
+            long seqNumLimitForPrivate) {
+        StringBuilder publicSql = new StringBuilder("(destSiteId IS NULL");
+        StringBuilder privateSql = new StringBuilder("(destSiteId=");
         
-        sql.append("((destSiteId IS NULL");
         if (seqNumLimitForPublic != InterSiteMessage.INVALID_SEQ_NUM) {
-            sql.append(" AND sourceSeqNum > ");
-            sql.append(seqNumLimitForPublic);
+            publicSql.append(" AND sourceSeqNum > ");
+            publicSql.append(seqNumLimitForPublic);
         }
-        sql.append(") OR (destSiteId=");
-        sql.append(remoteSiteId);
+        publicSql.append(")");
+        privateSql.append(remoteSiteId);
         if (seqNumLimitForPrivate != InterSiteMessage.INVALID_SEQ_NUM) {
-            sql.append(" AND sourceSeqNum > ");
-            sql.append(seqNumLimitForPrivate);
+            privateSql.append(" AND sourceSeqNum > ");
+            privateSql.append(seqNumLimitForPrivate);
         }
-        sql.append("))");
+        privateSql.append(")");
         
-        return sql.toString();
+        return new String[] { publicSql.toString(), privateSql.toString() };
     }
 
     /**
@@ -437,7 +470,7 @@ public class TopologyAgent {
      * @param ismCount number of ISM's present in the pull reply; ignored
      *        unless succeeded is true.
      */
-    public void notifyPull(int siteId, boolean succeeded,
+    public synchronized void notifyPull(int siteId, boolean succeeded,
             @SuppressWarnings("unused") int ismCount) {
 	if (succeeded) {
 	    // Since we've successfully pulled ISM's from the remote site, it's
@@ -453,7 +486,7 @@ public class TopologyAgent {
      * @param siteId corresponds to the site being pushed to.
      * @param succeeded true if push was successful, otherwise false.
      */
-    public void notifyPush(int siteId, boolean succeeded) {
+    public synchronized void notifyPush(int siteId, boolean succeeded) {
 	if (succeeded) {
 	    // Since we successfully pushed ISM's to the remote site, it's
 	    // probably still online.  Remove it from the shunned set.
@@ -16,6 +16,11 @@
  * 30-May-2006: jobollin updated docs
  * 06-Jan-2008: ekoperda fixed getPromotedVersion() to tolerate very long
  *              promotion chains
+ * 18-Oct-2026: agent added getUsedResourceKeys() and
+ *              getConflictingResourceKeys()
+ * 18-Oct-2026: agent added the connectionClass property
+ * 18-Oct-2026: agent added refuse(), through which a lock agent wakes a
+ *              waiting acquirer when no connection can be opened for it
  */
 
 package org.recipnet.site.core.lock;
@@ -23,6 +28,8 @@ package org.recipnet.site.core.lock;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
 
 import org.recipnet.site.OperationFailedException;
 import org.recipnet.site.UnexpectedExceptionException;
@@ -71,7 +78,9 @@ import org.recipnet.site.shared.db.UserInfo;
  * objects indicate to {@code LockAgent} that they expect a database connection
  * at <i>grant</i> time by setting their {@code needsDbConnection} property.
  * Subclasses may signal the {@code AbstractLock} base class to behave this way
- * by calling {@code setNeedsDbConnection()}.
+ * by calling {@code setNeedsDbConnection()}. Each lock also belongs to a
+ * {@link ConnectionClass}, set by {@code setConnectionClass()}, that the pool
+ * consults when deciding whether the lock may borrow a connection.
  * </p><p>
  * Another common requirement of locks is that they expire after a certain
  * amount of time has passed (presumably without activity). Lock objects
@@ -112,6 +121,13 @@ public abstract class AbstractLock implements Cloneable,
      */
     private boolean needsDbConnection = false;
 
+    /**
+     * The class of work this lock protects, for the purpose of apportioning
+     * database connections among locks; set by
+     * {@link #setConnectionClass(ConnectionClass)}.
+     */
+    private ConnectionClass connectionClass = ConnectionClass.GENERAL;
+
     /**
      * If positive, indicates the expiration interval, in milliseconds, that
      * lock agents should enforce for this lock (if negative, this lock should
@@ -171,6 +187,13 @@ public abstract class AbstractLock implements Cloneable,
      */
     private long timeToExpire = INVALID_TIME;
 
+    /**
+     * The failure that prevented a pending lock from being granted, or
+     * {@code null} if there has been none; set by
+     * {@link #refuse(SQLException)}.
+     */
+    private SQLException refusalCause = null;
+
     /**
      * For a lock that has since been promoted to another lock by a lock agent,
      * this is a reference to the lock object that was promoted from this lock
@@ -306,6 +329,34 @@ public abstract class AbstractLock implements Cloneable,
         needsDbConnection = true;
     }
 
+    /**
+     * Gets the value of this lock object's {@code connectionClass} property.
+     * 
+     * @return the {@code ConnectionClass} to which any database connection
+     *         loaned to this lock is attributed
+     */
+    public synchronized ConnectionClass getConnectionClass() {
+        return connectionClass;
+    }
+
+    /**
+     * Defines the class of work this lock protects, so that the lock agent
+     * can honor the connection reservations of each class when loaning
+     * database connections. Locks belong to {@code ConnectionClass.GENERAL}
+     * unless this method is invoked.  Must be invoked before this lock is
+     * granted.
+     * 
+     * @param connectionClass the {@code ConnectionClass} of this lock
+     * @throws IllegalStateException if this lock has already been granted.
+     */
+    public synchronized void setConnectionClass(
+            ConnectionClass connectionClass) {
+        if (this.timeGranted != INVALID_TIME) {
+            throw new IllegalStateException();
+        }
+        this.connectionClass = connectionClass;
+    }
+
     /**
      * For use by lock agents only: detects whether this lock object has
      * auto-expired. The current implementation always returns false if
@@ -367,6 +418,51 @@ public abstract class AbstractLock implements Cloneable,
         }
     }
 
+    /**
+     * For use by lock agents only: returns keys naming the resources that the
+     * operations authorized by this lock would use. Together with
+     * {@link #getConflictingResourceKeys()} this permits a lock agent to index
+     * locks by resource and so to avoid testing every pair of locks for
+     * disruption. The keys may be any objects with suitable
+     * {@code equals()} and {@code hashCode()} methods.
+     * <p>
+     * Implementations must ensure that whenever this lock would be disrupted
+     * by another lock (as determined by {@code wouldBeDisruptedBy()}), at
+     * least one of this lock's conflicting resource keys is equal to one of
+     * the other lock's used resource keys, unless either lock returns
+     * {@code null}. A lock that returns {@code null} from either method is
+     * tested against every other lock. The keys must not change after the
+     * lock is registered.
+     * <p>
+     * This base class implementation returns {@code null}, which is always
+     * correct. A subclass that overrides {@code wouldBeDisruptedBy()} should
+     * override both this method and {@code getConflictingResourceKeys()}, or
+     * neither. Keys describing a {@code MultiLock} or
+     * {@code GenericExclusiveLock} need not be considered by subclasses.
+     *
+     * @return a {@code Collection} of resource keys, or {@code null} if this
+     *         lock should be tested against every other lock
+     */
+    protected Collection<?> getUsedResourceKeys() {
+        return null;
+    }
+
+    /**
+     * For use by lock agents only: returns keys naming the resources that,
+     * if used by another lock, might disrupt the operations authorized by
+     * this lock. See {@link #getUsedResourceKeys()} for the contract that
+     * these keys must meet.
+     * <p>
+     * This base class implementation returns {@code null}, which is always
+     * correct.
+     *
+     * @return a {@code Collection} of resource keys, or {@code null} if this
+     *         lock should be tested against every other lock
+     */
+    protected Collection<?> getConflictingResourceKeys() {
+        return null;
+    }
+
     /**
      * For use by lock agents only: informs this lock object that is has just
      * been granted. The current implementation updates state variables
@@ -443,19 +539,41 @@ public abstract class AbstractLock implements Cloneable,
         return c;
     }
 
+    /**
+     * For use by lock agents only: informs this pending lock object that it
+     * will not be granted because no database connection could be opened for
+     * it, and wakes the thread blocked in {@code waitUntilGranted()}, which
+     * then throws. Lock agents invoke this method only for locks that they
+     * have already removed from their pending queues.
+     * 
+     * @param cause the {@code SQLException} with which the attempt to open a
+     *        connection failed
+     */
+    protected void refuse(SQLException cause) {
+        synchronized (this) {
+            refusalCause = cause;
+        }
+        signal.send();
+    }
+
     /**
      * For use by lock agents only: convenience function that blocks until
-     * {@code grant()} is invoked by another thread. This implementation does
-     * not need to be {@code synchronized} because its
+     * {@code grant()} or {@code refuse()} is invoked by another thread. This
+     * implementation does not need to be {@code synchronized} because its
      * {@code EventSignal}-based implementation is thread-safe.
      * 
      * @param timeout the approximate number of milliseconds the method should
      *        block before throwing an exception.
      * @throws DeadlockDetectedException if {@code timeout} milliseconds elapse
-     *         and {@code grant()} still has not been invoked.
+     *         and {@code grant()} still has not been invoked, or if
+     *         {@code refuse()} is invoked instead; in the latter case the
+     *         exception's cause is the {@code SQLException} passed to
+     *         {@code refuse()}.
      */
     protected void waitUntilGranted(int timeout)
             throws DeadlockDetectedException {
+        SQLException cause;
+
         /*
          * TODO: perhaps instead of DeadlockDetectedException, throwing some
          * sort of pessimistic locking exception would make more sense.
@@ -463,6 +581,16 @@ public abstract class AbstractLock implements Cloneable,
         if (!signal.receive(timeout)) {
             throw new DeadlockDetectedException();
         }
+        synchronized (this) {
+            cause = refusalCause;
+        }
+        if (cause != null) {
+            DeadlockDetectedException ex = new DeadlockDetectedException(
+                    "No database connection could be opened");
+
+            ex.initCause(cause);
+            throw ex;
+        }
     }
 
     /**
@@ -825,6 +953,9 @@ public abstract class AbstractLock implements Cloneable,
             buf.append(" userId=" + userId);
         }
         buf.append(" db=" + getNeedsDbConnection());
+        if (getConnectionClass() != ConnectionClass.GENERAL) {
+            buf.append(" class=" + getConnectionClass());
+        }
         if (prevInChain != null) {
             buf.append(" prev=" + prevInChain.id);
         }
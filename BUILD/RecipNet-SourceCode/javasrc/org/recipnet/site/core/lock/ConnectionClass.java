@@ -0,0 +1,50 @@
+/*
+ * Reciprocal Net project
+ *
+ * ConnectionClass.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.core.lock;
+
+/**
+ * Classifies the locks that borrow database connections from a
+ * {@code ConnectionPool}, according to the kind of work they protect. The pool
+ * may reserve a minimum number of connections for each class so that one kind
+ * of work cannot starve the others; every lock belongs to exactly one class.
+ *
+ * @see AbstractLock#setConnectionClass(ConnectionClass)
+ * @see ConnectionPool#setReserve(ConnectionClass, int)
+ */
+public enum ConnectionClass {
+
+    /** Interactive reads and any other work not otherwise classified */
+    GENERAL,
+
+    /** Execution of stored sample searches */
+    SEARCH,
+
+    /** Writes to sample records made on behalf of local users */
+    SAMPLE_WRITE,
+
+    /** Repository tickets, which may be held for a user's whole transfer */
+    REPOSITORY,
+
+    /** Processing of inter-site messages received from other sites */
+    ISM,
+
+    /** Long-running maintenance jobs, such as search table rebuilds */
+    MAINTENANCE;
+
+    /**
+     * Parses a string as a {@code ConnectionClass} name, ignoring case
+     *
+     * @param s the name to parse
+     * @return the {@code ConnectionClass} named by {@code s}
+     * @throws IllegalArgumentException if {@code s} names no class
+     */
+    public static ConnectionClass parse(String s) {
+        return valueOf(s.trim().toUpperCase());
+    }
+}
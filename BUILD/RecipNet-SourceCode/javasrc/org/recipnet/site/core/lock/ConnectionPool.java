@@ -0,0 +1,732 @@
+/*
+ * Reciprocal Net project
+ *
+ * ConnectionPool.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ * 18-Oct-2026: agent moved the opening and testing of connections out of
+ *              borrow(), into prepare() and a background replenisher, so
+ *              that no database I/O happens under LockAgent's scheduler lock
+ * 18-Oct-2026: agent documented that a borrower waiting only for a
+ *              replenishment should be told when it fails
+ */
+
+package org.recipnet.site.core.lock;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.recipnet.common.PerfTimer;
+import org.recipnet.site.shared.SampleStats;
+
+/**
+ * <p>
+ * A pool of database {@code Connection} objects from which {@code LockAgent}
+ * loans connections to the locks that need them. Connections are opened on
+ * demand, up to a fixed ceiling, and are kept open once returned so that they
+ * may be loaned again. A connection that has sat idle for longer than the
+ * configured validation interval is tested before it is loaned again, and is
+ * discarded (and replaced) if the test fails; this protects lock holders from
+ * connections that the database server has timed out in the meantime.
+ * </p><p>
+ * Opening and testing connections can take arbitrarily long, so neither is
+ * ever done by {@link #borrow(ConnectionClass, long)}: it lends only idle
+ * connections that are ready for use, and when there is none it starts a
+ * background replenishment and returns {@code null}. The replenishment opens
+ * a new connection or tests a stale one without holding this pool's monitor,
+ * adds the result to the idle connections, and then tells the
+ * {@link Listener}, which is expected to try again. Borrowers may also invoke
+ * {@link #prepare()} in their own threads beforehand, so that a ready
+ * connection is usually waiting for them.
+ * </p><p>
+ * Every loan is attributed to a {@link ConnectionClass}. A minimum number of
+ * connections may be reserved for each class by calling
+ * {@link #setReserve(ConnectionClass, int)}: the pool declines to lend to one
+ * class any connection that would leave too few for the unmet reservations of
+ * the others. Thus a burst of maintenance work cannot occupy every connection
+ * while interactive searches and sample writes wait behind it.
+ * </p><p>
+ * The time that each borrower spent waiting for its connection is recorded in
+ * a {@code SampleStats} under the name {@code dbConnectionWait}, with one
+ * child counter per connection class; the pool's own counters are available
+ * from {@link #getCounters()}.
+ * </p><p>
+ * This class is thread-safe. {@code LockAgent} invokes the package-private
+ * methods other than {@code prepare()} while it holds its scheduler lock; the
+ * {@code Listener} is never invoked while this pool's monitor is held.
+ * </p>
+ */
+public class ConnectionPool {
+
+    /** The SQL statement with which idle connections are tested */
+    private static final String VALIDATION_QUERY = "SELECT 1";
+
+    /**
+     * The number of milliseconds for which a connection that has just been
+     * opened or tested may be lent without another test, even if the
+     * validation interval is shorter
+     */
+    private static final long READY_PERIOD = 1000;
+
+    /**
+     * Runs the background replenishments of all pools. Its threads are
+     * daemons so that they never hold up shutdown.
+     */
+    private static final ExecutorService REPLENISHMENT_EXECUTOR
+            = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r,
+                            "ConnectionPool replenishment");
+
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+
+    /** The JDBC URL of the database to which connections are opened */
+    private final String dbUrl;
+
+    /** The database account name with which connections are opened */
+    private final String dbUsername;
+
+    /** The database account password with which connections are opened */
+    private final String dbPassword;
+
+    /** The maximum number of connections that may be open at once */
+    private final int maxConnections;
+
+    /**
+     * The number of milliseconds a connection may sit idle before it must be
+     * tested prior to its next loan, or a negative number if idle connections
+     * are never tested
+     */
+    private final long validationInterval;
+
+    /**
+     * The statistics container to which wait times are reported, or
+     * {@code null} if they are not to be reported
+     */
+    private final SampleStats stats;
+
+    /**
+     * The open connections not currently on loan, the most recently returned
+     * last
+     */
+    private final Deque<IdleConnection> idleConnections;
+
+    /** A map from each connection on loan to the class of its borrower */
+    private final Map<Connection, ConnectionClass> busyConnections;
+
+    /** The number of connections on loan to each class */
+    private final Map<ConnectionClass, Integer> loansByClass;
+
+    /** The number of connections reserved for each class */
+    private final Map<ConnectionClass, Integer> reserves;
+
+    /**
+     * The number of connections being opened or tested outside this pool's
+     * monitor; they count toward {@code maxConnections}
+     */
+    private int pendingConnections;
+
+    /**
+     * Set while a replenishment is under way, whether in the background or
+     * in a thread that invoked {@link #prepare()}; at most one runs at a time
+     */
+    private boolean replenishing;
+
+    /**
+     * The object to be told when a replenishment has finished, or
+     * {@code null} if there is none
+     */
+    private Listener listener;
+
+    /** The number of connections opened since this pool was created */
+    private long connectionsOpened;
+
+    /** The number of failed attempts to open a connection */
+    private long openFailures;
+
+    /** The number of idle connections tested before being loaned */
+    private long validations;
+
+    /** The number of idle connections discarded because a test failed */
+    private long validationFailures;
+
+    /** Set once {@link #close()} has been invoked */
+    private boolean closed;
+
+    /**
+     * Initializes a new, empty {@code ConnectionPool}; no connections are
+     * opened until they are needed, or until {@link #open(int)} is invoked.
+     *
+     * @param dbUrl the JDBC URL of the database to which connections are to
+     *        be opened; the appropriate driver must already be loaded
+     * @param dbUsername the database account name with which connections are
+     *        to be opened
+     * @param dbPassword the database account password with which connections
+     *        are to be opened
+     * @param maxConnections the maximum number of connections that may be
+     *        open at once
+     * @param validationInterval the number of milliseconds a connection may
+     *        sit idle before it must be tested prior to its next loan; zero
+     *        causes every loan to be tested and a negative number disables
+     *        testing
+     * @param stats the {@code SampleStats} to which connection wait times are
+     *        to be reported, or {@code null} if they should not be reported
+     * @throws IllegalArgumentException if {@code maxConnections} is not
+     *         positive
+     */
+    public ConnectionPool(String dbUrl, String dbUsername, String dbPassword,
+            int maxConnections, long validationInterval, SampleStats stats) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.dbUrl = dbUrl;
+        this.dbUsername = dbUsername;
+        this.dbPassword = dbPassword;
+        this.maxConnections = maxConnections;
+        this.validationInterval = validationInterval;
+        this.stats = stats;
+        idleConnections = new LinkedList<IdleConnection>();
+        busyConnections = new HashMap<Connection, ConnectionClass>();
+        loansByClass = new EnumMap<ConnectionClass, Integer>(
+                ConnectionClass.class);
+        reserves = new EnumMap<ConnectionClass, Integer>(
+                ConnectionClass.class);
+        for (ConnectionClass connectionClass : ConnectionClass.values()) {
+            loansByClass.put(connectionClass, 0);
+            reserves.put(connectionClass, 0);
+        }
+        pendingConnections = 0;
+        replenishing = false;
+        listener = null;
+        connectionsOpened = 0;
+        openFailures = 0;
+        validations = 0;
+        validationFailures = 0;
+        closed = false;
+    }
+
+    /**
+     * Reserves a minimum number of connections for the exclusive use of one
+     * class of borrowers, replacing any previous reservation for that class.
+     *
+     * @param connectionClass the class for which connections are reserved
+     * @param count the number of connections to reserve
+     * @throws IllegalArgumentException if {@code count} is negative, or if the
+     *         reservations of all classes together would exceed the maximum
+     *         number of connections
+     */
+    public synchronized void setReserve(ConnectionClass connectionClass,
+            int count) {
+        int totalReserved = count;
+
+        for (ConnectionClass c : ConnectionClass.values()) {
+            if (c != connectionClass) {
+                totalReserved += reserves.get(c);
+            }
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative reservation of "
+                    + count + " connections for " + connectionClass);
+        } else if (totalReserved > maxConnections) {
+            throw new IllegalArgumentException("Reservations for "
+                    + totalReserved + " connections exceed the maximum of "
+                    + maxConnections);
+        }
+        reserves.put(connectionClass, count);
+    }
+
+    /**
+     * Opens connections until at least the specified number are open (or the
+     * maximum is reached); useful at startup to detect configuration errors
+     * early.
+     *
+     * @param count the number of connections that should be open
+     * @throws SQLException if a connection could not be opened
+     */
+    public void open(int count) throws SQLException {
+        for (;;) {
+            Connection conn;
+
+            synchronized (this) {
+                if (getOpenCount() >= Math.min(count, maxConnections)) {
+                    return;
+                }
+                pendingConnections++;
+            }
+            try {
+                conn = openConnection();
+            } catch (SQLException ex) {
+                synchronized (this) {
+                    pendingConnections--;
+                    openFailures++;
+                }
+                throw ex;
+            }
+            synchronized (this) {
+                pendingConnections--;
+                connectionsOpened++;
+                addIdle(conn, true);
+            }
+        }
+    }
+
+    /**
+     * Closes every connection not currently on loan, and arranges for those
+     * on loan to be closed when they are returned. Normally invoked at
+     * shutdown, after all locks have been released.
+     */
+    public synchronized void close() {
+        closed = true;
+        while (!idleConnections.isEmpty()) {
+            closeQuietly(idleConnections.removeFirst().connection);
+        }
+    }
+
+    /**
+     * Returns a snapshot of this pool's counters, suitable for
+     * {@link SampleStats#recordCounters(String, Map)}: the number of open,
+     * idle, and loaned connections (overall and by class), the maximum, and
+     * the cumulative numbers of connections opened, failed opening attempts,
+     * validations, and validation failures.
+     *
+     * @return a {@code Map} from counter name to value
+     */
+    public synchronized Map<String, Long> getCounters() {
+        Map<String, Long> counters = new TreeMap<String, Long>();
+
+        counters.put("open", Long.valueOf(
+                idleConnections.size() + busyConnections.size()));
+        counters.put("pending", Long.valueOf(pendingConnections));
+        counters.put("max", Long.valueOf(maxConnections));
+        counters.put("idle", Long.valueOf(idleConnections.size()));
+        counters.put("busy", Long.valueOf(busyConnections.size()));
+        for (ConnectionClass c : ConnectionClass.values()) {
+            counters.put("busy." + c, Long.valueOf(loansByClass.get(c)));
+        }
+        counters.put("opened", Long.valueOf(connectionsOpened));
+        counters.put("openFailures", Long.valueOf(openFailures));
+        counters.put("validations", Long.valueOf(validations));
+        counters.put("validationFailures", Long.valueOf(validationFailures));
+
+        return counters;
+    }
+
+    /**
+     * Determines whether this pool could lend a connection to a borrower of
+     * the specified class right now without infringing another class's
+     * reservation. The loan might nevertheless be deferred if no idle
+     * connection is ready for use.
+     *
+     * @param connectionClass the class of the prospective borrower
+     * @return {@code true} if a loan is permitted, {@code false} if the
+     *         borrower must wait for a connection to be returned
+     */
+    synchronized boolean canLend(ConnectionClass connectionClass) {
+        int unmetReservations = 0;
+
+        for (ConnectionClass c : ConnectionClass.values()) {
+            int loans = loansByClass.get(c) + ((c == connectionClass) ? 1 : 0);
+
+            unmetReservations += Math.max(0, reserves.get(c) - loans);
+        }
+
+        return !closed && (busyConnections.size() + 1 + unmetReservations
+                <= maxConnections);
+    }
+
+    /**
+     * Determines whether every connection this pool may open is on loan, in
+     * which case no borrower of any class can be satisfied until one is
+     * returned
+     *
+     * @return {@code true} if this pool is exhausted
+     */
+    synchronized boolean isExhausted() {
+        return busyConnections.size() >= maxConnections;
+    }
+
+    /**
+     * Lends a connection to a borrower of the specified class if an idle one
+     * is ready for use: that is, if it has been idle for less than the
+     * validation interval, or was opened or tested within the last
+     * {@code READY_PERIOD} milliseconds.
+     * Otherwise, starts a background replenishment (unless one is already
+     * under way) and returns {@code null}; the {@link Listener} is told when
+     * the replenishment finishes. This method never performs database I/O.
+     * The caller should first have obtained a {@code true} result from
+     * {@link #canLend(ConnectionClass)}.
+     *
+     * @param connectionClass the class of the borrower
+     * @param waitingSince the system time at which the borrower began waiting
+     *        for a connection, for statistical purposes
+     * @return the loaned {@code Connection}, which must eventually be
+     *         returned via {@link #giveBack(Connection)}, or {@code null} if
+     *         no connection is ready yet
+     */
+    synchronized Connection borrow(ConnectionClass connectionClass,
+            long waitingSince) {
+        IdleConnection ready = findReady(System.currentTimeMillis());
+
+        if (ready == null) {
+            if (!closed && !replenishing && needsReplenishment()) {
+                replenishing = true;
+                REPLENISHMENT_EXECUTOR.execute(new Runnable() {
+                    public void run() {
+                        replenish();
+                    }
+                });
+            }
+
+            return null;
+        }
+        idleConnections.remove(ready);
+        busyConnections.put(ready.connection, connectionClass);
+        loansByClass.put(connectionClass, loansByClass.get(connectionClass) + 1);
+        recordWait(connectionClass, waitingSince);
+
+        return ready.connection;
+    }
+
+    /**
+     * Ensures, if possible, that an idle connection is ready for use, by
+     * opening or testing one in the calling thread; the caller must not hold
+     * any lock that a slow database would make others wait for. Does nothing
+     * if a connection is already ready, if the pool is full, or if a
+     * replenishment is already under way. Failures are reported to the
+     * {@link Listener} rather than thrown.
+     */
+    void prepare() {
+        synchronized (this) {
+            if (closed || replenishing
+                    || (findReady(System.currentTimeMillis()) != null)
+                    || !needsReplenishment()) {
+                return;
+            }
+            replenishing = true;
+        }
+        replenish();
+    }
+
+    /**
+     * Sets the object to be told when a replenishment has finished
+     *
+     * @param listener the {@code Listener}, or {@code null} for none
+     */
+    synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Attributes a connection already on loan to a different class of
+     * borrower; invoked when a lock is promoted to one of another class and
+     * takes over its predecessor's connection.
+     *
+     * @param conn a {@code Connection} on loan from this pool
+     * @param connectionClass the class of its new borrower
+     */
+    synchronized void reclassify(Connection conn,
+            ConnectionClass connectionClass) {
+        ConnectionClass oldClass = busyConnections.put(conn, connectionClass);
+
+        assert (oldClass != null) : "Connection is not on loan";
+        loansByClass.put(oldClass, loansByClass.get(oldClass) - 1);
+        loansByClass.put(connectionClass, loansByClass.get(connectionClass) + 1);
+    }
+
+    /**
+     * Returns a loaned connection to this pool
+     *
+     * @param conn a {@code Connection} on loan from this pool
+     */
+    synchronized void giveBack(Connection conn) {
+        ConnectionClass connectionClass = busyConnections.remove(conn);
+
+        assert (connectionClass != null) : "Connection is not on loan";
+        loansByClass.put(connectionClass, loansByClass.get(connectionClass) - 1);
+        addIdle(conn, false);
+    }
+
+    /**
+     * Returns a snapshot of the connections not currently on loan; for
+     * diagnostic use
+     *
+     * @return a {@code Collection} of the idle {@code Connection}s
+     */
+    synchronized Collection<Connection> getIdleConnections() {
+        Collection<Connection> connections
+                = new ArrayList<Connection>(idleConnections.size());
+
+        for (IdleConnection idle : idleConnections) {
+            connections.add(idle.connection);
+        }
+
+        return connections;
+    }
+
+    /**
+     * Returns a snapshot of the connections currently on loan; for diagnostic
+     * use
+     *
+     * @return a {@code Collection} of the busy {@code Connection}s
+     */
+    synchronized Collection<Connection> getBusyConnections() {
+        return new ArrayList<Connection>(busyConnections.keySet());
+    }
+
+    /**
+     * Opens or tests connections, outside this pool's monitor, until one is
+     * ready for use or no more can be opened, and then tells the
+     * {@code Listener}. The caller must have set {@code replenishing}; it is
+     * cleared before the {@code Listener} is told.
+     */
+    private void replenish() {
+        SQLException failure = null;
+        Listener currentListener;
+
+        for (;;) {
+            IdleConnection stale = null;
+            Connection conn = null;
+
+            synchronized (this) {
+                if (closed || (findReady(System.currentTimeMillis()) != null)
+                        || !needsReplenishment()) {
+                    break;
+                }
+
+                // Test the most recently returned connection, if any
+                if (!idleConnections.isEmpty()) {
+                    stale = idleConnections.removeLast();
+                }
+                pendingConnections++;
+            }
+
+            if (stale == null) {
+                try {
+                    conn = openConnection();
+                } catch (SQLException ex) {
+                    failure = ex;
+                }
+            } else if (isValid(stale.connection)) {
+                conn = stale.connection;
+            } else {
+                closeQuietly(stale.connection);
+            }
+
+            synchronized (this) {
+                pendingConnections--;
+                if (stale == null) {
+                    if (conn == null) {
+                        openFailures++;
+                    } else {
+                        connectionsOpened++;
+                    }
+                } else {
+                    validations++;
+                    if (conn == null) {
+                        validationFailures++;
+                    }
+                }
+                if (conn != null) {
+                    addIdle(conn, true);
+                }
+            }
+            if (failure != null) {
+                break;
+            }
+        }
+
+        synchronized (this) {
+            replenishing = false;
+            currentListener = listener;
+        }
+        if (currentListener != null) {
+            if (failure == null) {
+                currentListener.connectionReady();
+            } else {
+                currentListener.connectionFailed(failure);
+            }
+        }
+    }
+
+    /**
+     * Returns the most recently returned idle connection that is ready for
+     * use, or {@code null} if there is none. The caller must hold this
+     * pool's monitor.
+     */
+    private IdleConnection findReady(long now) {
+        for (Iterator<IdleConnection> it
+                = idleConnections.descendingIterator(); it.hasNext(); ) {
+            IdleConnection candidate = it.next();
+
+            long idleTime = now - candidate.idleSince;
+
+            if ((validationInterval < 0) || (idleTime < validationInterval)
+                    || (candidate.tested && (idleTime < READY_PERIOD))) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Determines whether a replenishment could make a connection ready for
+     * use; that is, whether there is an idle connection to be tested or room
+     * to open another. The caller must hold this pool's monitor and should
+     * already know that no idle connection is ready.
+     */
+    private boolean needsReplenishment() {
+        return !idleConnections.isEmpty()
+                || (getOpenCount() + pendingConnections < maxConnections);
+    }
+
+    /**
+     * Returns the number of connections open and in this pool's custody;
+     * the caller must hold this pool's monitor
+     */
+    private int getOpenCount() {
+        return idleConnections.size() + busyConnections.size();
+    }
+
+    /**
+     * Adds a connection to the idle connections, or closes it if this pool
+     * has been closed. The caller must hold this pool's monitor.
+     *
+     * @param tested {@code true} if the connection has just been opened or
+     *        tested, and so may be lent without being tested again
+     */
+    private void addIdle(Connection conn, boolean tested) {
+        if (closed) {
+            closeQuietly(conn);
+        } else {
+            idleConnections.addLast(new IdleConnection(conn, tested));
+        }
+    }
+
+    /**
+     * Opens a new connection to the database
+     */
+    private Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(dbUrl, dbUsername, dbPassword);
+    }
+
+    /**
+     * Tests an idle connection by executing {@code VALIDATION_QUERY} on it
+     *
+     * @return {@code true} if the connection appears usable
+     */
+    private static boolean isValid(Connection conn) {
+        try {
+            Statement cmd = conn.createStatement();
+
+            try {
+                cmd.executeQuery(VALIDATION_QUERY).close();
+            } finally {
+                cmd.close();
+            }
+
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Reports the wait of one borrower to {@code stats}, if there is one
+     */
+    private void recordWait(ConnectionClass connectionClass,
+            long waitingSince) {
+        if (stats != null) {
+            PerfTimer perfTimer = new PerfTimer("dbConnectionWait");
+
+            perfTimer.startTime = waitingSince;
+            perfTimer.newChild(connectionClass.toString());
+            perfTimer.currentChild.startTime = waitingSince;
+            perfTimer.stopChild();
+            stats.record(perfTimer);
+        }
+    }
+
+    /**
+     * Closes a connection, ignoring any error in doing so
+     */
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ex) {
+            // Nothing more can be done with this connection anyway.
+        }
+    }
+
+    /**
+     * The interface through which a pool tells its borrower that a
+     * replenishment has finished. Methods are invoked in the thread that
+     * performed the replenishment, without the pool's monitor held.
+     */
+    interface Listener {
+
+        /**
+         * Invoked when an idle connection has been made ready for use, or
+         * when no replenishment turned out to be needed; borrowers that were
+         * refused a connection should try again
+         */
+        void connectionReady();
+
+        /**
+         * Invoked when a new connection could not be opened. Borrowers that
+         * were refused a connection will not get one until another
+         * replenishment succeeds or a connection is returned, so those that
+         * are waiting for nothing else should be told of the failure rather
+         * than left to wait.
+         *
+         * @param ex the {@code SQLException} that occurred
+         */
+        void connectionFailed(SQLException ex);
+    }
+
+    /**
+     * An open connection not currently on loan, together with the time it
+     * was last returned
+     */
+    private static class IdleConnection {
+
+        /** The connection */
+        final Connection connection;
+
+        /** The system time at which the connection became idle */
+        final long idleSince;
+
+        /**
+         * {@code true} if the connection was opened or tested, rather than
+         * returned by a borrower, when it became idle
+         */
+        final boolean tested;
+
+        /**
+         * Initializes a new {@code IdleConnection} that becomes idle now
+         */
+        IdleConnection(Connection connection, boolean tested) {
+            this.connection = connection;
+            this.idleSince = System.currentTimeMillis();
+            this.tested = tested;
+        }
+    }
+}
@@ -26,6 +26,24 @@
  *              reorganized all code that acquires the scheduler lock to release
  *              it again in an appropriately positioned finally block; updated
  *              many method's docs. 
+ * 18-Oct-2026: agent replaced the rescanning scheduler with one driven by
+ *              LockConflictIndex: canLockImmediately() now tests only those
+ *              active locks that share a resource key with the candidate,
+ *              and scheduler() reconsiders only those pending locks that a
+ *              revocation or a reclaimed connection might have unblocked;
+ *              made PendingLockComparator a consistent total order
+ * 18-Oct-2026: agent replaced the fixed set of connections supplied through
+ *              addConnection() with a ConnectionPool supplied through
+ *              setConnectionPool(), which opens and validates connections on
+ *              demand and reserves connections for each ConnectionClass
+ * 18-Oct-2026: agent made grantLock() leave a lock pending when the pool has
+ *              no connection ready, rather than wait for one to be opened
+ *              under the scheduler lock; acquireLock() and promoteLock() now
+ *              prepare a connection beforehand, and connectionsReplenished()
+ *              reruns the scheduler when the pool has readied one
+ * 18-Oct-2026: agent made a failure to open a connection refuse the pending
+ *              locks that were waiting only for one, rather than leave them
+ *              to time out
  */
 
 package org.recipnet.site.core.lock;
@@ -35,18 +53,17 @@ import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.security.SecureRandom;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
-import java.util.Queue;
+import java.util.NavigableSet;
 import java.util.Random;
+import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.recipnet.site.OperationFailedException;
@@ -79,11 +96,12 @@ import org.recipnet.site.core.util.MutexLock;
  * the other lock, will be held simultaneously. Subject to this restriction,
  * lock requests are granted (i.e. locks are acquired) as rapidly as possible.
  * </p><p>
- * {@code LockAgent} maintains a pool of database {@code Connection} objects
- * that are loaned to locks that require them, as the locks are granted. The
- * caller should supply the appropriate number of {@code Connection} objects to
- * {@code LockAgent} at startup time by invoking {@code supplyConnection()}
- * repeatedly.
+ * {@code LockAgent} loans database {@code Connection} objects to locks that
+ * require them, as the locks are granted, from a {@code ConnectionPool} that
+ * the caller should supply at startup time by invoking
+ * {@code setConnectionPool()}. A lock that needs a connection is not granted
+ * until the pool is willing to lend one to the lock's
+ * {@code ConnectionClass}; the time it spent waiting is reported to the pool.
  * </p><p>
  * Other objects may subscribe to notifications from {@code LockAgent} regarding
  * locks granted and revoked. Those other objects should implement the
@@ -123,13 +141,6 @@ public class LockAgent {
      */
     private final static int SCHEDULER_TIMEOUT = 10000;
     
-    /**
-     * The initial number of locks that can be accommodated in the pending lock
-     * queue at the same time; the queue will expand at need, so the exact value
-     * of this parameter is not criticial. 
-     */
-    private final static int INITIAL_QUEUE_SIZE = 64;
-
     /** serializes access to most member variables */
     private final MutexLock schedulerLock;
 
@@ -142,16 +153,53 @@ public class LockAgent {
     private final Map<Integer, AbstractLock> activeLocks;
 
     /**
-     * A List of AbstractLock objects representing those locks that have been
+     * Indexes the locks in {@code activeLocks} by resource, so that the active
+     * locks that might conflict with a given lock can be found without
+     * examining all of them. Must hold the {@code schedulerLock} to read or
+     * modify.
+     */
+    private final LockConflictIndex activeLockIndex;
+
+    /**
+     * A set of AbstractLock objects representing those locks that have been
      * requested, but that have not yet been acquired because currently active
      * locks would conflict with them. Calling threads whose locks are in this
-     * list are blocked inside {@link #acquireLock(AbstractLock, boolean)},
+     * set are blocked inside {@link #acquireLock(AbstractLock, boolean)},
      * waiting for their lock to be granted.  This set is always sorted in order
      * of priority, so that the most important (and probably soonest to be
      * granted) locks are at the front. Must hold the {@code schedulerLock} to
      * read or modify.
      */
-    private final List<AbstractLock> pendingLocks;
+    private final NavigableSet<AbstractLock> pendingLocks;
+
+    /**
+     * Indexes the locks in {@code pendingLocks} by resource, so that the
+     * pending locks that a revocation might unblock can be found without
+     * examining all of them. Must hold the {@code schedulerLock} to read or
+     * modify.
+     */
+    private final LockConflictIndex pendingLockIndex;
+
+    /**
+     * The subset of {@code pendingLocks} that would require a connection from
+     * {@code connectionPool} in order to be granted, sorted in the same
+     * order. Must hold the {@code schedulerLock} to read or modify.
+     */
+    private final NavigableSet<AbstractLock> pendingLocksNeedingConnection;
+
+    /**
+     * The resource keys of locks revoked since the scheduler last ran; the
+     * scheduler reconsiders those pending locks that might have conflicted
+     * with them. Must hold the {@code schedulerLock} to read or modify.
+     */
+    private final List<LockConflictIndex.Keys> revokedLockKeys;
+
+    /**
+     * Set when a connection is returned to {@code connectionPool}, and
+     * cleared when the scheduler has reconsidered the pending locks that were
+     * waiting for one. Must hold the {@code schedulerLock} to read or modify.
+     */
+    private boolean connectionReclaimed;
     
     /**
      * A {@code Comparator} that determines the relative granting priority for
@@ -160,21 +208,20 @@ public class LockAgent {
     private final Comparator<AbstractLock> pendingLockComparator;
 
     /**
-     * A collection of database Connection objects that were given to us by
-     * Sample Manager at construction time. A Connection exists in this list
-     * only if it is not currently assigned to an active lock; connections
-     * assigned to active locks are removed from this list and added back in (to
-     * the end) when the lock is released. Must hold the {@code schedulerLock}
-     * to read or modify.
+     * The pool from which database connections are loaned to locks, as
+     * supplied by Sample Manager at startup time, or {@code null} if none has
+     * been supplied yet. Must hold the {@code schedulerLock} to borrow from or
+     * return to it, but not to ask it to prepare a connection.
      */
-    private final Queue<Connection> freeConnections;
+    private volatile ConnectionPool connectionPool;
 
     /**
-     * Like freeConnections above, but Connection objects in this set currently
-     * are assigned to an active lock and cannot be issued. Must hold the
-     * {@code schedulerLock} to read or modify.
+     * A map from each pending lock that has been found eligible to be granted
+     * but for the want of a database connection to the system time at which
+     * it was first found so; used to measure connection wait times. Must hold
+     * the {@code schedulerLock} to read or modify.
      */
-    private final Collection<Connection> busyConnections;
+    private final Map<AbstractLock, Long> connectionWaitStartTimes;
 
     /**
      * Contains references to zero or more {@code LockListener} objects that
@@ -241,11 +288,17 @@ public class LockAgent {
         this.siteManager = siteManager;
         this.enableStackTraces = enableStackTraces;
         this.acquisitionTimeout = acquisitionTimeout;
-        freeConnections = new LinkedList<Connection>();
-        busyConnections = new ArrayList<Connection>();
+        connectionPool = null;
+        connectionWaitStartTimes = new HashMap<AbstractLock, Long>();
         activeLocks = new HashMap<Integer, AbstractLock>();
-        pendingLocks = new ArrayList<AbstractLock>(INITIAL_QUEUE_SIZE);
+        activeLockIndex = new LockConflictIndex();
         pendingLockComparator = new PendingLockComparator();
+        pendingLocks = new TreeSet<AbstractLock>(pendingLockComparator);
+        pendingLockIndex = new LockConflictIndex();
+        pendingLocksNeedingConnection
+                = new TreeSet<AbstractLock>(pendingLockComparator);
+        revokedLockKeys = new ArrayList<LockConflictIndex.Keys>();
+        connectionReclaimed = false;
         schedulerLock = new MutexLock();
         listeners = new CopyOnWriteArrayList<LockListener>();
         registeredLockIds = new HashMap<Integer, LockIdReference<?>>();
@@ -254,24 +307,102 @@ public class LockAgent {
     }
 
     /**
-     * Supplies a database {@code Connection} to be included in the connection
-     * pool. It is normal to call this method repeatedly, with a new object each
-     * time, according to the number of database connections appropriate for the
-     * caller's application.
+     * Supplies the pool from which database {@code Connection}s are to be
+     * loaned to locks. Normally invoked once, at startup time, before any lock
+     * that needs a connection is acquired.
      * 
-     * @param conn the Connection to add to this agent's pool
+     * @param pool the {@code ConnectionPool} this agent should borrow from
      */
-    public void addConnection(Connection conn) {
+    public void setConnectionPool(ConnectionPool pool) {
         boolean rc = schedulerLock.acquire(SCHEDULER_TIMEOUT);
         
         // FIXME: a mandatory test may be warranted here:
-        assert rc : "scheduler not acquired for adding DB Connections";
+        assert rc : "scheduler not acquired for setting the connection pool";
         
         try {
-            freeConnections.offer(conn);
+            connectionPool = pool;
         } finally {
             schedulerLock.release();
         }
+        pool.setListener(new ConnectionPool.Listener() {
+            public void connectionReady() {
+                connectionsReplenished();
+            }
+
+            public void connectionFailed(SQLException ex) {
+                siteManager.recordLogRecord(
+                        LogRecordGenerator.lockConnectionUnavailable(ex));
+                connectionsUnavailable(ex);
+            }
+        });
+    }
+
+    /**
+     * Invoked by the pool, without the {@code schedulerLock} held, when it
+     * has readied a connection in the background; lets the scheduler grant
+     * those pending locks that were waiting for one.
+     */
+    private void connectionsReplenished() {
+        if (!schedulerLock.acquire(SCHEDULER_TIMEOUT)) {
+            siteManager.recordLogRecord(LogRecordGenerator.lockSchedulerTimeout(
+                    new DeadlockDetectedException()));
+        } else {
+            try {
+                connectionReclaimed = true;
+                scheduler();
+            } finally {
+                schedulerLock.release();
+            }
+        }
+    }
+
+    /**
+     * Invoked by the pool, without the {@code schedulerLock} held, when it
+     * has failed to open a connection in the background; refuses, with that
+     * failure, every pending lock that lacks only a connection, so that its
+     * acquirer is not left to wait out the acquisition timeout. Pending
+     * locks that conflict with active ones, or that the pool would not serve
+     * because it is full, go on waiting, since a release or a returned
+     * connection may yet satisfy them.
+     * 
+     * @param ex the {@code SQLException} with which the attempt to open a
+     *        connection failed
+     */
+    private void connectionsUnavailable(SQLException ex) {
+        if (!schedulerLock.acquire(SCHEDULER_TIMEOUT)) {
+            siteManager.recordLogRecord(LogRecordGenerator.lockSchedulerTimeout(
+                    new DeadlockDetectedException()));
+        } else {
+            try {
+                for (AbstractLock lock : new ArrayList<AbstractLock>(
+                        pendingLocksNeedingConnection)) {
+                    if (canLockImmediately(lock,
+                            pendingLockIndex.getKeys(lock))) {
+                        removePendingLock(lock);
+                        lock.refuse(ex);
+                    }
+                }
+            } finally {
+                schedulerLock.release();
+            }
+        }
+    }
+
+    /**
+     * Internal function that asks the pool, in the calling thread, to ready a
+     * connection for the specified lock if it will need one, so that the
+     * slow work of opening or testing a connection is done before the
+     * {@code schedulerLock} is acquired. The caller must not hold the
+     * {@code schedulerLock}.
+     * 
+     * @param lock the AbstractLock about to be acquired or promoted to
+     */
+    private void prepareConnection(AbstractLock lock) {
+        ConnectionPool pool = connectionPool;
+
+        if ((pool != null) && needsFreeConnection(lock)) {
+            pool.prepare();
+        }
     }
 
     /**
@@ -309,6 +440,9 @@ public class LockAgent {
             } else {
                 try {
                     pendingLocks.clear();
+                    pendingLockIndex.clear();
+                    pendingLocksNeedingConnection.clear();
+                    connectionWaitStartTimes.clear();
                     allLocks
                             = new ArrayList<AbstractLock>(activeLocks.values());
                 } finally {
@@ -483,6 +617,7 @@ public class LockAgent {
      */
     public void acquireLock(AbstractLock lock, boolean shouldBlock)
             throws DeadlockDetectedException {
+        prepareConnection(lock);
         
         // Acquire the scheduler.
         if (!schedulerLock.acquire(SCHEDULER_TIMEOUT)) {
@@ -495,21 +630,22 @@ public class LockAgent {
             boolean waitToGrant;
 
             try {
+                LockConflictIndex.Keys keys = LockConflictIndex.Keys.of(lock);
+
                 // Decide whether this lock can be acquired immediately.
-                if (canLockImmediately(lock)) {
+                if (canLockImmediately(lock, keys) && grantLock(lock, keys)) {
                     // The lock can be acquired immediately; no need to block.
                     // Update
                     // all the state variables and return to the caller.
-                    grantLock(lock);
                     waitToGrant = false;
                 } else if (!shouldBlock) {
                     // Abort now, without blocking, like the caller requested.
+                    connectionWaitStartTimes.remove(lock);
                     return;
                 } else {
 
                     // Put the lock in the pending lock queue
-                    pendingLocks.add(-(1 + Collections.binarySearch(
-                            pendingLocks, lock, pendingLockComparator)), lock);
+                    addPendingLock(lock, keys);
                     waitToGrant = true;
                 }
                 
@@ -535,9 +671,10 @@ public class LockAgent {
                                     LogRecordGenerator.lockAcquisitionTimeout(
                                             ex, lock, null,
                                             activeLocks.values(),
-                                            pendingLocks, freeConnections,
-                                            busyConnections));
-                            pendingLocks.remove(lock);
+                                            pendingLocks,
+                                            getIdleConnections(),
+                                            getBusyConnections()));
+                            removePendingLock(lock);
                         } finally {
                             schedulerLock.release();
                         }
@@ -625,6 +762,9 @@ public class LockAgent {
                 || (newLock.getNextInChain() != null)) {
             throw new IllegalArgumentException();
         }
+        if (!oldLock.getNeedsDbConnection()) {
+            prepareConnection(newLock);
+        }
 
         // Acquire the scheduler lock
         if (!schedulerLock.acquire(SCHEDULER_TIMEOUT)) {
@@ -638,18 +778,20 @@ public class LockAgent {
 
             // The scheduler lock is released in the finally of this try block:
             try {
+                LockConflictIndex.Keys keys;
                 
                 // tell the new and old locks about each other
                 oldLock.setNextInChain(newLock);
                 newLock.setPrevInChain(oldLock);
+                keys = LockConflictIndex.Keys.of(newLock);
                 
                 // determine whether granting the new lock must be deferred
-                if (canLockImmediately(newLock)) {
+                if (canLockImmediately(newLock, keys)
+                        && grantLock(newLock, keys)) {
                     
                     /*
                      * The lock can be acquired immediately; no need to block.
                      */
-                    grantLock(newLock);
 
                     /*
                      * The promotion may have released resources that another
@@ -661,6 +803,7 @@ public class LockAgent {
                 } else if (!shouldBlock) {
                     // Roll back and abort without blocking, as the caller
                     // requested
+                    connectionWaitStartTimes.remove(newLock);
                     oldLock.setNextInChain(null);
                     newLock.setPrevInChain(null);
                     return;
@@ -668,28 +811,11 @@ public class LockAgent {
 
                     /*
                      * Put the new lock in the pending lock queue. The queue
-                     * ordering will probably place it at or near the front
-                     * because its promotion is pending, but other promotions
-                     * that were registered earlier will tend to be granted
-                     * first
+                     * ordering will place it ahead of every lock that is not a
+                     * promotion, but other promotions that were registered
+                     * earlier will be granted first
                      */
-                    if (pendingLocks.isEmpty()) {
-                        pendingLocks.add(newLock);
-                    } else {
-                        ListIterator<AbstractLock> pendingLockIterator
-                                = pendingLocks.listIterator();
-
-                        while (pendingLockIterator.hasNext()) {
-                            AbstractLock otherLock = pendingLockIterator.next();
-                            
-                            if (pendingLockComparator.compare(
-                                    newLock, otherLock) <= 0) {
-                                break;
-                            }
-                        }
-                        pendingLocks.add(
-                                pendingLockIterator.previousIndex(), newLock);
-                    }
+                    addPendingLock(newLock, keys);
                     waitToPromote = true;
                 }
                 
@@ -714,10 +840,17 @@ public class LockAgent {
                                     LogRecordGenerator.lockAcquisitionTimeout(
                                             ex, newLock, null,
                                             activeLocks.values(),
-                                            pendingLocks, freeConnections,
-                                            busyConnections));
-                            pendingLocks.remove(newLock);
+                                            pendingLocks,
+                                            getIdleConnections(),
+                                            getBusyConnections()));
+                            removePendingLock(newLock);
                             revokeLock(oldLock, true);
+
+                            /*
+                             * Revoking the old lock may have released
+                             * resources that another thread is waiting on
+                             */
+                            scheduler();
                         } finally {
                             schedulerLock.release();
                         }
@@ -808,91 +941,186 @@ public class LockAgent {
      * Internal function that returns true if the caller may obtain the
      * requested lock right away (without blocking) and false if the caller must
      * register the lock as pending and then block. This includes an awareness
-     * of the number of available database connections. The caller is
-     * responsible for acquiring the schedulerLock before this method is
-     * invoked.  An active lock that is also referenced by the proposed lock's
+     * of the connection pool's willingness to lend a database connection to
+     * the lock's {@code ConnectionClass}; if the lock is otherwise eligible but
+     * the pool is unwilling, the time is noted in
+     * {@code connectionWaitStartTimes}. The caller is responsible for
+     * acquiring the schedulerLock before this method is invoked.  An active
+     * lock that is also referenced by the proposed lock's
      * prevInChain field will never conflict with the proposed lock; this
-     * behavior is necessary to support lock promotions/demotions.
+     * behavior is necessary to support lock promotions/demotions.  Only those
+     * active locks that {@code activeLockIndex} identifies as potential
+     * conflicts are tested.
      * 
      * @param lock the AbstractLock to be tested
+     * @param keys the resource keys of {@code lock}
      * 
      * @return {@code true} if the specified lock can be granted immediately
      */
-    private boolean canLockImmediately(AbstractLock lock) {
-        if (lock.getNeedsDbConnection() && freeConnections.isEmpty()
-                && ((lock.getPrevInChain() == null)
-                        || (!lock.getPrevInChain().getNeedsDbConnection()))) {
-            // the number of database connections is insufficient
-            return false;
-        } else {
-    
-            /*
-             * Check whether the lock would conflict with any active locks
-             */
-            
-            for (AbstractLock activeLock : activeLocks.values()) {
-                if (activeLock.getNextInChain() == lock) {
-                    /*
-                     * We're trying to promote / demote from this lock to the
-                     * specified one; conflicts are not relevant because the
-                     * two are logically the same lock 
-                     */
-                    continue;
-                } else if (lock.wouldBeDisruptedBy(activeLock)
-                        || activeLock.wouldBeDisruptedBy(lock)) {
-                    // A conflict exists with activeLock.
-                    return false;
-                }
+    private boolean canLockImmediately(AbstractLock lock,
+            LockConflictIndex.Keys keys) {
+        Collection<AbstractLock> potentialConflicts
+                = new HashSet<AbstractLock>();
+
+        /*
+         * Check whether the lock would conflict with any active locks
+         */
+        
+        activeLockIndex.collectPotentialConflicts(keys, potentialConflicts);
+        for (AbstractLock activeLock : potentialConflicts) {
+            if (activeLock.getNextInChain() == lock) {
+                /*
+                 * We're trying to promote / demote from this lock to the
+                 * specified one; conflicts are not relevant because the two
+                 * are logically the same lock 
+                 */
+                continue;
+            } else if (lock.wouldBeDisruptedBy(activeLock)
+                    || activeLock.wouldBeDisruptedBy(lock)) {
+                // A conflict exists with activeLock.
+                return false;
             }
+        }
 
-            /*
-             * If we get here, we may assume that no lock in the pending queue
-             * should be granted before the one under consideration because the
-             * current lock is eligible to be granted immediately and all locks
-             * in the pending queue are not eligible to be granted immediately
-             * (otherwise they would already have been granted).
-             */
-            
-            return true;
+        if (needsFreeConnection(lock) && ((connectionPool == null)
+                || !connectionPool.canLend(lock.getConnectionClass()))) {
+            // The pool cannot lend this lock a connection right now
+            if (!connectionWaitStartTimes.containsKey(lock)) {
+                connectionWaitStartTimes.put(lock,
+                        Long.valueOf(System.currentTimeMillis()));
+            }
+            return false;
         }
+
+        /*
+         * If we get here, we may assume that no lock in the pending queue
+         * should be granted before the one under consideration because the
+         * current lock is eligible to be granted immediately and all locks
+         * in the pending queue are not eligible to be granted immediately
+         * (otherwise they would already have been granted), except perhaps
+         * those the pool declined to serve in favor of another connection
+         * class's reservation.
+         */
+        
+        return true;
     }
 
     /**
-     * Scans all the pending locks and awakens as many of
-     * them as possible, avoiding any locking conflicts. This includes an
-     * awareness of the number of available database connections. The caller is
-     * respondible for acquiring the schedulerLock before this method is
-     * invoked.
+     * Internal function that returns true if granting the specified lock would
+     * require a connection from {@code connectionPool}; that is, if it needs
+     * a database connection and does not take one over from a lock it is
+     * promoting.
+     * 
+     * @param lock the AbstractLock to be tested
+     * 
+     * @return {@code true} if the lock would need a free connection
+     */
+    private static boolean needsFreeConnection(AbstractLock lock) {
+        return lock.getNeedsDbConnection()
+                && ((lock.getPrevInChain() == null)
+                        || !lock.getPrevInChain().getNeedsDbConnection());
+    }
+
+    /**
+     * Awakens as many pending locks as possible, avoiding any locking
+     * conflicts. This includes an awareness of the connection pool's
+     * willingness to lend database connections. The caller is respondible for acquiring the
+     * schedulerLock before this method is invoked.
+     * <p>
+     * Every pending lock was ineligible to be granted when it was queued, and
+     * can become eligible only when an active lock is revoked or a database
+     * connection is returned to the pool. This method therefore considers
+     * only those pending locks that {@code pendingLockIndex} identifies as
+     * potential conflicts of the locks revoked since it last ran and, if a
+     * connection was reclaimed, those pending locks that need one. Candidates
+     * are considered in priority order; granting one may revoke the lock it
+     * promotes, which in turn may make more candidates.
      */
     private void scheduler() {
-        //  TODO: change this code to optimize things even more
-        
-        boolean grantedSomeLock;
+        NavigableSet<AbstractLock> candidates
+                = new TreeSet<AbstractLock>(pendingLockComparator);
+        AbstractLock connectionCandidate = null;
+        boolean noConnectionReady = false;
 
-        /*
-         * Repeatedly iterate over the pending locks, in descending priority
-         * order. On each iteration, signal as many of them to be granted as
-         * possible, so long as they won't conflict with another lock already
-         * granted or signalled. Stop after the first pass in which no locks are
-         * granted. The double iteration is necessary because newly-granted
-         * locks may have had previous locks in their chains; these would have
-         * been revoked, possibly freeing resources required by pending locks
-         * that couldn't be granted before.
-         */
-        do {
-            grantedSomeLock = false;
+        for (;;) {
+            AbstractLock candidate;
             
-            for (Iterator<AbstractLock> it = pendingLocks.iterator();
-                    it.hasNext(); ) {
-                AbstractLock pendingLock = it.next();
-    
-                if (canLockImmediately(pendingLock)) {
-                    it.remove();
-                    grantLock(pendingLock);
-                    grantedSomeLock = true;
+            // Collect the pending locks that recent revocations may unblock
+            for (LockConflictIndex.Keys keys : revokedLockKeys) {
+                pendingLockIndex.collectPotentialConflicts(keys, candidates);
+            }
+            revokedLockKeys.clear();
+            if (connectionReclaimed) {
+                // Begin (again) to walk the locks waiting for a connection
+                connectionReclaimed = false;
+                connectionCandidate = pendingLocksNeedingConnection.isEmpty()
+                        ? null : pendingLocksNeedingConnection.first();
+            }
+            if (noConnectionReady || (connectionPool == null)
+                    || connectionPool.isExhausted()) {
+                connectionCandidate = null;
+            }
+
+            // Choose whichever candidate has the higher priority
+            candidate = candidates.isEmpty() ? null : candidates.first();
+            if ((connectionCandidate != null) && ((candidate == null)
+                    || (pendingLockComparator.compare(
+                            connectionCandidate, candidate) <= 0))) {
+                candidate = connectionCandidate;
+                connectionCandidate
+                        = pendingLocksNeedingConnection.higher(candidate);
+            }
+            if (candidate == null) {
+                break;
+            }
+            candidates.remove(candidate);
+
+            if (noConnectionReady && needsFreeConnection(candidate)) {
+                // Don't try the pool again until it has one ready
+                continue;
+            } else if (canLockImmediately(candidate,
+                    pendingLockIndex.getKeys(candidate))) {
+                if (grantLock(candidate, pendingLockIndex.getKeys(candidate))) {
+                    removePendingLock(candidate);
+                } else {
+                    noConnectionReady = true;
                 }
             }
-        } while (grantedSomeLock);
+        }
+    }
+
+    /**
+     * Internal function that adds a lock to the pending set and to the indices
+     * that accompany it. The caller must hold the {@code schedulerLock}.
+     * 
+     * @param lock the AbstractLock to be queued
+     * @param keys the resource keys of {@code lock}
+     */
+    private void addPendingLock(AbstractLock lock,
+            LockConflictIndex.Keys keys) {
+        pendingLocks.add(lock);
+        pendingLockIndex.add(lock, keys);
+        if (needsFreeConnection(lock)) {
+            pendingLocksNeedingConnection.add(lock);
+        }
+    }
+
+    /**
+     * Internal function that removes a lock from the pending set and from the
+     * indices that accompany it. The caller must hold the
+     * {@code schedulerLock}.
+     * 
+     * @param lock the AbstractLock to be dequeued
+     * 
+     * @return the resource keys with which {@code lock} was queued, or
+     *         {@code null} if it was not pending
+     */
+    private LockConflictIndex.Keys removePendingLock(AbstractLock lock) {
+        pendingLocks.remove(lock);
+        pendingLocksNeedingConnection.remove(lock);
+        connectionWaitStartTimes.remove(lock);
+
+        return pendingLockIndex.remove(lock);
     }
 
     /**
@@ -900,46 +1128,69 @@ public class LockAgent {
      * active set, giving it a db connection if needed, and removing its
      * predecessor (if any) from the active set. If {@code lock} is a promotion
      * from a previously-granted lock, the old lock is revoked, and any database
-     * connection reference is transferred from the old lock to the new one.
-     * This method does not remove the lock from the pending set; that is the
-     * caller's responsibility. The caller must hold the {@code schedulerLock}
-     * and have gotten a {@code true} result from {@code canLockImmediately()}
-     * immediately prior to calling this method.
+     * connection reference is transferred from the old lock to the new one
+     * (and attributed to the new lock's {@code ConnectionClass}). A new
+     * connection, if one is required, is borrowed from the pool before any
+     * other state is changed, so that if the pool has none ready the lock
+     * simply is not granted. This method does not remove the lock from the
+     * pending set; that is the caller's responsibility. The caller must hold
+     * the {@code schedulerLock} and have gotten a {@code true} result from
+     * {@code canLockImmediately()} immediately prior to calling this method.
      * 
      * @param lock the AbstractLock to grant 
+     * @param keys the resource keys of {@code lock}
+     * 
+     * @return {@code true} if the lock was granted, {@code false} if it could
+     *         not be because the pool had no connection ready
      */
-    private void grantLock(AbstractLock lock) {
+    private boolean grantLock(AbstractLock lock, LockConflictIndex.Keys keys) {
         AbstractLock prevLock = lock.getPrevInChain();
         boolean assignConnection = lock.getNeedsDbConnection();
-        Connection conn;
+        Connection conn = null;
+
+        // Borrow a new connection from the pool if required
+        if (needsFreeConnection(lock)) {
+            Long waitStartTime = connectionWaitStartTimes.get(lock);
+            
+            conn = connectionPool.borrow(lock.getConnectionClass(),
+                    (waitStartTime == null) ? System.currentTimeMillis()
+                            : waitStartTime.longValue());
+            if (conn == null) {
+                // The pool is readying one; connectionsReplenished() follows
+                if (waitStartTime == null) {
+                    connectionWaitStartTimes.put(lock,
+                            Long.valueOf(System.currentTimeMillis()));
+                }
+                
+                return false;
+            }
+            connectionWaitStartTimes.remove(lock);
+        }
 
         activeLocks.put(lock.getId(), lock);
+        activeLockIndex.add(lock, keys);
         
         if (prevLock != null) {
             // The lock is promoting/demoting another one. Remove the old one.
-            conn = (assignConnection && prevLock.getNeedsDbConnection())
-                    ? prevLock.getConnection()
-                    : null;
+            if (assignConnection && prevLock.getNeedsDbConnection()) {
+                conn = prevLock.getConnection();
+                connectionPool.reclassify(conn, lock.getConnectionClass());
+            }
             revokeLock(prevLock, !assignConnection);
-        } else {
-            conn = null;
-        }
-        
-        // Assign a new connection from the free connection pool if required
-        if (assignConnection && (conn == null)) {
-            conn = freeConnections.remove();
-            busyConnections.add(conn);
         }
         
         lock.grant(conn);
+
+        return true;
     }
 
     /**
      * Internal function that "revokes" an active lock, including removing it
      * from the active set, and reclaiming its db connection (if any) if
      * directed to do so. Notifies the lock object of the revocation by invoking
-     * {@link AbstractLock#revoke()}.  The caller must hold the schedulerLock
-     * before invoking this method.
+     * {@link AbstractLock#revoke()}.  Records the revocation for the attention
+     * of {@code scheduler()}.  The caller must hold the schedulerLock before
+     * invoking this method.
      * 
      * @param lock the AbstractLock to revoke
      * @param reclaimConnection {@code true} if this method should reclaim any
@@ -953,12 +1204,13 @@ public class LockAgent {
         if (activeLocks.remove(lock.getId()) == null) {
             return false;
         } else {
+            revokedLockKeys.add(activeLockIndex.remove(lock));
             try {
                 Connection newlyFreeConnection = lock.revoke();
                 
                 if ((newlyFreeConnection != null) && reclaimConnection) {
-                    busyConnections.remove(newlyFreeConnection);
-                    freeConnections.add(newlyFreeConnection);
+                    connectionPool.giveBack(newlyFreeConnection);
+                    connectionReclaimed = true;
                 }
             } catch (OperationFailedException ex) {
                 // The lock subclass threw this exception while trying to clean
@@ -972,6 +1224,24 @@ public class LockAgent {
         }
     }
 
+    /**
+     * Returns a snapshot of the pool's idle connections, for diagnostic use.
+     * The caller must hold the {@code schedulerLock}.
+     */
+    private Collection<Connection> getIdleConnections() {
+        return (connectionPool == null) ? new ArrayList<Connection>()
+                : connectionPool.getIdleConnections();
+    }
+
+    /**
+     * Returns a snapshot of the pool's loaned connections, for diagnostic
+     * use. The caller must hold the {@code schedulerLock}.
+     */
+    private Collection<Connection> getBusyConnections() {
+        return (connectionPool == null) ? new ArrayList<Connection>()
+                : connectionPool.getBusyConnections();
+    }
+
     /**
      * Notifies listeners that a grant, revocation, or promotion/demotion has
      * occurred. Do not invoke while holding the {@code schedulerLock}!
@@ -1027,7 +1297,9 @@ public class LockAgent {
     /**
      * Decides the priority order for granting (pending) locks.  This version
      * prefers locks representing promotions before other locks, and,
-     * secondarily, favors locks with earlier registration times.
+     * secondarily, favors locks with earlier registration times.  Locks
+     * registered at the same time are ordered by lock id, so that distinct
+     * registered locks never compare equal.
      */
     private static class PendingLockComparator
             implements Comparator<AbstractLock> {
@@ -1060,9 +1332,9 @@ public class LockAgent {
             if (xt < yt) {
                 return -1;
             } else if (xt > yt) {
-                return -1;
+                return 1;
             } else {
-                return 0;
+                return x.compareTo(y);
             }
         }
     }
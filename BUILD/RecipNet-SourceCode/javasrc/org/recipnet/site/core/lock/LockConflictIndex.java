@@ -0,0 +1,251 @@
+/*
+ * Reciprocal Net project
+ *
+ * LockConflictIndex.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.core.lock;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * A set of locks, indexed by the resource keys they report via
+ * {@link AbstractLock#getUsedResourceKeys()} and
+ * {@link AbstractLock#getConflictingResourceKeys()}, that can quickly identify
+ * those of its members that might conflict with some other lock. The locks
+ * identified are a superset of those that actually conflict; the caller must
+ * still consult {@code wouldBeDisruptedBy()} to decide. Locks that do not
+ * report resource keys are <em>unindexed</em>: they are identified as
+ * potential conflicts of every lock, and every member is identified as a
+ * potential conflict of them.
+ * </p><p>
+ * {@code LockAgent} keeps one of these for its active locks and one for its
+ * pending locks. This class is not thread-safe; the agent guards both
+ * instances with its scheduler lock.
+ * </p>
+ */
+class LockConflictIndex {
+
+    /**
+     * A map from resource key to the set of member locks that report that key
+     * among their used resource keys
+     */
+    private final Map<Object, Set<AbstractLock>> locksByUsedKey;
+
+    /**
+     * A map from resource key to the set of member locks that report that key
+     * among their conflicting resource keys
+     */
+    private final Map<Object, Set<AbstractLock>> locksByConflictingKey;
+
+    /** The member locks that are unindexed */
+    private final Set<AbstractLock> unindexedLocks;
+
+    /** A map from every member lock to its resource keys */
+    private final Map<AbstractLock, Keys> members;
+
+    /**
+     * Initializes a new, empty {@code LockConflictIndex}
+     */
+    LockConflictIndex() {
+        locksByUsedKey = new HashMap<Object, Set<AbstractLock>>();
+        locksByConflictingKey = new HashMap<Object, Set<AbstractLock>>();
+        unindexedLocks = new HashSet<AbstractLock>();
+        members = new HashMap<AbstractLock, Keys>();
+    }
+
+    /**
+     * Adds a lock to this index
+     *
+     * @param lock the {@code AbstractLock} to add; must not already be a
+     *        member
+     * @param keys the resource keys of {@code lock}, as obtained from
+     *        {@link Keys#of(AbstractLock)} or {@link #getKeys(AbstractLock)}
+     */
+    void add(AbstractLock lock, Keys keys) {
+        members.put(lock, keys);
+        if (keys.isIndexed()) {
+            addAll(locksByUsedKey, keys.used, lock);
+            addAll(locksByConflictingKey, keys.conflicting, lock);
+        } else {
+            unindexedLocks.add(lock);
+        }
+    }
+
+    /**
+     * Removes a lock from this index
+     *
+     * @param lock the {@code AbstractLock} to remove
+     * @return the resource keys with which {@code lock} had been added, or
+     *         {@code null} if it was not a member
+     */
+    Keys remove(AbstractLock lock) {
+        Keys keys = members.remove(lock);
+
+        if (keys == null) {
+            return null;
+        } else if (keys.isIndexed()) {
+            removeAll(locksByUsedKey, keys.used, lock);
+            removeAll(locksByConflictingKey, keys.conflicting, lock);
+        } else {
+            unindexedLocks.remove(lock);
+        }
+
+        return keys;
+    }
+
+    /**
+     * Removes all locks from this index
+     */
+    void clear() {
+        locksByUsedKey.clear();
+        locksByConflictingKey.clear();
+        unindexedLocks.clear();
+        members.clear();
+    }
+
+    /**
+     * Returns the resource keys with which the specified lock was added to
+     * this index
+     *
+     * @param lock the {@code AbstractLock} whose keys are requested
+     * @return the lock's {@code Keys}, or {@code null} if it is not a member
+     */
+    Keys getKeys(AbstractLock lock) {
+        return members.get(lock);
+    }
+
+    /**
+     * Returns an unmodifiable view of the member locks of this index
+     *
+     * @return a {@code Collection} of the member {@code AbstractLock}s
+     */
+    Collection<AbstractLock> getLocks() {
+        return Collections.unmodifiableCollection(members.keySet());
+    }
+
+    /**
+     * Adds to the specified collection every member of this index that might
+     * conflict, in either direction, with a lock having the specified
+     * resource keys
+     *
+     * @param keys the resource keys of the lock whose potential conflicts are
+     *        requested
+     * @param potentialConflicts a {@code Collection} to which the potentially
+     *        conflicting members are to be added; a member may be added more
+     *        than once unless this is a {@code Set}
+     */
+    void collectPotentialConflicts(Keys keys,
+            Collection<? super AbstractLock> potentialConflicts) {
+        if (!keys.isIndexed()) {
+            potentialConflicts.addAll(members.keySet());
+        } else {
+            potentialConflicts.addAll(unindexedLocks);
+            collect(locksByUsedKey, keys.conflicting, potentialConflicts);
+            collect(locksByConflictingKey, keys.used, potentialConflicts);
+        }
+    }
+
+    /**
+     * Adds {@code lock} to the set associated with each of {@code keys} in
+     * {@code map}, creating sets as necessary
+     */
+    private static void addAll(Map<Object, Set<AbstractLock>> map,
+            Collection<?> keys, AbstractLock lock) {
+        for (Object key : keys) {
+            Set<AbstractLock> locks = map.get(key);
+
+            if (locks == null) {
+                locks = new HashSet<AbstractLock>();
+                map.put(key, locks);
+            }
+            locks.add(lock);
+        }
+    }
+
+    /**
+     * Removes {@code lock} from the set associated with each of {@code keys}
+     * in {@code map}, discarding sets that become empty
+     */
+    private static void removeAll(Map<Object, Set<AbstractLock>> map,
+            Collection<?> keys, AbstractLock lock) {
+        for (Object key : keys) {
+            Set<AbstractLock> locks = map.get(key);
+
+            if ((locks != null) && locks.remove(lock) && locks.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Adds to {@code out} the contents of the set associated with each of
+     * {@code keys} in {@code map}
+     */
+    private static void collect(Map<Object, Set<AbstractLock>> map,
+            Collection<?> keys, Collection<? super AbstractLock> out) {
+        for (Object key : keys) {
+            Set<AbstractLock> locks = map.get(key);
+
+            if (locks != null) {
+                out.addAll(locks);
+            }
+        }
+    }
+
+    /**
+     * The resource keys reported by one lock, captured once so that they need
+     * not be recomputed each time the lock is tested for conflicts
+     */
+    static class Keys {
+
+        /** The lock's used resource keys, or {@code null} if unindexed */
+        final Collection<?> used;
+
+        /**
+         * The lock's conflicting resource keys, or {@code null} if unindexed
+         */
+        final Collection<?> conflicting;
+
+        /**
+         * Initializes a new {@code Keys}; if either argument is {@code null}
+         * then the keys describe an unindexed lock
+         */
+        private Keys(Collection<?> used, Collection<?> conflicting) {
+            if ((used == null) || (conflicting == null)) {
+                this.used = null;
+                this.conflicting = null;
+            } else {
+                this.used = used;
+                this.conflicting = conflicting;
+            }
+        }
+
+        /**
+         * Returns {@code true} if these keys describe an indexed lock,
+         * {@code false} if an unindexed one
+         */
+        boolean isIndexed() {
+            return used != null;
+        }
+
+        /**
+         * Captures the resource keys currently reported by the specified lock
+         *
+         * @param lock the {@code AbstractLock} whose keys are to be captured
+         * @return a {@code Keys} describing {@code lock}
+         */
+        static Keys of(AbstractLock lock) {
+            return new Keys(lock.getUsedResourceKeys(),
+                    lock.getConflictingResourceKeys());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Reciprocal Net project
+ *
+ * LockResourceKey.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.core.lock;
+
+/**
+ * An immutable key naming one resource, or one class of resources, for the
+ * purpose of indexing locks by the resources they cover. A key consists of a
+ * <em>kind</em> and an integer id whose meaning depends upon the kind. Kinds
+ * 0 through 62 correspond to the operation code bits of {@code SimpleLock}
+ * (whose ids are resource ids, or zero for general operations); other kinds
+ * are defined by the constants below.
+ *
+ * @see AbstractLock#getUsedResourceKeys()
+ * @see AbstractLock#getConflictingResourceKeys()
+ */
+final class LockResourceKey {
+
+    /** The kind of key that names the primary directory of a sample */
+    static final int PRIMARY_DIRECTORY = 64;
+
+    /** The kind of key that names the secondary directories of a sample */
+    static final int SECONDARY_DIRECTORY = 65;
+
+    /** The kind of this key */
+    private final int kind;
+
+    /** The id of this key, interpreted according to {@code kind} */
+    private final int id;
+
+    /**
+     * Initializes a new {@code LockResourceKey}
+     *
+     * @param kind the kind of resource named by this key
+     * @param id the id of the resource named by this key, interpreted
+     *        according to {@code kind}
+     */
+    LockResourceKey(int kind, int id) {
+        this.kind = kind;
+        this.id = id;
+    }
+
+    /**
+     * {@inheritDoc}.  Two keys are equal if they have the same kind and id.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof LockResourceKey) {
+            LockResourceKey key = (LockResourceKey) o;
+
+            return (kind == key.kind) && (id == key.id);
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return (kind * 31) ^ id;
+    }
+
+    /**
+     * {@inheritDoc}.  For debugging use only.
+     */
+    @Override
+    public String toString() {
+        return kind + ":" + id;
+    }
+}
@@ -13,6 +13,9 @@
  * 07-Apr-2006: jobollin converted to generics and enhanced for loops;
  *              reformatted the source, added override of copy() along the lines
  *              recommended by ekoperda (to fix bug #1733)
+ * 18-Oct-2026: agent added getUsedResourceKeys() and
+ *              getConflictingResourceKeys()
+ * 18-Oct-2026: agent added getConnectionClass()
  */
 
 package org.recipnet.site.core.lock;
@@ -90,6 +93,47 @@ public class MultiLock extends AbstractLock {
         return false;
     }
 
+    /**
+     * {@inheritDoc}.  This version returns the union of its child locks'
+     * used resource keys, or {@code null} if any child returns {@code null}.
+     */
+    @Override
+    protected Collection<?> getUsedResourceKeys() {
+        Collection<Object> keys = new ArrayList<Object>();
+
+        for (AbstractLock lock : childLocks) {
+            Collection<?> childKeys = lock.getUsedResourceKeys();
+
+            if (childKeys == null) {
+                return null;
+            }
+            keys.addAll(childKeys);
+        }
+
+        return keys;
+    }
+
+    /**
+     * {@inheritDoc}.  This version returns the union of its child locks'
+     * conflicting resource keys, or {@code null} if any child returns
+     * {@code null}.
+     */
+    @Override
+    protected Collection<?> getConflictingResourceKeys() {
+        Collection<Object> keys = new ArrayList<Object>();
+
+        for (AbstractLock lock : childLocks) {
+            Collection<?> childKeys = lock.getConflictingResourceKeys();
+
+            if (childKeys == null) {
+                return null;
+            }
+            keys.addAll(childKeys);
+        }
+
+        return keys;
+    }
+
     /**
      * {@inheritDoc}.  This version accepts the lock grant then forwards the
      * grant message to its child locks, in sequence.
@@ -144,6 +188,30 @@ public class MultiLock extends AbstractLock {
         }
     }
 
+    /**
+     * {@inheritDoc}.  This version returns this lock's own class if one was
+     * set explicitly, or otherwise the class of the first child lock that
+     * belongs to a class other than {@code GENERAL}.
+     * 
+     * @return the {@code ConnectionClass} of this lock or its children
+     * 
+     * @see AbstractLock#getConnectionClass()
+     */
+    @Override
+    public ConnectionClass getConnectionClass() {
+        ConnectionClass connectionClass = super.getConnectionClass();
+
+        if (connectionClass == ConnectionClass.GENERAL) {
+            for (AbstractLock lock : childLocks) {
+                if (lock.getConnectionClass() != ConnectionClass.GENERAL) {
+                    return lock.getConnectionClass();
+                }
+            }
+        }
+
+        return connectionClass;
+    }
+
     /**
      * {@inheritDoc}.  This version registers each of this {@code MultiLock}'s
      * children after it registers itself.
@@ -11,11 +11,14 @@
  * 02-May-2005: ekoperda modified constructor to match changes in 
  *              RepositoryFiles and utilized generics throughout class
  * 30-May-2006: reformatted the source and removed unused imports
+ * 18-Oct-2026: agent added getUsedResourceKeys() and
+ *              getConflictingResourceKeys()
  */
 
 package org.recipnet.site.core.lock;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 
 import org.recipnet.site.shared.RepositoryFiles;
@@ -126,6 +129,24 @@ public class OutOfBandReadTicket extends RepositoryTicket {
         return this.sampleHistoryId;
     }
 
+    /**
+     * {@inheritDoc}.  This version returns an empty collection because this
+     * kind of ticket does not lock any particular resource.
+     */
+    @Override
+    protected Collection<?> getUsedResourceKeys() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * {@inheritDoc}.  This version returns an empty collection because this
+     * kind of ticket does not lock any particular resource.
+     */
+    @Override
+    protected Collection<?> getConflictingResourceKeys() {
+        return Collections.emptySet();
+    }
+
     /**
      * Overrides function on {@code AbstractLock} -- for debugging use only.
      */
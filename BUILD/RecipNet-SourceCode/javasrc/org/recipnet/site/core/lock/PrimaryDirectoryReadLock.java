@@ -4,9 +4,14 @@
  *
  * 27-May-2003: ekoperda wrote first draft
  * 08-Jul-2003: ekoperda added toString()
+ * 18-Oct-2026: agent added getUsedResourceKeys() and
+ *              getConflictingResourceKeys()
  */
 package org.recipnet.site.core.lock;
 
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  * A subclass of <code>AbstractLock</code> that authorizes the lock user to
  * read any file within a particular primary repository directory.  At the
@@ -95,6 +100,25 @@ public class PrimaryDirectoryReadLock extends AbstractLock
 	return super.wouldBeDisruptedBy(otherLock);
     }
 
+    /**
+     * Overrides function on <code>AbstractLock</code>.  Current implementation
+     * returns a key naming the sample's primary directory.
+     */
+    @Override
+    protected Collection<?> getUsedResourceKeys() {
+	return Collections.singleton(new LockResourceKey(
+	        LockResourceKey.PRIMARY_DIRECTORY, this.sampleId));
+    }
+
+    /**
+     * Overrides function on <code>AbstractLock</code>.  Current implementation
+     * returns the same key as <code>getUsedResourceKeys()</code>.
+     */
+    @Override
+    protected Collection<?> getConflictingResourceKeys() {
+	return getUsedResourceKeys();
+    }
+
     /**
      * Overrides function on <code>AbstractLock</code> -- for debugging use 
      * only.
@@ -8,6 +8,9 @@
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
  * 26-May-2006: jobollin reformatted the source and removed unused imports 
+ * 18-Oct-2026: agent added getUsedResourceKeys() and
+ *              getConflictingResourceKeys()
+ * 18-Oct-2026: agent added getReadableFile()
  */
 
 package org.recipnet.site.core.lock;
@@ -16,6 +19,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
 
 import org.recipnet.site.OperationFailedException;
 import org.recipnet.site.core.ResourceNotAccessibleException;
@@ -170,6 +175,23 @@ public class PrimaryFileReadTicket extends RepositoryTicket implements
         }
     }
 
+    /**
+     * Overrides method on {@code RepositoryTicket}. The current implementation
+     * returns the file specified at construction time and renews the ticket.
+     * 
+     * @throws IllegalStateException if there is no open file, possibly because
+     *         an exception was thrown from {@code open()} previously.
+     */
+    @Override
+    public synchronized File getReadableFile() {
+        if (this.fileInputStream == null) {
+            throw new IllegalStateException();
+        }
+        renew();
+
+        return this.file;
+    }
+
     /**
      * Overrides method on {@code AbstractLock}. The current implementation
      * returns true if {@code otherLock} is a {@code PrimaryFileLock} that
@@ -190,6 +212,24 @@ public class PrimaryFileReadTicket extends RepositoryTicket implements
         return super.wouldBeDisruptedBy(otherLock);
     }
 
+    /**
+     * {@inheritDoc}.  This version returns a key naming the sample's primary directory.
+     */
+    @Override
+    protected Collection<?> getUsedResourceKeys() {
+        return Collections.singleton(new LockResourceKey(
+                LockResourceKey.PRIMARY_DIRECTORY, this.sampleId));
+    }
+
+    /**
+     * {@inheritDoc}.  This version returns the same key as
+     * {@code getUsedResourceKeys()}.
+     */
+    @Override
+    protected Collection<?> getConflictingResourceKeys() {
+        return getUsedResourceKeys();
+    }
+
     /**
      * Overrides function on {@code AbstractLock} -- for debugging use only.
      */
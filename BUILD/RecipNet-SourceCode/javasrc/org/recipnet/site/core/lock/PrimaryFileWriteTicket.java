@@ -15,6 +15,10 @@
  * 11-Feb-2005: ekoperda modified supportsClosureInUnisonWith() to make its
  *              check a little more thorough
  * 21-Oct-2005: midurbin added support for file descriptions
+ * 18-Oct-2026: agent added getUsedResourceKeys() and
+ *              getConflictingResourceKeys()
+ * 18-Oct-2026: agent made write() hand data to a background writer and digest
+ *              it on the fly, passing the digest on at closure
  */
 
 package org.recipnet.site.core.lock;
@@ -24,11 +28,21 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.recipnet.site.OperationFailedException;
 import org.recipnet.site.core.DeadlockDetectedException;
 import org.recipnet.site.core.RepositoryManager;
 import org.recipnet.site.core.ResourceNotFoundException;
+import org.recipnet.site.core.util.FileVersionStore;
 import org.recipnet.site.core.util.PrimaryDirectory;
 import org.recipnet.site.shared.db.SampleInfo;
 
@@ -51,6 +65,14 @@ import org.recipnet.site.shared.db.SampleInfo;
  * expected filename. If the ticket is revoked without being closed gracefully,
  * the temporary file is deleted.
  * </p><p>
+ * Bytes passed to {@code write()} are written to the temporary file by a
+ * background thread, so that the ticket user may send the next block of data
+ * while the previous one is still on its way to disk; at most one block per
+ * ticket is outstanding at a time, and a failed write is reported by the next
+ * call to {@code write()} or at closure. The data is digested as it is
+ * written, sparing the file version store from reading it again to discover
+ * whether its contents are new.
+ * </p><p>
  * This kind of ticket supports "unison closures" as described by the
  * {@code UnisonClosureTicket} interface. The batch of tickets to be closed in
  * unison must contain only {@code PrimaryFileWriteTicket}'s or its subclasses,
@@ -63,6 +85,22 @@ import org.recipnet.site.shared.db.SampleInfo;
  */
 public class PrimaryFileWriteTicket extends RepositoryTicket implements
         PrimaryFileLock, UnisonClosureTicket {
+
+    /**
+     * Runs the background writes of all tickets. Its threads are daemons so
+     * that they never hold up shutdown.
+     */
+    private static final ExecutorService WRITE_BEHIND_EXECUTOR
+            = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r,
+                            "PrimaryFileWriteTicket write-behind");
+
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
     
     /** Set at construction time. */
     private PrimaryDirectory primaryDirectoryInfo;
@@ -95,6 +133,24 @@ public class PrimaryFileWriteTicket extends RepositoryTicket implements
      */
     private OutputStream tempFileOutputStream;
 
+    /**
+     * Digests the data written to the temporary file. Set by {@code open()}
+     * and updated by the background writes started by {@code write()}.
+     */
+    private MessageDigest contentDigest;
+
+    /**
+     * The digest of the temporary file's complete contents, in the form
+     * accepted by {@code FileVersionStore.commitFiles()}. Set by
+     * {@code beforeUnisonClosure()}.
+     */
+    private String contentDigestString;
+
+    /**
+     * The outstanding background write started by {@code write()}, if any.
+     */
+    private Future<?> pendingWrite;
+
     /**
      * Constructor.
      * 
@@ -137,6 +193,9 @@ public class PrimaryFileWriteTicket extends RepositoryTicket implements
         this.actionCode = actionCode;
         this.repositoryManager = repositoryManager;
         this.tempFileOutputStream = null;
+        this.contentDigest = null;
+        this.contentDigestString = null;
+        this.pendingWrite = null;
     }
 
     /** {@inheritDoc} */
@@ -174,6 +233,13 @@ public class PrimaryFileWriteTicket extends RepositoryTicket implements
     @Override
     public synchronized void notifyLockRevoked()
             throws OperationFailedException {
+        if (this.pendingWrite != null) {
+            try {
+                awaitPendingWrite();
+            } catch (OperationFailedException ex) {
+                // The data is being discarded anyway.
+            }
+        }
         if (this.tempFileOutputStream != null) {
             try {
                 this.tempFileOutputStream.close();
@@ -199,6 +265,7 @@ public class PrimaryFileWriteTicket extends RepositoryTicket implements
     @Override
     public synchronized void open() throws OperationFailedException {
         super.open();
+        this.contentDigest = FileVersionStore.newDigest();
         try {
             this.tempFileOutputStream = new FileOutputStream(this.tempFile);
         } catch (FileNotFoundException ex) {
@@ -230,6 +297,7 @@ public class PrimaryFileWriteTicket extends RepositoryTicket implements
                 this.primaryDirectoryInfo, this.sample, super.getUserId(),
                 comments, this.actionCode, new String[] { this.fileName },
                 new File[] { this.tempFile },
+                new String[] { this.contentDigestString },
                 new String[] { this.description });
 
         // This function we're calling is intended for use during a unison
@@ -259,18 +327,24 @@ public class PrimaryFileWriteTicket extends RepositoryTicket implements
 
     /**
      * Implements {@code UnisonClosureTicket}; the current implementation
-     * simply closes the temporary file opened in a previous call to
-     * {@code open()}.
+     * waits for any outstanding background write to finish and then closes
+     * the temporary file opened in a previous call to {@code open()}.
      * 
      * @throws IllegalStateException if no temporary file has been opened
      *         previously.
      * @throws OperationFailedException with a nested {@code IOException} on a
      *         failure within Java's I/O subsystem.
      */
-    public void beforeUnisonClosure() throws OperationFailedException {
+    public synchronized void beforeUnisonClosure()
+            throws OperationFailedException {
         if (this.tempFileOutputStream != null) {
             try {
                 renew();
+                if (this.pendingWrite != null) {
+                    awaitPendingWrite();
+                }
+                this.contentDigestString
+                        = FileVersionStore.digestToString(this.contentDigest);
                 this.tempFileOutputStream.close();
             } catch (IOException ex) {
                 throw new OperationFailedException(ex);
@@ -298,10 +372,12 @@ public class PrimaryFileWriteTicket extends RepositoryTicket implements
             throws OperationFailedException {
         String fileNames[] = new String[otherTickets.length + 1];
         File tempFiles[] = new File[otherTickets.length + 1];
+        String digests[] = new String[otherTickets.length + 1];
         String descriptions[] = new String[otherTickets.length + 1];
 
         fileNames[0] = this.fileName;
         tempFiles[0] = this.tempFile;
+        digests[0] = this.contentDigestString;
         descriptions[0] = this.description;
         for (int i = 0; i < otherTickets.length; i++) {
             PrimaryFileWriteTicket otherTicket
@@ -309,6 +385,7 @@ public class PrimaryFileWriteTicket extends RepositoryTicket implements
             
             fileNames[i + 1] = otherTicket.fileName;
             tempFiles[i + 1] = otherTicket.tempFile;
+            digests[i + 1] = otherTicket.contentDigestString;
             descriptions[i + 1] = otherTicket.description;
         }
 
@@ -316,7 +393,7 @@ public class PrimaryFileWriteTicket extends RepositoryTicket implements
         // the filesystem and database updates that need to happen.
         this.repositoryManager.notifyFileUploadsFinished(
                 this.primaryDirectoryInfo, this.sample, getUserId(),
-                this.comments, this.actionCode, fileNames, tempFiles,
+                this.comments, this.actionCode, fileNames, tempFiles, digests,
                 descriptions);
     }
 
@@ -340,25 +417,58 @@ public class PrimaryFileWriteTicket extends RepositoryTicket implements
     }
 
     /**
-     * {@inheritDoc}.  This version writes the specified bytes to the temporary
-     * file and renews the ticket.
+     * {@inheritDoc}.  This version waits for the previous block's background
+     * write, if any, to finish; then hands the specified bytes to a
+     * background thread to be digested and written to the temporary file; and
+     * finally renews the ticket. The caller must not modify {@code buffer}
+     * afterwards.
      * 
      * @throws IllegalStateException if there is no temporary file open for
      *         writing, possibly because an exception was thrown earlier.
-     * @throws OperationFailedException on low-level error.
+     * @throws OperationFailedException on low-level error, including a failure
+     *         of the previous block's background write.
      */
     @Override
-    public synchronized void write(byte[] buffer)
+    public synchronized void write(final byte[] buffer)
             throws OperationFailedException {
         if (this.tempFileOutputStream == null) {
             throw new IllegalStateException();
         }
+        if (this.pendingWrite != null) {
+            awaitPendingWrite();
+        }
+
+        final OutputStream out = this.tempFileOutputStream;
+        final MessageDigest digest = this.contentDigest;
+
+        this.pendingWrite = WRITE_BEHIND_EXECUTOR.submit(new Callable<Void>() {
+            public Void call() throws IOException {
+                out.write(buffer);
+                digest.update(buffer);
+
+                return null;
+            }
+        });
+        renew();
+    }
+
+    /**
+     * Waits for the outstanding background write started by {@code write()}
+     * to finish, clearing {@code pendingWrite}.
+     * 
+     * @throws OperationFailedException if the write failed
+     */
+    private void awaitPendingWrite() throws OperationFailedException {
         try {
-            this.tempFileOutputStream.write(buffer);
-        } catch (IOException ex) {
+            this.pendingWrite.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             throw new OperationFailedException(ex);
+        } catch (ExecutionException ex) {
+            throw new OperationFailedException(ex.getCause());
+        } finally {
+            this.pendingWrite = null;
         }
-        renew();
     }
 
     /**
@@ -385,6 +495,24 @@ public class PrimaryFileWriteTicket extends RepositoryTicket implements
         return super.wouldBeDisruptedBy(otherLock);
     }
 
+    /**
+     * {@inheritDoc}.  This version returns a key naming the sample's primary directory.
+     */
+    @Override
+    protected Collection<?> getUsedResourceKeys() {
+        return Collections.singleton(new LockResourceKey(
+                LockResourceKey.PRIMARY_DIRECTORY, getSampleId()));
+    }
+
+    /**
+     * {@inheritDoc}.  This version returns the same key as
+     * {@code getUsedResourceKeys()}.
+     */
+    @Override
+    protected Collection<?> getConflictingResourceKeys() {
+        return getUsedResourceKeys();
+    }
+
     /**
      * Overrides function on {@code AbstractLock} -- for debugging use only.
      */
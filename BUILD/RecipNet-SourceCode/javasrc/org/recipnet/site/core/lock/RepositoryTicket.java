@@ -5,10 +5,13 @@
  *
  * 27-May-2003: ekoperda wrote first draft
  * 18-May-2006: jobollin added touch(); reformatted the source
+ * 18-Oct-2026: agent assigned tickets to ConnectionClass.REPOSITORY
+ * 18-Oct-2026: agent added getReadableFile()
  */
 
 package org.recipnet.site.core.lock;
 
+import java.io.File;
 import java.sql.Connection;
 import org.recipnet.site.OperationFailedException;
 import org.recipnet.site.OperationNotPermittedException;
@@ -56,6 +59,7 @@ public abstract class RepositoryTicket extends AbstractLock {
     protected RepositoryTicket(int userId, long timeUntilExpiration) {
         setUserId(userId);
         setExpiration(timeUntilExpiration);
+        setConnectionClass(ConnectionClass.REPOSITORY);
     }
 
     /**
@@ -199,6 +203,27 @@ public abstract class RepositoryTicket extends AbstractLock {
         throw new OperationNotPermittedException();
     }
 
+    /**
+     * Returns the file from which this ticket reads, so that a ticket user
+     * with direct access to the repository filesystem can read it without
+     * copying its contents through {@link #read(byte[], int, int)}. The file
+     * remains protected by this ticket only for as long as the ticket is
+     * active; callers must stop using it once the ticket has been closed or
+     * aborted.
+     * <p>
+     * The current implementation always throws an
+     * {@code OperationNotPermittedException}. Subclasses that support
+     * {@code read()} should override this function.
+     * 
+     * @return the file being read through this ticket
+     * @throws OperationNotPermittedException if this kind of ticket does not
+     *         support reading.
+     */
+    @SuppressWarnings("unused")
+    public File getReadableFile() throws OperationNotPermittedException {
+        throw new OperationNotPermittedException();
+    }
+
     /**
      * Writes some data from the open file represented by this ticket.
      * <p>
@@ -6,9 +6,15 @@
  * 08-Jul-2003: ekoperda added toString()
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
+ * 18-Oct-2026: agent added getUsedResourceKeys() and
+ *              getConflictingResourceKeys()
  */
 
 package org.recipnet.site.core.lock;
+
+import java.util.Collection;
+import java.util.Collections;
+
 import org.recipnet.site.core.util.SecondaryDirectory;
 import org.recipnet.site.shared.db.UserInfo;
 
@@ -50,6 +56,26 @@ public class SecondaryDirectoryDummyTicket extends RepositoryTicket {
 	return this.secondaryDirectoryInfo;
     }
 
+    /**
+     * Overrides function on <code>AbstractLock</code>.  Current implementation
+     * returns an empty collection because this kind of ticket does not
+     * lock any particular resource.
+     */
+    @Override
+    protected Collection<?> getUsedResourceKeys() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Overrides function on <code>AbstractLock</code>.  Current implementation
+     * returns an empty collection because this kind of ticket does not
+     * lock any particular resource.
+     */
+    @Override
+    protected Collection<?> getConflictingResourceKeys() {
+        return Collections.emptySet();
+    }
+
     /**
      * Overrides function on <code>AbstractLock</code> -- for debugging use 
      * only.
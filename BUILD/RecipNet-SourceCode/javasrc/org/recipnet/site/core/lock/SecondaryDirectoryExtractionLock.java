@@ -6,9 +6,15 @@
  * 08-Jul-2003: ekoperda added toString()
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
+ * 18-Oct-2026: agent added getUsedResourceKeys() and
+ *              getConflictingResourceKeys()
  */
 
 package org.recipnet.site.core.lock;
+
+import java.util.Collection;
+import java.util.Collections;
+
 import org.recipnet.site.shared.db.SampleHistoryInfo;
 
 /**
@@ -75,6 +81,25 @@ public class SecondaryDirectoryExtractionLock extends AbstractLock {
 	return super.wouldBeDisruptedBy(otherLock);
     }
 
+    /**
+     * Overrides function on <code>AbstractLock</code>.  Current implementation
+     * returns a key naming the sample's secondary directories.
+     */
+    @Override
+    protected Collection<?> getUsedResourceKeys() {
+	return Collections.singleton(new LockResourceKey(
+	        LockResourceKey.SECONDARY_DIRECTORY, this.sampleId));
+    }
+
+    /**
+     * Overrides function on <code>AbstractLock</code>.  Current implementation
+     * returns the same key as <code>getUsedResourceKeys()</code>.
+     */
+    @Override
+    protected Collection<?> getConflictingResourceKeys() {
+	return getUsedResourceKeys();
+    }
+
     /**
      * Overrides function on <code>AbstractLock</code> -- for debugging use 
      * only.
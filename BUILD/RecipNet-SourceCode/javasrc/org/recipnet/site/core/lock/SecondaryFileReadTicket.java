@@ -9,6 +9,9 @@
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
  * 30-May-2006: jobollin removed unused imports and reformatted the source
+ * 18-Oct-2026: agent added getUsedResourceKeys() and
+ *              getConflictingResourceKeys()
+ * 18-Oct-2026: agent added getReadableFile()
  */
 
 package org.recipnet.site.core.lock;
@@ -17,6 +20,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
 
 import org.recipnet.site.OperationFailedException;
 import org.recipnet.site.core.ResourceNotAccessibleException;
@@ -147,6 +152,41 @@ public class SecondaryFileReadTicket extends RepositoryTicket {
         }
     }
 
+    /**
+     * Overrides method on {@code RepositoryTicket}. The current implementation
+     * returns the file specified at construction time and renews the ticket.
+     * 
+     * @throws IllegalStateException if there is no open file, possibly because
+     *         an exception was thrown from {@code open()} previously.
+     */
+    @Override
+    public synchronized File getReadableFile() {
+        if (this.fileInputStream == null) {
+            throw new IllegalStateException();
+        }
+        renew();
+
+        return this.file;
+    }
+
+    /**
+     * {@inheritDoc}.  This version returns an empty collection because this
+     * kind of ticket does not lock any particular resource.
+     */
+    @Override
+    protected Collection<?> getUsedResourceKeys() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * {@inheritDoc}.  This version returns an empty collection because this
+     * kind of ticket does not lock any particular resource.
+     */
+    @Override
+    protected Collection<?> getConflictingResourceKeys() {
+        return Collections.emptySet();
+    }
+
     /**
      * Overrides function on {@code AbstractLock} -- for debugging use only.
      */
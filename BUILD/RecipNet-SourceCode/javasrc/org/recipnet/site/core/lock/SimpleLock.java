@@ -15,6 +15,8 @@
  *              parameters
  * 16-May-2006: jobollin fixed incorrect value of GEN_OP_BASE
  * 30-May-2006: jobollin simplified the construtor scheme
+ * 18-Oct-2026: agent added getUsedResourceKeys(),
+ *              getConflictingResourceKeys(), and createResourceKeys()
  */
 
 package org.recipnet.site.core.lock;
@@ -308,6 +310,55 @@ public class SimpleLock extends AbstractLock {
         return super.wouldBeDisruptedBy(otherLock);
     }
 
+    /**
+     * {@inheritDoc}.  This version returns one key for each general operation
+     * code in {@code operationsUsed}, and one key for each pairing of a
+     * specific operation code in {@code operationsUsed} with a value in the
+     * {@code resourceIds} collection.
+     */
+    @Override
+    protected Collection<?> getUsedResourceKeys() {
+        return createResourceKeys(this.operationsUsed);
+    }
+
+    /**
+     * {@inheritDoc}.  This version returns one key for each general operation
+     * code in {@code conflictingOperations}, and one key for each pairing of
+     * a specific operation code in {@code conflictingOperations} with a value
+     * in the {@code resourceIds} collection.
+     */
+    @Override
+    protected Collection<?> getConflictingResourceKeys() {
+        return createResourceKeys(this.conflictingOperations);
+    }
+
+    /**
+     * Internal function that creates resource keys for the specified
+     * operation codes, as described for {@code getUsedResourceKeys()}.
+     * 
+     * @param operations logical OR-ing of zero or more operation codes
+     * @return a {@code Collection} of {@code LockResourceKey}s
+     */
+    private Collection<LockResourceKey> createResourceKeys(long operations) {
+        Collection<LockResourceKey> keys = new ArrayList<LockResourceKey>();
+
+        for (int i = 0; i < 63; i++) {
+            long flag = 1L << i;
+
+            if ((operations & flag) == 0) {
+                continue;
+            } else if ((flag & GENERAL_OPERATION_MASK) != 0) {
+                keys.add(new LockResourceKey(i, 0));
+            } else if (this.resourceIds != null) {
+                for (Integer resourceId : this.resourceIds) {
+                    keys.add(new LockResourceKey(i, resourceId));
+                }
+            }
+        }
+
+        return keys;
+    }
+
     /**
      * Overrides function on {@code AbstractLock} -- for debugging use only.
      * Synchronized because the corresponding method on {@code AbstractLock} is.
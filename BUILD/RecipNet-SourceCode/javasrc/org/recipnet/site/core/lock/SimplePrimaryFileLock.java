@@ -4,10 +4,15 @@
  *
  * 27-May-2003: ekoperda wrote first draft
  * 08-Jul-2003: ekoperda added toString()
+ * 18-Oct-2026: agent added getUsedResourceKeys() and
+ *              getConflictingResourceKeys()
  */
 
 package org.recipnet.site.core.lock;
 
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  * A subclass of <code>AbstractLock</code> that authorizes the lock user to
  * read/write/remove a particular file from a particular primary repository
@@ -86,6 +91,25 @@ public class SimplePrimaryFileLock extends AbstractLock
 	return super.wouldBeDisruptedBy(otherLock);
     }
 
+    /**
+     * Overrides function on <code>AbstractLock</code>.  Current implementation
+     * returns a key naming the sample's primary directory.
+     */
+    @Override
+    protected Collection<?> getUsedResourceKeys() {
+	return Collections.singleton(new LockResourceKey(
+	        LockResourceKey.PRIMARY_DIRECTORY, this.sampleId));
+    }
+
+    /**
+     * Overrides function on <code>AbstractLock</code>.  Current implementation
+     * returns the same key as <code>getUsedResourceKeys()</code>.
+     */
+    @Override
+    protected Collection<?> getConflictingResourceKeys() {
+	return getUsedResourceKeys();
+    }
+
     /** From interface <code>PrimaryFileLock</code>. */
     public int getSampleId() {
 	return sampleId;
@@ -31,6 +31,7 @@
  * 10-Jan-2008: ekoperda fixed bug #1884 in fromXmlCheckSignature()
  * 16-May-2008: ekoperda added isFromCoordinator()
  * 26-Nov-2008: ekoperda added isFrom() and isTo() for convenience
+ * 18-Oct-2026: agent added getAffectedEntities() and the *_ENTITY prefixes
  */
 
 package org.recipnet.site.core.msg;
@@ -89,6 +90,15 @@ import org.xml.sax.SAXParseException;
  */
 public abstract class InterSiteMessage extends CoreMessage implements
         Comparable<InterSiteMessage>, DomTreeParticipant, Serializable {
+    /** Prefix of the entity names that identify sample records */
+    public static final String SAMPLE_ENTITY = "sample:";
+
+    /** Prefix of the entity names that identify lab records */
+    public static final String LAB_ENTITY = "lab:";
+
+    /** Prefix of the entity names that identify provider records */
+    public static final String PROVIDER_ENTITY = "provider:";
+
     /**
      * This string replicates the XML document header that appeared at the top
      * of every InterSiteMessage generated by release 0.5.2 of Reciprocal Net.
@@ -827,4 +837,20 @@ public abstract class InterSiteMessage extends CoreMessage implements
     public boolean isTo(int destSiteId) {
 	return this.destSiteId == destSiteId;
     }
+
+    /**
+     * Identifies the records that processing this message may read or modify,
+     * for the benefit of {@code ReceivedMessageAgent}, which never has two
+     * messages that name a common entity in processing at the same time. Each
+     * entity is named by one of the {@code *_ENTITY} prefixes followed by the
+     * record's id. This implementation returns null, meaning that processing
+     * may affect any part of the local site's state and must not overlap with
+     * the processing of any other message; subclasses whose effects are
+     * confined to particular records override it.
+     *
+     * @return an array of entity names, or null
+     */
+    public String[] getAffectedEntities() {
+	return null;
+    }
 }
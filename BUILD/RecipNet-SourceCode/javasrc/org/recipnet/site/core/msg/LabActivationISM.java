@@ -8,6 +8,7 @@
  *              package
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
+ * 18-Oct-2026: agent added getAffectedEntities()
  */
 
 package org.recipnet.site.core.msg;
@@ -63,5 +64,14 @@ public class LabActivationISM extends InterSiteMessage {
 	newLab.extractFromDom(doc, realParent.getFirstChild());
 	return realParent;
     }
+
+    /**
+     * Overrides function on InterSiteMessage. Processing affects only
+     * the lab.
+     */
+    @Override
+    public String[] getAffectedEntities() {
+	return new String[] { LAB_ENTITY + newLab.id };
+    }
 }
 
@@ -8,6 +8,7 @@
  *              package
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
+ * 18-Oct-2026: agent added getAffectedEntities()
  */
 
 package org.recipnet.site.core.msg;
@@ -67,5 +68,14 @@ public class LabUpdateISM extends InterSiteMessage {
 	updatedLab.extractFromDom(doc, realParent.getFirstChild());
 	return realParent;
     }
+
+    /**
+     * Overrides function on InterSiteMessage. Processing affects only
+     * the lab.
+     */
+    @Override
+    public String[] getAffectedEntities() {
+	return new String[] { LAB_ENTITY + updatedLab.id };
+    }
 }
 
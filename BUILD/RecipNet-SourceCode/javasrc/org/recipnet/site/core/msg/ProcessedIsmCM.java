@@ -5,6 +5,7 @@
  * 03-Oct-2002: ekoperda wrote first draft
  * 31-Oct-2002: ekoperda wrote second draft for better interoperability with
  *              the new ReceivedMessageAgent class
+ * 18-Oct-2026: agent added staged() and committed()
  */
 
 package org.recipnet.site.core.msg;
@@ -79,6 +80,30 @@ public class ProcessedIsmCM extends CoreMessage {
                 true, ism, null, null);
     }
 
+    /**
+     * For an ISM whose effects a core module has accepted but not yet written
+     * to the database, as during a bulk import in bootstrap mode. Only the
+     * in-memory processing state is updated; the module must follow up with a
+     * {@code committed()} message once the effects have been written.
+     */
+    public static ProcessedIsmCM staged(InterSiteMessage ism) {
+	return new ProcessedIsmCM(true, true, true, false, false, false, false,
+                ism, null, null);
+    }
+
+    /**
+     * Completes the processing of an ISM previously reported by
+     * {@code staged()}, once its effects have been written. The source
+     * site's sequence number is recorded in the database only if
+     * {@code shouldUpdateDb} is true; a module committing several ISM's from
+     * one site at once need record only the last.
+     */
+    public static ProcessedIsmCM committed(InterSiteMessage ism,
+            String message, boolean shouldUpdateDb) {
+	return new ProcessedIsmCM(true, false, false, false, shouldUpdateDb,
+                true, true, ism, message, null);
+    }
+
     public static ProcessedIsmCM fromLocal(InterSiteMessage ism) {
 	return new ProcessedIsmCM(true, false, false, false, true, false, 
                 false, ism, null, null);
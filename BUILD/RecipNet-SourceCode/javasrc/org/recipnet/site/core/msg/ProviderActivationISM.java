@@ -11,6 +11,7 @@
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
  * 30-May-2006: jobollin reformatted the source
+ * 18-Oct-2026: agent added getAffectedEntities()
  */
 
 package org.recipnet.site.core.msg;
@@ -70,4 +71,14 @@ public class ProviderActivationISM extends InterSiteMessage {
         
         return realParent;
     }
+
+    /**
+     * Overrides function on InterSiteMessage. Processing affects only
+     * the provider, and the lab it belongs to.
+     */
+    @Override
+    public String[] getAffectedEntities() {
+        return new String[] { PROVIDER_ENTITY + newProvider.id,
+                LAB_ENTITY + newProvider.labId };
+    }
 }
@@ -8,6 +8,7 @@
  *              package
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
+ * 18-Oct-2026: agent added getAffectedEntities()
  */
 
 package org.recipnet.site.core.msg;
@@ -68,5 +69,15 @@ public class ProviderUpdateISM extends InterSiteMessage {
 	updatedProvider.extractFromDom(doc, realParent.getFirstChild());
 	return realParent;
     }
+
+    /**
+     * Overrides function on InterSiteMessage. Processing affects only
+     * the provider, and the lab it belongs to.
+     */
+    @Override
+    public String[] getAffectedEntities() {
+	return new String[] { PROVIDER_ENTITY + updatedProvider.id,
+                LAB_ENTITY + updatedProvider.labId };
+    }
 }
 
@@ -8,6 +8,7 @@
  *              reorganization
  * 15-Dec-2005: ekoperda rearranged message contents and class spec to describe
  *              only a single requested site
+ * 18-Oct-2026: agent added field 'replayCursor'
  */
 
 package org.recipnet.site.core.msg;
@@ -85,6 +86,15 @@ public class ReplayRequestISM extends InterSiteMessage {
      */
     public long maxIsmsToReplay;
 
+    /**
+     * An opaque token that the destination site returned in the
+     * {@code ReplayResponseISM} for an earlier request of the same catch-up,
+     * or null. Returning it lets the destination site resume counting the
+     * requested ISM's where it left off rather than counting them afresh.
+     * Sites that do not recognize the field ignore it.
+     */
+    public String replayCursor;
+
     /** No-arg constructor */
     public ReplayRequestISM() {
 	super();
@@ -92,6 +102,7 @@ public class ReplayRequestISM extends InterSiteMessage {
 	this.excludePublicSeqNumsUpTo = INVALID_SEQ_NUM;
 	this.excludePrivateSeqNumsUpTo = INVALID_SEQ_NUM;
         this.maxIsmsToReplay = Long.MAX_VALUE;
+        this.replayCursor = null;
     }
 
     /** Convenience constructor that fully fills this ISM's members. */
@@ -131,6 +142,10 @@ public class ReplayRequestISM extends InterSiteMessage {
         }
         DomUtil.createTextEl(realParent, "maxIsmsToReplay", 
                 Long.toString(this.maxIsmsToReplay));
+        if (this.replayCursor != null) {
+            DomUtil.createTextEl(realParent, "replayCursor", 
+                    this.replayCursor);
+        }
         return realParent;
     }
 
@@ -152,6 +167,8 @@ public class ReplayRequestISM extends InterSiteMessage {
                 "excludePrivateSeqNumsUpTo", INVALID_SEQ_NUM);
         this.maxIsmsToReplay 
                 = DomUtil.getTextForElAsLong(realParent, "maxIsmsToReplay");
+        this.replayCursor
+                = DomUtil.getTextForEl(realParent, "replayCursor", false);
         return realParent;
     }
 }
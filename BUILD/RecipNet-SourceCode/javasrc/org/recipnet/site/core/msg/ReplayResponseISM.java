@@ -3,6 +3,7 @@
  * @(#)ReplayResponseISM.java
  *
  * 28-Oct-2005: ekoperda wrote first draft
+ * 18-Oct-2026: agent added field 'replayCursor'
  */
 
 package org.recipnet.site.core.msg;
@@ -55,6 +56,13 @@ public class ReplayResponseISM extends InterSiteMessage {
      */
     public long countReplayedIsms;
 
+    /**
+     * An opaque token that the requesting site may return in the
+     * {@code replayCursor} field of its next {@code ReplayRequestISM} for the
+     * same requested site, or null if the replaying site offers none.
+     */
+    public String replayCursor;
+
     /** No-arg constructor */
     public ReplayResponseISM() {
         super();
@@ -63,6 +71,7 @@ public class ReplayResponseISM extends InterSiteMessage {
         this.requestedExcludePrivateSeqNumsUpTo = INVALID_SEQ_NUM;
         this.countMatchingIsms = 0;
         this.countReplayedIsms = 0;
+        this.replayCursor = null;
     }
 
     /** Convenience constructor that fully fills this ISM's members. */
@@ -110,6 +119,10 @@ public class ReplayResponseISM extends InterSiteMessage {
                 Long.toString(this.countMatchingIsms));
         DomUtil.createTextEl(realParent, "countReplayedIsms",
                 Long.toString(this.countReplayedIsms));
+        if (this.replayCursor != null) {
+            DomUtil.createTextEl(realParent, "replayCursor",
+                    this.replayCursor);
+        }
         return realParent;
     }
 
@@ -135,6 +148,8 @@ public class ReplayResponseISM extends InterSiteMessage {
                 = DomUtil.getTextForElAsLong(realParent, "countMatchingIsms");
         this.countReplayedIsms
                 = DomUtil.getTextForElAsLong(realParent, "countReplayedIsms");
+        this.replayCursor
+                = DomUtil.getTextForEl(realParent, "replayCursor", false);
         return realParent;
     }
 }
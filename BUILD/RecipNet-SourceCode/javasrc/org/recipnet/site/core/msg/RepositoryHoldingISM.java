@@ -5,6 +5,7 @@
  * 29-Jan-2003: ekoperda wrote first draft
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
+ * 18-Oct-2026: agent added getAffectedEntities()
  */
 
 package org.recipnet.site.core.msg;
@@ -93,4 +94,13 @@ public class RepositoryHoldingISM extends InterSiteMessage {
                 DomUtil.getTextForElAsInt(realParent, "replicaLevel");
 	return realParent;
     }	
+
+    /**
+     * Overrides function on InterSiteMessage. Processing affects only
+     * the sample.
+     */
+    @Override
+    public String[] getAffectedEntities() {
+	return new String[] { SAMPLE_ENTITY + this.sampleId };
+    }
 }
@@ -6,6 +6,7 @@
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
  * 12-Jul-2005: ekoperda modified constructor to match SampleInfo spec change
+ * 18-Oct-2026: agent added getAffectedEntities()
  */
 
 package org.recipnet.site.core.msg;
@@ -65,5 +66,16 @@ public class SampleActivationISM extends InterSiteMessage {
 	newSample.extractFromDom(doc, realParent.getFirstChild());
 	return realParent;
     }
+
+    /**
+     * Overrides function on InterSiteMessage. Processing affects only
+     * the sample, and the lab and provider it refers to.
+     */
+    @Override
+    public String[] getAffectedEntities() {
+	return new String[] { SAMPLE_ENTITY + newSample.id,
+                LAB_ENTITY + newSample.labId,
+                PROVIDER_ENTITY + newSample.dataInfo.providerId };
+    }
 }
 
@@ -5,6 +5,7 @@
  * 29-Jan-2003: ekoperda wrote first draft
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
+ * 18-Oct-2026: agent added getAffectedEntities()
  */
 
 package org.recipnet.site.core.msg;
@@ -66,4 +67,13 @@ public class SampleDeactivationISM extends InterSiteMessage {
 	this.oldSampleId = DomUtil.getTextForElAsInt(realParent, "sampleId");
 	return realParent;
     }	
+
+    /**
+     * Overrides function on InterSiteMessage. Processing affects only
+     * the sample.
+     */
+    @Override
+    public String[] getAffectedEntities() {
+	return new String[] { SAMPLE_ENTITY + this.oldSampleId };
+    }
 }
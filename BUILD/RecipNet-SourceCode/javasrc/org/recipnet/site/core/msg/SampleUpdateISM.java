@@ -6,6 +6,7 @@
  * 07-Jan-2004: ekoperda changed package references to match source tree
  *              reorganization
  * 12-Jul-2005: ekoperda modified constructor to match SampleInfo spec change
+ * 18-Oct-2026: agent added getAffectedEntities()
  */
 
 package org.recipnet.site.core.msg;
@@ -65,5 +66,16 @@ public class SampleUpdateISM extends InterSiteMessage {
 	updatedSample.extractFromDom(doc, realParent.getFirstChild());
 	return realParent;
     }
+
+    /**
+     * Overrides function on InterSiteMessage. Processing affects only
+     * the sample, and the lab and provider it refers to.
+     */
+    @Override
+    public String[] getAffectedEntities() {
+	return new String[] { SAMPLE_ENTITY + updatedSample.id,
+                LAB_ENTITY + updatedSample.labId,
+                PROVIDER_ENTITY + updatedSample.dataInfo.providerId };
+    }
 }
 
@@ -9,13 +9,18 @@
  *              the core package
  * 18-Oct-2002: ekoperda removed the getSearchItems() function
  * 11-May-2006: jobollin reformatted the source and converted to generics
+ * 18-Oct-2026: agent replaced the Integer lists with parallel int arrays and
+ *              added accessors for ranges of them; added getRetainedBytes()
+ * 18-Oct-2026: agent added copy(), indexOf(), insert(), remove(), and
+ *              setSampleHistoryId() for incremental maintenance
  */
 
 package org.recipnet.site.core.util;
 
 import java.lang.System;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.recipnet.common.ObjectCache;
 
 /**
  * CachedSearchResults is an internal container class used by Sample Manager. It
@@ -24,9 +29,37 @@ import java.util.ArrayList;
  * numbers that match the specified search criteria. These CachedSearchResults
  * objects held in a cache that is maintained by Sample Manager in order to
  * prevent the same search from having to be executed repeatedly.
+ * <p>
+ * Matching sample ids and their corresponding sampleHistory ids are kept in
+ * parallel primitive arrays, so that a result set of any size costs just two
+ * objects, and so that pages of results can be handed directly to Sample
+ * Manager's bulk-fetch routines. Instances are populated by a single thread
+ * via {@link #add(int, int)} before they are published to the cache, and are
+ * not modified thereafter; Sample Manager maintains a cached search by
+ * editing a {@link #copy()} of it and publishing that in the original's place.
  */
 public class CachedSearchResults {
 
+    /**
+     * A {@code Weigher} that measures {@code CachedSearchResults} by their
+     * approximate retained sizes in bytes
+     */
+    public static final ObjectCache.Weigher<CachedSearchResults> WEIGHER
+            = new ObjectCache.Weigher<CachedSearchResults>() {
+                public long weigh(CachedSearchResults value) {
+                    return value.getRetainedBytes();
+                }
+            };
+
+    /** the initial capacity of the id arrays */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * the approximate overhead, in bytes, of this object and the headers of
+     * its two arrays
+     */
+    private static final int FIXED_OVERHEAD = 32 + 2 * 16;
+
     /**
      * the id number for this search, as returned by storeSearchParams() when
      * the search was first submitted.
@@ -34,20 +67,23 @@ public class CachedSearchResults {
     public int searchId;
 
     /**
-     * A {@code List} of {@code Integer}s that specifies which Reciprocal Net
-     * sample numbers match the specified search criteria.
+     * Specifies which Reciprocal Net sample numbers match the specified search
+     * criteria, in the order the search produced them. Only the first
+     * {@code size} elements are meaningful.
      */
-    public List<Integer> sampleIdList;
+    private int[] sampleIds;
 
     /**
-     * A {@code List} of {@code Integer}s that corresponds directly with the
-     * {@code sampleIdList}. This list contains the sampleHistory numbers for
-     * the matching samples, current as of the time the search was run. This is
-     * used by Sample Manager to detect when a sample returned by an earlier
-     * search has since been updated and might no longer match the user's search
-     * criteria.
+     * Corresponds directly with {@code sampleIds}. This array contains the
+     * sampleHistory numbers for the matching samples, current as of the time
+     * the search was run. This is used by Sample Manager to detect when a
+     * sample returned by an earlier search has since been updated and might no
+     * longer match the user's search criteria.
      */
-    public List<Integer> sampleHistoryList;
+    private int[] sampleHistoryIds;
+
+    /** the number of matching samples */
+    private int size;
 
     /**
      * the time at which the db query was executed and this class was populated,
@@ -61,8 +97,179 @@ public class CachedSearchResults {
      * timestamp to the current time
      */
     public CachedSearchResults() {
-        sampleIdList = new ArrayList<Integer>();
-        sampleHistoryList = new ArrayList<Integer>();
+        sampleIds = new int[INITIAL_CAPACITY];
+        sampleHistoryIds = new int[INITIAL_CAPACITY];
+        size = 0;
         execution_timestamp = System.currentTimeMillis();
     }
+
+    /**
+     * Appends a matching sample to these results
+     * 
+     * @param sampleId the id of the matching sample
+     * @param sampleHistoryId the id of the sample's current version as of the
+     *        time of the search
+     */
+    public void add(int sampleId, int sampleHistoryId) {
+        if (size == sampleIds.length) {
+            int newCapacity = size + (size >> 1) + 1;
+
+            sampleIds = Arrays.copyOf(sampleIds, newCapacity);
+            sampleHistoryIds = Arrays.copyOf(sampleHistoryIds, newCapacity);
+        }
+        sampleIds[size] = sampleId;
+        sampleHistoryIds[size] = sampleHistoryId;
+        size++;
+    }
+
+    /**
+     * Releases any unused capacity in the id arrays; intended to be invoked
+     * once these results are completely populated.
+     */
+    public void trimToSize() {
+        if (size < sampleIds.length) {
+            sampleIds = Arrays.copyOf(sampleIds, size);
+            sampleHistoryIds = Arrays.copyOf(sampleHistoryIds, size);
+        }
+    }
+
+    /**
+     * Returns a new {@code CachedSearchResults} containing the same search id,
+     * execution timestamp, and matching samples as this one, suitable for
+     * modification
+     */
+    public CachedSearchResults copy() {
+        CachedSearchResults x = new CachedSearchResults();
+
+        x.searchId = searchId;
+        x.execution_timestamp = execution_timestamp;
+        x.sampleIds = Arrays.copyOf(sampleIds, size + 1);
+        x.sampleHistoryIds = Arrays.copyOf(sampleHistoryIds, size + 1);
+        x.size = size;
+
+        return x;
+    }
+
+    /**
+     * Inserts a matching sample into these results at the specified position,
+     * shifting the samples at and after that position one position later
+     * 
+     * @param index the position at which to insert the sample
+     * @param sampleId the id of the matching sample
+     * @param sampleHistoryId the id of the sample's current version
+     * @throws IndexOutOfBoundsException if {@code index} is not within
+     *         {@code 0} through {@code size()}
+     */
+    public void insert(int index, int sampleId, int sampleHistoryId) {
+        checkRange(index, index);
+        add(sampleId, sampleHistoryId);
+        System.arraycopy(sampleIds, index, sampleIds, index + 1,
+                size - 1 - index);
+        System.arraycopy(sampleHistoryIds, index, sampleHistoryIds, index + 1,
+                size - 1 - index);
+        sampleIds[index] = sampleId;
+        sampleHistoryIds[index] = sampleHistoryId;
+    }
+
+    /**
+     * Removes the matching sample at the specified position from these
+     * results, shifting the samples after that position one position earlier
+     * 
+     * @param index the position of the sample to remove
+     * @throws IndexOutOfBoundsException if {@code index} is not within
+     *         {@code 0} through {@code size() - 1}
+     */
+    public void remove(int index) {
+        checkRange(index, index + 1);
+        System.arraycopy(sampleIds, index + 1, sampleIds, index,
+                size - 1 - index);
+        System.arraycopy(sampleHistoryIds, index + 1, sampleHistoryIds, index,
+                size - 1 - index);
+        size--;
+    }
+
+    /**
+     * Records a new current version for the matching sample at the specified
+     * position
+     * 
+     * @param index the position of the sample
+     * @param sampleHistoryId the id of the sample's current version
+     * @throws IndexOutOfBoundsException if {@code index} is not within
+     *         {@code 0} through {@code size() - 1}
+     */
+    public void setSampleHistoryId(int index, int sampleHistoryId) {
+        checkRange(index, index + 1);
+        sampleHistoryIds[index] = sampleHistoryId;
+    }
+
+    /**
+     * Returns the position of the specified sample within these results, or
+     * -1 if the sample is not among them
+     * 
+     * @param sampleId the id of the sample to find
+     */
+    public int indexOf(int sampleId) {
+        for (int i = 0; i < size; i++) {
+            if (sampleIds[i] == sampleId) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /** Returns the number of samples that matched the search. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns true if no samples matched the search. */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a new array containing the ids of the matching samples at the
+     * specified range of positions
+     * 
+     * @param fromIndex the position of the first id to return, inclusive
+     * @param toIndex the position of the last id to return, exclusive
+     * @throws IndexOutOfBoundsException if the range is not within
+     *         {@code 0} through {@code size()}
+     */
+    public int[] getSampleIds(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        
+        return Arrays.copyOfRange(sampleIds, fromIndex, toIndex);
+    }
+
+    /**
+     * Returns a new array containing the sampleHistory ids of the matching
+     * samples at the specified range of positions; these correspond to the
+     * elements of {@link #getSampleIds(int, int)} for the same range.
+     * 
+     * @param fromIndex the position of the first id to return, inclusive
+     * @param toIndex the position of the last id to return, exclusive
+     * @throws IndexOutOfBoundsException if the range is not within
+     *         {@code 0} through {@code size()}
+     */
+    public int[] getSampleHistoryIds(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+
+        return Arrays.copyOfRange(sampleHistoryIds, fromIndex, toIndex);
+    }
+
+    /**
+     * Returns an estimate of the number of bytes of heap retained by this
+     * object, for use in limiting the total size of Sample Manager's cache
+     */
+    public long getRetainedBytes() {
+        return FIXED_OVERHEAD + 8L * sampleIds.length;
+    }
+
+    private void checkRange(int fromIndex, int toIndex) {
+        if ((fromIndex < 0) || (toIndex > size) || (fromIndex > toIndex)) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
 }
@@ -1,645 +0,0 @@
-/*
- * Reciprocal Net project
- * 
- * CvsInvoker.java
- *
- * 29-May-2003: ekoperda wrote first draft
- * 03-Jul-2003: ekoperda added getFileRevision() and modified 
- *              commitModifiedFile() to succeed even if the target file's 
- *              contents have not changed
- * 06-Aug-2003: midurbin added getFileHeadRevision() and
- *              replaceFileWithRevision()
- * 14-Aug-2003: midurbin/ekoperda fixed bug #1020 in registerDirectory()
- * 20-Jun-2006: jobollin updated docs; modified commitAddedFile() to attempt
- *              to persevere in spite of errors druing a "cvs add" operation
- * 06-Nov-2006: jobollin fixed bug #1804 (partially reversing the previous
- *              change) by making commitAddedFile detect and process CVS's
- *              error response when it is asked to add a file that already
- *              exists 
- * 07-Jan-2008: ekoperda improved commitAddedFile() to be more tolerant of 
- *              inconsistencies
- */
-
-package org.recipnet.site.core.util;
-
-import java.io.File;
-import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import org.recipnet.site.OperationFailedException;
-import org.recipnet.site.core.ProcessAbnormalExitException;
-import org.recipnet.site.core.ProcessIncompleteException;
-import org.recipnet.site.core.ResourceNotAccessibleException;
-
-/**
- * <p>
- * A wrapper around the command-line program 'cvs' that can manage multiple
- * versions of files. CVS stands for Concurrent Versions System and is a
- * third-party program commonly used in the software development community as
- * an archive for source code. Reciprocal Net site software employs CVS under
- * the hood to version sample data files stored within a site's file
- * repository.
- * </p><p>
- * This class is NOT thread-safe.
- * </p>
- */
-public class CvsInvoker {   
-    /** The executable program 'cvs'; populated at construction time. */
-    private final File cvsProgram;
-
-    /**
-     * The directory CVS should use as its private repository; populated at
-     * construction time.
-     */
-    private final File cvsRootDir;
-
-    /** The destination for logging events; populated at construction time. */
-    private final Logger logger;
-
-    /**
-     * Regular expression that describes the output expected from a
-     * 'cvs commit' command when a new file was just added.
-     */
-    private final Pattern initialRevisionOutputPattern = Pattern.compile(
-            ".*initial revision: ([0-9.]+)$.*",
-            Pattern.DOTALL | Pattern.MULTILINE);
-
-    /**
-     * Regular expression that describes the output expected from a
-     * 'cvs commit' command when an existing file was just updated.
-     */
-    private final Pattern newRevisionOutputPattern = Pattern.compile(
-            ".*new revision: ([0-9.]+);.*", Pattern.DOTALL);
-
-    /**
-     * Regular expression that describes the output expected from a
-     * 'cvs status' command, used to obtain the revision of a file in a working
-     * directory.
-     */
-    private final Pattern workingRevisionOutputPattern = Pattern.compile(
-            ".*Working revision:\\s+([0-9.]+)\\s.*", Pattern.DOTALL);
-
-    /**
-     * Regular expression that describes the output expected from a
-     * 'cvs status' command, used to obtain the head revision number of a file
-     * in the CVS repository.
-     */
-    private final Pattern repositoryRevisionOutputPattern = Pattern.compile(
-            ".*Repository revision:\\t([0-9.]+)\\t.*", Pattern.DOTALL);
-
-    /**
-     * Regular expression that matches the message CVS issues to standard error
-     * when directed to add a file that it already knows about; used to test
-     * for that condition, and to obtain the revision number when it occurs
-     */
-    private final static Pattern alreadyExistsErrorPattern = Pattern.compile(
-            ".*already exists, with version number\\s+([0-9.]+)\\s*",
-            Pattern.DOTALL);
-
-    /**
-     * Regular expression that describes the output expected from a 'cvs add'
-     * command in the case where the file has already been added but has not
-     * been committed.
-     */
-    private final static Pattern alreadyEnteredErrorPattern = Pattern.compile(
-	    ".* has already been entered.*", Pattern.DOTALL);
-    
-    /**
-     * Initializes a new CvsInvoker with the specified parameters
-     * 
-     * @param cvsProgram a {@code File} representing the 'cvs' executable
-     *        program on the filesystem
-     * @param cvsRootDir a {@code File} representing the base directory under
-     *        which CVS should create and manage its repository
-     * @param logger a {@code Logger} to be used for logging information about
-     *        significant events performed or observed by this object
-     */
-    public CvsInvoker(File cvsProgram, File cvsRootDir, Logger logger) {
-        this.cvsProgram = cvsProgram;
-        this.cvsRootDir = cvsRootDir;
-        this.logger = logger;
-    }
-
-    /**
-     * Initializes the CVS repository. This should be invoked only once per
-     * repository (ever), but the current implementation has no harmful effects
-     * if invoked repeatedly. The {@code cvsRootDir} specified at construction
-     * time is created on the filesystem if it does not already exist
-     * 
-     * @param disableHistoryLogging if true, then CVS's 'history' file normally
-     *        present within the CVS repository is erased. This has the effect
-     *        of forcing subsequent invocations of CVS to do without history
-     *        logging. Setting this option to true is recommended for
-     *        applications where the 'cvs history' function will not be needed
-     *        and unbounded growth of the 'history' file would be undesirable.
-     * @throws OperationFailedException on low-level error.
-     * @throws ResourceNotAccessibleException with a nested {@code File} object
-     *         if the history file could not be deleted.
-     */
-    public void initRepository(boolean disableHistoryLogging)
-            throws OperationFailedException, ResourceNotAccessibleException {
-        // Invoke 'cvs init'.
-        CoreProcessWrapper.exec(new String[] { this.cvsProgram.getPath(), "-d",
-                this.cvsRootDir.getPath(), "init" }, true, this.logger);
-
-        if (disableHistoryLogging) {
-            // Remove CVS's 'history' file. This prevents it from keeping a
-            // history log, which might grow to be quite large over time.
-            File evilHistoryFile = new File(
-                    new File(this.cvsRootDir, "CVSROOT"), "history");
-            boolean rc = evilHistoryFile.delete();
-            if (!rc && evilHistoryFile.exists()) {
-                throw new ResourceNotAccessibleException(evilHistoryFile);
-            }
-        }
-    }
-
-    /**
-     * Registers an existing filesystem directory with CVS and enables it for
-     * version control. In CVS parlance, the existing {@code workingDirectory}
-     * is converted to a "working directory", a checked-out copy of a directory
-     * with name {@code cvsDirectoryName} in the CVS repository. Files that may
-     * already reside within the working directory are not touched and are not
-     * automatically enabled for version control -- the caller should
-     * subsequently invoke {@code commitAddedFile()} for each child file if
-     * this is desired.
-     * 
-     * @param cvsDirectoryName a unique string, possibly containing filesystem
-     *        separator characters, that CVS will use to identify the copy of
-     *        the specified working directory it retains in the repository. 
-     *        This string's value need not match the last path component of
-     *        {@code workingDirectory}.
-     * @param workingDirectory identifies the filesystem directory that should
-     *        be converted to a CVS "working directory" and enabled for version
-     *        control. Individual files within this directory are not affected.
-     * @throws OperationFailedException on low-level error.
-     * @throws ProcessAbnormalExitException if CVS terminated abormally.
-     * @throws ProcessIncompleteException if CVS was interrupted unexpectedly.
-     * @throws ResourceNotAccessibleException if a new directory within the CVS
-     *         repository could not be created, presumably because of a
-     *         filesystem permission or locking error.
-     */
-    public void registerDirectory(String cvsDirectoryName, 
-            File workingDirectory) throws OperationFailedException, 
-	    ProcessAbnormalExitException, ProcessIncompleteException, 
-            ResourceNotAccessibleException {
-        /*
-         * Create a new directory in the CVS repository for this sample id.
-	 * It's easier just to create the directory directly than to wrestle
-	 * with 'cvs import'.
-         */
-        /*
-         * TODO: Messing with CVS's directory directly makes me nervous.  And
-         * what if a version of the directory already exists?  Could existing
-         * files be overwritten during the checkout?  Could unwanted files be
-         * added?  I think we need to buckle down and use 'cvs import'.
-         */
-        File newCvsDirectory = new File(this.cvsRootDir, cvsDirectoryName);
-        boolean rc = newCvsDirectory.mkdir();
-        
-        if (!rc && !newCvsDirectory.exists()) {
-            throw new ResourceNotAccessibleException(newCvsDirectory);
-        }
-
-        /*
-         * Make the existing sample data directory a checked-out version
-         * according to CVS: invoke 'cvs checkout'.
-         */
-        CoreProcessWrapper.exec(new String[] { this.cvsProgram.getPath(), "-d",
-                this.cvsRootDir.getPath(), "checkout", "-d",
-                workingDirectory.getPath(), cvsDirectoryName }, true,
-                this.logger);
-    }
-
-    /**
-     * For a new file within a previously-registered working directory, enables
-     * that file for version control.  Under the hood, this method invokes 'cvs
-     * add' and then 'cvs commit'.
-     * <p>
-     * There is graceful handling for the case in which the 'cvs add'
-     * invocation would fail because the specified file has already been
-     * committed.  This method succeeds and returns the file revision number
-     * that was already present in CVS.  This is relatively inefficient, and
-     * callers shoud consider invoking {@link #commitModifiedFile(File)}
-     * instead in this case.
-     * <p>
-     * There is also graceful handling for the case in which the 'cvs add'
-     * invocation would fail because the specified file has already been added,
-     * but not yet committed.  This method simply continues on the commit step
-     * and returns normally.
-     * 
-     * @param newFile the new file that is to be enabled for version control.
-     *        Its parent directory in the filesystem must be a directory
-     *        previously enabled for version control (via a call to
-     *        {@code registerDirectory()}).
-     *        
-     * @return the revision CVS has assigned to this version of the specified
-     *         file, including if CVS already had a version of the file in its
-     *         repository.
-     *         
-     * @throws OperationFailedException on low-level error.
-     * @throws ProcessAbnormalExitException if CVS terminated abnormally.
-     */
-    public String commitAddedFile(File newFile)
-            throws OperationFailedException, ProcessAbnormalExitException {
-        String existingRevisionString = null;
-        String newRevisionString;
-        
-        try {
-            // Invoke 'cvs add'.
-            CoreProcessWrapper.exec(new String[] { this.cvsProgram.getPath(),
-                    "-d", this.cvsRootDir.getPath(), "add", "-kb",
-                    newFile.getPath() }, true, this.logger);
-            
-            existingRevisionString = null;
-        } catch (ProcessAbnormalExitException pane) {
-            Matcher m1 = alreadyExistsErrorPattern.matcher(
-                    pane.getCapturedErrorText());
-	    Matcher m2 = alreadyEnteredErrorPattern.matcher(
-		    pane.getCapturedErrorText());
-            if (m1.matches()) {
-		// So our file is already present in CVS.  Take note of its
-		// latest revision number.
-                existingRevisionString = m1.group(1);
-            } else if (m2.matches()) {
-		// So our file has been 'add'ed before but apparently not yet
-		// committed.  Just drop through...
-	    } else {
-                throw pane;
-            }
-        }
-
-        // Invoke 'cvs commit'
-        newRevisionString = commitModifiedFile(newFile);
-        
-        // Decide which revision string to return
-        if ((newRevisionString == null) && (existingRevisionString == null)) {
-            throw new OperationFailedException(
-                    "CVS refuses to add new file " + newFile.getPath());
-        } else {
-            return ((newRevisionString == null) ? existingRevisionString
-                    : newRevisionString);
-        }
-    }
-
-    /**
-     * For a previously-versioned file now absent from the filesystem, commits
-     * the deletion of that file to the CVS repository. Under the hood, this
-     * method invokes 'cvs remove' and then 'cvs commit'.
-     * 
-     * @param oldFile identifies the file that previously existed within a
-     *        working directory, but that now is absent. The file should have
-     *        been passed to {@code commitAddedFile()} previously and its
-     *        parent directory in the filesystem should have been passed to
-     *        {@code registerDirectory()} previously.
-     * @throws OperationFailedException on low-level error.
-     * @throws ProcessAbnormalExitException if CVS terminated abnormally.
-     */
-    public void commitRemovedFile(File oldFile) 
-            throws OperationFailedException {
-	// Invoke 'cvs remove'.
-	CoreProcessWrapper.exec(new String[] { 
-                this.cvsProgram.getPath(), "-d", this.cvsRootDir.getPath(),
-                "remove", oldFile.getPath() }, true, this.logger);
-
-        // Invoke 'cvs commit'.
-        CoreProcessWrapper.exec(new String[] { this.cvsProgram.getPath(), "-d",
-                this.cvsRootDir.getPath(), "commit", "-m", "",
-                oldFile.getPath() }, true, this.logger);
-    }
-
-    /**
-     * For a versioned file whose contents have been modified since the last
-     * call to {@code commitAddedFile()} or {@code commitModifiedFile()},
-     * commits the modifications to the CVS repository. If the file's contents
-     * have not been modified, the file is not committed again and null is
-     * returned in place of the new revision number. Callers are encouraged to
-     * invoke this method only for files on which {@code checkFileModified()}
-     * has returned {@code true} previously.
-     * 
-     * @param changedFile identifies the file whose contents have changed and
-     *        that is to be committed. The file should have been passed to
-     *        {@code commitAddedFile()} previously and its parent directory in
-     *        the filesystem should have been passed to
-     *        {@code registerDirectory()} previously.
-     * @return the revision CVS has assigned to this version of the specified
-     *         file, or null if the file was not committed (again).
-     * @throws OperationFailedException on low-level error.
-     * @throws ProcessAbnormalExitException if CVS terminated abnormally, or
-     *         its output could not be parsed.
-     */
-    public String commitModifiedFile(File changedFile)
-            throws OperationFailedException, ProcessAbnormalExitException {
-        // Invoke 'cvs commit'.
-        String cvsOutput = CoreProcessWrapper.exec(new String[] {
-                this.cvsProgram.getPath(), "-d", this.cvsRootDir.getPath(),
-                "commit", "-m", "", changedFile.getPath() }, 
-                true, this.logger);
-        /*
-         * Extract the revision number from the output CVS generated. It might
-         * follow either the words 'initial revision' or the words 'new
-         * revision'.
-         */
-        Matcher matcher = initialRevisionOutputPattern.matcher(cvsOutput);
-        
-        if (matcher.matches()) {
-            /*
-             * The first capturing group of the regexp, the text immediately
-             * after 'initial revision', is the textual revision number that
-	     * the caller wants.
-             */
-            return matcher.group(1);
-        }
-        
-        matcher = newRevisionOutputPattern.matcher(cvsOutput);
-        if (matcher.matches()) {
-            /*
-             * The first capturing group of the regexp, the text immediately
-             * after 'new revision', is the textual revision number that the
-             * caller wants.
-             */
-            return matcher.group(1);
-        } 
-        
-        if (cvsOutput.length() == 0) {
-            /*
-             * CVS exited with code 0 and no output. Assume this means that it
-             * refused to commit the file because the file's contents have not
-             * changed. This is undocumented behavior, but it seems to be the
-             * case consistently.
-             */
-            return null;
-        }
-
-        // Couldn't parse the output of the CVS program.
-        throw new ProcessAbnormalExitException(null, cvsOutput, null);
-    }
-
-    /**
-     * For a versioned file, detects whether the file's contents have changed
-     * since the last call to {@code commitAddedFile()} or
-     * {@code commitModifiedFile()}.
-     * 
-     * @param fileToCheck identifies the file whose contents should be checked
-     *        against those in the CVS repository. The file should have been
-     *        passed to {@code commitAddedFile()} previously and its parent
-     *        directory in the filesystem should have been passed to
-     *        {@code registerDirectory()} previously.
-     * @return true if the file has changed, false otherwise.
-     * @throws OperationFailedException on low-level error.
-     * @throws ProcessAbnormalExitException if CVS terminated abnormally.
-     */
-    public boolean checkFileModified(File fileToCheck)
-            throws OperationFailedException, ProcessAbnormalExitException {
-        // Invoke 'cvs diff'.
-        String cvsOutput = CoreProcessWrapper.exec(new String[] {
-                this.cvsProgram.getPath(), "-d", this.cvsRootDir.getPath(),
-                "diff", "--brief", fileToCheck.getPath() }, 
-                false, this.logger);
-
-        /*
-         * If CVS stayed silent then the file has not changed; if CVS wrote 
-	 * some output then the file has changed.
-         */
-        return cvsOutput.length() > 0;
-    }
-
-    /**
-     * For a versioned file, returns the CVS revision number of the working
-     * version. The call succeeds whether the working file has been modified
-     * (relative to the most recent version of the file stored in CVS) or not.
-     * 
-     * @param fileToCheck identifies the file whose current revision number
-     *        should be obtained. The file should have been passed to
-     *        {@code commitAddedFile()} previously and its parent directory in
-     *        the filesystem should have been passed to
-     *        {@code registerDirectory()} previously.
-     * @return the most recent CVS revision number for the specified file.
-     * @throws OperationFailedException on low-level error.
-     * @throws ProcessAbnormalExitException if CVS terminated abnormally.
-     */
-    public String getFileRevision(File fileToCheck)
-            throws OperationFailedException, ProcessAbnormalExitException {
-        // Invoke 'cvs status'.
-        String cvsOutput = CoreProcessWrapper.exec(new String[] {
-                this.cvsProgram.getPath(), "-d", this.cvsRootDir.getPath(),
-                "status", fileToCheck.getPath() }, true, this.logger);
-
-        // Decode the program's output.
-        Matcher matcher = workingRevisionOutputPattern.matcher(cvsOutput);
-        if (matcher.matches()) {
-            return matcher.group(1);
-        }
-
-        // Couldn't parse the output of the CVS program.
-        throw new ProcessAbnormalExitException(null, cvsOutput, null);
-    }
-
-    /**
-     * For a versioned file, returns the CVS revision number of the most recent
-     * version. The call succeeds whether the working file has been modified
-     * (relative to the most recent version of the file stored in CVS) or not.
-     * 
-     * @param fileToCheck identifies the file whose head revision number should
-     *        be obtained. The file should have been passed to
-     *        {@code commitAddedFile()} previously and its parent directory in
-     *        the filesystem should have been passed to
-     *        {@code registerDirectory()} previously.
-     * @return the most recent CVS revision number for the specified file.
-     * @throws OperationFailedException on low-level error.
-     * @throws ProcessAbnormalExitException if CVS terminated abnormally.
-     */
-    public String getFileHeadRevision(File fileToCheck)
-            throws OperationFailedException, ProcessAbnormalExitException {
-        // Invoke 'cvs status'.
-        String cvsOutput = CoreProcessWrapper.exec(new String[] {
-                this.cvsProgram.getPath(), "-d", this.cvsRootDir.getPath(),
-                "status", fileToCheck.getPath() }, true, this.logger);
-
-        // Decode the program's output.
-        Matcher matcher = repositoryRevisionOutputPattern.matcher(cvsOutput);
-        
-        if (matcher.matches()) {
-            return matcher.group(1);
-        }
-
-        // Couldn't parse the output of the CVS program.
-        throw new ProcessAbnormalExitException(null, cvsOutput, null);
-    }
-
-    /**
-     * For a versioned file, permanently removes all traces of the file from
-     * the working directory and from the CVS repository. (All prior versions
-     * of the file are removed from the CVS repository; CVS will have no record
-     * the file ever existed.) This is implemented without CVS-sanctioned
-     * mechanisms and thus may not be reliable in the future.
-     * 
-     * @param cvsDirectoryName a unique string, possibly containing filesystem
-     *        separator characters, that CVS uses to identify the repository
-     *        directory for the file to be eradicated. This should be the same
-     *        value that was passed to {@code registerDirectory()} at the time
-     *        {@code workingDirectory} was registered previously.
-     * @param workingDirectory identifies the parent directory in the
-     *        filesystem of the file to be eradicated. It should have been
-     *        registered with {@code registerDirectory()} previously.
-     * @param fileName identifies the file within {@code workingDirectory} that
-     *        is to be eradicated.
-     * @throws OperationFailedException on low-level error.
-     * @throws ResourceNotAccessibleException if a permissions error was
-     *         encountered while deleting files.
-     */
-    public void eradicateFile(String cvsDirectoryName, File workingDirectory,
-            String fileName) throws OperationFailedException,
-            ResourceNotAccessibleException {
-        File workingFile = new File(workingDirectory, fileName);
-        File repositoryFile = new File(this.cvsRootDir, cvsDirectoryName
-                + File.separator + "Attic" + File.separator + fileName + ",v");
-        
-        deleteFileRecursively(workingFile);
-        commitRemovedFile(workingFile);
-        deleteFileRecursively(repositoryFile);
-    }
-
-    /**
-     * Retrieves a prior or current version of a particular file from the CVS
-     * repository and delivers it to the specified destination directory. This
-     * is equivalent to 'cvs export'.
-     * 
-     * @param cvsDirectoryName a unique string, possibly containing filesystem
-     *        separator characters, that CVS uses to identify the repository
-     *        directory for the file to be retrieved. This should be the same
-     *        value that was passed to {@code registerDirectory()} when the
-     *        working directory from which the file was first commited was
-     *        registered.
-     * @param fileName identifies the file that was commited from the working
-     *        directory associated with {@code cvsDirectoryName} that is to be
-     *        retrieved.
-     * @param revision identifies the specific version of the specified file
-     *        that should be retrieved. This value should have been obtained
-     *        from a prior call to {@code commitAddedFile()} or
-     *        {@code commitModifiedFile()}.
-     * @param destinationDirectory identifies the filesystem directory into
-     *        which the retrieved file should be placed. The directory is
-     *        created if it does not already exist.
-     * @throws OperationFailedException on low-level error.
-     * @throws ProcessAbnormalExitException if CVS terminated abnormally.
-     * @throws ResourceNotAccessibleException if a file permissions problem was
-     *         encountered.
-     */
-    public void exportFile(String cvsDirectoryName, String fileName,
-            String revision, File destinationDirectory)
-            throws OperationFailedException, ProcessAbnormalExitException,
-            ResourceNotAccessibleException {
-        /*
-         * Can't use 'cvs export' for this operation because 'export' is
-	 * broken: the CVS manual indicates that 'export' can take either a
-	 * numeric tag or a symbolic tag, but in practice it returns an error
-	 * unless a symbolic tag is specified. This work-around is necessary so
-	 * that {@code revision} can be a numeric tag like '1.1'.
-         */
-
-        // Invoke 'cvs checkout'.
-        CoreProcessWrapper.exec(new String[] { this.cvsProgram.getPath(), "-d",
-                this.cvsRootDir.getPath(), "checkout", "-r", revision, "-d",
-                destinationDirectory.getPath(),
-                cvsDirectoryName + File.separator + fileName }, true,
-                this.logger);
-
-        /*
-         * Remove the extraneous 'CVS' directory that checkout so helpfully
-         * created.
-         */
-        deleteFileRecursively(new File(destinationDirectory, "CVS"));
-    }
-
-    /**
-     * Calculates the total number of bytes used to store all versions on the
-     * specified file in the CVS repository (not counting any checked-out
-     * copies).
-     * 
-     * @return a count of bytes.
-     * @param cvsDirectoryName a unique string, possibly containing filesystem
-     *        separator charcaters, that CVS uses to dentify the repository
-     *        directory for the file to be retrieved. This should be the same
-     *        value that was passed to {@code registerDirectory()} when the
-     *        working directory from which the file was first committed was
-     *        registerd.
-     * @param fileName identifies the file that was committed from the working
-     *        directory associated with {@code cvsDirectoryName} whose size is
-     *        to be calculated.
-     */
-    public long getVersionedFileSize(String cvsDirectoryName, 
-            String fileName) {
-        File repositoryFile = new File(this.cvsRootDir, cvsDirectoryName
-                + File.separator + fileName + ",v");
-        
-        return repositoryFile.length();
-    }
-
-    /**
-     * Updates the contents of the file specified with those from a prior
-     * revision of the same file, as tracked by CVS. If the file is "dead" in
-     * CVS parlance (does not exist in the working directory), the file is
-     * resurrected. A typical caller would invoke {@code commitModifiedFile() }
-     * after every call to this function to commit the replacement. Any
-     * modifications to this file since it was last committed will be lost.
-     * 
-     * @param workingDir a {@code File} object representing the working
-     *        directory
-     * @param filename the name of the file that is to be replaced
-     * @param revision identifies the specific version of the specified file
-     *        that should be retrieved. This value should have been obtained
-     *        from a prior call to {@code commitAddedFile()} or
-     *        {@code commitModifiedFile()}.
-     * @throws OperationFailedException on low-level error.
-     * @throws ProcessAbnormalExitException if CVS terminated abnormally.
-     * @throws ResourceNotAccessibleException if a file permissions problem was
-     *         encountered.
-     */
-    public void replaceFileWithRevision(File workingDir, String filename,
-            String revision) throws OperationFailedException,
-            ProcessAbnormalExitException, ResourceNotAccessibleException {
-        File file = new File(workingDir, filename);
-
-        // prevent any previously undetected changes from being merged in
-        if (file.exists()) {
-            file.delete();
-        }
-        CoreProcessWrapper.exec(new String[] { this.cvsProgram.getPath(), "-d",
-                this.cvsRootDir.getPath(), "update", "-j",
-                getFileHeadRevision(file), "-j", revision, file.getPath() },
-                true, this.logger);
-    }
-
-    /**
-     * Utility method that deletes the specified file from the filesystem. If
-     * the specified file is a directory, then all files within that directory
-     * are deleted recursively.
-     * 
-     * @param toDelete a {@code File} representing the file or directory to
-     *        delete
-     * @throws OperationFailedException if deletion of the specified file (or
-     *         if the specified file is a directory, one of the files within 
-     *         it) failed, presumably because of a filesystem permissions
-     *         problem, or locking error.
-     */
-    public static void deleteFileRecursively(File toDelete)
-            throws OperationFailedException {
-        if (toDelete.isDirectory()) {
-            File files[] = toDelete.listFiles();
-    
-            if (files == null) {
-                throw new OperationFailedException(
-                        "Could not list files in directory "
-                                + toDelete.getAbsolutePath());
-            } else {
-                for (File file : files) {
-                    deleteFileRecursively(file);
-                }
-            }
-        }
-        if (!toDelete.delete()) {
-            throw new ResourceNotAccessibleException(toDelete);
-        }
-    }
-}
@@ -0,0 +1,1332 @@
+/*
+ * Reciprocal Net project
+ *
+ * FileVersionStore.java
+ *
+ * 18-Oct-2026: agent wrote first draft, replacing CvsInvoker
+ * 18-Oct-2026: agent added commitFiles(), newDigest() and digestToString()
+ */
+
+package org.recipnet.site.core.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.recipnet.site.OperationFailedException;
+import org.recipnet.site.core.ResourceNotAccessibleException;
+
+/**
+ * <p>
+ * A versioned file store that Reciprocal Net site software uses to keep every
+ * version of every sample data file stored within a site's file repository.
+ * It is implemented entirely in Java: file contents are stored as
+ * content-addressed "blobs", named by the SHA-256 digest of their bytes, so
+ * that identical contents are stored only once no matter how many files or
+ * versions share them. Each versioned directory has a "tree name" and a
+ * manifest, a small text file listing every revision of every file ever
+ * committed from that directory together with the digest of its contents.
+ * Retrieving a prior version of a file is a copy from one file to another.
+ * </p><p>
+ * Revisions are numbered the way CVS numbers trunk revisions ("1.1", "1.2",
+ * and so on), and the removal of a file is recorded as a "dead" revision, so
+ * revision numbers recorded in the database by earlier versions of the site
+ * software, which versioned files with CVS, remain valid once the CVS
+ * repository has been imported by {@link #migrateFromCvs(File)}.
+ * </p><p>
+ * The store's directory contains a {@code blobs} subdirectory, which holds
+ * the blobs in subdirectories named by the first two hex digits of their
+ * digests, and a {@code trees} subdirectory, which holds the manifests. A
+ * working directory registered with {@link #registerDirectory(String, File)}
+ * records its tree name in a hidden file within itself. Manifests are
+ * replaced atomically by renaming, so a reader never observes a partly
+ * written one.
+ * </p><p>
+ * This class is thread-safe. Operations upon the same tree are serialized
+ * with one another; operations upon different trees may proceed
+ * concurrently.
+ * </p>
+ */
+public class FileVersionStore {
+
+    /**
+     * The name of the hidden file within a registered working directory that
+     * records the directory's tree name
+     */
+    public static final String TREE_NAME_FILE = ".versiontree";
+
+    /**
+     * The name of the file within the store's directory whose presence
+     * indicates that the store has been initialized
+     */
+    private static final String FORMAT_FILE = "format";
+
+    /** The on-disk format version written to {@code FORMAT_FILE} */
+    private static final String FORMAT_VERSION = "1";
+
+    /** The state recorded for a revision that has contents */
+    private static final String LIVE = "live";
+
+    /** The state recorded for a revision that records a file's removal */
+    private static final String DEAD = "dead";
+
+    /** The digest algorithm by which blobs are named */
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /** The size of the buffers used to copy and digest file contents */
+    private static final int BUFFER_SIZE = 65536;
+
+    /** The store's base directory; populated at construction time. */
+    private final File storeDir;
+
+    /** The directory that holds blobs; populated at construction time. */
+    private final File blobsDir;
+
+    /** The directory that holds manifests; populated at construction time. */
+    private final File treesDir;
+
+    /** The destination for logging events; populated at construction time. */
+    private final Logger logger;
+
+    /**
+     * A lock that every operation that might add a reference to a blob holds
+     * in shared mode, and that {@code eradicateFile()} holds in exclusive mode
+     * while it discards blobs that are no longer referenced
+     */
+    private final ReadWriteLock blobLock;
+
+    /** Monitors that serialize operations upon each tree, by tree name */
+    private final ConcurrentMap<String, Object> treeMonitors;
+
+    /**
+     * Initializes a new {@code FileVersionStore} with the specified parameters
+     *
+     * @param storeDir a {@code File} representing the base directory under
+     *        which the store should create and manage its blobs and manifests
+     * @param logger a {@code Logger} to be used for logging information about
+     *        significant events performed or observed by this object
+     */
+    public FileVersionStore(File storeDir, Logger logger) {
+        this.storeDir = storeDir;
+        this.blobsDir = new File(storeDir, "blobs");
+        this.treesDir = new File(storeDir, "trees");
+        this.logger = logger;
+        this.blobLock = new ReentrantReadWriteLock();
+        this.treeMonitors = new ConcurrentHashMap<String, Object>();
+    }
+
+    /**
+     * Determines whether the store has been initialized by
+     * {@code initRepository()}
+     *
+     * @return {@code true} if the store is ready for use, {@code false}
+     *         otherwise
+     */
+    public boolean isInitialized() {
+        return new File(this.storeDir, FORMAT_FILE).isFile();
+    }
+
+    /**
+     * Initializes the store. This should be invoked only once per store
+     * (ever), but the current implementation has no harmful effects if invoked
+     * repeatedly. The {@code storeDir} specified at construction time is
+     * created on the filesystem if it does not already exist.
+     *
+     * @throws OperationFailedException on low-level error.
+     * @throws ResourceNotAccessibleException with a nested {@code File} object
+     *         if a directory or file within the store could not be created.
+     */
+    public void initRepository() throws OperationFailedException,
+            ResourceNotAccessibleException {
+        makeDirectory(this.storeDir);
+        makeDirectory(this.blobsDir);
+        makeDirectory(this.treesDir);
+
+        File formatFile = new File(this.storeDir, FORMAT_FILE);
+
+        if (!formatFile.isFile()) {
+            writeFileAtomically(formatFile,
+                    Collections.singletonList(FORMAT_VERSION));
+        }
+    }
+
+    /**
+     * Imports every file version from a CVS repository created by an earlier
+     * version of the site software, preserving revision numbers, and then
+     * initializes the store. The CVS repository is read directly; the 'cvs'
+     * program is not needed. Each directory within the CVS repository (other
+     * than {@code CVSROOT}) becomes a tree of the same name, and its
+     * {@code ,v} files, including those in its {@code Attic}, become the
+     * files of that tree. Working directories that CVS had checked out are
+     * recognized by {@code registerDirectory()}'s marker or, failing that, by
+     * CVS's own administrative files. An interrupted migration may safely be
+     * repeated; the CVS repository is not modified.
+     *
+     * @param cvsRootDir the base directory of the CVS repository
+     * @throws OperationFailedException on low-level error, or if a CVS
+     *         archive could not be parsed.
+     * @throws ResourceNotAccessibleException if a file permissions problem was
+     *         encountered.
+     */
+    public void migrateFromCvs(File cvsRootDir)
+            throws OperationFailedException, ResourceNotAccessibleException {
+        makeDirectory(this.storeDir);
+        makeDirectory(this.blobsDir);
+        makeDirectory(this.treesDir);
+
+        File[] cvsDirs = cvsRootDir.listFiles();
+
+        if (cvsDirs == null) {
+            throw new ResourceNotAccessibleException(cvsRootDir);
+        }
+        for (File cvsDir : cvsDirs) {
+            if (cvsDir.isDirectory() && !cvsDir.getName().equals("CVSROOT")) {
+                migrateCvsDirectory(cvsDir.getName(), cvsDir);
+            }
+        }
+        initRepository();
+        this.logger.log(Level.INFO, "Imported CVS repository "
+                + cvsRootDir.getPath() + " into file version store "
+                + this.storeDir.getPath());
+    }
+
+    /**
+     * Imports one tree's worth of CVS archives; a helper for
+     * {@code migrateFromCvs()}
+     */
+    private void migrateCvsDirectory(String treeName, File cvsDir)
+            throws OperationFailedException {
+        Manifest manifest = new Manifest();
+        List<File> archives = new ArrayList<File>();
+        File atticDir = new File(cvsDir, "Attic");
+
+        for (File dir : new File[] { cvsDir, atticDir }) {
+            File[] files = dir.listFiles();
+
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(",v")) {
+                    archives.add(file);
+                }
+            }
+        }
+        for (File archive : archives) {
+            String name = archive.getName();
+            final String fileName = name.substring(0, name.length() - 2);
+            final List<Revision> revisions = new ArrayList<Revision>();
+
+            checkFileName(fileName);
+            this.blobLock.readLock().lock();
+            try {
+                new RcsArchiveReader(archive).readRevisions(
+                        new RcsArchiveReader.RevisionHandler() {
+                            public void handleRevision(String revision,
+                                    boolean dead, byte[] contents)
+                                    throws OperationFailedException {
+                                revisions.add(dead ? new Revision(revision)
+                                        : new Revision(revision,
+                                                storeBlob(contents),
+                                                contents.length));
+                            }
+                        });
+            } finally {
+                this.blobLock.readLock().unlock();
+            }
+
+            // The archive is read newest-first; the manifest is oldest-first.
+            Collections.reverse(revisions);
+            manifest.revisions.put(fileName, revisions);
+        }
+        synchronized (getTreeMonitor(treeName)) {
+            writeManifest(treeName, manifest);
+        }
+    }
+
+    /**
+     * Registers an existing filesystem directory with the store as a working
+     * directory whose files belong to the specified tree. Files that may
+     * already reside within the working directory are not touched and are not
+     * automatically versioned -- the caller should subsequently invoke
+     * {@code commitAddedFile()} for each child file if this is desired.
+     *
+     * @param treeName a unique string that the store will use to identify the
+     *        versions of files committed from the specified working directory.
+     *        This string's value need not match the last path component of
+     *        {@code workingDirectory}, and must not contain filesystem
+     *        separator characters.
+     * @param workingDirectory identifies the filesystem directory that should
+     *        be enabled for version control. Individual files within this
+     *        directory are not affected.
+     * @throws OperationFailedException on low-level error.
+     * @throws ResourceNotAccessibleException if the working directory's marker
+     *         file or the tree's manifest could not be written, presumably
+     *         because of a filesystem permission error.
+     */
+    public void registerDirectory(String treeName, File workingDirectory)
+            throws OperationFailedException, ResourceNotAccessibleException {
+        checkFileName(treeName);
+        synchronized (getTreeMonitor(treeName)) {
+            if (!getManifestFile(treeName).exists()) {
+                writeManifest(treeName, new Manifest());
+            }
+        }
+        writeFileAtomically(new File(workingDirectory, TREE_NAME_FILE),
+                Collections.singletonList(treeName));
+    }
+
+    /**
+     * For a new file within a previously-registered working directory, enables
+     * that file for version control and stores its current contents as a new
+     * revision. If the file is already versioned then this method behaves as
+     * {@code commitModifiedFile()} would, except that if the file's contents
+     * have not changed it returns the file's existing revision number rather
+     * than {@code null}. If the file was previously versioned but has since
+     * been removed, the new revision continues the file's revision numbering.
+     *
+     * @param newFile the new file that is to be enabled for version control.
+     *        Its parent directory in the filesystem must be a directory
+     *        previously enabled for version control (via a call to
+     *        {@code registerDirectory()}).
+     * @return the revision number assigned to this version of the specified
+     *         file, including if the store already had this version of the
+     *         file.
+     * @throws OperationFailedException on low-level error.
+     */
+    public String commitAddedFile(File newFile)
+            throws OperationFailedException {
+        String treeName = getTreeName(newFile.getParentFile());
+
+        checkFileName(newFile.getName());
+        this.blobLock.readLock().lock();
+        try {
+            synchronized (getTreeMonitor(treeName)) {
+                Manifest manifest = readManifest(treeName);
+                Revision latest = manifest.getLatest(newFile.getName());
+                Revision revision = storeFile(newFile,
+                        (latest == null) ? "1.1" : nextRevision(latest.number),
+                        null);
+
+                if ((latest != null) && !latest.isDead()
+                        && latest.hash.equals(revision.hash)) {
+                    return latest.number;
+                }
+                manifest.add(newFile.getName(), revision);
+                writeManifest(treeName, manifest);
+
+                return revision.number;
+            }
+        } finally {
+            this.blobLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Commits several files from the same working directory at once, as
+     * {@code commitAddedFile()} would commit each of them, but reading and
+     * rewriting the directory's manifest only once. A caller that has already
+     * computed the digest of a file's contents, for instance while writing the
+     * file, may supply it so that a file whose contents are unchanged, or
+     * already stored, need not be read again.
+     *
+     * @param files the files to be committed, all within the same working
+     *        directory, which must have been passed to
+     *        {@code registerDirectory()} previously. No file may appear more
+     *        than once.
+     * @param digests the digests of the files' contents, as computed with a
+     *        {@code MessageDigest} from {@link #newDigest()} and formatted by
+     *        {@link #digestToString(MessageDigest)}, parallel to
+     *        {@code files}; any element may be {@code null} if the digest is
+     *        not known, and the array itself may be {@code null} if none are
+     * @return the revision numbers assigned to the files, parallel to
+     *         {@code files}, including the existing revision number of any
+     *         file whose contents the store already had.
+     * @throws IllegalArgumentException if the files do not all lie in the
+     *         same directory, or if {@code digests} is of the wrong length.
+     * @throws OperationFailedException on low-level error.
+     */
+    public String[] commitFiles(File files[], String digests[])
+            throws OperationFailedException {
+        String revisions[] = new String[files.length];
+
+        if (files.length == 0) {
+            return revisions;
+        } else if ((digests != null) && (digests.length != files.length)) {
+            throw new IllegalArgumentException();
+        }
+
+        File workingDirectory = files[0].getParentFile();
+        String treeName = getTreeName(workingDirectory);
+
+        for (File file : files) {
+            if (!workingDirectory.equals(file.getParentFile())) {
+                throw new IllegalArgumentException();
+            }
+            checkFileName(file.getName());
+        }
+        this.blobLock.readLock().lock();
+        try {
+            synchronized (getTreeMonitor(treeName)) {
+                Manifest manifest = readManifest(treeName);
+                boolean changed = false;
+
+                for (int i = 0; i < files.length; i++) {
+                    Revision latest = manifest.getLatest(files[i].getName());
+                    String digest = (digests == null) ? null : digests[i];
+
+                    if ((digest != null) && (latest != null)
+                            && !latest.isDead()
+                            && (latest.size == files[i].length())
+                            && latest.hash.equals(digest)) {
+                        revisions[i] = latest.number;
+                        continue;
+                    }
+
+                    Revision revision = storeFile(files[i], (latest == null)
+                            ? "1.1" : nextRevision(latest.number), digest);
+
+                    if ((latest != null) && !latest.isDead()
+                            && latest.hash.equals(revision.hash)) {
+                        revisions[i] = latest.number;
+                    } else {
+                        manifest.add(files[i].getName(), revision);
+                        revisions[i] = revision.number;
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    writeManifest(treeName, manifest);
+                }
+
+                return revisions;
+            }
+        } finally {
+            this.blobLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * For a previously-versioned file now absent from the filesystem, records
+     * the removal of that file as a new, "dead" revision. Prior revisions
+     * remain available.
+     *
+     * @param oldFile identifies the file that previously existed within a
+     *        working directory, but that now is absent. The file should have
+     *        been passed to {@code commitAddedFile()} previously and its
+     *        parent directory in the filesystem should have been passed to
+     *        {@code registerDirectory()} previously.
+     * @throws OperationFailedException on low-level error, or if the file is
+     *         not currently versioned.
+     */
+    public void commitRemovedFile(File oldFile)
+            throws OperationFailedException {
+        String treeName = getTreeName(oldFile.getParentFile());
+
+        synchronized (getTreeMonitor(treeName)) {
+            Manifest manifest = readManifest(treeName);
+            Revision latest = getLiveRevision(manifest, oldFile);
+
+            manifest.add(oldFile.getName(),
+                    new Revision(nextRevision(latest.number)));
+            writeManifest(treeName, manifest);
+        }
+    }
+
+    /**
+     * For a versioned file whose contents have been modified since the last
+     * call to {@code commitAddedFile()} or {@code commitModifiedFile()},
+     * stores the modified contents as a new revision. If the file's contents
+     * have not been modified, no new revision is created and null is returned
+     * in place of the new revision number. A file whose latest revision is
+     * dead, such as one just restored by {@code replaceFileWithRevision()},
+     * is resurrected by a new revision.
+     *
+     * @param changedFile identifies the file whose contents have changed and
+     *        that is to be committed. The file should have been passed to
+     *        {@code commitAddedFile()} previously and its parent directory in
+     *        the filesystem should have been passed to
+     *        {@code registerDirectory()} previously.
+     * @return the revision number assigned to this version of the specified
+     *         file, or null if the file was not committed (again).
+     * @throws OperationFailedException on low-level error, or if the file has
+     *         never been versioned.
+     */
+    public String commitModifiedFile(File changedFile)
+            throws OperationFailedException {
+        String treeName = getTreeName(changedFile.getParentFile());
+
+        this.blobLock.readLock().lock();
+        try {
+            synchronized (getTreeMonitor(treeName)) {
+                Manifest manifest = readManifest(treeName);
+                Revision latest = manifest.getLatest(changedFile.getName());
+
+                if (latest == null) {
+                    throw new OperationFailedException("File "
+                            + changedFile.getPath() + " is not versioned");
+                } else if (!latest.isDead()
+                        && (latest.size == changedFile.length())
+                        && latest.hash.equals(digestFile(changedFile))) {
+                    return null;
+                }
+
+                Revision revision = storeFile(changedFile,
+                        nextRevision(latest.number), null);
+
+                manifest.add(changedFile.getName(), revision);
+                writeManifest(treeName, manifest);
+
+                return revision.number;
+            }
+        } finally {
+            this.blobLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * For a versioned file, detects whether the file's contents have changed
+     * since the last call to {@code commitAddedFile()} or
+     * {@code commitModifiedFile()}. The sizes are compared first, so that the
+     * file need be read only if its size is unchanged.
+     *
+     * @param fileToCheck identifies the file whose contents should be checked
+     *        against those in the store. The file should have been passed to
+     *        {@code commitAddedFile()} previously and its parent directory in
+     *        the filesystem should have been passed to
+     *        {@code registerDirectory()} previously.
+     * @return true if the file has changed or is not currently versioned,
+     *         false otherwise.
+     * @throws OperationFailedException on low-level error.
+     */
+    public boolean checkFileModified(File fileToCheck)
+            throws OperationFailedException {
+        String treeName = getTreeName(fileToCheck.getParentFile());
+        Revision latest;
+
+        synchronized (getTreeMonitor(treeName)) {
+            latest = readManifest(treeName).getLatest(fileToCheck.getName());
+        }
+
+        return (latest == null) || latest.isDead()
+                || (latest.size != fileToCheck.length())
+                || !latest.hash.equals(digestFile(fileToCheck));
+    }
+
+    /**
+     * For a versioned file, returns the revision number of the working
+     * version, which is the most recently committed revision. The call
+     * succeeds whether the working file has been modified since then or not.
+     *
+     * @param fileToCheck identifies the file whose current revision number
+     *        should be obtained. The file should have been passed to
+     *        {@code commitAddedFile()} previously and its parent directory in
+     *        the filesystem should have been passed to
+     *        {@code registerDirectory()} previously.
+     * @return the most recent revision number for the specified file.
+     * @throws OperationFailedException on low-level error, or if the file is
+     *         not currently versioned.
+     */
+    public String getFileRevision(File fileToCheck)
+            throws OperationFailedException {
+        String treeName = getTreeName(fileToCheck.getParentFile());
+
+        synchronized (getTreeMonitor(treeName)) {
+            return getLiveRevision(readManifest(treeName),
+                    fileToCheck).number;
+        }
+    }
+
+    /**
+     * For a versioned file, returns the revision number of the most recent
+     * revision, including a "dead" revision that records the file's removal.
+     *
+     * @param fileToCheck identifies the file whose head revision number should
+     *        be obtained. The file should have been passed to
+     *        {@code commitAddedFile()} previously and its parent directory in
+     *        the filesystem should have been passed to
+     *        {@code registerDirectory()} previously.
+     * @return the most recent revision number for the specified file.
+     * @throws OperationFailedException on low-level error, or if the file has
+     *         never been versioned.
+     */
+    public String getFileHeadRevision(File fileToCheck)
+            throws OperationFailedException {
+        String treeName = getTreeName(fileToCheck.getParentFile());
+
+        synchronized (getTreeMonitor(treeName)) {
+            Revision latest = readManifest(treeName).getLatest(
+                    fileToCheck.getName());
+
+            if (latest == null) {
+                throw new OperationFailedException("File "
+                        + fileToCheck.getPath() + " is not versioned");
+            }
+
+            return latest.number;
+        }
+    }
+
+    /**
+     * For a versioned file, permanently removes all traces of the file from
+     * the working directory and from the store. (All prior versions of the
+     * file are removed; the store will have no record the file ever existed.)
+     * Blobs that are no longer referenced by any manifest are deleted, which
+     * requires that every manifest be read; this operation is therefore
+     * comparatively expensive, and excludes all commits while it runs.
+     *
+     * @param treeName the tree name of the file to be eradicated. This should
+     *        be the same value that was passed to {@code registerDirectory()}
+     *        at the time {@code workingDirectory} was registered previously.
+     * @param workingDirectory identifies the parent directory in the
+     *        filesystem of the file to be eradicated. It should have been
+     *        registered with {@code registerDirectory()} previously.
+     * @param fileName identifies the file within {@code workingDirectory} that
+     *        is to be eradicated.
+     * @throws OperationFailedException on low-level error.
+     * @throws ResourceNotAccessibleException if a permissions error was
+     *         encountered while deleting files.
+     */
+    public void eradicateFile(String treeName, File workingDirectory,
+            String fileName) throws OperationFailedException,
+            ResourceNotAccessibleException {
+        File workingFile = new File(workingDirectory, fileName);
+
+        if (workingFile.exists()) {
+            deleteFileRecursively(workingFile);
+        }
+        this.blobLock.writeLock().lock();
+        try {
+            List<Revision> revisions;
+
+            synchronized (getTreeMonitor(treeName)) {
+                Manifest manifest = readManifest(treeName);
+
+                revisions = manifest.revisions.remove(fileName);
+                if (revisions == null) {
+                    return;
+                }
+                writeManifest(treeName, manifest);
+            }
+
+            // Find which of the file's blobs no other revision still uses.
+            Set<String> orphans = new HashSet<String>();
+
+            for (Revision revision : revisions) {
+                if (!revision.isDead()) {
+                    orphans.add(revision.hash);
+                }
+            }
+
+            String[] manifestNames = this.treesDir.list();
+
+            if (manifestNames == null) {
+                throw new ResourceNotAccessibleException(this.treesDir);
+            }
+            for (int i = 0; (i < manifestNames.length) && !orphans.isEmpty();
+                    i++) {
+                if (!manifestNames[i].startsWith(".")) {
+                    String otherTree = manifestNames[i];
+
+                    synchronized (getTreeMonitor(otherTree)) {
+                        for (List<Revision> others : readManifest(
+                                otherTree).revisions.values()) {
+                            for (Revision other : others) {
+                                orphans.remove(other.hash);
+                            }
+                        }
+                    }
+                }
+            }
+            for (String hash : orphans) {
+                deleteFileRecursively(getBlobFile(hash));
+            }
+        } finally {
+            this.blobLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves a prior or current version of a particular file from the
+     * store and delivers it to the specified destination directory.
+     *
+     * @param treeName the tree name under which the file was committed. This
+     *        should be the same value that was passed to
+     *        {@code registerDirectory()} when the working directory from which
+     *        the file was first commited was registered.
+     * @param fileName identifies the file that was commited from the working
+     *        directory associated with {@code treeName} that is to be
+     *        retrieved.
+     * @param revision identifies the specific version of the specified file
+     *        that should be retrieved. This value should have been obtained
+     *        from a prior call to {@code commitAddedFile()} or
+     *        {@code commitModifiedFile()}.
+     * @param destinationDirectory identifies the filesystem directory into
+     *        which the retrieved file should be placed. The directory is
+     *        created if it does not already exist.
+     * @throws OperationFailedException on low-level error, or if the
+     *         requested revision does not exist or records a removal.
+     * @throws ResourceNotAccessibleException if a file permissions problem was
+     *         encountered.
+     */
+    public void exportFile(String treeName, String fileName, String revision,
+            File destinationDirectory) throws OperationFailedException,
+            ResourceNotAccessibleException {
+        File blob = getRevisionBlob(treeName, fileName, revision);
+
+        makeDirectory(destinationDirectory);
+        copyFile(blob, new File(destinationDirectory, fileName));
+    }
+
+    /**
+     * Calculates the total number of bytes used to store all versions of the
+     * specified file in the store (not counting any checked-out copies). A
+     * blob shared by several versions is counted once.
+     *
+     * @return a count of bytes.
+     * @param treeName the tree name under which the file was committed. This
+     *        should be the same value that was passed to
+     *        {@code registerDirectory()} when the working directory from which
+     *        the file was first committed was registered.
+     * @param fileName identifies the file that was committed from the working
+     *        directory associated with {@code treeName} whose size is to be
+     *        calculated.
+     * @throws OperationFailedException on low-level error.
+     */
+    public long getVersionedFileSize(String treeName, String fileName)
+            throws OperationFailedException {
+        List<Revision> revisions;
+
+        synchronized (getTreeMonitor(treeName)) {
+            revisions = readManifest(treeName).revisions.get(fileName);
+        }
+        if (revisions == null) {
+            return 0;
+        }
+
+        Set<String> counted = new HashSet<String>();
+        long total = 0;
+
+        for (Revision revision : revisions) {
+            if (!revision.isDead() && counted.add(revision.hash)) {
+                total += revision.size;
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Updates the contents of the file specified with those from a prior
+     * revision of the same file. If the file has been removed, it is
+     * resurrected. A typical caller would invoke {@code commitModifiedFile()}
+     * after every call to this function to commit the replacement. Any
+     * modifications to this file since it was last committed will be lost.
+     *
+     * @param workingDir a {@code File} object representing the working
+     *        directory
+     * @param filename the name of the file that is to be replaced
+     * @param revision identifies the specific version of the specified file
+     *        that should be retrieved. This value should have been obtained
+     *        from a prior call to {@code commitAddedFile()} or
+     *        {@code commitModifiedFile()}.
+     * @throws OperationFailedException on low-level error, or if the
+     *         requested revision does not exist or records a removal.
+     * @throws ResourceNotAccessibleException if a file permissions problem was
+     *         encountered.
+     */
+    public void replaceFileWithRevision(File workingDir, String filename,
+            String revision) throws OperationFailedException,
+            ResourceNotAccessibleException {
+        copyFile(getRevisionBlob(getTreeName(workingDir), filename, revision),
+                new File(workingDir, filename));
+    }
+
+    /**
+     * Utility method that deletes the specified file from the filesystem. If
+     * the specified file is a directory, then all files within that directory
+     * are deleted recursively.
+     *
+     * @param toDelete a {@code File} representing the file or directory to
+     *        delete
+     * @throws OperationFailedException if deletion of the specified file (or
+     *         if the specified file is a directory, one of the files within
+     *         it) failed, presumably because of a filesystem permissions
+     *         problem, or locking error.
+     */
+    public static void deleteFileRecursively(File toDelete)
+            throws OperationFailedException {
+        if (toDelete.isDirectory()) {
+            File files[] = toDelete.listFiles();
+
+            if (files == null) {
+                throw new OperationFailedException(
+                        "Could not list files in directory "
+                                + toDelete.getAbsolutePath());
+            } else {
+                for (File file : files) {
+                    deleteFileRecursively(file);
+                }
+            }
+        }
+        if (!toDelete.delete()) {
+            throw new ResourceNotAccessibleException(toDelete);
+        }
+    }
+
+    /**
+     * Determines the tree name of a registered working directory, from the
+     * marker file written by {@code registerDirectory()} or, for a directory
+     * that was checked out by CVS before the store replaced it, from CVS's
+     * administrative files. In the latter case the marker is written so that
+     * CVS's files need not be consulted again.
+     */
+    private String getTreeName(File workingDirectory)
+            throws OperationFailedException {
+        File marker = new File(workingDirectory, TREE_NAME_FILE);
+        List<String> lines = marker.isFile() ? readLines(marker) : null;
+
+        if (lines == null) {
+            File cvsRepositoryFile = new File(new File(workingDirectory,
+                    "CVS"), "Repository");
+
+            if (!cvsRepositoryFile.isFile()) {
+                throw new OperationFailedException("Directory "
+                        + workingDirectory.getPath() + " is not registered");
+            }
+            lines = readLines(cvsRepositoryFile);
+            if (!lines.isEmpty()) {
+                writeFileAtomically(marker, lines.subList(0, 1));
+            }
+        }
+        if (lines.isEmpty() || (lines.get(0).trim().length() == 0)) {
+            throw new OperationFailedException("Directory "
+                    + workingDirectory.getPath() + " has no tree name");
+        }
+
+        return lines.get(0).trim();
+    }
+
+    /** Returns the monitor that serializes operations upon a tree */
+    private Object getTreeMonitor(String treeName) {
+        Object monitor = this.treeMonitors.get(treeName);
+
+        if (monitor == null) {
+            Object newMonitor = new Object();
+
+            monitor = this.treeMonitors.putIfAbsent(treeName, newMonitor);
+            if (monitor == null) {
+                monitor = newMonitor;
+            }
+        }
+
+        return monitor;
+    }
+
+    /**
+     * Returns the blob holding the contents of the specified revision of a
+     * file, throwing an exception if there is no such revision or if it is
+     * dead
+     */
+    private File getRevisionBlob(String treeName, String fileName,
+            String revision) throws OperationFailedException {
+        List<Revision> revisions;
+
+        synchronized (getTreeMonitor(treeName)) {
+            revisions = readManifest(treeName).revisions.get(fileName);
+        }
+        if (revisions != null) {
+            for (Revision candidate : revisions) {
+                if (candidate.number.equals(revision)
+                        && !candidate.isDead()) {
+                    return getBlobFile(candidate.hash);
+                }
+            }
+        }
+
+        throw new OperationFailedException("No revision " + revision
+                + " of file " + fileName + " in tree " + treeName);
+    }
+
+    /**
+     * Returns the latest revision of {@code file} recorded in
+     * {@code manifest}, throwing an exception if the file is not currently
+     * versioned
+     */
+    private Revision getLiveRevision(Manifest manifest, File file)
+            throws OperationFailedException {
+        Revision latest = manifest.getLatest(file.getName());
+
+        if ((latest == null) || latest.isDead()) {
+            throw new OperationFailedException("File " + file.getPath()
+                    + " is not versioned");
+        }
+
+        return latest;
+    }
+
+    /**
+     * Returns the trunk revision number that follows {@code revision}
+     */
+    private static String nextRevision(String revision) {
+        int dot = revision.lastIndexOf('.');
+
+        return revision.substring(0, dot + 1)
+                + (Integer.parseInt(revision.substring(dot + 1)) + 1);
+    }
+
+    /** Returns the file in which a blob with the specified digest is kept */
+    private File getBlobFile(String hash) {
+        return new File(new File(this.blobsDir, hash.substring(0, 2)), hash);
+    }
+
+    /** Returns the manifest file for the specified tree */
+    private File getManifestFile(String treeName) {
+        return new File(this.treesDir, treeName);
+    }
+
+    /**
+     * Copies the contents of {@code file} into a blob, unless an identical
+     * blob already exists, and returns a live {@code Revision} describing it.
+     * If {@code knownHash} is not {@code null} it is taken to be the digest
+     * of the file's contents, and the file is not read at all if a blob with
+     * that digest exists already. The caller must hold {@code blobLock} in
+     * shared mode.
+     */
+    private Revision storeFile(File file, String number, String knownHash)
+            throws OperationFailedException {
+        if ((knownHash != null) && getBlobFile(knownHash).isFile()) {
+            return new Revision(number, knownHash, file.length());
+        }
+
+        File temp = createTempBlob();
+
+        try {
+            MessageDigest digest = newDigest();
+            InputStream in = new FileInputStream(file);
+            long size = 0;
+
+            try {
+                OutputStream out = new FileOutputStream(temp);
+
+                try {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+
+                    for (int n = in.read(buffer); n >= 0;
+                            n = in.read(buffer)) {
+                        digest.update(buffer, 0, n);
+                        out.write(buffer, 0, n);
+                        size += n;
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+
+            String hash = toHex(digest.digest());
+
+            installBlob(temp, hash);
+
+            return new Revision(number, hash, size);
+        } catch (IOException ex) {
+            throw new OperationFailedException("Could not store file "
+                    + file.getPath(), ex);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Stores {@code contents} as a blob, unless an identical blob already
+     * exists, and returns its digest. The caller must hold {@code blobLock}
+     * in shared mode.
+     */
+    private String storeBlob(byte[] contents) throws OperationFailedException {
+        MessageDigest digest = newDigest();
+        String hash = toHex(digest.digest(contents));
+
+        if (!getBlobFile(hash).isFile()) {
+            File temp = createTempBlob();
+
+            try {
+                OutputStream out = new FileOutputStream(temp);
+
+                try {
+                    out.write(contents);
+                } finally {
+                    out.close();
+                }
+                installBlob(temp, hash);
+            } catch (IOException ex) {
+                throw new OperationFailedException("Could not store blob "
+                        + hash, ex);
+            } finally {
+                temp.delete();
+            }
+        }
+
+        return hash;
+    }
+
+    /** Creates an empty temporary file within the blob directory */
+    private File createTempBlob() throws OperationFailedException {
+        try {
+            return File.createTempFile(".blob", null, this.blobsDir);
+        } catch (IOException ex) {
+            throw new OperationFailedException(
+                    "Could not create temporary file in "
+                    + this.blobsDir.getPath(), ex);
+        }
+    }
+
+    /**
+     * Renames a temporary file to be the blob with the specified digest, or
+     * leaves it in place if that blob already exists
+     */
+    private void installBlob(File temp, String hash)
+            throws ResourceNotAccessibleException {
+        File blob = getBlobFile(hash);
+
+        if (!blob.isFile()) {
+            File dir = blob.getParentFile();
+
+            if (!dir.mkdir() && !dir.isDirectory()) {
+                throw new ResourceNotAccessibleException(dir);
+            }
+            if (!temp.renameTo(blob) && !blob.isFile()) {
+                throw new ResourceNotAccessibleException(blob);
+            }
+        }
+    }
+
+    /** Computes the hex-encoded digest of the contents of {@code file} */
+    private String digestFile(File file) throws OperationFailedException {
+        MessageDigest digest = newDigest();
+
+        try {
+            InputStream in = new FileInputStream(file);
+
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    digest.update(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            throw new OperationFailedException("Could not read file "
+                    + file.getPath(), ex);
+        }
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Copies {@code source} to {@code destination} by way of a temporary file
+     * in the destination directory, so that the destination is replaced
+     * atomically
+     */
+    private void copyFile(File source, File destination)
+            throws OperationFailedException {
+        File temp;
+
+        try {
+            temp = File.createTempFile(".copy", null,
+                    destination.getParentFile());
+        } catch (IOException ex) {
+            throw new ResourceNotAccessibleException(
+                    destination.getParentFile());
+        }
+        try {
+            FileChannel in = new FileInputStream(source).getChannel();
+
+            try {
+                FileChannel out = new FileOutputStream(temp).getChannel();
+
+                try {
+                    long size = in.size();
+
+                    for (long done = 0; done < size; ) {
+                        done += in.transferTo(done, size - done, out);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            if (!temp.renameTo(destination)) {
+                throw new ResourceNotAccessibleException(destination);
+            }
+        } catch (IOException ex) {
+            throw new OperationFailedException("Could not copy "
+                    + source.getPath() + " to " + destination.getPath(), ex);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /** Reads the manifest of the specified tree; an absent one is empty */
+    private Manifest readManifest(String treeName)
+            throws OperationFailedException {
+        File file = getManifestFile(treeName);
+        Manifest manifest = new Manifest();
+
+        if (!file.exists()) {
+            return manifest;
+        }
+        for (String line : readLines(file)) {
+            String[] fields = line.split(" ", 5);
+
+            if (fields.length != 5) {
+                throw new OperationFailedException("Malformed manifest "
+                        + file.getPath());
+            }
+            try {
+                manifest.add(fields[4], fields[1].equals(DEAD)
+                        ? new Revision(fields[0])
+                        : new Revision(fields[0], fields[2],
+                                Long.parseLong(fields[3])));
+            } catch (NumberFormatException ex) {
+                throw new OperationFailedException("Malformed manifest "
+                        + file.getPath(), ex);
+            }
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest of the specified tree, one line per revision: the
+     * revision number, its state, the digest of its contents, their size, and
+     * the file name
+     */
+    private void writeManifest(String treeName, Manifest manifest)
+            throws OperationFailedException {
+        List<String> lines = new ArrayList<String>();
+
+        for (Map.Entry<String, List<Revision>> entry
+                : manifest.revisions.entrySet()) {
+            for (Revision revision : entry.getValue()) {
+                lines.add(revision.number + " "
+                        + (revision.isDead() ? DEAD + " - 0"
+                                : LIVE + " " + revision.hash + " "
+                                        + revision.size)
+                        + " " + entry.getKey());
+            }
+        }
+        writeFileAtomically(getManifestFile(treeName), lines);
+    }
+
+    /** Reads the lines of a UTF-8 text file */
+    private static List<String> readLines(File file)
+            throws OperationFailedException {
+        List<String> lines = new ArrayList<String>();
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(file), "UTF-8"));
+
+            try {
+                for (String line = reader.readLine(); line != null;
+                        line = reader.readLine()) {
+                    if (line.length() > 0) {
+                        lines.add(line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ex) {
+            throw new OperationFailedException("Could not read "
+                    + file.getPath(), ex);
+        }
+
+        return lines;
+    }
+
+    /**
+     * Writes the specified lines to a UTF-8 text file by way of a temporary
+     * file, so that the file is replaced atomically
+     */
+    private static void writeFileAtomically(File file, List<String> lines)
+            throws OperationFailedException {
+        File temp = new File(file.getParentFile(), "." + file.getName()
+                + ".tmp");
+
+        try {
+            Writer writer = new OutputStreamWriter(
+                    new FileOutputStream(temp), "UTF-8");
+
+            try {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            if (!temp.renameTo(file)) {
+                throw new ResourceNotAccessibleException(file);
+            }
+        } catch (IOException ex) {
+            throw new OperationFailedException("Could not write "
+                    + file.getPath(), ex);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /** Creates {@code dir} if it does not already exist */
+    private static void makeDirectory(File dir)
+            throws ResourceNotAccessibleException {
+        if (!dir.mkdirs() && !dir.isDirectory()) {
+            throw new ResourceNotAccessibleException(dir);
+        }
+    }
+
+    /**
+     * Throws an exception if {@code name} cannot be recorded as a file or tree
+     * name
+     */
+    private static void checkFileName(String name)
+            throws OperationFailedException {
+        if ((name.length() == 0) || name.startsWith(".")
+                || (name.indexOf('\n') >= 0) || (name.indexOf('\r') >= 0)
+                || (name.indexOf(File.separatorChar) >= 0)) {
+            throw new OperationFailedException("Cannot version file "
+                    + name);
+        }
+    }
+
+    /**
+     * Returns a new {@code MessageDigest} of the kind by which this class
+     * names file contents. Callers may use it to compute the digests accepted
+     * by {@code commitFiles()}.
+     *
+     * @return a new {@code MessageDigest}
+     * @throws OperationFailedException if the digest algorithm is unavailable
+     */
+    public static MessageDigest newDigest() throws OperationFailedException {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new OperationFailedException(ex);
+        }
+    }
+
+    /**
+     * Completes the specified digest and formats the result in the form that
+     * {@code commitFiles()} accepts
+     *
+     * @param digest a {@code MessageDigest} obtained from
+     *        {@link #newDigest()} and updated with the contents of a file
+     * @return the formatted digest
+     */
+    public static String digestToString(MessageDigest digest) {
+        return toHex(digest.digest());
+    }
+
+    /** Encodes {@code bytes} as lower-case hexadecimal */
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * The revisions recorded for the files of one tree, each file's revisions
+     * in the order they were committed
+     */
+    private static class Manifest {
+
+        /** A map from file name to that file's revisions */
+        final Map<String, List<Revision>> revisions
+                = new LinkedHashMap<String, List<Revision>>();
+
+        /** Appends a revision to the specified file's list */
+        void add(String fileName, Revision revision) {
+            List<Revision> list = this.revisions.get(fileName);
+
+            if (list == null) {
+                list = new ArrayList<Revision>();
+                this.revisions.put(fileName, list);
+            }
+            list.add(revision);
+        }
+
+        /**
+         * Returns the most recent revision of the specified file, or
+         * {@code null} if it has none
+         */
+        Revision getLatest(String fileName) {
+            List<Revision> list = this.revisions.get(fileName);
+
+            return (list == null) ? null : list.get(list.size() - 1);
+        }
+    }
+
+    /**
+     * One revision of one file: either live, with the digest and size of its
+     * contents, or dead, recording the file's removal
+     */
+    private static class Revision {
+
+        /** The revision number, such as "1.2" */
+        final String number;
+
+        /** The digest of the contents, or {@code null} if dead */
+        final String hash;
+
+        /** The size of the contents in bytes, or zero if dead */
+        final long size;
+
+        /** Initializes a live revision */
+        Revision(String number, String hash, long size) {
+            this.number = number;
+            this.hash = hash;
+            this.size = size;
+        }
+
+        /** Initializes a dead revision */
+        Revision(String number) {
+            this(number, null, 0);
+        }
+
+        /** Returns {@code true} if this revision records a removal */
+        boolean isDead() {
+            return this.hash == null;
+        }
+    }
+}
@@ -6,6 +6,15 @@
  * 01-Aug-2005: ekoperda wrote first draft, borrowing heavily from IsmPuller
  * 12-May-2006: jobollin formatted the source and updated docs
  * 25-Jan-2009: ekoperda fixed bug #1919 in exchange()
+ * 18-Oct-2026: agent changed exchange() to read the response one message at a
+ *              time through a SoapFragmentReader
+ * 18-Oct-2026: agent made the class thread-safe by applying timeouts to each
+ *              connection instead of through system properties and by keeping
+ *              the last server error message per thread
+ * 18-Oct-2026: agent added negotiation of the compressed, framed encoding
+ *              implemented by IsmFrameCodec
+ * 18-Oct-2026: agent limited the fallback from framing to responses that
+ *              show the remote site cannot accept frames
  */
 
 package org.recipnet.site.core.util;
@@ -13,11 +22,21 @@ package org.recipnet.site.core.util;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import org.recipnet.site.OperationFailedException;
-import org.recipnet.site.shared.DomUtil;
+import org.recipnet.site.shared.IsmFrameCodec;
+import org.recipnet.site.shared.SoapFragmentReader;
 import org.recipnet.site.shared.SoapUtil;
 import org.xml.sax.SAXException;
 
@@ -34,24 +53,58 @@ import org.xml.sax.SAXException;
  * servlet, and that servlet is assumed to be running at the remote site. The
  * communications protocol is SOAP over HTTP. No part of JAXM, the Java API for
  * XML message, is used in this code because its API is too inflexible and its
- * current implementation from Sun (as of year 2002) is too buggy.
+ * current implementation from Sun (as of year 2002) is too buggy. Responses
+ * are parsed as they arrive, one message at a time, so that no DOM tree of
+ * the response document is built and its text is never buffered whole; the
+ * messages extracted from it are, however, all collected in memory before
+ * {@code exchange()} returns them.
+ * </p><p>
+ * Unless disabled at construction time, every request advertises support for
+ * the compressed, framed encoding implemented by {@code IsmFrameCodec}. A
+ * remote site that understands it replies in that encoding, and subsequent
+ * requests to that site are sent in it too; if such a request is refused,
+ * the exchange is retried as plain SOAP and the site is no longer assumed to
+ * understand frames. Sites running older software ignore the advertisement
+ * and continue to exchange plain SOAP.
+ * </p><p>
+ * Instances are thread-safe: several threads may exchange ISMs through the
+ * same {@code IsmExchanger} at once, each with a different remote site or
+ * with the same one.
  * </p>
  */
 public class IsmExchanger {
 
-    /*
-     * TODO: this class sets two system properties at construction time in
-     * order to control the behavior of Sun's implementation of Java's
-     * URLConnection class. This is both a portability issue and a
-     * thread-safety issue. The bottom line is that whichever instance of this
-     * class has been created most recently will control the timeout behavior
-     * across all instances in the VM. Using this mechanism is necessary,
-     * however, in order to prevent an uncooperative remote site from stalling
-     * Site Manager's worker thread.  Consider altering this class's behavior
-     * if/when Sun gives us better control over URLConnection's behavior.
+    /**
+     * The error message returned by the remote server during each thread's
+     * most recent exchange, if any
+     */
+    private final ThreadLocal<String> lastServerErrorMessage
+            = new ThreadLocal<String>();
+
+    /**
+     * The number of milliseconds to wait for a connection to the remote HTTP
+     * server; set at construction time.
      */
+    private final int connectTimeout;
 
-    private String lastServerErrorMessage = null;
+    /**
+     * The number of milliseconds to wait for data from the remote HTTP
+     * server; set at construction time.
+     */
+    private final int readTimeout;
+
+    /**
+     * Whether the framed encoding should be offered to remote sites; set at
+     * construction time.
+     */
+    private final boolean framingAllowed;
+
+    /**
+     * The base URLs of remote sites that have replied with framed bodies and
+     * so may be sent framed requests
+     */
+    private final Set<String> framingSites
+            = Collections.synchronizedSet(new HashSet<String>());
 
     /**
      * A constant that controls the maximum number of bytes transferred to the
@@ -61,35 +114,53 @@ public class IsmExchanger {
     private static final int HTTP_CHUNK_SIZE = 32768;
 
     /**
-     * <p>
+     * The beginnings of the error messages with which a site that predates
+     * framing rejects a framed request, whose {@code Content-Type} it does
+     * not recognize
+     */
+    private static final String UNFRAMED_SITE_REFUSALS[] = {
+            "Expected character encoding UTF-8 but got",
+            "Expected MIME Content-Type:text/xml but got" };
+
+    /**
      * Initializes a new {@code IsmExchanger} with the specified arguments
-     * </p><p>
-     * <strong>WARNING:</stong> see the thread-safety and portability notice at
-     * the top of this class.
-     * </p>
      * 
      * @param connectTimeout the number of milliseconds that {@code exchange()}
      *        should wait for a connection to the remote HTTP server before
      *        failing.
-     * @param readTimeout the number of milliseconds pullMessages() should wait
-     *        for data to arrive once a connection to the remote HTTP server
-     *        has been established before failing.
+     * @param readTimeout the number of milliseconds {@code exchange()} should
+     *        wait for data to arrive once a connection to the remote HTTP
+     *        server has been established before failing.
      */
     public IsmExchanger(int connectTimeout, int readTimeout) {
-        /*
-         * TODO: Sun's current implementation (year 2002) appears to wait twice
-         * the specified amounts of time, although this behavior is not
-         * documented.
-         */
-        System.setProperty("sun.net.client.defaultConnectTimeout",
-                String.valueOf(connectTimeout));
-        System.setProperty("sun.net.client.defaultReadTimeout",
-                String.valueOf(readTimeout));
+        this(connectTimeout, readTimeout, true);
+    }
+
+    /**
+     * Initializes a new {@code IsmExchanger} with the specified arguments
+     * 
+     * @param connectTimeout the number of milliseconds that {@code exchange()}
+     *        should wait for a connection to the remote HTTP server before
+     *        failing.
+     * @param readTimeout the number of milliseconds {@code exchange()} should
+     *        wait for data to arrive once a connection to the remote HTTP
+     *        server has been established before failing.
+     * @param framingAllowed true if the compressed, framed encoding should be
+     *        negotiated with remote sites, false to exchange plain SOAP only.
+     */
+    public IsmExchanger(int connectTimeout, int readTimeout,
+            boolean framingAllowed) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.framingAllowed = framingAllowed;
     }
 
-    /** Simple getter */
+    /**
+     * Returns the error message the remote server sent during the calling
+     * thread's most recent exchange, or null if there was none
+     */
     public String getLastServerErrorMessage() {
-        return lastServerErrorMessage;
+        return lastServerErrorMessage.get();
     }
 
     /**
@@ -124,83 +195,188 @@ public class IsmExchanger {
      */
     public String[] exchange(String messagesAsXml[], String destSiteBaseUrl,
             boolean shouldDisconnect) throws OperationFailedException {
-        lastServerErrorMessage = null;
+        lastServerErrorMessage.set(null);
+        if (this.framingAllowed
+                && this.framingSites.contains(destSiteBaseUrl)) {
+            String replies[] = exchange(messagesAsXml, destSiteBaseUrl,
+                    shouldDisconnect, true);
 
+            if (replies != null) {
+                return replies;
+            }
+
+            // The remote site refused the framed request; fall back.
+            this.framingSites.remove(destSiteBaseUrl);
+            lastServerErrorMessage.set(null);
+        }
+
+        return exchange(messagesAsXml, destSiteBaseUrl, shouldDisconnect,
+                false);
+    }
+
+    /**
+     * Performs a single exchange for {@code exchange()}, whose arguments and
+     * exceptions are the same
+     * 
+     * @param framedRequest true if the request should be sent framed and
+     *        compressed, false if it should be sent as plain SOAP
+     * @return the messages received, or null if {@code framedRequest} was
+     *         true and the remote site refused the request as unintelligible
+     */
+    private String[] exchange(String messagesAsXml[], String destSiteBaseUrl,
+            boolean shouldDisconnect, boolean framedRequest)
+            throws OperationFailedException {
         try {
             // Set up an HTTP connection with the specified destination URL.
             URL destination = new URL(new URL(destSiteBaseUrl),
                     "servlet/ismexchange");
             HttpURLConnection conn
                     = (HttpURLConnection) destination.openConnection();
-            String docAsXml;
+            List<String> messages = new ArrayList<String>();
             
             try {
+                conn.setConnectTimeout(connectTimeout);
+                conn.setReadTimeout(readTimeout);
                 conn.setRequestMethod("POST");
-                conn.setRequestProperty("Content-Type",
-                        "text/xml; charset=UTF-8");
+                if (framedRequest) {
+                    conn.setRequestProperty("Content-Type",
+                            IsmFrameCodec.CONTENT_TYPE);
+                    conn.setRequestProperty("Content-Encoding", "gzip");
+                } else {
+                    conn.setRequestProperty("Content-Type",
+                            "text/xml; charset=UTF-8");
+                }
+                if (this.framingAllowed) {
+                    conn.setRequestProperty("Accept", IsmFrameCodec.ACCEPT);
+                    conn.setRequestProperty("Accept-Encoding",
+                            IsmFrameCodec.ACCEPT_ENCODING);
+                }
                 conn.setChunkedStreamingMode(HTTP_CHUNK_SIZE);
                 conn.setDoInput(true);
                 conn.setDoOutput(true);
                 conn.connect();
 
                 /*
-                 * Send a SOAP request to the server, including the caller's
-                 * ISMs.
+                 * Send a request to the server, including the caller's ISMs.
                  */
-                OutputStreamWriter osw = new OutputStreamWriter(
-                        new BufferedOutputStream(conn.getOutputStream()),
-                        "UTF-8");
-                try {
-                    SoapUtil.writeSoapDocument(osw, messagesAsXml,
-                            "IsmExchange", "recipnet",
-                            "http://www.reciprocalnet.org/master/");
-                    osw.flush();
-                } finally {
-                    osw.close();
+                if (framedRequest) {
+                    OutputStream os = IsmFrameCodec.encodeContent(
+                            new BufferedOutputStream(conn.getOutputStream()),
+                            "gzip");
+                    try {
+                        IsmFrameCodec.writeMessages(os, messagesAsXml);
+                    } finally {
+                        os.close();
+                    }
+                } else {
+                    OutputStreamWriter osw = new OutputStreamWriter(
+                            new BufferedOutputStream(conn.getOutputStream()),
+                            "UTF-8");
+                    try {
+                        SoapUtil.writeSoapDocument(osw, messagesAsXml,
+                                "IsmExchange", "recipnet",
+                                "http://www.reciprocalnet.org/master/");
+                        osw.flush();
+                    } finally {
+                        osw.close();
+                    }
                 }
 
                 // Check for errors; throw an exception if the operation failed
-                if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                int responseCode = conn.getResponseCode();
+                if (responseCode != HttpURLConnection.HTTP_OK) {
 		    InputStream errorStream = conn.getErrorStream();
 		    if (errorStream != null) {
-			lastServerErrorMessage 
-			        = SoapUtil.readEntireInputStream(errorStream);
-		    } else {
-			lastServerErrorMessage = null;
+                        try {
+                            lastServerErrorMessage.set(
+                                    SoapUtil.readEntireInputStream(
+                                            errorStream));
+                        } finally {
+                            errorStream.close();
+                        }
 		    }
-                    throw new OperationFailedException(conn.getResponseCode()
+                    if (framedRequest && isRefusal(responseCode,
+                            lastServerErrorMessage.get())) {
+                        return null;
+                    }
+                    throw new OperationFailedException(responseCode
                             + " " + conn.getResponseMessage());
                 }
 
-                // Read a complete response back from the remote site.
-                InputStream is = conn.getInputStream();
+                InputStream is = IsmFrameCodec.decodeContent(
+                        conn.getInputStream(), conn.getContentEncoding());
+                if (IsmFrameCodec.isFramed(conn.getContentType())) {
+                    // Read a framed response back from the remote site.
+                    try {
+                        messages.addAll(Arrays.asList(
+                                IsmFrameCodec.readMessages(is)));
+                    } finally {
+                        is.close();
+                    }
+                    if (this.framingAllowed) {
+                        this.framingSites.add(destSiteBaseUrl);
+                    }
+                    return messages.toArray(new String[messages.size()]);
+                }
+
+                /*
+                 * Read the response back from the remote site, validating the
+                 * SOAP headers and collecting the String-representations of
+                 * the messages as they arrive.
+                 */
+                Reader reader = new InputStreamReader(is, "UTF-8");
                 try {
-                    docAsXml = SoapUtil.readEntireInputStream(is);
+                    SoapFragmentReader fragmentReader = new SoapFragmentReader(
+                            reader, "IsmExchange", "recipnet",
+                            "http://www.reciprocalnet.org/master/", "message");
+
+                    for (String message = fragmentReader.nextFragment();
+                            message != null;
+                            message = fragmentReader.nextFragment()) {
+                        messages.add(message);
+                    }
                 } finally {
-                    is.close();
+                    reader.close();
                 }
-
             } finally {
                 if (shouldDisconnect) {
                     conn.disconnect();
                 }
             }
-            
-            /*
-             * Parse the XML document into a DOM tree and validate the headers
-             * contained within it, then discard the result and return instead
-             * the String-representations of the messages
-             */
-            SoapUtil.decodeSoapDocument(DomUtil.xmlToDomTree(docAsXml),
-                    "IsmExchange", "recipnet",
-                    "http://www.reciprocalnet.org/master/");
-
-            return SoapUtil.extractFragmentsFromXmlDocument(docAsXml, 
-                    "message");
+
+            return messages.toArray(new String[messages.size()]);
         } catch (IOException ex) {
             throw new OperationFailedException(ex);
         } catch (SAXException ex) {
             throw new OperationFailedException(ex);
         }
     }
+
+    /**
+     * Returns true if the specified HTTP response indicates that the remote
+     * site did not understand a framed request: that is, if it is a 415
+     * response, or a 400 response carrying one of the messages with which
+     * {@code IsmExchangeListener}s that predate framing reject any body that
+     * is not a UTF-8 SOAP document. Other failures, such as a 400 response to
+     * a corrupt framed body, do not indicate that the site cannot accept
+     * frames.
+     *
+     * @param responseCode the HTTP response code
+     * @param errorMessage the body of the error response, possibly null
+     */
+    private static boolean isRefusal(int responseCode, String errorMessage) {
+        if (responseCode == HttpURLConnection.HTTP_UNSUPPORTED_TYPE) {
+            return true;
+        } else if ((responseCode != HttpURLConnection.HTTP_BAD_REQUEST)
+                || (errorMessage == null)) {
+            return false;
+        }
+        for (String marker : UNFRAMED_SITE_REFUSALS) {
+            if (errorMessage.contains(marker)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
 }
@@ -33,6 +33,12 @@
  *              repositoryHoldingsInvalidated(), and changed ismExchangeSummary
  * 02-Jan-2009: ekoperda added labTransferArrived(), labTransferDeparted() and
  *              labTransferAgentFailedToCreate()
+ * 18-Oct-2026: agent added unitCellIndexLoadException()
+ * 18-Oct-2026: agent added lockConnectionUnavailable()
+ * 18-Oct-2026: agent reworded primaryDirectoryCommitException() for
+ *              FileVersionStore
+ * 18-Oct-2026: agent added ismProcessingParallelism()
+ * 18-Oct-2026: agent dropped the lock argument of lockConnectionUnavailable()
  */
 
 package org.recipnet.site.core.util;
@@ -578,6 +584,18 @@ public abstract class LogRecordGenerator {
                 null, ex);
     }
 
+    /**
+     * Generates a LogRecord when an Exception is encountered while Sample
+     * Manager loads its in-memory index of the searchUnitCells table.
+     * 
+     * @param ex the exception thrown
+     * @return a {@code LogRecord} corresponding to the arguments
+     */
+    public static LogRecord unitCellIndexLoadException(Exception ex) {
+        return generateSingleRecord(Level.SEVERE, "Sample Manager could not"
+                + " load its index of reduced unit cells.", null, ex);
+    }
+
 
 
     /* ************************************************************************
@@ -864,6 +882,32 @@ public abstract class LogRecordGenerator {
         }
     }
 
+    /**
+     * Generates a LogRecord that reports how many received ISMs were in
+     * processing at once over a period of time.
+     * 
+     * @param averageParallelism the average number of ISMs in processing,
+     *        over the time during which at least one was
+     * @param peakParallelism the largest number of ISMs in processing at once
+     * @param busyTime the number of milliseconds during which at least one
+     *        ISM was in processing
+     * @param limit the largest number of ISMs permitted to be in processing
+     *        at once
+     * @return a {@code LogRecord} corresponding to the arguments
+     */
+    public static LogRecord ismProcessingParallelism(
+            double averageParallelism, int peakParallelism, long busyTime,
+            int limit) {
+        return generateSingleRecord(Level.INFO,
+                "ISMs were in processing for {2} ms, {0} at a time on"
+                        + " average and {1} at most; the limit is {3}.",
+                new Object[] {
+                        String.format("%.2f", averageParallelism),
+                        Integer.valueOf(peakParallelism),
+                        Long.valueOf(busyTime), Integer.valueOf(limit) },
+                null);
+    }
+
     /**
      * Generates a LogRecord when recipnetd stalls while processing ISMs.
      * 
@@ -1198,6 +1242,20 @@ public abstract class LogRecordGenerator {
                 Integer.valueOf(lock.getId()), lock.getClass().getName() }, ex);
     }
 
+    /**
+     * Generates a LogRecord when LockAgent's connection pool fails to open a
+     * database connection. Locks waiting for a connection remain pending.
+     * 
+     * @param ex the SQLException that occurred.
+     * @return a {@code LogRecord} corresponding to the arguments
+     */
+    public static LogRecord lockConnectionUnavailable(SQLException ex) {
+        return generateSingleRecord(Level.WARNING, "Could not open a database"
+                + " connection for the locking subsystem; locks that need one"
+                + " will remain pending until a connection becomes"
+                + " available.", null, ex);
+    }
+
     /**
      * Generates a LogRecord when LockAgent fails to acquire its scheduler lock
      * within a reasonable period. LockAgent typically throws a
@@ -1301,8 +1359,8 @@ public abstract class LogRecordGenerator {
 
     /**
      * Generates a LogRecord when PrimaryDirectoryAgent encounters an exception
-     * while committing to CVS a file sitting inside a particular sample's
-     * primary repository directory.
+     * while committing to the file version store a file sitting inside a
+     * particular sample's primary repository directory.
      * 
      * @param file the file on the filesystem for which the error was
      *        encountered.
@@ -1312,7 +1370,7 @@ public abstract class LogRecordGenerator {
     public static LogRecord primaryDirectoryCommitException(File file,
             Exception ex) {
         return generateSingleRecord(Level.WARNING, "Unable to commit file {0}"
-                + " to CVS from primary directory.",
+                + " to the file version store from primary directory.",
                 new Object[] { file.getPath() }, ex);
     }
 
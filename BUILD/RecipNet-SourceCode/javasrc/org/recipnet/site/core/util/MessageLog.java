@@ -0,0 +1,979 @@
+/*
+ * Reciprocal Net project
+ *
+ * MessageLog.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.core.util;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import org.recipnet.site.core.ResourceException;
+
+/**
+ * <p>
+ * An append-only store for the XML representations of inter-site messages,
+ * kept as a handful of large files rather than one file per message. Each
+ * originating site's messages are kept in a separate log within the store's
+ * directory, and each log is a series of "segment" files named
+ * {@code SSSSS-NNNNNN.ismlog}, where {@code SSSSS} is the originating site's
+ * id and {@code NNNNNN} numbers the segments of that site's log in the order
+ * they were written. Messages are appended to the last segment of a log until
+ * it reaches a configured size, whereupon a new segment is started.
+ * </p><p>
+ * Every segment begins with a short header and continues with a sequence of
+ * records, each of which carries a message's sequence number, the id of the
+ * site to which it was addressed, and its XML (encoded as UTF-8), and ends
+ * with a CRC-32 checksum of the rest of the record. Storing a message whose
+ * sequence number is already present in the log supersedes the earlier copy;
+ * a message is removed by appending a "deletion" record. Nothing is ever
+ * rewritten in place.
+ * </p><p>
+ * When a segment is full it is "sealed" by appending a sparse index to it:
+ * the records are divided into blocks of roughly {@code INDEX_INTERVAL} bytes,
+ * and the index lists the offset of each block together with the least and
+ * greatest sequence numbers found within it. The same index is kept in memory
+ * for every segment while the log is open, so finding a message costs one
+ * read of a single block, and reading a range of messages reads the blocks
+ * that hold them in file order. The last segment of each log has no index on
+ * disk; its records are scanned when the log is opened, and a record torn by
+ * a crash part way through an append is detected by its checksum and
+ * truncated away.
+ * </p><p>
+ * This class is thread-safe. Appends are serialized with one another; reads
+ * proceed concurrently with each other and with appends, and see every
+ * message whose append completed before the read began. A log may be opened
+ * read-only, by a utility program for instance, in which case it is not
+ * repaired and nothing may be appended to it; such a log does not observe
+ * messages appended by another process after it was opened.
+ * </p>
+ */
+public class MessageLog {
+
+    /** The suffix of the names of segment files */
+    public static final String SEGMENT_SUFFIX = ".ismlog";
+
+    /** The size at which a segment is sealed unless otherwise specified */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The approximate number of bytes of records covered by each entry of a
+     * sparse index
+     */
+    private static final int INDEX_INTERVAL = 64 * 1024;
+
+    /** The value that begins every segment file: "RNISMLOG" in ASCII */
+    private static final long SEGMENT_MAGIC = 0x524e49534d4c4f47L;
+
+    /** The on-disk format version that follows {@code SEGMENT_MAGIC} */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The size of a segment file's header */
+    private static final int HEADER_SIZE = 12;
+
+    /** The value that ends every sealed segment file: "RNISMIDX" in ASCII */
+    private static final long TRAILER_MAGIC = 0x524e49534d494458L;
+
+    /**
+     * The size of the trailer of a sealed segment: the offset of the sparse
+     * index, a checksum of the index, and {@code TRAILER_MAGIC}
+     */
+    private static final int TRAILER_SIZE = 20;
+
+    /** The size of one entry in a sealed segment's sparse index */
+    private static final int INDEX_ENTRY_SIZE = 24;
+
+    /**
+     * The size of the fixed part of a record that precedes the message: the
+     * message's length, sequence number, and destination, and the record kind
+     */
+    private static final int RECORD_HEADER_SIZE = 17;
+
+    /** The total size of a record, less the message itself */
+    private static final int RECORD_OVERHEAD = RECORD_HEADER_SIZE + 4;
+
+    /** The record kind of a stored message */
+    private static final byte KIND_MESSAGE = 1;
+
+    /** The record kind that marks a previously stored message as deleted */
+    private static final byte KIND_DELETION = 2;
+
+    /** The character set in which messages are stored */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Accepts the names of segment files */
+    private static final FilenameFilter SEGMENT_FILTER = new FilenameFilter() {
+        public boolean accept(File dir, String name) {
+            return name.matches("\\d{5}-\\d{6}\\" + SEGMENT_SUFFIX);
+        }
+    };
+
+    /** The directory that holds the segment files; set at construction. */
+    private final File directory;
+
+    /** The size at which segments are sealed; set at construction. */
+    private final int segmentSize;
+
+    /** Whether the log was opened read-only; set at construction. */
+    private final boolean readOnly;
+
+    /** The log of each originating site, by site id */
+    private final Map<Integer, SiteLog> logs;
+
+    /**
+     * Opens the message log in the specified directory, sealing segments at
+     * {@code DEFAULT_SEGMENT_SIZE}
+     *
+     * @param directory the directory that holds, or is to hold, the log's
+     *        segment files
+     * @throws ResourceException if an existing segment file could not be read
+     *         or was found to be corrupt
+     */
+    public MessageLog(File directory) throws ResourceException {
+        this(directory, DEFAULT_SEGMENT_SIZE, false);
+    }
+
+    /**
+     * Opens the message log in the specified directory. Unless the log is
+     * opened read-only, any records torn by a crash are truncated from the
+     * ends of the logs, and any segment that was left unsealed is sealed.
+     *
+     * @param directory the directory that holds, or is to hold, the log's
+     *        segment files
+     * @param segmentSize the size, in bytes, beyond which a segment will not
+     *        be extended. A message larger than this is stored in a segment
+     *        by itself.
+     * @param readOnly {@code true} if the log is only to be read
+     * @throws ResourceException if an existing segment file could not be read
+     *         or was found to be corrupt
+     */
+    public MessageLog(File directory, int segmentSize, boolean readOnly)
+            throws ResourceException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.readOnly = readOnly;
+        this.logs = new TreeMap<Integer, SiteLog>();
+
+        File[] files = directory.listFiles(SEGMENT_FILTER);
+
+        if (files == null) {
+            throw new ResourceException(directory, new IOException(
+                    "Could not list directory"));
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            Segment segment = new Segment(file,
+                    Integer.parseInt(name.substring(6, 12)));
+            SiteLog log = getLog(Integer.parseInt(name.substring(0, 5)));
+
+            log.segments.add(segment);
+        }
+        for (SiteLog log : this.logs.values()) {
+            for (int i = 0; i < log.segments.size(); i++) {
+                openSegment(log.segments.get(i),
+                        i == log.segments.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Stores a message at the end of its originating site's log, superseding
+     * any message with the same sequence number stored previously
+     *
+     * @param sourceSiteId the id of the site that originated the message
+     * @param sourceSeqNum the message's sequence number
+     * @param destSiteId the id of the site to which the message is addressed,
+     *        which may be {@code InterSiteMessage.ALL_SITES}
+     * @param ismAsXml the message's XML representation
+     * @throws IllegalStateException if the log was opened read-only
+     * @throws ResourceException if the message could not be written
+     */
+    public void append(int sourceSiteId, long sourceSeqNum, int destSiteId,
+            String ismAsXml) throws ResourceException {
+        appendRecord(sourceSiteId, sourceSeqNum, destSiteId, KIND_MESSAGE,
+                ismAsXml.getBytes(UTF8));
+    }
+
+    /**
+     * Removes a message from its originating site's log. This method has no
+     * effect if no such message is stored.
+     *
+     * @param sourceSiteId the id of the site that originated the message
+     * @param sourceSeqNum the message's sequence number
+     * @throws IllegalStateException if the log was opened read-only
+     * @throws ResourceException if the deletion could not be recorded
+     */
+    public synchronized void delete(int sourceSiteId, long sourceSeqNum)
+            throws ResourceException {
+        if (this.logs.containsKey(sourceSiteId)) {
+            appendRecord(sourceSiteId, sourceSeqNum, 0, KIND_DELETION,
+                    new byte[0]);
+        }
+    }
+
+    /**
+     * Reads one stored message
+     *
+     * @param sourceSiteId the id of the site that originated the message
+     * @param sourceSeqNum the message's sequence number
+     * @return the message's XML representation, or {@code null} if no such
+     *         message is stored
+     * @throws ResourceException if the log could not be read or was found to
+     *         be corrupt
+     */
+    public String read(int sourceSiteId, long sourceSeqNum)
+            throws ResourceException {
+        return read(sourceSiteId, new long[] { sourceSeqNum })[0];
+    }
+
+    /**
+     * Reads any number of messages originated by one site. The blocks of the
+     * log that hold the messages are each read once, in the order in which
+     * they appear on disk, regardless of the order of {@code sourceSeqNums}.
+     *
+     * @param sourceSiteId the id of the site that originated the messages
+     * @param sourceSeqNums the sequence numbers of the desired messages
+     * @return an array parallel to {@code sourceSeqNums} that contains the
+     *         XML representation of each message, or {@code null} for each
+     *         message that is not stored
+     * @throws ResourceException if the log could not be read or was found to
+     *         be corrupt
+     */
+    public String[] read(int sourceSiteId, long sourceSeqNums[])
+            throws ResourceException {
+        final long wanted[] = sourceSeqNums.clone();
+        final Map<Long, String> found = new HashMap<Long, String>();
+
+        Arrays.sort(wanted);
+        scan(sourceSiteId, wanted, new RecordHandler() {
+            public void handleRecord(Record record) {
+                if (Arrays.binarySearch(wanted, record.seqNum) >= 0) {
+                    found.put(record.seqNum, record.getMessage());
+                }
+            }
+        });
+
+        String messages[] = new String[sourceSeqNums.length];
+
+        for (int i = 0; i < sourceSeqNums.length; i++) {
+            messages[i] = found.get(sourceSeqNums[i]);
+        }
+
+        return messages;
+    }
+
+    /**
+     * Reads every message stored in one site's log by scanning the log
+     * sequentially
+     *
+     * @param sourceSiteId the id of the site whose log is to be read
+     * @param includeMessages {@code true} if the messages' XML is wanted, or
+     *        {@code false} if only their sequence numbers and destinations
+     *        are wanted
+     * @return a list of zero or more {@code Entry} objects, one for each
+     *         message stored, in order of ascending sequence number
+     * @throws ResourceException if the log could not be read or was found to
+     *         be corrupt
+     */
+    public List<Entry> readEntries(int sourceSiteId,
+            final boolean includeMessages) throws ResourceException {
+        final SortedMap<Long, Entry> entries = new TreeMap<Long, Entry>();
+
+        scan(sourceSiteId, null, new RecordHandler() {
+            public void handleRecord(Record record) {
+                if (record.kind == KIND_MESSAGE) {
+                    entries.put(record.seqNum, new Entry(record.seqNum,
+                            record.destSiteId,
+                            includeMessages ? record.getMessage() : null));
+                } else {
+                    entries.remove(record.seqNum);
+                }
+            }
+        });
+
+        return new ArrayList<Entry>(entries.values());
+    }
+
+    /**
+     * @return the ids of the sites for which this object holds a log, in
+     *         ascending order
+     */
+    public synchronized int[] getSiteIds() {
+        int siteIds[] = new int[this.logs.size()];
+        int i = 0;
+
+        for (int siteId : this.logs.keySet()) {
+            siteIds[i++] = siteId;
+        }
+
+        return siteIds;
+    }
+
+    /**
+     * Forces every message appended so far to be written to the storage
+     * device
+     *
+     * @throws ResourceException if an I/O error occurred
+     */
+    public synchronized void sync() throws ResourceException {
+        for (SiteLog log : this.logs.values()) {
+            if (log.activeFile != null) {
+                try {
+                    log.activeFile.getChannel().force(true);
+                } catch (IOException ex) {
+                    throw new ResourceException(
+                            log.segments.get(log.segments.size() - 1).file,
+                            ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes every message in this object's directory, along with the
+     * segment files that hold them
+     *
+     * @throws IllegalStateException if the log was opened read-only
+     */
+    public synchronized void deleteAll() {
+        if (this.readOnly) {
+            throw new IllegalStateException();
+        }
+        close();
+        for (File file : this.directory.listFiles(SEGMENT_FILTER)) {
+            file.delete();
+        }
+        this.logs.clear();
+    }
+
+    /**
+     * Closes the files this object holds open for appending. They are
+     * reopened if another message is appended.
+     */
+    public synchronized void close() {
+        for (SiteLog log : this.logs.values()) {
+            if (log.activeFile != null) {
+                try {
+                    log.activeFile.close();
+                } catch (IOException ex) {
+                    // Nothing was pending; ignore it.
+                }
+                log.activeFile = null;
+            }
+        }
+    }
+
+    /**
+     * Appends one record to a site's log, starting a new segment first if the
+     * record would not fit within the current one
+     *
+     * @throws IllegalStateException if the log was opened read-only
+     */
+    private synchronized void appendRecord(int sourceSiteId,
+            long sourceSeqNum, int destSiteId, byte kind, byte payload[])
+            throws ResourceException {
+        if (this.readOnly) {
+            throw new IllegalStateException();
+        }
+
+        SiteLog log = getLog(sourceSiteId);
+        Segment segment = log.segments.isEmpty() ? null
+                : log.segments.get(log.segments.size() - 1);
+        int recordSize = RECORD_OVERHEAD + payload.length;
+
+        if ((segment != null) && !segment.sealed
+                && (segment.recordsEnd > HEADER_SIZE)
+                && (segment.recordsEnd + recordSize > this.segmentSize)) {
+            sealSegment(log, segment);
+        }
+        if ((segment == null) || segment.sealed) {
+            segment = startSegment(log,
+                    (segment == null) ? 0 : segment.ordinal + 1);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        CRC32 crc = new CRC32();
+
+        record.putInt(payload.length);
+        record.putLong(sourceSeqNum);
+        record.putInt(destSiteId);
+        record.put(kind);
+        record.put(payload);
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+        try {
+            writeFully(getActiveChannel(log, segment), record,
+                    segment.recordsEnd);
+        } catch (IOException ex) {
+            throw new ResourceException(segment.file, ex);
+        }
+        segment.addToIndex(recordSize, sourceSeqNum);
+    }
+
+    /**
+     * Starts a new, empty segment at the end of a site's log
+     */
+    private Segment startSegment(SiteLog log, int ordinal)
+            throws ResourceException {
+        File file = new File(this.directory, String.format("%05d-%06d%s",
+                log.siteId, ordinal, SEGMENT_SUFFIX));
+        Segment segment = new Segment(file, ordinal);
+
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+            try {
+                raf.setLength(0);
+                writeHeader(raf.getChannel());
+            } catch (IOException ex) {
+                raf.close();
+                throw ex;
+            }
+            log.activeFile = raf;
+        } catch (IOException ex) {
+            throw new ResourceException(file, ex);
+        }
+        log.segments.add(segment);
+
+        return segment;
+    }
+
+    /**
+     * Seals the last segment of a site's log by appending its sparse index,
+     * forces the segment to the storage device, and closes it
+     */
+    private void sealSegment(SiteLog log, Segment segment)
+            throws ResourceException {
+        try {
+            FileChannel channel = getActiveChannel(log, segment);
+
+            writeIndex(channel, segment);
+            channel.force(true);
+            log.activeFile.close();
+        } catch (IOException ex) {
+            throw new ResourceException(segment.file, ex);
+        } finally {
+            log.activeFile = null;
+        }
+    }
+
+    /**
+     * @return a channel open for writing upon the specified segment, which
+     *         must be the last of its log, opening it if necessary
+     */
+    private FileChannel getActiveChannel(SiteLog log, Segment segment)
+            throws IOException {
+        if (log.activeFile == null) {
+            log.activeFile = new RandomAccessFile(segment.file, "rw");
+        }
+
+        return log.activeFile.getChannel();
+    }
+
+    /**
+     * @return the log of the specified site, creating an empty one if
+     *         necessary
+     */
+    private SiteLog getLog(int sourceSiteId) {
+        SiteLog log = this.logs.get(sourceSiteId);
+
+        if (log == null) {
+            log = new SiteLog(sourceSiteId);
+            this.logs.put(sourceSiteId, log);
+        }
+
+        return log;
+    }
+
+    /**
+     * Reads the blocks of a site's log, oldest first, and passes each record
+     * within them to a handler
+     *
+     * @param sourceSiteId the id of the site whose log is to be read
+     * @param seqNums the sequence numbers of the records of interest, in
+     *        ascending order; only blocks that might contain one of them are
+     *        read. If {@code null}, every block is read.
+     * @param handler receives the records
+     */
+    private void scan(int sourceSiteId, long seqNums[],
+            RecordHandler handler) throws ResourceException {
+        Map<File, List<long[]>> extents
+                = new LinkedHashMap<File, List<long[]>>();
+
+        // Take a snapshot of the relevant blocks' extents.
+        synchronized (this) {
+            SiteLog log = this.logs.get(sourceSiteId);
+
+            if (log == null) {
+                return;
+            }
+            for (Segment segment : log.segments) {
+                List<long[]> blocks = new ArrayList<long[]>();
+
+                for (Block block : segment.blocks) {
+                    if (seqNums != null) {
+                        int i = Arrays.binarySearch(seqNums,
+                                block.minSeqNum);
+
+                        if (i < 0) {
+                            i = -i - 1;
+                        }
+                        if ((i == seqNums.length)
+                                || (seqNums[i] > block.maxSeqNum)) {
+                            continue;
+                        }
+                    }
+                    blocks.add(new long[] { block.start, block.end });
+                }
+                if (!blocks.isEmpty()) {
+                    extents.put(segment.file, blocks);
+                }
+            }
+        }
+
+        Record record = new Record();
+
+        for (Map.Entry<File, List<long[]>> extent : extents.entrySet()) {
+            File file = extent.getKey();
+
+            try {
+                RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+                try {
+                    for (long[] block : extent.getValue()) {
+                        ByteBuffer buffer = ByteBuffer.allocate(
+                                (int) (block[1] - block[0]));
+
+                        readFully(raf.getChannel(), buffer, block[0]);
+                        for (int offset = 0; offset < buffer.limit(); ) {
+                            offset = record.parse(buffer.array(), offset,
+                                    buffer.limit());
+                            if (offset < 0) {
+                                throw new ResourceException(
+                                        "Corrupt record in message log", file);
+                            }
+                            handler.handleRecord(record);
+                        }
+                    }
+                } finally {
+                    raf.close();
+                }
+            } catch (IOException ex) {
+                throw new ResourceException(file, ex);
+            }
+        }
+    }
+
+    /**
+     * Loads the sparse index of an existing segment, from the segment itself
+     * if it was sealed or by scanning its records otherwise. Unless the log is
+     * read-only, a torn record at the end of an unsealed segment is truncated,
+     * and an unsealed segment that is not the last of its log is sealed.
+     */
+    private void openSegment(Segment segment, boolean last)
+            throws ResourceException {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(segment.file,
+                    this.readOnly ? "r" : "rw");
+
+            try {
+                FileChannel channel = raf.getChannel();
+                long length = channel.size();
+
+                if ((length < HEADER_SIZE) && this.readOnly) {
+                    // The segment is being created; it holds no records yet.
+                    return;
+                } else if (length < HEADER_SIZE) {
+                    // The segment was being created when the site stopped.
+                    channel.truncate(0);
+                    writeHeader(channel);
+                    length = HEADER_SIZE;
+                } else {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+                    readFully(channel, header, 0);
+                    if ((header.getLong() != SEGMENT_MAGIC)
+                            || (header.getInt() != FORMAT_VERSION)) {
+                        throw new ResourceException(
+                                "Not a message log segment", segment.file);
+                    }
+                }
+                if (!readIndex(channel, segment, length)) {
+                    scanSegment(channel, segment, length);
+                    if (this.readOnly) {
+                        return;
+                    } else if (segment.recordsEnd < length) {
+                        channel.truncate(segment.recordsEnd);
+                    }
+                    if (!last) {
+                        writeIndex(channel, segment);
+                        channel.force(true);
+                    }
+                }
+            } finally {
+                raf.close();
+            }
+        } catch (IOException ex) {
+            throw new ResourceException(segment.file, ex);
+        }
+    }
+
+    /**
+     * Reads the sparse index of a sealed segment
+     *
+     * @return {@code true} if the segment was sealed and its index read,
+     *         or {@code false} if the segment does not end with a valid index
+     */
+    private static boolean readIndex(FileChannel channel, Segment segment,
+            long length) throws IOException {
+        if (length < HEADER_SIZE + 4 + TRAILER_SIZE) {
+            return false;
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+
+        readFully(channel, trailer, length - TRAILER_SIZE);
+
+        long indexStart = trailer.getLong();
+        int indexCrc = trailer.getInt();
+
+        if ((trailer.getLong() != TRAILER_MAGIC) || (indexStart < HEADER_SIZE)
+                || (indexStart > length - TRAILER_SIZE - 4)) {
+            return false;
+        }
+
+        ByteBuffer index = ByteBuffer.allocate(
+                (int) (length - TRAILER_SIZE - indexStart));
+        CRC32 crc = new CRC32();
+
+        readFully(channel, index, indexStart);
+        crc.update(index.array());
+
+        int count = index.getInt();
+
+        if (((int) crc.getValue() != indexCrc) || (count < 0)
+                || (index.remaining() != (long) count * INDEX_ENTRY_SIZE)) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            Block block = new Block(index.getLong(), index.getLong(),
+                    index.getLong());
+
+            if (i > 0) {
+                segment.blocks.get(i - 1).end = block.start;
+            }
+            segment.blocks.add(block);
+        }
+        if (count > 0) {
+            segment.blocks.get(count - 1).end = indexStart;
+        }
+        segment.recordsEnd = indexStart;
+        segment.sealed = true;
+
+        return true;
+    }
+
+    /**
+     * Builds the sparse index of an unsealed segment by reading its records
+     * sequentially, stopping at the first record that is incomplete or fails
+     * its checksum
+     */
+    private static void scanSegment(FileChannel channel, Segment segment,
+            long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (length - HEADER_SIZE));
+        Record record = new Record();
+
+        readFully(channel, buffer, HEADER_SIZE);
+        segment.recordsEnd = HEADER_SIZE;
+        for (int offset = 0; offset < buffer.limit(); ) {
+            int next = record.parse(buffer.array(), offset, buffer.limit());
+
+            if (next < 0) {
+                break;
+            }
+            segment.addToIndex(next - offset, record.seqNum);
+            offset = next;
+        }
+    }
+
+    /** Writes a segment header at the start of an empty segment file */
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        header.putLong(SEGMENT_MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.flip();
+        writeFully(channel, header, 0);
+    }
+
+    /**
+     * Writes a segment's sparse index and trailer immediately after its last
+     * record, sealing it
+     */
+    private static void writeIndex(FileChannel channel, Segment segment)
+            throws IOException {
+        ByteBuffer index = ByteBuffer.allocate(4
+                + segment.blocks.size() * INDEX_ENTRY_SIZE + TRAILER_SIZE);
+        CRC32 crc = new CRC32();
+
+        index.putInt(segment.blocks.size());
+        for (Block block : segment.blocks) {
+            index.putLong(block.start);
+            index.putLong(block.minSeqNum);
+            index.putLong(block.maxSeqNum);
+        }
+        crc.update(index.array(), 0, index.position());
+        index.putLong(segment.recordsEnd);
+        index.putInt((int) crc.getValue());
+        index.putLong(TRAILER_MAGIC);
+        index.flip();
+        writeFully(channel, index, segment.recordsEnd);
+        channel.truncate(segment.recordsEnd + index.limit());
+        segment.sealed = true;
+    }
+
+    /** Fills {@code buffer} from {@code channel} from {@code position} on */
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+
+            if (n < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += n;
+        }
+        buffer.flip();
+    }
+
+    /** Writes all of {@code buffer} to {@code channel} at {@code position} */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * One message stored in a log, as returned by {@code readEntries()}
+     */
+    public static class Entry {
+
+        /** The message's sequence number */
+        public final long seqNum;
+
+        /**
+         * The id of the site to which the message is addressed, which may be
+         * {@code InterSiteMessage.ALL_SITES}
+         */
+        public final int destSiteId;
+
+        /** The message's XML representation, if it was requested */
+        public final String message;
+
+        /** Initializes a new {@code Entry} with the specified values */
+        Entry(long seqNum, int destSiteId, String message) {
+            this.seqNum = seqNum;
+            this.destSiteId = destSiteId;
+            this.message = message;
+        }
+    }
+
+    /**
+     * The log of the messages originated by a single site
+     */
+    private static class SiteLog {
+
+        /** The id of the originating site */
+        final int siteId;
+
+        /** The log's segments, oldest first */
+        final List<Segment> segments;
+
+        /** The last segment's file, when open for appending */
+        RandomAccessFile activeFile;
+
+        /** Initializes a new, empty {@code SiteLog} */
+        SiteLog(int siteId) {
+            this.siteId = siteId;
+            this.segments = new ArrayList<Segment>();
+        }
+    }
+
+    /**
+     * One segment file of a log, together with its sparse index
+     */
+    private static class Segment {
+
+        /** The segment file */
+        final File file;
+
+        /** The position of this segment within its log */
+        final int ordinal;
+
+        /** The blocks into which the segment's records are divided */
+        final List<Block> blocks;
+
+        /** The offset just past the segment's last record */
+        long recordsEnd;
+
+        /** Whether the segment has been sealed */
+        boolean sealed;
+
+        /** Initializes a new {@code Segment} with no records */
+        Segment(File file, int ordinal) {
+            this.file = file;
+            this.ordinal = ordinal;
+            this.blocks = new ArrayList<Block>();
+            this.recordsEnd = HEADER_SIZE;
+        }
+
+        /**
+         * Accounts for a record just written at {@code recordsEnd}, adding a
+         * block to the sparse index if the current one is full
+         */
+        void addToIndex(int recordSize, long seqNum) {
+            Block block = blocks.isEmpty() ? null
+                    : blocks.get(blocks.size() - 1);
+
+            if ((block == null) || (recordsEnd - block.start
+                    >= INDEX_INTERVAL)) {
+                block = new Block(recordsEnd, seqNum, seqNum);
+                blocks.add(block);
+            } else {
+                block.minSeqNum = Math.min(block.minSeqNum, seqNum);
+                block.maxSeqNum = Math.max(block.maxSeqNum, seqNum);
+            }
+            recordsEnd += recordSize;
+            block.end = recordsEnd;
+        }
+    }
+
+    /**
+     * A run of consecutive records within a segment, as described by one
+     * entry of the sparse index
+     */
+    private static class Block {
+
+        /** The offset of the first record */
+        final long start;
+
+        /** The offset just past the last record */
+        long end;
+
+        /** The least sequence number among the records */
+        long minSeqNum;
+
+        /** The greatest sequence number among the records */
+        long maxSeqNum;
+
+        /** Initializes a new {@code Block} with the specified values */
+        Block(long start, long minSeqNum, long maxSeqNum) {
+            this.start = start;
+            this.end = start;
+            this.minSeqNum = minSeqNum;
+            this.maxSeqNum = maxSeqNum;
+        }
+    }
+
+    /**
+     * A record parsed from a buffer. The same object is reused for each
+     * record in turn.
+     */
+    private static class Record {
+
+        /** The buffer from which the record was parsed */
+        byte[] data;
+
+        /** The sequence number of the record's message */
+        long seqNum;
+
+        /** The destination of the record's message */
+        int destSiteId;
+
+        /** The record's kind */
+        byte kind;
+
+        /** The offset of the message within {@code data} */
+        int messageOffset;
+
+        /** The length of the message */
+        int messageLength;
+
+        /**
+         * Parses the record at {@code offset} in {@code data}
+         *
+         * @return the offset just past the record, or -1 if the record
+         *         extends beyond {@code limit}, is of an unknown kind, or
+         *         fails its checksum
+         */
+        int parse(byte data[], int offset, int limit) {
+            if (limit - offset < RECORD_OVERHEAD) {
+                return -1;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, limit - offset);
+            int length = buffer.getInt();
+
+            if ((length < 0)
+                    || (length > limit - offset - RECORD_OVERHEAD)) {
+                return -1;
+            }
+
+            CRC32 crc = new CRC32();
+            int end = offset + RECORD_HEADER_SIZE + length;
+
+            crc.update(data, offset, end - offset);
+            buffer.position(end);
+            if (buffer.getInt() != (int) crc.getValue()) {
+                return -1;
+            }
+            buffer.position(offset + 4);
+            this.data = data;
+            this.seqNum = buffer.getLong();
+            this.destSiteId = buffer.getInt();
+            this.kind = buffer.get();
+            this.messageOffset = offset + RECORD_HEADER_SIZE;
+            this.messageLength = length;
+
+            return ((this.kind == KIND_MESSAGE)
+                    || (this.kind == KIND_DELETION)) ? end + 4 : -1;
+        }
+
+        /**
+         * @return the record's message, or {@code null} if the record marks
+         *         a deletion
+         */
+        String getMessage() {
+            return (this.kind == KIND_MESSAGE) ? new String(this.data,
+                    this.messageOffset, this.messageLength, UTF8) : null;
+        }
+    }
+
+    /**
+     * A recipient of the records read by {@code scan()}
+     */
+    private interface RecordHandler {
+
+        /** Receives one record, which is valid only for this call */
+        void handleRecord(Record record);
+    }
+}
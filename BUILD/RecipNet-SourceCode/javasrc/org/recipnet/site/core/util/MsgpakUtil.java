@@ -6,6 +6,7 @@
  * 07-Dec-2005: ekoperda wrote first draft
  * 12-May-2006: jobollin reformatted the source
  * 01-Jun-2006: jobollin accommodated exception-related changes to SoapUtil
+ * 18-Oct-2026: agent added openMessages() and the nested MessageReader class
  */
 
 package org.recipnet.site.core.util;
@@ -13,11 +14,15 @@ package org.recipnet.site.core.util;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -70,6 +75,10 @@ import org.xml.sax.SAXException;
  * {@code SiteGrantISM} object. Special support for this particular class of
  * message is appropriate because a site being bootstrapped requires access to
  * its site grant before it can process any other ISMs.
+ * </p><p>
+ * The methods that return arrays hold all of a file's messages in memory at
+ * once. A caller that may be faced with a very large msgpak file should
+ * instead read its messages one at a time through {@link #openMessages(File)}.
  * </p>
  */
 public abstract class MsgpakUtil {
@@ -144,6 +153,40 @@ public abstract class MsgpakUtil {
         return isms;
     }
 
+    /**
+     * Opens a specified msgpak file located on the filesystem for reading the
+     * messages in its {@code InterSiteMessage} entry one at a time, as the
+     * entry is decompressed. The messages are the same strings, in the same
+     * order, that {@link #readAllMessages(File)} would return, but at most one
+     * of them is held in memory at a time.
+     * 
+     * @param file identifies the msgpak file on the filesystem.
+     * @return a {@code MessageReader} positioned before the first message. The
+     *         caller is responsible for closing it.
+     * @throws InvalidDataException with a reason code of
+     *         {@code MISSING_MSGPAK_ZIPENTRY} if the msgpak file does not
+     *         contain an {@code InterSiteMessage} entry.
+     * @throws ResourceException with a nested {@code IOException} and an
+     *         {@code identifier} of type {@code File} on low-level I/O error.
+     */
+    public static MessageReader openMessages(File file)
+            throws InvalidDataException, ResourceException {
+        try {
+            ZipFile zipFile = new ZipFile(file);
+            ZipEntry ze = zipFile.getEntry("InterSiteMessage");
+
+            if (ze == null) {
+                zipFile.close();
+                throw new InvalidDataException(file,
+                        InvalidDataException.MISSING_MSGPAK_ZIPENTRY);
+            }
+
+            return new MessageReader(file, zipFile, ze);
+        } catch (IOException ex) {
+            throw new ResourceException(file, ex);
+        }
+    }
+
     /**
      * <p>
      * Opens a specified msgpak file located on the filesystem, reads the entry
@@ -340,4 +383,194 @@ public abstract class MsgpakUtil {
             throw new ResourceException(file, ex);
         }
     }
+
+    /**
+     * Reads the messages of a msgpak file's {@code InterSiteMessage} entry one
+     * at a time; obtained from {@link MsgpakUtil#openMessages(File)}. The
+     * entry is scanned for {@code message} elements as it is decompressed, in
+     * the manner of {@code SoapUtil.extractFragmentsFromXmlDocument()}, and
+     * each is returned exactly as it appears in the file. Instances are not
+     * thread-safe.
+     */
+    public static class MessageReader {
+
+        /** Matches the start tag of a message */
+        private static final Pattern MESSAGE_START
+                = Pattern.compile("<\\s*?message[>\\s]");
+
+        /** Matches the end tag of a message */
+        private static final Pattern MESSAGE_END
+                = Pattern.compile("<\\s*?/message\\s*?>");
+
+        /**
+         * The number of characters kept from the end of a chunk that contains
+         * no start tag, in case a start tag straddles two chunks
+         */
+        private static final int TAG_OVERLAP = 32;
+
+        /** The msgpak file, for use in exceptions */
+        private final File file;
+
+        /** The open msgpak file */
+        private final ZipFile zipFile;
+
+        /** The uncompressed size of the entry, or -1 if not known */
+        private final long entrySize;
+
+        /** Counts the uncompressed bytes read from the entry */
+        private final CountingInputStream counter;
+
+        /** Decodes the entry's characters */
+        private final Reader reader;
+
+        /** Characters read from the entry but not yet returned or skipped */
+        private final StringBuilder pending = new StringBuilder();
+
+        /** A buffer for reading from {@code reader} */
+        private final char[] chunk = new char[65536];
+
+        /**
+         * The position within {@code pending} at which to resume searching
+         * for the end tag of the message that begins at its start, or -1 if
+         * no start tag has been found there yet
+         */
+        private int endSearchIndex = -1;
+
+        /** Set once the end of the entry has been reached */
+        private boolean exhausted = false;
+
+        /** The number of messages returned so far */
+        private long messageCount = 0;
+
+        MessageReader(File file, ZipFile zipFile, ZipEntry ze)
+                throws IOException {
+            this.file = file;
+            this.zipFile = zipFile;
+            this.entrySize = ze.getSize();
+            this.counter = new CountingInputStream(zipFile.getInputStream(ze));
+            this.reader = new InputStreamReader(this.counter, "UTF-8");
+        }
+
+        /**
+         * Returns the XML representation of the next message in the file, or
+         * null if there are no more messages. A caller might then decode the
+         * XML by invoking {@link InterSiteMessage#fromXml(String)} or one of
+         * its relatives.
+         * 
+         * @throws ResourceException with a nested {@code IOException} and an
+         *         {@code identifier} of type {@code File} on low-level I/O
+         *         error.
+         */
+        public String nextMessage() throws ResourceException {
+            for (;;) {
+                if (this.endSearchIndex < 0) {
+                    // Look for the start of the next message.
+                    Matcher start = MESSAGE_START.matcher(this.pending);
+
+                    if (start.find()) {
+                        this.pending.delete(0, start.start());
+                        this.endSearchIndex = start.end() - start.start();
+                    } else if (this.pending.length() > TAG_OVERLAP) {
+                        this.pending.delete(0,
+                                this.pending.length() - TAG_OVERLAP);
+                    }
+                }
+                if (this.endSearchIndex >= 0) {
+                    // Look for the end of the message that has started.
+                    Matcher end = MESSAGE_END.matcher(this.pending);
+
+                    if (end.find(this.endSearchIndex)) {
+                        String message = this.pending.substring(0, end.end());
+
+                        this.pending.delete(0, end.end());
+                        this.endSearchIndex = -1;
+                        this.messageCount++;
+
+                        return message;
+                    }
+                    this.endSearchIndex = Math.max(this.endSearchIndex,
+                            this.pending.length() - TAG_OVERLAP);
+                }
+                if (this.exhausted) {
+                    return null;
+                }
+                try {
+                    int charsRead = this.reader.read(this.chunk, 0,
+                            this.chunk.length);
+
+                    if (charsRead < 0) {
+                        this.exhausted = true;
+                    } else {
+                        this.pending.append(this.chunk, 0, charsRead);
+                    }
+                } catch (IOException ex) {
+                    throw new ResourceException(this.file, ex);
+                }
+            }
+        }
+
+        /** Returns the number of messages returned so far. */
+        public long getMessageCount() {
+            return this.messageCount;
+        }
+
+        /**
+         * Returns the fraction of the entry that has been read so far, between
+         * 0 and 1, or -1 if the size of the entry is not known.
+         */
+        public double getFractionRead() {
+            if (this.entrySize <= 0) {
+                return -1;
+            }
+
+            return Math.min(1.0, (double) this.counter.count / this.entrySize);
+        }
+
+        /**
+         * Closes the msgpak file.
+         * 
+         * @throws ResourceException with a nested {@code IOException} and an
+         *         {@code identifier} of type {@code File} on low-level I/O
+         *         error.
+         */
+        public void close() throws ResourceException {
+            try {
+                this.zipFile.close();
+            } catch (IOException ex) {
+                throw new ResourceException(this.file, ex);
+            }
+        }
+    }
+
+    /** Counts the bytes read through it */
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if (b >= 0) {
+                count++;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte buffer[], int offset, int length)
+                throws IOException {
+            int n = super.read(buffer, offset, length);
+
+            if (n > 0) {
+                count += n;
+            }
+
+            return n;
+        }
+    }
 }
@@ -0,0 +1,256 @@
+/*
+ * Reciprocal Net project
+ *
+ * MultiRowInserter.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.core.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Accumulates rows destined for a single database table and writes them with
+ * multi-row {@code INSERT} statements, so that many rows cost only a few
+ * round-trips to the database engine. Rows are supplied through the same
+ * {@code dbStore(ResultSet)} methods that the container classes in
+ * {@code org.recipnet.site.shared.db} use to write single rows:
+ * {@link #newRow()} returns a stand-in {@code ResultSet} that records the
+ * values passed to its {@code updateXxx(String, ...)} methods, and nothing
+ * else about it is supported. Every row must set the same columns.
+ * </p><p>
+ * Rows are held in memory until {@link #flush()} is called. Each statement
+ * carries at most {@code MAX_ROWS_PER_STATEMENT} rows and roughly
+ * {@code MAX_CHARS_PER_STATEMENT} characters of string values, so that it
+ * stays well within the database engine's packet limit. Instances are not
+ * thread-safe.
+ * </p>
+ */
+public class MultiRowInserter {
+
+    /** The greatest number of rows written by a single statement */
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    /**
+     * The number of characters of string values after which a statement is
+     * ended early, whatever its number of rows
+     */
+    private static final int MAX_CHARS_PER_STATEMENT = 256 * 1024;
+
+    /** The connection on which statements are executed */
+    private final Connection conn;
+
+    /** The name of the table to which rows are written */
+    private final String tableName;
+
+    /**
+     * Whether {@code flush()} should return the keys that the database engine
+     * generated for the rows
+     */
+    private final boolean returnGeneratedKeys;
+
+    /** The column values of rows not yet written, in order */
+    private final List<Map<String, Object>> rows;
+
+    /**
+     * Initializes a new {@code MultiRowInserter}.
+     *
+     * @param conn the connection on which rows are to be written; the caller
+     *        must have acquired a lock that permits inserts into the table
+     *        before calling {@code flush()}.
+     * @param tableName the name of the table into which rows are to be
+     *        inserted
+     * @param returnGeneratedKeys true if {@code flush()} should return the
+     *        auto-increment key assigned to each row, or false otherwise
+     */
+    public MultiRowInserter(Connection conn, String tableName,
+            boolean returnGeneratedKeys) {
+        this.conn = conn;
+        this.tableName = tableName;
+        this.returnGeneratedKeys = returnGeneratedKeys;
+        this.rows = new ArrayList<Map<String, Object>>();
+    }
+
+    /**
+     * Begins a new row and returns a stand-in {@code ResultSet} through which
+     * its column values are to be set. Only the {@code updateXxx()} methods
+     * that take a column name are supported; the values are recorded as
+     * given, and a column set more than once takes its last value.
+     */
+    public ResultSet newRow() {
+        final Map<String, Object> row = new LinkedHashMap<String, Object>();
+
+        this.rows.add(row);
+
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                            Object args[]) {
+                        String name = method.getName();
+
+                        if (name.startsWith("update") && (args != null)
+                                && (args.length <= 2)
+                                && (args[0] instanceof String)) {
+                            row.put((String) args[0],
+                                    (args.length == 2) ? args[1] : null);
+                            return null;
+                        } else if (name.equals("equals")) {
+                            return proxy == args[0];
+                        } else if (name.equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        } else if (name.equals("toString")) {
+                            return "row of " + tableName;
+                        } else {
+                            throw new UnsupportedOperationException(name);
+                        }
+                    }
+                });
+    }
+
+    /** Returns the number of rows that have not yet been written. */
+    public int getPendingRowCount() {
+        return this.rows.size();
+    }
+
+    /**
+     * Writes all the rows begun since the last call, in order, and forgets
+     * them.
+     *
+     * @return the keys that the database engine generated for the rows, in
+     *         the order the rows were begun, if this object was constructed to
+     *         return them; otherwise null.
+     * @throws SQLException on database error, or if the rows do not all set
+     *         the same columns or the engine did not report one key per row.
+     */
+    public int[] flush() throws SQLException {
+        int keys[] = this.returnGeneratedKeys ? new int[this.rows.size()]
+                : null;
+        int keyCount = 0;
+        Iterator<Map<String, Object>> it = this.rows.iterator();
+        List<Map<String, Object>> statementRows
+                = new ArrayList<Map<String, Object>>();
+
+        while (it.hasNext()) {
+            // Gather as many rows as one statement may carry.
+            int chars = 0;
+
+            statementRows.clear();
+            while (it.hasNext() && (statementRows.size()
+                    < MAX_ROWS_PER_STATEMENT)
+                    && (chars < MAX_CHARS_PER_STATEMENT)) {
+                Map<String, Object> row = it.next();
+
+                for (Object value : row.values()) {
+                    if (value instanceof String) {
+                        chars += ((String) value).length();
+                    }
+                }
+                statementRows.add(row);
+            }
+            keyCount = executeInsert(statementRows, keys, keyCount);
+        }
+        this.rows.clear();
+
+        return keys;
+    }
+
+    /**
+     * Internal function that writes the specified rows with a single
+     * statement.
+     *
+     * @param statementRows the rows to be written; must not be empty.
+     * @param keys an array to receive generated keys, or null if none are
+     *        wanted
+     * @param keyCount the number of elements of {@code keys} already filled
+     * @return the new number of elements of {@code keys} filled
+     * @throws SQLException on database error, or if the rows are not
+     *         consistent.
+     */
+    private int executeInsert(List<Map<String, Object>> statementRows,
+            int keys[], int keyCount) throws SQLException {
+        List<String> columns = new ArrayList<String>(
+                statementRows.get(0).keySet());
+        StringBuilder sql = new StringBuilder("INSERT INTO ");
+        StringBuilder placeholders = new StringBuilder("(");
+
+        sql.append(this.tableName).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+                placeholders.append(", ");
+            }
+            sql.append(columns.get(i));
+            placeholders.append('?');
+        }
+        sql.append(") VALUES ");
+        placeholders.append(')');
+        for (int i = 0; i < statementRows.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(placeholders);
+        }
+        sql.append(';');
+
+        PreparedStatement cmd = (keys == null)
+                ? this.conn.prepareStatement(sql.toString())
+                : this.conn.prepareStatement(sql.toString(),
+                        Statement.RETURN_GENERATED_KEYS);
+
+        try {
+            int parameter = 1;
+
+            for (Map<String, Object> row : statementRows) {
+                if (!row.keySet().equals(statementRows.get(0).keySet())) {
+                    throw new SQLException("Rows for table " + this.tableName
+                            + " do not all set the same columns");
+                }
+                for (String column : columns) {
+                    Object value = row.get(column);
+
+                    if (value == null) {
+                        cmd.setNull(parameter++, Types.NULL);
+                    } else {
+                        cmd.setObject(parameter++, value);
+                    }
+                }
+            }
+            cmd.executeUpdate();
+            if (keys != null) {
+                ResultSet rs = cmd.getGeneratedKeys();
+                int first = keyCount;
+
+                while (rs.next() && (keyCount < keys.length)) {
+                    keys[keyCount++] = rs.getInt(1);
+                }
+                rs.close();
+                if (keyCount - first != statementRows.size()) {
+                    throw new SQLException("Expected "
+                            + statementRows.size() + " generated keys for "
+                            + this.tableName + " but got "
+                            + (keyCount - first));
+                }
+            }
+        } finally {
+            cmd.close();
+        }
+
+        return keyCount;
+    }
+}
@@ -0,0 +1,527 @@
+/*
+ * Reciprocal Net project
+ *
+ * RcsArchiveReader.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ * 18-Oct-2026: agent made readRevisions() stream the archive, applying each
+ *              delta as it is read instead of holding every revision's text
+ */
+
+package org.recipnet.site.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.recipnet.site.OperationFailedException;
+
+/**
+ * <p>
+ * Reads the trunk revisions of a single RCS archive file (a {@code ,v} file,
+ * as maintained by CVS) without invoking any external program. The archive
+ * stores the text of its head revision in full and every older trunk revision
+ * as a "reverse delta" against its successor; this class parses the archive
+ * and replays those deltas, handing each revision's contents to a
+ * {@link RevisionHandler} in turn, newest first.
+ * </p><p>
+ * The archive is read as a stream. Its deltatext section holds the trunk's
+ * texts newest first, as the deltas are replayed, so each delta is applied as
+ * it is read and then discarded; log messages and branch texts are skipped
+ * without being kept. The memory needed is therefore a small multiple of the
+ * size of the largest revision, however many revisions the archive holds.
+ * </p><p>
+ * Content is treated as binary, the way CVS stores files added with
+ * {@code -kb}: no keyword expansion is performed and lines are delimited by
+ * {@code '\n'} alone. Branch revisions are ignored. This class exists to
+ * migrate CVS repositories created by earlier versions of the site software
+ * into a {@link FileVersionStore}.
+ * </p>
+ */
+class RcsArchiveReader {
+
+    /** Token type of a bare word: an identifier, number, or date */
+    private static final int WORD = 0;
+
+    /** Token type of an {@code @}-delimited string */
+    private static final int STRING = 1;
+
+    /** Token type of a {@code ';'} */
+    private static final int SEMICOLON = 2;
+
+    /** Token type of a {@code ':'} */
+    private static final int COLON = 3;
+
+    /** Token type signalling the end of the archive */
+    private static final int EOF = 4;
+
+    /** The size of the buffer through which the archive is read */
+    private static final int BUFFER_SIZE = 65536;
+
+    /** The archive being read; populated at construction time. */
+    private final File archive;
+
+    /** The stream from which the archive is being read */
+    private InputStream in;
+
+    /** Holds the bytes most recently read from {@code in} */
+    private byte[] buffer;
+
+    /** The position within {@code buffer} of the next byte to be tokenized */
+    private int bufferPos;
+
+    /** The number of valid bytes in {@code buffer} */
+    private int bufferLimit;
+
+    /** The offset within the archive of the first byte of {@code buffer} */
+    private long bufferOffset;
+
+    /** The type of the most recently read token */
+    private int tokenType;
+
+    /** The value of the most recently read {@code WORD} token */
+    private String word;
+
+    /**
+     * Whether {@code nextToken()} should keep the value of a {@code STRING}
+     * token; other strings are skipped without being stored
+     */
+    private boolean keepString;
+
+    /**
+     * The value of the most recently read {@code STRING} token, if
+     * {@code keepString} was set when it was read, otherwise null
+     */
+    private byte[] string;
+
+    /**
+     * Initializes a new {@code RcsArchiveReader} for the specified archive
+     *
+     * @param archive the {@code ,v} file to be read
+     */
+    RcsArchiveReader(File archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Parses the archive and reports each of its trunk revisions, from the
+     * head revision back to the first, to the specified handler. Revisions
+     * are reported as they are reconstructed, so the handler may already have
+     * received some when a malformation later in the archive is detected.
+     *
+     * @param handler the {@code RevisionHandler} that is to receive the
+     *        revisions
+     * @throws OperationFailedException if the archive could not be read or
+     *         was malformed, or if {@code handler} failed
+     */
+    void readRevisions(RevisionHandler handler)
+            throws OperationFailedException {
+        try {
+            in = new FileInputStream(archive);
+        } catch (IOException ex) {
+            throw new OperationFailedException("Could not read RCS archive "
+                    + archive.getPath(), ex);
+        }
+        buffer = new byte[BUFFER_SIZE];
+        bufferPos = 0;
+        bufferLimit = 0;
+        bufferOffset = 0;
+        try {
+            parseArchive(handler);
+        } catch (IOException ex) {
+            throw new OperationFailedException("Could not read RCS archive "
+                    + archive.getPath(), ex);
+        } finally {
+            buffer = null;
+            string = null;
+            try {
+                in.close();
+            } catch (IOException ex) {
+                // ignore it
+            }
+        }
+    }
+
+    /**
+     * Parses the archive from {@code in}, reporting trunk revisions to
+     * {@code handler}; a helper for {@code readRevisions()}
+     */
+    private void parseArchive(RevisionHandler handler)
+            throws IOException, OperationFailedException {
+        String head = null;
+        Map<String, String> states = new HashMap<String, String>();
+        Map<String, String> nexts = new HashMap<String, String>();
+        String revision = null;
+
+        /*
+         * The admin and delta sections: a sequence of phrases, the delta
+         * section's entries each introduced by a bare revision number.
+         */
+        for (nextToken(); ; ) {
+            expect(WORD);
+            if (word.equals("desc")) {
+                nextToken();
+                expect(STRING);
+                nextToken();
+                break;
+            } else if (isRevisionNumber(word)) {
+                revision = word;
+                nextToken();
+                continue;
+            }
+
+            String key = word;
+            String value = null;
+
+            for (nextToken(); tokenType != SEMICOLON; nextToken()) {
+                if (tokenType == EOF) {
+                    throw malformed();
+                } else if ((value == null) && (tokenType == WORD)) {
+                    value = word;
+                }
+            }
+            nextToken();
+            if (revision == null) {
+                if (key.equals("head")) {
+                    head = value;
+                }
+            } else if (key.equals("state")) {
+                states.put(revision, value);
+            } else if (key.equals("next") && (value != null)) {
+                nexts.put(revision, value);
+            }
+        }
+
+        /*
+         * The deltatext section: for each revision, a log message, any number
+         * of extension phrases, and the text itself. The trunk's texts appear
+         * newest first, possibly interleaved with branch texts; each is
+         * applied to the running contents as soon as it has been read.
+         */
+        String expected = head;
+        byte[] contents = null;
+
+        while (tokenType != EOF) {
+            expect(WORD);
+            revision = word;
+
+            boolean onTrunk = revision.equals(expected);
+
+            for (nextToken(); (tokenType == WORD)
+                    && !isRevisionNumber(word); ) {
+                String key = word;
+
+                keepString = onTrunk && key.equals("text");
+                nextToken();
+                keepString = false;
+                if (key.equals("log") || key.equals("text")) {
+                    expect(STRING);
+                    if (onTrunk && key.equals("text")) {
+                        contents = (contents == null) ? string
+                                : applyReverseDelta(contents, string);
+                        string = null;
+                        handler.handleRevision(revision,
+                                "dead".equals(states.get(revision)),
+                                contents);
+                        expected = nexts.get(revision);
+                        onTrunk = false;
+                    }
+                    nextToken();
+                } else {
+                    while (tokenType != SEMICOLON) {
+                        if (tokenType == EOF) {
+                            throw malformed();
+                        }
+                        nextToken();
+                    }
+                    nextToken();
+                }
+            }
+        }
+        if (expected != null) {
+            // A trunk text is missing, or is out of order.
+            throw malformed();
+        }
+    }
+
+    /**
+     * Applies one RCS reverse delta to the text of a revision's successor
+     *
+     * @param newer the contents of the successor revision
+     * @param delta the delta text, consisting of {@code dL N} (delete
+     *        {@code N} lines starting at line {@code L}) and {@code aL N}
+     *        (append the following {@code N} lines after line {@code L})
+     *        commands, line numbers referring to {@code newer}
+     * @return the contents of the older revision
+     */
+    private byte[] applyReverseDelta(byte[] newer, byte[] delta)
+            throws OperationFailedException {
+        List<int[]> source = splitLines(newer);
+        List<int[]> commands = splitLines(delta);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(newer.length);
+        int copied = 0;
+
+        for (int i = 0; i < commands.size(); i++) {
+            int[] line = commands.get(i);
+            String command
+                    = latin1(delta, line[0], line[1] - line[0]).trim();
+            int space = command.indexOf(' ');
+
+            if ((command.length() < 2) || (space < 0)) {
+                throw malformed();
+            }
+
+            int first;
+            int count;
+
+            try {
+                first = Integer.parseInt(command.substring(1, space));
+                count = Integer.parseInt(command.substring(space + 1));
+            } catch (NumberFormatException ex) {
+                throw malformed();
+            }
+            switch (command.charAt(0)) {
+                case 'd':
+                    if ((first - 1 < copied)
+                            || (first - 1 + count > source.size())) {
+                        throw malformed();
+                    }
+                    copied = copyLines(newer, source, copied, first - 1, out);
+                    copied += count;
+                    break;
+                case 'a':
+                    if ((first < copied) || (first > source.size())
+                            || (i + count >= commands.size())) {
+                        throw malformed();
+                    }
+                    copied = copyLines(newer, source, copied, first, out);
+                    for (int j = 0; j < count; j++) {
+                        int[] added = commands.get(++i);
+
+                        out.write(delta, added[0], added[1] - added[0]);
+                    }
+                    break;
+                default:
+                    throw malformed();
+            }
+        }
+        copyLines(newer, source, copied, source.size(), out);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Copies lines {@code from} (inclusive) through {@code to} (exclusive) of
+     * {@code text} to {@code out}, returning {@code to}
+     */
+    private static int copyLines(byte[] text, List<int[]> lines, int from,
+            int to, ByteArrayOutputStream out) {
+        if (to > from) {
+            int start = lines.get(from)[0];
+
+            out.write(text, start, lines.get(to - 1)[1] - start);
+        }
+
+        return to;
+    }
+
+    /**
+     * Splits {@code text} into lines, each described by its start offset and
+     * its end offset (exclusive, including the terminating {@code '\n'}); the
+     * last line may be unterminated
+     */
+    private static List<int[]> splitLines(byte[] text) {
+        List<int[]> lines = new ArrayList<int[]>();
+        int start = 0;
+
+        for (int i = 0; i < text.length; i++) {
+            if (text[i] == '\n') {
+                lines.add(new int[] { start, i + 1 });
+                start = i + 1;
+            }
+        }
+        if (start < text.length) {
+            lines.add(new int[] { start, text.length });
+        }
+
+        return lines;
+    }
+
+    /**
+     * Reads the next token from the archive, setting {@code tokenType} and,
+     * where applicable, {@code word} or {@code string}
+     */
+    private void nextToken() throws IOException, OperationFailedException {
+        int c = read();
+
+        while ((c >= 0) && isWhitespace((byte) c)) {
+            c = read();
+        }
+        if (c < 0) {
+            tokenType = EOF;
+        } else if (c == ';') {
+            tokenType = SEMICOLON;
+        } else if (c == ':') {
+            tokenType = COLON;
+        } else if (c == '@') {
+            ByteArrayOutputStream out
+                    = keepString ? new ByteArrayOutputStream() : null;
+
+            while (true) {
+                if ((bufferPos >= bufferLimit) && !fillBuffer()) {
+                    throw malformed();
+                }
+
+                // Copy the run of bytes up to the next '@' in one step.
+                int start = bufferPos;
+
+                while ((bufferPos < bufferLimit)
+                        && (buffer[bufferPos] != '@')) {
+                    bufferPos++;
+                }
+                if (out != null) {
+                    out.write(buffer, start, bufferPos - start);
+                }
+                if (bufferPos < bufferLimit) {
+                    bufferPos++;
+                    c = read();
+                    if (c != '@') {
+                        unread(c);
+                        break;
+                    } else if (out != null) {
+                        out.write('@');
+                    }
+                }
+            }
+            string = (out == null) ? null : out.toByteArray();
+            tokenType = STRING;
+        } else {
+            StringBuilder sb = new StringBuilder();
+
+            while ((c >= 0) && !isWhitespace((byte) c) && (c != ';')
+                    && (c != ':') && (c != '@')) {
+                sb.append((char) c);
+                c = read();
+            }
+            unread(c);
+            word = sb.toString();
+            tokenType = WORD;
+        }
+    }
+
+    /**
+     * Returns the next byte of the archive, or -1 at its end
+     */
+    private int read() throws IOException {
+        if ((bufferPos >= bufferLimit) && !fillBuffer()) {
+            return -1;
+        }
+
+        return buffer[bufferPos++] & 0xff;
+    }
+
+    /**
+     * Steps back over the byte {@code c} just returned by {@code read()}, so
+     * that it is read again; does nothing if {@code c} signalled the end of
+     * the archive
+     */
+    private void unread(int c) {
+        if (c >= 0) {
+            bufferPos--;
+        }
+    }
+
+    /**
+     * Replaces the exhausted contents of {@code buffer} with the next bytes
+     * of the archive
+     *
+     * @return {@code true} if any bytes were read, {@code false} at the end
+     *         of the archive
+     */
+    private boolean fillBuffer() throws IOException {
+        int n = in.read(buffer);
+
+        bufferOffset += bufferLimit;
+        bufferPos = 0;
+        bufferLimit = Math.max(n, 0);
+
+        return n > 0;
+    }
+
+    /**
+     * Throws an exception unless the most recently read token is of the
+     * specified type
+     */
+    private void expect(int type) throws OperationFailedException {
+        if (tokenType != type) {
+            throw malformed();
+        }
+    }
+
+    /**
+     * Returns an exception describing a syntax error at the current position
+     */
+    private OperationFailedException malformed() {
+        return new OperationFailedException("Malformed RCS archive "
+                + archive.getPath() + " near offset "
+                + (bufferOffset + bufferPos));
+    }
+
+    /** Returns {@code true} if {@code b} is RCS whitespace */
+    private static boolean isWhitespace(byte b) {
+        return (b == ' ') || (b == '\t') || (b == '\n') || (b == '\r')
+                || (b == '\f') || (b == 0x0b);
+    }
+
+    /** Returns {@code true} if {@code s} has the form of a revision number */
+    private static boolean isRevisionNumber(String s) {
+        if ((s.length() == 0) || (s.charAt(0) == '.')) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (((c < '0') || (c > '9')) && (c != '.')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /** Decodes the specified bytes as ISO-8859-1 text */
+    private static String latin1(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (bytes[offset + i] & 0xff);
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * A recipient of the revisions read from an RCS archive
+     */
+    interface RevisionHandler {
+
+        /**
+         * Receives one revision
+         *
+         * @param revision the revision number, such as {@code "1.3"}
+         * @param dead {@code true} if the revision records the removal of the
+         *        file rather than new contents
+         * @param contents the contents of the file as of this revision; the
+         *        handler must not modify the array
+         * @throws OperationFailedException if the revision could not be
+         *         processed
+         */
+        void handleRevision(String revision, boolean dead, byte[] contents)
+                throws OperationFailedException;
+    }
+}
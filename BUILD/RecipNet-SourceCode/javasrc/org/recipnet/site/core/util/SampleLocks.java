@@ -9,6 +9,10 @@
  * 27-Sep-2005: midurbin added managerGetNextUnusedLocalLabId()
  * 12-May-2006: jobollin reformatted the source and removed unused imports
  * 30-May-2006: jobollin added some type arguments
+ * 18-Oct-2026: agent added managerLoadUnitCellIndex()
+ * 18-Oct-2026: agent assigned connection classes to search, sample write, ISM
+ *              and maintenance locks
+ * 18-Oct-2026: agent added managerBulkImportSamples()
  */
 
 package org.recipnet.site.core.util;
@@ -16,6 +20,7 @@ package org.recipnet.site.core.util;
 import java.util.Collection;
 
 import org.recipnet.site.core.lock.AbstractLock;
+import org.recipnet.site.core.lock.ConnectionClass;
 import org.recipnet.site.core.lock.GenericExclusiveLock;
 import org.recipnet.site.core.lock.MultiLock;
 import org.recipnet.site.core.lock.SimpleLock;
@@ -27,7 +32,10 @@ import org.recipnet.site.shared.db.SampleInfo;
  * place for easier maintenance. Also encapsulates locking logic for core agents
  * related to {@code SampleManager}. Note that the "operation constants"
  * defined on this class must be distinct from those defined by
- * {@code RepositoryLocks} in order to avoid locking errors.
+ * {@code RepositoryLocks} in order to avoid locking errors. Locks that protect
+ * searches, sample writes, ISM processing, and maintenance jobs are assigned
+ * to the corresponding {@code ConnectionClass}; all others are
+ * {@code GENERAL}.
  */
 public abstract class SampleLocks {
     /**
@@ -125,6 +133,16 @@ public abstract class SampleLocks {
     private static final long SEARCH_EXECUTE_SPECIFIC
             = SimpleLock.SPEC_OP_BASE << 18;
 
+    /**
+     * Assigns a newly-constructed lock to the specified connection class.
+     * 
+     * @return {@code lock}, for convenience
+     */
+    private static <T extends AbstractLock> T classify(T lock,
+            ConnectionClass connectionClass) {
+        lock.setConnectionClass(connectionClass);
+        return lock;
+    }
     public static AbstractLock idAgentCountUnusedSampleIds() {
         return new SimpleLock(true, IDBLOCKS_EXCLUSIVE, IDBLOCKS_EXCLUSIVE);
     }
@@ -134,11 +152,13 @@ public abstract class SampleLocks {
     }
 
     public static AbstractLock idAgentPeriodicCheck() {
-        return new SimpleLock(true, IDBLOCKS_EXCLUSIVE, IDBLOCKS_EXCLUSIVE);
+        return classify(new SimpleLock(true, IDBLOCKS_EXCLUSIVE,
+                IDBLOCKS_EXCLUSIVE), ConnectionClass.MAINTENANCE);
     }
 
     public static AbstractLock idAgentInit() {
-        return new SimpleLock(true, IDBLOCKS_EXCLUSIVE, IDBLOCKS_EXCLUSIVE);
+        return classify(new SimpleLock(true, IDBLOCKS_EXCLUSIVE,
+                IDBLOCKS_EXCLUSIVE), ConnectionClass.MAINTENANCE);
     }
 
     public static SimpleLock idAgentGetNewSampleId() {
@@ -151,11 +171,13 @@ public abstract class SampleLocks {
     }
 
     public static AbstractLock idAgentProcessSampleIdBlockIsm() {
-        return new SimpleLock(true, IDBLOCKS_EXCLUSIVE, IDBLOCKS_EXCLUSIVE);
+        return classify(new SimpleLock(true, IDBLOCKS_EXCLUSIVE,
+                IDBLOCKS_EXCLUSIVE), ConnectionClass.ISM);
     }
 
     public static AbstractLock idAgentClaimLocalBlocks() {
-        return new GenericExclusiveLock(true);
+        return classify(new GenericExclusiveLock(true),
+                ConnectionClass.MAINTENANCE);
     }
 
     public static AbstractLock idAgentBuildIdList(AbstractLock existingLock,
@@ -210,16 +232,18 @@ public abstract class SampleLocks {
     public static SimpleLock managerPutSampleInfo(boolean creatingNewSample,
             int sampleId) {
         if (creatingNewSample) {
-            return new SimpleLock(SampleInfo.INVALID_SAMPLE_ID, true,
+            return classify(new SimpleLock(SampleInfo.INVALID_SAMPLE_ID, true,
                     SAMPLES_WRITE_SPECIFIC | SAMPLEIDS_ASSIGN
                             | SAMPLES_INSERT_ANY | RANDOM_GENERATE,
                     SAMPLES_WRITE_SPECIFIC | SAMPLEIDS_ASSIGN
                             | LOCALLABS_MODIFY_ANY | SAMPLES_INSERT_ANY
-                            | RANDOM_GENERATE);
+                            | RANDOM_GENERATE), ConnectionClass.SAMPLE_WRITE);
         } else {
-            return new SimpleLock(sampleId, true, SAMPLES_WRITE_SPECIFIC
-                    | SAMPLES_MODIFY_ANY | SAMPLES_READ_SPECIFIC,
-                    SAMPLES_WRITE_SPECIFIC | LOCALLABS_MODIFY_ANY);
+            return classify(new SimpleLock(sampleId, true,
+                    SAMPLES_WRITE_SPECIFIC | SAMPLES_MODIFY_ANY
+                            | SAMPLES_READ_SPECIFIC,
+                    SAMPLES_WRITE_SPECIFIC | LOCALLABS_MODIFY_ANY),
+                    ConnectionClass.SAMPLE_WRITE);
         }
     }
 
@@ -230,9 +254,10 @@ public abstract class SampleLocks {
     }
 
     public static SimpleLock managerRevertSampleToVersion(int sampleId) {
-        return new SimpleLock(sampleId, true, SAMPLES_READ_SPECIFIC
+        return classify(new SimpleLock(sampleId, true, SAMPLES_READ_SPECIFIC
                 | SAMPLES_WRITE_SPECIFIC | SAMPLES_MODIFY_ANY,
-                SAMPLES_WRITE_SPECIFIC | LOCALLABS_MODIFY_ANY);
+                SAMPLES_WRITE_SPECIFIC | LOCALLABS_MODIFY_ANY),
+                ConnectionClass.SAMPLE_WRITE);
     }
 
     public static boolean managerRevertSampleToVersion_verifyExistingLock(
@@ -268,19 +293,28 @@ public abstract class SampleLocks {
     }
 
     public static AbstractLock managerRebuildSearchAtoms() {
-        return new GenericExclusiveLock(true);
+        return classify(new GenericExclusiveLock(true),
+                ConnectionClass.MAINTENANCE);
     }
 
     public static AbstractLock managerRebuildSearchLocalHoldings() {
-        return new GenericExclusiveLock(true);
+        return classify(new GenericExclusiveLock(true),
+                ConnectionClass.MAINTENANCE);
     }
 
     public static AbstractLock managerRebuildSearchUnitCells() {
-        return new GenericExclusiveLock(true);
+        return classify(new GenericExclusiveLock(true),
+                ConnectionClass.MAINTENANCE);
+    }
+
+    public static AbstractLock managerLoadUnitCellIndex() {
+        return classify(new SimpleLock(true, SAMPLES_FETCH_ALL,
+                SAMPLES_MODIFY_ANY), ConnectionClass.MAINTENANCE);
     }
 
     public static AbstractLock managerRebuildSearchSpaceGroups() {
-        return new GenericExclusiveLock(true);
+        return classify(new GenericExclusiveLock(true),
+                ConnectionClass.MAINTENANCE);
     }
 
     public static AbstractLock managerEventLocalLabsChanged() {
@@ -292,31 +326,36 @@ public abstract class SampleLocks {
                 LOCALHOLDINGS_MODIFY_ANY);
     }
 
+    public static AbstractLock managerBulkImportSamples() {
+        return classify(new GenericExclusiveLock(true), ConnectionClass.ISM);
+    }
+
     public static AbstractLock managerEventSampleActivation(int sampleId) {
-        return new SimpleLock(sampleId, true, SAMPLES_WRITE_SPECIFIC
+        return classify(new SimpleLock(sampleId, true, SAMPLES_WRITE_SPECIFIC
                 | SAMPLES_MODIFY_ANY | SAMPLES_READ_SPECIFIC
                 | SAMPLES_INSERT_ANY, SAMPLES_WRITE_SPECIFIC
-                | SAMPLES_INSERT_ANY);
+                | SAMPLES_INSERT_ANY), ConnectionClass.ISM);
     }
 
     public static AbstractLock managerEventSampleUpdate(int sampleId) {
-        return new SimpleLock(sampleId, true, SAMPLES_WRITE_SPECIFIC
+        return classify(new SimpleLock(sampleId, true, SAMPLES_WRITE_SPECIFIC
                 | SAMPLES_MODIFY_ANY | SAMPLES_READ_SPECIFIC,
-                SAMPLES_WRITE_SPECIFIC);
+                SAMPLES_WRITE_SPECIFIC), ConnectionClass.ISM);
     }
 
     public static AbstractLock managerEventSampleDeactivation(int sampleId) {
-        return new SimpleLock(sampleId, true, SAMPLES_WRITE_SPECIFIC
+        return classify(new SimpleLock(sampleId, true, SAMPLES_WRITE_SPECIFIC
                 | SAMPLES_MODIFY_ANY | SAMPLES_READ_SPECIFIC,
-                SAMPLES_WRITE_SPECIFIC);
+                SAMPLES_WRITE_SPECIFIC), ConnectionClass.ISM);
     }
 
     public static AbstractLock managerExecuteSearch(int searchId,
             AbstractLock existingLock) {
-        AbstractLock oneLock = new SimpleLock(searchId, true,
+        AbstractLock oneLock = classify(new SimpleLock(searchId, true,
                 SEARCH_EXECUTE_SPECIFIC | SAMPLES_FETCH_ALL,
                 SEARCH_EXECUTE_SPECIFIC | SAMPLES_MODIFY_ANY
-                        | LOCALLABS_MODIFY_ANY | LOCALHOLDINGS_MODIFY_ANY);
+                        | LOCALLABS_MODIFY_ANY | LOCALHOLDINGS_MODIFY_ANY),
+                ConnectionClass.SEARCH);
         return (existingLock == null) ? oneLock : new MultiLock(
                 existingLock.copy(), oneLock);
     }
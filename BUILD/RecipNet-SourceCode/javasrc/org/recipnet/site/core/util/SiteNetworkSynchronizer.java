@@ -15,6 +15,10 @@
  *              blocks and acquisition of them as neeeded
  * 28-Nov-2008: ekoperda added logic for deactivated sites
  * 31-Dec-2008: ekoperda improved handling of deactivated sites
+ * 18-Oct-2026: agent modified synchronize() to replay sample ISM's as a bulk
+ *              import, and added throughput to the progress messages
+ * 18-Oct-2026: agent made synchronize() end the bulk import even if
+ *              synchronization fails
  */
 
 package org.recipnet.site.core.util;
@@ -150,6 +154,12 @@ public class SiteNetworkSynchronizer {
     /** Statistics counter: number of ISMs processed. */
     private long countProcessed;
 
+    /** Statistics counter: number of sample records written in bulk. */
+    private long countSamplesWritten;
+
+    /** The time at which {@code synchronize()} was last invoked. */
+    private long startTime;
+
     /** Statistics counter: number of ISMs generated by the local site. */
     private long countSent;
 
@@ -234,8 +244,10 @@ public class SiteNetworkSynchronizer {
         countReceived = 0;
         countReceivedBytes = 0;
         countProcessed = 0;
+        countSamplesWritten = 0;
         countSent = 0;
         countSentBytes = 0;
+        startTime = System.currentTimeMillis();
 
 	/*
 	 * Examine the local site's sample id block status, and possibly take
@@ -257,67 +269,84 @@ public class SiteNetworkSynchronizer {
 
         /*
          * Run one or more rounds of synchronization, until the network state
-         * stabilizes.
+         * stabilizes. Sample ISM's are written in batches as they are
+         * processed.
          */
-        do {
-            roundNumber++;
-
-            display.println("  Synchronizing with the Reciprocal Net Site "
-                    + "Network, round " + roundNumber + ":");
-
-            // Initialize state for the round.
-            networkStateBeforeRound = networkState.clone();
-            long localSeqNumBeforeRound
-                    = networkStateBeforeRound.getMaxSeqNumForSite(localSiteId);
-
-            /*
-             * Interact with each accessible site of the Site Network in turn.
-             * We (implicitly) iterate in order of site id, on the assumption
-             * that lower-numbered sites are more likely to have the ISM's we
-             * need than higher-numbered ones.
-             */
-            for (SiteInfo site 
-                    : networkState.getSites(true, true, true, true)) {
-                interactWithRemoteSite(site, networkState);
-            }
+        sampleManager.beginBulkImport();
+        try {
+            do {
+                roundNumber++;
+
+                display.println("  Synchronizing with the Reciprocal Net Site "
+                        + "Network, round " + roundNumber + ":");
+
+                // Initialize state for the round.
+                networkStateBeforeRound = networkState.clone();
+                long localSeqNumBeforeRound = networkStateBeforeRound
+                        .getMaxSeqNumForSite(localSiteId);
+
+                /*
+                 * Interact with each accessible site of the Site Network in
+                 * turn. We (implicitly) iterate in order of site id, on the
+                 * assumption that lower-numbered sites are more likely to have
+                 * the ISM's we need than higher-numbered ones.
+                 */
+                for (SiteInfo site 
+                        : networkState.getSites(true, true, true, true)) {
+                    interactWithRemoteSite(site, networkState);
+
+                    // Write staged samples before the network state is
+                    // examined.
+                    countSamplesWritten += sampleManager.flushBulkImport();
+                }
 
-            // Push any newly-generated messages out to the Site Network.
-            boolean messagesWereSent
-                    = pushSentMessages(localSeqNumBeforeRound, networkState);
+                // Push any newly-generated messages out to the Site Network.
+                boolean messagesWereSent = pushSentMessages(
+                        localSeqNumBeforeRound, networkState);
 
-            // Update the network state to account for changes this round
-            networkState.updateFromSiteManager();
-            countSent += (networkState.getMaxSeqNumForSite(localSiteId)
-                    - localSeqNumBeforeRound);
+                // Update the network state to account for changes this round
+                networkState.updateFromSiteManager();
+                countSent += (networkState.getMaxSeqNumForSite(localSiteId)
+                        - localSeqNumBeforeRound);
             
-            // Report round statistics
-            display.println("    Round " + roundNumber + " is complete.");
-            display.println("      Processed "
-                    + byteFormatter.format(countProcessed)
-                    + " messages so far.");
-            display.println("      Received "
-                    + byteFormatter.format(countReceived)
-                    + " messages, "
-                    + calculateKilobytes(countReceivedBytes) + " so far.");
-            display.println("      Transmitted "
-                    + byteFormatter.format(countSent) + " messages, "
-                    + calculateKilobytes(countSentBytes) + " so far.");
+                // Report round statistics
+                display.println("    Round " + roundNumber + " is complete.");
+                display.println("      Processed "
+                        + byteFormatter.format(countProcessed)
+                        + " messages so far, "
+                        + calculateRate(countProcessed, startTime)
+                        + " per second.");
+                display.println("      Wrote "
+                        + byteFormatter.format(countSamplesWritten)
+                        + " sample records in bulk so far.");
+                display.println("      Received "
+                        + byteFormatter.format(countReceived)
+                        + " messages, "
+                        + calculateKilobytes(countReceivedBytes) + " so far.");
+                display.println("      Transmitted "
+                        + byteFormatter.format(countSent) + " messages, "
+                        + calculateKilobytes(countSentBytes) + " so far.");
             
-            /*
-             * Possibly pause before the next round. This gives other sites an
-             * opportunity to process the ISM's we just pushed to them.
-             */
-            if (messagesWereSent) {
-                display.print("    Pausing before the next round... ");
-                try {
-                    Thread.sleep(DELAY_BETWEEN_ROUNDS);
-                    display.println("ok");
-                } catch (InterruptedException ex) {
-                    // just drop through...
-                    display.println("interrupted");
+                /*
+                 * Possibly pause before the next round. This gives other sites
+                 * an opportunity to process the ISM's we just pushed to them.
+                 */
+                if (messagesWereSent) {
+                    display.print("    Pausing before the next round... ");
+                    try {
+                        Thread.sleep(DELAY_BETWEEN_ROUNDS);
+                        display.println("ok");
+                    } catch (InterruptedException ex) {
+                        // just drop through...
+                        display.println("interrupted");
+                    }
                 }
-            }
-        } while (networkState.isDifferentFrom(networkStateBeforeRound));
+            } while (networkState.isDifferentFrom(networkStateBeforeRound));
+            countSamplesWritten += sampleManager.endBulkImport();
+        } finally {
+            // Discards any staged ISM's if synchronization failed.
+            sampleManager.abortBulkImport();
+        }
 
 	/*
 	 * Check to see whether any ISM's remain in the queues and inform the
@@ -388,6 +417,7 @@ public class SiteNetworkSynchronizer {
 
         // Download and process messages from the remote site in batches.
         long countProcessedThisInteraction = 0;
+        long interactionStartTime = System.currentTimeMillis();
         boolean wereMessagesProcessedThisExchange = true;
         while ((countAvailableThisInteraction > 0)
                 && wereMessagesProcessedThisExchange) {
@@ -418,7 +448,10 @@ public class SiteNetworkSynchronizer {
                             + " of "
                             + byteFormatter.format(
                                     countAvailableThisInteraction)
-                            + " messages for this connection.");
+                            + " messages for this connection, "
+                            + calculateRate(countProcessedThisInteraction,
+                                    interactionStartTime)
+                            + " per second.");
                     lastPercentDisplayed = currentPercent;
                 }
             }
@@ -654,6 +687,18 @@ public class SiteNetworkSynchronizer {
         return percentFormatter.format(x) + "%";
     }
 
+    /**
+     * Utility function that calculates and returns a string showing the rate
+     * at which {@code count} events have occurred since {@code since}, per
+     * second.
+     * 
+     * @param since a time as returned by {@code System.currentTimeMillis()}.
+     */
+    private String calculateRate(long count, long since) {
+        long elapsed = Math.max(System.currentTimeMillis() - since, 1);
+        return byteFormatter.format(count * 1000 / elapsed);
+    }
+
     /**
      * Utility function that returns a string containing a formatted
      * respresenting of {@code x}, with units of kilobytes.
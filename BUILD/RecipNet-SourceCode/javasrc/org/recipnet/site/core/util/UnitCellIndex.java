@@ -0,0 +1,450 @@
+/*
+ * Reciprocal Net project
+ *
+ * UnitCellIndex.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.core.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.recipnet.site.shared.db.SearchUnitCellsInfo;
+import org.recipnet.site.shared.search.SearchUnitCellsIndex;
+
+/**
+ * An in-memory copy of the {@code searchUnitCells} table, organized as a k-d
+ * tree over the table's seven numeric columns, that Sample Manager maintains
+ * alongside the table so that reduced-cell searches can test all of the
+ * columns at once. A range query visits only those branches of the tree whose
+ * bounds overlap the query's, which for the narrow tolerances typical of
+ * reduced-cell searches amounts to a logarithmic number of nodes.
+ * <p>
+ * A balanced tree is built by {@link #load(Collection)}. Subsequent changes
+ * are recorded in a small side table that queries consult in addition to the
+ * tree; once that table grows to a fraction of the tree's size the tree is
+ * rebuilt with the changes incorporated. Instances are safe for use by
+ * multiple threads.
+ */
+public class UnitCellIndex implements SearchUnitCellsIndex {
+
+    /**
+     * The names of the {@code searchUnitCells} columns that are indexed, in
+     * the order of the corresponding coordinates of each point
+     */
+    private static final String[] COLUMN_NAMES = { "aprime", "bprime",
+            "cprime", "vprime", "astarprime", "bstarprime", "cstarprime" };
+
+    /** the number of coordinates of each point */
+    private static final int DIMENSIONS = COLUMN_NAMES.length;
+
+    /** the minimum number of pending changes that will trigger a rebuild */
+    private static final int MIN_REBUILD_THRESHOLD = 256;
+
+    /**
+     * The maximum number of sample ids {@link #findSampleIds} will return;
+     * queries that match more samples than this are declined
+     */
+    private final int maxCandidates;
+
+    /** guards all of the mutable state below */
+    private final ReadWriteLock rwLock;
+
+    /**
+     * The sample ids of the points in the tree. The tree is implicit: the
+     * root of the subtree occupying positions {@code lo} (inclusive) through
+     * {@code hi} (exclusive) is at position {@code (lo + hi) / 2}, its
+     * splitting coordinate is its depth modulo {@code DIMENSIONS}, and its
+     * left and right subtrees occupy the positions before and after it.
+     */
+    private int[] treeIds;
+
+    /**
+     * The coordinates of the points in the tree; those of the point at
+     * position {@code i} occupy positions {@code i * DIMENSIONS} through
+     * {@code (i + 1) * DIMENSIONS - 1}
+     */
+    private double[] treeCoords;
+
+    /** the number of points in the tree */
+    private int treeSize;
+
+    /**
+     * Changes made since the tree was last built, by sample id. A null value
+     * records a removal. Entries here supersede any tree entry for the same
+     * sample.
+     */
+    private final Map<Integer, double[]> pendingChanges;
+
+    /**
+     * Initializes a new, empty {@code UnitCellIndex}
+     *
+     * @param maxCandidates the maximum number of sample ids that a single
+     *        query may return before the index declines to answer it
+     */
+    public UnitCellIndex(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+        this.rwLock = new ReentrantReadWriteLock();
+        this.treeIds = new int[0];
+        this.treeCoords = new double[0];
+        this.treeSize = 0;
+        this.pendingChanges = new HashMap<Integer, double[]>();
+    }
+
+    /**
+     * Discards the current contents of this index and replaces them with the
+     * specified rows of the {@code searchUnitCells} table
+     *
+     * @param rows the complete contents of the table
+     */
+    public void load(Collection<SearchUnitCellsInfo> rows) {
+        int[] ids = new int[rows.size()];
+        double[] coords = new double[rows.size() * DIMENSIONS];
+        int i = 0;
+
+        for (SearchUnitCellsInfo suci : rows) {
+            ids[i] = suci.sampleId;
+            System.arraycopy(toCoordinates(suci), 0, coords, i * DIMENSIONS,
+                    DIMENSIONS);
+            i++;
+        }
+        build(ids, coords, 0, ids.length, 0);
+
+        rwLock.writeLock().lock();
+        try {
+            treeIds = ids;
+            treeCoords = coords;
+            treeSize = ids.length;
+            pendingChanges.clear();
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records that a sample's row in the {@code searchUnitCells} table has
+     * been inserted or updated
+     *
+     * @param suci the new contents of the row
+     */
+    public void put(SearchUnitCellsInfo suci) {
+        recordChange(suci.sampleId, toCoordinates(suci));
+    }
+
+    /**
+     * Records that a sample's row in the {@code searchUnitCells} table has
+     * been deleted, or that the sample never had one
+     *
+     * @param sampleId the id of the sample
+     */
+    public void remove(int sampleId) {
+        recordChange(sampleId, null);
+    }
+
+    /** Discards the contents of this index. */
+    public void clear() {
+        rwLock.writeLock().lock();
+        try {
+            treeIds = new int[0];
+            treeCoords = new double[0];
+            treeSize = 0;
+            pendingChanges.clear();
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}. This implementation declines queries that match more
+     * than the maximum number of candidates specified at construction time.
+     */
+    public int[] findSampleIds(String[] columnNames, double[] minValues,
+            double[] maxValues) {
+        if ((columnNames.length != minValues.length)
+                || (columnNames.length != maxValues.length)) {
+            throw new IllegalArgumentException();
+        }
+
+        double[] min = new double[DIMENSIONS];
+        double[] max = new double[DIMENSIONS];
+
+        Arrays.fill(min, Double.NEGATIVE_INFINITY);
+        Arrays.fill(max, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < columnNames.length; i++) {
+            int dim = getDimension(columnNames[i]);
+
+            min[dim] = Math.max(min[dim], minValues[i]);
+            max[dim] = Math.min(max[dim], maxValues[i]);
+        }
+
+        Collector results = new Collector(maxCandidates);
+
+        rwLock.readLock().lock();
+        try {
+            if (!search(0, treeSize, 0, min, max, results)) {
+                return null;
+            }
+            for (Map.Entry<Integer, double[]> entry
+                    : pendingChanges.entrySet()) {
+                double[] point = entry.getValue();
+
+                if ((point != null) && contains(point, 0, min, max)
+                        && !results.add(entry.getKey())) {
+                    return null;
+                }
+            }
+        } finally {
+            rwLock.readLock().unlock();
+        }
+
+        return results.toSortedArray();
+    }
+
+    /**
+     * Records a pending change and rebuilds the tree if enough of them have
+     * accumulated
+     */
+    private void recordChange(int sampleId, double[] point) {
+        rwLock.writeLock().lock();
+        try {
+            pendingChanges.put(sampleId, point);
+            if (pendingChanges.size()
+                    > Math.max(MIN_REBUILD_THRESHOLD, treeSize / 8)) {
+                rebuild();
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds a new tree from the current one and the pending changes. The
+     * caller must hold the write lock.
+     */
+    private void rebuild() {
+        int count = 0;
+        int[] ids = new int[treeSize + pendingChanges.size()];
+        double[] coords = new double[ids.length * DIMENSIONS];
+
+        for (int i = 0; i < treeSize; i++) {
+            if (!pendingChanges.containsKey(treeIds[i])) {
+                ids[count] = treeIds[i];
+                System.arraycopy(treeCoords, i * DIMENSIONS, coords,
+                        count * DIMENSIONS, DIMENSIONS);
+                count++;
+            }
+        }
+        for (Map.Entry<Integer, double[]> entry : pendingChanges.entrySet()) {
+            if (entry.getValue() != null) {
+                ids[count] = entry.getKey();
+                System.arraycopy(entry.getValue(), 0, coords,
+                        count * DIMENSIONS, DIMENSIONS);
+                count++;
+            }
+        }
+        ids = Arrays.copyOf(ids, count);
+        coords = Arrays.copyOf(coords, count * DIMENSIONS);
+        build(ids, coords, 0, count, 0);
+
+        treeIds = ids;
+        treeCoords = coords;
+        treeSize = count;
+        pendingChanges.clear();
+    }
+
+    /**
+     * Collects into {@code results} the ids of those tree points within the
+     * subtree rooted at the specified position that lie strictly inside the
+     * specified bounds, skipping those superseded by pending changes. The
+     * caller must hold the read lock.
+     *
+     * @return false if the results overflowed, otherwise true
+     */
+    private boolean search(int lo, int hi, int depth, double[] min,
+            double[] max, Collector results) {
+        if (lo >= hi) {
+            return true;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        int dim = depth % DIMENSIONS;
+        double split = treeCoords[mid * DIMENSIONS + dim];
+
+        if (contains(treeCoords, mid * DIMENSIONS, min, max)
+                && !pendingChanges.containsKey(treeIds[mid])
+                && !results.add(treeIds[mid])) {
+            return false;
+        }
+        if ((min[dim] < split)
+                && !search(lo, mid, depth + 1, min, max, results)) {
+            return false;
+        }
+        if ((max[dim] > split)
+                && !search(mid + 1, hi, depth + 1, min, max, results)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Arranges the specified range of points into an implicit k-d tree, as
+     * described at {@link #treeIds}
+     */
+    private static void build(int[] ids, double[] coords, int lo, int hi,
+            int depth) {
+        if (hi - lo < 2) {
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        int dim = depth % DIMENSIONS;
+
+        select(ids, coords, lo, hi, mid, dim);
+        build(ids, coords, lo, mid, depth + 1);
+        build(ids, coords, mid + 1, hi, depth + 1);
+    }
+
+    /**
+     * Partially orders the specified range of points by one coordinate so
+     * that the point at position {@code k} is preceded only by points whose
+     * coordinate is no greater than its own and followed only by points whose
+     * coordinate is no less. Uses a three-way partition so that runs of equal
+     * values do not degrade performance.
+     */
+    private static void select(int[] ids, double[] coords, int lo, int hi,
+            int k, int dim) {
+        while (hi - lo > 1) {
+            double pivot = coords[((lo + hi) >>> 1) * DIMENSIONS + dim];
+            int lt = lo;
+            int gt = hi - 1;
+            int i = lo;
+
+            while (i <= gt) {
+                double value = coords[i * DIMENSIONS + dim];
+
+                if (value < pivot) {
+                    swap(ids, coords, lt++, i++);
+                } else if (value > pivot) {
+                    swap(ids, coords, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                hi = lt;
+            } else if (k > gt) {
+                lo = gt + 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /** Exchanges the points at two positions. */
+    private static void swap(int[] ids, double[] coords, int i, int j) {
+        int tempId = ids[i];
+
+        ids[i] = ids[j];
+        ids[j] = tempId;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double temp = coords[i * DIMENSIONS + d];
+
+            coords[i * DIMENSIONS + d] = coords[j * DIMENSIONS + d];
+            coords[j * DIMENSIONS + d] = temp;
+        }
+    }
+
+    /**
+     * Determines whether the point whose coordinates begin at the specified
+     * offset lies strictly inside the specified bounds
+     */
+    private static boolean contains(double[] coords, int offset, double[] min,
+            double[] max) {
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double value = coords[offset + d];
+
+            if (!((value > min[d]) && (value < max[d]))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /** Returns the coordinate number of the named column. */
+    private static int getDimension(String columnName) {
+        for (int d = 0; d < DIMENSIONS; d++) {
+            if (COLUMN_NAMES[d].equals(columnName)) {
+                return d;
+            }
+        }
+
+        throw new IllegalArgumentException(columnName);
+    }
+
+    /** Returns the coordinates of a {@code searchUnitCells} row. */
+    private static double[] toCoordinates(SearchUnitCellsInfo suci) {
+        return new double[] { suci.aPrime, suci.bPrime, suci.cPrime,
+                suci.vPrime, suci.aStarPrime, suci.bStarPrime,
+                suci.cStarPrime };
+    }
+
+    /**
+     * A bounded, growable list of sample ids
+     */
+    private static class Collector {
+
+        /** the maximum number of ids this collector will accept */
+        private final int limit;
+
+        /** the ids collected so far */
+        private int[] ids;
+
+        /** the number of ids collected so far */
+        private int size;
+
+        /**
+         * Initializes a new {@code Collector}
+         *
+         * @param limit the maximum number of ids to accept
+         */
+        public Collector(int limit) {
+            this.limit = limit;
+            this.ids = new int[Math.min(limit, 64)];
+            this.size = 0;
+        }
+
+        /**
+         * Adds an id to this collector
+         *
+         * @return false if the id would exceed the limit, otherwise true
+         */
+        public boolean add(int id) {
+            if (size == limit) {
+                return false;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, Math.min(limit, 2 * size));
+            }
+            ids[size++] = id;
+
+            return true;
+        }
+
+        /** Returns the collected ids in ascending order. */
+        public int[] toSortedArray() {
+            int[] result = Arrays.copyOf(ids, size);
+
+            Arrays.sort(result);
+
+            return result;
+        }
+    }
+}
@@ -24,6 +24,8 @@
  *              source; removed unused imports
  * 15-Jun-2006: jobollin added a warning-suppression annotation
  * 10-Jan-2008: ekoperda removed deprecated function getTextForElAsBinary()
+ * 18-Oct-2026: agent replaced the single shared DocumentBuilder and
+ *              Transformer with bounded pools of idle engines
  */
 
 package org.recipnet.site.shared;
@@ -33,6 +35,8 @@ import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ResourceBundle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -65,38 +69,65 @@ import org.xml.sax.SAXParseException;
  * objects into a Document Object Model (DOM) tree, or extracting them from one.
  * Classes that implement the DomTreeParticipant interface tend to find these
  * functions handy.
+ * <p>
+ * Neither {@code DocumentBuilder} nor {@code Transformer} objects may be used
+ * by more than one thread at a time, so each parse or serialization borrows an
+ * idle one from a pool, creating a new one if none is idle, and returns it
+ * afterwards. Any number of threads may thus parse and serialize XML at once;
+ * the number of idle engines retained between uses is bounded by
+ * {@code MAX_IDLE_ENGINES}.
  */
 public class DomUtil {
-    
-    private final static DocumentBuilder documentBuilder;
 
-    private final static Transformer transformer;
+    /**
+     * The maximum number of idle {@code DocumentBuilder}s, and of idle
+     * {@code Transformer}s, retained for reuse.
+     */
+    private final static int MAX_IDLE_ENGINES
+            = 2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Creates {@code DocumentBuilder}s when none is idle; null if it could not
+     * produce one. Synchronize on this object before utilizing it.
+     */
+    private final static DocumentBuilderFactory documentBuilderFactory;
+
+    /**
+     * Creates {@code Transformer}s when none is idle; null if it could not
+     * produce one. Synchronize on this object before utilizing it.
+     */
+    private final static TransformerFactory transformerFactory;
+
+    /** {@code DocumentBuilder}s that are not currently in use. */
+    private final static BlockingQueue<DocumentBuilder> idleDocumentBuilders
+            = new ArrayBlockingQueue<DocumentBuilder>(MAX_IDLE_ENGINES);
+
+    /** {@code Transformer}s that are not currently in use. */
+    private final static BlockingQueue<Transformer> idleTransformers
+            = new ArrayBlockingQueue<Transformer>(MAX_IDLE_ENGINES);
 
     /* Static initialization code */
     static {
-        DocumentBuilder db;
-        Transformer tr;
-        
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        TransformerFactory tf = TransformerFactory.newInstance();
+
+        dbf.setCoalescing(true);
+        dbf.setIgnoringComments(true);
         try {
-            DocumentBuilderFactory factory
-                    = DocumentBuilderFactory.newInstance();
-            
-            factory.setCoalescing(true);
-            factory.setIgnoringComments(true);
-            db = factory.newDocumentBuilder();
+            idleDocumentBuilders.offer(dbf.newDocumentBuilder());
         } catch (ParserConfigurationException ex) {
             // We'll throw an IllegalStateException later
-            db = null;
+            dbf = null;
         }
-        documentBuilder = db;
-        
+        documentBuilderFactory = dbf;
+
         try {
-            tr = TransformerFactory.newInstance().newTransformer();
+            idleTransformers.offer(tf.newTransformer());
         } catch (TransformerConfigurationException ex) {
             // We'll throw an IllegalStateException later
-            tr = null;
+            tf = null;
         }
-        transformer = tr;
+        transformerFactory = tf;
     }
 
     /**
@@ -715,19 +746,10 @@ public class DomUtil {
      * initialize for some reason.
      */
     public static Document objectToDomTree(DomTreeParticipant obj) {
-        Document doc;
-
-        // Quick sanity check
-        if (documentBuilder == null) {
-            throw new IllegalStateException("DocumentBuilder failed to"
-                    + " initialize");
-        }
-
         // Create and build a DOM tree to represent this object and its
         // subclasses.
-        synchronized (documentBuilder) {
-            doc = documentBuilder.newDocument();
-        }
+        Document doc = createDocument();
+
         obj.insertIntoDom(doc, doc);
 
         return doc;
@@ -745,18 +767,9 @@ public class DomUtil {
      */
     public static Document objectToDomTreeUsingResources(
             DomTreeParticipant obj, ResourceBundle resources) {
-        if (documentBuilder == null) {
-            throw new IllegalStateException("DocumentBuilder failed to"
-                    + " initialize");
-        }
-
         // Create and build a DOM tree to represent this object and its
         // subclasses.
-        Document doc;
-        
-        synchronized (documentBuilder) {
-            doc = documentBuilder.newDocument();
-        }
+        Document doc = createDocument();
         
         if (obj instanceof ExtendedDomTreeParticipant) {
             // Pass the object a ResourceBundle and see whether it works.
@@ -800,20 +813,17 @@ public class DomUtil {
      */
     public static String domTreeToXml(Document doc)
             throws OperationFailedException {
-        if (transformer == null) {
-            throw new IllegalStateException("Transformer failed to"
-                    + " initialize");
-        }
+        Transformer transformer = borrowTransformer();
 
         // Transform the DOM tree into XML
         StringWriter sw = new StringWriter(1024);
         
-        synchronized (transformer) {
-            try {
-                transformer.transform(new DOMSource(doc), new StreamResult(sw));
-            } catch (TransformerException ex) {
-                throw new OperationFailedException(ex);
-            }
+        try {
+            transformer.transform(new DOMSource(doc), new StreamResult(sw));
+        } catch (TransformerException ex) {
+            throw new OperationFailedException(ex);
+        } finally {
+            releaseTransformer(transformer);
         }
 
         return sw.toString();
@@ -828,37 +838,32 @@ public class DomUtil {
      *         document, or if an I/O error of some sort occurred.
      */
     public static Document xmlToDomTree(String xml) throws SAXException {
-
-        // Quick sanity check
-        if (documentBuilder == null) {
-            throw new IllegalStateException("DocumentBuilder failed to"
-                    + " initialize");
-        }
-
-        synchronized (documentBuilder) {
-            try {
-                return documentBuilder.parse(
-                        new InputSource(new StringReader(xml)));
-            } catch (IOException ex) {
-                throw new SAXException("I/O error while parsing XML data", ex);
-            }
-        }
+        return xmlToDomTree(new InputSource(new StringReader(xml)));
     }
 
     public static Document xmlToDomTree(InputStream is) throws SAXException {
+        return xmlToDomTree(new InputSource(is));
+    }
 
-        // Quick sanity check
-        if (documentBuilder == null) {
-            throw new IllegalStateException("DocumentBuilder failed to"
-                    + " initialize");
-        }
+    /**
+     * Parses XML from the specified source into a DOM tree (Document) using a
+     * {@code DocumentBuilder} borrowed from the pool.
+     * 
+     * @throws IllegalStateException if the translation engines shared by all
+     *         threads using this class failed to initialize for some reason.
+     * @throws SAXException if the XML could not be parsed into a DOM document,
+     *         or if an I/O error of some sort occurred.
+     */
+    private static Document xmlToDomTree(InputSource source)
+            throws SAXException {
+        DocumentBuilder documentBuilder = borrowDocumentBuilder();
 
-        synchronized (documentBuilder) {
-            try {
-                return documentBuilder.parse(is);
-            } catch (IOException ex) {
-                throw new SAXException("I/O error while parsing XML data", ex);
-            }
+        try {
+            return documentBuilder.parse(source);
+        } catch (IOException ex) {
+            throw new SAXException("I/O error while parsing XML data", ex);
+        } finally {
+            releaseDocumentBuilder(documentBuilder);
         }
     }
 
@@ -916,11 +921,12 @@ public class DomUtil {
      * @throws IllegalStateException
      */
     public static Document createDocument() {
-        if (documentBuilder == null) {
-            throw new IllegalStateException();
-        }
-        synchronized (documentBuilder) {
+        DocumentBuilder documentBuilder = borrowDocumentBuilder();
+
+        try {
             return documentBuilder.newDocument();
+        } finally {
+            releaseDocumentBuilder(documentBuilder);
         }
     }
 
@@ -959,4 +965,78 @@ public class DomUtil {
 
         return baseEl;
     }
+
+    /**
+     * Takes an idle {@code DocumentBuilder} from the pool, or creates a new one
+     * if none is idle. The caller must pass it to
+     * {@code releaseDocumentBuilder()} once finished with it.
+     * 
+     * @throws IllegalStateException if the translation engines shared by all
+     *         threads using this class failed to initialize for some reason.
+     */
+    private static DocumentBuilder borrowDocumentBuilder() {
+        DocumentBuilder documentBuilder = idleDocumentBuilders.poll();
+
+        if (documentBuilder != null) {
+            return documentBuilder;
+        } else if (documentBuilderFactory == null) {
+            throw new IllegalStateException("DocumentBuilder failed to"
+                    + " initialize");
+        }
+        synchronized (documentBuilderFactory) {
+            try {
+                return documentBuilderFactory.newDocumentBuilder();
+            } catch (ParserConfigurationException ex) {
+                // It worked during static initialization.
+                throw new UnexpectedExceptionException(ex);
+            }
+        }
+    }
+
+    /**
+     * Returns a {@code DocumentBuilder} obtained from
+     * {@code borrowDocumentBuilder()} to the pool, or discards it if the pool
+     * is full.
+     */
+    private static void releaseDocumentBuilder(
+            DocumentBuilder documentBuilder) {
+        documentBuilder.reset();
+        idleDocumentBuilders.offer(documentBuilder);
+    }
+
+    /**
+     * Takes an idle {@code Transformer} from the pool, or creates a new one if
+     * none is idle. The caller must pass it to {@code releaseTransformer()}
+     * once finished with it.
+     * 
+     * @throws IllegalStateException if the translation engines shared by all
+     *         threads using this class failed to initialize for some reason.
+     */
+    private static Transformer borrowTransformer() {
+        Transformer transformer = idleTransformers.poll();
+
+        if (transformer != null) {
+            return transformer;
+        } else if (transformerFactory == null) {
+            throw new IllegalStateException("Transformer failed to"
+                    + " initialize");
+        }
+        synchronized (transformerFactory) {
+            try {
+                return transformerFactory.newTransformer();
+            } catch (TransformerConfigurationException ex) {
+                // It worked during static initialization.
+                throw new UnexpectedExceptionException(ex);
+            }
+        }
+    }
+
+    /**
+     * Returns a {@code Transformer} obtained from {@code borrowTransformer()}
+     * to the pool, or discards it if the pool is full.
+     */
+    private static void releaseTransformer(Transformer transformer) {
+        transformer.reset();
+        idleTransformers.offer(transformer);
+    }
 }
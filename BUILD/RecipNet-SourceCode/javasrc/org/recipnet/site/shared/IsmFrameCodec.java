@@ -0,0 +1,305 @@
+/*
+ * Reciprocal Net project
+ *
+ * IsmFrameCodec.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ * 18-Oct-2026: agent made acceptsFrames() and chooseContentEncoding() honor
+ *              quality values
+ * 18-Oct-2026: agent added isSupportedContentEncoding()
+ */
+
+package org.recipnet.site.shared;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <p>
+ * Implements the framed encoding of an ISM exchange, an alternative to the
+ * SOAP documents written by {@code SoapUtil.writeSoapDocument()} that sites
+ * may negotiate through ordinary HTTP headers. A framed body consists of the
+ * four bytes {@code RNIF}, then one frame per message: a four-byte, big-endian
+ * length followed by that many bytes of UTF-8 encoded XML, exactly as the
+ * message was signed. A length of -1 ends the body, so that truncation is
+ * detected.
+ * </p><p>
+ * A client that understands framed bodies lists {@code CONTENT_TYPE} in its
+ * {@code Accept} header; a server that does too may then reply with a framed
+ * body, and the client may frame its subsequent requests to that server.
+ * Either kind of body may be compressed with {@code gzip} or {@code deflate},
+ * as negotiated through the {@code Accept-Encoding} and
+ * {@code Content-Encoding} headers. Peers that predate this class never send
+ * these headers and so continue to exchange plain SOAP.
+ * </p>
+ */
+public class IsmFrameCodec {
+
+    /** The MIME type of a framed body */
+    public static final String CONTENT_TYPE
+            = "application/x-recipnet-ism-frames";
+
+    /** The {@code Accept} header sent by clients that understand frames */
+    public static final String ACCEPT = CONTENT_TYPE + ", text/xml";
+
+    /**
+     * The {@code Accept-Encoding} header sent by clients that understand
+     * compressed bodies
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    /** The first four bytes of a framed body */
+    private static final int MAGIC = 0x524e4946; // "RNIF"
+
+    /** The frame length that marks the end of a framed body */
+    private static final int END_OF_FRAMES = -1;
+
+    /**
+     * The largest frame that will be read; guards against allocating huge
+     * buffers for corrupt input
+     */
+    private static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    /** Matches a well-formed HTTP quality value, from RFC 2616 section 3.9 */
+    private static final Pattern QUALITY_VALUE
+            = Pattern.compile("0(\\.[0-9]{0,3})?|1(\\.0{0,3})?");
+
+    /**
+     * Writes a complete framed body containing the specified messages. The
+     * caller is responsible for flushing and closing {@code os}.
+     *
+     * @param os the stream to which the body should be written
+     * @param messages an array of zero or more XML representations of
+     *        {@code InterSiteMessage}s, without XML document headers
+     * @throws IOException if {@code os} failed
+     */
+    public static void writeMessages(OutputStream os, String messages[])
+            throws IOException {
+        DataOutputStream dos = new DataOutputStream(os);
+
+        dos.writeInt(MAGIC);
+        for (String message : messages) {
+            byte bytes[] = message.getBytes("UTF-8");
+
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+        dos.writeInt(END_OF_FRAMES);
+        dos.flush();
+    }
+
+    /**
+     * Reads a complete framed body, decoding one message at a time. The caller
+     * is responsible for closing {@code is}.
+     *
+     * @param is the stream from which the body should be read
+     * @return an array of zero or more XML representations of
+     *         {@code InterSiteMessage}s, exactly as they were written
+     * @throws IOException if {@code is} failed, or if it did not contain a
+     *         complete framed body
+     */
+    public static String[] readMessages(InputStream is) throws IOException {
+        DataInputStream dis = new DataInputStream(is);
+        Collection<String> messages = new ArrayList<String>();
+
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Not a framed ISM body");
+        }
+        for (int length = dis.readInt(); length != END_OF_FRAMES;
+                length = dis.readInt()) {
+            if ((length < 0) || (length > MAX_FRAME_LENGTH)) {
+                throw new IOException("Invalid ISM frame length " + length);
+            }
+
+            byte bytes[] = new byte[length];
+
+            try {
+                dis.readFully(bytes);
+            } catch (EOFException ex) {
+                throw new IOException("Truncated ISM frame");
+            }
+            messages.add(new String(bytes, "UTF-8"));
+        }
+
+        return messages.toArray(new String[messages.size()]);
+    }
+
+    /**
+     * Returns true if the specified {@code Content-Type} header value
+     * identifies a framed body.
+     */
+    public static boolean isFramed(String contentType) {
+        return (contentType != null) && contentType.trim().toLowerCase(
+                Locale.US).startsWith(CONTENT_TYPE);
+    }
+
+    /**
+     * Returns true if the specified {@code Accept} header value admits a
+     * framed body: that is, if it lists {@code CONTENT_TYPE} with a nonzero
+     * quality value. Wildcard media ranges do not count, since clients that
+     * predate this class send them too.
+     */
+    public static boolean acceptsFrames(String accept) {
+        return getQuality(accept, CONTENT_TYPE) > 0;
+    }
+
+    /**
+     * Selects a content coding admitted by the specified
+     * {@code Accept-Encoding} header value. A coding is admitted if it, or
+     * failing that the wildcard {@code *}, is listed with a nonzero quality
+     * value; of the two supported codings, the one with the higher quality
+     * value is chosen, and {@code gzip} if they are equal.
+     *
+     * @return {@code "gzip"}, {@code "deflate"}, or null if neither is
+     *         acceptable and the body should not be compressed.
+     */
+    public static String chooseContentEncoding(String acceptEncoding) {
+        float wildcard = getQuality(acceptEncoding, "*");
+        float gzip = Math.max(getQuality(acceptEncoding, "gzip"),
+                getQuality(acceptEncoding, "x-gzip"));
+        float deflate = getQuality(acceptEncoding, "deflate");
+
+        if (gzip < 0) {
+            gzip = wildcard;
+        }
+        if (deflate < 0) {
+            deflate = wildcard;
+        }
+        if ((gzip > 0) && (gzip >= deflate)) {
+            return "gzip";
+        } else if (deflate > 0) {
+            return "deflate";
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the quality value that an HTTP {@code Accept} or
+     * {@code Accept-Encoding} header value assigns to the specified media
+     * type or content coding. An element without a {@code q} parameter has
+     * the quality 1; one whose {@code q} parameter is malformed is treated as
+     * having the quality 0.
+     *
+     * @param header the header value, possibly null
+     * @param name the media type or content coding sought, in lower case
+     * @return the quality value, between 0 and 1, of the highest-rated
+     *         element that names {@code name}, or -1 if none does
+     */
+    private static float getQuality(String header, String name) {
+        float quality = -1;
+
+        if (header == null) {
+            return quality;
+        }
+        for (String element : header.split(",")) {
+            String parts[] = element.split(";");
+
+            if (!parts[0].trim().toLowerCase(Locale.US).equals(name)) {
+                continue;
+            }
+
+            float q = 1;
+
+            for (int i = 1; i < parts.length; i++) {
+                String param[] = parts[i].split("=", 2);
+
+                if (param[0].trim().equalsIgnoreCase("q")) {
+                    String value = (param.length < 2) ? "" : param[1].trim();
+
+                    q = QUALITY_VALUE.matcher(value).matches()
+                            ? Float.parseFloat(value) : 0;
+                }
+            }
+            quality = Math.max(quality, q);
+        }
+
+        return quality;
+    }
+
+    /**
+     * Returns true if {@code decodeContent()} can undo the content coding
+     * named by the specified {@code Content-Encoding} header value, possibly
+     * null.
+     */
+    public static boolean isSupportedContentEncoding(String contentEncoding) {
+        String encoding = normalizeContentEncoding(contentEncoding);
+
+        return (encoding.length() == 0) || encoding.equals("identity")
+                || encoding.equals("gzip") || encoding.equals("x-gzip")
+                || encoding.equals("deflate");
+    }
+
+    /**
+     * Wraps a stream from which a body is to be read so as to undo the
+     * specified content coding. A compressed body's header is read
+     * immediately, so a corrupt body may be detected here rather than when
+     * the returned stream is read.
+     *
+     * @param is the raw stream
+     * @param contentEncoding the value of the {@code Content-Encoding} header
+     *        that accompanied the body, possibly null
+     * @throws IOException if the content coding is not supported (see
+     *         {@code isSupportedContentEncoding()}), if the body is not
+     *         validly encoded, or if {@code is} failed
+     */
+    public static InputStream decodeContent(InputStream is,
+            String contentEncoding) throws IOException {
+        String encoding = normalizeContentEncoding(contentEncoding);
+
+        if ((encoding.length() == 0) || encoding.equals("identity")) {
+            return is;
+        } else if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+            return new GZIPInputStream(is, 8192);
+        } else if (encoding.equals("deflate")) {
+            return new InflaterInputStream(is);
+        } else {
+            throw new IOException("Unsupported Content-Encoding '"
+                    + contentEncoding + "'");
+        }
+    }
+
+    /**
+     * Returns the specified {@code Content-Encoding} header value trimmed and
+     * in lower case, or an empty string if it is null
+     */
+    private static String normalizeContentEncoding(String contentEncoding) {
+        return (contentEncoding == null) ? ""
+                : contentEncoding.trim().toLowerCase(Locale.US);
+    }
+
+    /**
+     * Wraps a stream to which a body is to be written so as to apply the
+     * specified content coding. The caller must close (or {@code finish()})
+     * the returned stream for the compressed body to be complete.
+     *
+     * @param os the raw stream
+     * @param contentEncoding a value returned by
+     *        {@code chooseContentEncoding()}
+     * @throws IOException if {@code os} failed
+     */
+    public static OutputStream encodeContent(OutputStream os,
+            String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return os;
+        } else if (contentEncoding.equals("gzip")) {
+            return new GZIPOutputStream(os, 8192);
+        } else if (contentEncoding.equals("deflate")) {
+            return new DeflaterOutputStream(os);
+        } else {
+            throw new IllegalArgumentException(contentEncoding);
+        }
+    }
+}
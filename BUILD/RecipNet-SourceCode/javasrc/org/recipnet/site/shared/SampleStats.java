@@ -16,6 +16,8 @@
  *              to org.recipnet.site.shared; also changed package references
  *              due to source tree reorganization
  * 01-Jun-2006: jobollin reformatted the source and implemented generics
+ * 18-Oct-2026: agent added cache counters via recordCache()
+ * 18-Oct-2026: agent added named counter snapshots via recordCounters()
  */
 
 package org.recipnet.site.shared;
@@ -26,6 +28,7 @@ import java.util.Date;
 import java.util.Map;
 import java.util.TreeMap;
 
+import org.recipnet.common.ObjectCache;
 import org.recipnet.common.PerfTimer;
 import org.recipnet.site.UnexpectedExceptionException;
 
@@ -36,10 +39,16 @@ import org.recipnet.site.UnexpectedExceptionException;
 public class SampleStats implements Serializable, Cloneable {
     private Map<String, Counter> rootCounters;
 
+    private Map<String, CacheCounter> cacheCounters;
+
+    private Map<String, Map<String, Long>> snapshotCounters;
+
     private Date resetDate;
 
     public SampleStats() {
         rootCounters = new TreeMap<String, Counter>();
+        cacheCounters = new TreeMap<String, CacheCounter>();
+        snapshotCounters = new TreeMap<String, Map<String, Long>>();
         resetDate = new Date();
     }
 
@@ -58,6 +67,26 @@ public class SampleStats implements Serializable, Cloneable {
         record(perfTimer);
     }
 
+    /**
+     * Captures the current size and hit, miss, eviction, and expiration
+     * counters of the specified cache under the specified name, replacing any
+     * previously-captured values for that name.
+     */
+    public synchronized void recordCache(String name, ObjectCache<?> cache) {
+        cacheCounters.put(name, new CacheCounter(name, cache));
+    }
+
+    /**
+     * Captures a copy of the specified named counter values under the
+     * specified name, replacing any previously-captured values for that name.
+     * Useful for components, such as the database connection pool, that keep
+     * their own counters.
+     */
+    public synchronized void recordCounters(String name,
+            Map<String, Long> counters) {
+        snapshotCounters.put(name, new TreeMap<String, Long>(counters));
+    }
+
     /**
      * Returns another SampleStats whose counters are set identically to this
      * one.
@@ -67,6 +96,10 @@ public class SampleStats implements Serializable, Cloneable {
         try {
             SampleStats x = (SampleStats) super.clone();
             x.rootCounters = new TreeMap<String, Counter>(this.rootCounters);
+            x.cacheCounters
+                    = new TreeMap<String, CacheCounter>(this.cacheCounters);
+            x.snapshotCounters = new TreeMap<String, Map<String, Long>>(
+                    this.snapshotCounters);
             return x;
         } catch (CloneNotSupportedException cnse) {
             // Can't happen because this class is Cloneable
@@ -76,6 +109,8 @@ public class SampleStats implements Serializable, Cloneable {
 
     public synchronized void reset() {
         rootCounters.clear();
+        cacheCounters.clear();
+        snapshotCounters.clear();
         resetDate = new Date();
     }
 
@@ -89,6 +124,17 @@ public class SampleStats implements Serializable, Cloneable {
         for (Counter counter : rootCounters.values()) {
             counter.printToStream("", out);
         }
+        for (CacheCounter counter : cacheCounters.values()) {
+            counter.printToStream(out);
+        }
+        for (Map.Entry<String, Map<String, Long>> snapshot
+                : snapshotCounters.entrySet()) {
+            out.println(snapshot.getKey() + ":");
+            for (Map.Entry<String, Long> counter
+                    : snapshot.getValue().entrySet()) {
+                out.println("    " + counter.getKey() + "=" + counter.getValue());
+            }
+        }
     }
 
     private static class Counter implements Serializable, Comparable<Counter> {
@@ -170,4 +216,55 @@ public class SampleStats implements Serializable, Cloneable {
             return this.name.compareTo(o.name);
         }
     }
+
+    /**
+     * An immutable snapshot of an {@code ObjectCache}'s counters.
+     */
+    private static class CacheCounter implements Serializable {
+        final String name;
+
+        final int size;
+
+        final int maxSize;
+
+        final long weight;
+
+        final long maxWeight;
+
+        final long hits;
+
+        final long misses;
+
+        final long evictions;
+
+        final long expirations;
+
+        public CacheCounter(String name, ObjectCache<?> cache) {
+            this.name = name;
+            this.size = cache.size();
+            this.maxSize = cache.getMaxSize();
+            this.weight = cache.getTotalWeight();
+            this.maxWeight = cache.getMaxWeight();
+            this.hits = cache.getHitCount();
+            this.misses = cache.getMissCount();
+            this.evictions = cache.getEvictionCount();
+            this.expirations = cache.getExpirationCount();
+        }
+
+        public void printToStream(PrintStream out) {
+            out.println(name + ":");
+            out.println("    size=" + size + "/" + maxSize);
+            if (maxWeight > 0) {
+                out.println("    weight=" + weight + "/" + maxWeight);
+            }
+            out.println("    hits=" + hits);
+            out.println("    misses=" + misses);
+            if (hits + misses > 0) {
+                out.println("    hitRatio=" + (100 * hits / (hits + misses))
+                        + "%");
+            }
+            out.println("    evictions=" + evictions);
+            out.println("    expirations=" + expirations);
+        }
+    }
 }
@@ -0,0 +1,187 @@
+/*
+ * Reciprocal Net project
+ *
+ * SampleWriteBatch.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.shared;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.recipnet.site.RecipnetException;
+import org.recipnet.site.shared.db.SampleInfo;
+
+/**
+ * <p>
+ * A container class that carries several new samples to Sample Manager in a
+ * single remote call, and carries the outcome for each back to the caller.
+ * Every sample in a batch is taken through the same series of workflow
+ * actions, which are fixed when the batch is created; for each sample the
+ * caller supplies one {@code SampleInfo} per action, reflecting the complete
+ * state of the sample after that action. After the batch is processed by
+ * {@code SampleManagerRemote.putSampleInfoBatch()}, each sample has either a
+ * result (the sample as finally written, bearing its new id) or a failure
+ * (the exception that stopped it, and the index of the action that raised
+ * it). A failure affects only the sample to which it pertains.
+ * </p><p>
+ * This class is not thread-safe.
+ * </p>
+ */
+public class SampleWriteBatch implements Serializable {
+
+    /** The workflow action codes, in the order they are performed */
+    private final int actionCodes[];
+
+    /** The sample history comments for each workflow action */
+    private final String comments[];
+
+    /** The id of the user responsible for the writes */
+    private final int userId;
+
+    /** The versions of each sample, one per workflow action */
+    private final List<SampleInfo[]> versions;
+
+    /** The sample as written, for each sample, or {@code null} */
+    private final List<SampleInfo> results;
+
+    /** The exception that stopped each sample, or {@code null} */
+    private final List<RecipnetException> failures;
+
+    /** The index of the action that failed for each sample, or -1 */
+    private final List<Integer> failedActions;
+
+    /**
+     * Initializes a new, empty {@code SampleWriteBatch}
+     *
+     * @param actionCodes the workflow action codes to perform for each sample,
+     *        in order; must contain at least one
+     * @param comments the sample history comments to record for each of the
+     *        workflow actions; must have the same length as
+     *        {@code actionCodes}
+     * @param userId the id of the user responsible for the writes
+     * @throws IllegalArgumentException if the arrays' lengths are unsuitable
+     */
+    public SampleWriteBatch(int actionCodes[], String comments[], int userId) {
+        if ((actionCodes.length == 0)
+                || (comments.length != actionCodes.length)) {
+            throw new IllegalArgumentException();
+        }
+        this.actionCodes = actionCodes.clone();
+        this.comments = comments.clone();
+        this.userId = userId;
+        this.versions = new ArrayList<SampleInfo[]>();
+        this.results = new ArrayList<SampleInfo>();
+        this.failures = new ArrayList<RecipnetException>();
+        this.failedActions = new ArrayList<Integer>();
+    }
+
+    /**
+     * Adds a new sample to this batch.
+     *
+     * @param sampleVersions the complete state of the sample after each of
+     *        the workflow actions, in order; the first should be a new,
+     *        unwritten sample such as the nullary
+     *        {@code SampleManagerRemote.getSampleInfo()} returns
+     * @return the index of the sample within this batch
+     * @throws IllegalArgumentException if the number of versions differs from
+     *         the number of workflow actions
+     */
+    public int addSample(SampleInfo... sampleVersions) {
+        if (sampleVersions.length != actionCodes.length) {
+            throw new IllegalArgumentException();
+        }
+        versions.add(sampleVersions.clone());
+        results.add(null);
+        failures.add(null);
+        failedActions.add(Integer.valueOf(-1));
+
+        return versions.size() - 1;
+    }
+
+    /** Returns the number of samples in this batch */
+    public int size() {
+        return versions.size();
+    }
+
+    /** Returns the number of workflow actions performed for each sample */
+    public int getActionCount() {
+        return actionCodes.length;
+    }
+
+    /** Returns the workflow action code for the specified action */
+    public int getActionCode(int action) {
+        return actionCodes[action];
+    }
+
+    /** Returns the sample history comments for the specified action */
+    public String getComments(int action) {
+        return comments[action];
+    }
+
+    /** Returns the id of the user responsible for the writes */
+    public int getUserId() {
+        return userId;
+    }
+
+    /**
+     * Returns the state of the specified sample after the specified workflow
+     * action, as supplied to {@code addSample()}
+     */
+    public SampleInfo getSampleVersion(int sample, int action) {
+        return versions.get(sample)[action];
+    }
+
+    /**
+     * Records that the specified sample was written successfully; intended
+     * for use by Sample Manager.
+     *
+     * @param sample the index of the sample
+     * @param result the sample as finally written
+     */
+    public void recordResult(int sample, SampleInfo result) {
+        results.set(sample, result);
+    }
+
+    /**
+     * Records that the specified sample could not be written; intended for
+     * use by Sample Manager.
+     *
+     * @param sample the index of the sample
+     * @param action the index of the workflow action that failed; the
+     *        actions before it were performed
+     * @param failure the exception that stopped the sample
+     */
+    public void recordFailure(int sample, int action,
+            RecipnetException failure) {
+        failures.set(sample, failure);
+        failedActions.set(sample, Integer.valueOf(action));
+    }
+
+    /**
+     * Returns the specified sample as finally written, or {@code null} if it
+     * has not been written
+     */
+    public SampleInfo getResult(int sample) {
+        return results.get(sample);
+    }
+
+    /**
+     * Returns the exception that stopped the specified sample, or
+     * {@code null} if none did
+     */
+    public RecipnetException getFailure(int sample) {
+        return failures.get(sample);
+    }
+
+    /**
+     * Returns the index of the workflow action that failed for the specified
+     * sample, or -1 if none did; the actions before it were performed
+     */
+    public int getFailedAction(int sample) {
+        return failedActions.get(sample).intValue();
+    }
+}
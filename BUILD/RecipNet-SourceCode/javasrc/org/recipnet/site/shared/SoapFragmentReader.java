@@ -0,0 +1,386 @@
+/*
+ * Reciprocal Net project
+ *
+ * SoapFragmentReader.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.shared;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * <p>
+ * Reads a SOAP document of the form written by
+ * {@code SoapUtil.writeSoapDocument()} from a character stream, handing the
+ * caller one body fragment (for instance, one &lt;message&gt; element) at a
+ * time. This is the streaming counterpart of calling
+ * {@code SoapUtil.decodeSoapDocument()} and then
+ * {@code SoapUtil.extractFragmentsFromXmlDocument()} on the whole document:
+ * the envelope is checked by a StAX parser as characters arrive, the same
+ * characters are scanned for fragments as they go by, and neither the
+ * complete document text nor a DOM tree of it is ever built.
+ * </p><p>
+ * Each fragment is returned exactly as it appeared in the document, character
+ * for character, so that a digital signature computed over it by the sender
+ * remains verifiable. The same restrictions apply as for
+ * {@code extractFragmentsFromXmlDocument()}: the document should not contain
+ * CDATA sections or fragment elements nested within one another.
+ * </p><p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class SoapFragmentReader {
+
+    /** The namespace URI required on the envelope's {@code soap-env} prefix */
+    private static final String SOAP_ENVELOPE_URI
+            = "http://schemas.xmlsoap.org/soap/envelope/";
+
+    /**
+     * Creates the StAX parsers. Synchronize on this object before utilizing
+     * it.
+     */
+    private static final XMLInputFactory inputFactory
+            = XMLInputFactory.newInstance();
+
+    /** The StAX parser that checks the envelope */
+    private final XMLStreamReader parser;
+
+    /**
+     * The characters that the parser has consumed but the fragment scanner has
+     * not yet discarded; populated by {@code TeeReader}.
+     */
+    private final StringBuilder pending = new StringBuilder();
+
+    /** Fragments that have been scanned but not yet returned to the caller */
+    private final Queue<String> fragments = new LinkedList<String>();
+
+    /** Matches the start tag of a fragment element */
+    private final Pattern fragmentStart;
+
+    /** Matches the end tag of a fragment element */
+    private final Pattern fragmentEnd;
+
+    /**
+     * The position within {@code pending} of the start of the fragment
+     * currently being scanned, or -1 if none has been found yet
+     */
+    private int fragmentStartIndex = -1;
+
+    /**
+     * The position within {@code pending} at which to resume searching for
+     * the end of the current fragment
+     */
+    private int fragmentEndSearchIndex;
+
+    /** The underlying character source, wrapped for the parser's use */
+    private final TeeReader reader;
+
+    /** The qualified name expected for the SOAP base element */
+    private final String baseElementName;
+
+    /** The XML namespace prefix expected on the SOAP base element */
+    private final String prefix;
+
+    /** The XML namespace URI expected on the SOAP base element */
+    private final String namespaceUri;
+
+    /** The number of elements currently open in the document */
+    private int depth = 0;
+
+    /** The number of {@code soap-env:Body} elements seen so far */
+    private int bodyCount = 0;
+
+    /**
+     * The depth of the {@code soap-env:Body} element while it is open, or 0
+     * otherwise
+     */
+    private int bodyDepth = 0;
+
+    /** The number of SOAP base elements seen so far */
+    private int baseElementCount = 0;
+
+    /** Set once the end of the document has been reached and checked */
+    private boolean finished = false;
+
+    /**
+     * Initializes a new {@code SoapFragmentReader} that reads from the
+     * specified character source. The arguments other than {@code reader} are
+     * interpreted as by {@code SoapUtil.decodeSoapDocument()}.
+     *
+     * @param reader the source of the SOAP document's characters. The caller
+     *        is responsible for closing it.
+     * @param localName the local name of the SOAP base element.
+     * @param prefix the XML element name prefix expected in the SOAP header.
+     * @param namespaceUri the XML namespace expected in the SOAP header.
+     * @param elementName the name of the XML element that delimits each
+     *        fragment to be read. For instance "message".
+     * @throws SAXException if the parser could not be started.
+     */
+    public SoapFragmentReader(Reader reader, String localName, String prefix,
+            String namespaceUri, String elementName) throws SAXException {
+        this.reader = new TeeReader(reader);
+        this.baseElementName = prefix + ":" + localName;
+        this.prefix = prefix;
+        this.namespaceUri = namespaceUri;
+        this.fragmentStart = Pattern.compile("<\\s*?" + elementName
+                + "[>\\s]");
+        this.fragmentEnd = Pattern.compile("<\\s*?/" + elementName
+                + "\\s*?>");
+        try {
+            synchronized (inputFactory) {
+                this.parser = inputFactory.createXMLStreamReader(this.reader);
+            }
+        } catch (XMLStreamException ex) {
+            throw new SAXException("Unable to start the XML parser", ex);
+        }
+    }
+
+    /**
+     * Returns the next fragment from the document, or null once the end of
+     * the document has been reached. Reading stops when a fragment becomes
+     * available, so fragments are returned before the rest of the document
+     * has been received; but the document is not known to be valid until
+     * this method has returned null.
+     *
+     * @throws IOException if the underlying character source failed.
+     * @throws SAXException if the document could not be parsed or was not a
+     *         SOAP document of the expected form.
+     */
+    public String nextFragment() throws IOException, SAXException {
+        while (fragments.isEmpty() && !finished) {
+            try {
+                if (parser.hasNext()) {
+                    checkEvent(parser.next());
+                } else {
+                    finish();
+                }
+            } catch (XMLStreamException ex) {
+                if (ex.getNestedException() instanceof IOException) {
+                    throw (IOException) ex.getNestedException();
+                }
+                throw new SAXException("Error while parsing SOAP document: "
+                        + ex.getMessage(), ex);
+            }
+        }
+
+        return fragments.poll();
+    }
+
+    /**
+     * Checks one parsing event against the structure of a SOAP document, as
+     * {@code SoapUtil.decodeSoapDocument()} would.
+     */
+    private void checkEvent(int event) throws SAXException {
+        switch (event) {
+            case XMLStreamConstants.START_ELEMENT:
+                String name = getQualifiedName();
+
+                depth++;
+                if (depth == 1) {
+                    if (!name.equals("soap-env:Envelope")) {
+                        throw new SAXParseException(
+                                "<soap-env:Envelope> element expected, found <"
+                                + name + "> instead", null);
+                    }
+                    assertAttributeCount(name, 1);
+                    if (!SOAP_ENVELOPE_URI.equals(
+                            parser.getNamespaceURI("soap-env"))) {
+                        throw new SAXNotSupportedException("Unexpected URI for"
+                                + " soap-env namespace");
+                    }
+                } else if (name.equals("soap-env:Body")) {
+                    if (++bodyCount > 1) {
+                        throw new SAXNotSupportedException("Multiple"
+                                + " <soap-env:Body> elements not supported");
+                    }
+                    assertAttributeCount(name, 0);
+                    bodyDepth = depth;
+                } else if (name.equals(baseElementName) && (bodyDepth > 0)) {
+                    if (++baseElementCount > 1) {
+                        throw new SAXNotSupportedException("Multiple <"
+                                + baseElementName
+                                + "> elements not supported");
+                    }
+                    assertAttributeCount(name, 1);
+                    if (!namespaceUri.equals(
+                            parser.getNamespaceURI(prefix))) {
+                        throw new SAXNotSupportedException("Expected the"
+                                + " namespace URI on the SOAP base element to"
+                                + " be '" + namespaceUri + "'");
+                    }
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                if (depth == bodyDepth) {
+                    bodyDepth = 0;
+                }
+                depth--;
+                break;
+            case XMLStreamConstants.END_DOCUMENT:
+                finish();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Called at the end of the document; verifies that the required elements
+     * were present and scans any characters the parser left unread.
+     */
+    private void finish() throws SAXException {
+        if (bodyCount == 0) {
+            throw new SAXParseException("<soap-env:Body> element expected",
+                    null);
+        } else if (baseElementCount == 0) {
+            throw new SAXParseException("<" + baseElementName
+                    + "> element expected", null);
+        }
+        try {
+            parser.close();
+            reader.drain();
+        } catch (XMLStreamException ex) {
+            throw new SAXException("Error while parsing SOAP document: "
+                    + ex.getMessage(), ex);
+        } catch (IOException ex) {
+            // The document itself is complete; ignore trailing garbage.
+        }
+        finished = true;
+    }
+
+    /**
+     * Returns the name of the current element as it appeared in the
+     * document, including any prefix.
+     */
+    private String getQualifiedName() {
+        String elementPrefix = parser.getPrefix();
+
+        return ((elementPrefix == null) || (elementPrefix.length() == 0))
+                ? parser.getLocalName()
+                : elementPrefix + ":" + parser.getLocalName();
+    }
+
+    /**
+     * Throws a SAXNotRecognizedException if the number of attributes on the
+     * current element, counting namespace declarations, is not equal to the
+     * specified number. The counterpart of
+     * {@code DomUtil.assertAttributeCount()}.
+     */
+    private void assertAttributeCount(String name, int count)
+            throws SAXNotRecognizedException {
+        int actualCount
+                = parser.getAttributeCount() + parser.getNamespaceCount();
+
+        if (actualCount != count) {
+            throw new SAXNotRecognizedException("Expected to find " + count
+                    + " attributes on element <" + name + ", found "
+                    + actualCount + " instead");
+        }
+    }
+
+    /**
+     * Scans the characters accumulated in {@code pending} for complete
+     * fragments, queuing each one found and discarding characters that can no
+     * longer be part of a fragment. Fragments are delimited exactly as by the
+     * regular expression in {@code SoapUtil.extractFragmentsFromXmlDocument()}.
+     */
+    private void scanPending() {
+        while (true) {
+            if (fragmentStartIndex < 0) {
+                Matcher start = fragmentStart.matcher(pending);
+
+                if (!start.find()) {
+                    // Retain only what might be the beginning of a start tag.
+                    int lastTag = pending.lastIndexOf("<");
+
+                    pending.delete(0, (lastTag < 0) ? pending.length()
+                            : lastTag);
+                    return;
+                }
+                pending.delete(0, start.start());
+                fragmentStartIndex = 0;
+                fragmentEndSearchIndex = start.end() - start.start() + 1;
+            }
+            if (fragmentEndSearchIndex > pending.length()) {
+                return;
+            }
+
+            Matcher end = fragmentEnd.matcher(pending);
+
+            if (!end.find(fragmentEndSearchIndex)) {
+                // Resume at the last tag, which might be an incomplete end tag.
+                fragmentEndSearchIndex = Math.max(fragmentEndSearchIndex,
+                        pending.lastIndexOf("<"));
+                return;
+            }
+            fragments.add(pending.substring(0, end.end()));
+            pending.delete(0, end.end());
+            fragmentStartIndex = -1;
+        }
+    }
+
+    /**
+     * A {@code Reader} that passes the characters it reads to the fragment
+     * scanner on their way to the parser.
+     */
+    private class TeeReader extends Reader {
+
+        /** The underlying character source */
+        private final Reader in;
+
+        TeeReader(Reader in) {
+            this.in = in;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(char[] buffer, int offset, int length)
+                throws IOException {
+            int count = in.read(buffer, offset, length);
+
+            if (count > 0) {
+                pending.append(buffer, offset, count);
+                scanPending();
+            }
+
+            return count;
+        }
+
+        /**
+         * Reads and scans any characters that remain after the end of the
+         * document.
+         */
+        void drain() throws IOException {
+            char buffer[] = new char[4096];
+
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // keep reading
+            }
+        }
+
+        /**
+         * {@inheritDoc}. The underlying source is left open; its owner is
+         * responsible for closing it.
+         */
+        @Override
+        public void close() {
+            // nothing to do
+        }
+    }
+}
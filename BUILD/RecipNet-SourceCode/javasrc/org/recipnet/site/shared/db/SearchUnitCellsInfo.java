@@ -5,6 +5,7 @@
  *
  * 18-May-2005: ekoperda wrote first draft
  * 31-May-2006: jobollin reformatted the source
+ * 18-Oct-2026: agent added constructors
  */
 
 package org.recipnet.site.shared.db;
@@ -65,6 +66,29 @@ public class SearchUnitCellsInfo {
      */
     public double cStarPrime;
 
+    /** Create an empty object */
+    public SearchUnitCellsInfo() {
+        sampleId = SampleInfo.INVALID_SAMPLE_ID;
+    }
+
+    /**
+     * Initializes a new SearchUnitCellsInfo with values from the current row
+     * of the specified {@code ResultSet}
+     * 
+     * @param rs the {@code ResultSet} from which to obtain this object's
+     *        attributes
+     */
+    public SearchUnitCellsInfo(ResultSet rs) throws SQLException {
+        sampleId = rs.getInt("sample_id");
+        aPrime = rs.getDouble("aprime");
+        bPrime = rs.getDouble("bprime");
+        cPrime = rs.getDouble("cprime");
+        vPrime = rs.getDouble("vprime");
+        aStarPrime = rs.getDouble("astarprime");
+        bStarPrime = rs.getDouble("bstarprime");
+        cStarPrime = rs.getDouble("cstarprime");
+    }
+
     /** Store this object in the current row of the provided db resultset */
     public void dbStore(ResultSet rs) throws SQLException {
         rs.updateInt("sample_id", this.sampleId);
@@ -6,16 +6,19 @@
  * 25-Feb-2005: midurbin wrote first draft
  * 30-May-2006: jobollin reformatted the source, changed the second argument to
  *              getWhereClauseFragment() into a List<Object>
+ * 18-Oct-2026: agent added AclSC.getMatches() and AclSC.isExactInMemory()
  */
 
 package org.recipnet.site.shared.search;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.recipnet.site.shared.bl.SampleWorkflowBL;
 import org.recipnet.site.shared.db.LabInfo;
 import org.recipnet.site.shared.db.ProviderInfo;
 import org.recipnet.site.shared.db.SampleAccessInfo;
+import org.recipnet.site.shared.db.SampleInfo;
 import org.recipnet.site.shared.db.UserInfo;
 
 /**
@@ -94,6 +97,36 @@ public class AuthorizationSC extends SearchConstraintGroup {
                     + ".accessLevel >= " + SampleAccessInfo.READ_ONLY + ")";
         }
 
+        /**
+         * Overrides {@code SearchConstraint}; the current implementation
+         * looks for an ACL entry on the sample that grants the user
+         * {@code READ_ONLY} access or better.
+         */
+        @Override
+        public boolean getMatches(SampleInfo sample,
+                @SuppressWarnings("unused") Collection<FieldMatchInfo> matches,
+                @SuppressWarnings("unused")
+                Collection<FieldMatchInfo> mismatches) {
+            for (SampleAccessInfo access : sample.accessInfo) {
+                if ((access.userId == this.userId)
+                        && (access.accessLevel >= SampleAccessInfo.READ_ONLY)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Overrides {@code SearchConstraint}; the search for an ACL entry
+         * decides exactly as the database does, at least within groups that
+         * are not negated.
+         */
+        @Override
+        public boolean isExactInMemory() {
+            return true;
+        }
+
         /** Equality is based on userId and class. */
         @Override
         public boolean equals(Object obj) {
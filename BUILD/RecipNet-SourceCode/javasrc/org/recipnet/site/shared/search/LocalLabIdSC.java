@@ -6,11 +6,15 @@
  * 25-Feb-2005: midurbin wrote first draft
  * 30-May-2006: jobollin reformatted the source, changed the second argument to
  *              getWhereClauseFragment() into a List<Object>
+ * 18-Oct-2026: agent added getMatches() and isExactInMemory()
  */
 package org.recipnet.site.shared.search;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.recipnet.site.shared.db.SampleInfo;
+
 /**
  * A {@code TextComparisonSC} to limit search results to
  * those samples with localLabId's that are equal or similar to the given
@@ -62,6 +66,39 @@ public class LocalLabIdSC extends TextComparisonSC {
                 + convertOperatorToString(operator) + " ?";
     }
 
+    /**
+     * Overrides {@code SearchConstraint}; the current implementation compares
+     * the sample's local lab id with the required value or value fragment,
+     * without regard to capitalization.
+     */
+    @Override
+    public boolean getMatches(SampleInfo sample,
+            Collection<FieldMatchInfo> matches, @SuppressWarnings("unused")
+            Collection<FieldMatchInfo> mismatches) {
+        FieldMatchInfo.MatchingPart stringMatch = ((sample.localLabId == null)
+                ? null : getStringMatch(this.localLabIdFragment,
+                        sample.localLabId, this.operator));
+
+        if (stringMatch != null) {
+            if (matches != null) {
+                matches.add(new FieldMatchInfo(SampleInfo.LOCAL_LAB_ID,
+                        stringMatch, this, sample));
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Overrides {@code SearchConstraint}; the comparison of local lab ids in
+     * {@code getMatches()} decides exactly as the database does.
+     */
+    @Override
+    public boolean isExactInMemory() {
+        return true;
+    }
+
     /** Equality is based on class, localLabIdFragment and operator. */
     @Override
     public boolean equals(Object obj) {
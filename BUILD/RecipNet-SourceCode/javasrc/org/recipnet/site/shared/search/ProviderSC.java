@@ -8,12 +8,16 @@
  *              samples table to reflect DB update
  * 30-May-2006: jobollin reformatted the source, changed the second argument to
  *              getWhereClauseFragment() into a List<Object>
+ * 18-Oct-2026: agent added getMatches() and isExactInMemory()
  */
 
 package org.recipnet.site.shared.search;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.recipnet.site.shared.db.SampleInfo;
+
 /**
  * A {@code SearchConstraint} to limit search results to those samples that came
  * from a given provider.
@@ -57,6 +61,34 @@ public class ProviderSC extends SearchConstraint {
                 + ".current_provider_id = ?";
     }
 
+    /**
+     * Overrides {@code SearchConstraint}; the current implementation compares
+     * the provider id of the sample's current version with the required one.
+     */
+    @Override
+    public boolean getMatches(SampleInfo sample,
+            Collection<FieldMatchInfo> matches, @SuppressWarnings("unused")
+            Collection<FieldMatchInfo> mismatches) {
+        if (sample.dataInfo.providerId == this.providerId) {
+            if (matches != null) {
+                matches.add(new FieldMatchInfo(
+                        SampleInfo.MOST_RECENT_PROVIDER_ID, this, sample));
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Overrides {@code SearchConstraint}; the comparison of provider ids in
+     * {@code getMatches()} decides exactly as the database does.
+     */
+    @Override
+    public boolean isExactInMemory() {
+        return true;
+    }
+
     /** Equality is based on class and providerId. */
     @Override
     public boolean equals(Object obj) {
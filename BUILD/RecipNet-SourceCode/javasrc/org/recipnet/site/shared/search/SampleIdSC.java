@@ -6,12 +6,16 @@
  * 25-Feb-2005: midurbin wrote first draft
  * 30-May-2006: jobollin reformatted the source, changed the second argument to
  *              getWhereClauseFragment() into a List<Object>
+ * 18-Oct-2026: agent added getMatches() and isExactInMemory()
  */
 
 package org.recipnet.site.shared.search;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.recipnet.site.shared.db.SampleInfo;
+
 /**
  * A {@code SearchConstraint} to limit search results to those samples with
  * sampleId's that are equal to the given sampleId.
@@ -44,6 +48,33 @@ public class SampleIdSC extends SearchConstraint {
         return tableTracker.getTableAlias("samples", this) + ".id = ?";
     }
 
+    /**
+     * Overrides {@code SearchConstraint}; the current implementation compares
+     * the sample's id with the required one.
+     */
+    @Override
+    public boolean getMatches(SampleInfo sample,
+            Collection<FieldMatchInfo> matches, @SuppressWarnings("unused")
+            Collection<FieldMatchInfo> mismatches) {
+        if (sample.id == this.sampleId) {
+            if (matches != null) {
+                matches.add(new FieldMatchInfo(SampleInfo.ID, this, sample));
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Overrides {@code SearchConstraint}; the comparison of sample ids in
+     * {@code getMatches()} decides exactly as the database does.
+     */
+    @Override
+    public boolean isExactInMemory() {
+        return true;
+    }
+
     /** Equality is based on class and sampleId. */
     @Override
     public boolean equals(Object obj) {
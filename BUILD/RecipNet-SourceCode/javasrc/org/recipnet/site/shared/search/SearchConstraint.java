@@ -7,6 +7,7 @@
  * 15-Aug-2005: midurbin added getMatches()
  * 30-May-2006: jobollin reformatted the source, changed the second argument to
  *              getWhereClauseFragment() into a List<Object>
+ * 18-Oct-2026: agent added isExactInMemory()
  */
 
 package org.recipnet.site.shared.search;
@@ -170,4 +171,22 @@ public abstract class SearchConstraint implements Serializable {
             throw new UnsupportedOperationException();
         }
     }
+
+    /**
+     * Determines whether {@link #getMatches(SampleInfo, Collection,
+     * Collection)}, invoked without hints (that is, with two non-null
+     * collections), decides exactly as the database search described by
+     * {@link #getWhereClauseFragment(SearchTableTracker, List,
+     * SearchConstraintExtraInfo)} would for a fully populated sample. Many
+     * implementations of {@code getMatches()} are approximations meant only
+     * for highlighting; core relies upon this method to decide whether it may
+     * bring cached search results up to date in memory. The base class
+     * implementation returns {@code false}.
+     * 
+     * @return {@code true} if {@code getMatches()} is exact for this
+     *         constraint, {@code false} otherwise
+     */
+    public boolean isExactInMemory() {
+        return false;
+    }
 }
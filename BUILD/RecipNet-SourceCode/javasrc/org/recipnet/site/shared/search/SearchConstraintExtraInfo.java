@@ -5,6 +5,8 @@
  *
  * 25-Feb-2005: midurbin wrote first draft
  * 30-May-2006: jobollin reformatted the source
+ * 18-Oct-2026: agent added the unitCellsIndex property
+ * 18-Oct-2026: agent added withoutUnitCellsIndex()
  */
 
 package org.recipnet.site.shared.search;
@@ -29,6 +31,12 @@ public class SearchConstraintExtraInfo {
      */
     private final Set<Integer> localLabIds;
 
+    /**
+     * An in-memory index of the {@code searchUnitCells} table, or null if none
+     * is available. This is used by {@code UnitCellSC}.
+     */
+    private final SearchUnitCellsIndex unitCellsIndex;
+
     /**
      * Initializes a new {@code SearchConstraintExtraInfo} for use as a
      * parameter to {@code SearchConstraint.getWhereClauseFragment()}.
@@ -39,8 +47,26 @@ public class SearchConstraintExtraInfo {
      *        this constructor
      */
     public SearchConstraintExtraInfo(Collection<Integer> localLabIds) {
+        this(localLabIds, null);
+    }
+
+    /**
+     * Initializes a new {@code SearchConstraintExtraInfo} for use as a
+     * parameter to {@code SearchConstraint.getWhereClauseFragment()}.
+     * 
+     * @param localLabIds a {@code Collection} containing the ID
+     *        ({@code Integer}) for each lab hosted at the local site; no
+     *        reference to this collection is retained beyond the completion of
+     *        this constructor
+     * @param unitCellsIndex an index of the {@code searchUnitCells} table that
+     *        is consistent with the database the search will run against, or
+     *        null if none is available
+     */
+    public SearchConstraintExtraInfo(Collection<Integer> localLabIds,
+            SearchUnitCellsIndex unitCellsIndex) {
         this.localLabIds = Collections.unmodifiableSet(
                 new HashSet<Integer>(localLabIds));
+        this.unitCellsIndex = unitCellsIndex;
     }
 
     /**
@@ -50,4 +76,27 @@ public class SearchConstraintExtraInfo {
     public Collection<Integer> getLocalLabIds() {
         return this.localLabIds;
     }
+
+    /**
+     * Returns a {@code SearchConstraintExtraInfo} like this one but offering
+     * no index of the {@code searchUnitCells} table, or this object itself if
+     * it offers none. {@code SearchConstraintGroup} passes such an object to
+     * the children of a negated group: a sample with no {@code searchUnitCells}
+     * row fails a reduced cell constraint rendered as SQL range predicates by
+     * yielding NULL, which negation preserves, but fails one rendered from the
+     * index's sample ids by yielding false, which negation turns into a match.
+     */
+    public SearchConstraintExtraInfo withoutUnitCellsIndex() {
+        return (this.unitCellsIndex == null) ? this
+                : new SearchConstraintExtraInfo(this.localLabIds, null);
+    }
+
+    /**
+     * Returns the index of the {@code searchUnitCells} table provided to this
+     * {@code SearchConstraintExtraInfo} at construction time, or null if none
+     * was provided.
+     */
+    public SearchUnitCellsIndex getUnitCellsIndex() {
+        return this.unitCellsIndex;
+    }
 }
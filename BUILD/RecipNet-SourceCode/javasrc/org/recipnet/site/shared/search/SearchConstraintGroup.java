@@ -7,6 +7,9 @@
  * 15-Aug-2005: midurbin added getMatches(), isHypotheticalChildKnownToMatch(),
  *              isHypotheticalChildKnownToMismatch()
  * 30-May-2006: jobollin reformatted the source
+ * 18-Oct-2026: agent added isExactInMemory()
+ * 18-Oct-2026: agent modified getWhereClauseFragment() to withhold any
+ *              SearchUnitCellsIndex from the children of NOR and NAND groups
  */
 
 package org.recipnet.site.shared.search;
@@ -190,7 +193,10 @@ public class SearchConstraintGroup extends SearchConstraint {
      * children that return values from their implementation of
      * {@code getWhereClauseFragment()} this method will return the empty
      * {@code String}. If more than one child generates a WHERE condition the
-     * operator will be applied and paretheses will surround the group.
+     * operator will be applied and paretheses will surround the group. The
+     * children of a NOR or NAND group are not offered any
+     * {@code SearchUnitCellsIndex}; see
+     * {@code SearchConstraintExtraInfo.withoutUnitCellsIndex()}.
      */
     @Override
     public String getWhereClauseFragment(SearchTableTracker tableTracker,
@@ -204,6 +210,10 @@ public class SearchConstraintGroup extends SearchConstraint {
          */
         int contributingChildCount = 0;
 
+        if ((operator == NAND) || (operator == NOR)) {
+            scei = scei.withoutUnitCellsIndex();
+        }
+
         /*
          * iterate through the children to construct the WHERE clause for the
          * group
@@ -279,6 +289,26 @@ public class SearchConstraintGroup extends SearchConstraint {
         return hashCode;
     }
 
+    /**
+     * Overrides {@code SearchConstraint}; an AND or OR group is exact if every
+     * one of its children is. A NOR or NAND group never is: the database
+     * negates conditions on missing (NULL) columns and outer-joined rows in
+     * ways that {@code getMatches()} does not reproduce.
+     */
+    @Override
+    public boolean isExactInMemory() {
+        if ((this.operator != AND) && (this.operator != OR)) {
+            return false;
+        }
+        for (SearchConstraint child : this.children) {
+            if (!child.isExactInMemory()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Overrides {@code SearchConstraint}; the current implementation delegates
      * to its children, consolidating the generated {@code FieldMatchInfo}
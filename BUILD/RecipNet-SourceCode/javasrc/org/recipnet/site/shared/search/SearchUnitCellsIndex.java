@@ -0,0 +1,39 @@
+/*
+ * Reciprocal Net project
+ *
+ * SearchUnitCellsIndex.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.shared.search;
+
+/**
+ * An index over the contents of the database table {@code searchUnitCells}
+ * that can identify samples whose precomputed reduced cells fall within a
+ * given range more quickly than the database can. An implementation may be
+ * made available to {@code UnitCellSC} via
+ * {@code SearchConstraintExtraInfo}, in which case the constraint matches
+ * against the sample ids supplied by the index instead of against the table.
+ */
+public interface SearchUnitCellsIndex {
+
+    /**
+     * Returns the ids of those samples whose {@code searchUnitCells} row has,
+     * for each specified column, a value strictly greater than the
+     * corresponding minimum and strictly less than the corresponding maximum.
+     *
+     * @param columnNames the names of the {@code searchUnitCells} columns to
+     *        be tested
+     * @param minValues the exclusive lower bound for each named column
+     * @param maxValues the exclusive upper bound for each named column
+     * @return the matching sample ids in ascending order, or null if the index
+     *         declines to answer this query (for instance because too many
+     *         samples match), in which case the caller should test the
+     *         database table directly
+     * @throws IllegalArgumentException if a column name is not recognized or
+     *         the arrays' lengths differ
+     */
+    int[] findSampleIds(String[] columnNames, double[] minValues,
+            double[] maxValues);
+}
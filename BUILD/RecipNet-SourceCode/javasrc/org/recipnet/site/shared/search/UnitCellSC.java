@@ -5,10 +5,14 @@
  *
  * 22-Mar-2005: ekoperda wrote first draft
  * 30-May-2006: jobollin reformatted the source
+ * 18-Oct-2026: agent added getWhereClauseFragment() to take advantage of a
+ *              SearchUnitCellsIndex when one is available
  */
 
 package org.recipnet.site.shared.search;
 
+import java.util.List;
+
 import org.recipnet.site.shared.bl.SampleMathBL;
 import org.recipnet.site.shared.db.SampleDataInfo;
 import org.recipnet.site.shared.db.SampleInfo;
@@ -67,6 +71,18 @@ import org.recipnet.site.shared.db.SearchUnitCellsInfo;
  * {@code SearchConstraintGroup} and generates a number of simple search
  * constraints that live within the group. Future implementations may utilize
  * other approaches.
+ * </p><p>
+ * Each of those simple constraints tests a single column of the
+ * {@code searchUnitCells} table, and the database can use an index on only
+ * one of them. In {@code MATCH_REDUCED_CELLS} mode, therefore, this
+ * constraint prefers to consult the {@code SearchUnitCellsIndex} (if any)
+ * offered by the {@code SearchConstraintExtraInfo}, which tests all the
+ * columns at once, and to pass the resulting sample ids to the database
+ * instead. The two forms differ only for samples that have no
+ * {@code searchUnitCells} row, which fail the range predicates by yielding
+ * NULL but fail the sample id test by yielding false; so that negation does
+ * not turn the latter into a match, {@code SearchConstraintGroup} offers no
+ * index beneath a NOR or NAND group.
  * </p>
  */
 public class UnitCellSC extends SearchConstraintGroup {
@@ -238,6 +254,62 @@ public class UnitCellSC extends SearchConstraintGroup {
         }
     }
 
+    /**
+     * Overrides {@code SearchConstraintGroup}; in {@code MATCH_REDUCED_CELLS}
+     * mode, if {@code scei} offers a {@code SearchUnitCellsIndex} that is
+     * willing to answer the query, the current implementation returns an SQL
+     * where clause fragment that matches the sample ids found by the index.
+     * Otherwise, the superclass's fragment is returned.
+     */
+    @Override
+    public String getWhereClauseFragment(SearchTableTracker tableTracker,
+            List<Object> parameters, SearchConstraintExtraInfo scei) {
+        SearchUnitCellsIndex index = scei.getUnitCellsIndex();
+        
+        if ((this.mode == Mode.MATCH_REDUCED_CELLS) && (index != null)
+                && !getChildren().isEmpty()) {
+            int count = getChildren().size();
+            String[] columnNames = new String[count];
+            double[] minValues = new double[count];
+            double[] maxValues = new double[count];
+            int i = 0;
+
+            for (SearchConstraint child : getChildren()) {
+                UnitCellSearchIndexSC indexSc = (UnitCellSearchIndexSC) child;
+
+                columnNames[i] = indexSc.getColumnName();
+                minValues[i] = indexSc.getMinValue();
+                maxValues[i] = indexSc.getMaxValue();
+                i++;
+            }
+
+            int[] sampleIds
+                    = index.findSampleIds(columnNames, minValues, maxValues);
+
+            if (sampleIds != null) {
+                if (sampleIds.length == 0) {
+                    return "(0 = 1)";
+                }
+
+                StringBuilder sb = new StringBuilder(16 + 8 * sampleIds.length);
+
+                sb.append(tableTracker.getTableAlias("samples", this));
+                sb.append(".id IN (");
+                for (i = 0; i < sampleIds.length; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(sampleIds[i]);
+                }
+                sb.append(')');
+
+                return sb.toString();
+            }
+        }
+
+        return super.getWhereClauseFragment(tableTracker, parameters, scei);
+    }
+
     /** Simple getter */
     public Mode getMode() {
         return this.mode;
@@ -6,6 +6,7 @@
  * 11-May-2005: ekoperda wrote first draft
  * 30-May-2006: jobollin reformatted the source, changed the second argument to
  *              getWhereClauseFragment() into a List<Object>
+ * 18-Oct-2026: agent added getColumnName(), getMinValue(), and getMaxValue()
  */
 
 package org.recipnet.site.shared.search;
@@ -42,13 +43,27 @@ public class UnitCellSearchIndexSC extends SearchConstraint {
         this.percentErrorTolerance = percentErrorTolerance;
     }
 
+    /** Gets the column name that was provided to the constructor. */
+    String getColumnName() {
+        return this.columnName;
+    }
+
+    /** Gets the exclusive lower bound on matching values. */
+    double getMinValue() {
+        return this.value - (this.value * this.percentErrorTolerance / 100);
+    }
+
+    /** Gets the exclusive upper bound on matching values. */
+    double getMaxValue() {
+        return this.value + (this.value * this.percentErrorTolerance / 100);
+    }
+
     /** {@inheritDoc} */
     @Override
     public String getWhereClauseFragment(SearchTableTracker tableTracker,
             List<Object> parameters, @SuppressWarnings("unused")
             SearchConstraintExtraInfo scei) {
         String tableAlias = tableTracker.getTableAlias("searchUnitCells", this);
-        double margin = this.value * this.percentErrorTolerance / 100;
         StringBuilder sb = new StringBuilder(128);
         
         sb.append("(");
@@ -60,8 +75,8 @@ public class UnitCellSearchIndexSC extends SearchConstraint {
         sb.append(".");
         sb.append(this.columnName);
         sb.append(" < ?)");
-        parameters.add(this.value - margin);
-        parameters.add(this.value + margin);
+        parameters.add(getMinValue());
+        parameters.add(getMaxValue());
         
         return sb.toString();
     }
@@ -0,0 +1,531 @@
+/*
+ * Reciprocal Net project
+ *
+ * BulkImporter.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ * 18-Oct-2026: agent made importFiles() report an unexpected RuntimeException
+ *              from Sample Manager like an RMI failure, and ParseTask always
+ *              enqueue its end-of-file marker
+ */
+
+package org.recipnet.site.util.cifimporter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.recipnet.site.RecipnetException;
+import org.recipnet.site.core.DuplicateDataException;
+import org.recipnet.site.core.SampleManagerRemote;
+import org.recipnet.site.shared.SampleWriteBatch;
+import org.recipnet.site.shared.db.SampleInfo;
+import org.recipnet.site.shared.db.UserInfo;
+
+/**
+ * <p>
+ * Imports the data blocks of many CIF files into the Reciprocal Net database
+ * without user intervention, for use by {@code CifImporter}'s batch mode.
+ * The work is organized as a pipeline: a pool of worker threads reads and
+ * parses the files, each with its own {@code CifParser}, and converts each
+ * acceptable data block into sample records by means of a
+ * {@code CifBlockConverter}; the converted blocks pass through a bounded queue
+ * to a single writer (the thread that invokes {@link #importFiles(List)}),
+ * which submits them to Sample Manager in batches of several samples per
+ * remote call.  The bounded queue keeps the parsers from running arbitrarily
+ * far ahead of the database.
+ * </p><p>
+ * If a checkpoint file is configured then the name of each input file is
+ * appended to it once every data block from that file has been dealt with,
+ * whether by being stored or by being reported as a failure, and files
+ * already named in it are skipped.  An interrupted import can therefore be
+ * resumed by running it again with the same checkpoint file.  Samples that
+ * were written in the interrupted batch are then reported as failures, with
+ * local lab ids already in use, instead of being written twice.
+ * </p><p>
+ * Instances are intended to be used once, by a single thread.
+ * </p>
+ */
+class BulkImporter {
+
+    /**
+     * The number of milliseconds the writer waits for more blocks before
+     * submitting a partial batch
+     */
+    private static final long FLUSH_DELAY = 500;
+
+    /** The Sample Manager to which samples are written */
+    private final SampleManagerRemote sampleManager;
+
+    /** Converts parsed data blocks into sample records */
+    private final CifBlockConverter converter;
+
+    /** The number of parser threads */
+    private final int threadCount;
+
+    /** The maximum number of samples submitted in one remote call */
+    private final int batchSize;
+
+    /** Carries parsed blocks and end-of-file markers to the writer */
+    private final BlockingQueue<ImportItem> queue;
+
+    /** The checkpoint file, or {@code null} if none is used */
+    private final File checkpointFile;
+
+    /** The stream to which the final report is written */
+    private final PrintStream out;
+
+    /** The batch being accumulated by the writer */
+    private SampleWriteBatch batch;
+
+    /** The items whose samples are in {@code batch}, in the same order */
+    private final List<ImportItem> batchItems = new ArrayList<ImportItem>();
+
+    /**
+     * The files whose end-of-file markers the writer has received since the
+     * last checkpoint update
+     */
+    private final List<File> finishedFiles = new ArrayList<File>();
+
+    /** Writes to the checkpoint file while an import is in progress */
+    private PrintWriter checkpoint;
+
+    /** The number of input files skipped because of the checkpoint */
+    private int filesSkipped;
+
+    /** The number of input files completely dealt with */
+    private int filesDone;
+
+    /** The total size in bytes of the files to be imported */
+    private long bytesToRead;
+
+    /** The number of data blocks read */
+    private int blocksRead;
+
+    /** The number of samples stored */
+    private int samplesStored;
+
+    /** Descriptions of the data blocks and files that were not stored */
+    private final List<String> failures = new ArrayList<String>();
+
+    /**
+     * Initializes a new {@code BulkImporter}
+     *
+     * @param  sampleManager the Sample Manager to which to write samples
+     * @param  converter the {@code CifBlockConverter} with which to convert
+     *         data blocks into samples
+     * @param  threadCount the number of threads to use for parsing; must be
+     *         positive
+     * @param  batchSize the maximum number of samples to submit to Sample
+     *         Manager in one remote call; must be positive
+     * @param  queueSize the maximum number of parsed data blocks that may
+     *         await writing; must be positive
+     * @param  checkpointFile the checkpoint file to use, or {@code null} to
+     *         use none
+     * @param  out the stream to which to write the final report
+     */
+    BulkImporter(SampleManagerRemote sampleManager,
+            CifBlockConverter converter, int threadCount, int batchSize,
+            int queueSize, File checkpointFile, PrintStream out) {
+        this.sampleManager = sampleManager;
+        this.converter = converter;
+        this.threadCount = threadCount;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<ImportItem>(queueSize);
+        this.checkpointFile = checkpointFile;
+        this.out = out;
+    }
+
+    /**
+     * Imports every data block of the specified files, then writes a report
+     * of the outcome, including the throughput achieved and a description of
+     * each data block or file that could not be imported
+     *
+     * @param  files the CIF files to import
+     *
+     * @return {@code true} if every file was dealt with, or {@code false} if
+     *         the import was abandoned because Sample Manager could not be
+     *         reached or failed unexpectedly; failures to store individual
+     *         data blocks do not cause the import to be abandoned
+     *
+     * @throws IOException if the checkpoint file cannot be read or written
+     * @throws InterruptedException if the invoking thread is interrupted
+     */
+    boolean importFiles(List<File> files) throws IOException,
+            InterruptedException {
+        long startTime = System.currentTimeMillis();
+        Set<String> done = readCheckpoint();
+        List<File> toRead = new ArrayList<File>(files.size());
+        ExecutorService parsers;
+        boolean completed = false;
+
+        for (File file : files) {
+            if (done.contains(file.getAbsolutePath())) {
+                filesSkipped++;
+            } else {
+                toRead.add(file);
+                bytesToRead += file.length();
+            }
+        }
+        if (checkpointFile != null) {
+            checkpoint = new PrintWriter(new FileWriter(checkpointFile, true));
+        }
+        batch = newBatch();
+        parsers = Executors.newFixedThreadPool(threadCount);
+        try {
+            int filesRemaining = toRead.size();
+
+            for (File file : toRead) {
+                parsers.execute(new ParseTask(file));
+            }
+            parsers.shutdown();
+            while (filesRemaining > 0) {
+                ImportItem item = (batch.size() == 0) ? queue.take()
+                        : queue.poll(FLUSH_DELAY, TimeUnit.MILLISECONDS);
+
+                if (item == null) {
+                    flush();
+                } else if (item.blockName == null) {
+                    if (item.problem != null) {
+                        failures.add(item.file + ": " + item.problem);
+                    }
+                    finishedFiles.add(item.file);
+                    filesRemaining--;
+                } else {
+                    blocksRead++;
+                    if (item.versions == null) {
+                        failures.add(item.file + " [" + item.blockName
+                                + "]: " + item.problem);
+                    } else {
+                        batch.addSample(item.versions);
+                        batchItems.add(item);
+                        if (batch.size() >= batchSize) {
+                            flush();
+                        }
+                    }
+                }
+            }
+            flush();
+            completed = true;
+        } catch (RemoteException re) {
+            abandon("Sample Manager could not be reached: " + re.getMessage());
+        } catch (RuntimeException re) {
+            abandon("Sample Manager failed unexpectedly: " + re);
+        } finally {
+            parsers.shutdownNow();
+            if (checkpoint != null) {
+                checkpoint.close();
+                if (checkpoint.checkError()) {
+                    failures.add("error writing checkpoint file "
+                            + checkpointFile);
+                }
+            }
+        }
+        printReport(System.currentTimeMillis() - startTime, completed);
+
+        return completed;
+    }
+
+    /**
+     * Submits the accumulated batch, if it is not empty, to Sample Manager
+     * and records the outcome for each sample, then records in the checkpoint
+     * file each file whose end-of-file marker has been received.  Because
+     * each parser enqueues a file's data blocks before its marker, every such
+     * file's blocks have by then been dealt with.
+     *
+     * @throws RemoteException if Sample Manager cannot be reached
+     */
+    private void flush() throws RemoteException {
+        if (batch.size() > 0) {
+            SampleWriteBatch result = sampleManager.putSampleInfoBatch(batch);
+
+            for (int i = 0; i < result.size(); i++) {
+                RecipnetException failure = result.getFailure(i);
+                ImportItem item = batchItems.get(i);
+
+                if (failure == null) {
+                    samplesStored++;
+                } else {
+                    failures.add(item.file + " [" + item.blockName + "]: "
+                            + describeFailure(failure,
+                                    result.getFailedAction(i)));
+                }
+            }
+            batch = newBatch();
+            batchItems.clear();
+        }
+        for (File file : finishedFiles) {
+            if (checkpoint != null) {
+                checkpoint.println(file.getAbsolutePath());
+            }
+            filesDone++;
+        }
+        finishedFiles.clear();
+        if (checkpoint != null) {
+            checkpoint.flush();
+        }
+    }
+
+    /**
+     * Records that the import has been abandoned, and that the samples of the
+     * batch being submitted at the time may or may not have been stored
+     *
+     * @param  reason a description of the reason
+     */
+    private void abandon(String reason) {
+        failures.add("import abandoned; " + reason);
+        if (batch.size() > 0) {
+            failures.add(batch.size() + " samples from the last batch "
+                    + "may or may not have been stored");
+        }
+    }
+
+    /**
+     * Returns a new, empty batch for samples to be taken through the
+     * workflow actions of {@code CifBlockConverter}
+     */
+    private SampleWriteBatch newBatch() {
+        return new SampleWriteBatch(CifBlockConverter.ACTION_CODES,
+                CifBlockConverter.ACTION_COMMENTS, UserInfo.INVALID_USER_ID);
+    }
+
+    /**
+     * Returns a description of the failure to write a sample
+     *
+     * @param  failure the exception that stopped the sample
+     * @param  action the index of the workflow action that failed
+     */
+    private String describeFailure(RecipnetException failure, int action) {
+        String reason = ((failure instanceof DuplicateDataException)
+                && (action == 0))
+                ? "local lab id already in use (imported previously?)"
+                : failure.toString();
+
+        if (action == 0) {
+            return "not stored: " + reason;
+        } else {
+            return "stored, but only through \""
+                    + CifBlockConverter.ACTION_COMMENTS[action - 1] + "\": "
+                    + reason;
+        }
+    }
+
+    /**
+     * Returns the absolute names of the files recorded in the checkpoint file,
+     * if there is one
+     *
+     * @throws IOException if the checkpoint file exists but cannot be read
+     */
+    private Set<String> readCheckpoint() throws IOException {
+        Set<String> done = new HashSet<String>();
+
+        if ((checkpointFile != null) && checkpointFile.exists()) {
+            BufferedReader reader = new BufferedReader(
+                    new FileReader(checkpointFile));
+
+            try {
+                for (String line = reader.readLine(); line != null;
+                        line = reader.readLine()) {
+                    done.add(line);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        return done;
+    }
+
+    /**
+     * Writes the final report of an import
+     *
+     * @param  elapsed the duration of the import, in milliseconds
+     * @param  completed whether every file was dealt with
+     */
+    private void printReport(long elapsed, boolean completed) {
+        double seconds = Math.max(elapsed, 1) / 1000d;
+
+        out.println();
+        out.println(completed ? "Import complete." : "Import INCOMPLETE.");
+        out.println("  files imported:        " + filesDone);
+        if (filesSkipped > 0) {
+            out.println("  files skipped:         " + filesSkipped
+                    + " (listed in checkpoint file)");
+        }
+        out.println("  data blocks read:      " + blocksRead);
+        out.println("  samples stored:        " + samplesStored);
+        out.println("  failures:              " + failures.size());
+        out.println("  elapsed time:          "
+                + String.format("%.1f s", Double.valueOf(seconds)));
+        out.println("  throughput:            "
+                + String.format("%.1f samples/s, %.2f MB/s",
+                        Double.valueOf(samplesStored / seconds),
+                        Double.valueOf(bytesToRead / seconds / 1048576d)));
+        if (failures.size() > 0) {
+            out.println();
+            out.println("Failures:");
+            for (String failure : failures) {
+                out.println("  " + failure);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Adds the specified file to a list of files to import.  A directory is
+     * searched recursively, and the files within it whose names end with
+     * ".cif", in any case, are added in order by name; any other file is
+     * added as-is.
+     *
+     * @param  file the file or directory to add
+     * @param  files the list to which to add files
+     */
+    static void addCifFiles(File file, List<File> files) {
+        File children[] = file.listFiles();
+
+        if (children == null) {
+            files.add(file);
+        } else {
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isDirectory()
+                        || child.getName().toLowerCase().endsWith(".cif")) {
+                    addCifFiles(child, files);
+                }
+            }
+        }
+    }
+
+    /**
+     * An item passed from a parser to the writer: either a data block, which
+     * has been converted into sample records or rejected, or a marker
+     * signaling that all of a file's data blocks have been passed
+     */
+    private static class ImportItem {
+
+        /** The file from which this item comes */
+        final File file;
+
+        /**
+         * The name of the data block, or {@code null} if this is an
+         * end-of-file marker
+         */
+        final String blockName;
+
+        /**
+         * The sample records to write, or {@code null} if this item is not an
+         * acceptable data block
+         */
+        final SampleInfo versions[];
+
+        /**
+         * A description of the reason this data block was rejected or of the
+         * reason the file could not be read completely, or {@code null}
+         */
+        final String problem;
+
+        ImportItem(File file, String blockName, SampleInfo versions[],
+                String problem) {
+            this.file = file;
+            this.blockName = blockName;
+            this.versions = versions;
+            this.problem = problem;
+        }
+    }
+
+    /**
+     * Parses one file and passes its data blocks, followed by an end-of-file
+     * marker, to the writer.  The marker is passed even if parsing is stopped
+     * by an {@code Error}, because the writer waits for one per file.
+     */
+    private class ParseTask implements Runnable {
+
+        /** The file to parse */
+        private final File file;
+
+        ParseTask(File file) {
+            this.file = file;
+        }
+
+        public void run() {
+            String problem = "parsing stopped unexpectedly";
+            boolean abandoned = false;
+
+            try {
+                Reader reader = new InputStreamReader(
+                        new FileInputStream(file), "ISO-8859-1");
+
+                try {
+                    CifParser parser = new CifParser(reader, null);
+
+                    for (Map<String, Object> block = parser.getNextDataBlock();
+                            block != null; block = parser.getNextDataBlock()) {
+                        queue.put(convert(block));
+                    }
+                } finally {
+                    reader.close();
+                }
+                problem = null;
+            } catch (IOException ioe) {
+                problem = "cannot be read: " + ioe.getMessage();
+            } catch (RuntimeException re) {
+                problem = "cannot be parsed: " + re;
+            } catch (InterruptedException ie) {
+
+                // The import has been abandoned
+                abandoned = true;
+            } catch (Error e) {
+                problem = "cannot be parsed: " + e;
+                throw e;
+            } finally {
+                if (!abandoned) {
+                    try {
+                        queue.put(new ImportItem(file, null, null, problem));
+                    } catch (InterruptedException ie) {
+                        // The import has been abandoned
+                    }
+                }
+            }
+        }
+
+        /**
+         * Converts a parsed data block into the item to pass to the writer,
+         * rejecting it if it contains CIF errors or cannot be converted
+         */
+        private ImportItem convert(Map<String, Object> block) {
+            String blockName = String.valueOf(
+                    block.get(CifParser.BLOCK_NAME_KEY));
+            List<?> errors = (List<?>) block.get(CifParser.ERRORS_KEY);
+
+            if ((errors != null) && !errors.isEmpty()) {
+                return new ImportItem(file, blockName, null, errors.size()
+                        + " CIF error(s), the first being: " + errors.get(0));
+            }
+            try {
+                return new ImportItem(file, blockName,
+                        converter.convert(block), null);
+            } catch (IllegalArgumentException iae) {
+                return new ImportItem(file, blockName, null, iae.getMessage());
+            }
+        }
+    }
+}
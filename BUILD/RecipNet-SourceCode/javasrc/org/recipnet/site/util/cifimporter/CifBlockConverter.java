@@ -0,0 +1,333 @@
+/*
+ * Reciprocal Net project
+ *
+ * CifBlockConverter.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ * 18-Oct-2026: agent split the CIF mapping into mapDataCollectionInfo() and
+ *              mapRefinementInfo() for use by CifImporter's sample form too
+ */
+
+package org.recipnet.site.util.cifimporter;
+
+import java.util.Map;
+
+import org.recipnet.site.shared.bl.SampleTextBL;
+import org.recipnet.site.shared.bl.SampleWorkflowBL;
+import org.recipnet.site.shared.db.SampleAnnotationInfo;
+import org.recipnet.site.shared.db.SampleAttributeInfo;
+import org.recipnet.site.shared.db.SampleDataInfo;
+import org.recipnet.site.shared.db.SampleInfo;
+
+/**
+ * Converts the data blocks returned by {@code CifParser.getNextDataBlock()}
+ * into sample records without the intervention of a user.  For each block it
+ * produces the three successive states of the sample that the interactive
+ * "store" operation writes, one for each of the workflow actions in
+ * {@link #ACTION_CODES}.  The mapping from CIF data names to sample fields is
+ * that of {@link #mapDataCollectionInfo(Map, SampleInfo)} and
+ * {@link #mapRefinementInfo(Map, SampleInfo)}, which {@code CifImporter}'s
+ * sample form also uses to fill in its fields, so that the two modes of import
+ * cannot diverge.  Instances hold no mutable state and may be shared between
+ * threads.
+ */
+class CifBlockConverter {
+
+    /**
+     * The workflow actions through which an imported sample is taken, in
+     * order
+     */
+    static final int ACTION_CODES[] = { SampleWorkflowBL.SUBMITTED,
+            SampleWorkflowBL.PRELIMINARY_DATA_COLLECTED,
+            SampleWorkflowBL.STRUCTURE_REFINED };
+
+    /** The sample history comments for each of the workflow actions */
+    static final String ACTION_COMMENTS[] = {
+            "Automated submission by CifImporter",
+            "Data collection information gleaned from CIF by CifImporter",
+            "Refinement information gleaned from CIF by CifImporter" };
+
+    /** The maximum length of a local lab id, as enforced by the DB */
+    static final int MAX_LOCAL_ID_LENGTH = 32;
+
+    /** The maximum length of a space group symbol */
+    static final int MAX_SPACE_GROUP_LENGTH = 13;
+
+    /** The maximum length of a crystal color */
+    static final int MAX_COLOR_LENGTH = 20;
+
+    /** The maximum length of the text of a sample attribute */
+    static final int MAX_ATTRIBUTE_LENGTH = 128;
+
+    /** The id of the lab to which imported samples belong */
+    private final int labId;
+
+    /** The id of the provider in whose name samples are imported */
+    private final int providerId;
+
+    /**
+     * The name to record as the crystallographer of imported samples, or
+     * {@code null}
+     */
+    private final String crystallographerName;
+
+    /**
+     * Initializes a new {@code CifBlockConverter}
+     *
+     * @param  labId the id of the lab to which imported samples belong
+     * @param  providerId the id of the provider in whose name samples are
+     *         imported
+     * @param  crystallographerName the name to record as the crystallographer
+     *         of imported samples, or {@code null} to record none
+     */
+    CifBlockConverter(int labId, int providerId,
+            String crystallographerName) {
+        this.labId = labId;
+        this.providerId = providerId;
+        this.crystallographerName = lengthLimited(crystallographerName,
+                MAX_ATTRIBUTE_LENGTH);
+    }
+
+    /**
+     * Converts one data block to the states of a new sample after each of the
+     * workflow actions in {@link #ACTION_CODES}
+     *
+     * @param  cifMap a {@code Map} from CIF data names to their associated
+     *         values, as returned by {@code CifParser.getNextDataBlock()}
+     *
+     * @return an array of {@code SampleInfo}s, one per workflow action, each
+     *         representing the complete state of the sample after that
+     *         action; the first is a new sample such as
+     *         {@code SampleManagerRemote.getSampleInfo()} returns, populated
+     *         with the submission information
+     *
+     * @throws IllegalArgumentException if the block does not provide a usable
+     *         local lab id; the message describes the problem
+     */
+    SampleInfo[] convert(Map<?, ?> cifMap) {
+        String localId = lengthLimited(cifMap.get(CifParser.BLOCK_NAME_KEY),
+                MAX_LOCAL_ID_LENGTH);
+        SampleInfo submitted = new SampleInfo();
+        SampleInfo collected;
+        SampleInfo refined;
+
+        if (localId == null) {
+            throw new IllegalArgumentException(
+                    "no usable local id (data block name blank or longer than "
+                    + MAX_LOCAL_ID_LENGTH + " characters)");
+        }
+
+        submitted.labId = labId;
+        submitted.dataInfo.providerId = providerId;
+        submitted.localLabId = localId;
+        submitted.status = SampleWorkflowBL.PENDING_STATUS;
+
+        collected = submitted.clone();
+        mapDataCollectionInfo(cifMap, collected);
+        if (crystallographerName != null) {
+            collected.attributeInfo.add(new SampleAttributeInfo(
+                    SampleTextBL.CRYSTALLOGRAPHER_NAME, crystallographerName));
+        }
+        collected.status = SampleWorkflowBL.REFINEMENT_PENDING_STATUS;
+
+        refined = collected.clone();
+        mapRefinementInfo(cifMap, refined);
+        refined.status = SampleWorkflowBL.COMPLETE_STATUS;
+
+        return new SampleInfo[] { submitted, collected, refined };
+    }
+
+    /**
+     * Sets the data collection information of a sample from a CIF data block:
+     * the unit cell, the crystal color, and the temperature, converted from
+     * kelvins to degrees Celsius.  A text value that is blank or too long to
+     * store is ignored, as the sample form's length-limited fields ignore it.
+     *
+     * @param  cifMap a {@code Map} from CIF data names to their associated
+     *         values, as returned by {@code CifParser.getNextDataBlock()}
+     * @param  info the {@code SampleInfo} to populate; each field set is
+     *         set to its invalid value if the block does not supply it
+     */
+    static void mapDataCollectionInfo(Map<?, ?> cifMap, SampleInfo info) {
+        info.dataInfo.a = toDouble(cifMap.get("_cell_length_a"));
+        info.dataInfo.b = toDouble(cifMap.get("_cell_length_b"));
+        info.dataInfo.c = toDouble(cifMap.get("_cell_length_c"));
+        info.dataInfo.alpha = toDouble(cifMap.get("_cell_angle_alpha"));
+        info.dataInfo.beta = toDouble(cifMap.get("_cell_angle_beta"));
+        info.dataInfo.gamma = toDouble(cifMap.get("_cell_angle_gamma"));
+        info.dataInfo.v = toDouble(cifMap.get("_cell_volume"));
+        info.dataInfo.color = lengthLimited(
+                cifMap.get("_exptl_crystal_colour"), MAX_COLOR_LENGTH);
+        info.dataInfo.t = toDouble(cifMap.get("_diffrn_ambient_temperature"));
+        if (!Double.isNaN(info.dataInfo.t)) {
+            info.dataInfo.t -= 273d;
+        }
+    }
+
+    /**
+     * Sets the refinement information of a sample from a CIF data block: the
+     * space group, crystal density, Z, agreement indices, formulae, common
+     * name, and systematic (IUPAC) name.  Text values are treated as by
+     * {@link #mapDataCollectionInfo(Map, SampleInfo)}; formulae and names
+     * are added as attributes and annotations rather than replacing any the
+     * sample already has.
+     *
+     * @param  cifMap a {@code Map} from CIF data names to their associated
+     *         values, as returned by {@code CifParser.getNextDataBlock()}
+     * @param  info the {@code SampleInfo} to populate
+     */
+    static void mapRefinementInfo(Map<?, ?> cifMap, SampleInfo info) {
+        String s;
+
+        info.dataInfo.spgp = lengthLimited(
+                cifMap.get("_symmetry_space_group_name_h-m"),
+                MAX_SPACE_GROUP_LENGTH);
+        info.dataInfo.dcalc = toDouble(
+                cifMap.get("_exptl_crystal_density_diffrn"));
+        info.dataInfo.z = toInt(cifMap.get("_cell_formula_units_z"));
+        info.dataInfo.rf = toDouble(cifMap.get(
+                cifMap.containsKey("_refine_ls_r_factor_gt")
+                        ? "_refine_ls_r_factor_gt"
+                        : "_refine_ls_r_factor_obs"));
+        // rwf not set (not available in a SHELX CIF)
+        info.dataInfo.rf2 = toDouble(cifMap.get("_refine_ls_r_factor_all"));
+        info.dataInfo.rwf2 = toDouble(cifMap.get(
+                cifMap.containsKey("_refine_ls_wr_factor_ref")
+                        ? "_refine_ls_wr_factor_ref"
+                        : "_refine_ls_wr_factor_all"));
+        info.dataInfo.goof = toDouble(cifMap.get(
+                cifMap.containsKey("_refine_ls_goodness_of_fit_ref")
+                        ? "_refine_ls_goodness_of_fit_ref"
+                        : "_refine_ls_goodness_of_fit_all"));
+        // summary not set (no good analogue in CIF)
+        addAttribute(info, SampleTextBL.EMPIRICAL_FORMULA,
+                cifMap.get("_chemical_formula_sum"));
+        addAttribute(info, SampleTextBL.STRUCTURAL_FORMULA,
+                cifMap.get("_chemical_formula_structural"));
+        addAttribute(info, SampleTextBL.MOIETY_FORMULA,
+                cifMap.get("_chemical_formula_moiety"));
+        addAttribute(info, SampleTextBL.COMMON_NAME,
+                cifMap.get("_chemical_name_common"));
+
+        /*
+         * SHELXL puts a text block containing only whitespace and a '?'
+         * character into its CIFs as the value for _chemical_name_systematic.
+         * That is an error (SHELXL should instead insert a single, bare '?'
+         * character), but users are likely to run into it a lot so we patch
+         * it up here.
+         */
+        s = lengthLimited(cifMap.get("_chemical_name_systematic"),
+                Integer.MAX_VALUE);
+        if ((s != null) && !s.equals("?")) {
+            info.annotationInfo.add(
+                    new SampleAnnotationInfo(SampleTextBL.IUPAC_NAME, s));
+        }
+    }
+
+    /**
+     * Adds an attribute of the specified type to the specified sample, based
+     * on the specified CIF value; has no effect if the value is absent, blank,
+     * or too long to store
+     */
+    private static void addAttribute(SampleInfo info, int attributeType,
+            Object value) {
+        String text = lengthLimited(value, MAX_ATTRIBUTE_LENGTH);
+
+        if (text != null) {
+            info.attributeInfo.add(
+                    new SampleAttributeInfo(attributeType, text));
+        }
+    }
+
+    /**
+     * Returns the trimmed string form of a CIF value if it is non-blank and,
+     * untrimmed, no longer than the specified limit, otherwise {@code null}.
+     * This reproduces the behavior of the sample form's text fields, which
+     * reject an over-long value outright and so remain blank.
+     */
+    private static String lengthLimited(Object value, int maxLength) {
+        String text;
+
+        if (value == null) {
+            return null;
+        }
+        text = value.toString();
+        if (text.length() > maxLength) {
+            return null;
+        }
+        text = text.trim();
+
+        return (text.length() == 0) ? null : text;
+    }
+
+    /**
+     * Returns the numeric value of a CIF value as a {@code double}, or
+     * {@code SampleDataInfo.INVALID_DOUBLE_VALUE} if it has none
+     */
+    private static double toDouble(Object value) {
+        Double d = cifToDouble(value);
+
+        return (d == null) ? SampleDataInfo.INVALID_DOUBLE_VALUE
+                : d.doubleValue();
+    }
+
+    /**
+     * Returns the numeric value of a CIF value as an {@code int}, or
+     * {@code SampleDataInfo.INVALID_INT_VALUE} if it has none
+     */
+    private static int toInt(Object value) {
+        Long l = cifToLong(value);
+
+        return (l == null) ? SampleDataInfo.INVALID_INT_VALUE : l.intValue();
+    }
+
+    /**
+     * Parses a CIF numeric value, ignoring any standard uncertainty
+     *
+     * @param  in the CIF value, or {@code null}
+     *
+     * @return the value as a {@code Double}, or {@code null} if {@code in} is
+     *         {@code null} or not a number
+     */
+    static Double cifToDouble(Object in) {
+        if (in != null) {
+            String inStr = in.toString();
+            int index = inStr.indexOf('(');
+            try {
+                if (index > 0) {
+                    return Double.valueOf(inStr.substring(0, index));
+                } else if (index < 0) {
+                    return Double.valueOf(inStr);
+                }
+            } catch (NumberFormatException nfe) {
+                /* do nothing */
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a CIF integer value, ignoring any standard uncertainty
+     *
+     * @param  in the CIF value, or {@code null}
+     *
+     * @return the value as a {@code Long}, or {@code null} if {@code in} is
+     *         {@code null} or not an integer
+     */
+    static Long cifToLong(Object in) {
+        if (in != null) {
+            String inStr = in.toString();
+            int index = inStr.indexOf('(');
+            try {
+                if (index > 0) {
+                    return Long.valueOf(inStr.substring(0, index));
+                } else if (index < 0) {
+                    return Long.valueOf(inStr);
+                }
+            } catch (NumberFormatException nfe) {
+                /* do nothing */
+            }
+        }
+        return null;
+    }
+}
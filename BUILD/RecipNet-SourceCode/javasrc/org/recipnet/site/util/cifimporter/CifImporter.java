@@ -46,6 +46,11 @@
  *              SiteManagerRemote.getLocalLabs2()
  *              to SiteManagerRemote.getLocalLabs()
  * 07-Jun-2006: jobollin reformatted the source
+ * 18-Oct-2026: agent added a --batch mode that imports without the GUI by
+ *              means of the new BulkImporter class, and moved the CIF number
+ *              parsing and workflow comments to CifBlockConverter
+ * 18-Oct-2026: agent implemented SampleForm.update(SampleInfo) and made
+ *              SampleForm.update(Map) take its values from CifBlockConverter
  */
 
 package org.recipnet.site.util.cifimporter;
@@ -149,6 +154,8 @@ public class CifImporter implements Runnable {
 
     private final static String DEFAULT_CONF_DIR = null;
     private final static String DEFAULT_CONF_NAME = "recipnet-utils.conf";
+    private final static int DEFAULT_BATCH_SIZE = 50;
+    private final static int DEFAULT_QUEUE_SIZE = 500;
 
     static SiteManagerRemote siteManager;
     static SampleManagerRemote sampleManager;
@@ -1022,153 +1029,112 @@ public class CifImporter implements Runnable {
 
         /**
          * populates the form with values from the supplied
-         * {@code SampleInfo} object; not implemented in this version
+         * {@code SampleInfo} object.  Fields for which {@code info} has no
+         * valid value, and the lab and provider selections, are left
+         * unchanged.
          *
          * @param  info a {@code SampleInfo} containing values with which
-         *         to populate the form
+         *         to populate the form, or {@code null}
          */
         synchronized void update(SampleInfo info) {
-            /* not implemented */
+            if (info == null) {
+                return;
+            }
+            setText(localIdField, info.localLabId);
+            setValue(cellAField, info.dataInfo.a);
+            setValue(cellBField, info.dataInfo.b);
+            setValue(cellCField, info.dataInfo.c);
+            setValue(cellAlphaField, info.dataInfo.alpha);
+            setValue(cellBetaField, info.dataInfo.beta);
+            setValue(cellGammaField, info.dataInfo.gamma);
+            setText(spaceGroupField, info.dataInfo.spgp);
+            setValue(dcalcField, info.dataInfo.dcalc);
+            setText(colorField, info.dataInfo.color);
+            if (info.dataInfo.z != SampleDataInfo.INVALID_INT_VALUE) {
+                zField.setValue(new Long(info.dataInfo.z));
+            }
+            setValue(temperatureField, info.dataInfo.t);
+            setValue(volumeField, info.dataInfo.v);
+            setValue(rfField, info.dataInfo.rf);
+            setValue(rwfField, info.dataInfo.rwf);
+            setValue(rf2Field, info.dataInfo.rf2);
+            setValue(rwf2Field, info.dataInfo.rwf2);
+            setValue(goofField, info.dataInfo.goof);
+            setText(summaryField, info.dataInfo.summary);
+            setText(empiricalFormulaField, info,
+                    SampleTextBL.EMPIRICAL_FORMULA);
+            setText(structFormulaField, info,
+                    SampleTextBL.STRUCTURAL_FORMULA);
+            setText(moietyFormulaField, info, SampleTextBL.MOIETY_FORMULA);
+            setText(commonNameField, info, SampleTextBL.COMMON_NAME);
+            setText(systematicNameField, info, SampleTextBL.IUPAC_NAME);
+            setText(xgrapherNameField, info,
+                    SampleTextBL.CRYSTALLOGRAPHER_NAME);
+            setText(providerNameField, info,
+                    SampleTextBL.SAMPLE_PROVIDER_NAME);
         }
 
-        private String nullToBlank(Object in) {
-            return (in == null) ? "" : in.toString();
+        /**
+         * sets a numeric field to the specified value unless that is
+         * {@code SampleDataInfo.INVALID_DOUBLE_VALUE}
+         */
+        private void setValue(JFormattedTextField field, double value) {
+            if (!Double.isNaN(value)) {
+                field.setValue(new Double(value));
+            }
         }
 
-        private Double cifToDouble(Object in) {
-            if (in != null) {
-                String inStr = in.toString();
-                int index = inStr.indexOf('(');
-                try {
-                    if (index > 0) {
-                        return Double.valueOf(inStr.substring(0, index));
-                    } else if (index < 0) {
-                        return Double.valueOf(inStr);
-                    }
-                } catch (NumberFormatException nfe) {
-                    /* do nothing */
-                }
+        /**
+         * sets a text field to the specified value unless that is
+         * {@code null}
+         */
+        private void setText(JTextField field, String value) {
+            if (value != null) {
+                field.setText(value);
             }
-            return null;
         }
 
-        private Long cifToLong(Object in) {
-            if (in != null) {
-                String inStr = in.toString();
-                int index = inStr.indexOf('(');
-                try {
-                    if (index > 0) {
-                        return Long.valueOf(inStr.substring(0, index));
-                    } else if (index < 0) {
-                        return Long.valueOf(inStr);
-                    }
-                } catch (NumberFormatException nfe) {
-                    /* do nothing */
-                }
+        /**
+         * sets a text field to the first value of the specified attribute or
+         * annotation of the specified sample, if it has any
+         */
+        private void setText(JTextField field, SampleInfo info, int textType) {
+            String[] values = (String[]) info.extractValue(textType);
+
+            if (values != null) {
+                field.setText(values[0]);
             }
-            return null;
         }
 
         /**
-         * populates the form with values from the supplied {@code Map}
+         * populates the form with values from the supplied {@code Map}, as
+         * mapped to sample fields by {@code CifBlockConverter} for unattended
+         * imports.  Fields for which the block supplies no value are left
+         * unchanged; {@link #clear()} first to blank them.
          *
          * @param  cifMap a {@code Map} from CIF data names to their
          *         associated values
          */
         synchronized void update(Map cifMap) {
-            String s;
+            SampleInfo info;
+
             if (cifMap == null) {
                 return;
             }
+            info = new SampleInfo();
+            CifBlockConverter.mapDataCollectionInfo(cifMap, info);
+            CifBlockConverter.mapRefinementInfo(cifMap, info);
+            update(info);
             localIdField.setText(
                     nullToBlank(cifMap.get(CifParser.BLOCK_NAME_KEY)));
-            cellAField.setValue(
-                    cifToDouble(cifMap.get("_cell_length_a")));
-            cellBField.setValue(
-                    cifToDouble(cifMap.get("_cell_length_b")));
-            cellCField.setValue(
-                    cifToDouble(cifMap.get("_cell_length_c")));
-            cellAlphaField.setValue(
-                    cifToDouble(cifMap.get("_cell_angle_alpha")));
-            cellBetaField.setValue(
-                    cifToDouble(cifMap.get("_cell_angle_beta")));
-            cellGammaField.setValue(
-                    cifToDouble(cifMap.get("_cell_angle_gamma")));
-            spaceGroupField.setText(
-                    nullToBlank(cifMap.get("_symmetry_space_group_name_h-m")));
-            dcalcField.setValue(
-                    cifToDouble(cifMap.get("_exptl_crystal_density_diffrn")));
-            colorField.setText(
-                    nullToBlank(cifMap.get("_exptl_crystal_colour")));
-            zField.setValue(
-                    cifToLong(cifMap.get("_cell_formula_units_z")));
-            try {
-                double d = cifToDouble(cifMap.get(
-                                "_diffrn_ambient_temperature")).doubleValue();
-                temperatureField.setValue(new Double(d - 273d));
-            } catch (NumberFormatException nfe) {
-                // do nothing -- field will be empty
-            } catch (NullPointerException npe) {
-                // do nothing -- field will be empty
-            }
-            try {
-                double d = cifToDouble(cifMap.get(
-                                "_diffrn_ambient_temperature")).doubleValue();
-                temperatureField.setValue(new Double(d - 273d));
-            } catch (NumberFormatException nfe) {
-                // do nothing -- field will be empty
-            } catch (NullPointerException npe) {
-                // do nothing -- field will be empty
-            }
-            volumeField.setValue(
-                    cifToDouble(cifMap.get("_cell_volume")));
-            if (cifMap.containsKey("_refine_ls_r_factor_gt")) {
-                rfField.setValue(
-                        cifToDouble(cifMap.get("_refine_ls_r_factor_gt")));
-            } else {
-                rfField.setValue(
-                        cifToDouble(cifMap.get("_refine_ls_r_factor_obs")));
-            }
-            // rwfField not set (not available in a SHELX CIF)
-            rf2Field.setValue(
-                    cifToDouble(cifMap.get("_refine_ls_r_factor_all")));
-            if (cifMap.containsKey("_refine_ls_wr_factor_ref")) {
-                rwf2Field.setValue(
-                        cifToDouble(cifMap.get("_refine_ls_wr_factor_ref")));
-            } else {
-                rwf2Field.setValue(
-                        cifToDouble(cifMap.get("_refine_ls_wr_factor_all")));
-            }
-            if (cifMap.containsKey("_refine_ls_goodness_of_fit_ref")) {
-                goofField.setValue(
-                    cifToDouble(cifMap.get("_refine_ls_goodness_of_fit_ref")));
-            } else {
-                goofField.setValue(
-                    cifToDouble(cifMap.get("_refine_ls_goodness_of_fit_all")));
-            }
-            // summaryField not set (no good analogue in CIF)
-            empiricalFormulaField.setText(
-                    nullToBlank(cifMap.get("_chemical_formula_sum")));
-            structFormulaField.setText(
-                    nullToBlank(cifMap.get("_chemical_formula_structural")));
-            moietyFormulaField.setText(
-                    nullToBlank(cifMap.get("_chemical_formula_moiety")));
-            commonNameField.setText(
-                    nullToBlank(cifMap.get("_chemical_name_common")));
-
-            /*
-             * SHELXL puts a text block containing only whitespace and a '?'
-             * character into its CIFs as the value for
-             * _chemical_name_systematic.  That is an error (SHELXL should
-             * instead insert a single, bare '?' character), but users are
-             * likely to run into it a lot so we patch it up here.
-             */
-            s = nullToBlank(cifMap.get("_chemical_name_systematic"));
-            systematicNameField.setText(s.trim().equals("?") ? "" : s);
             // xgrapherNameField not set (cannot deduce from generic CIF)
             // providerNameField not set (cannot deduce from generic CIF)
         }
 
+        private String nullToBlank(Object in) {
+            return (in == null) ? "" : in.toString();
+        }
+
         /**
          * checks whether enough data has been provided to submit the form;
          * returns an array of diagnostic messages, which will be of length
@@ -1612,23 +1578,21 @@ public class CifImporter implements Runnable {
                             info = sampleManager.putSampleInfo(info,
                                     SampleWorkflowBL.SUBMITTED,
                                     UserInfo.INVALID_USER_ID,
-                                    "Automated submission by CifImporter");
+                                    CifBlockConverter.ACTION_COMMENTS[0]);
                             progress++;
 
                             form.populateDataCollectionInfo(info);
                             info = sampleManager.putSampleInfo(info,
                                     SampleWorkflowBL.PRELIMINARY_DATA_COLLECTED,
                                     UserInfo.INVALID_USER_ID,
-                                    "Data collection information gleaned from "
-                                    + "CIF by CifImporter");
+                                    CifBlockConverter.ACTION_COMMENTS[1]);
                             progress++;
 
                             form.populateRefinementInfo(info);
                             info = sampleManager.putSampleInfo(info,
                                     SampleWorkflowBL.STRUCTURE_REFINED,
                                     UserInfo.INVALID_USER_ID,
-                                    "Refinement information gleaned from "
-                                    + "CIF by CifImporter");
+                                    CifBlockConverter.ACTION_COMMENTS[2]);
                             progress++;
 
                             if (value instanceof CifMap) {
@@ -1824,6 +1788,95 @@ public class CifImporter implements Runnable {
         }
     }
 
+    /**
+     * Imports the specified files without displaying the GUI, by means of a
+     * {@code BulkImporter}, after checking that the specified lab is a local
+     * lab and the specified provider an active provider of that lab
+     *
+     * @param  fileNames the names of the files and directories to import
+     * @param  labId the id of the lab to which imported samples belong
+     * @param  providerId the id of the provider in whose name samples are
+     *         imported
+     * @param  crystallographerName the crystallographer to record for
+     *         imported samples, or {@code null}
+     * @param  threadCount the number of files to parse concurrently
+     * @param  batchSize the number of samples to store per remote call
+     * @param  queueSize the number of parsed data blocks that may await
+     *         storing
+     * @param  checkpointFile the checkpoint file, or {@code null}
+     *
+     * @return the exit code for the application: zero if the import was
+     *         completed, otherwise nonzero
+     */
+    private static int importBatch(List<String> fileNames, int labId,
+            int providerId, String crystallographerName, int threadCount,
+            int batchSize, int queueSize, File checkpointFile) {
+        List<File> files = new ArrayList<File>();
+        boolean providerFound = false;
+
+        for (LabInfo lab : localLabList) {
+            if (lab.id == labId) {
+                for (ProviderInfo provider : labProviderMap.get(lab)) {
+                    if (provider.id == providerId) {
+                        providerFound = true;
+                    }
+                }
+            }
+        }
+        if (!providerFound) {
+            System.err.println("Provider " + providerId
+                    + " is not an active provider of local lab " + labId);
+            return 1;
+        }
+        for (String fileName : fileNames) {
+            if ("-".equals(fileName)) {
+                System.err.println(
+                        "The standard input cannot be read in batch mode");
+                return 1;
+            }
+            BulkImporter.addCifFiles(new File(fileName), files);
+        }
+
+        try {
+            return new BulkImporter(sampleManager,
+                    new CifBlockConverter(labId, providerId,
+                            crystallographerName), threadCount, batchSize,
+                    queueSize, checkpointFile, System.out).importFiles(files)
+                    ? 0 : 1;
+        } catch (IOException ioe) {
+            System.err.println("Error accessing checkpoint file "
+                    + checkpointFile + ": " + ioe.getMessage());
+            return 1;
+        } catch (InterruptedException ie) {
+            System.err.println("Interrupted.");
+            return 1;
+        }
+    }
+
+    /**
+     * Returns the positive integer value of a command-line option, or
+     * displays the usage message and exits if it has none
+     *
+     * @param  argName the option, without its leading "--"
+     * @param  prefix the option name and '=' sign preceding the value
+     */
+    private static int parseIntOption(String argName, String prefix) {
+        try {
+            int value = Integer.parseInt(argName.substring(prefix.length()));
+
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException nfe) {
+            // fall through
+        }
+        System.err.println();
+        System.err.println("Invalid option --" + argName);
+        displayUsage(1);  // Invokes System.exit(1)
+
+        return -1;
+    }
+
     /**
      * Displays correct command-line syntax for this utility.
      */
@@ -1855,6 +1908,37 @@ public class CifImporter implements Runnable {
         System.err.println("    --serial");
         System.err.println(
                 "        process CIF files sequentially (the default)");
+        System.err.println("    --batch");
+        System.err.println("        store every data block without"
+                + " displaying the GUI; requires --lab and");
+        System.err.println("        --provider");
+        System.err.println("    --lab=<lab id>");
+        System.err.println("        in batch mode, the lab to which"
+                + " imported samples belong");
+        System.err.println("    --provider=<provider id>");
+        System.err.println("        in batch mode, the provider in whose"
+                + " name samples are imported");
+        System.err.println("    --crystallographer=<name>");
+        System.err.println("        in batch mode, the crystallographer"
+                + " to record for imported samples");
+        System.err.println("    --threads=<n>");
+        System.err.println("        in batch mode, the number of files to"
+                + " parse concurrently");
+        System.err.println("        (default: the number of processors)");
+        System.err.println("    --batchsize=<n>");
+        System.err.println("        in batch mode, the number of samples"
+                + " to store per request to the core");
+        System.err.println("        (default: " + DEFAULT_BATCH_SIZE + ")");
+        System.err.println("    --queuesize=<n>");
+        System.err.println("        in batch mode, the number of parsed"
+                + " data blocks that may await storing");
+        System.err.println("        (default: " + DEFAULT_QUEUE_SIZE + ")");
+        System.err.println("    --checkpoint=<filename>");
+        System.err.println("        in batch mode, record completed files"
+                + " in the specified file, and skip");
+        System.err.println("        files already recorded there, so that"
+                + " an interrupted import can be");
+        System.err.println("        resumed");
         System.err.println("    --help");
         System.err.println("        display this message");
         System.err.println("    --");
@@ -1872,7 +1956,10 @@ public class CifImporter implements Runnable {
                 + " read.  If no files are");
         System.err.println("    specified then the standard input is read"
                 + " (as if the file list consisted");
-        System.err.println("    of a single hyphen).");
+        System.err.println("    of a single hyphen).  In batch mode the"
+                + " standard input cannot be read,");
+        System.err.println("    and directories are searched recursively"
+                + " for files named *.cif.");
         System.err.println();
         System.exit(exitCode);
     }
@@ -1891,6 +1978,12 @@ public class CifImporter implements Runnable {
      * command line and using the "--parallel" option to make the imports run in
      * parallel (in seperate {@code CifImporter} instances), but the
      * default is to process input files serially.
+     * <p>
+     * With the "--batch" option no GUI is displayed; instead every data block
+     * is stored on behalf of the lab and provider specified by the "--lab="
+     * and "--provider=" options, by a {@code BulkImporter} that parses files
+     * concurrently and stores samples in batches.  The exit code is nonzero
+     * if the import could not be completed.
      *
      * @param args a {@code String[]} containing the command-line
      *        arguments to the program, if any
@@ -1898,6 +1991,14 @@ public class CifImporter implements Runnable {
     public static void main(String[] args) {
         int i = 0;
         boolean parallel = false;
+        boolean batchMode = false;
+        int labId = LabInfo.INVALID_LAB_ID;
+        int providerId = ProviderInfo.INVALID_PROVIDER_ID;
+        String crystallographerName = null;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        int batchSize = DEFAULT_BATCH_SIZE;
+        int queueSize = DEFAULT_QUEUE_SIZE;
+        File checkpointFile = null;
         String confDirName = DEFAULT_CONF_DIR;
         String confFileName = DEFAULT_CONF_NAME;
         File confFile;
@@ -1921,6 +2022,24 @@ public class CifImporter implements Runnable {
                 confFileName = argName.substring("configfile=".length());
             } else if ("debug".equals(argName)) {
                 debug = true;
+            } else if ("batch".equals(argName)) {
+                batchMode = true;
+            } else if (argName.startsWith("lab=")) {
+                labId = parseIntOption(argName, "lab=");
+            } else if (argName.startsWith("provider=")) {
+                providerId = parseIntOption(argName, "provider=");
+            } else if (argName.startsWith("crystallographer=")) {
+                crystallographerName
+                        = argName.substring("crystallographer=".length());
+            } else if (argName.startsWith("threads=")) {
+                threadCount = parseIntOption(argName, "threads=");
+            } else if (argName.startsWith("batchsize=")) {
+                batchSize = parseIntOption(argName, "batchsize=");
+            } else if (argName.startsWith("queuesize=")) {
+                queueSize = parseIntOption(argName, "queuesize=");
+            } else if (argName.startsWith("checkpoint=")) {
+                checkpointFile
+                        = new File(argName.substring("checkpoint=".length()));
             } else {
                 int exitCode;
 
@@ -1935,6 +2054,15 @@ public class CifImporter implements Runnable {
             }
         }
 
+        if (batchMode && ((labId == LabInfo.INVALID_LAB_ID)
+                || (providerId == ProviderInfo.INVALID_PROVIDER_ID)
+                || (i >= args.length))) {
+            System.err.println();
+            System.err.println("Batch mode requires --lab, --provider, and at"
+                    + " least one file");
+            displayUsage(1);  // Invokes System.exit(1)
+        }
+
         confFile = new File(confDirName, confFileName);
 
         /* Make RMI connections to the core components */
@@ -1987,6 +2115,12 @@ public class CifImporter implements Runnable {
             System.exit(1);
         }
 
+        if (batchMode) {
+            System.exit(importBatch(Arrays.asList(args).subList(i,
+                    args.length), labId, providerId, crystallographerName,
+                    threadCount, batchSize, queueSize, checkpointFile));
+        }
+
         /* initialize internal data structures */
         blockMap = new TreeMap<String, Object>();
 
@@ -0,0 +1,577 @@
+/*
+ * Reciprocal Net project
+ *
+ * CifMapBuilder.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ * 18-Oct-2026: agent deferred line length errors to the end of their lines
+ *              and stopped a repeated loop data name from aborting the scan
+ */
+
+package org.recipnet.site.util.cifimporter;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.recipnet.common.files.cif.CifErrorHandler;
+import org.recipnet.common.files.cif.CifTokenHandler;
+import org.recipnet.common.files.cif.ScanState;
+
+/**
+ * <p>
+ * Adapts the events of a {@code org.recipnet.common.files.cif.CifScanner} to
+ * the data block {@code Map}s produced by {@link CifParser}.  The scanner
+ * performs all the lexical analysis; this class applies the importer's own
+ * grammar on top of it, and translates the scanner's lexical errors into this
+ * package's {@link CifError}s, so that the blocks, values, and errors produced
+ * are the same as those of the character-filtering reader this package used
+ * formerly.  In particular, keywords are recognized by the importer's rules
+ * rather than the scanner's (a save frame header is an ordinary value, for
+ * instance), illegal characters and a leading '$' are dropped from the tokens
+ * in which they occur, and the whitespace in quoted values, including the
+ * final line terminator of a text field, is folded into spaces.
+ * </p><p>
+ * Lexical errors are recorded in the current block's error list, if any, and
+ * logged without a prefix.  As with the old reader, which checked line
+ * lengths at each line terminator, an overlong line's error belongs to the
+ * block that is current at the end of that line, so it is held until a token
+ * on a later line (or the end of the input) arrives.  Grammatical errors are
+ * reported via
+ * {@code CifParser.reportError()}.  Instances serve for one scan only, and are
+ * not thread-safe.
+ * </p>
+ */
+class CifMapBuilder implements CifTokenHandler, CifErrorHandler {
+
+    /* Constants describing this object's current parsing state. */
+    private final static int PREBLOCK_STATE = 0;
+    private final static int EXPECT_NAME_STATE = 1;
+    private final static int LOOP_HEADER_STATE = 2;
+    private final static int EXPECT_VALUE_STATE = 3;
+    private final static int LOOP_VALUE_STATE = 4;
+
+    /**
+     * The character with which illegal characters are replaced in the
+     * scanner's input, to be removed again from the affected tokens
+     */
+    private final static char DROPPED_CHAR = '\u0000';
+
+    /** The parser on whose behalf blocks are built and errors reported */
+    private final CifParser parser;
+
+    /** The completed and current data blocks, in order */
+    private final LinkedList<Map<String, Object>> blocks;
+
+    /** The current data block, or {@code null} before the first one */
+    private Map<String, Object> cifMap;
+
+    /** The error list of the current data block, or {@code null} */
+    private List<CifError> errorList;
+
+    /** The loop currently being populated, if any */
+    private CifLoop thisLoop;
+
+    /** The data name awaiting a value, if any */
+    private String thisName;
+
+    /** The grammatical state of the parse */
+    private int state;
+
+    /**
+     * Whether an illegal character has been replaced since the last token was
+     * reported
+     */
+    private boolean charsDropped;
+
+    /** Whether the next token began with a '$' that must be dropped */
+    private boolean dollarPending;
+
+    /** Whether the next text field was unterminated at end of input */
+    private boolean textUnterminated;
+
+    /** The most recent scan state reported, for locating I/O errors */
+    private ScanState lastState;
+
+    /**
+     * Line length errors whose lines have not yet been seen to end, in order
+     */
+    private final List<CifError> pendingLineErrors = new ArrayList<CifError>();
+
+    /**
+     * Initializes a new {@code CifMapBuilder}
+     *
+     * @param  parser the {@code CifParser} on whose behalf this builder works;
+     *         its duplicate block name checks use the parser's
+     *         {@code blockNames}, and its grammatical errors are reported via
+     *         the parser's {@code reportError()}
+     */
+    CifMapBuilder(CifParser parser) {
+        this.parser = parser;
+        this.blocks = new LinkedList<Map<String, Object>>();
+        this.state = PREBLOCK_STATE;
+    }
+
+    /**
+     * Returns the data blocks built so far, in order; the list is live, and
+     * may be consumed by the caller once the scan is finished
+     */
+    LinkedList<Map<String, Object>> getBlocks() {
+        return blocks;
+    }
+
+    /** {@inheritDoc} */
+    public void handleBlockHeader(String blockName, ScanState scanState) {
+        handleWord(scanState.getCurrentToken(), scanState);
+    }
+
+    /** {@inheritDoc} */
+    public void handleSaveFrameHeader(String frameName, ScanState scanState) {
+        handleWord(scanState.getCurrentToken(), scanState);
+    }
+
+    /** {@inheritDoc} */
+    public void handleSaveFrameEnd(ScanState scanState) {
+        handleWord(scanState.getCurrentToken(), scanState);
+    }
+
+    /** {@inheritDoc} */
+    public void handleLoopStart(ScanState scanState) {
+        handleWord(scanState.getCurrentToken(), scanState);
+    }
+
+    /** {@inheritDoc} */
+    public void handleDataName(String name, ScanState scanState) {
+        handleWord(name, scanState);
+    }
+
+    /** {@inheritDoc} */
+    public void handleUnquotedValue(String value, ScanState scanState) {
+        handleWord(value, scanState);
+    }
+
+    /**
+     * {@inheritDoc}.  The value of a terminated text field is taken to
+     * include its final line terminator, which is folded into spaces like all
+     * other whitespace in the value.
+     */
+    public void handleQuotedValue(String value, char delimiter,
+            ScanState scanState) {
+        String thisVal;
+
+        reportEndedLineErrors(scanState.getLineNumber());
+        if ((delimiter != ';') || textUnterminated) {
+
+            // an unterminated text field extends to the end of the input
+            thisVal = value;
+            textUnterminated = false;
+        } else {
+            thisVal = scanState.getCurrentToken();
+            thisVal = thisVal.substring(0, thisVal.length() - 1);
+        }
+        lastState = scanState;
+        dollarPending = false;
+        handleValue(foldWhitespace(removeDroppedChars(thisVal)), scanState);
+    }
+
+    /**
+     * {@inheritDoc}.  This version translates the lexical errors that the
+     * importer has always reported, and corrects the input as the importer
+     * always has, by dropping illegal characters and a '$' at the start of an
+     * unquoted value; all other errors are ignored.
+     */
+    public void handleError(org.recipnet.common.files.cif.CifError error) {
+        ScanState errorState = error.getScanState();
+        int line = errorState.getLineNumber();
+
+        switch (error.getCode()) {
+            case org.recipnet.common.files.cif.CifError.ILLEGAL_CHAR:
+                reportLexicalError(new CifError(CifError.ILLEGAL_CHAR, line,
+                        "\\" + errorState.getCurrentChar()));
+                errorState.setCurrentChar(DROPPED_CHAR);
+                charsDropped = true;
+                break;
+            case org.recipnet.common.files.cif.CifError.ILLEGAL_VALUE_START:
+                if (errorState.getCurrentChar() == '$') {
+                    reportLexicalError(
+                            new CifError(CifError.BEGINS_WITH_DOLLAR, line));
+                    dollarPending = true;
+                }
+                break;
+            case org.recipnet.common.files.cif.CifError.UNTERMINATED_QSTRING:
+                reportLexicalError(
+                        new CifError(CifError.UNTERMINATED_QSTRING, line));
+                break;
+            case org.recipnet.common.files.cif.CifError.UNTERMINATED_TEXT:
+                reportLexicalError(
+                        new CifError(CifError.UNTERMINATED_TEXT, line));
+                textUnterminated = true;
+                break;
+            case org.recipnet.common.files.cif.CifError.LINE_LENGTH:
+                pendingLineErrors.add(new CifError(CifError.LINE_LENGTH, line));
+                break;
+            case org.recipnet.common.files.cif.CifError.RESERVED_WORD:
+                parser.reportError(cifMap, new CifError(CifError.RESERVED_WORD,
+                        line, removeDroppedChars(
+                                errorState.getCurrentToken())));
+                break;
+            default:
+                // not an error by the importer's rules
+                break;
+        }
+    }
+
+    /**
+     * Performs the end-of-input checks on the current data block
+     *
+     * @param  finalState the {@code ScanState} at the end of the scan
+     */
+    void handleEndOfInput(ScanState finalState) {
+        int line = finalState.getLineNumber();
+
+        reportEndedLineErrors(Integer.MAX_VALUE);
+        switch (state) {
+            case LOOP_HEADER_STATE:
+                if (thisLoop.checkValidity() == CifLoop.NO_DATA_NAMES) {
+                    parser.reportError(cifMap,
+                            new CifError(CifError.LOOP_EMPTY_HEADER_EOF, line));
+                } else {
+                    parser.reportError(cifMap,
+                            new CifError(CifError.LOOP_NO_DATA_EOF, line));
+                }
+                break;
+            case LOOP_VALUE_STATE:
+                if (thisLoop.checkValidity() != CifLoop.VALID) {
+                    parser.reportError(cifMap, new CifError(
+                            CifError.LOOP_PARTIAL_RECORD_EOF, line));
+                }
+                break;
+            case EXPECT_VALUE_STATE:
+                parser.reportError(cifMap,
+                        new CifError(CifError.DATA_VALUE_MISSING_EOF, line));
+                break;
+            default:
+                // valid cases
+                break;
+        }
+    }
+
+    /**
+     * Records a failure that ended the scan prematurely in the current data
+     * block, if any; no end-of-input checks are performed
+     *
+     * @param  description a description of the failure
+     */
+    void handleFailure(String description) {
+        reportEndedLineErrors(Integer.MAX_VALUE);
+        parser.reportError(cifMap, new CifError(CifError.NO_ERROR,
+                ((lastState == null) ? 1 : lastState.getLineNumber()),
+                description));
+    }
+
+    /**
+     * Handles an unquoted token, which may be a keyword, a data block header,
+     * a data name, or an unquoted value
+     *
+     * @param  word the token, as it appears in the input
+     * @param  scanState the {@code ScanState} at the end of the token
+     */
+    private void handleWord(String word, ScanState scanState) {
+        int line = scanState.getLineNumber();
+
+        reportEndedLineErrors(line);
+        lastState = scanState;
+        word = removeDroppedChars(word);
+        if (dollarPending) {
+            dollarPending = false;
+            if (word.startsWith("$")) {
+                word = word.substring(1);
+            }
+            if (word.length() == 0) {
+                return;
+            }
+        }
+
+        if ("data_".equalsIgnoreCase(word) || "global_".equalsIgnoreCase(word)
+                || "save_".equalsIgnoreCase(word)
+                || "stop_".equalsIgnoreCase(word)) {
+
+            /* excluded reserved words; no state change */
+            parser.reportError(cifMap,
+                    new CifError(CifError.RESERVED_WORD, line, word));
+        } else if ((word.length() > 5)
+                && word.regionMatches(true, 0, "data_", 0, 5)) {
+            startBlock(word.substring(5).toLowerCase(), line);
+        } else if ("loop_".equalsIgnoreCase(word)) {
+            startLoop(line);
+        } else if (word.startsWith("_")) {
+            handleName(word.toLowerCase(), line);
+        } else if (word.equals("?") || word.equals(".")) {
+
+            /*
+             * bare tokens ? and . are placeholders with no real value.  The
+             * value is set to null for these.
+             */
+            handleValue(null, scanState);
+        } else {
+            handleValue(word, scanState);
+        }
+    }
+
+    /**
+     * Starts a new data block, ending the current one if any
+     *
+     * @param  blockName the normalized name of the new block
+     * @param  line the line number of the block header
+     */
+    private void startBlock(String blockName, int line) {
+        cifMap = new LinkedHashMap<String, Object>();
+        cifMap.put(CifParser.BLOCK_NAME_KEY, blockName);
+        errorList = new ArrayList<CifError>();
+        cifMap.put(CifParser.ERRORS_KEY, errorList);
+        blocks.add(cifMap);
+        thisLoop = null;
+        thisName = null;
+        state = EXPECT_NAME_STATE;
+        if (!parser.blockNames.add(blockName)) {
+            parser.reportError(cifMap, new CifError(
+                    CifError.DUPLICATE_BLOCK_CODE, line, blockName));
+        }
+    }
+
+    /**
+     * Handles a loop header
+     *
+     * @param  line the line number of the header
+     */
+    private void startLoop(int line) {
+        switch (state) {
+            case EXPECT_NAME_STATE:
+
+                /* valid */
+                break;
+            case LOOP_VALUE_STATE:
+
+                /* valid unless the current loop record is incomplete */
+                if (thisLoop.checkValidity() != CifLoop.VALID) {
+                    parser.reportError(cifMap, new CifError(
+                            CifError.LOOP_PARTIAL_RECORD, line, "loop_"));
+                }
+                break;
+            case PREBLOCK_STATE:
+                parser.reportError(cifMap,
+                        new CifError(CifError.LOOP_HEADER_NO_BLOCK, line));
+
+                /*
+                 * Only from PREBLOCK_STATE does a loop_ token NOT cause a
+                 * transition to (or continuation of) LOOP_HEADER_STATE
+                 */
+                return;
+            case LOOP_HEADER_STATE:
+                if (thisLoop.checkValidity() == CifLoop.NO_DATA_NAMES) {
+                    parser.reportError(cifMap,
+                            new CifError(CifError.EXTRA_LOOP, line, "loop_"));
+                } else {
+                    parser.reportError(cifMap,
+                            new CifError(CifError.LOOP_NO_DATA, line, "loop_"));
+                }
+                break;
+            case EXPECT_VALUE_STATE:
+                parser.reportError(cifMap, new CifError(
+                        CifError.DATA_VALUE_MISSING, line, "loop_"));
+                break;
+        }
+        thisLoop = new CifLoop();
+        state = LOOP_HEADER_STATE;
+    }
+
+    /**
+     * Handles a data name
+     *
+     * @param  name the normalized data name
+     * @param  line the line number of the name
+     */
+    private void handleName(String name, int line) {
+        thisName = name;
+        if ((cifMap != null) && cifMap.containsKey(name)) {
+            parser.reportError(cifMap,
+                    new CifError(CifError.DUPLICATE_DATA_NAME, line, name));
+        }
+        switch (state) {
+            case LOOP_HEADER_STATE:
+                if (cifMap.get(name) == thisLoop) {
+
+                    /*
+                     * repeated in this loop's header; reported above as a
+                     * duplicate, and not added again
+                     */
+                    break;
+                }
+                thisLoop.addDataName(name);
+                cifMap.put(name, thisLoop);
+
+                /* state not changed */
+                break;
+            case LOOP_VALUE_STATE:
+                if (thisLoop.checkValidity() != CifLoop.VALID) {
+                    parser.reportError(cifMap, new CifError(
+                            CifError.LOOP_PARTIAL_RECORD, line, name));
+                }
+
+                /* fall through */
+            case EXPECT_NAME_STATE:
+                state = EXPECT_VALUE_STATE;
+                break;
+            case PREBLOCK_STATE:
+                parser.reportError(cifMap, new CifError(
+                        CifError.DATA_NAME_NO_BLOCK, line, name));
+
+                /* state not changed */
+                break;
+            case EXPECT_VALUE_STATE:
+                parser.reportError(cifMap, new CifError(
+                        CifError.DATA_VALUE_MISSING, line, name));
+
+                /* state not changed */
+                break;
+        }
+    }
+
+    /**
+     * Handles a data value.  We treat all data values the same, whether
+     * quoted or not.
+     *
+     * @param  thisVal the value, or {@code null} for a placeholder
+     * @param  scanState the {@code ScanState} at the end of the value
+     */
+    private void handleValue(String thisVal, ScanState scanState) {
+        int line = scanState.getLineNumber();
+
+        switch (state) {
+            case EXPECT_VALUE_STATE:
+                if (thisVal != null) {
+                    cifMap.put(thisName, parser.processCifEscapes(thisVal));
+                }
+                state = EXPECT_NAME_STATE;
+                break;
+            case LOOP_HEADER_STATE:
+                if (thisLoop.checkValidity() == CifLoop.NO_DATA_NAMES) {
+                    parser.reportError(cifMap, new CifError(
+                            CifError.DATA_NAME_MISSING, line, thisVal));
+                    parser.reportError(cifMap,
+                            new CifError(CifError.LOOP_EMPTY_HEADER, line));
+                    state = EXPECT_NAME_STATE;
+
+                    /* the value is dropped */
+                    break;
+                }
+                state = LOOP_VALUE_STATE;
+
+                /* fall through */
+            case LOOP_VALUE_STATE:
+
+                /* the data value is added even if null */
+                thisLoop.addDataValue(parser.processCifEscapes(thisVal));
+
+                /* state not changed */
+                break;
+            case EXPECT_NAME_STATE:
+                parser.reportError(cifMap, new CifError(
+                        CifError.DATA_NAME_MISSING, line, thisVal));
+
+                /* state not changed */
+                break;
+            case PREBLOCK_STATE:
+                parser.reportError(cifMap,
+                        new CifError(CifError.VALUE_NO_BLOCK, line, thisVal));
+
+                /* state not changed */
+                break;
+        }
+    }
+
+    /**
+     * Records a lexical error in the current data block's error list, if
+     * any, and logs its message to the parser's output, if any
+     *
+     * @param  error the {@code CifError} to report
+     */
+    private void reportLexicalError(CifError error) {
+        PrintWriter output = parser.output;
+
+        if (errorList != null) {
+            errorList.add(error);
+        }
+        if (output != null) {
+            output.println(error.message());
+        }
+    }
+
+    /**
+     * Reports the held line length errors for lines before the specified one,
+     * which have therefore ended, in the current data block
+     *
+     * @param  line the line number of the token being handled, or
+     *         {@code Integer.MAX_VALUE} to report all the held errors
+     */
+    private void reportEndedLineErrors(int line) {
+        for (Iterator<CifError> it = pendingLineErrors.iterator();
+                it.hasNext(); ) {
+            CifError error = it.next();
+
+            if (error.getLocation() >= line) {
+                break;
+            }
+            reportLexicalError(error);
+            it.remove();
+        }
+    }
+
+    /**
+     * Removes from a token the placeholders of any illegal characters dropped
+     * since the last token was reported
+     *
+     * @param  token the token as scanned
+     *
+     * @return the token without its dropped characters
+     */
+    private String removeDroppedChars(String token) {
+        if (!charsDropped) {
+            return token;
+        }
+        charsDropped = false;
+
+        return ((token.indexOf(DROPPED_CHAR) < 0) ? token
+                : token.replace(String.valueOf(DROPPED_CHAR), ""));
+    }
+
+    /**
+     * Translates all CIF whitespace characters and other control characters
+     * in a quoted value into spaces
+     *
+     * @param  value the value to translate
+     *
+     * @return the translated value; {@code value} itself if it contains no
+     *         characters to translate
+     */
+    private static String foldWhitespace(String value) {
+        char[] chars = null;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if ((c >= '\u0001') && (c <= '\u001f')) {
+                if (chars == null) {
+                    chars = value.toCharArray();
+                }
+                chars[i] = ' ';
+            }
+        }
+
+        return ((chars == null) ? value : new String(chars));
+    }
+}
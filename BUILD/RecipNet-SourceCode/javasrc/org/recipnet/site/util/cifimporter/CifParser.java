@@ -17,27 +17,31 @@
  *              values into spaces
  * 23-Feb-2004: jobollin wrote code for handling most CIF markup codes
  * 09-Jun-2006: jobollin reformatted the source
+ * 18-Oct-2026: agent replaced the CifSyntaxReader and StreamTokenizer with
+ *              the common CifScanner, via the new CifMapBuilder
+ * 18-Oct-2026: agent removed the protected fields cifTokenizer and input,
+ *              which exposed the old lexer to subclasses, and deprecated
+ *              unescapeString(), which nothing here needs any longer
  */
 
 package org.recipnet.site.util.cifimporter;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.regex.Pattern;
+
+import org.recipnet.common.files.cif.CifParseException;
+import org.recipnet.common.files.cif.CifScanner;
 
 /**
  * a class that knows how to create CIF data objects from data obtained from an
@@ -47,6 +51,13 @@ import java.util.regex.Pattern;
  * values.  Data names that occur inside CIF loop structures are mapped to
  * appropriate {@link CifLoop CifLoop} objects that model the corresponding
  * loop structures.
+ * <p>
+ * The lexical analysis is performed by the same
+ * {@link org.recipnet.common.files.cif.CifScanner CifScanner} that underlies
+ * the rest of the site software's CIF handling, configured for CIF 1.0; a
+ * {@link CifMapBuilder CifMapBuilder} applies this class's grammar and error
+ * reporting to the scanner's output.  The whole input is scanned when the
+ * first data block is requested.
  *
  * @author John C. Bollinger
  * @version 0.6.2
@@ -67,13 +78,6 @@ public class CifParser {
     public final static String ERRORS_KEY =
             "org.recipnet.site.util.cifimporter.CifParser.ERRORS";
 
-    /* Constants describing this object's current parsing state. */
-    private final static int PREBLOCK_STATE = 0;
-    private final static int EXPECT_NAME_STATE = 1;
-    private final static int LOOP_HEADER_STATE = 2;
-    private final static int EXPECT_VALUE_STATE = 3;
-    private final static int LOOP_VALUE_STATE = 4;
-
     /*
      * See http://iucr.sdsc.edu/iucr-top/cif/spec/version1.1/cifsemantics.html#markup
      * for a description of the CIF character markup conventions implemented
@@ -153,24 +157,17 @@ public class CifParser {
          */
     }
 
-    private final static Pattern CIF_WS_PATTERN =
-            Pattern.compile("[\u0001-\u001f]");
-
     /**
-     * a {@link java.io.StreamTokenizer StreamTokenizer} that will return
-     * the CIF stream's tokens one by one. In this implementation the tokenizer
-     * gets its character data via a {@link CifSyntaxReader CifSyntaxReader}
-     * object that wraps the supplied {@code Reader} or
-     * {@code InputStream}.  The {@code CifSyntaxReader} preprocesses
-     * the CIF stream into a tokenization-friendly form.
+     * the {@code Reader} from which the CIF is to be read, or {@code null}
+     * once it has been scanned
      */
-    protected StreamTokenizer cifTokenizer;
+    private Reader source;
 
     /**
-     * a {@link CifSyntaxReader CifSyntaxReader} to wrap the input CIF stream
-     * and preprocess the CIF syntax into something more readily tokenizable
+     * the data blocks scanned from {@code source} but not yet returned by
+     * {@code getNextDataBlock()}, or {@code null} before the scan
      */
-    protected CifSyntaxReader input;
+    private LinkedList<Map<String, Object>> pendingBlocks;
 
     /**
      * a {@link java.io.PrintWriter PrintWriter} to which output messages
@@ -259,22 +256,11 @@ public class CifParser {
      * and not safe to invoke while in the middle of parsing a stream
      *
      * @param  r the {@code Reader} from which to obtain the raw CIF data;
-     *         will be wrapped in a BufferedReader and CifSyntaxReader
+     *         need not be buffered
      */
     private void setReader(Reader r) {
-        input = new CifSyntaxReader(new BufferedReader(r));
-        input.setNonFatalErrors(true);
-        cifTokenizer = new StreamTokenizer(input);
-        cifTokenizer.resetSyntax();
-        cifTokenizer.lowerCaseMode(false);
-        cifTokenizer.eolIsSignificant(false);
-        cifTokenizer.slashSlashComments(false);
-        cifTokenizer.slashStarComments(false);
-        cifTokenizer.quoteChar(CifSyntaxReader.QUOTE_METACHAR);
-        cifTokenizer.whitespaceChars(9, 13);
-        cifTokenizer.whitespaceChars(' ', ' ');
-        cifTokenizer.wordChars(33, 126);
-     }
+        source = r;
+    }
 
     /**
      * sets the {@code PrintWriter} to which error messages are output
@@ -286,13 +272,12 @@ public class CifParser {
      */
     public void setWriter(PrintWriter p) {
         output = p;
-        input.setLog(p);
     }
 
     /**
      * <p>
      * returns a {@code Map} object based on the next CIF data
-     * block available from {@code input}, or {@code null} if no
+     * block available from this parser's input, or {@code null} if no
      * more data blocks are available.  The {@code Map} associates data
      * names with their values for non-looped data names, and with an
      * appropriate {@link CifLoop CifLoop} object for looped data names.
@@ -308,316 +293,44 @@ public class CifParser {
      * </p>
      *
      * @return a {@link java.util.Map Map} containing the data from the next
-     *         CIF data block from {@code input}.
+     *         CIF data block in the input.
      */
     public Map<String, Object> getNextDataBlock() {
-        Map<String, Object> cifMap = null;
-        CifLoop thisLoop = null;
-        String thisName = null;
-        String thisVal = null;
-        boolean quoted = true;
-        int state = PREBLOCK_STATE;
-        List errorList;
-
-        if (cifTokenizer == null) {
-            return null;
+        if (pendingBlocks == null) {
+            pendingBlocks = scanSource();
         }
 
-        dataBlock:
-        while (true) {
-            try {
-                tokenLoop:
-                for (cifTokenizer.nextToken(); ; cifTokenizer.nextToken()) {
-                    thisVal = null;
-                    quoted = true;
-
-                    /* action depends on the token type */
-                    switch (cifTokenizer.ttype) {
-                    case StreamTokenizer.TT_NUMBER:
-                    case StreamTokenizer.TT_EOL:
-
-                        /*
-                         * these should never be encountered because
-                         * cifTokenizer is configured so as not to be able to
-                         * produce them
-                         */
-                        cifTokenizer = null;
-                        System.err.println(
-        "CifParser: internal error -- inappropriate token type received");
-                        System.err.flush();
-                        return null;
-                    case StreamTokenizer.TT_EOF:
-
-                        /* normal end of file */
-                        switch (state) {
-                        case PREBLOCK_STATE:
-                        case EXPECT_NAME_STATE:
-
-                            /* valid cases */
-                            break;
-                        case LOOP_HEADER_STATE:
-                            if ( thisLoop.checkValidity()
-                                 == CifLoop.NO_DATA_NAMES) {
-                                reportError( cifMap,
-        new CifError(CifError.LOOP_EMPTY_HEADER_EOF, input.getLineCount()) );
-                            } else {
-                                reportError( cifMap,
-        new CifError(CifError.LOOP_NO_DATA_EOF, input.getLineCount()) );
-                            }
-                            break;
-                        case LOOP_VALUE_STATE:
-                            if (thisLoop.checkValidity() != CifLoop.VALID) {
-                                reportError( cifMap,
-        new CifError(CifError.LOOP_PARTIAL_RECORD_EOF, input.getLineCount()) );
-                            }
-
-                            /* otherwise a valid case */
-                            break;
-                        case EXPECT_VALUE_STATE:
-                            reportError( cifMap,
-        new CifError(CifError.DATA_VALUE_MISSING_EOF, input.getLineCount()) );
-                            break;
-                        }
-                        cifTokenizer = null;
-                        break dataBlock;
-                    case StreamTokenizer.TT_WORD:
-
-                        /*
-                         * Word tokens should usually be the most common.
-                         * They may be data names, unquoted data values, or
-                         * CIF keywords.
-                         */
-                        if ( "data_".equalsIgnoreCase(cifTokenizer.sval)
-                             || "global_".equalsIgnoreCase(cifTokenizer.sval)
-                             || "save_".equalsIgnoreCase(cifTokenizer.sval)
-                             || "stop_".equalsIgnoreCase(cifTokenizer.sval) ) {
-                            /* excluded reserved words */
-                            reportError( cifMap,
-        new CifError(CifError.RESERVED_WORD, input.getLineCount(), cifTokenizer.sval) );
-                            /* no state change */
-                            continue tokenLoop;
-                        } else if ( (cifTokenizer.sval.length() > 5)
-        && cifTokenizer.sval.substring(0,5).equalsIgnoreCase("data_") ) {
-
-                            /* a data block header */
-                            String blockName =
-                                cifTokenizer.sval.substring(5).toLowerCase();
-
-                            if (state == PREBLOCK_STATE) {
-
-                                /* This the first block header encountered */
-                                cifMap = new LinkedHashMap<String, Object>();
-                                cifMap.put(BLOCK_NAME_KEY, blockName);
-                                errorList = new LinkedList();
-                                cifMap.put(ERRORS_KEY, errorList);
-                                input.setErrorList(errorList);
-                                state = EXPECT_NAME_STATE;
-                                if ( !blockNames.add(blockName) ) {
-                                    reportError( cifMap,
-        new CifError(CifError.DUPLICATE_BLOCK_CODE, input.getLineCount(), blockName) );
-                                }
-                                continue tokenLoop;
-                            } else {
-
-                                /* This starts the next block -- defer */
-                                cifTokenizer.pushBack();
-                                break dataBlock;
-                            }
-                        } else if (
-        "loop_".equalsIgnoreCase(cifTokenizer.sval) ) {
-
-                            /* a loop header */
-                            switch (state) {
-                            case EXPECT_NAME_STATE:
-
-                                /* valid */
-                                break;
-                            case LOOP_VALUE_STATE:
-
-                                /*
-                                 * valid unless the current loop record is
-                                 * incomplete
-                                 */
-                                if (thisLoop.checkValidity() != CifLoop.VALID) {
-                                    reportError( cifMap,
-        new CifError(CifError.LOOP_PARTIAL_RECORD, input.getLineCount(),
-                     cifTokenizer.sval) );
-                                }
-                                break;
-                            case PREBLOCK_STATE:
-                                reportError( cifMap,
-        new CifError(CifError.LOOP_HEADER_NO_BLOCK, input.getLineCount()) );
-
-                                /*
-                                 * Only from PREBLOCK_STATE does a loop_
-                                 * token NOT cause a transition to (or
-                                 * continuation of) LOOP_HEADER_STATE
-                                 */
-                                continue tokenLoop;
-                            case LOOP_HEADER_STATE:
-                                if ( thisLoop.checkValidity()
-                                     == CifLoop.NO_DATA_NAMES) {
-                                    reportError( cifMap,
-        new CifError(CifError.EXTRA_LOOP, input.getLineCount(), "loop_") );
-                                } else {
-                                    reportError( cifMap,
-        new CifError(CifError.LOOP_NO_DATA, input.getLineCount(), "loop_") );
-                                }
-                                break;
-                            case EXPECT_VALUE_STATE:
-                                reportError( cifMap,
-        new CifError(CifError.DATA_VALUE_MISSING, input.getLineCount(), "loop_") );
-                                break;
-                            }
-                            thisLoop = new CifLoop();
-                            state = LOOP_HEADER_STATE;
-                            continue tokenLoop;
-                        } else if (cifTokenizer.sval.startsWith("_")) {
-
-                            /* a data name */
-                            thisName = cifTokenizer.sval.toLowerCase();
-                            if (cifMap != null
-                                && cifMap.containsKey(thisName)) {
-                                reportError( cifMap,
-        new CifError(CifError.DUPLICATE_DATA_NAME, input.getLineCount(), thisName) );
-                            }
-                            switch (state) {
-                            case LOOP_HEADER_STATE:
-                                thisLoop.addDataName(thisName);
-                                cifMap.put(thisName, thisLoop);
-
-                                /* state not changed */
-                                break;
-                            case LOOP_VALUE_STATE:
-                                if (thisLoop.checkValidity() != CifLoop.VALID) {
-                                    reportError( cifMap,
-        new CifError(CifError.LOOP_PARTIAL_RECORD, input.getLineCount(), thisName) );
-                                }
-
-                                /* fall through */
-                            case EXPECT_NAME_STATE:
-                                state = EXPECT_VALUE_STATE;
-                                break;
-                            case PREBLOCK_STATE:
-                                reportError( cifMap,
-        new CifError(CifError.DATA_NAME_NO_BLOCK, input.getLineCount(), thisName) );
-
-                                /* state not changed */
-                                break;
-                            case EXPECT_VALUE_STATE:
-                                reportError( cifMap,
-        new CifError(CifError.DATA_VALUE_MISSING, input.getLineCount(), thisName) );
-
-                                /* state not changed */
-                                break;
-                            }
-                            continue tokenLoop;
-                        }
-
-                        /*
-                         * control should reach here only for an unquoted text
-                         * string; fall through
-                         */
-                        quoted = false;
-
-                        /* fall through */
-
-                    case CifSyntaxReader.QUOTE_METACHAR:
-
-                        /*
-                         * Quoted and unquoted text strings can be treated
-                         * the same, and their values can be obtained from
-                         * cifTokenizer.sval.
-                         */
-                        thisVal = cifTokenizer.sval;
-                        if (quoted) {
-                            thisVal = unescapeString(thisVal);
-                            thisVal = CIF_WS_PATTERN.matcher(
-                                    thisVal).replaceAll(" ");
-                        } else if (thisVal.equals("?") || thisVal.equals(".")) {
-
-                            /*
-                             * bare tokens ? and . are placeholders with no real
-                             * value.  The value is set to null for these.
-                             */
-                            thisVal = null;
-                        }
-
-                        /* fall through */
-
-                    default: // Control should only reach here by fall through
-
-                        /*
-                         * Syntactically, we have a data value (referred to by
-                         * thisVal).  We treat all data values the same.
-                         */
-                        switch (state) {
-                        case EXPECT_VALUE_STATE:
-                            if (thisVal != null) {
-                                cifMap.put(thisName,
-                                           processCifEscapes(thisVal));
-                            }
-                            state = EXPECT_NAME_STATE;
-                            break;
-                        case LOOP_HEADER_STATE:
-                            if ( thisLoop.checkValidity()
-                                 == CifLoop.NO_DATA_NAMES ) {
-                                reportError( cifMap,
-        new CifError(CifError.DATA_NAME_MISSING, input.getLineCount(), thisVal) );
-                                reportError( cifMap,
-        new CifError(CifError.LOOP_EMPTY_HEADER, input.getLineCount()) );
-                                state = EXPECT_NAME_STATE;
-
-                                /* the value is dropped */
-                                continue tokenLoop;
-                            }
-                            state = LOOP_VALUE_STATE;
-
-                            /* fall through */
-
-                        case LOOP_VALUE_STATE:
-
-                            /* the data value is added even if null */
-                            thisLoop.addDataValue(processCifEscapes(thisVal));
-
-                            /* state not changed */
-                            break;
-                        case EXPECT_NAME_STATE:
-                                reportError( cifMap,
-        new CifError(CifError.DATA_NAME_MISSING, input.getLineCount(), thisVal) );
-                            /* state not changed */
-                            break;
-                        case PREBLOCK_STATE:
-                                reportError( cifMap,
-        new CifError(CifError.VALUE_NO_BLOCK, input.getLineCount(), thisVal) );
-
-                            /* state not changed */
-                            break;
-                        }
-                        break;
-                    }
-                } // End of tokenLoop loop
-            } catch (CifSyntaxException cse) {
-                CifError error = cse.getCifError();
-
-                if (error == null) {
-                    reportError( cifMap,
-        new CifError(CifError.SYNTAX_ERROR, input.getLineCount()) );
-                } else {
-                    reportError(cifMap, error);
-                }
+        return pendingBlocks.poll();
+    }
+
+    /**
+     * Scans the whole of {@code source} with a {@code CifScanner}, reporting
+     * errors as they are detected, and releases it
+     *
+     * @return a {@code LinkedList} of the data blocks scanned, in order
+     */
+    private LinkedList<Map<String, Object>> scanSource() {
+        CifMapBuilder builder = new CifMapBuilder(this);
+        CifScanner scanner = new CifScanner();
 
-                /* Attempts to resume parsing after a syntax error */
+        scanner.useCif10Rules();
 
-            } catch (IOException ioe) {
-                reportError( cifMap,
-        new CifError(CifError.NO_ERROR, input.getLineCount(), ioe.toString()) );
-                cifTokenizer = null;
-                break dataBlock;
-            }
-        } // End of dataBlock loop
+        /* block names have never been limited by the importer */
+        scanner.setMaximumBlockNameLength(Integer.MAX_VALUE);
+        scanner.setTokenHandler(builder);
+        scanner.setErrorHandler(builder);
+        try {
+            builder.handleEndOfInput(scanner.scanBuffered(source));
+        } catch (CifParseException cpe) {
 
-        return cifMap;
+            /* should never happen because the builder throws none */
+            builder.handleFailure(cpe.toString());
+        } catch (IOException ioe) {
+            builder.handleFailure(ioe.toString());
+        }
+        source = null;
+
+        return builder.getBlocks();
     }
 
     /**
@@ -646,20 +359,25 @@ public class CifParser {
 
     /**
      * Unescapes characters escaped by a CifSyntaxReader (which CifSyntaxReaders
-     * do by adding a constant to the numeric value of the character) in a
-     * quoted string.  Returns an unescaped version of the input String.
+     * did by adding 128 to the numeric value of the character) in a quoted
+     * string.  Returns an unescaped version of the input String.
      *
      * @param  s the input String, possibly containing one or more escaped
      *         characters
      *
      * @return a version of {@code s} containing only unescaped characters
+     *
+     * @deprecated values obtained from a {@code CifScanner} are never
+     *             escaped this way; this method is kept only for subclasses
+     *             written against the CifSyntaxReader-based parser
      */
+    @Deprecated
     protected static String unescapeString(String s) {
         char[] chars = s.toCharArray();
 
         for (int i = 0; i < chars.length; i++) {
-            if (chars[i] > (CifSyntaxReader.ESCAPE_CODE - 1)) {
-                chars[i] = (char) (chars[i] - CifSyntaxReader.ESCAPE_CODE);
+            if (chars[i] > 127) {
+                chars[i] = (char) (chars[i] - 128);
             }
         }
 
@@ -681,8 +399,10 @@ public class CifParser {
      *         contain one or more non-ASCII characters.
      */
     protected final String processCifEscapes(String s) {
-        if (s == null) {
-            return null;
+        if ((s == null) || (s.indexOf('\\') < 0)) {
+
+            /* there are no escapes to process */
+            return s;
         }
 
         StringBuilder inputChars = new StringBuilder(s);
@@ -5,6 +5,8 @@
  * 
  * 10-Jan-2005: jobollin wrote first draft
  * 24-May-2006: jobollin reformatted the source
+ * 18-Oct-2026: agent modified all methods to queue their log events through
+ *              CoreConnector.recordLogEvent()
  */
 
 package org.recipnet.site.wrapper;
@@ -96,15 +98,8 @@ public class AuthenticationLogger implements ServletContextListener,
     public void sessionCreated(HttpSessionEvent se) {
         HttpSession session = se.getSession();
 
-        try {
-            connector.getSiteManager().recordLogEvent(
-                    new SessionBeginLogEvent(session.getId(),
-                            session.getServletContext().getServletContextName()));
-        } catch (RemoteException re) {
-            connector.reportRemoteException(re);
-            session.getServletContext().log(
-                    "Exception while logging session creation", re);
-        }
+        connector.recordLogEvent(new SessionBeginLogEvent(session.getId(),
+                session.getServletContext().getServletContextName()));
     }
 
     /**
@@ -118,15 +113,8 @@ public class AuthenticationLogger implements ServletContextListener,
     public void sessionDestroyed(HttpSessionEvent se) {
         HttpSession session = se.getSession();
 
-        try {
-            connector.getSiteManager().recordLogEvent(
-                    new SessionEndLogEvent(session.getId(),
-                            session.getServletContext().getServletContextName()));
-        } catch (RemoteException re) {
-            connector.reportRemoteException(re);
-            session.getServletContext().log(
-                    "Exception while logging session destruction", re);
-        }
+        connector.recordLogEvent(new SessionEndLogEvent(session.getId(),
+                session.getServletContext().getServletContextName()));
     }
 
     /**
@@ -139,22 +127,15 @@ public class AuthenticationLogger implements ServletContextListener,
      *        was successful
      * @param success {@code true} if the login succeeded, {@code false} if it
      *        failed
-     * @throws RemoteException if core throws this exception during the logging
-     *         attempt; the context's CoreConnector is notified of this
-     *         exception before it is propogated outward
+     * @throws RemoteException never; the event is queued with the context's
+     *         CoreConnector and delivered to core asynchronously, but the
+     *         exception remains declared for the sake of existing callers
      */
     public void logLoginEvent(HttpSession session, String username, int userid,
             boolean success) throws RemoteException {
-        try {
-            connector.getSiteManager().recordLogEvent(
-                    new LoginLogEvent(
-                            session.getId(),
-                            session.getServletContext().getServletContextName(),
-                            username, success, userid));
-        } catch (RemoteException re) {
-            connector.reportRemoteException(re);
-            throw re;
-        }
+        connector.recordLogEvent(new LoginLogEvent(session.getId(),
+                session.getServletContext().getServletContextName(), username,
+                success, userid));
     }
 
     /**
@@ -164,22 +145,15 @@ public class AuthenticationLogger implements ServletContextListener,
      * 
      * @param session the {@code HttpSession} in which the logout occurred
      * @param userInfo a {@code UserInfo} describing the user who logged out
-     * @throws RemoteException if core throws this exception during the logging
-     *         attempt; the context's CoreConnector is notified of this
-     *         exception before it is propogated outward
+     * @throws RemoteException never; the event is queued with the context's
+     *         CoreConnector and delivered to core asynchronously, but the
+     *         exception remains declared for the sake of existing callers
      */
     public void logLogoutEvent(HttpSession session, UserInfo userInfo)
             throws RemoteException {
-        try {
-            connector.getSiteManager().recordLogEvent(
-                    new LogoutLogEvent(
-                            session.getId(),
-                            session.getServletContext().getServletContextName(),
-                            userInfo.username, userInfo.id));
-        } catch (RemoteException re) {
-            connector.reportRemoteException(re);
-            throw re;
-        }
+        connector.recordLogEvent(new LogoutLogEvent(session.getId(),
+                session.getServletContext().getServletContextName(),
+                userInfo.username, userInfo.id));
     }
 
     /**
@@ -6,11 +6,19 @@
  * 06-Feb-2004: ekoperda wrote first draft
  * 07-May-2004: cwestnea added support for parameter rmiPort throughout
  * 24-May-2006: jobollin reformatted the source
+ * 18-Oct-2026: agent added isCoreLocal()
+ * 18-Oct-2026: agent added recordLogEvent() and the log event buffer behind
+ *              it, and support for parameter logEventQueueCapacity
+ * 18-Oct-2026: agent logged log events offered after shutdown separately
  */
 
 package org.recipnet.site.wrapper;
 
+import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
 import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
@@ -20,6 +28,7 @@ import javax.servlet.ServletContextListener;
 import org.recipnet.site.core.RepositoryManagerRemote;
 import org.recipnet.site.core.SampleManagerRemote;
 import org.recipnet.site.core.SiteManagerRemote;
+import org.recipnet.site.shared.logevent.LogEvent;
 
 /**
  * <p>
@@ -46,6 +55,11 @@ import org.recipnet.site.core.SiteManagerRemote;
  * {@code getSiteManager()}, {@code getSampleManager()}, and
  * {@code getRepositoryManager()} beyond the scope of a single request in order
  * to ensure that any reconnections take effect rapidly.
+ * </p><p>
+ * Code that only needs to report a {@code LogEvent} should prefer
+ * {@link #recordLogEvent(LogEvent)}, which queues the event for delivery to
+ * Site Manager in a batch and returns immediately, to calling Site Manager
+ * directly.
  * </p>
  * <p>
  * {@code CoreConnector} reads configuration directives from web.xml at
@@ -62,6 +76,9 @@ import org.recipnet.site.core.SiteManagerRemote;
  * <dd>RMI name of core's Sample Manager</dd>
  * <dt>repositoryManagerName</dt>
  * <dd>RMI name of core's Repository Manager</dd>
+ * <dt>logEventQueueCapacity</dt>
+ * <dd>The greatest number of log events that may await delivery to core;
+ * optional</dd>
  * </dl>
  * </p>
  */
@@ -91,6 +108,23 @@ public class CoreConnector implements ServletContextListener {
     /** Reference to bound core module */
     private RepositoryManagerRemote repositoryManager = null;
 
+    /**
+     * Whether {@code hostName} names this host; computed by
+     * {@code isCoreLocal()} the first time it is invoked.
+     */
+    private Boolean coreLocal = null;
+
+    /**
+     * Queues log events for delivery to Site Manager; created by
+     * {@code contextInitialized()}, or by {@code getLogEventBuffer()} if that
+     * has not been invoked. Not guarded by this object's monitor, so that
+     * queueing an event never waits for a reconnection attempt.
+     */
+    private volatile LogEventBuffer logEventBuffer = null;
+
+    /** Guards the lazy creation of {@code logEventBuffer} */
+    private final Object logEventBufferLock = new Object();
+
     /**
      * Static function that returns an instance of {@code CoreConnector}, given
      * the {@code ServletContext} object from the current web application.
@@ -169,6 +203,79 @@ public class CoreConnector implements ServletContextListener {
         return this.repositoryManager;
     }
 
+    /**
+     * Queues a log event for delivery to Site Manager and returns without
+     * waiting for it to be delivered; the event is later passed to
+     * {@code SiteManagerRemote.recordLogEvents()} together with others. This
+     * method never contacts core itself and so never throws
+     * {@code RemoteException}; an event that cannot be delivered is counted
+     * by the {@code LogEventBuffer} and discarded.
+     * 
+     * @param ev the event to record
+     * @return true if the event was queued, false if it was discarded because
+     *         too many events already await delivery or the web application
+     *         is shutting down
+     */
+    public boolean recordLogEvent(LogEvent ev) {
+        return getLogEventBuffer().offer(ev);
+    }
+
+    /**
+     * @return the {@code LogEventBuffer} behind {@code recordLogEvent()},
+     *         whose counters describe how many events have been delivered or
+     *         discarded.
+     */
+    public LogEventBuffer getLogEventBuffer() {
+        LogEventBuffer buffer = this.logEventBuffer;
+
+        if (buffer == null) {
+            synchronized (this.logEventBufferLock) {
+                if (this.logEventBuffer == null) {
+                    this.logEventBuffer = new LogEventBuffer(this,
+                            LogEventBuffer.DEFAULT_CAPACITY);
+                }
+                buffer = this.logEventBuffer;
+            }
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Determines whether the core modules run on the same host as this web
+     * application, as judged by whether the configured {@code hostName}
+     * resolves to a loopback address or to an address of one of this host's
+     * network interfaces. When it does, repository files are visible to the
+     * web application through the filesystem and may be read directly rather
+     * than via RMI.
+     * 
+     * @return {@code true} if core is believed to run on this host,
+     *         {@code false} if not or if the question cannot be answered
+     */
+    public synchronized boolean isCoreLocal() {
+        if (this.coreLocal == null) {
+            boolean local = false;
+
+            if (this.hostName != null) {
+                try {
+                    InetAddress address = InetAddress.getByName(this.hostName);
+
+                    local = address.isLoopbackAddress()
+                            || address.isAnyLocalAddress()
+                            || (NetworkInterface.getByInetAddress(address)
+                                    != null);
+                } catch (UnknownHostException ex) {
+                    // Treat core as remote.
+                } catch (SocketException ex) {
+                    // Treat core as remote.
+                }
+            }
+            this.coreLocal = Boolean.valueOf(local);
+        }
+
+        return this.coreLocal.booleanValue();
+    }
+
     /**
      * Clients should call this method to report that they received a
      * {@code RemoteException} when talking to core. Presumably this would be
@@ -246,6 +353,17 @@ public class CoreConnector implements ServletContextListener {
         this.repositoryManagerName = sce.getServletContext().getInitParameter(
                 "repositoryManagerName");
 
+        int capacity = LogEventBuffer.DEFAULT_CAPACITY;
+        try {
+            capacity = Integer.parseInt(sce.getServletContext()
+                    .getInitParameter("logEventQueueCapacity").trim());
+        } catch (NumberFormatException ex) {
+            // proceed with the default
+        } catch (NullPointerException ex) {
+            // proceed with the default
+        }
+        this.logEventBuffer = new LogEventBuffer(this, Math.max(capacity, 1));
+
         // Persist this object in the Application context.
         sce.getServletContext().setAttribute(CoreConnector.class.getName(),
                 this);
@@ -261,5 +379,23 @@ public class CoreConnector implements ServletContextListener {
     public void contextDestroyed(ServletContextEvent sce) {
         // Remove this object from the Application context.
         sce.getServletContext().removeAttribute(CoreConnector.class.getName());
+
+        // Deliver any log events still queued, briefly, and account for losses.
+        LogEventBuffer buffer = getLogEventBuffer();
+        buffer.shutdown(10000);
+        if ((buffer.getCountDroppedQueueFull() > 0)
+                || (buffer.getCountDroppedUndeliverable() > 0)
+                || (buffer.getCountDroppedAfterShutdown() > 0)
+                || (buffer.getCountPending() > 0)) {
+            sce.getServletContext().log("CoreConnector: "
+                    + buffer.getCountDelivered() + " log events delivered, "
+                    + buffer.getCountDroppedQueueFull()
+                    + " discarded because the queue was full, "
+                    + buffer.getCountDroppedUndeliverable()
+                    + " discarded because core was unreachable, "
+                    + buffer.getCountDroppedAfterShutdown()
+                    + " discarded because they arrived after shutdown, "
+                    + buffer.getCountPending() + " left undelivered");
+        }
     }
 }
@@ -14,6 +14,8 @@
  * 23-May-2006: jobollin reformatted the source, updated docs, fixed trackFile()
  *              to use the *recoverable* file length to update the
  *              currentFileSize
+ * 18-Oct-2026: agent modified all methods to queue their log events through
+ *              CoreConnector.recordLogEvent()
  */
 
 package org.recipnet.site.wrapper;
@@ -21,7 +23,6 @@ package org.recipnet.site.wrapper;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.rmi.RemoteException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
@@ -35,7 +36,6 @@ import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
 import org.recipnet.site.UnexpectedExceptionException;
-import org.recipnet.site.core.SiteManagerRemote;
 import org.recipnet.site.shared.logevent.FileTrackerLogEvent;
 
 /**
@@ -178,7 +178,6 @@ public class FileTracker implements Serializable, ServletContextListener {
      */
     public long trackFile(File file, String type, boolean deleteOnInvalidation)
             throws IOException {
-        SiteManagerRemote siteManager = this.coreConnector.getSiteManager();
         TrackedFile tf = new TrackedFile(file, type, deleteOnInvalidation);
         Long key;
 
@@ -186,7 +185,7 @@ public class FileTracker implements Serializable, ServletContextListener {
             throw new IllegalStateException(
                     "Random number generator not initialized");
         }
-        siteManager.recordLogEvent(new FileTrackerLogEvent(
+        this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
                 FileTrackerLogEvent.REQUEST_RECEIVED, file.toString(), type,
                 deleteOnInvalidation));
 
@@ -200,7 +199,7 @@ public class FileTracker implements Serializable, ServletContextListener {
             trimToSize();
             forgetExpiredFiles();
         }
-        siteManager.recordLogEvent(new FileTrackerLogEvent(
+        this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
                 FileTrackerLogEvent.ASSIGN_KEY, file.toString(),
                 key.longValue()));
 
@@ -263,9 +262,7 @@ public class FileTracker implements Serializable, ServletContextListener {
      * @throws IOException if could not connect to sitemanager
      */
     public synchronized void forgetFile(long key) throws IOException {
-        SiteManagerRemote siteManager = this.coreConnector.getSiteManager();
-        
-        siteManager.recordLogEvent(new FileTrackerLogEvent(
+        this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
                 FileTrackerLogEvent.TRACKING_REQUEST_RECEIVED, key));
         forgetFile(fileMap.remove(Long.valueOf(key)));
     }
@@ -281,9 +278,7 @@ public class FileTracker implements Serializable, ServletContextListener {
     protected synchronized void forgetFile(TrackedFile tf)
             throws IOException {
         if (tf != null) {
-            SiteManagerRemote siteManager = this.coreConnector.getSiteManager();
-            
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
+            this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
                     FileTrackerLogEvent.FILE_REMOVED, tf.getFile().toString()));
             tf.invalidate();
             currentFileSize -= tf.getRecoverableLength();
@@ -307,14 +302,12 @@ public class FileTracker implements Serializable, ServletContextListener {
     public synchronized TrackedFile getTrackedFile(long key)
             throws IOException {
         TrackedFile tf = fileMap.get(Long.valueOf(key));
-        SiteManagerRemote siteManager = this.coreConnector.getSiteManager();
-
         if (tf != null) {
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
+            this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
                     FileTrackerLogEvent.RETRIEVE_SUCCESS, key));
             tf.setTimestamp(System.currentTimeMillis());
         } else {
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
+            this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
                     FileTrackerLogEvent.RETRIEVE_FAILURE, key));
         }
 
@@ -327,14 +320,11 @@ public class FileTracker implements Serializable, ServletContextListener {
      * file, if any, associated with the specified key
      * 
      * @param key a {@code long} identifying the updated tracked file
-     * @throws RemoteException if could not connect to sitemanager
      */
-    public synchronized void recordFileUpdate(long key) throws RemoteException {
+    public synchronized void recordFileUpdate(long key) {
         TrackedFile tf = fileMap.get(Long.valueOf(key));
-        SiteManagerRemote siteManager = this.coreConnector.getSiteManager();
-
         if (tf != null) {
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
+            this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
                     FileTrackerLogEvent.METADATA, key));
             currentFileSize -= tf.getRecoverableLength();
             tf.updateFileLength();
@@ -342,7 +332,7 @@ public class FileTracker implements Serializable, ServletContextListener {
 
             tf.setTimestamp(System.currentTimeMillis());
         } else {
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
+            this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
                     FileTrackerLogEvent.INVALID, key));
         }
     }
@@ -410,19 +400,14 @@ public class FileTracker implements Serializable, ServletContextListener {
      */
     public void contextDestroyed(ServletContextEvent sce) {
         try {
-            SiteManagerRemote siteManager = this.coreConnector.getSiteManager();
-            
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
+            this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
                     FileTrackerLogEvent.SHUTDOWN));
             sce.getServletContext().removeAttribute(DEFAULT_ATTRIBUTE_NAME);
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
+            this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
                     FileTrackerLogEvent.ATTRIBUTE_REMOVED));
             purgeFiles();
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
+            this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
                     FileTrackerLogEvent.PURGE));
-        } catch (RemoteException re) {
-            // all we can do is report it to core connector
-            this.coreConnector.reportRemoteException(re);
         } catch (IOException ioe) {
             // ignore it
         }
@@ -464,23 +449,16 @@ public class FileTracker implements Serializable, ServletContextListener {
         }
 
         context.setAttribute(DEFAULT_ATTRIBUTE_NAME, this);
-        try {
-            SiteManagerRemote siteManager = this.coreConnector.getSiteManager();
-            
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
-                    FileTrackerLogEvent.INSTALL));
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
-                    FileTrackerLogEvent.TEMP_DIR, tempDir));
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
-                    FileTrackerLogEvent.CACHE_SIZE, maxFileSize));
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
-                    FileTrackerLogEvent.INACTIVITY, timeoutMillis));
-            siteManager.recordLogEvent(new FileTrackerLogEvent(
-                    FileTrackerLogEvent.ACCESSIBLE, DEFAULT_ATTRIBUTE_NAME));
-        } catch (RemoteException re) {
-            // all we can do is report it to core connector
-            this.coreConnector.reportRemoteException(re);
-        }
+        this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
+                FileTrackerLogEvent.INSTALL));
+        this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
+                FileTrackerLogEvent.TEMP_DIR, tempDir));
+        this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
+                FileTrackerLogEvent.CACHE_SIZE, maxFileSize));
+        this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
+                FileTrackerLogEvent.INACTIVITY, timeoutMillis));
+        this.coreConnector.recordLogEvent(new FileTrackerLogEvent(
+                FileTrackerLogEvent.ACCESSIBLE, DEFAULT_ATTRIBUTE_NAME));
     }
 
     /**
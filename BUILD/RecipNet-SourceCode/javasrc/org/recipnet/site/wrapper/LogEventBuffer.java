@@ -0,0 +1,253 @@
+/*
+ * Reciprocal Net Project
+ *
+ * LogEventBuffer.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ * 18-Oct-2026: agent counted events offered after shutdown separately from
+ *              those discarded because the queue was full
+ */
+
+package org.recipnet.site.wrapper;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.recipnet.site.shared.logevent.LogEvent;
+
+/**
+ * <p>
+ * A bounded, in-memory queue of {@code LogEvent}s awaiting delivery to core's
+ * Site Manager. Web application code that merely reports what has happened
+ * hands its events to {@link #offer(LogEvent)}, which never blocks and never
+ * contacts core; a single daemon thread, started upon the first offer, drains
+ * the queue and ships its contents to core in batches through
+ * {@code SiteManagerRemote.recordLogEvents()}. Events reach core in the order
+ * they were offered.
+ * </p><p>
+ * When the queue is full, as it might become if core or its syslog is slow or
+ * unreachable, further events are discarded rather than allowed to delay the
+ * request that produced them; a batch that core could not be reached to
+ * accept is likewise discarded. Events offered after {@link #shutdown(long)}
+ * are discarded too. Each kind of loss is counted separately and may be
+ * inspected through this object's accessors.
+ * </p><p>
+ * Instances are thread-safe. {@code CoreConnector} owns the one instance for
+ * each web application.
+ * </p>
+ */
+public class LogEventBuffer {
+
+    /** The number of events the queue holds unless otherwise configured */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /** The greatest number of events delivered to core by one RMI call */
+    private static final int MAX_BATCH_SIZE = 250;
+
+    /**
+     * The number of milliseconds to wait before delivering again after core
+     * could not be reached
+     */
+    private static final long RETRY_DELAY = 5000;
+
+    /**
+     * The number of milliseconds the delivery thread waits for an event before
+     * checking whether it should exit
+     */
+    private static final long POLL_INTERVAL = 1000;
+
+    /** The connector through which events are delivered */
+    private final CoreConnector connector;
+
+    /** The events not yet taken for delivery, in order */
+    private final BlockingQueue<LogEvent> queue;
+
+    /** The number of events delivered to core */
+    private final AtomicLong countDelivered;
+
+    /** The number of events discarded because the queue was full */
+    private final AtomicLong countDroppedQueueFull;
+
+    /** The number of events discarded because core could not be reached */
+    private final AtomicLong countDroppedUndeliverable;
+
+    /** The number of events discarded because they were offered too late */
+    private final AtomicLong countDroppedAfterShutdown;
+
+    /**
+     * The thread that delivers events, or null if it has not yet been
+     * started. Guarded by this object's monitor.
+     */
+    private Thread deliveryThread;
+
+    /** Set by {@code shutdown()} to ask the delivery thread to exit */
+    private volatile boolean shuttingDown;
+
+    /**
+     * Initializes a new {@code LogEventBuffer}.
+     *
+     * @param connector the {@code CoreConnector} through which Site Manager is
+     *        to be reached
+     * @param capacity the greatest number of events that may await delivery
+     */
+    public LogEventBuffer(CoreConnector connector, int capacity) {
+        this.connector = connector;
+        this.queue = new ArrayBlockingQueue<LogEvent>(capacity);
+        this.countDelivered = new AtomicLong();
+        this.countDroppedQueueFull = new AtomicLong();
+        this.countDroppedUndeliverable = new AtomicLong();
+        this.countDroppedAfterShutdown = new AtomicLong();
+        this.deliveryThread = null;
+        this.shuttingDown = false;
+    }
+
+    /**
+     * Queues an event for delivery to core without waiting for it to be
+     * delivered.
+     *
+     * @param ev the event to be recorded
+     * @return true if the event was queued, or false if it was discarded
+     *         because the queue was full or this buffer has been shut down
+     */
+    public boolean offer(LogEvent ev) {
+        if (this.shuttingDown) {
+            this.countDroppedAfterShutdown.incrementAndGet();
+            return false;
+        } else if (!this.queue.offer(ev)) {
+            this.countDroppedQueueFull.incrementAndGet();
+            return false;
+        }
+        startDeliveryThreadIfNeeded();
+
+        return true;
+    }
+
+    /**
+     * Asks the delivery thread to deliver the events already queued and then
+     * exit, and waits a limited time for it to do so. Events offered
+     * afterward are discarded.
+     *
+     * @param waitMillis the greatest number of milliseconds to wait
+     */
+    public void shutdown(long waitMillis) {
+        Thread thread;
+
+        this.shuttingDown = true;
+        synchronized (this) {
+            thread = this.deliveryThread;
+        }
+        if (thread != null) {
+            try {
+                thread.join(waitMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** @return the number of events waiting to be delivered */
+    public int getCountPending() {
+        return this.queue.size();
+    }
+
+    /** @return the number of events delivered to core */
+    public long getCountDelivered() {
+        return this.countDelivered.get();
+    }
+
+    /** @return the number of events discarded because the queue was full */
+    public long getCountDroppedQueueFull() {
+        return this.countDroppedQueueFull.get();
+    }
+
+    /**
+     * @return the number of events discarded because core could not be
+     *         reached to accept them
+     */
+    public long getCountDroppedUndeliverable() {
+        return this.countDroppedUndeliverable.get();
+    }
+
+    /**
+     * @return the number of events discarded because they were offered after
+     *         {@code shutdown()} had been invoked
+     */
+    public long getCountDroppedAfterShutdown() {
+        return this.countDroppedAfterShutdown.get();
+    }
+
+    /** Internal function that starts the delivery thread the first time. */
+    private synchronized void startDeliveryThreadIfNeeded() {
+        if (this.deliveryThread == null) {
+            this.deliveryThread = new Thread("LogEventBuffer delivery") {
+                @Override
+                public void run() {
+                    deliverEvents();
+                }
+            };
+            this.deliveryThread.setDaemon(true);
+            this.deliveryThread.start();
+        }
+    }
+
+    /**
+     * Internal function that forms the body of the delivery thread. It
+     * repeatedly takes as many queued events as one batch may carry and
+     * delivers them, until {@code shutdown()} has been called and the queue
+     * is empty.
+     */
+    private void deliverEvents() {
+        List<LogEvent> batch = new ArrayList<LogEvent>(MAX_BATCH_SIZE);
+
+        try {
+            while (true) {
+                LogEvent first = this.queue.poll(POLL_INTERVAL,
+                        TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    if (this.shuttingDown) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.clear();
+                batch.add(first);
+                this.queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                if (!deliverBatch(batch) && !this.shuttingDown) {
+                    Thread.sleep(RETRY_DELAY);
+                }
+            }
+        } catch (InterruptedException ex) {
+            // Exit quietly; undelivered events are lost.
+        }
+    }
+
+    /**
+     * Internal function that delivers one batch of events to core, or counts
+     * them as discarded if core cannot be reached.
+     *
+     * @param batch the events to deliver
+     * @return true if the events were delivered, false otherwise
+     */
+    private boolean deliverBatch(List<LogEvent> batch) {
+        try {
+            this.connector.getSiteManager().recordLogEvents(
+                    batch.toArray(new LogEvent[batch.size()]));
+            this.countDelivered.addAndGet(batch.size());
+
+            return true;
+        } catch (RemoteException ex) {
+            this.connector.reportRemoteException(ex);
+        } catch (IllegalStateException ex) {
+            // The connector is not configured; nothing can be delivered.
+        }
+        this.countDroppedUndeliverable.addAndGet(batch.size());
+
+        return false;
+    }
+}
@@ -6,26 +6,92 @@
  * 18-Jun-2004: ekoperda wrote first draft
  * 04-Jan-2006: jobollin fixed bug #1717 in read(byte[], int, int); removed
  *              unusued imports; formatted the source to remove tab characters
+ * 18-Oct-2026: agent added direct reads of files local to core, read-ahead of
+ *              remote chunks, and transferTo()
+ * 18-Oct-2026: agent fixed read() returning negative values for bytes above
+ *              0x7f and fetchData() not resetting the buffer read pointer
+ * 18-Oct-2026: agent made direct reads renew the ticket periodically, made
+ *              chooseSource() report RemoteExceptions, and removed the unused
+ *              transferTo()
+ * 18-Oct-2026: agent restored transferTo(), now renewing the ticket during
+ *              long direct transfers
  */
 
 package org.recipnet.site.wrapper;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.rmi.RemoteException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.recipnet.site.OperationFailedException;
 import org.recipnet.site.OperationNotPermittedException;
+import org.recipnet.site.core.RepositoryManagerRemote;
 
 /**
+ * <p>
  * An extension of {@code InputStream} that reads the contents of a sample data
  * file in the repository by invoking methods on {@code RepositoryManager} via
  * RMI. The caller is responsible for opening his desired file by invoking
  * {@code RepositoryManager.beginReadingDataFile()} first before using this
  * class. The caller should invoke {@code close()} once his need for this stream
  * is finished. This class is NOT thread-safe and does not support mark()-ing.
+ * </p><p>
+ * When core runs on the same host as the web application (per
+ * {@link CoreConnector#isCoreLocal()}) and the file is readable by the web
+ * application, this class obtains the file's location from
+ * {@code RepositoryManager.getDataFileLocation()} and reads it directly from
+ * the filesystem; the ticket then serves only to protect the file until
+ * {@code close()}, and is renewed every {@code RENEWAL_INTERVAL}
+ * milliseconds (at most) while reading continues, as each remote read would
+ * have renewed it. Otherwise the file is fetched in chunks via RMI, with the
+ * next chunk requested in the background while the current one is consumed.
+ * Either way, {@link #transferTo(WritableByteChannel)} copies the remainder
+ * of the file to a channel, using {@code FileChannel.transferTo()} when
+ * possible.
+ * </p>
  */
 public class RepositoryFileInputStream extends InputStream {
+
+    /**
+     * Runs the background requests for the next chunk of remotely-read files.
+     * Its threads are daemons so that they never hold up container shutdown.
+     */
+    private static final ExecutorService READ_AHEAD_EXECUTOR
+            = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r,
+                            "RepositoryFileInputStream read-ahead");
+
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+
+    /**
+     * The number of milliseconds after which a file being read directly has
+     * its ticket renewed by the next read; well within the repository's
+     * default ticket lifetime of thirty seconds
+     */
+    private static final long RENEWAL_INTERVAL = 10000;
+
+    /**
+     * The most bytes {@code transferTo()} asks the filesystem to transfer at
+     * once, so that it can renew the ticket between transfers of a large file
+     */
+    private static final long MAX_DIRECT_TRANSFER = 8 << 20;
+
     /**
      * A reference to the webapp's {@code CoreConnector}, set by the
      * constructor.
@@ -74,6 +140,32 @@ public class RepositoryFileInputStream extends InputStream {
      */
     private boolean isClosed;
 
+    /**
+     * Flag that is set by {@code chooseSource()} once it has decided whether
+     * to read the file directly or via RMI.
+     */
+    private boolean isSourceChosen;
+
+    /**
+     * A stream reading the repository file directly from the filesystem, set
+     * by {@code chooseSource()} when core runs on this host; {@code null}
+     * when the file is read via RMI.
+     */
+    private FileInputStream localStream;
+
+    /**
+     * The system time at which the ticket was last renewed on behalf of
+     * {@code localStream}; set by {@code chooseSource()} and
+     * {@code renewTicketIfDue()}.
+     */
+    private long lastRenewalTime;
+
+    /**
+     * The outstanding background request for the chunk that follows
+     * {@code buffer}, if any; set and cleared by {@code fetchData()}.
+     */
+    private Future<byte[]> pendingFetch;
+
     /**
      * Initializes a {@code RepositoryFileInputStream} with the specified
      * CoreConnector and ticket ID, and a default buffer size
@@ -118,6 +210,10 @@ public class RepositoryFileInputStream extends InputStream {
         this.nextIndexInBufferToRead = 0;
         this.eofReached = false;
         this.isClosed = false;
+        this.isSourceChosen = false;
+        this.localStream = null;
+        this.lastRenewalTime = 0;
+        this.pendingFetch = null;
     }
 
     /**
@@ -146,11 +242,16 @@ public class RepositoryFileInputStream extends InputStream {
         if (this.isClosed) {
             throw newIOExceptionWithCause(new IllegalStateException());
         }
+        chooseSource();
+        if (this.localStream != null) {
+            renewTicketIfDue();
+            return this.localStream.read();
+        }
         if (available() == 0) {
             fetchData();
         }
         if (available() >= 1) {
-            int rc = this.buffer[this.nextIndexInBufferToRead];
+            int rc = this.buffer[this.nextIndexInBufferToRead] & 0xff;
             this.nextIndexInBufferToRead++;
             return rc;
         }
@@ -206,6 +307,11 @@ public class RepositoryFileInputStream extends InputStream {
         if (len == 0) {  // the only case where it is correct to return 0
             return 0;
         }
+        chooseSource();
+        if (this.localStream != null) {
+            renewTicketIfDue();
+            return this.localStream.read(b, off, len);
+        }
         
         /*
          * Copy data to the caller's buffer until it fills up or we run out
@@ -246,6 +352,11 @@ public class RepositoryFileInputStream extends InputStream {
         if (this.isClosed) {
             throw newIOExceptionWithCause(new IllegalStateException());
         }
+        chooseSource();
+        if (this.localStream != null) {
+            renewTicketIfDue();
+            return this.localStream.skip(n);
+        }
 
         // Decide how many bytes we can safety skip before we reached the
         // end of our buffer. This value is always expressable as a 31-bit
@@ -273,6 +384,9 @@ public class RepositoryFileInputStream extends InputStream {
         if (this.isClosed) {
             throw newIOExceptionWithCause(new IllegalStateException());
         }
+        if (this.localStream != null) {
+            return this.localStream.available();
+        }
         return ((this.buffer == null) ? 0
                 : (this.buffer.length - this.nextIndexInBufferToRead));
     }
@@ -301,6 +415,18 @@ public class RepositoryFileInputStream extends InputStream {
         }
 
         try {
+            if (this.localStream != null) {
+                this.localStream.close();
+                this.localStream = null;
+            }
+            if (this.pendingFetch != null) {
+                // The ticket must not be closed while a read is in progress.
+                try {
+                    awaitPendingFetch();
+                } catch (IOException ex) {
+                    // The data is no longer wanted anyway.
+                }
+            }
             this.cc.getRepositoryManager().closeDataFile(this.ticketId);
             this.isClosed = true;
         } catch (OperationFailedException ex) {
@@ -311,10 +437,140 @@ public class RepositoryFileInputStream extends InputStream {
         }
     }
 
+    /**
+     * Copies the remainder of the file to the specified channel, leaving this
+     * stream at end-of-file. When the file is read directly this uses
+     * {@code FileChannel.transferTo()}, which lets the operating system move
+     * the data without copying it through the Java heap where it can, and
+     * renews the ticket between transfers as {@code read()} would; otherwise
+     * each chunk fetched via RMI is written to the channel as it arrives.
+     * 
+     * @param target the channel to which the file's data should be written;
+     *        it is not closed
+     * 
+     * @return the number of bytes transferred
+     * 
+     * @throws IOException if writing to {@code target} fails, or with the
+     *         same nested exceptions as {@code read(byte[], int, int)}
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long bytesTransferred = 0;
+
+        if (this.isClosed) {
+            throw newIOExceptionWithCause(new IllegalStateException());
+        }
+        chooseSource();
+        if (this.localStream != null) {
+            FileChannel channel = this.localStream.getChannel();
+            long position = channel.position();
+            long size = channel.size();
+
+            while (position < size) {
+                renewTicketIfDue();
+
+                long n = channel.transferTo(position,
+                        Math.min(size - position, MAX_DIRECT_TRANSFER),
+                        target);
+
+                position += n;
+                bytesTransferred += n;
+            }
+            channel.position(position);
+        } else {
+            do {
+                if (available() > 0) {
+                    ByteBuffer data = ByteBuffer.wrap(this.buffer,
+                            this.nextIndexInBufferToRead, available());
+
+                    while (data.hasRemaining()) {
+                        bytesTransferred += target.write(data);
+                    }
+                    this.nextIndexInBufferToRead = this.buffer.length;
+                }
+                fetchData();
+            } while (available() > 0);
+        }
+
+        return bytesTransferred;
+    }
+
+    /**
+     * Internal function that decides, the first time it is invoked, whether
+     * the file will be read directly from the filesystem or via RMI, and in
+     * the former case opens {@code localStream}. Any failure to obtain or
+     * open the file's location results in the RMI path being used.
+     */
+    private void chooseSource() {
+        if (this.isSourceChosen) {
+            return;
+        }
+        this.isSourceChosen = true;
+        if (!this.cc.isCoreLocal()) {
+            return;
+        }
+        try {
+            File file = new File(this.cc.getRepositoryManager()
+                    .getDataFileLocation(this.ticketId));
+
+            // getDataFileLocation() renewed the ticket
+            this.lastRenewalTime = System.currentTimeMillis();
+            if (file.isFile() && file.canRead()) {
+                this.localStream = new FileInputStream(file);
+            }
+        } catch (RemoteException ex) {
+            this.cc.reportRemoteException(ex);
+            // Fall back to reading via RMI.
+        } catch (IOException ex) {
+            // Fall back to reading via RMI.
+        } catch (OperationFailedException ex) {
+            // Fall back to reading via RMI.
+        } catch (OperationNotPermittedException ex) {
+            // Fall back to reading via RMI.
+        }
+    }
+
+    /**
+     * Internal function that renews the ticket on behalf of
+     * {@code localStream} if {@code RENEWAL_INTERVAL} milliseconds have
+     * passed since it was last renewed, so that the ticket, and with it the
+     * protection of the file, outlives a long read.
+     * 
+     * @throws IOException with: <ul>
+     *         <li>a nested {@code OperationFailedException} if
+     *         {@code RepositoryManager} encountered a low-level error</li>
+     *         <li>a nested {@code RemoteException} on RMI error; in this case
+     *         case {@code CoreConnector} has been notified of the error
+     *         already</li>
+     *         <li>a nested {@code ResourceNotFoundException} if
+     *         {@code RepositoryManager} determined the ticket specified at
+     *         construction time is not valid, for instance because it
+     *         expired</li>
+     *         </ul>
+     */
+    private void renewTicketIfDue() throws IOException {
+        long now = System.currentTimeMillis();
+
+        if (now - this.lastRenewalTime < RENEWAL_INTERVAL) {
+            return;
+        }
+        try {
+            this.cc.getRepositoryManager().renewTickets(this.ticketId);
+            this.lastRenewalTime = now;
+        } catch (OperationFailedException ex) {
+            // Includes ResourceNotFoundException
+            throw newIOExceptionWithCause(ex);
+        } catch (RemoteException ex) {
+            this.cc.reportRemoteException(ex);
+            throw newIOExceptionWithCause(ex);
+        }
+    }
+
     /**
      * Internal function that fetches data from {@code RepositoryManager} and
      * replaces the {@code buffer}, resetting the read pointer for the buffer
-     * to position 0.
+     * to position 0. Unless end-of-file has been reached, a request for the
+     * following chunk is then started in the background so that it can travel
+     * from core while the caller consumes this one.
      * 
      * @throws IOException with: <ul>
      *         <li>a nested {@code OperationFailedException} if
@@ -338,13 +594,27 @@ public class RepositoryFileInputStream extends InputStream {
                 return;
             }
 
-            // Do the actual fetch from core.
-            this.buffer = this.cc.getRepositoryManager().readFromDataFile(
-                    this.ticketId, this.preferredBufferSize);
+            // Do the actual fetch from core, unless it is already underway.
+            this.buffer = (this.pendingFetch == null)
+                    ? this.cc.getRepositoryManager().readFromDataFile(
+                            this.ticketId, this.preferredBufferSize)
+                    : awaitPendingFetch();
+            this.nextIndexInBufferToRead = 0;
 
             // Test to discover if EOF might have been reached.
             if (buffer.length < preferredBufferSize) {
                 this.eofReached = true;
+            } else {
+                final RepositoryManagerRemote repositoryManager
+                        = this.cc.getRepositoryManager();
+
+                this.pendingFetch = READ_AHEAD_EXECUTOR.submit(
+                        new Callable<byte[]>() {
+                            public byte[] call() throws Exception {
+                                return repositoryManager.readFromDataFile(
+                                        ticketId, preferredBufferSize);
+                            }
+                        });
             }
         } catch (OperationFailedException ex) {
             throw newIOExceptionWithCause(ex);
@@ -356,6 +626,31 @@ public class RepositoryFileInputStream extends InputStream {
         }
     }
 
+    /**
+     * Internal function that waits for the outstanding background request
+     * started by {@code fetchData()} and returns its result, clearing
+     * {@code pendingFetch}.
+     * 
+     * @throws IOException with the exception that the request failed with as
+     *         its cause; if that was a {@code RemoteException} then
+     *         {@code CoreConnector} has been notified of it already
+     */
+    private byte[] awaitPendingFetch() throws IOException {
+        try {
+            return this.pendingFetch.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw newIOExceptionWithCause(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RemoteException) {
+                this.cc.reportRemoteException((RemoteException) ex.getCause());
+            }
+            throw newIOExceptionWithCause(ex.getCause());
+        } finally {
+            this.pendingFetch = null;
+        }
+    }
+
     /**
      * Generates exception objects for error reporting, with specified causes.
      * This class can't throw exceptions specific to Reciprocal Net (descended
@@ -11,6 +11,9 @@
  *              toString()
  * 17-May-2006: jobollin reformatted the source; removed unused imports
  * 23-May-2006: jobollin added touchStreams(); updated docs
+ * 18-Oct-2026: agent made full buffers travel to core in the background while
+ *              the next one fills, and closeInUnison() flush all streams at
+ *              once
  */
 
 package org.recipnet.site.wrapper;
@@ -20,10 +23,17 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.rmi.RemoteException;
 import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.recipnet.site.OperationFailedException;
 import org.recipnet.site.OperationNotPermittedException;
 import org.recipnet.site.core.RepositoryManager;
+import org.recipnet.site.core.RepositoryManagerRemote;
 import org.recipnet.site.core.ResourceNotFoundException;
 import org.recipnet.site.shared.db.SampleInfo;
 
@@ -34,13 +44,32 @@ import org.recipnet.site.shared.db.SampleInfo;
  * {@code RepositoryManager.beginWritingDataFile()} before initializing an
  * instance of this class. For efficiency, write operations on this stream are
  * buffered in memory and sent to the repository in large chunks (so little is
- * gained by buffering the data externally). Users should invoke exactly one of
- * {@link #close()}, {@link #abort()}, or
- * {@link #closeInUnison(Collection)} before abandoning an instance. This class
- * is NOT thread-safe.
+ * gained by buffering the data externally). Each full chunk is sent by a
+ * background thread while the next one accumulates, so that the caller need
+ * not wait for a round-trip to core per chunk; at most one chunk per stream is
+ * in flight at a time, and an error in sending it is reported by a subsequent
+ * call. Users should invoke exactly one of {@link #close()}, {@link #abort()},
+ * or {@link #closeInUnison(Collection)} before abandoning an instance. This
+ * class is NOT thread-safe.
  */
 public class RepositoryFileOutputStream extends OutputStream {
 
+    /**
+     * Runs the background sends of full chunks. Its threads are daemons so
+     * that they never hold up container shutdown.
+     */
+    private static final ExecutorService WRITE_BEHIND_EXECUTOR
+            = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r,
+                            "RepositoryFileOutputStream write-behind");
+
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+
     /**
      * The default buffer size; used by instances initialized via the binary
      * constructor
@@ -87,6 +116,19 @@ public class RepositoryFileOutputStream extends OutputStream {
      */
     private boolean isClosed;
 
+    /**
+     * The outstanding background send started by {@code sendBuffer()}, if
+     * any.
+     */
+    private Future<?> pendingSend;
+
+    /**
+     * A buffer the size of {@code buffer} that is not in use, once the first
+     * full chunk has been sent; {@code sendBuffer()} swaps it with
+     * {@code buffer}.
+     */
+    private byte[] spareBuffer;
+
     /**
      * Initializes a new {@code RepositoryFileOutputStream} with the specified
      * {@code CoreConnector} and repository ticket ID, and using the default
@@ -128,6 +170,8 @@ public class RepositoryFileOutputStream extends OutputStream {
         this.buffer = new byte[bufferSize];
         this.nextIndexInBufferToWrite = 0;
         this.isClosed = false;
+        this.pendingSend = null;
+        this.spareBuffer = null;
     }
 
     /**
@@ -160,8 +204,8 @@ public class RepositoryFileOutputStream extends OutputStream {
                     new IllegalStateException("Stream is not open"));
         }
         if (isBufferFull()) {
-            // Our buffer is full; flush it before proceeding.
-            flush();
+            // Our buffer is full; send it before proceeding.
+            sendBuffer();
         }
 
         // Store b in our buffer.
@@ -212,9 +256,9 @@ public class RepositoryFileOutputStream extends OutputStream {
         // Copy data from the caller's buffer until there's no more.
         int countBytesCopied = 0;
         while (countBytesCopied < len) {
-            // Flush our own buffer by writing to core if necessary.
+            // Send our own buffer to core if necessary.
             if (isBufferFull()) {
-                flush();
+                sendBuffer();
             }
 
             // Copy some bytes from the caller's buffer to our own.
@@ -254,13 +298,33 @@ public class RepositoryFileOutputStream extends OutputStream {
             // This stream has already been closed.
             throw newIOExceptionWithCause(new IllegalStateException());
         }
+        sendBuffer();
+        awaitPendingSend();
+    }
+
+    /**
+     * Internal function that starts sending the contents of {@code buffer} to
+     * core in the background, after waiting for the previous send (if any) to
+     * finish, and empties {@code buffer}.
+     * 
+     * @throws IOException as described for {@link #flush()}, if the previous
+     *         send failed
+     */
+    private void sendBuffer() throws IOException {
+        awaitPendingSend();
 
         // Decide how much data to send.
-        byte[] bufferToSend;
+        final byte[] bufferToSend;
 
         if (isBufferFull()) {
-            // Just send our whole buffer directly for efficiency.
+            /*
+             * Just send our whole buffer directly for efficiency, and carry
+             * on with the spare one while it's in flight.
+             */
             bufferToSend = this.buffer;
+            this.buffer = (this.spareBuffer == null)
+                    ? new byte[bufferToSend.length] : this.spareBuffer;
+            this.spareBuffer = bufferToSend;
         } else {
             // Can't send our own buffer because it's the wrong size; create a
             // new one that's the proper size.
@@ -270,22 +334,53 @@ public class RepositoryFileOutputStream extends OutputStream {
         }
 
         // Send the data to core.
+        final RepositoryManagerRemote repositoryManager;
+
         try {
-            this.cc.getRepositoryManager().writeToDataFile(this.ticketId,
-                    bufferToSend);
-        } catch (OperationFailedException ex) {
-            throw newIOExceptionWithCause(ex);
-        } catch (OperationNotPermittedException ex) {
-            throw newIOExceptionWithCause(ex);
+            repositoryManager = this.cc.getRepositoryManager();
         } catch (RemoteException ex) {
             this.cc.reportRemoteException(ex);
             throw newIOExceptionWithCause(ex);
         }
+        this.pendingSend = WRITE_BEHIND_EXECUTOR.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                repositoryManager.writeToDataFile(ticketId, bufferToSend);
+
+                return null;
+            }
+        });
 
         // Update our state.
         this.nextIndexInBufferToWrite = 0;
     }
 
+    /**
+     * Internal function that waits for the outstanding background send
+     * started by {@code sendBuffer()}, if any, clearing {@code pendingSend}.
+     * 
+     * @throws IOException with the exception that the send failed with as its
+     *         cause; if that was a {@code RemoteException} then
+     *         {@code CoreConnector} has been notified of it already
+     */
+    private void awaitPendingSend() throws IOException {
+        if (this.pendingSend == null) {
+            return;
+        }
+        try {
+            this.pendingSend.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw newIOExceptionWithCause(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RemoteException) {
+                this.cc.reportRemoteException((RemoteException) ex.getCause());
+            }
+            throw newIOExceptionWithCause(ex.getCause());
+        } finally {
+            this.pendingSend = null;
+        }
+    }
+
     /**
      * Overrides {@code OutputStream} but behaves according to that
      * specification. Either this method or {@code abort()} or
@@ -350,6 +445,12 @@ public class RepositoryFileOutputStream extends OutputStream {
         if (this.isClosed) {
             throw newIOExceptionWithCause(new IllegalStateException());
         }
+        try {
+            // The ticket must not be aborted while a write is in progress.
+            awaitPendingSend();
+        } catch (IOException ex) {
+            // The data is being discarded anyway.
+        }
         try {
             this.cc.getRepositoryManager().abortDataFile(this.ticketId);
             this.isClosed = true;
@@ -371,9 +472,9 @@ public class RepositoryFileOutputStream extends OutputStream {
     public void copyFromStream(InputStream in) throws IOException {
         for (;;) {
 
-            // Flush our own buffer by writing to core if necessary.
+            // Send our own buffer to core if necessary.
             if (isBufferFull()) {
-                flush();
+                sendBuffer();
             }
 
             // Copy some bytes from the caller's strean to our buffer.
@@ -472,8 +573,15 @@ public class RepositoryFileOutputStream extends OutputStream {
             if (rfos.isClosed) {
                 throw newIOExceptionWithCause(new IllegalStateException());
             }
+        }
+
+        // Send all the streams' remaining data at once, then wait for it.
+        for (RepositoryFileOutputStream rfos : rfosCollection) {
+            rfos.sendBuffer();
+        }
+        for (RepositoryFileOutputStream rfos : rfosCollection) {
             ticketIds[i++] = rfos.ticketId;
-            rfos.flush();
+            rfos.awaitPendingSend();
             rfos.isClosed = true;
             cc = rfos.cc;
         }
@@ -76,7 +76,6 @@ placeholder.
 %package server
 Summary: Reciprocal Net site software daemon - recipnetd
 Group: Networking/Daemons
-Requires: cvs >= 1.11.22
 Requires: java-sun >= 1.6.0.11
 Requires: jaxp_transform_impl
 Requires: mysql-connector-java >= 5.0.8
@@ -0,0 +1,363 @@
+/*
+ * Reciprocal Net Project
+ *
+ * ObjectCacheTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.common;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Exercises the behavior of the {@code ObjectCache} class to verify that it
+ * operates as expected
+ */
+public class ObjectCacheTests extends TestCase {
+
+    /**
+     * Initializes a new {@code ObjectCacheTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public ObjectCacheTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Verifies that {@code newInstance()} honors its parameter string and
+     * rejects malformed ones
+     */
+    public void testNewInstance() {
+        ObjectCache<String> cache
+                = ObjectCache.newInstance("16,0,4,60000,0,0.1,true");
+
+        assertEquals("Wrong max size", 16, cache.getMaxSize());
+        assertEquals("Wrong max age", 60000, cache.getMaxAge());
+        try {
+            ObjectCache.newInstance("16,0,4");
+            fail("Accepted too few parameters");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            ObjectCache.newInstance("16,x,4,60000,0,0.1,true");
+            fail("Accepted a malformed parameter");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Verifies basic storage and retrieval by both keys, and that replacing
+     * an item displaces the old secondary key
+     */
+    public void testPutAndGet() {
+        ObjectCache<String> cache
+                = new ObjectCache<String>(8, 0, 2, 0, 0, 0, true);
+
+        cache.put(1, "one", "first");
+        cache.put(2, "second");
+        assertEquals("first", cache.get(1));
+        assertEquals("first", cache.get("one"));
+        assertEquals("second", cache.get(2));
+        assertNull(cache.get(3));
+        assertEquals(2, cache.size());
+        assertFalse(cache.hasEverLostItem());
+
+        cache.put(1, "uno", "replacement");
+        assertEquals("replacement", cache.get(1));
+        assertEquals("replacement", cache.get("uno"));
+        assertNull("Stale secondary key survived", cache.get("one"));
+        assertEquals(2, cache.size());
+        assertTrue(cache.hasEverLostItem());
+    }
+
+    /**
+     * Verifies that replace() stores its value only in place of the expected
+     * object, and retains the secondary key
+     */
+    public void testReplace() {
+        ObjectCache<String> cache
+                = new ObjectCache<String>(8, 0, 2, 0, 0, 0, true);
+        String original = new String("original");
+
+        cache.put(1, "one", original);
+        assertFalse(cache.replace(1, new String("original"), "copy"));
+        assertSame(original, cache.get(1));
+        assertTrue(cache.replace(1, original, "copy"));
+        assertEquals("copy", cache.get(1));
+        assertEquals("copy", cache.get("one"));
+        assertFalse("Replaced a newer object",
+                cache.replace(1, original, "stale copy"));
+        assertEquals("copy", cache.get(1));
+        assertFalse(cache.replace(2, null, "absent"));
+        assertNull(cache.get(2));
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Verifies that an object stored by replace() expires when the object it
+     * replaced would have, and no later
+     */
+    public void testReplace__expiry() throws InterruptedException {
+        ObjectCache<String> cache
+                = new ObjectCache<String>(8, 0, 2, 100, 0, 0, true);
+
+        cache.put(1, "one", "first");
+        cache.put(2, "second");
+        Thread.sleep(60);
+        assertTrue(cache.replace(1, "first", "copy"));
+        Thread.sleep(60);
+        assertNull("Replacement outlived the original", cache.get("one"));
+        cache.prune();
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getExpirationCount());
+    }
+
+    /**
+     * Verifies that an object stored by replace() takes the place in the
+     * eviction order of the object it replaced
+     */
+    public void testReplace__evictionOrder() {
+        ObjectCache<Integer> cache
+                = new ObjectCache<Integer>(4, 0, 2, 0, 0, 0, false);
+
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, i);
+        }
+        assertTrue(cache.replace(0, 0, 10));
+        cache.put(4, 4);
+        assertNull("Replacement was treated as new", cache.get(0));
+        assertNull(cache.get(1));
+        assertEquals(Integer.valueOf(2), cache.get(2));
+        assertEquals(Integer.valueOf(3), cache.get(3));
+        assertEquals(Integer.valueOf(4), cache.get(4));
+    }
+
+    /**
+     * Verifies that replace() accounts for the difference in weight between
+     * the two objects, and drops the old object if the new one could never
+     * fit
+     */
+    public void testReplace__weight() {
+        ObjectCache<String> cache = new ObjectCache<String>(100, 1, 0, false,
+                10, new ObjectCache.Weigher<String>() {
+                    public long weigh(String value) {
+                        return value.length();
+                    }
+                });
+
+        cache.put(1, "aaaa");
+        cache.put(2, "bbbb");
+        assertTrue(cache.replace(1, "aaaa", "aa"));
+        assertEquals(6, cache.getTotalWeight());
+        assertTrue(cache.replace(2, "bbbb", "bbbbbbbb"));
+        assertEquals(10, cache.getTotalWeight());
+        assertEquals("aa", cache.get(1));
+        assertTrue(cache.replace(2, "bbbbbbbb", "bbbbbbbbbbbb"));
+        assertNull("Overweight item was cached", cache.get(2));
+        assertEquals(2, cache.getTotalWeight());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Verifies that the secondary key cannot be used unless enabled
+     */
+    public void testSecondaryKeyDisabled() {
+        ObjectCache<String> cache
+                = new ObjectCache<String>(8, 0, 2, 0, 0, 0, false);
+
+        try {
+            cache.put(1, "one", "first");
+            fail("Accepted a secondary key");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        try {
+            cache.get("one");
+            fail("Permitted a secondary key lookup");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        cache.put(1, "first");
+        cache.flush();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Verifies that the cache never exceeds its maximum size, that pruning
+     * frees the hinted number of slots, and that recently-referenced items
+     * survive eviction in preference to unreferenced ones
+     */
+    public void testEviction() {
+        ObjectCache<Integer> cache
+                = new ObjectCache<Integer>(4, 0, 2, 0, 0, 0, false);
+
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(Integer.valueOf(0), cache.get(0));
+        assertEquals(Integer.valueOf(1), cache.get(1));
+        cache.put(4, 4);
+        assertEquals(3, cache.size());
+        assertEquals(Integer.valueOf(0), cache.get(0));
+        assertEquals(Integer.valueOf(1), cache.get(1));
+        assertNull("Unreferenced item survived", cache.get(2));
+        assertNull("Unreferenced item survived", cache.get(3));
+        assertEquals(2, cache.getEvictionCount());
+
+        for (int i = 5; i < 100; i++) {
+            cache.put(i, i);
+            assertTrue("Cache overflowed", cache.size() <= 4);
+        }
+        assertTrue(cache.hasEverLostItem());
+    }
+
+    /**
+     * Verifies that a weight-bounded cache evicts to stay within its weight
+     * limit and declines to cache objects that could never fit
+     */
+    public void testWeightBound() {
+        ObjectCache<String> cache = new ObjectCache<String>(100, 1, 0, false,
+                10, new ObjectCache.Weigher<String>() {
+                    public long weigh(String value) {
+                        return value.length();
+                    }
+                });
+
+        cache.put(1, "aaaa");
+        cache.put(2, "bbbb");
+        assertEquals(8, cache.getTotalWeight());
+        cache.put(3, "cccc");
+        assertEquals(8, cache.getTotalWeight());
+        assertNull("Oldest item survived", cache.get(1));
+        assertEquals("cccc", cache.get(3));
+        cache.put(4, "dddddddddddd");
+        assertNull("Overweight item was cached", cache.get(4));
+        assertEquals(2, cache.size());
+        cache.invalidate(2);
+        assertEquals(4, cache.getTotalWeight());
+        cache.flush();
+        assertEquals(0, cache.getTotalWeight());
+    }
+
+    /**
+     * Verifies that aged items can no longer be retrieved and are counted as
+     * expirations
+     */
+    public void testExpiry() throws InterruptedException {
+        ObjectCache<String> cache
+                = new ObjectCache<String>(8, 0, 2, 20, 0, 0, true);
+
+        cache.put(1, "one", "first");
+        cache.put(2, "second");
+        Thread.sleep(50);
+        assertNull(cache.get("one"));
+        assertEquals(1, cache.size());
+        cache.prune();
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getExpirationCount());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    /**
+     * Verifies the hit and miss counters and their reset
+     */
+    public void testCounters() {
+        ObjectCache<String> cache
+                = new ObjectCache<String>(8, 0, 2, 0, 0, 0, false);
+
+        cache.put(1, "first");
+        cache.get(1);
+        cache.get(1);
+        cache.get(2);
+        cache.invalidate(1);
+        cache.get(1);
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+        cache.resetStatistics();
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    /**
+     * Verifies that {@code getAll()} returns exactly the current objects
+     */
+    public void testGetAll() {
+        ObjectCache<String> cache
+                = new ObjectCache<String>(8, 0, 2, 0, 0, 0, false);
+
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        cache.invalidate(2);
+
+        Set<String> expected = new HashSet<String>(Arrays.asList("a", "c"));
+
+        assertEquals(expected,
+                new HashSet<String>(Arrays.asList(cache.getAll(String.class))));
+        assertEquals(expected, new HashSet<Object>(
+                Arrays.asList(cache.getAll())));
+    }
+
+    /**
+     * Verifies that concurrent readers and writers leave the cache within
+     * its bounds and with consistent primary and secondary mappings
+     */
+    public void testConcurrentAccess() throws InterruptedException {
+        final ObjectCache<String> cache
+                = new ObjectCache<String>(64, 0, 8, 0, 0, 0, true);
+        Thread[] threads = new Thread[8];
+        final Throwable[] failure = new Throwable[1];
+
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20000; i++) {
+                            int key = (i * 31 + seed) % 200;
+
+                            if (i % 3 == 0) {
+                                cache.put(key, "k" + key, "v" + key);
+                            } else {
+                                String value = cache.get(key);
+
+                                if ((value != null)
+                                        && !value.equals("v" + key)) {
+                                    throw new AssertionError(value);
+                                }
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        synchronized (failure) {
+                            failure[0] = ex;
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull("Worker failed: " + failure[0], failure[0]);
+        assertTrue("Cache overflowed", cache.size() <= 64);
+        for (int key = 0; key < 200; key++) {
+            String value = cache.get(key);
+
+            if (value != null) {
+                assertEquals(value, cache.get("k" + key));
+            }
+        }
+    }
+}
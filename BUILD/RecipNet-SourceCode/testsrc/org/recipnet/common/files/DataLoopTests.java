@@ -4,6 +4,8 @@
  * DataLoopTests.java
  * 
  * Mar 31, 2005: jobollin wrote first draft
+ * 18-Oct-2026: agent added tests of the bulk column accessors and of value
+ *              preservation by the columnar storage
  */
 
 package org.recipnet.common.files;
@@ -19,6 +21,9 @@ import java.util.Map;
 
 import org.recipnet.common.files.CifFile.DataLoop;
 import org.recipnet.common.files.CifFile.LoopEvent;
+import org.recipnet.common.files.cif.NAValue;
+import org.recipnet.common.files.cif.NumberValue;
+import org.recipnet.common.files.cif.StringValue;
 import org.recipnet.common.files.cif.UnknownValue;
 
 import junit.framework.TestCase;
@@ -2396,6 +2401,177 @@ public class DataLoopTests extends TestCase {
         }
     }
     
+    /**
+     * Tests the behavior of {@code getNumericValues(String, double)},
+     * {@code getStandardUncertainties(String, double)}, and
+     * {@code getColumnValues(String)} when the specified name is not in the
+     * loop; an {@code IllegalArgumentException} is expected from each
+     */
+    public void testMethod_columnAccessors__noMatch() {
+        addDummyLoopHeader();
+        addDummyLoopRecord();
+        try {
+            testLoop.getNumericValues("_x", 0.0);
+            fail("getNumericValues() accepted a name not in the loop");
+        } catch (IllegalArgumentException iae) {
+            // the expected case
+        }
+        try {
+            testLoop.getStandardUncertainties("_x", 0.0);
+            fail("getStandardUncertainties() accepted a name not in the loop");
+        } catch (IllegalArgumentException iae) {
+            // the expected case
+        }
+        try {
+            testLoop.getColumnValues("_x");
+            fail("getColumnValues() accepted a name not in the loop");
+        } catch (IllegalArgumentException iae) {
+            // the expected case
+        }
+    }
+
+    /**
+     * Tests the behavior of {@code getNumericValues(String, double)},
+     * {@code getStandardUncertainties(String, double)}, and
+     * {@code getColumnValues(String)} on columns of numbers mixed with
+     * placeholders, and of other values; numbers' values and uncertainties
+     * should be reported, with the default for everything else
+     */
+    public void testMethod_columnAccessors() {
+        CifFile.CifValue[] numbers = { NumberValue.parse("0.1234(5)"),
+                UnknownValue.instance, NumberValue.parse("-2"),
+                NAValue.instance, NumberValue.parse("1.5e2(3)") };
+        CifFile.CifValue[] others = { new StringValue("C1"),
+                new StringValue("C1"), NumberValue.parse("3.25"),
+                new TestCifValue(), UnknownValue.instance };
+        double[] expectedValues = { 0.1234, -1.0, -2.0, -1.0, 150.0 };
+        double[] expectedSus = { 0.0005, -1.0, 0.0, -1.0, 30.0 };
+        double[] values;
+        double[] sus;
+        
+        testLoop.addName("_Number");
+        testLoop.addName("_other");
+        for (int i = 0; i < numbers.length; i++) {
+            testLoop.addRecord(Arrays.asList(numbers[i], others[i]));
+        }
+        
+        values = testLoop.getNumericValues("_number", -1.0);
+        sus = testLoop.getStandardUncertainties("_NUMBER", -1.0);
+        assertEquals("Wrong value count", numbers.length, values.length);
+        assertEquals("Wrong uncertainty count", numbers.length, sus.length);
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals("Wrong value", expectedValues[i], values[i], 1e-12);
+            assertEquals("Wrong uncertainty", expectedSus[i], sus[i], 1e-12);
+        }
+        
+        values = testLoop.getNumericValues("_other", Double.NaN);
+        assertTrue("Wrong value", Double.isNaN(values[0]));
+        assertEquals("Wrong value", 3.25, values[2], 0.0);
+        assertTrue("Wrong value", Double.isNaN(values[3]));
+        
+        values[2] = 0.0;
+        assertEquals("Array not independent of the loop", 3.25,
+                testLoop.getNumericValues("_other", Double.NaN)[2], 0.0);
+        assertEquals("Wrong column values", Arrays.asList(numbers).toString(),
+                Arrays.asList(testLoop.getColumnValues("_number")).toString());
+        assertSame("Wrong column value", others[3],
+                testLoop.getColumnValues("_other")[3]);
+    }
+
+    /**
+     * Tests that numbers stored in a loop are retrieved with the same text,
+     * value, and uncertainty with which they were stored, whatever their
+     * form, both before and after their column has had to accommodate a
+     * non-numeric value
+     */
+    public void testFeature_columnStorage__numbers() {
+        String[] texts = { "0", "-0", "-0.0500(12)", "12", "1.5e3", "1.5E-3",
+                "+2.5", "007", ".5", "5.", "0.123456789012345678", "12(0)",
+                "3.14159(265)", "1234567890.12345", "1234567890.123456",
+                "-0.00001(1)", "0.1(007)" };
+        List<CifFile.CifValue> column = new ArrayList<CifFile.CifValue>();
+        
+        for (String text : texts) {
+            column.add(NumberValue.parse(text));
+        }
+        column.add(new NumberValue(Math.PI));
+        column.add(new NumberValue(Math.E, 0.00123));
+        column.add(UnknownValue.instance);
+        column.add(NAValue.instance);
+        testLoop.addName("_n");
+        for (CifFile.CifValue value : column) {
+            testLoop.addRecord(Collections.singletonList(value));
+        }
+        assertColumnEquals(column, testLoop.getValuesForName("_n"));
+        
+        column.set(2, new StringValue("x"));
+        testLoop.setValue("_n", 2, column.get(2));
+        assertColumnEquals(column, testLoop.getValuesForName("_n"));
+    }
+
+    /**
+     * Tests that strings and other values stored in a loop are retrieved
+     * unchanged, both while their column holds mostly repeated values and
+     * after it has accumulated many distinct ones
+     */
+    public void testFeature_columnStorage__strings() {
+        List<CifFile.CifValue> column = new ArrayList<CifFile.CifValue>();
+        CifFile.CifValue other = new TestCifValue();
+        
+        testLoop.addName("_s");
+        for (int i = 0; i < 2000; i++) {
+            CifFile.CifValue value = ((i % 100 == 0) ? UnknownValue.instance
+                    : new StringValue("s" + ((i < 1000) ? (i % 7) : i)));
+            
+            column.add(value);
+            testLoop.addRecord(Collections.singletonList(value));
+            if (i == 999) {
+                assertColumnEquals(column, testLoop.getValuesForName("_s"));
+            }
+        }
+        assertColumnEquals(column, testLoop.getValuesForName("_s"));
+        
+        column.set(5, other);
+        testLoop.setValue("_s", 5, other);
+        assertColumnEquals(column, testLoop.getValuesForName("_s"));
+        assertSame("Wrong value", other, testLoop.getValue("_s", 5));
+    }
+
+    /**
+     * Asserts that the specified column of values from a loop matches the
+     * expected one: numbers must have the same text, value, and uncertainty,
+     * and strings the same text, while other values must be the same objects
+     * 
+     * @param  expected the expected values
+     * @param  actual the values from the loop
+     */
+    private void assertColumnEquals(List<CifFile.CifValue> expected,
+            List<CifFile.CifValue> actual) {
+        assertEquals("Wrong value count", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            CifFile.CifValue expectedValue = expected.get(i);
+            CifFile.CifValue actualValue = actual.get(i);
+            
+            if (expectedValue instanceof NumberValue) {
+                NumberValue expectedNumber = (NumberValue) expectedValue;
+                NumberValue actualNumber = (NumberValue) actualValue;
+                
+                assertEquals("Wrong text", expectedNumber.toString(),
+                        actualNumber.toString());
+                assertEquals("Wrong value", expectedNumber.getValue(),
+                        actualNumber.getValue(), 0.0);
+                assertEquals("Wrong uncertainty", expectedNumber.getSU(),
+                        actualNumber.getSU(), 0.0);
+            } else if (expectedValue instanceof StringValue) {
+                assertEquals("Wrong string",
+                        ((StringValue) expectedValue).getValue(),
+                        ((StringValue) actualValue).getValue());
+            } else {
+                assertSame("Wrong value", expectedValue, actualValue);
+            }
+        }
+    }
+
     /**
      * Tests the {@code Iterator} returned by the {@code recordIterator()}
      * method to verify that the records it returns match those in the loop 
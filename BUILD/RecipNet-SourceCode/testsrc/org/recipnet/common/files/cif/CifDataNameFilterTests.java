@@ -0,0 +1,275 @@
+/*
+ * Reciprocal Net Project
+ *
+ * CifDataNameFilterTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.common.files.cif;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.recipnet.common.files.CifFile;
+
+/**
+ * Tests for {@code CifDataNameFilter} and for selective parsing via
+ * {@code CifParser.setSelectedDataNames()}
+ */
+public class CifDataNameFilterTests extends TestCase {
+
+    private final static String TEST_CIF = "data_first\n"
+            + "_cell_length_a 10.25(3)\n"
+            + "_CELL_Angle_Beta 90\n"
+            + "_cellar_door closed\n"
+            + "_publ_section_comment\n;\nA long comment\n;\n"
+            + "loop_\n_symmetry_equiv_pos_as_xyz\nx,y,z\n-x,-y,-z\n"
+            + "loop_\n_atom_site_label\n_atom_site_fract_x\n"
+            + "C1 0.125(2)\nO1 'quoted'\n"
+            + "loop_\n_refln_index_h\n_refln_index_k\n_refln_F_squared_meas\n"
+            + "1 0 12.5\n0 1 \"13\"\n2 2 ?\n"
+            + "loop_\n_atom_site_aniso_label\n_geom_bond_distance\nC1 1.5\n"
+            + "data_second\n_refln_index_h 1\n"
+            + "save_frame\n_cell_volume 1000\n_other x\nsave_\n"
+            + "_cell_length_b 11\n";
+
+    /**
+     * Initializes this {@code CifDataNameFilterTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public CifDataNameFilterTests(String testName) {
+        super(testName);
+    }
+
+    public void testMethod_isSelected() {
+        CifDataNameFilter filter = new CifDataNameFilter(
+                new RecordingHandler(), "_cell", "_Atom_Site_Label",
+                "_symmetry_equiv_pos_as_xyz");
+
+        assertTrue(filter.isSelected("_cell_length_a"));
+        assertTrue(filter.isSelected("_CELL_LENGTH_A"));
+        assertTrue(filter.isSelected("_cell"));
+        assertTrue(filter.isSelected("_atom_site_label"));
+        assertTrue(filter.isSelected("_atom_site_label_component_0"));
+        assertTrue(filter.isSelected("_symmetry_equiv_pos_as_xyz"));
+        assertFalse(filter.isSelected("_cellar_door"));
+        assertFalse(filter.isSelected("_atom_site_fract_x"));
+        assertFalse(filter.isSelected("_atom_site"));
+        assertFalse(filter.isSelected("_symmetry_equiv_pos_as"));
+        assertFalse(filter.isSelected("_refln_index_h"));
+    }
+
+    /**
+     * Tests that the filter passes on exactly the tokens of the selected
+     * items, plus the block and frame delimiters, to a handler that does not
+     * accept value views
+     */
+    public void testFeature_filtering__stringTarget() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        CifDataNameFilter filter = new CifDataNameFilter(handler, "_cell",
+                "_atom_site_label");
+        CifScanner scanner = new CifScanner();
+
+        scanner.setTokenHandler(filter);
+        filter.handleEndOfInput(scanner.scanBuffered(
+                new StringReader(TEST_CIF)));
+
+        assertEquals(
+                "[BLOCK first, NAME _cell_length_a, UNQUOTED 10.25(3), "
+                + "NAME _CELL_Angle_Beta, UNQUOTED 90, "
+                + "LOOP, NAME _atom_site_label, NAME _atom_site_fract_x, "
+                + "UNQUOTED C1, UNQUOTED 0.125(2), UNQUOTED O1, "
+                + "QUOTED 'quoted', "
+                + "BLOCK second, FRAME frame, NAME _cell_volume, "
+                + "UNQUOTED 1000, FRAME_END, NAME _cell_length_b, "
+                + "UNQUOTED 11]", handler.events.toString());
+    }
+
+    /**
+     * Tests that loop headers without values and loops without names are
+     * passed on when they should be, so that the target handler can report
+     * them, and that a value following the end of a passed loop is not
+     * passed on as part of it
+     */
+    public void testFeature_filtering__malformedLoops() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        CifDataNameFilter filter = new CifDataNameFilter(handler, "_a");
+        CifScanner scanner = new CifScanner();
+
+        scanner.setTokenHandler(filter);
+        filter.handleEndOfInput(scanner.scanBuffered(new StringReader(
+                "data_x loop_ 1 2 loop_ _a_1 _b 1 2 _c 3 4 "
+                + "loop_ _c 5 loop_ _a_2 _a_3 data_y loop_ _a")));
+
+        assertEquals("[BLOCK x, LOOP, UNQUOTED 1, UNQUOTED 2, LOOP, "
+                + "NAME _a_1, NAME _b, UNQUOTED 1, UNQUOTED 2, LOOP, "
+                + "NAME _a_2, NAME _a_3, BLOCK y, LOOP, NAME _a]",
+                handler.events.toString());
+    }
+
+    /**
+     * Tests that a selective parse yields the selected items of a full parse
+     * and nothing else, in both parse modes, and that clearing the selection
+     * restores full parsing
+     */
+    public void testFeature_selectiveParse() throws Exception {
+        CifParser parser = new CifParser();
+        CifFile full = parser.parseCif(new StringReader(TEST_CIF));
+        CifFile selected;
+        CifDataNameFilter reference = new CifDataNameFilter(
+                new RecordingHandler(), "_cell", "_atom_site",
+                "_symmetry_equiv_pos_as_xyz");
+
+        parser.setSelectedDataNames("_cell", "_atom_site",
+                "_symmetry_equiv_pos_as_xyz");
+        selected = parser.parseCif(new StringReader(TEST_CIF));
+        assertEquals(describe(full, reference), describe(selected, null));
+        assertEquals(Boolean.TRUE, Boolean.valueOf(
+                selected.getDataBlock("first").containsNameInLoop(
+                        "_geom_bond_distance")));
+        assertEquals(describe(selected, null), describe(parser.parseCif(
+                ByteBuffer.wrap(TEST_CIF.getBytes("ISO-8859-1"))), null));
+
+        parser.setSelectedDataNames();
+        assertEquals(describe(full, null),
+                describe(parser.parseCif(new StringReader(TEST_CIF)), null));
+        parser.setSelectedDataNames((String[]) null);
+        assertEquals(describe(full, null),
+                describe(parser.parseCif(new StringReader(TEST_CIF)), null));
+    }
+
+    /**
+     * Tests that a selective parse reports the grammatical errors of the
+     * selected items, and not those of the skipped items
+     */
+    public void testFeature_selectiveParse__errors() throws Exception {
+        CifParser parser = new CifParser();
+        CifErrorRecorder recorder = new CifErrorRecorder();
+        List<CifError> errors;
+
+        parser.setErrorHandler(recorder);
+        parser.setSelectedDataNames("_a");
+        parser.parseCif(new StringReader("data_x loop_ _a _a_b 1 2 3 _b "
+                + "loop_ _c 1 2 3 _d loop_ _a_1\n"));
+        errors = recorder.getErrors();
+        assertEquals(2, errors.size());
+        assertEquals(CifError.LOOP_PARTIAL_RECORD, errors.get(0).getCode());
+        assertEquals(CifError.LOOP_NO_DATA, errors.get(1).getCode());
+    }
+
+    /**
+     * Describes the contents of a parsed CIF, in order, as a list of strings
+     *
+     * @param  cif the {@code CifFile} to describe
+     * @param  filter a {@code CifDataNameFilter} selecting the items to
+     *         describe, or {@code null} to describe all items
+     *
+     * @return the description
+     */
+    private List<String> describe(CifFile cif, CifDataNameFilter filter) {
+        List<String> description = new ArrayList<String>();
+
+        for (Iterator<CifFile.DataBlock> blocks = cif.blockIterator();
+                blocks.hasNext(); ) {
+            CifFile.DataBlock block = blocks.next();
+
+            description.add("block " + block.getName());
+            describe(block, filter, description);
+            for (Iterator<CifFile.SaveFrame> frames
+                    = block.saveFrameIterator(); frames.hasNext(); ) {
+                CifFile.SaveFrame frame = frames.next();
+
+                description.add("frame " + frame.getName());
+                describe(frame, filter, description);
+            }
+        }
+
+        return description;
+    }
+
+    /**
+     * Appends descriptions of the selected items of a data cell to a list
+     *
+     * @param  cell the {@code DataCell} to describe
+     * @param  filter a {@code CifDataNameFilter} selecting the items to
+     *         describe, or {@code null} to describe all items
+     * @param  description the list to which to append the descriptions
+     */
+    private void describe(CifFile.DataCell cell, CifDataNameFilter filter,
+            List<String> description) {
+        List<CifFile.DataLoop> described = new ArrayList<CifFile.DataLoop>();
+
+        for (String name : cell.getDataNames()) {
+            if (cell.containsNameInLoop(name)) {
+                CifFile.DataLoop loop = cell.getLoopForName(name);
+                boolean selected = (filter == null);
+
+                if (described.contains(loop)) {
+                    continue;
+                }
+                described.add(loop);
+                for (String loopName : loop.getDataNames()) {
+                    selected = selected || filter.isSelected(loopName);
+                }
+                if (selected) {
+                    StringBuilder sb = new StringBuilder("loop ");
+
+                    sb.append(loop.getDataNames());
+                    for (Iterator<List<CifFile.CifValue>> records
+                            = loop.recordIterator(); records.hasNext(); ) {
+                        sb.append(' ').append(records.next());
+                    }
+                    description.add(sb.toString());
+                }
+            } else if ((filter == null) || filter.isSelected(name)) {
+                description.add(name + " "
+                        + cell.getScalarForName(name).getValue());
+            }
+        }
+    }
+
+    /**
+     * A token handler that does not accept value views and that records a
+     * description of every token reported to it
+     */
+    private static class RecordingHandler implements CifTokenHandler {
+
+        final List<String> events = new ArrayList<String>();
+
+        public void handleBlockHeader(String blockName, ScanState state) {
+            events.add("BLOCK " + blockName);
+        }
+
+        public void handleSaveFrameHeader(String frameName, ScanState state) {
+            events.add("FRAME " + frameName);
+        }
+
+        public void handleSaveFrameEnd(ScanState state) {
+            events.add("FRAME_END");
+        }
+
+        public void handleLoopStart(ScanState state) {
+            events.add("LOOP");
+        }
+
+        public void handleDataName(String name, ScanState state) {
+            events.add("NAME " + name);
+        }
+
+        public void handleQuotedValue(String value, char delimiter,
+                ScanState state) {
+            events.add("QUOTED " + delimiter + value + delimiter);
+        }
+
+        public void handleUnquotedValue(String value, ScanState state) {
+            events.add("UNQUOTED " + value);
+        }
+    }
+}
@@ -4,12 +4,15 @@
  * CifScannerTests.java
  * 
  * Jun 15, 2005: jobollin wrote first draft
+ * 18-Oct-2026: agent added tests comparing the scan modes
+ * 18-Oct-2026: agent added a test of unterminated text fields
  */
 
 package org.recipnet.common.files.cif;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -266,6 +269,222 @@ public class CifScannerTests extends TestCase {
     public void testCheckAttributes() {
     }
 
+    /**
+     * Tests that all scan modes, with and without value views, report the
+     * same events for well-formed CIFs, including ones with tokens longer
+     * than the scanner's initial buffers
+     */
+    public void testScan__modesAgree_wellFormed() throws Exception {
+        StringBuffer big = new StringBuffer("data_big\nloop_\n");
+
+        big.append("_atom_site_label _atom_site_fract_x _atom_site_U\n");
+        for (int i = 0; i < 5000; i++) {
+            big.append("C").append(i).append(" 0.").append(i).append("(3) ")
+                    .append(i).append(".5E-2\n");
+        }
+        big.append("_long_text\n;");
+        for (int i = 0; i < 20000; i++) {
+            big.append((i % 70 == 69) ? '\n' : (char) ('a' + (i % 26)));
+        }
+        big.append("\n;\n_long_value ");
+        for (int i = 0; i < 1000; i++) {
+            big.append('x');
+        }
+        big.append("\r\n");
+
+        assertModesAgree(testCif1);
+        assertModesAgree(big.toString());
+        assertModesAgree("DATA_Upper LOOP_ _a SAVE_frame _b 1 Save_ "
+                + "_DATA_NAME_1 2\r\n\r\n;\r\ntext\r\n;\r\n");
+    }
+
+    /**
+     * Tests that all scan modes, with and without value views, report the
+     * same events and errors for CIFs with lexical errors, and apply the
+     * same character corrections made by the error handler
+     */
+    public void testScan__modesAgree_errors() throws Exception {
+        StringBuffer longLine = new StringBuffer("data_x\n_line ");
+
+        for (int i = 0; i < CifScanner.CIF_1_1_MAX_LINE_LENGTH + 10; i++) {
+            longLine.append('L');
+        }
+
+        assertModesAgree(longLine.append("\n_next 1\n").toString());
+        assertModesAgree("data_ global_ stop_ data_ok _a\u000b1 _b [x] "
+                + "_c 'unterminated\n_d \"ok\"x\" _e \u0080\u00e9 "
+                + "_\u00c9\u00c9 1\n;block\n;after _f\u0007g 2\n");
+        assertModesAgree("data_x\n_name " + "\u001a" + " more text\n");
+        assertModesAgree("data_x\n_text\n;abc");
+        assertModesAgree("data_x\n_text\n;ab\r\n;");
+        assertModesAgree("data_x\n_text\n;");
+        assertModesAgree("data_x\n_value \"open");
+        assertModesAgree("");
+    }
+
+    /**
+     * Tests that a text field left unterminated at the end of the input is
+     * reported once, in full, after the error
+     */
+    public void testScan__unterminatedText() throws Exception {
+        List<String> events = scanInMode("data_x\n_text\n;abc\ndef", 1,
+                false, false);
+
+        assertEquals(5, events.size());
+        assertTrue(events.get(2), events.get(2).startsWith(
+                "ERROR " + CifError.UNTERMINATED_TEXT));
+        assertTrue(events.get(3),
+                events.get(3).startsWith("QUOTED_VALUE ; [abc\ndef]"));
+        assertTrue(events.get(4), events.get(4).startsWith("END"));
+    }
+
+    /**
+     * Scans the specified CIF text in each scan mode, with and without
+     * whitespace reporting and value views, and asserts that every scan
+     * reports the same events
+     *
+     * @param  cif the CIF text to scan; should contain no characters beyond
+     *         '\u00ff' so that it can be scanned as bytes
+     */
+    private void assertModesAgree(String cif) throws Exception {
+        for (boolean whitespace : new boolean[] { true, false }) {
+            List<String> expected = scanInMode(cif, 0, false, whitespace);
+
+            for (int mode = 0; mode < 3; mode++) {
+                for (boolean views : new boolean[] { false, true }) {
+                    assertEquals("Mode " + mode + " (views " + views
+                            + ", whitespace " + whitespace
+                            + ") disagrees on " + cif, expected,
+                            scanInMode(cif, mode, views, whitespace));
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans the specified CIF text and records the events reported
+     *
+     * @param  cif the CIF text to scan
+     * @param  mode 0 to scan via {@code scan(Reader)}, 1 via
+     *         {@code scanBuffered(Reader)}, or 2 via {@code scan(ByteBuffer)}
+     * @param  views whether the token handler should accept value views
+     * @param  whitespace whether a whitespace handler should be configured
+     *
+     * @return a {@code List} of descriptions of the events, in order
+     */
+    private List<String> scanInMode(String cif, int mode, boolean views,
+            boolean whitespace) throws Exception {
+        RecordingHandler handler = (views ? new RecordingViewHandler()
+                : new RecordingHandler());
+        CifScanner scanner = new CifScanner();
+        ScanState state;
+
+        scanner.setTokenHandler(handler);
+        scanner.setErrorHandler(handler);
+        if (whitespace) {
+            scanner.setWhitespaceHandler(handler);
+        }
+        try {
+            switch (mode) {
+                case 0:
+                    state = scanner.scan(new StringReader(cif));
+                    break;
+                case 1:
+                    state = scanner.scanBuffered(new StringReader(cif));
+                    break;
+                default:
+                    state = scanner.scan(
+                            ByteBuffer.wrap(cif.getBytes("ISO-8859-1")));
+                    break;
+            }
+            handler.record("END", null, state);
+        } catch (RuntimeException re) {
+            handler.events.add("EXCEPTION " + re.getClass().getName());
+        }
+
+        return handler.events;
+    }
+
+    /**
+     * A handler that records a description of every event, including the
+     * scanner position at the time, and that corrects vertical tabs to spaces
+     */
+    private static class RecordingHandler implements CifTokenHandler,
+            CifWhitespaceHandler, CifErrorHandler {
+
+        final List<String> events = new ArrayList<String>();
+
+        void record(String event, CharSequence token, ScanState state) {
+            events.add(event + " [" + token + "] " + state.getLineNumber()
+                    + ":" + state.getCharacterNumber() + " "
+                    + state.getCurrentChar() + "/" + state.getLastChar());
+        }
+
+        public void handleBlockHeader(String blockName, ScanState state) {
+            record("BLOCK_HEADER", blockName, state);
+        }
+
+        public void handleSaveFrameHeader(String frameName, ScanState state) {
+            record("SAVE_FRAME_HEADER", frameName, state);
+        }
+
+        public void handleSaveFrameEnd(ScanState state) {
+            record("SAVE_FRAME_END", null, state);
+        }
+
+        public void handleLoopStart(ScanState state) {
+            record("LOOP_START", null, state);
+        }
+
+        public void handleDataName(String name, ScanState state) {
+            record("DATA_NAME", name, state);
+        }
+
+        public void handleQuotedValue(String value, char delimiter,
+                ScanState state) {
+            record("QUOTED_VALUE " + delimiter, value, state);
+        }
+
+        public void handleUnquotedValue(String value, ScanState state) {
+            record("UNQUOTED_VALUE", value, state);
+        }
+
+        public void handleWhitespace(String s, ScanState state) {
+            record("WHITESPACE", s, state);
+        }
+
+        public void handleComment(String comment, ScanState state) {
+            record("COMMENT", comment, state);
+        }
+
+        public void handleError(CifError error) {
+            ScanState state = error.getScanState();
+
+            record("ERROR " + error.getCode(), state.getCurrentToken(), state);
+            if (state.getCurrentChar() == '\u000b') {
+                state.setCurrentChar(' ');
+            }
+        }
+    }
+
+    /**
+     * A {@code RecordingHandler} that accepts value views, recording them as
+     * the corresponding {@code String} methods would
+     */
+    private static class RecordingViewHandler extends RecordingHandler
+            implements CifValueViewHandler {
+
+        public void handleQuotedValueView(CharSequence value, char delimiter,
+                ScanState state) {
+            handleQuotedValue(value.toString(), delimiter, state);
+        }
+
+        public void handleUnquotedValueView(CharSequence value,
+                ScanState state) {
+            handleUnquotedValue(value.toString(), state);
+        }
+    }
+
     private void setDefaultHandler(CifScanner scanner) {
         scanner.setTokenHandler(defaultHandler);
         scanner.setWhitespaceHandler(defaultHandler);
@@ -4,10 +4,15 @@
  * NumberValueTests.java
  * 
  * 06-Apr-2005: jobollin wrote first draft
+ * 18-Oct-2026: agent added tests of parse()
  */
 
 package org.recipnet.common.files.cif;
 
+import java.nio.CharBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import junit.framework.TestCase;
 
 
@@ -24,6 +29,101 @@ public class NumberValueTests extends TestCase {
      */
     private final static double DELTA = 1e-10;
 
+    /**
+     * The pattern by which CIF numbers were recognized before
+     * {@code NumberValue.parse()} was written; {@code parse()} must agree with
+     * it
+     */
+    private final static Pattern NUMBER_PATTERN = Pattern.compile(
+            "([-+]?\\d*+(?:(?:\\.\\d+)|(?:(?<=\\d)\\.?)))"
+            + "(?:[eE]([-+]?\\d+))?(?:\\((\\d+)\\))?");
+
+    /**
+     * Tokens that are CIF numbers, including some that {@code parse()} must
+     * refer to the {@code String} constructor
+     */
+    private final static String[] NUMBERS = {
+        "0", "-0", "+0", "1", "-1", "1.", "-1.", ".5", "-.5", "+.5", "0.0",
+        "-0.000", "12.345(6)", "-12.345(16)", "1.(3)", "7(2)", "1e5", "1E5",
+        "1.5e-3", "-2.25E+10(4)", "6.02e23", "1.6e-19(1)", "000123.4500",
+        "9007199254740992", "9007199254740993", "123456789012345678901234",
+        "0.1234567890123456789", "1e22", "1e23", "1e-22", "1e-23",
+        "1.25e400", "1.25e-400", "3.14159265358979323846e-5(12)",
+        "1(123456789)", "1e0000000001(1)", "12345.6789(2)", "-0.0001e+0002"
+    };
+
+    /** Tokens that are not CIF numbers */
+    private final static String[] NON_NUMBERS = {
+        "", "-", "+", ".", "-.", "e5", ".e5", "1e", "1e+", "1E-", "1.2.3",
+        "1(2", "1()", "1(2)3", "1(a)", "1e5e5", "--1", "1a", "0x10", "1 ",
+        "NaN", "Infinity", "1,5", "\u0661", "1(2)(3)", "1.e"
+    };
+
+    /**
+     * Tests {@code parse()} on CIF numbers, both as {@code String}s and as
+     * other {@code CharSequence}s, by comparison with the {@code String}
+     * constructor applied to the parts of the number
+     */
+    public void testMethod_parse__numbers() {
+        for (String token : NUMBERS) {
+            Matcher m = NUMBER_PATTERN.matcher(token);
+            NumberValue expected;
+
+            assertTrue("Bad test data: " + token, m.matches());
+            expected = new NumberValue(m.group(1), m.group(2), m.group(3));
+            assertParsedAs(expected, token, NumberValue.parse(token));
+            assertParsedAs(expected, token,
+                    NumberValue.parse(CharBuffer.wrap(token)));
+        }
+    }
+
+    /**
+     * Tests {@code parse()} on tokens that are not CIF numbers; {@code null}
+     * is expected
+     */
+    public void testMethod_parse__nonNumbers() {
+        for (String token : NON_NUMBERS) {
+            assertFalse("Bad test data: " + token,
+                    NUMBER_PATTERN.matcher(token).matches());
+            assertNull("Parsed " + token, NumberValue.parse(token));
+        }
+    }
+
+    /**
+     * Tests {@code parse()} on a number whose standard uncertainty does not
+     * fit in an {@code int}; a {@code NumberFormatException} is expected, as
+     * from the {@code String} constructor
+     */
+    public void testMethod_parse__suOverflow() {
+        try {
+            NumberValue.parse("1.5(12345678901)");
+            fail("Expected a NumberFormatException");
+        } catch (NumberFormatException nfe) {
+            // the expected case
+        }
+    }
+
+    /**
+     * Asserts that the specified {@code NumberValue} is identical in value,
+     * standard uncertainty, and string form to the expected one
+     *
+     * @param  expected the {@code NumberValue} expected
+     * @param  token the token that was parsed
+     * @param  nv the {@code NumberValue} parsed from {@code token}
+     */
+    private void assertParsedAs(NumberValue expected, String token,
+            NumberValue nv) {
+        assertNotNull("Did not parse " + token, nv);
+        assertEquals("Wrong value for " + token + ";",
+                Double.doubleToLongBits(expected.getValue()),
+                Double.doubleToLongBits(nv.getValue()));
+        assertEquals("Wrong su for " + token + ";",
+                Double.doubleToLongBits(expected.getSU()),
+                Double.doubleToLongBits(nv.getSU()));
+        assertEquals("Wrong string representation for " + token + ";",
+                expected.toString(), nv.toString());
+    }
+
     /*
      * These tests assume that NumberValue applies a rule of 19 with respect to
      * standard uncertainties.  
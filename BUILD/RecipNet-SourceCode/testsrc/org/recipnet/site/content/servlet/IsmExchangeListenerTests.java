@@ -0,0 +1,225 @@
+/*
+ * Reciprocal Net Project
+ *
+ * IsmExchangeListenerTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.content.servlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.recipnet.site.shared.IsmFrameCodec;
+import org.recipnet.site.shared.SoapUtil;
+
+/**
+ * Tests how {@code IsmExchangeListener} rejects request bodies it cannot
+ * decode, through stub requests and responses. Clients take a 415 response
+ * to mean that frames are not understood, so only an unsupported content
+ * coding may earn one; a corrupt body must earn a 400 response that does not
+ * resemble the refusals of sites that predate framing.
+ */
+public class IsmExchangeListenerTests extends TestCase {
+
+    /** The body of a valid framed request */
+    private byte framedBody[];
+
+    /** The status sent by {@code sendError()}, or 0 if it was not invoked */
+    private int status;
+
+    /** The message sent by {@code sendError()} */
+    private String message;
+
+    /**
+     * Initializes this {@code IsmExchangeListenerTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public IsmExchangeListenerTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        IsmFrameCodec.writeMessages(bytes, new String[] { "<message/>" });
+        framedBody = bytes.toByteArray();
+        status = 0;
+        message = null;
+    }
+
+    /**
+     * Verifies that a body in a content coding that is not supported is
+     * refused with status 415
+     */
+    public void testDoPost__unsupportedEncoding() throws Exception {
+        post(IsmFrameCodec.CONTENT_TYPE, null, "br", framedBody);
+        assertEquals(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, status);
+        assertTrue(message, message.contains("'br'"));
+    }
+
+    /**
+     * Verifies that a framed body whose compressed header is corrupt is
+     * rejected with status 400, not 415
+     */
+    public void testDoPost__corruptHeader() throws Exception {
+        for (String encoding : new String[] { "gzip", "deflate" }) {
+            post(IsmFrameCodec.CONTENT_TYPE, null, encoding, framedBody);
+            assertBadRequest(encoding);
+        }
+    }
+
+    /**
+     * Verifies that a framed body that is corrupt after a valid compressed
+     * header is rejected with status 400
+     */
+    public void testDoPost__corruptFramedBody() throws Exception {
+        byte body[] = compress(framedBody, "gzip");
+
+        // Damage the deflate stream following the ten-byte gzip header
+        for (int i = 10; i < body.length - 8; i++) {
+            body[i] = (byte) 0xff;
+        }
+        post(IsmFrameCodec.CONTENT_TYPE, null, "gzip", body);
+        assertBadRequest("gzip");
+    }
+
+    /**
+     * Verifies that an unframed SOAP body that is not validly compressed is
+     * rejected with status 400, whether the damage is found as parsing
+     * starts or, as when the body is truncated, only after many messages
+     * have been read
+     */
+    public void testDoPost__corruptSoapBody() throws Exception {
+        ByteArrayOutputStream soap = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(soap, "UTF-8");
+        String messages[] = new String[2000];
+        Random random = new Random(20261018);
+        byte body[];
+
+        post("text/xml", "UTF-8", "deflate",
+                "<soap-env:Envelope/>".getBytes("UTF-8"));
+        assertBadRequest("deflate");
+
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = "<message>" + random.nextLong() + "</message>";
+        }
+        SoapUtil.writeSoapDocument(writer, messages, "IsmExchange",
+                "recipnet", "http://www.reciprocalnet.org/master/");
+        writer.close();
+        body = compress(soap.toByteArray(), "deflate");
+        post("text/xml", "UTF-8", "deflate",
+                Arrays.copyOf(body, body.length * 2 / 3));
+        assertBadRequest("deflate");
+    }
+
+    /**
+     * Fails unless the last request was rejected with status 400 and a
+     * message that no client would take for a refusal of frames
+     */
+    private void assertBadRequest(String encoding) {
+        assertEquals(encoding, HttpServletResponse.SC_BAD_REQUEST, status);
+        assertFalse(message, message.contains("Expected"));
+    }
+
+    /**
+     * Posts a request with the specified headers and body to a new
+     * {@code IsmExchangeListener}, recording in {@code status} and
+     * {@code message} any error it sends
+     */
+    private void post(final String contentType,
+            final String characterEncoding, String contentEncoding,
+            byte body[]) throws IOException {
+        final Map<String, String> headers = new HashMap<String, String>();
+        final InputStream in = new ByteArrayInputStream(body);
+
+        headers.put("Content-Encoding", contentEncoding);
+        status = 0;
+        message = null;
+        new IsmExchangeListener().doPost(newProxy(HttpServletRequest.class,
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                            Object args[]) {
+                        String name = method.getName();
+
+                        if (name.equals("getContentType")) {
+                            return contentType;
+                        } else if (name.equals("getCharacterEncoding")) {
+                            return characterEncoding;
+                        } else if (name.equals("getHeader")) {
+                            return headers.get(args[0]);
+                        } else if (name.equals("getInputStream")) {
+                            return new ServletInputStream() {
+                                @Override
+                                public int read() throws IOException {
+                                    return in.read();
+                                }
+                            };
+                        } else {
+                            throw new UnsupportedOperationException(name);
+                        }
+                    }
+                }), newProxy(HttpServletResponse.class,
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method,
+                            Object args[]) {
+                        if (method.getName().equals("sendError")) {
+                            assertEquals("More than one error", 0, status);
+                            status = (Integer) args[0];
+                            message = (String) args[1];
+
+                            return null;
+                        } else {
+                            throw new UnsupportedOperationException(
+                                    method.getName() + Arrays.toString(args));
+                        }
+                    }
+                }));
+    }
+
+    /** Returns the specified bytes compressed in the specified coding */
+    private static byte[] compress(byte body[], String contentEncoding)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream os = IsmFrameCodec.encodeContent(bytes, contentEncoding);
+
+        os.write(body);
+        os.close();
+
+        return bytes.toByteArray();
+    }
+
+    /** Returns a proxy implementing the specified interface */
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(),
+                new Class<?>[] { type }, handler));
+    }
+}
@@ -0,0 +1,661 @@
+/*
+ * Reciprocal Net Project
+ *
+ * SampleManagerTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ * 18-Oct-2026: agent added tests of cached-search maintenance
+ */
+
+package org.recipnet.site.core;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.server.UnicastRemoteObject;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.logging.LogRecord;
+
+import junit.framework.TestCase;
+
+import org.recipnet.common.ObjectCache;
+import org.recipnet.site.OperationFailedException;
+import org.recipnet.site.core.lock.ConnectionPool;
+import org.recipnet.site.core.lock.LockAgent;
+import org.recipnet.site.core.msg.CoreMessage;
+import org.recipnet.site.core.msg.InterSiteMessage;
+import org.recipnet.site.core.msg.ProcessedIsmCM;
+import org.recipnet.site.core.msg.SampleActivationISM;
+import org.recipnet.site.core.util.CachedSearchResults;
+import org.recipnet.site.shared.SearchParams;
+import org.recipnet.site.shared.db.LabInfo;
+import org.recipnet.site.shared.db.SampleHistoryInfo;
+import org.recipnet.site.shared.db.SampleInfo;
+import org.recipnet.site.shared.search.LabSC;
+
+/**
+ * Tests the bulk import of sample ISM's by a bootstrap-mode
+ * {@code SampleManager}, whose database is a stub JDBC driver that records
+ * the statements executed and can be made to fail every insert, and whose
+ * {@code SiteManager} records the core messages passed to it
+ */
+public class SampleManagerTests extends TestCase {
+
+    /** The JDBC URL the stub driver accepts */
+    private static final String URL = "jdbc:samplemanagertests:db";
+
+    /** The value of the {@code SamBulkImportBatchSize} directive */
+    private static final int BATCH_SIZE = 3;
+
+    /** The site from which the ISM's come, the home site of their lab */
+    private static final int SOURCE_SITE_ID = 7;
+
+    /** The lab of the samples */
+    private static final int LAB_ID = 11;
+
+    /** A lab with no samples */
+    private static final int OTHER_LAB_ID = 12;
+
+    /** The first key the stub driver generates */
+    private static final int FIRST_KEY = 1000;
+
+    /** The stub driver */
+    private Driver driver;
+
+    /** The statements executed on the stub driver's connections, in order */
+    private List<String> statements;
+
+    /** The exception thrown by every insert, or null if inserts succeed */
+    private volatile SQLException failure;
+
+    /** The next key the stub driver generates */
+    private int nextKey;
+
+    /** The core messages passed to {@code siteManager}, in order */
+    private List<CoreMessage> messages;
+
+    /** The configuration shared by both managers */
+    private Properties properties;
+
+    /** The Site Manager, which is never started */
+    private SiteManager siteManager;
+
+    /** The Sample Manager under test, which is never started */
+    private SampleManager sampleManager;
+
+    /** The pool from which {@code sampleManager}'s locks borrow */
+    private ConnectionPool pool;
+
+    /** The number of ISM's created so far, used as a sequence number */
+    private int ismCount;
+
+    /**
+     * Initializes this {@code SampleManagerTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public SampleManagerTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        statements = new ArrayList<String>();
+        failure = null;
+        nextKey = FIRST_KEY;
+        messages = new ArrayList<CoreMessage>();
+        ismCount = 0;
+        driver = (Driver) Proxy.newProxyInstance(
+                Driver.class.getClassLoader(), new Class<?>[] { Driver.class },
+                new StubDriver());
+        DriverManager.registerDriver(driver);
+
+        properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("SitHttpConnectTimeout", "10000");
+        properties.setProperty("SitHttpReadTimeout", "60000");
+        properties.setProperty("SitSiteCache", "128,0,16,0,0,0,false");
+        properties.setProperty("SitLabCache", "128,0,16,0,0,0,false");
+        properties.setProperty("SitProviderCache", "128,0,16,0,0,0,false");
+        properties.setProperty("SitUserCache", "128,0,16,0,0,0,false");
+        properties.setProperty("SamSearchParamsCache",
+                "512,128,32,86400000,56000,0.1,false");
+        properties.setProperty("SamSearchResultsCache",
+                "32,128,4,3600000,56000,0.1,false");
+        properties.setProperty("SamSearchResultsCacheMaxBytes", "16777216");
+        properties.setProperty("SamSampleCache",
+                "256,512,32,0,25000,0.1,false");
+        properties.setProperty("SamIncrementalSearchMaintenance", "false");
+        properties.setProperty("SamBulkImportBatchSize",
+                String.valueOf(BATCH_SIZE));
+
+        siteManager = new SiteManager(properties, true) {
+            @Override
+            public LabInfo getLabInfo(int labId) {
+                LabInfo lab = new LabInfo();
+
+                lab.id = labId;
+                lab.homeSiteId = SOURCE_SITE_ID;
+
+                return lab;
+            }
+
+            @Override
+            public void passCoreMessage(CoreMessage msg) {
+                messages.add(msg);
+            }
+
+            @Override
+            public void recordLogRecord(LogRecord lr) {
+                // discarded
+            }
+        };
+        sampleManager = new SampleManager(properties, true);
+        sampleManager.siteManager = siteManager;
+        sampleManager.lockAgent = new LockAgent(siteManager, false, 30000);
+        pool = new ConnectionPool(URL, "user", "", 1, -1, null);
+        pool.open(1);
+        sampleManager.lockAgent.setConnectionPool(pool);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    public void tearDown() throws Exception {
+        Field scheduler = SiteManager.class.getDeclaredField("scheduler");
+
+        pool.close();
+        scheduler.setAccessible(true);
+        ((Timer) scheduler.get(siteManager)).cancel();
+        UnicastRemoteObject.unexportObject(sampleManager, true);
+        UnicastRemoteObject.unexportObject(siteManager, true);
+        DriverManager.deregisterDriver(driver);
+        super.tearDown();
+    }
+
+    /**
+     * Verifies that sample ISM's are only staged until a batch fills, that
+     * the batch is then written in one multi-row insert per table, and that
+     * the ISM's are then reported as committed in their original order, only
+     * the last recording its sequence number in the database
+     */
+    public void testBulkImport__batches() throws Exception {
+        List<SampleActivationISM> isms = new ArrayList<SampleActivationISM>();
+
+        sampleManager.beginBulkImport();
+        for (int i = 1; i < BATCH_SIZE; i++) {
+            isms.add(newActivation(i));
+            sampleManager.passCoreMessage(isms.get(i - 1));
+        }
+        assertTrue(statements.isEmpty());
+        assertStaged(isms);
+
+        isms.add(newActivation(BATCH_SIZE));
+        sampleManager.passCoreMessage(isms.get(BATCH_SIZE - 1));
+        assertEquals(Integer.valueOf(BATCH_SIZE),
+                countInsertedRows("sampleHistory"));
+        assertEquals(Integer.valueOf(BATCH_SIZE), countInsertedRows("samples"));
+        assertEquals(Integer.valueOf(BATCH_SIZE),
+                countInsertedRows("sampleData"));
+        assertStagedThenCommitted(isms, BATCH_SIZE);
+        for (SampleActivationISM ism : isms) {
+            assertEquals(SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID,
+                    ism.newSample.historyId);
+        }
+
+        statements.clear();
+        assertEquals(0, sampleManager.endBulkImport());
+        assertTrue(statements.isEmpty());
+    }
+
+    /**
+     * Verifies that a sample activated twice within a batch is written once,
+     * as it stood after the later ISM, though both ISM's are committed
+     */
+    public void testBulkImport__sameSampleTwice() throws Exception {
+        List<SampleActivationISM> isms = new ArrayList<SampleActivationISM>();
+
+        sampleManager.beginBulkImport();
+        isms.add(newActivation(1));
+        isms.add(newActivation(2));
+        isms.add(newActivation(1));
+        isms.get(2).newSample.localLabId = "later";
+        for (SampleActivationISM ism : isms) {
+            sampleManager.passCoreMessage(ism);
+        }
+        assertEquals(Integer.valueOf(2), countInsertedRows("sampleHistory"));
+        assertEquals(Integer.valueOf(2), countInsertedRows("samples"));
+        assertStagedThenCommitted(isms, BATCH_SIZE);
+        assertEquals(0, sampleManager.endBulkImport());
+    }
+
+    /**
+     * Verifies that ISM's whose write fails remain staged, unmodified and not
+     * committed, and that the next flush writes them all
+     */
+    public void testFlushBulkImport__failure() throws Exception {
+        List<SampleActivationISM> isms = new ArrayList<SampleActivationISM>();
+
+        sampleManager.beginBulkImport();
+        for (int i = 1; i < BATCH_SIZE; i++) {
+            isms.add(newActivation(i));
+            sampleManager.passCoreMessage(isms.get(i - 1));
+        }
+
+        failure = new SQLException("database down");
+        try {
+            sampleManager.flushBulkImport();
+            fail("flushBulkImport() ignored a failed write");
+        } catch (OperationFailedException ex) {
+            assertSame(failure, ex.getCause());
+        }
+        assertStaged(isms);
+        for (SampleActivationISM ism : isms) {
+            assertEquals(SampleHistoryInfo.INVALID_SAMPLE_HISTORY_ID,
+                    ism.newSample.historyId);
+        }
+
+        failure = null;
+        statements.clear();
+        assertEquals(isms.size(), sampleManager.endBulkImport());
+        assertEquals(Integer.valueOf(isms.size()),
+                countInsertedRows("sampleHistory"));
+        assertStagedThenCommitted(isms, isms.size());
+    }
+
+    /**
+     * Verifies that {@code abortBulkImport()} discards the staged ISM's
+     * without writing or committing them, and that it does nothing after
+     * {@code endBulkImport()}
+     */
+    public void testAbortBulkImport() throws Exception {
+        List<SampleActivationISM> isms = new ArrayList<SampleActivationISM>();
+
+        sampleManager.beginBulkImport();
+        for (int i = 1; i < BATCH_SIZE; i++) {
+            isms.add(newActivation(i));
+            sampleManager.passCoreMessage(isms.get(i - 1));
+        }
+        sampleManager.abortBulkImport();
+        assertEquals(0, sampleManager.flushBulkImport());
+        assertEquals(0, sampleManager.endBulkImport());
+        assertTrue(statements.isEmpty());
+        assertStaged(isms);
+
+        sampleManager.beginBulkImport();
+        sampleManager.passCoreMessage(newActivation(1));
+        assertEquals(1, sampleManager.endBulkImport());
+        statements.clear();
+        sampleManager.abortBulkImport();
+        assertEquals(0, sampleManager.flushBulkImport());
+        assertTrue(statements.isEmpty());
+    }
+
+    /**
+     * Verifies that writing a batch brings cached searches in the default
+     * sort order up to date, adding, refreshing, and removing samples, and
+     * that it leaves other searches' results alone
+     */
+    public void testMaintainCachedSearches__defaultOrder() throws Exception {
+        ObjectCache<CachedSearchResults> cache
+                = getCache("cachedSearchResults");
+        CachedSearchResults labResults = cacheSearch(1, LAB_ID,
+                SearchParams.DEFAULT_SORT_ORDER, 5, 50);
+        CachedSearchResults otherResults = cacheSearch(2, OTHER_LAB_ID,
+                SearchParams.DEFAULT_SORT_ORDER, 1, 10, 9, 90);
+        CachedSearchResults unaffectedResults = cacheSearch(3, OTHER_LAB_ID,
+                SearchParams.SORTBY_LOCALLABID, 9, 90);
+
+        properties.setProperty("SamIncrementalSearchMaintenance", "true");
+        sampleManager.beginBulkImport();
+        sampleManager.passCoreMessage(newActivation(1));
+        sampleManager.passCoreMessage(newActivation(5));
+        sampleManager.passCoreMessage(newActivation(6));
+
+        assertResults(cache.get(1), 5, FIRST_KEY + 1, 1, FIRST_KEY, 6,
+                FIRST_KEY + 2);
+        assertResults(cache.get(2), 9, 90);
+        assertSame(unaffectedResults, cache.get(3));
+        assertResults(labResults, 5, 50);
+        assertResults(otherResults, 1, 10, 9, 90);
+    }
+
+    /**
+     * Verifies that writing a batch invalidates cached searches sorted by
+     * local lab id that the samples match, whether or not they already
+     * contain them, since the samples' positions cannot be known
+     */
+    public void testMaintainCachedSearches__localLabIdOrder() throws Exception {
+        ObjectCache<CachedSearchResults> cache
+                = getCache("cachedSearchResults");
+
+        cacheSearch(1, LAB_ID, SearchParams.SORTBY_LOCALLABID, 5, 50, 7, 70);
+        cacheSearch(2, LAB_ID, SearchParams.SORTBY_LABID_LOCALLABID_REV, 7, 70);
+        cacheSearch(3, OTHER_LAB_ID, SearchParams.SORTBY_LOCALLABID_REV, 5, 50,
+                9, 90);
+
+        properties.setProperty("SamIncrementalSearchMaintenance", "true");
+        sampleManager.beginBulkImport();
+        sampleManager.passCoreMessage(newActivation(5));
+        assertEquals(1, sampleManager.endBulkImport());
+
+        assertNull("Search kept a stale position", cache.get(1));
+        assertNull("Search lacks a matching sample", cache.get(2));
+        assertResults(cache.get(3), 9, 90);
+    }
+
+    /**
+     * Caches the results of a search, by the specified id, for samples in
+     * the specified lab in the specified order, whose results are the
+     * specified pairs of sample id and sample history id
+     */
+    private CachedSearchResults cacheSearch(int searchId, int labId,
+            int sortOrder, int... ids) throws Exception {
+        SearchParams params = new SearchParams();
+        CachedSearchResults results = new CachedSearchResults();
+
+        params.setHead(new LabSC(labId));
+        params.setSortOrder(sortOrder);
+        this.<SearchParams>getCache("storedSearchParams").put(searchId, params);
+        results.searchId = searchId;
+        for (int i = 0; i < ids.length; i += 2) {
+            results.add(ids[i], ids[i + 1]);
+        }
+        this.<CachedSearchResults>getCache("cachedSearchResults").put(searchId,
+                results);
+
+        return results;
+    }
+
+    /**
+     * Fails unless the specified results are the specified pairs of sample
+     * id and sample history id, in order
+     */
+    private static void assertResults(CachedSearchResults results,
+            int... ids) {
+        int[] sampleIds = new int[ids.length / 2];
+        int[] historyIds = new int[ids.length / 2];
+
+        assertNotNull("Search was not cached", results);
+        for (int i = 0; i < sampleIds.length; i++) {
+            sampleIds[i] = ids[2 * i];
+            historyIds[i] = ids[2 * i + 1];
+        }
+        assertEquals(Arrays.toString(sampleIds),
+                Arrays.toString(results.getSampleIds(0, results.size())));
+        assertEquals(Arrays.toString(historyIds), Arrays.toString(
+                results.getSampleHistoryIds(0, results.size())));
+    }
+
+    /** Returns the named {@code ObjectCache} field of {@code sampleManager} */
+    @SuppressWarnings("unchecked")
+    private <T> ObjectCache<T> getCache(String name) throws Exception {
+        Field field = SampleManager.class.getDeclaredField(name);
+
+        field.setAccessible(true);
+
+        return (ObjectCache<T>) field.get(sampleManager);
+    }
+
+    /**
+     * Returns a new public {@code SampleActivationISM} from
+     * {@code SOURCE_SITE_ID} for a sample with the specified id
+     */
+    private SampleActivationISM newActivation(int sampleId) {
+        SampleActivationISM ism = new SampleActivationISM();
+
+        ism.sourceSiteId = SOURCE_SITE_ID;
+        ism.sourceSeqNum = ++ismCount;
+        ism.destSiteId = InterSiteMessage.ALL_SITES;
+        ism.newSample = new SampleInfo(sampleId);
+        ism.newSample.labId = LAB_ID;
+        ism.newSample.localLabId = "sample" + sampleId;
+
+        return ism;
+    }
+
+    /**
+     * Fails unless the core messages passed to Site Manager report exactly
+     * the specified ISM's as staged, in order
+     */
+    private void assertStaged(List<? extends InterSiteMessage> isms) {
+        assertEquals(isms.size(), messages.size());
+        for (int i = 0; i < isms.size(); i++) {
+            ProcessedIsmCM cm = (ProcessedIsmCM) messages.get(i);
+
+            assertSame(isms.get(i), cm.ism);
+            assertTrue(cm.shouldUpdateState);
+            assertFalse(cm.shouldUpdateDb);
+            assertFalse(cm.shouldClearFile);
+        }
+    }
+
+    /**
+     * Fails unless the core messages passed to Site Manager report the
+     * specified ISM's as staged, in order, the first {@code stagedFirst} of
+     * them before any is committed, and then report all of them as committed,
+     * in order, only the last recording its sequence number in the database
+     */
+    private void assertStagedThenCommitted(
+            List<? extends InterSiteMessage> isms, int stagedFirst) {
+        List<CoreMessage> staged = new ArrayList<CoreMessage>(
+                messages.subList(0, stagedFirst));
+        List<CoreMessage> committed = new ArrayList<CoreMessage>(
+                messages.subList(stagedFirst, messages.size()));
+
+        messages.clear();
+        messages.addAll(staged);
+        assertStaged(isms.subList(0, stagedFirst));
+        assertEquals(isms.size(), committed.size());
+        for (int i = 0; i < isms.size(); i++) {
+            ProcessedIsmCM cm = (ProcessedIsmCM) committed.get(i);
+
+            assertSame(isms.get(i), cm.ism);
+            assertTrue(cm.succeeded);
+            assertFalse(cm.shouldUpdateState);
+            assertEquals(i == isms.size() - 1, cm.shouldUpdateDb);
+            assertTrue(cm.shouldClearFile);
+            assertNotNull(cm.message);
+        }
+    }
+
+    /**
+     * Returns the number of rows inserted into the specified table by the
+     * statements executed, or null if no row was
+     */
+    private Integer countInsertedRows(String table) {
+        Integer count = null;
+
+        for (String sql : statements) {
+            if (sql.startsWith("INSERT INTO " + table + " (")) {
+                count = ((count == null) ? 0 : count) + countRows(sql);
+            }
+        }
+
+        return count;
+    }
+
+    /** Returns the number of rows a multi-row insert statement inserts */
+    static int countRows(String sql) {
+        return sql.split("\\), \\(").length;
+    }
+
+    /**
+     * Implements a {@code Driver} that accepts only {@code URL} and opens
+     * connections handled by {@code StubConnection}
+     */
+    private class StubDriver implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object args[]) {
+            String name = method.getName();
+
+            if (name.equals("acceptsURL")) {
+                return URL.equals(args[0]);
+            } else if (name.equals("connect")) {
+                return URL.equals(args[0]) ? newProxy(Connection.class,
+                        new StubConnection()) : null;
+            } else if (name.equals("jdbcCompliant")) {
+                return false;
+            } else if (name.equals("getMajorVersion")
+                    || name.equals("getMinorVersion")) {
+                return 1;
+            } else {
+                return invokeObjectMethod(proxy, method, args);
+            }
+        }
+    }
+
+    /**
+     * Implements a {@code Connection} that creates statements handled by
+     * {@code StubStatement}
+     */
+    private class StubConnection implements InvocationHandler {
+
+        /** Whether the connection has been closed */
+        private boolean closed = false;
+
+        public Object invoke(Object proxy, Method method, Object args[]) {
+            String name = method.getName();
+
+            if (name.equals("createStatement")) {
+                return newProxy(Statement.class, new StubStatement(null));
+            } else if (name.equals("prepareStatement")) {
+                return newProxy(PreparedStatement.class,
+                        new StubStatement((String) args[0]));
+            } else if (name.equals("close")) {
+                closed = true;
+
+                return null;
+            } else if (name.equals("isClosed")) {
+                return closed;
+            } else {
+                return invokeObjectMethod(proxy, method, args);
+            }
+        }
+    }
+
+    /**
+     * Implements a {@code Statement} or {@code PreparedStatement} that records
+     * the SQL it executes, ignores parameters, and throws {@code failure}
+     * instead of executing an insert if it is set
+     */
+    private class StubStatement implements InvocationHandler {
+
+        /** The SQL of a prepared statement, or null */
+        private final String preparedSql;
+
+        /** The keys generated by the last statement executed */
+        private final List<Integer> keys = new ArrayList<Integer>();
+
+        StubStatement(String preparedSql) {
+            this.preparedSql = preparedSql;
+        }
+
+        public Object invoke(Object proxy, Method method, Object args[])
+                throws SQLException {
+            String name = method.getName();
+
+            if (name.equals("executeUpdate")) {
+                String sql = (preparedSql == null) ? (String) args[0]
+                        : preparedSql;
+
+                if (sql.startsWith("INSERT") && (failure != null)) {
+                    throw failure;
+                }
+                statements.add(sql);
+                keys.clear();
+
+                int rows = sql.startsWith("INSERT") ? countRows(sql) : 0;
+
+                for (int i = 0; i < rows; i++) {
+                    keys.add(nextKey++);
+                }
+
+                return rows;
+            } else if (name.equals("getGeneratedKeys")) {
+                return newProxy(ResultSet.class, new StubKeys(keys));
+            } else if (name.startsWith("set") || name.equals("close")) {
+                return null;
+            } else {
+                return invokeObjectMethod(proxy, method, args);
+            }
+        }
+    }
+
+    /** Implements a {@code ResultSet} of generated keys */
+    private static class StubKeys implements InvocationHandler {
+
+        /** The keys */
+        private final List<Integer> keys;
+
+        /** The index of the current row, or -1 before the first */
+        private int row = -1;
+
+        StubKeys(List<Integer> keys) {
+            this.keys = new ArrayList<Integer>(keys);
+        }
+
+        public Object invoke(Object proxy, Method method, Object args[]) {
+            String name = method.getName();
+
+            if (name.equals("next")) {
+                return ++row < keys.size();
+            } else if (name.equals("getInt")) {
+                assertEquals(Arrays.asList((Object) 1), Arrays.asList(args));
+
+                return keys.get(row);
+            } else if (name.equals("close")) {
+                return null;
+            } else {
+                return invokeObjectMethod(proxy, method, args);
+            }
+        }
+    }
+
+    /** Returns a proxy implementing the specified interface */
+    static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(),
+                new Class<?>[] { type }, handler));
+    }
+
+    /**
+     * Implements the {@code Object} methods of a proxy with the identity
+     * semantics of {@code Object}
+     *
+     * @throws UnsupportedOperationException if {@code method} is not one of
+     *         them
+     */
+    static Object invokeObjectMethod(Object proxy, Method method,
+            Object args[]) {
+        if (method.getName().equals("equals")) {
+            return proxy == args[0];
+        } else if (method.getName().equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        } else if (method.getName().equals("toString")) {
+            return "stub " + method.getDeclaringClass().getSimpleName() + "@"
+                    + Integer.toHexString(System.identityHashCode(proxy));
+        } else {
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Reciprocal Net Project
+ *
+ * ConnectionPoolTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.core.lock;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@code ConnectionPool} against a stub JDBC driver, registered with
+ * {@code DriverManager} for the duration of each test, whose connections do
+ * nothing and which can be made to fail every attempt to connect
+ */
+public class ConnectionPoolTests extends TestCase {
+
+    /** The JDBC URL the stub driver accepts */
+    private static final String URL = "jdbc:connectionpooltests:db";
+
+    /** The longest the test waits for a background replenishment */
+    private static final long TIMEOUT = 30000;
+
+    /** What the listener has been told, in order: "ready" or an exception */
+    private BlockingQueue<Object> events;
+
+    /** The stub driver */
+    private Driver driver;
+
+    /** The number of connections the stub driver has opened */
+    private volatile int connectionsOpened;
+
+    /** The exception the stub driver throws, or null if it connects */
+    private volatile SQLException failure;
+
+    /**
+     * Initializes this {@code ConnectionPoolTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public ConnectionPoolTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        events = new LinkedBlockingQueue<Object>();
+        connectionsOpened = 0;
+        failure = null;
+        driver = (Driver) Proxy.newProxyInstance(
+                Driver.class.getClassLoader(), new Class<?>[] { Driver.class },
+                new StubDriver());
+        DriverManager.registerDriver(driver);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    public void tearDown() throws Exception {
+        DriverManager.deregisterDriver(driver);
+        super.tearDown();
+    }
+
+    /**
+     * Verifies that a returned connection is kept open and lent again, and
+     * that loans are counted by class
+     */
+    public void testBorrowAndGiveBack() throws Exception {
+        ConnectionPool pool = newPool(2);
+        Connection conn;
+
+        pool.open(1);
+        assertEquals(1, connectionsOpened);
+        assertTrue(pool.canLend(ConnectionClass.SEARCH));
+        conn = pool.borrow(ConnectionClass.SEARCH, System.currentTimeMillis());
+        assertNotNull(conn);
+        assertCounter(pool, "busy", 1);
+        assertCounter(pool, "busy.SEARCH", 1);
+        assertCounter(pool, "idle", 0);
+        assertTrue(pool.getBusyConnections().contains(conn));
+
+        pool.reclassify(conn, ConnectionClass.ISM);
+        assertCounter(pool, "busy.SEARCH", 0);
+        assertCounter(pool, "busy.ISM", 1);
+
+        pool.giveBack(conn);
+        assertCounter(pool, "busy", 0);
+        assertCounter(pool, "busy.ISM", 0);
+        assertCounter(pool, "idle", 1);
+        assertFalse(conn.isClosed());
+        assertSame(conn, pool.borrow(ConnectionClass.GENERAL,
+                System.currentTimeMillis()));
+        assertEquals(1, connectionsOpened);
+        assertTrue(events.isEmpty());
+    }
+
+    /**
+     * Verifies that a borrower refused for want of an idle connection can
+     * borrow one once the background replenishment has told the listener
+     */
+    public void testBorrow__replenishes() throws Exception {
+        ConnectionPool pool = newPool(2);
+
+        assertTrue(pool.canLend(ConnectionClass.GENERAL));
+        assertNull(pool.borrow(ConnectionClass.GENERAL,
+                System.currentTimeMillis()));
+        assertEquals("ready", events.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNotNull(pool.borrow(ConnectionClass.GENERAL,
+                System.currentTimeMillis()));
+        assertEquals(1, connectionsOpened);
+        assertCounter(pool, "pending", 0);
+    }
+
+    /**
+     * Verifies that no loan is permitted once every connection is on loan,
+     * nor one that would infringe another class's reservation, and that
+     * returning a connection permits loans again
+     */
+    public void testCanLend__full() throws Exception {
+        ConnectionPool pool = newPool(2);
+        Connection first;
+        Connection second;
+
+        pool.open(2);
+        first = pool.borrow(ConnectionClass.GENERAL, 0);
+        second = pool.borrow(ConnectionClass.GENERAL, 0);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotSame(first, second);
+        assertTrue(pool.isExhausted());
+        for (ConnectionClass c : ConnectionClass.values()) {
+            assertFalse(c.toString(), pool.canLend(c));
+        }
+
+        pool.giveBack(first);
+        assertFalse(pool.isExhausted());
+        assertTrue(pool.canLend(ConnectionClass.GENERAL));
+
+        pool.setReserve(ConnectionClass.MAINTENANCE, 1);
+        assertFalse(pool.canLend(ConnectionClass.GENERAL));
+        assertTrue(pool.canLend(ConnectionClass.MAINTENANCE));
+        try {
+            pool.setReserve(ConnectionClass.SEARCH, 2);
+            fail("Reserved more connections than the pool may open");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        assertEquals(2, connectionsOpened);
+    }
+
+    /**
+     * Verifies that a failure to open a connection, whether in the
+     * background or in {@code prepare()}, is reported to the listener with
+     * the driver's exception and counted, and that the pool recovers once
+     * connections can be opened again
+     */
+    public void testReplenish__openFailure() throws Exception {
+        ConnectionPool pool = newPool(2);
+
+        failure = new SQLException("database down");
+        assertNull(pool.borrow(ConnectionClass.GENERAL, 0));
+        assertSame(failure, events.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertCounter(pool, "openFailures", 1);
+        assertCounter(pool, "open", 0);
+        assertCounter(pool, "pending", 0);
+
+        pool.prepare();
+        assertSame(failure, events.poll());
+        assertCounter(pool, "openFailures", 2);
+
+        failure = null;
+        pool.prepare();
+        assertEquals("ready", events.poll());
+        assertNotNull(pool.borrow(ConnectionClass.GENERAL, 0));
+        assertCounter(pool, "opened", 1);
+        assertTrue(events.isEmpty());
+    }
+
+    /**
+     * Verifies that {@code open()} throws the driver's exception
+     */
+    public void testOpen__failure() {
+        ConnectionPool pool = newPool(2);
+
+        failure = new SQLException("database down");
+        try {
+            pool.open(1);
+            fail("open() succeeded without a database");
+        } catch (SQLException ex) {
+            assertSame(failure, ex);
+        }
+        assertCounter(pool, "openFailures", 1);
+        assertCounter(pool, "open", 0);
+    }
+
+    /**
+     * Verifies that closing the pool closes its idle connections at once and
+     * its loaned ones as they are returned, and that it lends no more
+     */
+    public void testClose() throws Exception {
+        ConnectionPool pool = newPool(2);
+        Connection loaned;
+        Connection idle;
+
+        pool.open(2);
+        loaned = pool.borrow(ConnectionClass.GENERAL, 0);
+        idle = pool.getIdleConnections().iterator().next();
+        pool.close();
+        assertTrue(idle.isClosed());
+        assertFalse(loaned.isClosed());
+        assertFalse(pool.canLend(ConnectionClass.GENERAL));
+        pool.giveBack(loaned);
+        assertTrue(loaned.isClosed());
+        assertCounter(pool, "open", 0);
+    }
+
+    /**
+     * Returns a new pool of the specified size on the stub driver, whose
+     * connections are never tested, with {@code events} as its listener
+     */
+    private ConnectionPool newPool(int maxConnections) {
+        ConnectionPool pool
+                = new ConnectionPool(URL, "user", "", maxConnections, -1, null);
+
+        pool.setListener(new ConnectionPool.Listener() {
+            public void connectionReady() {
+                events.add("ready");
+            }
+
+            public void connectionFailed(SQLException ex) {
+                events.add(ex);
+            }
+        });
+
+        return pool;
+    }
+
+    /** Fails unless the named counter of the pool has the specified value */
+    private static void assertCounter(ConnectionPool pool, String name,
+            long expected) {
+        Map<String, Long> counters = pool.getCounters();
+
+        assertEquals(name, Long.valueOf(expected), counters.get(name));
+    }
+
+    /**
+     * Implements a {@code Driver} that accepts only {@code URL} and opens
+     * {@code StubConnection}s, or throws {@code failure} if it is set
+     */
+    private class StubDriver implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object args[])
+                throws SQLException {
+            String name = method.getName();
+
+            if (name.equals("acceptsURL")) {
+                return URL.equals(args[0]);
+            } else if (name.equals("connect")) {
+                if (!URL.equals(args[0])) {
+                    return null;
+                } else if (failure != null) {
+                    throw failure;
+                }
+                connectionsOpened++;
+
+                return Proxy.newProxyInstance(
+                        Connection.class.getClassLoader(),
+                        new Class<?>[] { Connection.class },
+                        new StubConnection());
+            } else if (name.equals("jdbcCompliant")) {
+                return false;
+            } else if (name.equals("getMajorVersion")
+                    || name.equals("getMinorVersion")) {
+                return 1;
+            } else {
+                return invokeObjectMethod(proxy, method, args);
+            }
+        }
+    }
+
+    /**
+     * Implements a {@code Connection} that supports only {@code close()} and
+     * {@code isClosed()}
+     */
+    private static class StubConnection implements InvocationHandler {
+
+        /** Whether the connection has been closed */
+        private boolean closed = false;
+
+        public synchronized Object invoke(Object proxy, Method method,
+                Object args[]) {
+            if (method.getName().equals("close")) {
+                closed = true;
+
+                return null;
+            } else if (method.getName().equals("isClosed")) {
+                return closed;
+            } else {
+                return invokeObjectMethod(proxy, method, args);
+            }
+        }
+    }
+
+    /**
+     * Implements the {@code Object} methods of a proxy with the identity
+     * semantics of {@code Object}
+     *
+     * @throws UnsupportedOperationException if {@code method} is not one of
+     *         them
+     */
+    static Object invokeObjectMethod(Object proxy, Method method,
+            Object args[]) {
+        if (method.getName().equals("equals")) {
+            return proxy == args[0];
+        } else if (method.getName().equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        } else if (method.getName().equals("toString")) {
+            return "stub " + method.getDeclaringClass().getSimpleName() + "@"
+                    + Integer.toHexString(System.identityHashCode(proxy));
+        } else {
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
@@ -0,0 +1,609 @@
+/*
+ * Reciprocal Net Project
+ *
+ * LockConflictIndexTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.core.lock;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@code LockConflictIndex}, and {@code LockAgent}'s use of it to
+ * decide which locks to grant, against the linear scans they replaced: every
+ * lock that actually conflicts with another must be identified as a potential
+ * conflict, and the agent must grant pending locks exactly when, and in the
+ * order that, its former rescanning scheduler did. The locks used are of the
+ * kinds the site uses, including unindexed ones, and need no database
+ * connections.
+ */
+public class LockConflictIndexTests extends TestCase {
+
+    /** The seed of the pseudo-random sequences of locks and operations */
+    private static final long SEED = 20261018L;
+
+    /** The number of distinct sample ids the locks refer to */
+    private static final int SAMPLES = 3;
+
+    /** The longest the test waits for an acquiring thread to block */
+    private static final long TIMEOUT = 30000;
+
+    /** The agent with which the test's locks are registered */
+    private LockAgent agent;
+
+    /** The source of pseudo-random locks and operations */
+    private Random random;
+
+    /** A model of the agent's former scheduler */
+    private LinearScanScheduler model;
+
+    /** The locks acquired or promoted to during the test */
+    private List<AbstractLock> locks;
+
+    /** The threads that have acquired or promoted locks */
+    private List<Thread> acquirers;
+
+    /** The exceptions thrown in {@code acquirers} */
+    private List<Exception> acquirerFailures;
+
+    /**
+     * Initializes this {@code LockConflictIndexTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public LockConflictIndexTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        agent = new LockAgent(null, false, (int) TIMEOUT);
+        random = new Random(SEED);
+        model = new LinearScanScheduler();
+        locks = new ArrayList<AbstractLock>();
+        acquirers = new ArrayList<Thread>();
+        acquirerFailures
+                = Collections.synchronizedList(new ArrayList<Exception>());
+    }
+
+    /**
+     * Verifies, over a pseudo-random sequence of additions and removals, that
+     * every member of the index that conflicts with a pseudo-random lock is
+     * among the potential conflicts the index identifies, that only members
+     * are identified, and that indexing does exclude some non-conflicting
+     * members
+     */
+    public void testCollectPotentialConflicts__matchesLinearScan() {
+        LockConflictIndex index = new LockConflictIndex();
+        List<AbstractLock> members = new ArrayList<AbstractLock>();
+        int identified = 0;
+        int examined = 0;
+
+        for (int step = 0; step < 2000; step++) {
+            if (!members.isEmpty() && (random.nextInt(3) == 0)) {
+                AbstractLock lock
+                        = members.remove(random.nextInt(members.size()));
+
+                assertNotNull(index.remove(lock));
+                assertNull(index.getKeys(lock));
+            } else {
+                AbstractLock lock = newRandomLock();
+
+                members.add(lock);
+                index.add(lock, LockConflictIndex.Keys.of(lock));
+            }
+
+            AbstractLock probe = newRandomLock();
+            Set<AbstractLock> potentialConflicts = new HashSet<AbstractLock>();
+
+            index.collectPotentialConflicts(LockConflictIndex.Keys.of(probe),
+                    potentialConflicts);
+            assertTrue(members.containsAll(potentialConflicts));
+            for (AbstractLock member : members) {
+                if (conflict(probe, member)) {
+                    assertTrue(probe + " conflicts with " + member,
+                            potentialConflicts.contains(member));
+                }
+            }
+            identified += potentialConflicts.size();
+            examined += members.size();
+        }
+        assertEquals(new HashSet<AbstractLock>(members),
+                new HashSet<AbstractLock>(index.getLocks()));
+        assertTrue(identified < examined);
+    }
+
+    /**
+     * Verifies that a removed or cleared lock is no longer identified as a
+     * potential conflict, and that removing a non-member does nothing
+     */
+    public void testRemoveAndClear() {
+        LockConflictIndex index = new LockConflictIndex();
+        AbstractLock writer = register(newSampleLock(1, true));
+        AbstractLock exclusive = register(new GenericExclusiveLock(false));
+        AbstractLock reader = register(newSampleLock(1, false));
+        LockConflictIndex.Keys readerKeys = LockConflictIndex.Keys.of(reader);
+        Collection<AbstractLock> potentialConflicts
+                = new ArrayList<AbstractLock>();
+
+        index.add(writer, LockConflictIndex.Keys.of(writer));
+        index.add(exclusive, LockConflictIndex.Keys.of(exclusive));
+        index.collectPotentialConflicts(readerKeys, potentialConflicts);
+        assertEquals(new HashSet<AbstractLock>(Arrays.asList(writer,
+                exclusive)), new HashSet<AbstractLock>(potentialConflicts));
+
+        assertNull(index.remove(reader));
+        assertNotNull(index.remove(writer));
+        assertNull(index.remove(writer));
+        potentialConflicts.clear();
+        index.collectPotentialConflicts(readerKeys, potentialConflicts);
+        assertEquals(Collections.singletonList(exclusive), potentialConflicts);
+
+        index.clear();
+        potentialConflicts.clear();
+        index.collectPotentialConflicts(readerKeys, potentialConflicts);
+        index.collectPotentialConflicts(
+                LockConflictIndex.Keys.of(exclusive), potentialConflicts);
+        assertTrue(potentialConflicts.isEmpty());
+        assertTrue(index.getLocks().isEmpty());
+    }
+
+    /**
+     * Verifies, over a pseudo-random sequence of acquisitions and releases of
+     * locks registered in an order different from that in which they are
+     * acquired, that the agent grants exactly the locks that its former
+     * scheduler would have
+     */
+    public void testScheduler__matchesLinearScan() throws Exception {
+        List<AbstractLock> unacquired = new ArrayList<AbstractLock>();
+
+        for (int i = 0; i < 150; i++) {
+            unacquired.add(newRandomLock());
+        }
+        Collections.shuffle(unacquired, random);
+        while (!unacquired.isEmpty()) {
+            if (model.active.isEmpty() || (random.nextInt(5) < 3)) {
+                acquire(unacquired.remove(unacquired.size() - 1));
+            } else {
+                release(model.active.get(
+                        random.nextInt(model.active.size())));
+            }
+        }
+        releaseAll();
+    }
+
+    /**
+     * Verifies that of two pending locks that conflict with each other, the
+     * one registered first is granted first, even if it was acquired second
+     */
+    public void testScheduler__registrationOrder() throws Exception {
+        AbstractLock holder = register(newSampleLock(1, true));
+        AbstractLock first = register(newSampleLock(1, true));
+        AbstractLock second;
+
+        awaitClockTick();
+        second = register(newSampleLock(1, true));
+        acquire(holder);
+        acquire(second);
+        acquire(first);
+        assertFalse(first.isActive() || second.isActive());
+
+        release(holder);
+        assertTrue(first.isActive());
+        assertFalse(second.isActive());
+        release(first);
+        assertTrue(second.isActive());
+        releaseAll();
+    }
+
+    /**
+     * Verifies that a release wakes a pending lock that it blocked even if a
+     * lock registered earlier is still blocked by something else, and wakes
+     * every pending lock it alone blocked
+     */
+    public void testScheduler__releaseWakesOnlyUnblocked() throws Exception {
+        AbstractLock writer1 = register(newSampleLock(1, true));
+        AbstractLock writer2 = register(newSampleLock(2, true));
+        AbstractLock waiting1 = register(newSampleLock(1, false));
+        AbstractLock waiting2a = register(newSampleLock(2, false));
+        AbstractLock waiting2b = register(newSampleLock(2, false));
+
+        acquire(writer1);
+        acquire(writer2);
+        acquire(waiting1);
+        acquire(waiting2a);
+        acquire(waiting2b);
+
+        release(writer2);
+        assertFalse(waiting1.isActive());
+        assertTrue(waiting2a.isActive() && waiting2b.isActive());
+        release(writer1);
+        assertTrue(waiting1.isActive());
+        releaseAll();
+    }
+
+    /**
+     * Verifies that an unindexed lock waits for, and blocks, locks of every
+     * kind
+     */
+    public void testScheduler__unindexed() throws Exception {
+        AbstractLock reader = register(new PrimaryDirectoryReadLock(1, true,
+                true));
+        AbstractLock exclusive = register(new GenericExclusiveLock(false));
+        AbstractLock unrelated = register(newSampleLock(3, false));
+
+        acquire(reader);
+        acquire(exclusive);
+        assertFalse(exclusive.isActive());
+        release(reader);
+        assertTrue(exclusive.isActive());
+        acquire(unrelated);
+        assertFalse(unrelated.isActive());
+        release(exclusive);
+        assertTrue(unrelated.isActive());
+        releaseAll();
+    }
+
+    /**
+     * Verifies that a pending promotion is granted ahead of a lock registered
+     * before it, and that its predecessor is then revoked
+     */
+    public void testScheduler__promotion() throws Exception {
+        AbstractLock reader = register(newSampleLock(1, false));
+        AbstractLock otherReader = register(newSampleLock(1, false));
+        AbstractLock waitingWriter = register(newSampleLock(1, true));
+        AbstractLock promotedReader;
+
+        acquire(reader);
+        acquire(otherReader);
+        acquire(waitingWriter);
+        awaitClockTick();
+        promotedReader = register(newSampleLock(1, true));
+        promote(reader, promotedReader);
+        assertTrue(reader.isActive());
+        assertFalse(promotedReader.isActive());
+
+        release(otherReader);
+        assertTrue(promotedReader.isActive());
+        assertFalse(reader.isActive());
+        assertFalse(waitingWriter.isActive());
+        release(promotedReader);
+        assertTrue(waitingWriter.isActive());
+        releaseAll();
+    }
+
+    /**
+     * Acquires the specified lock in a new thread, waits until the lock has
+     * been granted or the thread has blocked waiting for it, and checks the
+     * result against {@code model}
+     */
+    private void acquire(final AbstractLock lock) throws Exception {
+        startAcquirer(lock, new Runnable() {
+            public void run() {
+                try {
+                    agent.acquireLock(lock, true);
+                } catch (Exception ex) {
+                    acquirerFailures.add(ex);
+                }
+            }
+        });
+        model.acquire(lock);
+        assertMatchesModel();
+    }
+
+    /**
+     * Promotes one lock to another in a new thread, waits until the new lock
+     * has been granted or the thread has blocked waiting for it, and checks
+     * the result against {@code model}
+     */
+    private void promote(final AbstractLock oldLock,
+            final AbstractLock newLock) throws Exception {
+        startAcquirer(newLock, new Runnable() {
+            public void run() {
+                try {
+                    agent.promoteLock(oldLock, newLock);
+                } catch (Exception ex) {
+                    acquirerFailures.add(ex);
+                }
+            }
+        });
+        model.promote(oldLock, newLock);
+        assertMatchesModel();
+    }
+
+    /**
+     * Releases the specified lock and checks the locks granted in
+     * consequence against {@code model}
+     */
+    private void release(AbstractLock lock) throws Exception {
+        agent.releaseLock(lock);
+        model.release(lock);
+        assertMatchesModel();
+    }
+
+    /**
+     * Releases active locks, checking each release against {@code model},
+     * until none is active or pending, then waits for every acquiring thread
+     * to finish
+     */
+    private void releaseAll() throws Exception {
+        while (!model.active.isEmpty()) {
+            release(model.active.get(0));
+        }
+        assertTrue(model.pending.isEmpty());
+        for (Thread acquirer : acquirers) {
+            acquirer.join(TIMEOUT);
+            assertFalse(acquirer.isAlive());
+        }
+        assertEquals(Collections.emptyList(), acquirerFailures);
+    }
+
+    /**
+     * Runs an acquisition in a new thread and waits until the lock acquired
+     * is active or the thread is blocked waiting for it to be granted
+     */
+    private void startAcquirer(AbstractLock lock, Runnable acquisition)
+            throws InterruptedException {
+        Thread acquirer = new Thread(acquisition, "acquirer " + lock.getId());
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        locks.add(lock);
+        acquirers.add(acquirer);
+        acquirer.setDaemon(true);
+        acquirer.start();
+        while (!lock.isActive()
+                && (acquirer.getState() != Thread.State.TIMED_WAITING)) {
+            assertTrue("Acquisition neither granted nor blocked: " + lock,
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Fails unless exactly the locks {@code model} says are active are active
+     */
+    private void assertMatchesModel() {
+        for (AbstractLock lock : locks) {
+            assertEquals(String.valueOf(lock), model.active.contains(lock),
+                    lock.isActive());
+        }
+    }
+
+    /**
+     * Returns a new lock of one of the kinds the site uses, chosen
+     * pseudo-randomly, registered with {@code agent}
+     */
+    private AbstractLock newRandomLock() {
+        switch (random.nextInt(8)) {
+            case 0:
+                return register(new GenericExclusiveLock(false));
+            case 1:
+                return register(new MultiLock(newRandomIndexedLock(),
+                        newRandomIndexedLock()));
+            default:
+                return register(newRandomIndexedLock());
+        }
+    }
+
+    /**
+     * Returns a new, unregistered lock of one of the kinds that report
+     * resource keys, chosen pseudo-randomly
+     */
+    private AbstractLock newRandomIndexedLock() {
+        int sampleId = 1 + random.nextInt(SAMPLES);
+
+        switch (random.nextInt(7)) {
+            case 0:
+                return new SimpleLock(false, randomOperations(false),
+                        randomOperations(false));
+            case 1:
+                return new PrimaryDirectoryReadLock(sampleId,
+                        random.nextBoolean(), random.nextBoolean());
+            case 2:
+                return new PrimaryDirectoryCreationLock(sampleId, 0);
+            case 3:
+                return new SimplePrimaryFileLock(sampleId,
+                        "file" + random.nextInt(2), random.nextBoolean(),
+                        random.nextBoolean(), random.nextBoolean(), 0);
+            case 4:
+                return new SecondaryDirectoryExtractionLock(sampleId,
+                        1 + random.nextInt(2), 0);
+            case 5:
+                return new PrimaryFileReadTicket(0, TIMEOUT, sampleId,
+                        new File("file" + random.nextInt(2)));
+            default:
+                Collection<Integer> resourceIds = new HashSet<Integer>();
+
+                resourceIds.add(sampleId);
+                resourceIds.add(1 + random.nextInt(SAMPLES));
+
+                return new SimpleLock(resourceIds, false,
+                        randomOperations(true), randomOperations(true));
+        }
+    }
+
+    /**
+     * Returns a pseudo-random combination of three general, and optionally
+     * three specific, {@code SimpleLock} operation codes
+     */
+    private long randomOperations(boolean includeSpecific) {
+        long operations = 0;
+
+        for (int i = 0; i < 3; i++) {
+            if (random.nextInt(4) == 0) {
+                operations |= SimpleLock.GEN_OP_BASE << i;
+            }
+            if (includeSpecific && (random.nextInt(3) == 0)) {
+                operations |= SimpleLock.SPEC_OP_BASE << i;
+            }
+        }
+
+        return operations;
+    }
+
+    /**
+     * Returns a new, unregistered {@code SimpleLock} on the specified sample
+     * that either reads it, conflicting only with writers, or writes it,
+     * conflicting with readers and writers
+     */
+    private static AbstractLock newSampleLock(int sampleId, boolean write) {
+        long read = SimpleLock.SPEC_OP_BASE;
+        long modify = SimpleLock.SPEC_OP_BASE << 1;
+
+        return write ? new SimpleLock(sampleId, false, modify, read | modify)
+                : new SimpleLock(sampleId, false, read, modify);
+    }
+
+    /** Registers the specified lock with {@code agent} and returns it */
+    private AbstractLock register(AbstractLock lock) {
+        agent.registerLock(lock);
+
+        return lock;
+    }
+
+    /**
+     * Waits until the system clock has advanced, so that locks registered
+     * afterward have later registration times than those registered before
+     */
+    private static void awaitClockTick() throws InterruptedException {
+        long now = System.currentTimeMillis();
+
+        while (System.currentTimeMillis() == now) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Returns {@code true} if either lock would be disrupted by the other
+     */
+    static boolean conflict(AbstractLock x, AbstractLock y) {
+        return x.wouldBeDisruptedBy(y) || y.wouldBeDisruptedBy(x);
+    }
+
+    /**
+     * A model of the scheduling done by {@code LockAgent} before it used
+     * {@code LockConflictIndex}, for locks that need no database connection:
+     * each candidate is tested against every active lock, and after each
+     * release the whole pending queue is rescanned, in priority order, until a
+     * pass grants nothing
+     */
+    private static class LinearScanScheduler {
+
+        /** The active locks */
+        final List<AbstractLock> active = new ArrayList<AbstractLock>();
+
+        /** The pending locks, in the order the agent prioritizes them */
+        final List<AbstractLock> pending = new ArrayList<AbstractLock>();
+
+        /**
+         * Orders pending locks as {@code LockAgent.PendingLockComparator}
+         * does: promotions first, then by registration time and lock id
+         */
+        private final Comparator<AbstractLock> priority
+                = new Comparator<AbstractLock>() {
+                    public int compare(AbstractLock x, AbstractLock y) {
+                        boolean xPromotes = (x.getPrevInChain() != null);
+                        boolean yPromotes = (y.getPrevInChain() != null);
+
+                        if (xPromotes != yPromotes) {
+                            return xPromotes ? -1 : 1;
+                        } else if (x.getTimeRegistered()
+                                != y.getTimeRegistered()) {
+                            return (x.getTimeRegistered()
+                                    < y.getTimeRegistered()) ? -1 : 1;
+                        } else {
+                            return x.compareTo(y);
+                        }
+                    }
+                };
+
+        /** Grants the specified lock, or queues it if it cannot be granted */
+        void acquire(AbstractLock lock) {
+            if (canLockImmediately(lock)) {
+                active.add(lock);
+            } else {
+                pending.add(lock);
+                Collections.sort(pending, priority);
+            }
+        }
+
+        /**
+         * Grants the second lock and revokes the first, or queues the second
+         * if it cannot be granted
+         */
+        void promote(AbstractLock oldLock, AbstractLock newLock) {
+            if (canLockImmediately(newLock)) {
+                active.add(newLock);
+                active.remove(oldLock);
+                schedule();
+            } else {
+                pending.add(newLock);
+                Collections.sort(pending, priority);
+            }
+        }
+
+        /** Revokes the specified lock and grants what can then be granted */
+        void release(AbstractLock lock) {
+            assertTrue(active.remove(lock));
+            schedule();
+        }
+
+        /**
+         * Determines whether the specified lock conflicts with no active lock
+         * other than the one it promotes
+         */
+        private boolean canLockImmediately(AbstractLock lock) {
+            for (AbstractLock activeLock : active) {
+                if ((activeLock.getNextInChain() != lock)
+                        && conflict(lock, activeLock)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Scans the pending locks repeatedly, granting as many as possible,
+         * until a pass grants none
+         */
+        private void schedule() {
+            boolean grantedSomeLock;
+
+            do {
+                grantedSomeLock = false;
+                for (Iterator<AbstractLock> it = pending.iterator();
+                        it.hasNext(); ) {
+                    AbstractLock lock = it.next();
+
+                    if (canLockImmediately(lock)) {
+                        it.remove();
+                        active.add(lock);
+                        active.remove(lock.getPrevInChain());
+                        grantedSomeLock = true;
+                    }
+                }
+            } while (grantedSomeLock);
+        }
+    }
+}
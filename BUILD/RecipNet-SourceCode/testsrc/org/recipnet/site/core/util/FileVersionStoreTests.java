@@ -0,0 +1,216 @@
+/*
+ * Reciprocal Net Project
+ *
+ * FileVersionStoreTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+import org.recipnet.site.OperationFailedException;
+
+/**
+ * Tests {@code FileVersionStore}, chiefly its import of a CVS repository
+ * written by earlier versions of the site software. The repository's
+ * archives are the fixtures of {@code RcsArchiveReaderTests}.
+ */
+public class FileVersionStoreTests extends TestCase {
+
+    /** The tree, and CVS directory, that holds the test's files */
+    private static final String TREE = "sample1";
+
+    /**
+     * An archive whose head revision, 1.2, records the removal of a file
+     * whose only contents were those of revision 1.1
+     */
+    private static final String REMOVED_ARCHIVE
+            = "head\t1.2;\naccess;\nsymbols;\nlocks; strict;\n"
+            + "comment\t@# @;\nexpand\t@b@;\n\n\n"
+            + "1.2\ndate\t2026.01.02.10.00.00;\tauthor site;\tstate dead;\n"
+            + "branches;\nnext\t1.1;\n\n"
+            + "1.1\ndate\t2026.01.01.10.00.00;\tauthor site;\tstate Exp;\n"
+            + "branches;\nnext\t;\n\n\n"
+            + "desc\n@@\n\n\n"
+            + "1.2\nlog\n@file removed\n@\ntext\n@bye @@\n@\n\n\n"
+            + "1.1\nlog\n@Initial revision\n@\ntext\n@@\n";
+
+    /** A temporary directory holding the test's files */
+    private File directory;
+
+    /** The CVS repository to be imported */
+    private File cvsRoot;
+
+    /** The store under test */
+    private FileVersionStore store;
+
+    /**
+     * Initializes this {@code FileVersionStoreTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public FileVersionStoreTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        directory = File.createTempFile("FileVersionStoreTests", "");
+        assertTrue(directory.delete() && directory.mkdir());
+
+        File cvsDir = new File(cvsRoot = new File(directory, "cvs"), TREE);
+        File cvsRootDir = new File(cvsRoot, "CVSROOT");
+        File atticDir = new File(cvsDir, "Attic");
+        Logger logger = Logger.getLogger(getClass().getName());
+
+        assertTrue(cvsRootDir.mkdirs() && atticDir.mkdirs());
+        RcsArchiveReaderTests.writeArchive(cvsRootDir, "history,v",
+                "not an archive");
+        RcsArchiveReaderTests.writeArchive(cvsDir, "a.cif,v",
+                RcsArchiveReaderTests.ARCHIVE);
+        RcsArchiveReaderTests.writeArchive(atticDir, "gone.txt,v",
+                REMOVED_ARCHIVE);
+        logger.setLevel(Level.WARNING);
+        store = new FileVersionStore(new File(directory, "store"), logger);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    public void tearDown() throws Exception {
+        FileVersionStore.deleteFileRecursively(directory);
+        super.tearDown();
+    }
+
+    /**
+     * Verifies that every trunk revision, and only those, can be exported
+     * after the import, including from the {@code Attic}, that
+     * {@code CVSROOT} is not imported, and that repeating the import changes
+     * nothing
+     */
+    public void testMigrateFromCvs() throws Exception {
+        assertFalse(store.isInitialized());
+        store.migrateFromCvs(cvsRoot);
+        assertTrue(store.isInitialized());
+        for (int pass = 0; pass < 2; pass++) {
+            assertExported(RcsArchiveReaderTests.REVISION_1_1, "a.cif", "1.1");
+            assertExported(RcsArchiveReaderTests.REVISION_1_2, "a.cif", "1.2");
+            assertExported(RcsArchiveReaderTests.REVISION_1_3, "a.cif", "1.3");
+            assertExported("bye @\n", "gone.txt", "1.1");
+            assertNotExported("a.cif", "1.2.2.1");
+            assertNotExported("a.cif", "1.4");
+            assertNotExported("gone.txt", "1.2");
+            assertEquals(RcsArchiveReaderTests.REVISION_1_1.length()
+                    + RcsArchiveReaderTests.REVISION_1_2.length()
+                    + RcsArchiveReaderTests.REVISION_1_3.length(),
+                    store.getVersionedFileSize(TREE, "a.cif"));
+            store.migrateFromCvs(cvsRoot);
+        }
+    }
+
+    /**
+     * Verifies that a working directory checked out by CVS is recognized
+     * after the import, and that revision numbering continues from that of
+     * the CVS archives
+     */
+    public void testMigrateFromCvs__checkedOutDirectory() throws Exception {
+        File workingDir = new File(directory, "work");
+        File cvsAdminDir = new File(workingDir, "CVS");
+        File aCif = new File(workingDir, "a.cif");
+        File goneTxt = new File(workingDir, "gone.txt");
+
+        assertTrue(cvsAdminDir.mkdirs());
+        RcsArchiveReaderTests.writeArchive(cvsAdminDir, "Repository",
+                TREE + "\n");
+        RcsArchiveReaderTests.writeArchive(workingDir, "a.cif",
+                RcsArchiveReaderTests.REVISION_1_3);
+        store.migrateFromCvs(cvsRoot);
+
+        assertEquals("1.3", store.getFileRevision(aCif));
+        assertFalse(store.checkFileModified(aCif));
+        assertTrue(new File(workingDir,
+                FileVersionStore.TREE_NAME_FILE).isFile());
+        RcsArchiveReaderTests.writeArchive(workingDir, "a.cif", "changed\n");
+        assertTrue(store.checkFileModified(aCif));
+        assertEquals("1.4", store.commitModifiedFile(aCif));
+
+        store.replaceFileWithRevision(workingDir, "a.cif", "1.1");
+        assertEquals(RcsArchiveReaderTests.REVISION_1_1, readFile(aCif));
+        assertEquals("1.5", store.commitModifiedFile(aCif));
+
+        assertEquals("1.2", store.getFileHeadRevision(goneTxt));
+        try {
+            store.getFileRevision(goneTxt);
+            fail("A removed file had a working revision");
+        } catch (OperationFailedException ex) {
+            // expected
+        }
+        RcsArchiveReaderTests.writeArchive(workingDir, "gone.txt", "back\n");
+        assertEquals("1.3", store.commitAddedFile(goneTxt));
+    }
+
+    /**
+     * Fails unless the specified revision of a file in {@code TREE} can be
+     * exported and has the specified contents
+     */
+    private void assertExported(String expected, String fileName,
+            String revision) throws Exception {
+        File exportDir = new File(directory, "export");
+
+        store.exportFile(TREE, fileName, revision, exportDir);
+        assertEquals(fileName + " " + revision, expected,
+                readFile(new File(exportDir, fileName)));
+    }
+
+    /**
+     * Fails unless exporting the specified revision of a file in {@code TREE}
+     * fails
+     */
+    private void assertNotExported(String fileName, String revision)
+            throws Exception {
+        try {
+            store.exportFile(TREE, fileName, revision,
+                    new File(directory, "export"));
+            fail("Exported " + fileName + " " + revision);
+        } catch (OperationFailedException ex) {
+            // expected
+        }
+    }
+
+    /** Returns the contents of a file, each byte as one character */
+    private static String readFile(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try {
+            byte[] buffer = new byte[1024];
+
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+
+        return out.toString(RcsArchiveReaderTests.CHARSET);
+    }
+}
@@ -0,0 +1,443 @@
+/*
+ * Reciprocal Net Project
+ *
+ * MessageLogTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.recipnet.site.core.ResourceException;
+
+/**
+ * Tests {@code MessageLog}, including its recovery from segment files that
+ * were torn or corrupted while it was closed
+ */
+public class MessageLogTests extends TestCase {
+
+    /** The originating site of most of the test messages */
+    private static final int SITE = 7;
+
+    /** A temporary directory holding the log's segment files */
+    private File directory;
+
+    /**
+     * Initializes this {@code MessageLogTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public MessageLogTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        directory = File.createTempFile("MessageLogTests", "");
+        assertTrue(directory.delete() && directory.mkdir());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    public void tearDown() throws Exception {
+        FileVersionStore.deleteFileRecursively(directory);
+        super.tearDown();
+    }
+
+    /**
+     * Verifies that messages can be read back from every segment of a log
+     * that has rolled over several times, before and after it is reopened,
+     * that each site's messages are kept apart, and that a message stored
+     * again supersedes its earlier copy
+     */
+    public void testAppendAndRead__segmentRoll() throws Exception {
+        MessageLog log = new MessageLog(directory, 2048, false);
+
+        for (int i = 0; i < 100; i++) {
+            log.append(SITE, i, i % 3, message(i, 40));
+            if (i % 10 == 0) {
+                log.append(SITE + 1, i, 0, message(-i, 10));
+            }
+        }
+        log.append(SITE, 50, 0, "<message>replaced</message>");
+        assertTrue(countSegments(SITE) > 3);
+        assertEquals(1, countSegments(SITE + 1));
+        assertTrue(Arrays.equals(new int[] { SITE, SITE + 1 },
+                log.getSiteIds()));
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals((i == 50) ? "<message>replaced</message>"
+                        : message(i, 40), log.read(SITE, i));
+            }
+            assertEquals(message(-30, 10), log.read(SITE + 1, 30));
+            assertNull(log.read(SITE + 1, 31));
+            assertNull(log.read(SITE, 100));
+            assertNull(log.read(SITE + 2, 1));
+            assertEquals(Arrays.asList(message(99, 40), null,
+                    message(0, 40), message(42, 40)),
+                    Arrays.asList(log.read(SITE,
+                            new long[] { 99, 1000, 0, 42 })));
+            log.close();
+            log = new MessageLog(directory, 2048, false);
+        }
+
+        // Appending continues in the reopened log's last segment.
+        log.append(SITE, 100, 0, message(100, 40));
+        log.close();
+        log = new MessageLog(directory, 2048, false);
+        assertEquals(message(100, 40), log.read(SITE, 100));
+        assertEquals(message(99, 40), log.read(SITE, 99));
+        log.close();
+    }
+
+    /**
+     * Verifies lookups through the sparse index of segments large enough to
+     * be divided into several blocks, both as built while appending and as
+     * read from a sealed segment or rebuilt by scanning an unsealed one
+     */
+    public void testRead__sparseIndex() throws Exception {
+        int segmentSize = 300 * 1024;
+        MessageLog log = new MessageLog(directory, segmentSize, false);
+
+        for (int i = 0; i < 500; i++) {
+            log.append(SITE, i, 0, message(i, 1000));
+        }
+        assertEquals(2, countSegments(SITE));
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < 500; i += 37) {
+                assertEquals(message(i, 1000), log.read(SITE, i));
+            }
+
+            String messages[] = log.read(SITE,
+                    new long[] { 499, 3, 250, 251, 1, 600, -1 });
+
+            assertEquals(Arrays.asList(message(499, 1000), message(3, 1000),
+                    message(250, 1000), message(251, 1000),
+                    message(1, 1000), null, null), Arrays.asList(messages));
+            log.close();
+            log = new MessageLog(directory, segmentSize, false);
+        }
+        log.close();
+    }
+
+    /**
+     * Verifies that {@code readEntries()} returns the live messages in order
+     * of sequence number, whatever order they were stored in, with or without
+     * their text
+     */
+    public void testReadEntries() throws Exception {
+        MessageLog log = new MessageLog(directory, 1024, false);
+        long seqNums[] = { 5, 1, 9, 3, 7, 2 };
+        List<MessageLog.Entry> entries;
+
+        for (long seqNum : seqNums) {
+            log.append(SITE, seqNum, (int) seqNum * 10,
+                    message((int) seqNum, 100));
+        }
+        log.delete(SITE, 9);
+        log.append(SITE, 3, 33, message(33, 10));
+
+        entries = log.readEntries(SITE, true);
+        assertEquals(5, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            MessageLog.Entry entry = entries.get(i);
+            long expected = new long[] { 1, 2, 3, 5, 7 }[i];
+
+            assertEquals(expected, entry.seqNum);
+            if (expected == 3) {
+                assertEquals(33, entry.destSiteId);
+                assertEquals(message(33, 10), entry.message);
+            } else {
+                assertEquals(expected * 10, entry.destSiteId);
+                assertEquals(message((int) expected, 100), entry.message);
+            }
+        }
+        entries = log.readEntries(SITE, false);
+        assertEquals(5, entries.size());
+        assertNull(entries.get(0).message);
+        assertTrue(log.readEntries(SITE + 1, true).isEmpty());
+        log.close();
+    }
+
+    /**
+     * Verifies that a deletion survives reopening the log, that deleting from
+     * a site with no log creates none, and that a deleted message may be
+     * stored again
+     */
+    public void testDelete__reopen() throws Exception {
+        MessageLog log = new MessageLog(directory, 1024, false);
+
+        for (int i = 1; i <= 20; i++) {
+            log.append(SITE, i, 0, message(i, 50));
+        }
+        log.delete(SITE, 3);
+        log.delete(SITE, 18);
+        log.delete(SITE, 99);
+        log.delete(SITE + 1, 1);
+        assertTrue(Arrays.equals(new int[] { SITE }, log.getSiteIds()));
+        assertNull(log.read(SITE, 3));
+        log.close();
+
+        log = new MessageLog(directory, 1024, false);
+        assertNull(log.read(SITE, 3));
+        assertNull(log.read(SITE, 18));
+        assertEquals(message(4, 50), log.read(SITE, 4));
+        assertEquals(18, log.readEntries(SITE, false).size());
+        assertTrue(Arrays.equals(new int[] { SITE }, log.getSiteIds()));
+        log.append(SITE, 3, 0, message(-3, 50));
+        log.close();
+
+        log = new MessageLog(directory, 1024, false);
+        assertEquals(message(-3, 50), log.read(SITE, 3));
+        assertEquals(19, log.readEntries(SITE, false).size());
+        log.close();
+    }
+
+    /**
+     * Verifies that a record torn part way through an append is truncated
+     * away when the log is reopened, and that appending then resumes
+     */
+    public void testReopen__tornTail() throws Exception {
+        MessageLog log = new MessageLog(directory, 1 << 20, false);
+        File segment;
+        long length;
+
+        for (int i = 0; i < 10; i++) {
+            log.append(SITE, i, 0, message(i, 50));
+        }
+        log.close();
+        segment = getSegment(SITE, 0);
+        length = segment.length();
+        truncate(segment, length - 5);
+
+        log = new MessageLog(directory, 1 << 20, false);
+        assertEquals(message(8, 50), log.read(SITE, 8));
+        assertNull(log.read(SITE, 9));
+        assertEquals(9, log.readEntries(SITE, false).size());
+        assertTrue(segment.length() < length - 5);
+        log.append(SITE, 9, 0, message(-9, 50));
+        log.close();
+
+        log = new MessageLog(directory, 1 << 20, false);
+        assertEquals(message(-9, 50), log.read(SITE, 9));
+        assertEquals(10, log.readEntries(SITE, false).size());
+        log.close();
+    }
+
+    /**
+     * Verifies that a record whose checksum fails in the last segment is
+     * treated as the end of the log when it is reopened, and that one in a
+     * sealed segment is reported when read
+     */
+    public void testReopen__corruptRecord() throws Exception {
+        MessageLog log = new MessageLog(directory, 2048, false);
+
+        for (int i = 0; i < 40; i++) {
+            log.append(SITE, i, 0, message(i, 100));
+        }
+        log.close();
+
+        int segments = countSegments(SITE);
+
+        assertTrue(segments > 2);
+        flipByteOf(getSegment(SITE, segments - 1), "seq=\"38\"");
+        flipByteOf(getSegment(SITE, 0), "seq=\"1\"");
+
+        log = new MessageLog(directory, 2048, false);
+        assertEquals(message(37, 100), log.read(SITE, 37));
+        assertNull(log.read(SITE, 38));
+        assertNull(log.read(SITE, 39));
+        assertEquals(message(20, 100), log.read(SITE, 20));
+        try {
+            log.read(SITE, 1);
+            fail("A corrupt record was read");
+        } catch (ResourceException ex) {
+            // expected
+        }
+        try {
+            log.readEntries(SITE, false);
+            fail("A corrupt record was read");
+        } catch (ResourceException ex) {
+            // expected
+        }
+        log.close();
+    }
+
+    /**
+     * Verifies that a sealed segment whose index is damaged is rescanned and
+     * sealed again when the log is reopened
+     */
+    public void testReopen__corruptIndex() throws Exception {
+        MessageLog log = new MessageLog(directory, 2048, false);
+        File segment;
+        long length;
+
+        for (int i = 0; i < 40; i++) {
+            log.append(SITE, i, 0, message(i, 100));
+        }
+        log.close();
+        segment = getSegment(SITE, 0);
+        length = segment.length();
+        flipByteAt(segment, length - 12);
+
+        log = new MessageLog(directory, 2048, false);
+        assertEquals(length, segment.length());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(message(i, 100), log.read(SITE, i));
+        }
+        log.close();
+    }
+
+    /**
+     * Verifies that a log opened read-only reads what it can of a torn log
+     * without repairing it, and refuses to be modified
+     */
+    public void testReopen__readOnly() throws Exception {
+        MessageLog log = new MessageLog(directory, 1 << 20, false);
+        File segment;
+        long length;
+
+        for (int i = 0; i < 10; i++) {
+            log.append(SITE, i, 0, message(i, 50));
+        }
+        log.close();
+        segment = getSegment(SITE, 0);
+        length = segment.length() - 5;
+        truncate(segment, length);
+
+        log = new MessageLog(directory, 1 << 20, true);
+        assertEquals(length, segment.length());
+        assertEquals(message(8, 50), log.read(SITE, 8));
+        assertNull(log.read(SITE, 9));
+        try {
+            log.append(SITE, 10, 0, message(10, 50));
+            fail("A read-only log accepted a message");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        try {
+            log.delete(SITE, 1);
+            fail("A read-only log accepted a deletion");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        try {
+            log.deleteAll();
+            fail("A read-only log was deleted");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        assertEquals(length, segment.length());
+        log.close();
+    }
+
+    /**
+     * Returns a test message of roughly the specified length that identifies
+     * itself by {@code id} and contains a character outside ASCII
+     */
+    private static String message(int id, int length) {
+        StringBuilder sb = new StringBuilder("<message seq=\"" + id
+                + "\">\u00e9");
+
+        while (sb.length() < length) {
+            sb.append((char) ('a' + sb.length() % 26));
+        }
+
+        return sb.append("</message>").toString();
+    }
+
+    /** Returns the number of segment files in a site's log */
+    private int countSegments(int siteId) {
+        String prefix = String.format("%05d-", siteId);
+        int count = 0;
+
+        for (String name : directory.list()) {
+            if (name.startsWith(prefix)
+                    && name.endsWith(MessageLog.SEGMENT_SUFFIX)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /** Returns the specified segment file of a site's log */
+    private File getSegment(int siteId, int ordinal) {
+        File file = new File(directory, String.format("%05d-%06d%s", siteId,
+                ordinal, MessageLog.SEGMENT_SUFFIX));
+
+        assertTrue(file.getPath(), file.isFile());
+
+        return file;
+    }
+
+    /** Truncates a file to the specified length */
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Inverts the bits of the last byte of the first occurrence of the
+     * specified ASCII text in a file
+     */
+    private static void flipByteOf(File file, String text) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        byte contents[] = new byte[(int) raf.length()];
+        byte target[] = text.getBytes("US-ASCII");
+
+        try {
+            raf.readFully(contents);
+        } finally {
+            raf.close();
+        }
+        for (int i = 0; i + target.length <= contents.length; i++) {
+            if (Arrays.equals(target,
+                    Arrays.copyOfRange(contents, i, i + target.length))) {
+                flipByteAt(file, i + target.length - 1);
+                return;
+            }
+        }
+        fail("\"" + text + "\" not found in " + file);
+    }
+
+    /** Inverts the bits of the byte at the specified offset of a file */
+    private static void flipByteAt(File file, long offset) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+            raf.seek(offset);
+
+            int b = raf.read();
+
+            raf.seek(offset);
+            raf.write(~b);
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Reciprocal Net Project
+ *
+ * RcsArchiveReaderTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.core.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.recipnet.site.OperationFailedException;
+
+/**
+ * Tests {@code RcsArchiveReader} against small archives written the way CVS
+ * writes them for files added with {@code -kb}
+ */
+public class RcsArchiveReaderTests extends TestCase {
+
+    /** The encoding that maps each character of a fixture to one byte */
+    static final String CHARSET = "ISO-8859-1";
+
+    /** Revision 1.1 of the file in {@code ARCHIVE} */
+    static final String REVISION_1_1 = "line1\nline2 @home\nline3\n";
+
+    /** Revision 1.2 of the file in {@code ARCHIVE} */
+    static final String REVISION_1_2 = "line1\nline two @\nline3\n";
+
+    /** Revision 1.3, the head revision, of the file in {@code ARCHIVE} */
+    static final String REVISION_1_3
+            = "line1\nline two @\nline3\nline4 @@x \u00e9\n";
+
+    /**
+     * An archive with three trunk revisions and, on a branch from revision
+     * 1.2, revision 1.2.2.1. {@code '@'} appears, escaped, in the head
+     * revision's text, in the deltas, and in a log message.
+     */
+    static final String ARCHIVE = "head\t1.3;\n"
+            + "access;\n"
+            + "symbols\n\tbranch1:1.2.0.2\n\tstart:1.1.1.1;\n"
+            + "locks; strict;\n"
+            + "comment\t@# @;\n"
+            + "expand\t@b@;\n"
+            + "\n\n"
+            + "1.3\n"
+            + "date\t2026.01.03.10.00.00;\tauthor site;\tstate Exp;\n"
+            + "branches;\n"
+            + "next\t1.2;\n"
+            + "commitid\t1004A1B2C3D4E5F6;\n"
+            + "\n"
+            + "1.2\n"
+            + "date\t2026.01.02.10.00.00;\tauthor site;\tstate Exp;\n"
+            + "branches\n\t1.2.2.1;\n"
+            + "next\t1.1;\n"
+            + "\n"
+            + "1.1\n"
+            + "date\t2026.01.01.10.00.00;\tauthor site;\tstate Exp;\n"
+            + "branches;\n"
+            + "next\t;\n"
+            + "\n"
+            + "1.2.2.1\n"
+            + "date\t2026.01.04.10.00.00;\tauthor site;\tstate Exp;\n"
+            + "branches;\n"
+            + "next\t;\n"
+            + "\n\n"
+            + "desc\n@@\n"
+            + "\n\n"
+            + "1.3\n"
+            + "log\n@third revision, with @@ in its log\n@\n"
+            + "text\n@line1\nline two @@\nline3\nline4 @@@@x \u00e9\n@\n"
+            + "\n\n"
+            + "1.2\n"
+            + "log\n@second revision\n@\n"
+            + "text\n@d4 1\n@\n"
+            + "\n\n"
+            + "1.2.2.1\n"
+            + "log\n@a branch revision\n@\n"
+            + "text\n@a0 1\nbranch@@line\n@\n"
+            + "\n\n"
+            + "1.1\n"
+            + "log\n@Initial revision\n@\n"
+            + "text\n@d2 1\na2 1\nline2 @@home\n@\n";
+
+    /** A temporary directory holding the test's archives */
+    private File directory;
+
+    /**
+     * Initializes this {@code RcsArchiveReaderTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public RcsArchiveReaderTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        directory = File.createTempFile("RcsArchiveReaderTests", "");
+        assertTrue(directory.delete() && directory.mkdir());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    public void tearDown() throws Exception {
+        FileVersionStore.deleteFileRecursively(directory);
+        super.tearDown();
+    }
+
+    /**
+     * Verifies that the trunk revisions are reconstructed newest first, with
+     * escaped {@code '@'}s restored, and that the branch revision is ignored
+     */
+    public void testReadRevisions() throws Exception {
+        List<String> revisions = readRevisions(ARCHIVE);
+
+        assertEquals(Arrays.asList("1.3 live " + REVISION_1_3,
+                "1.2 live " + REVISION_1_2, "1.1 live " + REVISION_1_1),
+                revisions);
+    }
+
+    /**
+     * Verifies that a dead revision is reported as such, that a delta may
+     * leave a revision's contents unchanged, and that a final line without a
+     * line terminator is handled in both the head text and a delta
+     */
+    public void testReadRevisions__deadAndUnterminated() throws Exception {
+        String archive = "head 1.3; access; symbols; locks; strict;\n"
+                + "expand @b@;\n"
+                + "1.3 date 2026.01.03.00.00.00; author site; state dead;\n"
+                + "branches; next 1.2;\n"
+                + "1.2 date 2026.01.02.00.00.00; author site; state Exp;\n"
+                + "branches; next 1.1;\n"
+                + "1.1 date 2026.01.01.00.00.00; author site; state Exp;\n"
+                + "branches; next ;\n"
+                + "desc @@\n"
+                + "1.3 log @removed@ text @x\ny@\n"
+                + "1.2 log @@ text @@\n"
+                + "1.1 log @@ text @d2 1\na2 1\nz@\n";
+
+        assertEquals(Arrays.asList("1.3 dead x\ny", "1.2 live x\ny",
+                "1.1 live x\nz"), readRevisions(archive));
+    }
+
+    /**
+     * Verifies the reading of an archive larger than the reader's buffer,
+     * whose escaped {@code '@'}s fall at many different buffer offsets
+     */
+    public void testReadRevisions__large() throws Exception {
+        StringBuilder contents = new StringBuilder();
+
+        for (int i = 0; contents.length() < 300000; i++) {
+            contents.append("row ").append(i).append(" @");
+            for (int j = 0; j < i % 7; j++) {
+                contents.append('@');
+            }
+            contents.append('\n');
+        }
+
+        String head = contents.toString();
+        String older = head.substring(head.indexOf('\n') + 1);
+        String archive = "head 1.2; access; symbols; locks; strict;\n"
+                + "1.2 date 2026.01.02.00.00.00; author site; state Exp;\n"
+                + "branches; next 1.1;\n"
+                + "1.1 date 2026.01.01.00.00.00; author site; state Exp;\n"
+                + "branches; next ;\n"
+                + "desc @@\n"
+                + "1.2 log @@ text @" + head.replace("@", "@@") + "@\n"
+                + "1.1 log @@ text @d1 1\n@\n";
+
+        assertEquals(Arrays.asList("1.2 live " + head, "1.1 live " + older),
+                readRevisions(archive));
+    }
+
+    /**
+     * Verifies that malformed archives are rejected with an
+     * {@code OperationFailedException}
+     */
+    public void testReadRevisions__malformed() throws Exception {
+        assertMalformed(ARCHIVE.substring(0, ARCHIVE.length() - 3));
+        assertMalformed(ARCHIVE.replace("text\n@d4 1\n@", "text\n@x4 1\n@"));
+        assertMalformed(ARCHIVE.replace("text\n@d4 1\n@", "text\n@d5 1\n@"));
+        assertMalformed(ARCHIVE.replace("text\n@d4 1\n@", "text\n@a1 2\nq\n@"));
+        assertMalformed(ARCHIVE.replace("next\t1.1;", "next\t1.0;"));
+        assertMalformed(ARCHIVE.replace("desc\n@@", "desc\n"));
+    }
+
+    /**
+     * Verifies that trunk texts must appear newest first, as RCS and CVS
+     * write them, since each is applied as soon as it is read
+     */
+    public void testReadRevisions__trunkOutOfOrder() throws Exception {
+        String second = "1.2\nlog\n@second revision\n@\ntext\n@d4 1\n@\n";
+
+        assertTrue(ARCHIVE.contains(second));
+        assertMalformed(ARCHIVE.replace(second, "") + "\n" + second);
+    }
+
+    /**
+     * Returns the revisions read from an archive with the specified text, each
+     * described by its number, "live" or "dead", and its contents
+     */
+    private List<String> readRevisions(String archive) throws Exception {
+        final List<String> revisions = new ArrayList<String>();
+        final List<byte[]> contents = new ArrayList<byte[]>();
+
+        new RcsArchiveReader(writeArchive(directory, "test,v",
+                archive)).readRevisions(
+                        new RcsArchiveReader.RevisionHandler() {
+                            public void handleRevision(String revision,
+                                    boolean dead, byte[] revisionContents) {
+                                revisions.add(revision
+                                        + (dead ? " dead " : " live "));
+                                contents.add(revisionContents);
+                            }
+                        });
+        for (int i = 0; i < revisions.size(); i++) {
+            revisions.set(i, revisions.get(i)
+                    + new String(contents.get(i), CHARSET));
+        }
+
+        return revisions;
+    }
+
+    /** Fails unless reading an archive with the specified text fails */
+    private void assertMalformed(String archive) throws Exception {
+        try {
+            readRevisions(archive);
+            fail("Accepted " + archive);
+        } catch (OperationFailedException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Writes an archive with the specified text, each character as one byte,
+     * into the specified directory
+     */
+    static File writeArchive(File dir, String name, String archive)
+            throws IOException {
+        File file = new File(dir, name);
+        OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(archive.getBytes(CHARSET));
+        } finally {
+            out.close();
+        }
+
+        return file;
+    }
+}
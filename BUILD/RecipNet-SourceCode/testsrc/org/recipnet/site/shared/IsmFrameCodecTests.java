@@ -0,0 +1,169 @@
+/*
+ * Reciprocal Net Project
+ *
+ * IsmFrameCodecTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ * 18-Oct-2026: agent added tests of isSupportedContentEncoding() and of
+ *              corrupt compressed bodies
+ */
+
+package org.recipnet.site.shared;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the framed ISM encoding and the header negotiation implemented by
+ * {@code IsmFrameCodec}
+ */
+public class IsmFrameCodecTests extends TestCase {
+
+    /**
+     * Initializes this {@code IsmFrameCodecTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public IsmFrameCodecTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Verifies that messages survive framing and each supported compression
+     * unchanged
+     */
+    public void testRoundTrip() throws Exception {
+        String messages[] = { "<message>one</message>", "",
+                "<message>\u00e9\u4e2d</message>" };
+
+        for (String encoding : new String[] { null, "gzip", "deflate" }) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            OutputStream os = IsmFrameCodec.encodeContent(bytes, encoding);
+            InputStream is;
+
+            IsmFrameCodec.writeMessages(os, messages);
+            os.close();
+            is = IsmFrameCodec.decodeContent(
+                    new ByteArrayInputStream(bytes.toByteArray()), encoding);
+            assertEquals(String.valueOf(encoding), Arrays.asList(messages),
+                    Arrays.asList(IsmFrameCodec.readMessages(is)));
+        }
+    }
+
+    /**
+     * Verifies that a truncated framed body is rejected
+     */
+    public void testReadMessages__truncated() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte body[];
+
+        IsmFrameCodec.writeMessages(bytes, new String[] { "<message/>" });
+        body = bytes.toByteArray();
+        for (int length = 0; length < body.length; length++) {
+            try {
+                IsmFrameCodec.readMessages(
+                        new ByteArrayInputStream(body, 0, length));
+                fail("Accepted a body truncated to " + length + " bytes");
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Verifies that the content codings {@code decodeContent()} can undo are
+     * recognized regardless of case and surrounding space, and that others
+     * are rejected by both methods
+     */
+    public void testIsSupportedContentEncoding() throws Exception {
+        for (String encoding : new String[] { null, "", "identity", "gzip",
+                " GZip ", "x-gzip", "deflate" }) {
+            assertTrue(String.valueOf(encoding),
+                    IsmFrameCodec.isSupportedContentEncoding(encoding));
+        }
+        for (String encoding : new String[] { "br", "compress", "gzip2",
+                "gzip, deflate" }) {
+            assertFalse(encoding,
+                    IsmFrameCodec.isSupportedContentEncoding(encoding));
+            try {
+                IsmFrameCodec.decodeContent(
+                        new ByteArrayInputStream(new byte[0]), encoding);
+                fail("Decoded unsupported coding " + encoding);
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Verifies that a body that is not validly compressed in a supported
+     * coding fails with an {@code IOException}, whether when the stream is
+     * wrapped or when it is read
+     */
+    public void testDecodeContent__corrupt() throws Exception {
+        byte garbage[] = "<message>not compressed</message>".getBytes("UTF-8");
+
+        for (String encoding : new String[] { "gzip", "deflate" }) {
+            try {
+                IsmFrameCodec.readMessages(IsmFrameCodec.decodeContent(
+                        new ByteArrayInputStream(garbage), encoding));
+                fail("Decoded a corrupt " + encoding + " body");
+            } catch (IOException ex) {
+                assertTrue(encoding,
+                        IsmFrameCodec.isSupportedContentEncoding(encoding));
+            }
+        }
+    }
+
+    /**
+     * Verifies that content codings are chosen according to their quality
+     * values
+     */
+    public void testChooseContentEncoding() {
+        assertNull(IsmFrameCodec.chooseContentEncoding(null));
+        assertNull(IsmFrameCodec.chooseContentEncoding(""));
+        assertNull(IsmFrameCodec.chooseContentEncoding("identity"));
+        assertEquals("gzip", IsmFrameCodec.chooseContentEncoding(
+                IsmFrameCodec.ACCEPT_ENCODING));
+        assertEquals("gzip", IsmFrameCodec.chooseContentEncoding("GZIP"));
+        assertEquals("gzip", IsmFrameCodec.chooseContentEncoding("x-gzip"));
+        assertEquals("deflate",
+                IsmFrameCodec.chooseContentEncoding("gzip;q=0, deflate"));
+        assertEquals("deflate", IsmFrameCodec.chooseContentEncoding(
+                "gzip ; q=0.5, deflate ; Q=0.8"));
+        assertEquals("gzip", IsmFrameCodec.chooseContentEncoding(
+                "deflate;q=0.5, gzip;q=0.5"));
+        assertNull(IsmFrameCodec.chooseContentEncoding("gzip;q=0"));
+        assertNull(IsmFrameCodec.chooseContentEncoding(
+                "gzip;q=0.000, deflate;q=0"));
+        assertNull(IsmFrameCodec.chooseContentEncoding("gzip;q=bad"));
+        assertNull(IsmFrameCodec.chooseContentEncoding("gzip;q=1.5"));
+        assertNull(IsmFrameCodec.chooseContentEncoding("gzip2, xgzip"));
+        assertEquals("gzip", IsmFrameCodec.chooseContentEncoding("*"));
+        assertEquals("deflate",
+                IsmFrameCodec.chooseContentEncoding("*, gzip;q=0"));
+        assertNull(IsmFrameCodec.chooseContentEncoding("*;q=0"));
+    }
+
+    /**
+     * Verifies that only an explicit, nonzero-quality listing of the framed
+     * media type admits frames
+     */
+    public void testAcceptsFrames() {
+        assertTrue(IsmFrameCodec.acceptsFrames(IsmFrameCodec.ACCEPT));
+        assertTrue(IsmFrameCodec.acceptsFrames("text/xml, "
+                + IsmFrameCodec.CONTENT_TYPE + ";q=0.1"));
+        assertFalse(IsmFrameCodec.acceptsFrames(null));
+        assertFalse(IsmFrameCodec.acceptsFrames("text/xml, */*"));
+        assertFalse(IsmFrameCodec.acceptsFrames(IsmFrameCodec.CONTENT_TYPE
+                + ";q=0, text/xml"));
+        assertFalse(IsmFrameCodec.acceptsFrames(IsmFrameCodec.CONTENT_TYPE
+                + "-v2"));
+    }
+}
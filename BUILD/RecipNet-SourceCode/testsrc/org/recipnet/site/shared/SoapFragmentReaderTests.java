@@ -0,0 +1,235 @@
+/*
+ * Reciprocal Net Project
+ *
+ * SoapFragmentReaderTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.shared;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Tests {@code SoapFragmentReader} by reading documents delivered in chunks
+ * split at every possible offset, and comparing the fragments read with those
+ * that {@code SoapUtil.extractFragmentsFromXmlDocument()} finds in the whole
+ * document.
+ */
+public class SoapFragmentReaderTests extends TestCase {
+
+    /** The local name of the SOAP base element in the test documents */
+    private static final String LOCAL_NAME = "IsmExchange";
+
+    /** The prefix of the SOAP base element in the test documents */
+    private static final String PREFIX = "recipnet";
+
+    /** The namespace URI of the SOAP base element in the test documents */
+    private static final String NAMESPACE_URI
+            = "http://www.reciprocalnet.org/master/";
+
+    /** The element that delimits fragments in the test documents */
+    private static final String ELEMENT_NAME = "message";
+
+    /**
+     * Initializes this {@code SoapFragmentReaderTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public SoapFragmentReaderTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Verifies that a document with no fragments yields none
+     */
+    public void testNextFragment__noFragments() throws Exception {
+        assertSplitsMatch(writeDocument());
+    }
+
+    /**
+     * Verifies the reading of ordinary messages, including attributes,
+     * nested elements, and character references
+     */
+    public void testNextFragment__messages() throws Exception {
+        assertSplitsMatch(writeDocument(
+                "<message type=\"a\"><body>one</body></message>",
+                "<message>\n  <body x='1'>two &amp; &lt;three&gt;</body>\n"
+                        + "</message>",
+                "<message\tid=\"3\">\u00e9\u4e2d</message>"));
+    }
+
+    /**
+     * Verifies that text resembling the fragment delimiters is treated as
+     * {@code extractFragmentsFromXmlDocument()} treats it: longer element
+     * names are not fragments, whitespace within the delimiting tags is
+     * allowed, and an empty element's end tag does not end the fragment
+     */
+    public void testNextFragment__delimiterLookalikes() throws Exception {
+        assertSplitsMatch(writeDocument(
+                "<messages><messageId>1</messageId></messages>",
+                "<message ><a/></message >",
+                "<message></message>",
+                "<message><b>x</b></message>",
+                "<!-- <message>in a comment</message> -->"));
+    }
+
+    /**
+     * Verifies that whitespace and line breaks between the document's
+     * elements do not affect the result
+     */
+    public void testNextFragment__formattedDocument() throws Exception {
+        assertSplitsMatch("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<soap-env:Envelope\n    xmlns:soap-env="
+                + "\"http://schemas.xmlsoap.org/soap/envelope/\">\n"
+                + "  <soap-env:Header/>\n  <soap-env:Body>\n"
+                + "    <recipnet:IsmExchange xmlns:recipnet=\""
+                + NAMESPACE_URI + "\">\n"
+                + "      <message>\n        <a>1</a>\n      </message>\n"
+                + "      <message><a>2</a></message>\n"
+                + "    </recipnet:IsmExchange>\n  </soap-env:Body>\n"
+                + "</soap-env:Envelope>\n");
+    }
+
+    /**
+     * Verifies that documents that {@code SoapUtil.decodeSoapDocument()}
+     * would reject are rejected, wherever they are split
+     */
+    public void testNextFragment__badDocuments() throws Exception {
+        String good = writeDocument("<message>1</message>");
+
+        assertRejected(good.replace("soap/envelope/", "soap/other/"));
+        assertRejected(good.replace("soap-env:Body>", "soap-env:Bod>"));
+        assertRejected(good.replace(NAMESPACE_URI, "http://example.com/"));
+        assertRejected(good.replace("IsmExchange", "Other"));
+        assertRejected(good.replace("<soap-env:Body>",
+                "<soap-env:Body a=\"1\">"));
+        assertRejected(good.substring(0, good.length() - 5));
+        assertRejected(good.replace("</message>", "</mess>"));
+    }
+
+    /**
+     * Reads the document with a reader that delivers it in two chunks split
+     * at every possible offset, and with one that delivers it a character at
+     * a time, and fails unless each reading yields the fragments that
+     * {@code extractFragmentsFromXmlDocument()} finds
+     */
+    private void assertSplitsMatch(String document) throws Exception {
+        List<String> expected = Arrays.asList(
+                SoapUtil.extractFragmentsFromXmlDocument(document,
+                        ELEMENT_NAME));
+
+        for (int split = 0; split <= document.length(); split++) {
+            assertEquals("Split at " + split, expected,
+                    readFragments(new ChunkedReader(document, split)));
+        }
+        assertEquals("One character at a time", expected,
+                readFragments(new ChunkedReader(document, 1, 1)));
+    }
+
+    /**
+     * Fails unless reading the document, split at any offset, fails with a
+     * {@code SAXException}
+     */
+    private void assertRejected(String document) throws Exception {
+        for (int split = 0; split <= document.length(); split++) {
+            try {
+                readFragments(new ChunkedReader(document, split));
+                fail("Accepted at split " + split + ": " + document);
+            } catch (SAXException ex) {
+                // expected
+            }
+        }
+    }
+
+    /** Returns all the fragments a new {@code SoapFragmentReader} reads */
+    private static List<String> readFragments(Reader reader)
+            throws IOException, SAXException {
+        SoapFragmentReader fragmentReader = new SoapFragmentReader(reader,
+                LOCAL_NAME, PREFIX, NAMESPACE_URI, ELEMENT_NAME);
+        List<String> fragments = new ArrayList<String>();
+
+        for (String fragment = fragmentReader.nextFragment(); fragment != null;
+                fragment = fragmentReader.nextFragment()) {
+            fragments.add(fragment);
+        }
+
+        return fragments;
+    }
+
+    /** Returns a document as {@code SoapUtil.writeSoapDocument()} writes it */
+    private static String writeDocument(String... bodies) throws IOException {
+        StringWriter writer = new StringWriter();
+
+        SoapUtil.writeSoapDocument(writer, bodies, LOCAL_NAME, PREFIX,
+                NAMESPACE_URI);
+
+        return writer.toString();
+    }
+
+    /**
+     * A {@code Reader} that returns no more than a fixed number of characters
+     * from its first read, and no more than another from each later read, as
+     * a network connection might
+     */
+    private static class ChunkedReader extends Reader {
+
+        /** The characters to be read */
+        private final String text;
+
+        /** The most characters the first read may return */
+        private final int firstChunk;
+
+        /** The most characters each later read may return */
+        private final int laterChunk;
+
+        /** The position of the next character to be read */
+        private int position = 0;
+
+        /**
+         * Initializes a new {@code ChunkedReader} whose first read returns at
+         * most the characters before {@code split}, and whose later reads are
+         * not limited
+         */
+        ChunkedReader(String text, int split) {
+            this(text, split, Integer.MAX_VALUE);
+        }
+
+        ChunkedReader(String text, int firstChunk, int laterChunk) {
+            this.text = text;
+            this.firstChunk = firstChunk;
+            this.laterChunk = laterChunk;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            int count = Math.min(length, text.length() - position);
+
+            if (count == 0 && length > 0) {
+                return -1;
+            }
+            count = Math.min(count,
+                    (position == 0) ? Math.max(firstChunk, 1) : laterChunk);
+            text.getChars(position, position + count, buffer, offset);
+            position += count;
+
+            return count;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void close() {
+            // nothing to do
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Reciprocal Net Project
+ *
+ * UnitCellSCTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.shared.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.recipnet.site.shared.bl.SampleMathBL;
+
+/**
+ * Tests the SQL that {@code UnitCellSC} generates in
+ * {@code MATCH_REDUCED_CELLS} mode, with and without a
+ * {@code SearchUnitCellsIndex}
+ */
+public class UnitCellSCTests extends TestCase {
+
+    /** The number of times the stub index has been consulted */
+    private int indexQueries;
+
+    /** A stub index that finds samples 3 and 5 for any query */
+    private final SearchUnitCellsIndex index = new SearchUnitCellsIndex() {
+        public int[] findSampleIds(String[] columnNames, double[] minValues,
+                double[] maxValues) {
+            indexQueries++;
+
+            return new int[] { 3, 5 };
+        }
+    };
+
+    /**
+     * Initializes this {@code UnitCellSCTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public UnitCellSCTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Verifies that the index's sample ids replace the range predicates when
+     * the constraint is not negated
+     */
+    public void testGetWhereClauseFragment__indexed() {
+        SearchConstraint head
+                = group(SearchConstraintGroup.OR, newUnitCellSC());
+        String sql = getWhereClause(head, index);
+
+        assertEquals(1, indexQueries);
+        assertTrue(sql, sql.contains(".id IN (3,5)"));
+        assertFalse(sql, sql.contains(".aprime"));
+    }
+
+    /**
+     * Verifies that range predicates, which a negation treats differently for
+     * samples without a {@code searchUnitCells} row, are used beneath a NOR or
+     * NAND group even when an index is available
+     */
+    public void testGetWhereClauseFragment__negated() {
+        for (int operator : new int[] { SearchConstraintGroup.NOR,
+                SearchConstraintGroup.NAND }) {
+            SearchConstraint head = group(SearchConstraintGroup.AND,
+                    group(operator, group(SearchConstraintGroup.AND,
+                            newUnitCellSC())));
+            String sql = getWhereClause(head, index);
+
+            assertEquals(0, indexQueries);
+            assertTrue(sql, sql.contains(" NOT "));
+            assertTrue(sql, sql.contains(".aprime > ?"));
+            assertFalse(sql, sql.contains(" IN ("));
+            assertEquals(sql, getWhereClause(head, null));
+        }
+    }
+
+    /** Returns a reduced cell constraint that checks the reduced lengths */
+    private static UnitCellSC newUnitCellSC() {
+        return new UnitCellSC(UnitCellSC.Mode.MATCH_REDUCED_CELLS, 10.0, 11.0,
+                12.0, 90.0, 95.0, 90.0, 1.0,
+                SampleMathBL.CellCentering.PRIMITIVE, true, false, false);
+    }
+
+    /** Returns a group of the specified operator with a single child */
+    private static SearchConstraintGroup group(int operator,
+            SearchConstraint child) {
+        return new SearchConstraintGroup(operator,
+                Collections.singleton(child));
+    }
+
+    /** Returns the SQL condition generated for a search's head constraint */
+    private static String getWhereClause(SearchConstraint head,
+            SearchUnitCellsIndex unitCellsIndex) {
+        List<Object> parameters = new ArrayList<Object>();
+
+        return head.getWhereClauseFragment(new SearchTableTracker(head),
+                parameters, new SearchConstraintExtraInfo(
+                        Collections.<Integer>emptySet(), unitCellsIndex));
+    }
+}
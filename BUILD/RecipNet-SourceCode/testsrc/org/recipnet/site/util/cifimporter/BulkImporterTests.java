@@ -0,0 +1,317 @@
+/*
+ * Reciprocal Net Project
+ *
+ * BulkImporterTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.util.cifimporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.recipnet.site.core.DuplicateDataException;
+import org.recipnet.site.core.SampleManagerRemote;
+import org.recipnet.site.shared.SampleWriteBatch;
+import org.recipnet.site.shared.db.SampleInfo;
+
+/**
+ * Tests {@code BulkImporter} against a stub {@code SampleManagerRemote} that
+ * stores nothing, but records the local lab ids of the samples it is asked to
+ * store. The stub rejects the local lab id "dup" as a duplicate, and fails
+ * with a {@code RuntimeException} on any batch that contains the local lab id
+ * "boom".
+ */
+public class BulkImporterTests extends TestCase {
+
+    /** The longest an import may take before the test is failed */
+    private static final long IMPORT_TIMEOUT = 30000;
+
+    /** A temporary directory holding the test's files */
+    private File directory;
+
+    /** The local lab ids the stub has stored, in order */
+    private List<String> stored;
+
+    /** The stub Sample Manager */
+    private SampleManagerRemote sampleManager;
+
+    /** Receives the importer's report */
+    private ByteArrayOutputStream report;
+
+    /**
+     * Initializes this {@code BulkImporterTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public BulkImporterTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        directory = File.createTempFile("BulkImporterTests", "");
+        assertTrue(directory.delete() && directory.mkdir());
+        stored = Collections.synchronizedList(new ArrayList<String>());
+        sampleManager = (SampleManagerRemote) Proxy.newProxyInstance(
+                SampleManagerRemote.class.getClassLoader(),
+                new Class<?>[] { SampleManagerRemote.class },
+                new StubSampleManager());
+        report = new ByteArrayOutputStream();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    public void tearDown() throws Exception {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Verifies that acceptable blocks are stored, that rejected blocks and
+     * duplicates are reported, and that a second run with the same checkpoint
+     * file skips the files already imported
+     */
+    public void testImportFiles() throws Exception {
+        List<File> files = Arrays.asList(
+                writeCif("a.cif", "data_s1\n_cell_length_a 10.1(2)\n"
+                        + "data_s2\n_cell_length_a 11\n"),
+                writeCif("b.cif", "data_dup\n_cell_length_a 12\n"
+                        + "data_s3\n_cell_length_a 13\n"),
+                writeCif("c.cif", "data_bad\n_x\n"));
+        File checkpointFile = new File(directory, "checkpoint");
+
+        assertTrue(runImport(newImporter(new CifBlockConverter(1, 2, null),
+                checkpointFile), files));
+        Collections.sort(stored);
+        assertEquals(Arrays.asList("s1", "s2", "s3"), stored);
+        assertReportContains("Import complete.");
+        assertReportContains("files imported:        3");
+        assertReportContains("data blocks read:      5");
+        assertReportContains("samples stored:        3");
+        assertReportContains("failures:              2");
+        assertReportContains("[dup]: not stored: local lab id already in use");
+        assertReportContains("[bad]: 1 CIF error(s)");
+
+        stored.clear();
+        report.reset();
+        assertTrue(runImport(newImporter(new CifBlockConverter(1, 2, null),
+                checkpointFile), files));
+        assertTrue(stored.isEmpty());
+        assertReportContains("files skipped:         3");
+    }
+
+    /**
+     * Verifies that a {@code RuntimeException} from Sample Manager abandons
+     * the import with a report, rather than escaping from
+     * {@code importFiles()}
+     */
+    public void testImportFiles__sampleManagerFailure() throws Exception {
+        File checkpointFile = new File(directory, "checkpoint");
+        List<File> files = Arrays.asList(
+                writeCif("a.cif", "data_s1\n_cell_length_a 10\n"),
+                writeCif("b.cif", "data_boom\n_cell_length_a 10\n"));
+        BulkImporter importer = new BulkImporter(sampleManager,
+                new CifBlockConverter(1, 2, null), 1, 1, 1, checkpointFile,
+                new PrintStream(report, true));
+
+        assertFalse(runImport(importer, files));
+        assertEquals(Arrays.asList("s1"), stored);
+        assertReportContains("Import INCOMPLETE.");
+        assertReportContains("import abandoned; Sample Manager failed"
+                + " unexpectedly: java.lang.IllegalStateException: boom");
+        assertReportContains("1 samples from the last batch may or may not");
+        assertTrue(checkpointFile.exists());
+    }
+
+    /**
+     * Verifies that an {@code Error} while a file is being parsed or
+     * converted is reported as a failure of that file, rather than leaving
+     * the writer waiting forever for the file's end-of-file marker
+     */
+    public void testImportFiles__parserError() throws Exception {
+        List<File> files = Arrays.asList(
+                writeCif("a.cif", "data_s1\n_cell_length_a 10\n"),
+                writeCif("b.cif", "data_oom\n_cell_length_a 10\n"));
+        CifBlockConverter converter = new CifBlockConverter(1, 2, null) {
+            @Override
+            SampleInfo[] convert(Map<?, ?> cifMap) {
+                if ("oom".equals(cifMap.get(CifParser.BLOCK_NAME_KEY))) {
+                    throw new TestError();
+                }
+
+                return super.convert(cifMap);
+            }
+        };
+        Thread.UncaughtExceptionHandler handler
+                = Thread.getDefaultUncaughtExceptionHandler();
+        final CountDownLatch errorSeen = new CountDownLatch(1);
+
+        /*
+         * Keep the expected Error's stack trace out of the test output. The
+         * parser thread rethrows it, possibly after importFiles() returns, so
+         * the handler stays installed until it has arrived.
+         */
+        Thread.setDefaultUncaughtExceptionHandler(
+                new Thread.UncaughtExceptionHandler() {
+                    public void uncaughtException(Thread t, Throwable e) {
+                        if (e instanceof TestError) {
+                            errorSeen.countDown();
+                        } else {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+        try {
+            assertTrue(runImport(newImporter(converter, null), files));
+            assertTrue(errorSeen.await(IMPORT_TIMEOUT,
+                    TimeUnit.MILLISECONDS));
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+        assertEquals(Arrays.asList("s1"), stored);
+        assertReportContains("files imported:        2");
+        assertReportContains("b.cif: cannot be parsed: ");
+    }
+
+    /**
+     * Returns a new {@code BulkImporter} writing to the stub Sample Manager,
+     * with two parser threads and small batches
+     */
+    private BulkImporter newImporter(CifBlockConverter converter,
+            File checkpointFile) {
+        return new BulkImporter(sampleManager, converter, 2, 2, 4,
+                checkpointFile, new PrintStream(report, true));
+    }
+
+    /**
+     * Runs {@code importer.importFiles()} in another thread, failing the
+     * test if it does not finish within {@code IMPORT_TIMEOUT}
+     *
+     * @return the result of {@code importFiles()}
+     */
+    private boolean runImport(final BulkImporter importer,
+            final List<File> files) throws Exception {
+        final Object result[] = new Object[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = Boolean.valueOf(importer.importFiles(files));
+                } catch (Throwable t) {
+                    result[0] = t;
+                }
+            }
+        };
+
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(IMPORT_TIMEOUT);
+        if (thread.isAlive()) {
+            thread.interrupt();
+            fail("importFiles() did not finish; report so far:\n" + report);
+        } else if (result[0] instanceof Exception) {
+            throw (Exception) result[0];
+        } else if (result[0] instanceof Error) {
+            throw (Error) result[0];
+        }
+
+        return ((Boolean) result[0]).booleanValue();
+    }
+
+    /** Writes a file with the specified content in the test directory */
+    private File writeCif(String name, String content) throws IOException {
+        File file = new File(directory, name);
+        Writer writer = new FileWriter(file);
+
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+
+        return file;
+    }
+
+    /** Fails unless the report contains the specified text */
+    private void assertReportContains(String text) {
+        String s = report.toString();
+
+        assertTrue("Report lacks \"" + text + "\":\n" + s, s.contains(text));
+    }
+
+    /** The {@code Error} thrown by the converter of the parser error test */
+    private static class TestError extends Error {
+        TestError() {
+            super("simulated parser failure");
+        }
+    }
+
+    /**
+     * Implements {@code putSampleInfoBatch()} as described in the class
+     * documentation; other methods are not supported
+     */
+    private class StubSampleManager implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object args[]) {
+            if (method.getName().equals("putSampleInfoBatch")) {
+                return putSampleInfoBatch((SampleWriteBatch) args[0]);
+            } else if (method.getName().equals("toString")) {
+                return "stub SampleManagerRemote";
+            } else {
+                throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private SampleWriteBatch putSampleInfoBatch(SampleWriteBatch batch) {
+            int lastAction = batch.getActionCount() - 1;
+
+            for (int i = 0; i < batch.size(); i++) {
+                if ("boom".equals(batch.getSampleVersion(i, 0).localLabId)) {
+                    throw new IllegalStateException("boom");
+                }
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                SampleInfo sample = batch.getSampleVersion(i, lastAction);
+
+                if (sample.localLabId.equals("dup")) {
+                    batch.recordFailure(i, 0, new DuplicateDataException());
+                } else {
+                    stored.add(sample.localLabId);
+                    batch.recordResult(i, sample);
+                }
+            }
+
+            return batch;
+        }
+    }
+}
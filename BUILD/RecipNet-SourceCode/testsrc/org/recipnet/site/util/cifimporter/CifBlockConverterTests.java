@@ -0,0 +1,276 @@
+/*
+ * Reciprocal Net Project
+ *
+ * CifBlockConverterTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.util.cifimporter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.recipnet.site.shared.bl.SampleTextBL;
+import org.recipnet.site.shared.bl.SampleWorkflowBL;
+import org.recipnet.site.shared.db.LabInfo;
+import org.recipnet.site.shared.db.ProviderInfo;
+import org.recipnet.site.shared.db.SampleAttributeInfo;
+import org.recipnet.site.shared.db.SampleDataInfo;
+import org.recipnet.site.shared.db.SampleInfo;
+import org.recipnet.site.shared.db.SampleTextInfo;
+
+/**
+ * Tests the conversion of parsed CIF data blocks into sample records by
+ * {@code CifBlockConverter}
+ */
+public class CifBlockConverterTests extends TestCase {
+
+    /**
+     * Initializes this {@code CifBlockConverterTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public CifBlockConverterTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Verifies that each workflow action's version carries the data of its
+     * own action and of those before it
+     */
+    public void testConvert() {
+        CifBlockConverter converter
+                = new CifBlockConverter(7, 11, "A. Crystallographer");
+        Map<String, Object> block = new HashMap<String, Object>();
+        SampleInfo versions[];
+
+        block.put(CifParser.BLOCK_NAME_KEY, "  abc123  ");
+        block.put("_cell_length_a", "10.123(4)");
+        block.put("_cell_angle_beta", "95.5");
+        block.put("_diffrn_ambient_temperature", "173(2)");
+        block.put("_exptl_crystal_colour", "colorless");
+        block.put("_symmetry_space_group_name_h-m", "P 21/c");
+        block.put("_cell_formula_units_z", "4");
+        block.put("_refine_ls_r_factor_obs", "0.0412");
+        block.put("_refine_ls_wr_factor_all", "0.1033");
+        block.put("_chemical_formula_sum", "C6 H6");
+        block.put("_chemical_name_systematic", "?");
+
+        versions = converter.convert(block);
+        assertEquals(CifBlockConverter.ACTION_CODES.length, versions.length);
+
+        assertEquals("abc123", versions[0].localLabId);
+        assertEquals(7, versions[0].labId);
+        assertEquals(11, versions[0].dataInfo.providerId);
+        assertEquals(SampleWorkflowBL.PENDING_STATUS, versions[0].status);
+        assertTrue(Double.isNaN(versions[0].dataInfo.a));
+
+        assertEquals(10.123, versions[1].dataInfo.a, 0);
+        assertEquals(95.5, versions[1].dataInfo.beta, 0);
+        assertEquals(-100.0, versions[1].dataInfo.t, 1e-9);
+        assertEquals("colorless", versions[1].dataInfo.color);
+        assertEquals(1, versions[1].attributeInfo.size());
+        assertEquals(SampleTextBL.CRYSTALLOGRAPHER_NAME,
+                versions[1].attributeInfo.get(0).type);
+        assertEquals("A. Crystallographer",
+                versions[1].attributeInfo.get(0).value);
+        assertEquals(SampleWorkflowBL.REFINEMENT_PENDING_STATUS,
+                versions[1].status);
+        assertNull(versions[1].dataInfo.spgp);
+
+        assertEquals("P 21/c", versions[2].dataInfo.spgp);
+        assertEquals(4, versions[2].dataInfo.z);
+        assertEquals(0.0412, versions[2].dataInfo.rf, 0);
+        assertEquals(0.1033, versions[2].dataInfo.rwf2, 0);
+        assertTrue(Double.isNaN(versions[2].dataInfo.rf2));
+        assertEquals(10.123, versions[2].dataInfo.a, 0);
+        assertEquals(2, versions[2].attributeInfo.size());
+        assertEquals("C6 H6", findAttribute(versions[2],
+                SampleTextBL.EMPIRICAL_FORMULA));
+        assertTrue("'?' systematic name was annotated",
+                versions[2].annotationInfo.isEmpty());
+        assertEquals(SampleWorkflowBL.COMPLETE_STATUS, versions[2].status);
+    }
+
+    /**
+     * Verifies that values too long for their fields are dropped, as the
+     * interactive sample form drops them
+     */
+    public void testConvert__overlongValues() {
+        CifBlockConverter converter = new CifBlockConverter(1, 2, null);
+        Map<String, Object> block = new HashMap<String, Object>();
+        SampleInfo versions[];
+
+        block.put(CifParser.BLOCK_NAME_KEY, "s1");
+        block.put("_exptl_crystal_colour", repeat('x',
+                CifBlockConverter.MAX_COLOR_LENGTH + 1));
+        block.put("_symmetry_space_group_name_h-m", repeat('P',
+                CifBlockConverter.MAX_SPACE_GROUP_LENGTH + 1));
+        block.put("_chemical_formula_sum", repeat('C',
+                CifBlockConverter.MAX_ATTRIBUTE_LENGTH + 1));
+
+        versions = converter.convert(block);
+        assertNull(versions[1].dataInfo.color);
+        assertTrue(versions[1].attributeInfo.isEmpty());
+        assertNull(versions[2].dataInfo.spgp);
+        assertTrue(versions[2].attributeInfo.isEmpty());
+    }
+
+    /**
+     * Verifies that a block without a usable local lab id is rejected
+     */
+    public void testConvert__badLocalId() {
+        CifBlockConverter converter = new CifBlockConverter(1, 2, null);
+        Map<String, Object> block = new HashMap<String, Object>();
+
+        block.put(CifParser.BLOCK_NAME_KEY, repeat('a',
+                CifBlockConverter.MAX_LOCAL_ID_LENGTH + 1));
+        try {
+            converter.convert(block);
+            fail("Accepted an overlong block name");
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+        block.put(CifParser.BLOCK_NAME_KEY, "   ");
+        try {
+            converter.convert(block);
+            fail("Accepted a blank block name");
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+    }
+
+    /**
+     * Verifies the parsing of CIF numbers with and without standard
+     * uncertainties
+     */
+    public void testCifNumbers() {
+        assertEquals(Double.valueOf(1.5), CifBlockConverter.cifToDouble("1.5"));
+        assertEquals(Double.valueOf(1.5),
+                CifBlockConverter.cifToDouble("1.5(3)"));
+        assertNull(CifBlockConverter.cifToDouble("(3)"));
+        assertNull(CifBlockConverter.cifToDouble("?"));
+        assertNull(CifBlockConverter.cifToDouble(null));
+        assertEquals(Long.valueOf(12), CifBlockConverter.cifToLong("12(1)"));
+        assertNull(CifBlockConverter.cifToLong("12.5"));
+        assertEquals(SampleDataInfo.INVALID_INT_VALUE,
+                new CifBlockConverter(1, 2, null).convert(
+                        singleton("_cell_formula_units_z", "."))[2]
+                        .dataInfo.z);
+    }
+
+    /**
+     * Verifies that {@code CifImporter}'s sample form, filled in from a block,
+     * yields the same data collection and refinement information as an
+     * unattended conversion of the block
+     */
+    public void testSampleForm__matchesConvert() {
+        Map<String, Object> block = new HashMap<String, Object>();
+        SampleInfo converted;
+        SampleInfo fromForm = new SampleInfo();
+        CifImporter.SampleForm form;
+
+        block.put(CifParser.BLOCK_NAME_KEY, "abc123");
+        block.put("_cell_length_a", "10.123(4)");
+        block.put("_cell_length_c", "7");
+        block.put("_cell_angle_gamma", "120.0(1)");
+        block.put("_cell_volume", "1234.5(6)");
+        block.put("_diffrn_ambient_temperature", "293");
+        block.put("_exptl_crystal_colour", "red");
+        block.put("_exptl_crystal_density_diffrn", "1.234");
+        block.put("_symmetry_space_group_name_h-m", "P -1");
+        block.put("_cell_formula_units_z", "2");
+        block.put("_refine_ls_r_factor_gt", "0.03");
+        block.put("_refine_ls_r_factor_obs", "0.05");
+        block.put("_refine_ls_r_factor_all", "0.04");
+        block.put("_refine_ls_wr_factor_ref", "0.09");
+        block.put("_refine_ls_goodness_of_fit_all", "1.05");
+        block.put("_chemical_formula_sum", "C6 H6");
+        block.put("_chemical_formula_moiety", repeat('C',
+                CifBlockConverter.MAX_ATTRIBUTE_LENGTH + 1));
+        block.put("_chemical_name_common", "benzene");
+        block.put("_chemical_name_systematic", " benzene ");
+        converted = new CifBlockConverter(1, 2, null).convert(block)[2];
+
+        CifImporter.localLabList = new ArrayList<LabInfo>();
+        CifImporter.labProviderMap = new HashMap<LabInfo, List<ProviderInfo>>();
+        form = new CifImporter.SampleForm(block);
+        form.populateDataCollectionInfo(fromForm);
+        form.populateRefinementInfo(fromForm);
+
+        for (String field : new String[] { "a", "b", "c", "alpha", "beta",
+                "gamma", "v", "t", "dcalc", "rf", "rf2", "rwf2", "goof" }) {
+            assertEquals(field, getDouble(converted.dataInfo, field),
+                    getDouble(fromForm.dataInfo, field));
+        }
+        assertEquals(20.0, fromForm.dataInfo.t, 1e-9);
+        assertEquals(converted.dataInfo.color, fromForm.dataInfo.color);
+        assertEquals(converted.dataInfo.spgp, fromForm.dataInfo.spgp);
+        assertEquals(converted.dataInfo.z, fromForm.dataInfo.z);
+        assertEquals(describe(converted.attributeInfo),
+                describe(fromForm.attributeInfo));
+        assertEquals(describe(converted.annotationInfo),
+                describe(fromForm.annotationInfo));
+    }
+
+    /**
+     * Returns the value of the named {@code double} field, boxed so that
+     * invalid (NaN) values compare equal
+     */
+    private static Double getDouble(SampleDataInfo dataInfo, String field) {
+        try {
+            return SampleDataInfo.class.getField(field).getDouble(dataInfo);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /** Returns the types and values of some sample texts, in order */
+    private static List<String> describe(
+            List<? extends SampleTextInfo> texts) {
+        List<String> descriptions = new ArrayList<String>();
+
+        for (SampleTextInfo text : texts) {
+            descriptions.add(text.type + "=" + text.value);
+        }
+
+        return descriptions;
+    }
+
+    /** Returns the value of the first attribute of the specified type */
+    private static String findAttribute(SampleInfo sample, int type) {
+        for (SampleAttributeInfo attribute : sample.attributeInfo) {
+            if (attribute.type == type) {
+                return attribute.value;
+            }
+        }
+
+        return null;
+    }
+
+    /** Returns a block named "s" with one additional item */
+    private static Map<String, Object> singleton(String name, String value) {
+        Map<String, Object> block = new HashMap<String, Object>();
+
+        block.put(CifParser.BLOCK_NAME_KEY, "s");
+        block.put(name, value);
+
+        return block;
+    }
+
+    /** Returns a string of {@code count} copies of {@code c} */
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Reciprocal Net Project
+ *
+ * CifParserTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.util.cifimporter;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@code CifParser}, chiefly where its behavior differs from that of
+ * the character-filtering reader on which it was formerly built
+ */
+public class CifParserTests extends TestCase {
+
+    /** A value long enough to make any line containing it overlong */
+    private static final String LONG_VALUE;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+
+        while (sb.length() < 90) {
+            sb.append('x');
+        }
+        LONG_VALUE = sb.toString();
+    }
+
+    /**
+     * Initializes this {@code CifParserTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public CifParserTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Verifies the parsing of ordinary values, loops, and placeholders
+     */
+    public void testGetNextDataBlock() {
+        List<Map<String, Object>> blocks = parse("data_B1\n_A 1.5(2)\n"
+                + "_b 'two words'\n_c ?\nloop_\n_x\n_y\n1 2\n3 .\n"
+                + "data_b2\n_d\n;\n text\n;\n");
+        CifLoop loop;
+
+        assertEquals(2, blocks.size());
+        assertEquals("b1", blocks.get(0).get(CifParser.BLOCK_NAME_KEY));
+        assertEquals("1.5(2)", blocks.get(0).get("_a"));
+        assertEquals("two words", blocks.get(0).get("_b"));
+        assertFalse(blocks.get(0).containsKey("_c"));
+        loop = (CifLoop) blocks.get(0).get("_x");
+        assertSame(loop, blocks.get(0).get("_y"));
+        assertEquals(CifLoop.VALID, loop.checkValidity());
+        assertEquals(2, loop.getNumRecords());
+        assertEquals("3", loop.getDatumForName("_x", 1));
+        assertNull(loop.getDatumForName("_y", 1));
+        assertTrue(getErrors(blocks.get(0)).isEmpty());
+        assertEquals("  text ", blocks.get(1).get("_d"));
+        assertTrue(getErrors(blocks.get(1)).isEmpty());
+    }
+
+    /**
+     * Verifies that the rest of the input is still parsed after an
+     * unterminated inline quoted string; the old reader dropped everything
+     * after it
+     */
+    public void testUnterminatedQuote() {
+        Map<String, Object> block
+                = parseOne("data_b\n_a 'abc\n_b 2\n_c 'd e'\n");
+
+        assertEquals("abc", block.get("_a"));
+        assertEquals("2", block.get("_b"));
+        assertEquals("d e", block.get("_c"));
+        assertErrors(block, CifError.UNTERMINATED_QSTRING);
+        assertEquals(2, getErrors(block).get(0).getLocation());
+    }
+
+    /**
+     * Verifies that a text field unterminated at the end of the input is
+     * reported once, without the two spurious "data name missing" errors the
+     * old reader added, and that its value is that of the same field
+     * terminated, with no extra trailing space
+     */
+    public void testUnterminatedTextField() {
+        Map<String, Object> block = parseOne("data_b\n_a\n;line1\nline2\n");
+
+        assertEquals(parseOne("data_b\n_a\n;line1\nline2\n;\n").get("_a"),
+                block.get("_a"));
+        assertEquals("line1 line2 ", block.get("_a"));
+        assertErrors(block, CifError.UNTERMINATED_TEXT);
+
+        block = parseOne("data_b\n_a\n;line1\nline2");
+        assertEquals("line1 line2", block.get("_a"));
+        assertErrors(block, CifError.UNTERMINATED_TEXT);
+    }
+
+    /**
+     * Verifies that ^D and ^Z end the input, as they do for the site's other
+     * CIF parsing; the old reader reported them as illegal characters and
+     * read on
+     */
+    public void testEndOfInputCharacters() {
+        for (char c : new char[] { '\u0004', '\u001a' }) {
+            List<Map<String, Object>> blocks
+                    = parse("data_b\n_a 1\n" + c + "\n_b 2\ndata_c\n");
+
+            assertEquals(1, blocks.size());
+            assertEquals("1", blocks.get(0).get("_a"));
+            assertFalse(blocks.get(0).containsKey("_b"));
+            assertErrors(blocks.get(0));
+        }
+    }
+
+    /**
+     * Verifies that a data name repeated in a loop header is reported as a
+     * duplicate, rather than ending the parse with an exception
+     */
+    public void testDuplicateLoopDataName() {
+        Map<String, Object> block
+                = parseOne("data_b\nloop_\n_x\n_y\n_x\n1 2\n3 4\n_z 5\n");
+        CifLoop loop = (CifLoop) block.get("_x");
+
+        assertErrors(block, CifError.DUPLICATE_DATA_NAME);
+        assertEquals("_x", getErrors(block).get(0).getContext());
+        assertEquals(2, loop.getNumRecords());
+        assertEquals("4", loop.getDatumForName("_y", 1));
+        assertEquals("5", block.get("_z"));
+    }
+
+    /**
+     * Verifies that an overlong line is reported in the data block current
+     * at the end of that line, even when the line begins before the first
+     * block
+     */
+    public void testLineLength() {
+        List<Map<String, Object>> blocks = parse("_q 1 " + LONG_VALUE
+                + " data_b1 _a 1\n_b 2\n");
+
+        assertEquals(1, blocks.size());
+        assertErrors(blocks.get(0), CifError.LINE_LENGTH);
+        assertEquals(1, getErrors(blocks.get(0)).get(0).getLocation());
+
+        blocks = parse("data_a\n_x " + LONG_VALUE + "\ndata_b\n_y 1\n");
+        assertErrors(blocks.get(0), CifError.LINE_LENGTH);
+        assertEquals(2, getErrors(blocks.get(0)).get(0).getLocation());
+        assertErrors(blocks.get(1));
+
+        blocks = parse("data_a\n_x " + LONG_VALUE + " data_b\n_y 1\n");
+        assertErrors(blocks.get(0));
+        assertErrors(blocks.get(1), CifError.LINE_LENGTH);
+
+        blocks = parse("data_a\n_x\n;\n" + LONG_VALUE + "\n;\ndata_b\n");
+        assertErrors(blocks.get(0), CifError.LINE_LENGTH);
+        assertErrors(blocks.get(1));
+
+        blocks = parse("data_a\n_x " + LONG_VALUE);
+        assertErrors(blocks.get(0), CifError.LINE_LENGTH);
+    }
+
+    /** Returns all the data blocks parsed from the specified text */
+    private static List<Map<String, Object>> parse(String cif) {
+        CifParser parser = new CifParser(new StringReader(cif));
+        List<Map<String, Object>> blocks = new ArrayList<Map<String, Object>>();
+
+        for (Map<String, Object> block = parser.getNextDataBlock();
+                block != null; block = parser.getNextDataBlock()) {
+            blocks.add(block);
+        }
+
+        return blocks;
+    }
+
+    /** Returns the only data block parsed from the specified text */
+    private static Map<String, Object> parseOne(String cif) {
+        List<Map<String, Object>> blocks = parse(cif);
+
+        assertEquals(1, blocks.size());
+
+        return blocks.get(0);
+    }
+
+    /** Returns the errors recorded in a data block */
+    @SuppressWarnings("unchecked")
+    private static List<CifError> getErrors(Map<String, Object> block) {
+        return (List<CifError>) block.get(CifParser.ERRORS_KEY);
+    }
+
+    /**
+     * Fails unless the errors recorded in a data block have exactly the
+     * specified codes, in order
+     */
+    private static void assertErrors(Map<String, Object> block,
+            int... codes) {
+        List<CifError> errors = getErrors(block);
+
+        assertEquals(errors.toString(), codes.length, errors.size());
+        for (int i = 0; i < codes.length; i++) {
+            assertEquals(errors.toString(), codes[i], errors.get(i).getCode());
+        }
+    }
+}
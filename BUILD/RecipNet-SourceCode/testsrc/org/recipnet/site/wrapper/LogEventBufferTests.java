@@ -0,0 +1,238 @@
+/*
+ * Reciprocal Net Project
+ *
+ * LogEventBufferTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.wrapper;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.recipnet.site.core.SiteManagerRemote;
+import org.recipnet.site.shared.logevent.LogEvent;
+
+/**
+ * Tests {@code LogEventBuffer} against a stub {@code SiteManagerRemote} that
+ * records the batches passed to {@code recordLogEvents()}. The stub can be
+ * made to wait in its first call until released, so that the queue fills,
+ * and to fail every call with a {@code RemoteException}.
+ */
+public class LogEventBufferTests extends TestCase {
+
+    /** The longest the test waits for the delivery thread */
+    private static final long TIMEOUT = 30000;
+
+    /** The batches the stub has accepted, in order */
+    private List<List<LogEvent>> batches;
+
+    /** Counted down when the stub's {@code recordLogEvents()} is entered */
+    private CountDownLatch deliveryStarted;
+
+    /**
+     * Awaited by the stub's first {@code recordLogEvents()}, or null if the
+     * stub should not wait
+     */
+    private CountDownLatch releaseDelivery;
+
+    /** Whether the stub fails every call */
+    private volatile boolean unreachable;
+
+    /**
+     * Initializes this {@code LogEventBufferTests} to run the named test
+     *
+     * @param  testName the name of the test to run
+     */
+    public LogEventBufferTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        batches = Collections.synchronizedList(new ArrayList<List<LogEvent>>());
+        deliveryStarted = new CountDownLatch(1);
+        releaseDelivery = null;
+        unreachable = false;
+    }
+
+    /**
+     * Verifies that queued events are delivered in order, in batches, and
+     * that {@code shutdown()} waits for the queue to be drained
+     */
+    public void testShutdown__drainsQueue() {
+        LogEventBuffer buffer = newBuffer(1000);
+        List<LogEvent> offered = new ArrayList<LogEvent>();
+        List<LogEvent> delivered = new ArrayList<LogEvent>();
+
+        for (int i = 0; i < 600; i++) {
+            LogEvent ev = new TestLogEvent();
+
+            assertTrue(buffer.offer(ev));
+            offered.add(ev);
+        }
+        buffer.shutdown(TIMEOUT);
+        assertEquals(0, buffer.getCountPending());
+        assertEquals(600, buffer.getCountDelivered());
+        assertEquals(0, buffer.getCountDroppedQueueFull());
+        assertEquals(0, buffer.getCountDroppedUndeliverable());
+        assertEquals(0, buffer.getCountDroppedAfterShutdown());
+        assertTrue(batches.size() >= 3);
+        for (List<LogEvent> batch : batches) {
+            assertTrue(batch.size() <= 250);
+            delivered.addAll(batch);
+        }
+        assertEquals(offered, delivered);
+    }
+
+    /**
+     * Verifies that events offered while the queue is full are discarded and
+     * counted, without delaying the caller or disturbing the queued events
+     */
+    public void testOffer__queueFull() throws Exception {
+        LogEventBuffer buffer = newBuffer(2);
+        LogEvent events[] = new LogEvent[] { new TestLogEvent(),
+                new TestLogEvent(), new TestLogEvent() };
+
+        releaseDelivery = new CountDownLatch(1);
+        assertTrue(buffer.offer(events[0]));
+        assertTrue(deliveryStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(buffer.offer(events[1]));
+        assertTrue(buffer.offer(events[2]));
+        assertFalse(buffer.offer(new TestLogEvent()));
+        assertFalse(buffer.offer(new TestLogEvent()));
+        assertEquals(2, buffer.getCountPending());
+        assertEquals(2, buffer.getCountDroppedQueueFull());
+
+        releaseDelivery.countDown();
+        buffer.shutdown(TIMEOUT);
+        assertEquals(3, buffer.getCountDelivered());
+        assertEquals(2, buffer.getCountDroppedQueueFull());
+        assertEquals(0, buffer.getCountDroppedAfterShutdown());
+        assertEquals(Arrays.asList(events), flatten(batches));
+    }
+
+    /**
+     * Verifies that events core cannot be reached to accept are counted as
+     * undeliverable rather than kept
+     */
+    public void testShutdown__undeliverable() {
+        LogEventBuffer buffer = newBuffer(10);
+
+        unreachable = true;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(buffer.offer(new TestLogEvent()));
+        }
+        buffer.shutdown(TIMEOUT);
+        assertEquals(0, buffer.getCountPending());
+        assertEquals(0, buffer.getCountDelivered());
+        assertEquals(3, buffer.getCountDroppedUndeliverable());
+        assertEquals(0, buffer.getCountDroppedQueueFull());
+    }
+
+    /**
+     * Verifies that events offered after {@code shutdown()} are refused and
+     * counted apart from those refused because the queue was full, whether or
+     * not the delivery thread was ever started
+     */
+    public void testOffer__afterShutdown() {
+        LogEventBuffer buffer = newBuffer(10);
+
+        assertTrue(buffer.offer(new TestLogEvent()));
+        buffer.shutdown(TIMEOUT);
+        assertFalse(buffer.offer(new TestLogEvent()));
+        assertFalse(buffer.offer(new TestLogEvent()));
+        assertEquals(1, buffer.getCountDelivered());
+        assertEquals(2, buffer.getCountDroppedAfterShutdown());
+        assertEquals(0, buffer.getCountDroppedQueueFull());
+        assertEquals(0, buffer.getCountPending());
+
+        buffer = newBuffer(10);
+        buffer.shutdown(TIMEOUT);
+        assertFalse(buffer.offer(new TestLogEvent()));
+        assertEquals(1, buffer.getCountDroppedAfterShutdown());
+        assertEquals(0, buffer.getCountDroppedQueueFull());
+        assertEquals(0, buffer.getCountPending());
+    }
+
+    /**
+     * Returns a new {@code LogEventBuffer} of the specified capacity that
+     * delivers to the stub Site Manager
+     */
+    private LogEventBuffer newBuffer(int capacity) {
+        final SiteManagerRemote siteManager
+                = (SiteManagerRemote) Proxy.newProxyInstance(
+                        SiteManagerRemote.class.getClassLoader(),
+                        new Class<?>[] { SiteManagerRemote.class },
+                        new StubSiteManager());
+
+        return new LogEventBuffer(new CoreConnector() {
+            @Override
+            public SiteManagerRemote getSiteManager() {
+                return siteManager;
+            }
+        }, capacity);
+    }
+
+    /** Returns the events of all the batches, in order */
+    private static List<LogEvent> flatten(List<List<LogEvent>> lists) {
+        List<LogEvent> events = new ArrayList<LogEvent>();
+
+        synchronized (lists) {
+            for (List<LogEvent> list : lists) {
+                events.addAll(list);
+            }
+        }
+
+        return events;
+    }
+
+    /** A {@code LogEvent} that carries no records */
+    private static class TestLogEvent extends LogEvent {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Implements {@code recordLogEvents()} as described in the class
+     * documentation; other methods are not supported
+     */
+    private class StubSiteManager implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object args[])
+                throws Exception {
+            if (method.getName().equals("recordLogEvents")) {
+                deliveryStarted.countDown();
+                if (releaseDelivery != null) {
+                    assertTrue(releaseDelivery.await(TIMEOUT,
+                            TimeUnit.MILLISECONDS));
+                }
+                if (unreachable) {
+                    throw new RemoteException("unreachable");
+                }
+                batches.add(Arrays.asList((LogEvent[]) args[0]));
+
+                return null;
+            } else if (method.getName().equals("toString")) {
+                return "stub SiteManagerRemote";
+            } else {
+                throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Reciprocal Net Project
+ *
+ * RepositoryFileInputStreamTests.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+package org.recipnet.site.wrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.recipnet.site.core.RepositoryManagerRemote;
+
+/**
+ * Tests {@code RepositoryFileInputStream} reading a file both directly, as
+ * when core runs on this host, and via a stub {@code RepositoryManagerRemote}
+ * that serves the same file in chunks and records the calls made to it
+ */
+public class RepositoryFileInputStreamTests extends TestCase {
+
+    /** The ticket the stub accepts */
+    private static final int TICKET = 42;
+
+    /** The chunk size requested of the stub */
+    private static final int CHUNK_SIZE = 1000;
+
+    /** The contents of the file read */
+    private byte[] contents;
+
+    /** The file read */
+    private File file;
+
+    /** The names of the stub's methods invoked, in order */
+    private List<String> calls;
+
+    /** The number of bytes the stub has served by {@code readFromDataFile()} */
+    private int served;
+
+    /**
+     * Initializes this {@code RepositoryFileInputStreamTests} to run the named
+     * test
+     *
+     * @param  testName the name of the test to run
+     */
+    public RepositoryFileInputStreamTests(String testName) {
+        super(testName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        contents = new byte[CHUNK_SIZE * 5 + 123];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) (i * 31);
+        }
+        file = File.createTempFile("RepositoryFileInputStreamTests", ".dat");
+
+        OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+        calls = new ArrayList<String>();
+        served = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    public void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Verifies that {@code transferTo()} copies a directly-read file without
+     * fetching any of it via RMI, and that the ticket is closed afterward
+     */
+    public void testTransferTo__local() throws Exception {
+        RepositoryFileInputStream in = newStream(true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(contents.length, in.transferTo(Channels.newChannel(out)));
+        assertEquals(-1, in.read());
+        in.close();
+        assertTrue(Arrays.equals(contents, out.toByteArray()));
+        assertEquals(Arrays.asList("getDataFileLocation", "closeDataFile"),
+                calls);
+    }
+
+    /**
+     * Verifies that {@code transferTo()} copies a remotely-read file chunk by
+     * chunk until the stub signals end-of-file
+     */
+    public void testTransferTo__remote() throws Exception {
+        RepositoryFileInputStream in = newStream(false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(contents.length, in.transferTo(Channels.newChannel(out)));
+        assertEquals(-1, in.read());
+        in.close();
+        assertTrue(Arrays.equals(contents, out.toByteArray()));
+        assertEquals(contents.length, served);
+        assertFalse(calls.contains("getDataFileLocation"));
+        assertEquals("closeDataFile", calls.get(calls.size() - 1));
+    }
+
+    /**
+     * Verifies that {@code transferTo()} copies only what {@code read()} has
+     * not already returned, whether the file is read directly or not
+     */
+    public void testTransferTo__afterRead() throws Exception {
+        for (boolean local : new boolean[] { true, false }) {
+            RepositoryFileInputStream in = newStream(local);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] head = new byte[CHUNK_SIZE + 10];
+
+            assertEquals(contents[0] & 0xff, in.read());
+            out.write(contents[0]);
+            assertEquals(head.length, in.read(head, 0, head.length));
+            out.write(head);
+            assertEquals(contents.length - 1 - head.length,
+                    in.transferTo(Channels.newChannel(out)));
+            in.close();
+            assertTrue("local = " + local,
+                    Arrays.equals(contents, out.toByteArray()));
+        }
+    }
+
+    /**
+     * Verifies that {@code transferTo()} fails once the stream is closed
+     */
+    public void testTransferTo__closed() throws Exception {
+        RepositoryFileInputStream in = newStream(true);
+
+        in.close();
+        try {
+            in.transferTo(Channels.newChannel(new ByteArrayOutputStream()));
+            fail("Transferred from a closed stream");
+        } catch (IOException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    /**
+     * Returns a new stream on {@code TICKET} through a {@code CoreConnector}
+     * that reports core as local or not, as specified, and whose
+     * {@code RepositoryManager} is the stub
+     */
+    private RepositoryFileInputStream newStream(final boolean local) {
+        final RepositoryManagerRemote repositoryManager
+                = (RepositoryManagerRemote) Proxy.newProxyInstance(
+                        RepositoryManagerRemote.class.getClassLoader(),
+                        new Class<?>[] { RepositoryManagerRemote.class },
+                        new StubRepositoryManager());
+
+        return new RepositoryFileInputStream(new CoreConnector() {
+            @Override
+            public boolean isCoreLocal() {
+                return local;
+            }
+
+            @Override
+            public RepositoryManagerRemote getRepositoryManager() {
+                return repositoryManager;
+            }
+        }, TICKET, CHUNK_SIZE);
+    }
+
+    /**
+     * Serves {@code file} for {@code TICKET}, recording each call; methods
+     * other than those used for reading are not supported
+     */
+    private class StubRepositoryManager implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object args[]) {
+            String name = method.getName();
+
+            if (name.equals("toString")) {
+                return "stub RepositoryManagerRemote";
+            }
+            synchronized (calls) {
+                calls.add(name);
+            }
+            if (!name.equals("renewTickets")) {
+                assertEquals(TICKET, args[0]);
+            }
+            if (name.equals("getDataFileLocation")) {
+                return file.getPath();
+            } else if (name.equals("readFromDataFile")) {
+                synchronized (calls) {
+                    int n = Math.min((Integer) args[1],
+                            contents.length - served);
+
+                    served += n;
+
+                    return Arrays.copyOfRange(contents, served - n, served);
+                }
+            } else if (name.equals("renewTickets")
+                    || name.equals("closeDataFile")) {
+                return null;
+            } else {
+                throw new UnsupportedOperationException(name);
+            }
+        }
+    }
+}
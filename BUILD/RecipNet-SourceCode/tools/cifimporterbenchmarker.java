@@ -0,0 +1,221 @@
+/*
+ * Reciprocal Net project
+ * @(#)cifimporterbenchmarker.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.*;
+import org.recipnet.site.util.cifimporter.CifError;
+import org.recipnet.site.util.cifimporter.CifLoop;
+import org.recipnet.site.util.cifimporter.CifParser;
+
+/**
+ * This is a test program intended for use by Reciprocal Net developers to
+ * check the behavior and measure the speed of the {@code CifParser} that
+ * {@code CifImporter} uses, over a corpus of CIF files.  Every file named,
+ * and every *.cif file beneath every directory named, is parsed into data
+ * block {@code Map}s; a canonical description of the blocks, including their
+ * values, loops, and errors (but not the line numbers of the errors), is
+ * digested and summarized.  Running this program against two builds over the
+ * same corpus therefore shows whether they behave the same, and how their
+ * speeds compare.  For reference, the corpus is also parsed into
+ * {@code CifFile}s by the common {@code org.recipnet.common.files.cif}
+ * parser, if that is available.  The best time of the requested number of
+ * rounds is reported for each parser.  With --dump, the canonical
+ * description is also written to the named file, for comparison with
+ * {@code diff}.
+ *
+ *   Usage: cifimporterbenchmarker [--rounds=n] [--dump=file]
+ *          file-or-directory...
+ */
+public class cifimporterbenchmarker {
+
+    public static void main(String args[]) throws Exception {
+        List<File> files = new ArrayList<File>();
+        String dumpFile = null;
+        int rounds = 5;
+        long bytes = 0;
+
+        for (String arg : args) {
+            if (arg.startsWith("--rounds=")) {
+                rounds = Integer.parseInt(arg.substring(9));
+            } else if (arg.startsWith("--dump=")) {
+                dumpFile = arg.substring(7);
+            } else {
+                addFiles(new File(arg), files);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: cifimporterbenchmarker [--rounds=n]"
+                    + " [--dump=file] file-or-directory...");
+            System.exit(1);
+        }
+        for (File file : files) {
+            bytes += file.length();
+        }
+        System.out.println("Corpus: " + files.size() + " file(s), " + bytes
+                + " bytes; best of " + rounds + " round(s)");
+
+        // The description, from an untimed parse
+        StringBuilder description = new StringBuilder();
+        int counts[] = new int[3];
+
+        for (File file : files) {
+            describe(file, description, counts);
+        }
+        System.out.println("Blocks: " + counts[0] + ", errors: " + counts[1]
+                + ", loops: " + counts[2]);
+        System.out.println("Digest: " + digest(description.toString()));
+        if (dumpFile != null) {
+            Writer out = new OutputStreamWriter(
+                    new FileOutputStream(dumpFile), "UTF-8");
+
+            try {
+                out.write(description.toString());
+            } finally {
+                out.close();
+            }
+        }
+
+        System.out.printf("%-34s %8s%n", "parser", "ms");
+        System.out.printf("%-34s %8d%n", "cifimporter.CifParser (Maps)",
+                bestTime(files, rounds, false));
+        try {
+            System.out.printf("%-34s %8d%n", "common.files.cif (CifFiles)",
+                    bestTime(files, rounds, true));
+        } catch (NoClassDefFoundError ncdfe) {
+            System.out.println("common.files.cif parser unavailable");
+        }
+    }
+
+    /** Adds the file, or the *.cif files beneath the directory, to a list. */
+    private static void addFiles(File file, List<File> files) {
+        if (file.isDirectory()) {
+            File children[] = file.listFiles();
+
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isDirectory()
+                        || child.getName().toLowerCase().endsWith(".cif")) {
+                    addFiles(child, files);
+                }
+            }
+        } else {
+            files.add(file);
+        }
+    }
+
+    /**
+     * Parses every file {@code rounds} times with the specified parser, and
+     * returns the best time for the whole corpus, in milliseconds.
+     */
+    private static long bestTime(List<File> files, int rounds, boolean common)
+            throws Exception {
+        long best = Long.MAX_VALUE;
+
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+
+            for (File file : files) {
+                InputStream in = new FileInputStream(file);
+
+                try {
+                    if (common) {
+                        org.recipnet.common.files.cif.CifParser parser
+                                = new org.recipnet.common.files.cif.CifParser();
+
+                        parser.setErrorHandler(new org.recipnet.common.files
+                                .cif.CifErrorIgnorer());
+                        parser.parseCif(new InputStreamReader(in,
+                                "ISO-8859-1"));
+                    } else {
+                        CifParser parser = new CifParser(in);
+
+                        while (parser.getNextDataBlock() != null) {
+                            // discard the block
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best / 1000000;
+    }
+
+    /**
+     * Appends a canonical description of the blocks parsed from a file to
+     * {@code sb}, and counts its blocks, errors, and loops.
+     */
+    private static void describe(File file, StringBuilder sb, int counts[])
+            throws IOException {
+        InputStream in = new FileInputStream(file);
+
+        try {
+            CifParser parser = new CifParser(in);
+
+            sb.append("file ").append(file.getName()).append('\n');
+            for (Map<String, Object> block = parser.getNextDataBlock();
+                    block != null; block = parser.getNextDataBlock()) {
+                Set<CifLoop> loops = new HashSet<CifLoop>();
+
+                counts[0]++;
+                for (Map.Entry<String, Object> entry : block.entrySet()) {
+                    Object value = entry.getValue();
+
+                    if (entry.getKey().equals(CifParser.ERRORS_KEY)) {
+                        for (Object o : (List<?>) value) {
+                            CifError error = (CifError) o;
+
+                            counts[1]++;
+                            sb.append("error ").append(error.getCode())
+                                    .append(' ').append(error.getContext())
+                                    .append('\n');
+                        }
+                    } else if (!(value instanceof CifLoop)) {
+                        sb.append(entry.getKey()).append(" = ").append(value)
+                                .append('\n');
+                    } else if (loops.add((CifLoop) value)) {
+                        CifLoop loop = (CifLoop) value;
+
+                        counts[2]++;
+                        sb.append("loop ").append(entry.getKey());
+                        if (loop.checkValidity() != CifLoop.VALID) {
+                            sb.append(" invalid ").append(loop.checkValidity())
+                                    .append('\n');
+                        } else {
+                            sb.append(' ').append(loop.getDataNames())
+                                    .append('\n');
+                            for (int i = 0; i < loop.getNumRecords(); i++) {
+                                sb.append("  ").append(loop.getRecord(i))
+                                        .append('\n');
+                            }
+                        }
+                    } else {
+                        sb.append(entry.getKey()).append(" in loop\n");
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Returns the hexadecimal MD5 digest of the UTF-8 form of a string. */
+    private static String digest(String s) throws Exception {
+        byte hash[] = MessageDigest.getInstance("MD5").digest(
+                s.getBytes("UTF-8"));
+        StringBuilder sb = new StringBuilder();
+
+        for (byte b : hash) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+
+        return sb.toString();
+    }
+}
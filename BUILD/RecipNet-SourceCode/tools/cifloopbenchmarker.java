@@ -0,0 +1,180 @@
+/*
+ * Reciprocal Net project
+ * @(#)cifloopbenchmarker.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+import java.io.*;
+import java.util.Iterator;
+import org.recipnet.common.files.CifFile;
+import org.recipnet.common.files.cif.*;
+
+/**
+ * This is a test program intended for use by Reciprocal Net developers to
+ * measure the memory occupied by the loops of a parsed CIF and the speed with
+ * which the atom site, anisotropic displacement, and bond iterators that
+ * {@code ModelBuilder} relies upon traverse them.  Unless a CIF file is named,
+ * a synthetic one is generated with {@code _atom_site},
+ * {@code _atom_site_aniso}, {@code _geom_bond}, and {@code _refln} loops of
+ * the requested sizes.  The heap retained by the parsed {@code CifFile} is
+ * reported, followed by the best time of several rounds for each iterator
+ * that applies to the first data block.
+ *
+ *   Usage: cifloopbenchmarker [cifFile | atomSiteRows [reflnRows]] [rounds]
+ */
+public class cifloopbenchmarker {
+
+    public static void main(String args[]) throws Exception {
+        File cif;
+        int rounds;
+        long before;
+        CifFile file;
+        CifFile.DataBlock block;
+
+        if ((args.length > 0) && new File(args[0]).isFile()) {
+            cif = new File(args[0]);
+            rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        } else {
+            int atomRows = (args.length > 0) ? Integer.parseInt(args[0])
+                    : 5000;
+            int reflnRows = (args.length > 1) ? Integer.parseInt(args[1])
+                    : 100000;
+
+            rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+            cif = File.createTempFile("benchmark", ".cif");
+            cif.deleteOnExit();
+            writeCif(cif, atomRows, reflnRows);
+        }
+
+        System.out.println("Benchmarking " + cif + " (" + cif.length()
+                + " bytes), best of " + rounds + " round(s)");
+        before = usedMemory();
+        file = new CifParser().parseCif(new FileInputStream(cif));
+        System.out.printf("retained by CifFile: %.1f MB%n",
+                (usedMemory() - before) / 1048576.0);
+
+        block = file.blockIterator().next();
+        System.out.println("iterator                       ms   records");
+        for (int kind = 0; kind < 3; kind++) {
+            long bestNanos = Long.MAX_VALUE;
+            int records = 0;
+
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+
+                try {
+                    records = iterate(block, kind);
+                } catch (IllegalArgumentException ex) {
+                    records = -1;
+                    break;
+                }
+                bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            }
+            if (records >= 0) {
+                System.out.printf("%-28s %5d %9d%n", ITERATOR_NAMES[kind],
+                        bestNanos / 1000000, records);
+            }
+        }
+        if (file.getDataBlockNames().isEmpty()) {
+            System.out.println(); // keeps the CifFile reachable until here
+        }
+    }
+
+    private final static String ITERATOR_NAMES[] = { "AtomSiteIterator",
+            "AtomSiteAnisoIterator", "GeomBondIterator" };
+
+    /**
+     * Runs one kind of iterator over the block, returning the number of
+     * records visited.
+     */
+    private static int iterate(CifFile.DataBlock block, int kind) {
+        Iterator<?> iterator;
+        int count = 0;
+
+        switch (kind) {
+            case 0:
+                iterator = new AtomSiteIterator(block);
+                break;
+            case 1:
+                iterator = new AtomSiteAnisoIterator(block);
+                break;
+            default:
+                iterator = new GeomBondIterator(block);
+                break;
+        }
+        for (; iterator.hasNext(); iterator.next()) {
+            count++;
+        }
+
+        return count;
+    }
+
+    /** Returns the heap in use after a garbage collection. */
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Writes a synthetic CIF with loops of the specified sizes. */
+    private static void writeCif(File cif, int atomRows, int reflnRows)
+            throws IOException {
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new FileWriter(cif)));
+
+        try {
+            out.print("data_benchmark\n_cell_length_a 10.2345(6)\n"
+                    + "_cell_length_b 11.5432(7)\n_cell_length_c 9.8765(5)\n"
+                    + "loop_\n_atom_site_label\n_atom_site_type_symbol\n"
+                    + "_atom_site_fract_x\n_atom_site_fract_y\n"
+                    + "_atom_site_fract_z\n_atom_site_U_iso_or_equiv\n"
+                    + "_atom_site_calc_flag\n");
+            for (int i = 0; i < atomRows; i++) {
+                out.printf("C%d C 0.%04d(%d) 0.%04d(%d) 0.%04d(%d)"
+                        + " 0.0%03d(%d) Uani\n", i, (i * 37) % 10000,
+                        1 + i % 9, (i * 53) % 10000, 1 + i % 7,
+                        (i * 71) % 10000, 1 + i % 5, (i * 13) % 1000,
+                        1 + i % 19);
+            }
+            out.print("loop_\n_atom_site_aniso_label\n");
+            for (int i = 1; i < 4; i++) {
+                for (int j = i; j < 4; j++) {
+                    out.print("_atom_site_aniso_U_" + i + j + "\n");
+                }
+            }
+            for (int i = 0; i < atomRows; i++) {
+                out.printf("C%d 0.0%03d(%d) 0.0%03d(%d) 0.0%03d(%d)"
+                        + " 0.00%02d(%d) -0.00%02d(%d) 0.00%02d(%d)\n", i,
+                        (i * 17) % 1000, 1 + i % 9, (i * 19) % 1000,
+                        1 + i % 8, (i * 23) % 1000, 1 + i % 7, i % 100,
+                        1 + i % 6, (i * 3) % 100, 1 + i % 5, (i * 7) % 100,
+                        1 + i % 4);
+            }
+            out.print("loop_\n_geom_bond_atom_site_label_1\n"
+                    + "_geom_bond_atom_site_label_2\n_geom_bond_distance\n"
+                    + "_geom_bond_site_symmetry_2\n");
+            for (int i = 1; i < atomRows; i++) {
+                out.printf("C%d C%d 1.%03d(%d) %s\n", i - 1, i,
+                        (i * 29) % 1000, 1 + i % 9,
+                        ((i % 10) == 0) ? "2_655" : ".");
+            }
+            out.print("loop_\n_refln_index_h\n_refln_index_k\n"
+                    + "_refln_index_l\n_refln_F_squared_calc\n"
+                    + "_refln_F_squared_meas\n_refln_F_squared_sigma\n"
+                    + "_refln_observed_status\n");
+            for (int i = 0; i < reflnRows; i++) {
+                out.printf("%d %d %d %d %d.%02d %.2f o\n", i % 41 - 20,
+                        (i / 41) % 31 - 15, i % 17, (i * 7919) % 50000,
+                        (i * 7907) % 50000, i % 100, 1.0 + (i % 500) / 7.0);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
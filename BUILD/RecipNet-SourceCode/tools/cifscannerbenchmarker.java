@@ -0,0 +1,263 @@
+/*
+ * Reciprocal Net project
+ * @(#)cifscannerbenchmarker.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ * 18-Oct-2026: agent added a mode selecting only the items ModelBuilder uses
+ */
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import org.recipnet.common.files.cif.*;
+import org.recipnet.common.molecule.ModelBuilder;
+
+/**
+ * This is a test program intended for use by Reciprocal Net developers to
+ * compare the modes of {@code CifScanner} on a large CIF.  Unless a CIF file
+ * is named, a synthetic one is generated with an {@code _atom_site} loop and
+ * a {@code _refln} loop of the requested sizes.  The file is then parsed into
+ * a {@code CifFile} repeatedly by each of: the character-at-a-time
+ * {@code scan(Reader)} reporting values as {@code String}s, which is how
+ * {@code CifParser} used to work; {@code scanBuffered(Reader)} reporting
+ * values as views; and {@code scan(ByteBuffer)} over the memory-mapped file
+ * reporting values as views; and {@code scanBuffered(Reader)} through a
+ * {@code CifDataNameFilter} selecting only the items that
+ * {@code ModelBuilder} uses.  The best time and the bytes allocated for each
+ * mode are reported, followed by the same figures for scanning alone.
+ *
+ *   Usage: cifscannerbenchmarker [cifFile | atomSiteRows [reflnRows]]
+ *          [rounds]
+ */
+public class cifscannerbenchmarker {
+
+    public static void main(String args[]) throws Exception {
+        File cif;
+        int rounds;
+
+        if ((args.length > 0) && new File(args[0]).isFile()) {
+            cif = new File(args[0]);
+            rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        } else {
+            int atomRows = (args.length > 0) ? Integer.parseInt(args[0])
+                    : 5000;
+            int reflnRows = (args.length > 1) ? Integer.parseInt(args[1])
+                    : 100000;
+
+            rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+            cif = File.createTempFile("benchmark", ".cif");
+            cif.deleteOnExit();
+            writeCif(cif, atomRows, reflnRows);
+        }
+
+        System.out.println("Benchmarking " + cif + " (" + cif.length()
+                + " bytes), best of " + rounds + " round(s)");
+        System.out.println("mode                           ms     MB alloc");
+        for (boolean build : new boolean[] { true, false }) {
+            System.out.println(build ? "-- parse into CifFile"
+                    : "-- scan only");
+            for (int mode = 0; mode < MODE_NAMES.length; mode++) {
+                long bestNanos = Long.MAX_VALUE;
+                long bestBytes = Long.MAX_VALUE;
+
+                for (int round = 0; round < rounds; round++) {
+                    long bytes = allocatedBytes();
+                    long start = System.nanoTime();
+
+                    scan(cif, mode, build);
+                    bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+                    bestBytes = Math.min(bestBytes, allocatedBytes() - bytes);
+                }
+                System.out.printf("%-28s %5d %12.1f%n", MODE_NAMES[mode],
+                        bestNanos / 1000000, bestBytes / 1048576.0);
+            }
+        }
+    }
+
+    private final static String MODE_NAMES[] = { "scan(Reader), Strings",
+            "scanBuffered(Reader), views", "scan(ByteBuffer), views",
+            "scanBuffered, selected items" };
+
+    /**
+     * Scans the file in the specified mode, building a CifFile from it if
+     * {@code build} is true.
+     */
+    private static void scan(File cif, int mode, boolean build)
+            throws Exception {
+        CifScanner scanner = new CifScanner();
+        CifFileBuilder builder = new CifFileBuilder(null);
+        CifTokenHandler handler = build ? (CifTokenHandler) builder
+                : new CountingHandler();
+        CifDataNameFilter filter = null;
+        ScanState state;
+
+        builder.setUnfoldingLines(true);
+        if (mode == 3) {
+            filter = new CifDataNameFilter(handler,
+                    ModelBuilder.CIF_DATA_NAMES);
+            handler = filter;
+        }
+        scanner.setTokenHandler((mode == 0) ? new StringHandler(handler)
+                : handler);
+        scanner.setMaximumLineLength(CifScanner.CIF_1_0_MAX_LINE_LENGTH);
+        if (mode == 2) {
+            FileInputStream in = new FileInputStream(cif);
+
+            try {
+                FileChannel channel = in.getChannel();
+
+                state = scanner.scan(channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } finally {
+                in.close();
+            }
+        } else {
+            Reader in = new InputStreamReader(new FileInputStream(cif),
+                    "ISO-8859-1");
+
+            try {
+                state = (mode == 0)
+                        ? scanner.scan(new BufferedReader(in))
+                        : scanner.scanBuffered(in);
+            } finally {
+                in.close();
+            }
+        }
+        if (filter != null) {
+            filter.handleEndOfInput(state);
+        }
+        if (build) {
+            builder.handleEndOfFile(state);
+        }
+    }
+
+    /** Returns the number of bytes allocated so far by this thread. */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+    }
+
+    /** Writes a synthetic CIF with loops of the specified sizes. */
+    private static void writeCif(File cif, int atomRows, int reflnRows)
+            throws IOException {
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new FileWriter(cif)));
+
+        try {
+            out.print("data_benchmark\n_cell_length_a 10.2345(6)\n"
+                    + "_cell_length_b 11.5432(7)\n_cell_length_c 9.8765(5)\n"
+                    + "_chemical_formula_sum 'C20 H24 N2 O4'\n"
+                    + "_publ_section_comment\n;\nSynthetic data for"
+                    + " benchmarking the CIF scanner.\n;\nloop_\n"
+                    + "_atom_site_label\n_atom_site_type_symbol\n"
+                    + "_atom_site_fract_x\n_atom_site_fract_y\n"
+                    + "_atom_site_fract_z\n_atom_site_U_iso_or_equiv\n"
+                    + "_atom_site_calc_flag\n");
+            for (int i = 0; i < atomRows; i++) {
+                out.printf("C%d C 0.%04d(%d) 0.%04d(%d) 0.%04d(%d)"
+                        + " 0.0%03d(%d) Uani\n", i, (i * 37) % 10000,
+                        1 + i % 9, (i * 53) % 10000, 1 + i % 7,
+                        (i * 71) % 10000, 1 + i % 5, (i * 13) % 1000,
+                        1 + i % 19);
+            }
+            out.print("loop_\n_refln_index_h\n_refln_index_k\n"
+                    + "_refln_index_l\n_refln_F_squared_calc\n"
+                    + "_refln_F_squared_meas\n_refln_F_squared_sigma\n"
+                    + "_refln_observed_status\n");
+            for (int i = 0; i < reflnRows; i++) {
+                out.printf("%d %d %d %d %d.%02d %.2f o\n", i % 41 - 20,
+                        (i / 41) % 31 - 15, i % 17, (i * 7919) % 50000,
+                        (i * 7907) % 50000, i % 100, 1.0 + (i % 500) / 7.0);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * A token handler that reports values to another handler as plain
+     * {@code String}s, hiding any support it has for views.
+     */
+    private static class StringHandler implements CifTokenHandler {
+        private final CifTokenHandler delegate;
+
+        public StringHandler(CifTokenHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        public void handleBlockHeader(String blockName, ScanState state)
+                throws CifParseException {
+            delegate.handleBlockHeader(blockName, state);
+        }
+
+        public void handleSaveFrameHeader(String frameName, ScanState state)
+                throws CifParseException {
+            delegate.handleSaveFrameHeader(frameName, state);
+        }
+
+        public void handleSaveFrameEnd(ScanState state)
+                throws CifParseException {
+            delegate.handleSaveFrameEnd(state);
+        }
+
+        public void handleLoopStart(ScanState state)
+                throws CifParseException {
+            delegate.handleLoopStart(state);
+        }
+
+        public void handleDataName(String name, ScanState state)
+                throws CifParseException {
+            delegate.handleDataName(name, state);
+        }
+
+        public void handleQuotedValue(String value, char delimiter,
+                ScanState state) throws CifParseException {
+            delegate.handleQuotedValue(value, delimiter, state);
+        }
+
+        public void handleUnquotedValue(String value, ScanState state)
+                throws CifParseException {
+            delegate.handleUnquotedValue(value, state);
+        }
+    }
+
+    /** A token handler that merely counts the values reported to it. */
+    private static class CountingHandler implements CifValueViewHandler {
+        public long count;
+
+        public void handleBlockHeader(String blockName, ScanState state) {
+        }
+
+        public void handleSaveFrameHeader(String frameName, ScanState state) {
+        }
+
+        public void handleSaveFrameEnd(ScanState state) {
+        }
+
+        public void handleLoopStart(ScanState state) {
+        }
+
+        public void handleDataName(String name, ScanState state) {
+        }
+
+        public void handleQuotedValue(String value, char delimiter,
+                ScanState state) {
+            count++;
+        }
+
+        public void handleUnquotedValue(String value, ScanState state) {
+            count++;
+        }
+
+        public void handleQuotedValueView(CharSequence value, char delimiter,
+                ScanState state) {
+            count++;
+        }
+
+        public void handleUnquotedValueView(CharSequence value,
+                ScanState state) {
+            count++;
+        }
+    }
+}
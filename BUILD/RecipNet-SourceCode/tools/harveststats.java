@@ -3,6 +3,7 @@
  * @(#)harveststats.java
  * 
  * 07-May-2004: midurbin wrote the first draft
+ * 18-Oct-2026: agent added support for messages stored in a MessageLog
  *
  */
 
@@ -26,6 +27,7 @@ import java.util.Map;
 import org.recipnet.site.OperationFailedException;
 import org.recipnet.site.core.msg.InterSiteMessage;
 import org.recipnet.site.core.msg.SiteStatisticsISM;
+import org.recipnet.site.core.util.MessageLog;
 import org.recipnet.site.shared.db.LabInfo;
 import org.xml.sax.SAXException;
 
@@ -103,10 +105,44 @@ public class harveststats {
                 System.err.println(args[i] + " is not a directory!");
                 return;
             }
-            for (int j = 0; j < files.length; j ++) {
-                // ... try to parse the file as an XML document...
+            // ... read each message, whether stored as a file or in a log...
+            List names = new ArrayList();
+            List xmlDocs = new ArrayList();
+            try {
+                for (int j = 0; j < files.length; j ++) {
+                    if (files[j].getName().endsWith(".xml")) {
+                        names.add(files[j].getName());
+                        xmlDocs.add(readStringFromFile(files[j]));
+                    }
+                }
+                MessageLog log = new MessageLog(new File(args[i]),
+                        MessageLog.DEFAULT_SEGMENT_SIZE, true);
+                int siteIds[] = log.getSiteIds();
+                for (int j = 0; j < siteIds.length; j ++) {
+                    Iterator it = log.readEntries(siteIds[j], true).iterator();
+                    while (it.hasNext()) {
+                        MessageLog.Entry entry = (MessageLog.Entry) it.next();
+                        names.add(InterSiteMessage.getSuggestedFileName(
+                                siteIds[j], entry.seqNum));
+                        xmlDocs.add(entry.message);
+                    }
+                }
+                log.close();
+            } catch (IOException ex) {
+                System.err.println("Error reading directory \"" + args[i]
+                        + "\"!");
+                ex.printStackTrace(System.err);
+                return;
+            } catch (OperationFailedException ex) {
+                System.err.println("Error reading directory \"" + args[i]
+                        + "\"!");
+                ex.printStackTrace(System.err);
+                return;
+            }
+            for (int j = 0; j < xmlDocs.size(); j ++) {
+                // ... try to parse the message as an XML document...
                 try {
-                    String xmlDoc = readStringFromFile(files[j]);
+                    String xmlDoc = (String) xmlDocs.get(j);
                     InterSiteMessage ism = InterSiteMessage.fromXml(xmlDoc);
                     if (ism instanceof SiteStatisticsISM) {
                         // .. if it's a SiteStatisticsISM...
@@ -148,26 +184,21 @@ public class harveststats {
                                         (SiteStatisticsISM) ism));
                             }
                         } else {
-                            System.err.println("Skipping \"" + files[j]
+                            System.err.println("Skipping \"" + names.get(j)
                                     + "\" because it includes data that does"
                                     + " not fall within the designated"
                                     + " period.");
 
                         }
                     }
-                } catch (IOException ex) {
-                    System.err.println("Error reading file \""
-                            + files[j].getName() + "\"!");
-                    ex.printStackTrace(System.err);
-                    return;
                 } catch (SAXException ex) {
                     System.err.println("Error parsing file \""
-                            + files[j].getName() + "\"!");
+                            + names.get(j) + "\"!");
                     ex.printStackTrace(System.err);
                     return;
                 } catch (OperationFailedException ex) {
                     System.err.println("Error parsing file \""
-                            + files[j].getName() + "\"!");
+                            + names.get(j) + "\"!");
                     ex.printStackTrace(System.err);
                 }
             } 
@@ -0,0 +1,121 @@
+/*
+ * Reciprocal Net project
+ * @(#)ismdecodebenchmarker.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.recipnet.site.core.msg.*;
+import org.recipnet.site.shared.db.*;
+
+/**
+ * This is a test program intended for use by Reciprocal Net developers to
+ * benchmark the decoding of ISM's from XML, as happens for every message a
+ * site receives during a catch-up pull.  A batch of synthetic
+ * {@code SampleActivationISM}s is encoded once, then the whole batch is
+ * decoded repeatedly by 1, 2, 4, ... worker threads and the throughput at
+ * each level of concurrency is reported.  Encoding throughput is reported
+ * the same way.  Neither recipnetd nor mysqld need be running.
+ *
+ *   Usage: ismdecodebenchmarker [messageCount [maxThreads [rounds]]]
+ */
+public class ismdecodebenchmarker {
+
+    public static void main(String args[]) throws Exception {
+        int messageCount = (args.length > 0) ? Integer.parseInt(args[0])
+                : 20000;
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+
+        // Prepare the messages to be encoded.
+        final InterSiteMessage isms[] = new InterSiteMessage[messageCount];
+        for (int i = 0; i < messageCount; i++) {
+            SampleInfo sample = new SampleInfo(i + 1, i + 1);
+            sample.localLabId = "benchmark-" + i;
+            sample.labId = 1 + i % 7;
+            sample.firstActionDate = new Date();
+            sample.lastActionDate = sample.firstActionDate;
+            sample.dataInfo.providerId = 1 + i % 13;
+            sample.dataInfo.a = 10.0 + i % 100;
+            sample.dataInfo.b = 11.0 + i % 50;
+            sample.dataInfo.c = 12.0 + i % 25;
+            sample.dataInfo.summary = "C" + (i % 40 + 1) + " H"
+                    + (i % 60 + 1) + " N2 O4";
+            isms[i] = new SampleActivationISM(1, sample);
+            isms[i].sourceSiteId = 1;
+            isms[i].sourceSeqNum = i + 1;
+            isms[i].destSiteId = -1;
+        }
+        final String xml[] = new String[messageCount];
+
+        System.out.println("Benchmarking " + messageCount + " ISM's, "
+                + rounds + " round(s) per thread count");
+        System.out.println("threads     encode/s     decode/s");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long encodeNanos = Long.MAX_VALUE;
+            long decodeNanos = Long.MAX_VALUE;
+
+            for (int round = 0; round < rounds; round++) {
+                encodeNanos = Math.min(encodeNanos, runConcurrently(threads,
+                        messageCount, new Task() {
+                            public void perform(int i) throws Exception {
+                                xml[i] = isms[i].toXml();
+                            }
+                        }));
+                decodeNanos = Math.min(decodeNanos, runConcurrently(threads,
+                        messageCount, new Task() {
+                            public void perform(int i) throws Exception {
+                                InterSiteMessage.fromXml(xml[i]);
+                            }
+                        }));
+            }
+            System.out.printf("%7d %12.0f %12.0f%n", threads,
+                    messageCount * 1e9 / encodeNanos,
+                    messageCount * 1e9 / decodeNanos);
+            if ((threads < maxThreads) && (threads * 2 > maxThreads)) {
+                threads = maxThreads / 2;
+            }
+        }
+        System.exit(0);
+    }
+
+    /** A unit of work performed once per message */
+    private interface Task {
+        void perform(int i) throws Exception;
+    }
+
+    /**
+     * Performs {@code task} for every index in {@code [0, count)}, dividing
+     * the indices among {@code threads} threads, and returns the elapsed time
+     * in nanoseconds.
+     */
+    private static long runConcurrently(int threads, final int count,
+            final Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        final int stride = threads;
+        long start = System.nanoTime();
+
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            futures.add(executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    for (int i = first; i < count; i += stride) {
+                        task.perform(i);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        return elapsed;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Reciprocal Net project
+ * @(#)ismexchangebenchmarker.java
+ *
+ * 18-Oct-2026: agent wrote first draft
+ */
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import org.recipnet.site.core.msg.*;
+import org.recipnet.site.core.util.*;
+import org.recipnet.site.shared.*;
+import org.recipnet.site.shared.db.*;
+
+/**
+ * This is a test program intended for use by Reciprocal Net developers to
+ * compare the plain SOAP and the compressed, framed encodings of an ISM
+ * exchange.  A loopback HTTP server stands in for the remote site's
+ * IsmExchangeListener, negotiating encodings the same way, and answers every
+ * request with a batch of synthetic {@code SampleActivationISM}s, as a site
+ * would during a catch-up pull.  The batch is pulled repeatedly through an
+ * IsmExchanger with framing disabled and then enabled; the number of bytes on
+ * the wire in each direction and the end-to-end time per pull are reported.
+ * Neither recipnetd nor mysqld need be running.
+ *
+ *   Usage: ismexchangebenchmarker [messageCount [pulls]]
+ */
+public class ismexchangebenchmarker {
+
+    /** Request bytes received by the server, as sent on the wire */
+    private static long requestBytes;
+
+    /** Response bytes sent by the server, as sent on the wire */
+    private static long responseBytes;
+
+    public static void main(String args[]) throws Exception {
+        int messageCount = (args.length > 0) ? Integer.parseInt(args[0])
+                : 2000;
+        int pulls = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        // Prepare the messages the server will return.
+        final String outgoing[] = new String[messageCount];
+        for (int i = 0; i < messageCount; i++) {
+            SampleInfo sample = new SampleInfo(i + 1, i + 1);
+            sample.localLabId = "benchmark-" + i;
+            sample.labId = 1 + i % 7;
+            sample.firstActionDate = new Date();
+            sample.lastActionDate = sample.firstActionDate;
+            sample.dataInfo.providerId = 1 + i % 13;
+            sample.dataInfo.a = 10.0 + i % 100;
+            sample.dataInfo.b = 11.0 + i % 50;
+            sample.dataInfo.c = 12.0 + i % 25;
+            sample.dataInfo.summary = "C" + (i % 40 + 1) + " H"
+                    + (i % 60 + 1) + " N2 O4";
+            InterSiteMessage ism = new SampleActivationISM(1, sample);
+            ism.sourceSiteId = 1;
+            ism.sourceSeqNum = i + 1;
+            ism.destSiteId = -1;
+            outgoing[i] = SoapUtil.dropXmlDocumentHeader(ism.toXml(),
+                    "message");
+        }
+
+        HttpServer server = HttpServer.create(
+                new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/servlet/ismexchange", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange, outgoing);
+            }
+        });
+        server.start();
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort()
+                + "/";
+        String request[] = new String[] { outgoing[0] };
+
+        System.out.println("Pulling " + messageCount + " ISM's, " + pulls
+                + " time(s) per encoding");
+        System.out.println("encoding   request B   response B      ms/pull");
+        for (int framed = 0; framed < 2; framed++) {
+            IsmExchanger exchanger = new IsmExchanger(10000, 60000,
+                    framed == 1);
+
+            // Warm up, and let the exchanger negotiate framing.
+            exchanger.exchange(request, baseUrl, false);
+            requestBytes = 0;
+            responseBytes = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < pulls; i++) {
+                String replies[] = exchanger.exchange(request, baseUrl,
+                        false);
+                if (!Arrays.equals(replies, outgoing)) {
+                    throw new IllegalStateException("Messages garbled");
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-8s %11d %12d %12.1f%n",
+                    (framed == 1) ? "framed" : "soap", requestBytes / pulls,
+                    responseBytes / pulls, elapsed / 1e6 / pulls);
+        }
+        server.stop(0);
+        System.exit(0);
+    }
+
+    /**
+     * Answers one exchange as IsmExchangeListener would, but always with the
+     * specified messages.
+     */
+    private static void serve(HttpExchange exchange, String outgoing[])
+            throws IOException {
+        try {
+            Headers headers = exchange.getRequestHeaders();
+            CountingInputStream counter = new CountingInputStream(
+                    exchange.getRequestBody());
+            InputStream is = IsmFrameCodec.decodeContent(counter,
+                    headers.getFirst("Content-Encoding"));
+            String incoming[];
+
+            if (IsmFrameCodec.isFramed(headers.getFirst("Content-Type"))) {
+                incoming = IsmFrameCodec.readMessages(is);
+            } else {
+                List<String> list = new ArrayList<String>();
+                SoapFragmentReader reader = new SoapFragmentReader(
+                        new InputStreamReader(is, "UTF-8"), "IsmExchange",
+                        "recipnet", "http://www.reciprocalnet.org/master/",
+                        "message");
+                for (String message = reader.nextFragment(); message != null;
+                        message = reader.nextFragment()) {
+                    list.add(message);
+                }
+                incoming = list.toArray(new String[list.size()]);
+            }
+            is.close();
+            if (incoming.length != 1) {
+                throw new IOException("Expected one message");
+            }
+            requestBytes += counter.count;
+
+            String encoding = IsmFrameCodec.chooseContentEncoding(
+                    headers.getFirst("Accept-Encoding"));
+            boolean framed = IsmFrameCodec.acceptsFrames(
+                    headers.getFirst("Accept"));
+            if (encoding != null) {
+                exchange.getResponseHeaders().set("Content-Encoding",
+                        encoding);
+            }
+            exchange.getResponseHeaders().set("Content-Type",
+                    framed ? IsmFrameCodec.CONTENT_TYPE
+                            : "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, 0);
+            CountingOutputStream out = new CountingOutputStream(
+                    exchange.getResponseBody());
+            OutputStream os = IsmFrameCodec.encodeContent(
+                    new BufferedOutputStream(out), encoding);
+            if (framed) {
+                IsmFrameCodec.writeMessages(os, outgoing);
+            } else {
+                Writer writer = new OutputStreamWriter(os, "UTF-8");
+                SoapUtil.writeSoapDocument(writer, outgoing, "IsmExchange",
+                        "recipnet", "http://www.reciprocalnet.org/master/");
+                writer.flush();
+            }
+            os.close();
+            responseBytes += out.count;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            exchange.sendResponseHeaders(400, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** Counts the bytes read through it */
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte buffer[], int offset, int length)
+                throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    /** Counts the bytes written through it */
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte buffer[], int offset, int length)
+                throws IOException {
+            out.write(buffer, offset, length);
+            count += length;
+        }
+    }
+}
@@ -6,6 +6,7 @@
  * 05-Apr-2004: midurbin fixed import statements for new package structure
  * 17-Jan-2009: ekoperda adjusted to accommodate new class IsmExchanger and run
  *              against 0.9.1 codebase
+ * 18-Oct-2026: agent added support for messages stored in a MessageLog
  */
 
 import java.lang.StringBuffer;
@@ -22,6 +23,7 @@ import org.recipnet.site.core.MessageDecodingException;
 import org.recipnet.site.core.ResourceException;
 import org.recipnet.site.core.msg.InterSiteMessage;
 import org.recipnet.site.core.util.IsmExchanger;;
+import org.recipnet.site.core.util.MessageLog;
 import org.xml.sax.SAXException;
 
 public class pushallisms {
@@ -68,6 +70,11 @@ public class pushallisms {
 	System.out.println("Scanning filesystem...");
 	Collection<String> ismsToSend = new ArrayList<String>();
 	for (File file : new File(directory).listFiles()) {
+	    if (!file.getName().endsWith(".xml")) {
+		// Not a message file; it may be part of a message log.
+		continue;
+	    }
+
 	    // Read and parse the file as an ISM
 	    String msgAsXml = null;
 	    InterSiteMessage msg;
@@ -96,6 +103,25 @@ public class pushallisms {
             msgsIncluded++;
 	}
 
+	// Messages stored by newer site software are kept in a message log
+	// instead, which records each message's destination alongside it.
+	MessageLog log = new MessageLog(new File(directory),
+		MessageLog.DEFAULT_SEGMENT_SIZE, true);
+	for (int siteId : log.getSiteIds()) {
+	    for (MessageLog.Entry entry : log.readEntries(siteId, true)) {
+		if (entry.destSiteId != targetSiteId
+			&& entry.destSiteId != InterSiteMessage.ALL_SITES) {
+		    continue;
+		}
+		ismsToSend.add(
+			SoapUtil.dropXmlDocumentHeader(entry.message, "message"));
+		System.out.println("  " + InterSiteMessage.getSuggestedFileName(
+			siteId, entry.seqNum) + " added.");
+		msgsIncluded++;
+	    }
+	}
+	log.close();
+
         if (msgsIncluded > 0) {
             System.out.println("Pushing " + msgsIncluded + " messages to site "
                     + targetSiteId + ".");